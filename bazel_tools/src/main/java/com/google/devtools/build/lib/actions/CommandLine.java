@@ -20,6 +20,7 @@ import com.google.devtools.build.lib.actions.Artifact.ArtifactExpander;
 import com.google.devtools.build.lib.collect.CollectionUtils;
 import com.google.devtools.build.lib.collect.IterablesChain;
 import com.google.devtools.build.lib.util.Fingerprint;
+import java.util.function.Consumer;
 import javax.annotation.Nullable;
 
 /** A representation of a list of arguments. */
@@ -50,6 +51,21 @@ public abstract class CommandLine {
     return arguments();
   }
 
+  /**
+   * Passes each argument of the command line to {@code consumer}, in order, with enclosed artifacts
+   * expanded by {@code artifactExpander} if it is non-null.
+   *
+   * <p>Unlike {@link #arguments}, implementations may produce each argument as it is consumed,
+   * without holding the whole list in memory; a link command line may have hundreds of thousands
+   * of arguments. By default, this method iterates over {@link #arguments}.
+   */
+  public void expandArguments(
+      @Nullable ArtifactExpander artifactExpander, Consumer<String> consumer)
+      throws CommandLineExpansionException, InterruptedException {
+    Iterable<String> args = artifactExpander != null ? arguments(artifactExpander) : arguments();
+    args.forEach(consumer);
+  }
+
   /**
    * Adds the command line to the provided {@link Fingerprint}.
    *
@@ -106,6 +122,26 @@ public abstract class CommandLine {
         throws CommandLineExpansionException, InterruptedException {
       return IterablesChain.concat(executableArgs, commandLine.arguments(artifactExpander));
     }
+
+    @Override
+    public void expandArguments(
+        @Nullable ArtifactExpander artifactExpander, Consumer<String> consumer)
+        throws CommandLineExpansionException, InterruptedException {
+      executableArgs.forEach(consumer);
+      commandLine.expandArguments(artifactExpander, consumer);
+    }
+
+    @Override
+    public void addToFingerprint(
+        ActionKeyContext actionKeyContext,
+        @Nullable ArtifactExpander artifactExpander,
+        Fingerprint fingerprint)
+        throws CommandLineExpansionException, InterruptedException {
+      for (String s : executableArgs) {
+        fingerprint.addString(s);
+      }
+      commandLine.addToFingerprint(actionKeyContext, artifactExpander, fingerprint);
+    }
   }
 
   private static class SuffixedCommandLine extends CommandLine {
@@ -127,6 +163,26 @@ public abstract class CommandLine {
         throws CommandLineExpansionException, InterruptedException {
       return IterablesChain.concat(commandLine.arguments(artifactExpander), executableArgs);
     }
+
+    @Override
+    public void expandArguments(
+        @Nullable ArtifactExpander artifactExpander, Consumer<String> consumer)
+        throws CommandLineExpansionException, InterruptedException {
+      commandLine.expandArguments(artifactExpander, consumer);
+      executableArgs.forEach(consumer);
+    }
+
+    @Override
+    public void addToFingerprint(
+        ActionKeyContext actionKeyContext,
+        @Nullable ArtifactExpander artifactExpander,
+        Fingerprint fingerprint)
+        throws CommandLineExpansionException, InterruptedException {
+      commandLine.addToFingerprint(actionKeyContext, artifactExpander, fingerprint);
+      for (String s : executableArgs) {
+        fingerprint.addString(s);
+      }
+    }
   }
 
   /**
@@ -166,6 +166,8 @@ public class ExecutionRequirements {
   public enum WorkerProtocolFormat {
     JSON,
     PROTO,
+    /** Proto, with large requests passed through a file mapped into memory by both sides. */
+    PROTO_SHARED_MEMORY,
   }
 
   /** Override for the action's mnemonic to allow for better worker process reuse. */
@@ -20,6 +20,7 @@ import static java.nio.charset.StandardCharsets.UTF_8;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableList;
+import com.google.devtools.build.lib.actions.Artifact.ArtifactExpander;
 import com.google.devtools.build.lib.unsafe.StringUnsafe;
 import com.google.devtools.build.lib.util.FileType;
 import com.google.devtools.build.lib.util.GccParamFileEscaper;
@@ -29,10 +30,12 @@ import java.io.BufferedOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
 import java.nio.ByteBuffer;
 import java.nio.CharBuffer;
 import java.nio.charset.Charset;
 import java.nio.charset.CharsetEncoder;
+import javax.annotation.Nullable;
 
 /**
  * Support for parameter file generation (as used by gcc and other tools, e.g.
@@ -100,86 +103,130 @@ public class ParameterFile {
   public static void writeParameterFile(
       OutputStream out, Iterable<String> arguments, ParameterFileType type, Charset charset)
       throws IOException {
-    OutputStream bufferedOut = new BufferedOutputStream(out);
-    switch (type) {
-      case SHELL_QUOTED:
-        writeContent(bufferedOut, ShellEscaper.escapeAll(arguments), charset);
-        break;
-      case GCC_QUOTED:
-        writeContent(bufferedOut, GccParamFileEscaper.escapeAll(arguments), charset);
-        break;
-      case UNQUOTED:
-        writeContent(bufferedOut, arguments, charset);
-        break;
+    LineWriter writer = new LineWriter(new BufferedOutputStream(out), type, charset);
+    for (String arg : arguments) {
+      writer.write(arg);
     }
+    writer.flush();
   }
 
-  private static void writeContent(
-      OutputStream outputStream, Iterable<String> arguments, Charset charset) throws IOException {
-    if (charset.equals(ISO_8859_1)) {
-      writeContentLatin1(outputStream, arguments);
-    } else if (charset.equals(UTF_8)) {
-      writeContentUtf8(outputStream, arguments);
-    } else {
-      // Generic charset support
-      OutputStreamWriter out = new OutputStreamWriter(outputStream, charset);
-      for (String line : arguments) {
-        out.write(line);
-        out.write('\n');
-      }
-      out.flush();
+  /**
+   * Writes the arguments of a command line to a parameter file as they are expanded, without
+   * materializing the argument list. See {@link CommandLine#expandArguments}.
+   */
+  public static void writeParameterFile(
+      OutputStream out,
+      CommandLine commandLine,
+      @Nullable ArtifactExpander artifactExpander,
+      ParameterFileType type,
+      Charset charset)
+      throws IOException, CommandLineExpansionException, InterruptedException {
+    LineWriter writer = new LineWriter(new BufferedOutputStream(out), type, charset);
+    try {
+      commandLine.expandArguments(
+          artifactExpander,
+          arg -> {
+            try {
+              writer.write(arg);
+            } catch (IOException e) {
+              throw new UncheckedIOException(e);
+            }
+          });
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
     }
+    writer.flush();
   }
 
-  /**
-   * Fast LATIN-1 path that avoids GC overhead. This takes advantage of the fact that strings are
-   * encoded as either LATIN-1 or UTF-16 under JDK9+. When LATIN-1 we can simply copy the byte
-   * buffer, when UTF-16 we can fail loudly.
-   */
-  private static void writeContentLatin1(OutputStream outputStream, Iterable<String> arguments)
-      throws IOException {
-    StringUnsafe stringUnsafe = StringUnsafe.getInstance();
-    for (String line : arguments) {
+  /** Escapes and encodes arguments, one per line. */
+  private static final class LineWriter {
+    private final OutputStream out;
+    private final ParameterFileType type;
+    private final StringUnsafe stringUnsafe = StringUnsafe.getInstance();
+    @Nullable private final CharsetEncoder utf8Encoder;
+    @Nullable private final OutputStreamWriter writer; // for other charsets
+
+    LineWriter(OutputStream out, ParameterFileType type, Charset charset) {
+      this.out = out;
+      this.type = type;
+      this.utf8Encoder = charset.equals(UTF_8) ? UTF_8.newEncoder() : null;
+      this.writer =
+          charset.equals(ISO_8859_1) || charset.equals(UTF_8)
+              ? null
+              : new OutputStreamWriter(out, charset);
+    }
+
+    void write(String arg) throws IOException {
+      String line;
+      switch (type) {
+        case SHELL_QUOTED:
+          line = ShellEscaper.escapeString(arg);
+          break;
+        case GCC_QUOTED:
+          line = GccParamFileEscaper.escapeString(arg);
+          break;
+        default:
+          line = arg;
+          break;
+      }
+      if (utf8Encoder != null) {
+        writeUtf8(line);
+      } else if (writer == null) {
+        writeLatin1(line);
+      } else {
+        // Generic charset support
+        writer.write(line);
+        writer.write('\n');
+      }
+    }
+
+    void flush() throws IOException {
+      if (writer != null) {
+        writer.flush();
+      } else {
+        out.flush();
+      }
+    }
+
+    /**
+     * Fast LATIN-1 path that avoids GC overhead. This takes advantage of the fact that strings are
+     * encoded as either LATIN-1 or UTF-16 under JDK9+. When LATIN-1 we can simply copy the byte
+     * buffer, when UTF-16 we can fail loudly.
+     */
+    private void writeLatin1(String line) throws IOException {
       if (stringUnsafe.getCoder(line) == StringUnsafe.LATIN1) {
         byte[] bytes = stringUnsafe.getByteArray(line);
-        outputStream.write(bytes);
+        out.write(bytes);
       } else {
         // Error case, encode with '?' characters
         ByteBuffer encodedBytes = ISO_8859_1.encode(CharBuffer.wrap(line));
-        outputStream.write(
+        out.write(
             encodedBytes.array(),
             encodedBytes.arrayOffset(),
             encodedBytes.arrayOffset() + encodedBytes.limit());
       }
-      outputStream.write('\n');
+      out.write('\n');
     }
-    outputStream.flush();
-  }
 
-  /**
-   * Fast UTF-8 path that tries to coder GC overhead. This takes advantage of the fact that strings
-   * are encoded as either LATIN-1 or UTF-16 under JDK9+. When LATIN-1 we can check if the buffer is
-   * ASCII and copy that directly (since this is both valid LATIN-1 and UTF-8), in all other cases
-   * we must re-encode.
-   */
-  private static void writeContentUtf8(OutputStream outputStream, Iterable<String> arguments)
-      throws IOException {
-    CharsetEncoder encoder = UTF_8.newEncoder();
-    StringUnsafe stringUnsafe = StringUnsafe.getInstance();
-    for (String line : arguments) {
+    /**
+     * Fast UTF-8 path that tries to coder GC overhead. This takes advantage of the fact that
+     * strings are encoded as either LATIN-1 or UTF-16 under JDK9+. When LATIN-1 we can check if
+     * the buffer is ASCII and copy that directly (since this is both valid LATIN-1 and UTF-8), in
+     * all other cases we must re-encode.
+     */
+    private void writeUtf8(String line) throws IOException {
       byte[] bytes = stringUnsafe.getByteArray(line);
       if (stringUnsafe.getCoder(line) == StringUnsafe.LATIN1 && isAscii(bytes)) {
-        outputStream.write(bytes);
+        out.write(bytes);
       } else {
-        ByteBuffer encodedBytes = encoder.encode(CharBuffer.wrap(line));
-        outputStream.write(
+        ByteBuffer encodedBytes = utf8Encoder.encode(CharBuffer.wrap(line));
+        out.write(
             encodedBytes.array(),
             encodedBytes.arrayOffset(),
             encodedBytes.arrayOffset() + encodedBytes.limit());
       }
-      outputStream.write('\n');
+      out.write('\n');
     }
-    outputStream.flush();
   }
 
   private static boolean isAscii(byte[] latin1Bytes) {
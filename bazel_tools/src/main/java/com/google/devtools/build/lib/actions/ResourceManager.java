@@ -18,17 +18,20 @@ import static com.google.devtools.build.lib.profiler.AutoProfiler.profiled;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
 import com.google.devtools.build.lib.concurrent.ThreadSafety.ThreadSafe;
 import com.google.devtools.build.lib.profiler.AutoProfiler;
 import com.google.devtools.build.lib.profiler.ProfilerTask;
 import com.google.devtools.build.lib.unix.ProcMeminfoParser;
 import com.google.devtools.build.lib.util.OS;
-import com.google.devtools.build.lib.util.Pair;
 import java.io.IOException;
 import java.util.Deque;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.annotation.Nullable;
 
 /**
  * Used to keep track of resources consumed by the Blaze action execution threads and throttle them
@@ -57,6 +60,15 @@ import java.util.concurrent.CountDownLatch;
  * guarantees that at least one thread will always be able to acquire any amount of requested
  * resources (even if it is greater than amount of available resources). Therefore, assuming that
  * threads correctly release acquired resources, Blaze will never be fully blocked.
+ *
+ * <p>Releases grant waiting requests in priority order, and a later request may go ahead of an
+ * earlier one that does not fit yet. By default, all requests and releases take the lock of this
+ * manager. With {@link #setFairScheduling fair scheduling}, the used resources are updated with
+ * compare-and-set instead, so requests that fit are granted and released without taking the lock.
+ * Only requests that have to wait are queued under the lock, and only releases that happen while
+ * requests wait take it. To keep large requests from starving, a request that has waited through
+ * {@link #MAX_RELEASES_PASSED_OVER} releases without fitting then holds back every request behind
+ * it, and all new ones, until it is granted.
  */
 @ThreadSafe
 public class ResourceManager {
@@ -124,44 +136,122 @@ public class ResourceManager {
   private static final double MIN_NECESSARY_CPU_RATIO = 0.6;
   private static final double MIN_NECESSARY_RAM_RATIO = 1.0;
 
-  // Lists of blocked threads. Associated CountDownLatch object will always
-  // be initialized to 1 during creation in the acquire() method.
+  /**
+   * The number of releases a waiting request may be passed over in before it holds back the
+   * requests behind it. Low enough that a large request waits for a few dozen small actions rather
+   * than for the whole build, high enough that small requests can still fill the gaps around it.
+   */
+  @VisibleForTesting static final int MAX_RELEASES_PASSED_OVER = 32;
+
+  /**
+   * The amounts of resources in use. Immutable, so that all three can be updated together with a
+   * single compare-and-set.
+   */
+  private static final class Usage {
+    static final Usage NONE = new Usage(0, 0, 0);
+
+    // Used amount of CPU capacity (where 1.0 corresponds to the one fully
+    // occupied CPU core. Corresponds to the CPU resource definition in the
+    // ResourceSet class.
+    final double cpu;
+
+    // Used amount of RAM capacity in MB. Corresponds to the RAM resource
+    // definition in the ResourceSet class.
+    final double ram;
+
+    // Used local test count. Corresponds to the local test count definition in the ResourceSet
+    // class.
+    final int localTestCount;
+
+    Usage(double cpu, double ram, int localTestCount) {
+      this.cpu = cpu;
+      this.ram = ram;
+      this.localTestCount = localTestCount;
+    }
+
+    boolean isZero() {
+      return cpu == 0.0 && ram == 0.0 && localTestCount == 0;
+    }
+
+    Usage plus(ResourceSet resources) {
+      return new Usage(
+          cpu + resources.getCpuUsage(),
+          ram + resources.getMemoryMb(),
+          localTestCount + resources.getLocalTestCount());
+    }
+
+    Usage minus(ResourceSet resources) {
+      // TODO(bazel-team): (2010) rounding error can accumulate and value below can end up being
+      // e.g. 1E-15. So if it is small enough, we set it to 0. But maybe there is a better
+      // solution.
+      double epsilon = 0.0001;
+      double newCpu = cpu - resources.getCpuUsage();
+      double newRam = ram - resources.getMemoryMb();
+      return new Usage(
+          newCpu < epsilon ? 0 : newCpu,
+          newRam < epsilon ? 0 : newRam,
+          localTestCount - resources.getLocalTestCount());
+    }
+  }
+
+  /** A blocked thread's request. The latch is counted down once it is granted or cancelled. */
+  private static final class Request {
+    final ResourceSet resources;
+    final CountDownLatch latch = new CountDownLatch(1);
+
+    // The number of releases this request has waited through without fitting. Guarded by the
+    // manager.
+    int releasesPassedOver;
+
+    Request(ResourceSet resources) {
+      this.resources = resources;
+    }
+  }
+
+  // Lists of blocked threads, one per priority. Guarded by this.
   // We use LinkedList because we will need to remove elements from the middle frequently in the
   // middle of iterating through the list.
   @SuppressWarnings("JdkObsolete")
-  private final Deque<Pair<ResourceSet, CountDownLatch>> localRequests = new LinkedList<>();
+  private final Deque<Request> localRequests = new LinkedList<>();
 
   @SuppressWarnings("JdkObsolete")
-  private final Deque<Pair<ResourceSet, CountDownLatch>> dynamicWorkerRequests = new LinkedList<>();
+  private final Deque<Request> dynamicWorkerRequests = new LinkedList<>();
 
   @SuppressWarnings("JdkObsolete")
-  private final Deque<Pair<ResourceSet, CountDownLatch>> dynamicStandaloneRequests =
-      new LinkedList<>();
+  private final Deque<Request> dynamicStandaloneRequests = new LinkedList<>();
 
-  // The total amount of resources on the local host. Must be set by
-  // an explicit call to setAvailableResources(), often using
-  // LocalHostCapacity.getLocalHostCapacity() as an argument.
-  private ResourceSet staticResources = null;
+  /** The lists of blocked threads in the order in which they get resources. */
+  private final ImmutableList<Deque<Request>> requestsByPriority =
+      ImmutableList.of(localRequests, dynamicWorkerRequests, dynamicStandaloneRequests);
 
-  @VisibleForTesting public ResourceSet availableResources = null;
+  // The number of requests in the lists above, including cancelled ones that have not been removed
+  // yet. Incremented before a request checks for the last time whether it fits, and read by every
+  // release after it returned its resources, so that no release misses a request about to wait.
+  private final AtomicInteger waitCount = new AtomicInteger();
 
-  // Used amount of CPU capacity (where 1.0 corresponds to the one fully
-  // occupied CPU core. Corresponds to the CPU resource definition in the
-  // ResourceSet class.
-  private double usedCpu;
+  // Whether a waiting request has been passed over MAX_RELEASES_PASSED_OVER times, in which case
+  // no request may be granted before it that is not ahead of it in the lists. Only set with fair
+  // scheduling.
+  private volatile boolean starving;
 
-  // Used amount of RAM capacity in MB. Corresponds to the RAM resource
-  // definition in the ResourceSet class.
-  private double usedRam;
+  // Whether requests that fit are granted without the lock, and large requests hold back the
+  // others once they have been passed over too often.
+  private volatile boolean fairScheduling;
 
-  // Used local test count. Corresponds to the local test count definition in the ResourceSet class.
-  private int usedLocalTestCount;
+  private final AtomicReference<Usage> used = new AtomicReference<>(Usage.NONE);
+
+  // The total amount of resources on the local host. Must be set by
+  // an explicit call to setAvailableResources(), often using
+  // LocalHostCapacity.getLocalHostCapacity() as an argument.
+  private volatile ResourceSet staticResources = null;
+
+  @VisibleForTesting public volatile ResourceSet availableResources = null;
 
   // Determines if local memory estimates are used.
-  private boolean localMemoryEstimate = false;
+  private volatile boolean localMemoryEstimate = false;
 
   /** If set, local-only actions are given priority over dynamically run actions. */
-  private boolean prioritizeLocalActions;
+  private volatile boolean prioritizeLocalActions;
 
   private ResourceManager() {
   }
@@ -175,21 +265,15 @@ public class ResourceManager {
    * Note - it does not reset available resources. Use separate call to setAvailableResources().
    */
   public synchronized void resetResourceUsage() {
-    usedCpu = 0;
-    usedRam = 0;
-    usedLocalTestCount = 0;
-    for (Pair<ResourceSet, CountDownLatch> request : localRequests) {
-      request.second.countDown();
-    }
-    for (Pair<ResourceSet, CountDownLatch> request : dynamicWorkerRequests) {
-      request.second.countDown();
-    }
-    for (Pair<ResourceSet, CountDownLatch> request : dynamicStandaloneRequests) {
-      request.second.countDown();
+    used.set(Usage.NONE);
+    for (Deque<Request> requests : requestsByPriority) {
+      for (Request request : requests) {
+        request.latch.countDown();
+      }
+      requests.clear();
     }
-    localRequests.clear();
-    dynamicWorkerRequests.clear();
-    dynamicStandaloneRequests.clear();
+    waitCount.set(0);
+    starving = false;
   }
 
   /**
@@ -204,9 +288,7 @@ public class ResourceManager {
             staticResources.getMemoryMb(),
             staticResources.getCpuUsage(),
             staticResources.getLocalTestCount());
-    processWaitingThreads(localRequests);
-    processWaitingThreads(dynamicWorkerRequests);
-    processWaitingThreads(dynamicStandaloneRequests);
+    processWaitingThreads();
   }
 
   /**
@@ -222,6 +304,16 @@ public class ResourceManager {
     this.prioritizeLocalActions = prioritizeLocalActions;
   }
 
+  /**
+   * Sets whether to grant requests that fit without taking the lock of this manager, and to keep
+   * waiting requests from being passed over more than {@link #MAX_RELEASES_PASSED_OVER} times.
+   * Must not be changed while resources are in use.
+   */
+  public synchronized void setFairScheduling(boolean fairScheduling) {
+    this.fairScheduling = fairScheduling;
+    starving = false;
+  }
+
   /**
    * Acquires requested resource set. Will block if resource is not available. NB! This method must
    * be thread-safe!
@@ -246,12 +338,15 @@ public class ResourceManager {
       // Synchronize on this to avoid any racing with #processWaitingThreads
       synchronized (this) {
         if (latch.getCount() == 0) {
-          // Resources already acquired by other side. Release them, but not inside this
-          // synchronized block to avoid deadlock.
+          // Resources already acquired by other side. Release them.
           release(resources);
         } else {
           // Inform other side that resources shouldn't be acquired.
           latch.countDown();
+          if (fairScheduling) {
+            // Let the requests it may have held back go ahead.
+            processWaitingThreads();
+          }
         }
       }
       throw e;
@@ -279,12 +374,12 @@ public class ResourceManager {
     Preconditions.checkState(
         !threadHasResources(), "tryAcquire with existing resource lock during %s", owner);
 
-    boolean acquired = false;
-
-    synchronized (this) {
-      if (areResourcesAvailable(resources)) {
-        incrementResources(resources);
-        acquired = true;
+    boolean acquired;
+    if (fairScheduling) {
+      acquired = !starving && tryIncrementResources(resources);
+    } else {
+      synchronized (this) {
+        acquired = tryIncrementResources(resources);
       }
     }
 
@@ -296,22 +391,24 @@ public class ResourceManager {
     return null;
   }
 
-  private void incrementResources(ResourceSet resources) {
-    usedCpu += resources.getCpuUsage();
-    usedRam += resources.getMemoryMb();
-    usedLocalTestCount += resources.getLocalTestCount();
+  /** Marks the given resources as used if they are available. */
+  private boolean tryIncrementResources(ResourceSet resources) {
+    while (true) {
+      Usage current = used.get();
+      if (!areResourcesAvailable(resources, current)) {
+        return false;
+      }
+      if (used.compareAndSet(current, current.plus(resources))) {
+        return true;
+      }
+    }
   }
 
   /**
    * Return true if any resources have been claimed through this manager.
    */
-  public synchronized boolean inUse() {
-    return usedCpu != 0.0
-        || usedRam != 0.0
-        || usedLocalTestCount != 0
-        || !localRequests.isEmpty()
-        || !dynamicWorkerRequests.isEmpty()
-        || !dynamicStandaloneRequests.isEmpty();
+  public boolean inUse() {
+    return !used.get().isZero() || waitCount.get() != 0;
   }
 
 
@@ -348,90 +445,101 @@ public class ResourceManager {
     }
   }
 
-  private synchronized CountDownLatch acquire(ResourceSet resources, ResourcePriority priority) {
-    if (areResourcesAvailable(resources)) {
-      incrementResources(resources);
+  @Nullable
+  private CountDownLatch acquire(ResourceSet resources, ResourcePriority priority) {
+    if (fairScheduling && !starving && tryIncrementResources(resources)) {
       return null;
     }
-    Pair<ResourceSet, CountDownLatch> request =
-      new Pair<>(resources, new CountDownLatch(1));
-    if (this.prioritizeLocalActions) {
-      switch (priority) {
-        case LOCAL:
-          localRequests.addLast(request);
-          break;
-        case DYNAMIC_WORKER:
-          // Dynamic requests should be LIFO, because we are more likely to win the race on newer
-          // actions.
-          dynamicWorkerRequests.addFirst(request);
-          break;
-        case DYNAMIC_STANDALONE:
-          // Dynamic requests should be LIFO, because we are more likely to win the race on newer
-          // actions.
-          dynamicStandaloneRequests.addFirst(request);
-          break;
+    Request request = new Request(resources);
+    synchronized (this) {
+      // Count the request as waiting before checking again, so that either this check sees the
+      // resources of a concurrent lock-free release, or the release sees this request.
+      waitCount.incrementAndGet();
+      if (!starving && tryIncrementResources(resources)) {
+        waitCount.decrementAndGet();
+        return null;
+      }
+      if (this.prioritizeLocalActions) {
+        switch (priority) {
+          case LOCAL:
+            localRequests.addLast(request);
+            break;
+          case DYNAMIC_WORKER:
+            // Dynamic requests should be LIFO, because we are more likely to win the race on newer
+            // actions.
+            dynamicWorkerRequests.addFirst(request);
+            break;
+          case DYNAMIC_STANDALONE:
+            // Dynamic requests should be LIFO, because we are more likely to win the race on newer
+            // actions.
+            dynamicStandaloneRequests.addFirst(request);
+            break;
+        }
+      } else {
+        localRequests.addLast(request);
       }
-    } else {
-      localRequests.addLast(request);
     }
-    return request.second;
+    return request.latch;
   }
 
-  private synchronized boolean release(ResourceSet resources) {
-    usedCpu -= resources.getCpuUsage();
-    usedRam -= resources.getMemoryMb();
-    usedLocalTestCount -= resources.getLocalTestCount();
-
-    // TODO(bazel-team): (2010) rounding error can accumulate and value below can end up being
-    // e.g. 1E-15. So if it is small enough, we set it to 0. But maybe there is a better solution.
-    double epsilon = 0.0001;
-    if (usedCpu < epsilon) {
-      usedCpu = 0;
-    }
-    if (usedRam < epsilon) {
-      usedRam = 0;
-    }
-    boolean anyProcessed = false;
-    if (!localRequests.isEmpty()) {
-      processWaitingThreads(localRequests);
-      anyProcessed = true;
+  private boolean release(ResourceSet resources) {
+    if (!fairScheduling) {
+      synchronized (this) {
+        used.updateAndGet(usage -> usage.minus(resources));
+        if (waitCount.get() == 0) {
+          return false;
+        }
+        processWaitingThreads();
+        return true;
+      }
     }
-    if (!dynamicWorkerRequests.isEmpty()) {
-      processWaitingThreads(dynamicWorkerRequests);
-      anyProcessed = true;
+    used.updateAndGet(usage -> usage.minus(resources));
+    if (waitCount.get() == 0) {
+      return false;
     }
-    if (!dynamicStandaloneRequests.isEmpty()) {
-      processWaitingThreads(dynamicStandaloneRequests);
-      anyProcessed = true;
+    synchronized (this) {
+      processWaitingThreads();
     }
-    return anyProcessed;
+    return true;
   }
 
-  private void processWaitingThreads(Deque<Pair<ResourceSet, CountDownLatch>> requests) {
-    Iterator<Pair<ResourceSet, CountDownLatch>> iterator = requests.iterator();
-    while (iterator.hasNext()) {
-      Pair<ResourceSet, CountDownLatch> request = iterator.next();
-      if (request.second.getCount() != 0) {
-        if (areResourcesAvailable(request.first)) {
-          incrementResources(request.first);
-          request.second.countDown();
+  /**
+   * Grants the waiting requests that fit, in priority order. With fair scheduling, stops at the
+   * first one that has been passed over too often.
+   */
+  private synchronized void processWaitingThreads() {
+    starving = false;
+    for (Deque<Request> requests : requestsByPriority) {
+      Iterator<Request> iterator = requests.iterator();
+      while (iterator.hasNext()) {
+        Request request = iterator.next();
+        if (request.latch.getCount() == 0) {
+          // Cancelled by other side.
+          iterator.remove();
+          waitCount.decrementAndGet();
+        } else if (tryIncrementResources(request.resources)) {
           iterator.remove();
+          waitCount.decrementAndGet();
+          request.latch.countDown();
+        } else if (fairScheduling && ++request.releasesPassedOver >= MAX_RELEASES_PASSED_OVER) {
+          starving = true;
+          return;
         }
-      } else {
-        // Cancelled by other side.
-        iterator.remove();
       }
     }
   }
 
   // Method will return true if all requested resources are considered to be available.
-  private boolean areResourcesAvailable(ResourceSet resources) {
-    Preconditions.checkNotNull(availableResources);
+  private boolean areResourcesAvailable(ResourceSet resources, Usage used) {
+    ResourceSet availableResources = Preconditions.checkNotNull(this.availableResources);
     // Comparison below is robust, since any calculation errors will be fixed
     // by the release() method.
-    if (usedCpu == 0.0 && usedRam == 0.0 && usedLocalTestCount == 0) {
+    if (used.isZero()) {
       return true;
     }
+    double usedCpu = used.cpu;
+    double usedRam = used.ram;
+    int usedLocalTestCount = used.localTestCount;
     // Use only MIN_NECESSARY_???_RATIO of the resource value to check for
     // allocation. This is necessary to account for the fact that most of the
     // requested resource sets use pessimistic estimations. Note that this
@@ -479,12 +587,12 @@ public class ResourceManager {
   }
 
   @VisibleForTesting
-  synchronized int getWaitCount() {
-    return localRequests.size() + dynamicStandaloneRequests.size() + dynamicWorkerRequests.size();
+  int getWaitCount() {
+    return waitCount.get();
   }
 
   @VisibleForTesting
-  synchronized boolean isAvailable(double ram, double cpu, int localTestCount) {
-    return areResourcesAvailable(ResourceSet.create(ram, cpu, localTestCount));
+  boolean isAvailable(double ram, double cpu, int localTestCount) {
+    return areResourcesAvailable(ResourceSet.create(ram, cpu, localTestCount), used.get());
   }
 }
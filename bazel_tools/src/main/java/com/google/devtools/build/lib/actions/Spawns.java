@@ -116,10 +116,12 @@ public final class Spawns {
           return ExecutionRequirements.WorkerProtocolFormat.JSON;
         case "proto":
           return ExecutionRequirements.WorkerProtocolFormat.PROTO;
+        case "proto_shared_memory":
+          return ExecutionRequirements.WorkerProtocolFormat.PROTO_SHARED_MEMORY;
         default:
           throw new IOException(
-              "requires-worker-protocol must be set to a valid worker protocol format: json or"
-                  + " proto");
+              "requires-worker-protocol must be set to a valid worker protocol format: json,"
+                  + " proto or proto_shared_memory");
       }
     } else {
       return ExecutionRequirements.WorkerProtocolFormat.PROTO;
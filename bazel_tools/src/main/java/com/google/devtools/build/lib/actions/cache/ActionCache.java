@@ -72,6 +72,9 @@ public interface ActionCache {
    */
   void remove(String key);
 
+  /** Releases the files and threads held by the cache, which must not be used afterwards. */
+  default void close() throws IOException {}
+
   /**
    * An entry in the ActionCache that contains all action input and output
    * artifact paths and their metadata plus action key itself.
@@ -69,7 +69,7 @@ public class CompactPersistentActionCache implements ActionCache {
   // Key of the action cache record that holds information used to verify referential integrity
   // between action cache and string indexer. Must be < 0 to avoid conflict with real action
   // cache records.
-  private static final int VALIDATION_KEY = -10;
+  static final int VALIDATION_KEY = -10;
 
   private static final int NO_INPUT_DISCOVERY_COUNT = -1;
 
@@ -231,6 +231,11 @@ public class CompactPersistentActionCache implements ActionCache {
       }
     }
 
+    return new CompactPersistentActionCache(indexer, map, createMissCounters());
+  }
+
+  /** Returns one zeroed counter per {@link MissReason}. */
+  static ImmutableMap<MissReason, AtomicInteger> createMissCounters() {
     // Populate the map now, so that concurrent updates to the values can happen safely.
     Map<MissReason, AtomicInteger> misses = new EnumMap<>(MissReason.class);
     for (MissReason reason : MissReason.values()) {
@@ -241,7 +246,7 @@ public class CompactPersistentActionCache implements ActionCache {
       }
       misses.put(reason, new AtomicInteger(0));
     }
-    return new CompactPersistentActionCache(indexer, map, Maps.immutableEnumMap(misses));
+    return Maps.immutableEnumMap(misses);
   }
 
   private static CompactPersistentActionCache logAndThrowOrRecurse(
@@ -295,8 +300,7 @@ public class CompactPersistentActionCache implements ActionCache {
 
   private static final String FAILURE_PREFIX = "Failed action cache referential integrity check: ";
   /** Throws IOException if indexer contains no data or integrity check has failed. */
-  private static void validateIntegrity(int indexerSize, byte[] validationRecord)
-      throws IOException {
+  static void validateIntegrity(int indexerSize, byte[] validationRecord) throws IOException {
     if (indexerSize == 0) {
       throw new IOException(FAILURE_PREFIX + "empty index");
     }
@@ -481,7 +485,7 @@ public class CompactPersistentActionCache implements ActionCache {
   }
 
   /** @return action data encoded as a byte[] array. */
-  private static byte[] encode(StringIndexer indexer, ActionCache.Entry entry) throws IOException {
+  static byte[] encode(StringIndexer indexer, ActionCache.Entry entry) throws IOException {
     Preconditions.checkState(!entry.isCorrupted());
 
     byte[] actionKeyBytes = entry.getActionKey().getBytes(ISO_8859_1);
@@ -589,8 +593,15 @@ public class CompactPersistentActionCache implements ActionCache {
    * compressed format until entry is actually used by the dependency checker.
    */
   private static ActionCache.Entry decode(StringIndexer indexer, byte[] data) throws IOException {
+    return decode(indexer, ByteBuffer.wrap(data));
+  }
+
+  /**
+   * Like {@link #decode(StringIndexer, byte[])}, but reads the entry from the remaining bytes of
+   * {@code source}, which allows decoding in place from a mapped file.
+   */
+  static ActionCache.Entry decode(StringIndexer indexer, ByteBuffer source) throws IOException {
     try {
-      ByteBuffer source = ByteBuffer.wrap(data);
 
       byte[] actionKeyBytes = new byte[VarInt.getVarInt(source)];
       source.get(actionKeyBytes);
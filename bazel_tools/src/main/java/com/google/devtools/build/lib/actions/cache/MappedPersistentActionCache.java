@@ -0,0 +1,486 @@
+// Copyright 2026 The Bazel Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.google.devtools.build.lib.actions.cache;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.flogger.GoogleLogger;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.common.util.concurrent.Uninterruptibles;
+import com.google.devtools.build.lib.actions.cache.Protos.ActionCacheStatistics;
+import com.google.devtools.build.lib.actions.cache.Protos.ActionCacheStatistics.MissReason;
+import com.google.devtools.build.lib.clock.Clock;
+import com.google.devtools.build.lib.concurrent.ThreadSafety;
+import com.google.devtools.build.lib.concurrent.ThreadSafety.ConditionallyThreadSafe;
+import com.google.devtools.build.lib.events.Event;
+import com.google.devtools.build.lib.events.EventHandler;
+import com.google.devtools.build.lib.vfs.Path;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.Nullable;
+
+/**
+ * An implementation of the ActionCache interface that stores entries in a {@link MappedRecordLog}.
+ *
+ * <p>Entries use the same encoding as {@link CompactPersistentActionCache}, but are never held on
+ * the Java heap: {@link #get} decodes them in place from the mapped file, {@link #put} appends to
+ * it, and {@link #save} only has to flush dirty pages instead of rewriting the whole cache.
+ * Overwritten entries are reclaimed by compacting the log on a background thread once they take
+ * more space than the live ones.
+ *
+ * <p>As with the journal of {@link CompactPersistentActionCache}, appended entries only become
+ * visible to the next server after the {@link PersistentStringIndexer} has been flushed, which
+ * happens every {@link #COMMIT_INTERVAL_SECONDS} seconds and on {@link #save}.
+ *
+ * <p>If the log fills up, it is compacted right away. If the live entries alone fill it, all
+ * entries are dropped, which only costs rebuilds.
+ */
+@ConditionallyThreadSafe // condition: each instance must be instantiated with different cache root
+public final class MappedPersistentActionCache implements ActionCache {
+  private static final GoogleLogger logger = GoogleLogger.forEnclosingClass();
+  private static final int COMMIT_INTERVAL_SECONDS = 3;
+
+  // Compaction is not worth it for small logs.
+  private static final int MIN_COMPACTION_BYTES = 16 << 20;
+
+  private static final int VERSION = 1;
+
+  private final PersistentStringIndexer indexer;
+  private final MappedRecordLog log;
+  private final Clock clock;
+  private final ExecutorService compactionExecutor;
+  // Held by the background compaction and by put() or remove() while they make room in a full log.
+  private final AtomicBoolean compacting = new AtomicBoolean();
+  private final Object makeRoomLock = new Object();
+  @Nullable private volatile Future<?> pendingCompaction;
+  private final AtomicLong nextCommitNanos;
+  private final ImmutableMap<MissReason, AtomicInteger> misses;
+  private final AtomicInteger hits = new AtomicInteger();
+
+  private MappedPersistentActionCache(
+      PersistentStringIndexer indexer, MappedRecordLog log, Clock clock) {
+    this.indexer = indexer;
+    this.log = log;
+    this.clock = clock;
+    this.compactionExecutor =
+        Executors.newSingleThreadExecutor(
+            new ThreadFactoryBuilder()
+                .setNameFormat("action-cache-compaction-%d")
+                .setDaemon(true)
+                .build());
+    this.nextCommitNanos =
+        new AtomicLong(clock.nanoTime() + TimeUnit.SECONDS.toNanos(COMMIT_INTERVAL_SECONDS));
+    this.misses = CompactPersistentActionCache.createMissCounters();
+  }
+
+  public static MappedPersistentActionCache create(
+      Path cacheRoot, Clock clock, EventHandler reporterForInitializationErrors)
+      throws IOException {
+    return create(cacheRoot, clock, reporterForInitializationErrors, Integer.MAX_VALUE);
+  }
+
+  /** Creates a cache whose log may grow to at most {@code maxLogBytes} bytes. */
+  @VisibleForTesting
+  static MappedPersistentActionCache create(
+      Path cacheRoot, Clock clock, EventHandler reporterForInitializationErrors, int maxLogBytes)
+      throws IOException {
+    return create(
+        cacheRoot,
+        clock,
+        reporterForInitializationErrors,
+        maxLogBytes,
+        /*alreadyFoundCorruption=*/ false);
+  }
+
+  private static MappedPersistentActionCache create(
+      Path cacheRoot,
+      Clock clock,
+      EventHandler reporterForInitializationErrors,
+      int maxLogBytes,
+      boolean alreadyFoundCorruption)
+      throws IOException {
+    cacheRoot.createDirectoryAndParents();
+    PersistentStringIndexer indexer;
+    try {
+      indexer = PersistentStringIndexer.newPersistentStringIndexer(indexFile(cacheRoot), clock);
+    } catch (IOException e) {
+      return logAndThrowOrRecurse(
+          cacheRoot,
+          clock,
+          "Failed to load filename index data",
+          e,
+          reporterForInitializationErrors,
+          maxLogBytes,
+          alreadyFoundCorruption);
+    }
+
+    MappedRecordLog log;
+    try {
+      log = MappedRecordLog.open(logFile(cacheRoot).getPathFile().toPath(), VERSION, maxLogBytes);
+    } catch (IOException e) {
+      return logAndThrowOrRecurse(
+          cacheRoot,
+          clock,
+          "Failed to load action cache data",
+          e,
+          reporterForInitializationErrors,
+          maxLogBytes,
+          alreadyFoundCorruption);
+    }
+
+    // Validate referential integrity between two collections.
+    if (log.size() > 0) {
+      try {
+        ByteBuffer validationRecord = log.get(CompactPersistentActionCache.VALIDATION_KEY);
+        CompactPersistentActionCache.validateIntegrity(
+            indexer.size(), validationRecord != null ? toArray(validationRecord) : null);
+      } catch (IOException e) {
+        log.close();
+        return logAndThrowOrRecurse(
+            cacheRoot,
+            clock,
+            null,
+            e,
+            reporterForInitializationErrors,
+            maxLogBytes,
+            alreadyFoundCorruption);
+      }
+    }
+    return new MappedPersistentActionCache(indexer, log, clock);
+  }
+
+  private static MappedPersistentActionCache logAndThrowOrRecurse(
+      Path cacheRoot,
+      Clock clock,
+      String message,
+      IOException e,
+      EventHandler reporterForInitializationErrors,
+      int maxLogBytes,
+      boolean alreadyFoundCorruption)
+      throws IOException {
+    renameCorruptedFiles(cacheRoot);
+    if (message != null) {
+      e = new IOException(message, e);
+    }
+    logger.atWarning().withCause(e).log("Failed to load action cache");
+    reporterForInitializationErrors.handle(
+        Event.error(
+            "Error during action cache initialization: "
+                + e.getMessage()
+                + ". Corrupted files were renamed to '"
+                + cacheRoot
+                + "/*.bad'. "
+                + "Bazel will now reset action cache data, potentially causing rebuilds"));
+    if (alreadyFoundCorruption) {
+      throw e;
+    }
+    return create(
+        cacheRoot,
+        clock,
+        reporterForInitializationErrors,
+        maxLogBytes,
+        /*alreadyFoundCorruption=*/ true);
+  }
+
+  private static void renameCorruptedFiles(Path cacheRoot) {
+    for (Path path :
+        new Path[] {
+          logFile(cacheRoot),
+          indexFile(cacheRoot),
+          indexFile(cacheRoot).getParentDirectory().getChild(indexJournalName())
+        }) {
+      try {
+        if (path.exists()) {
+          path.renameTo(path.getParentDirectory().getChild(path.getBaseName() + ".bad"));
+        }
+      } catch (IOException e) {
+        logger.atWarning().withCause(e).log("Unable to rename corrupted action cache file");
+      }
+    }
+  }
+
+  public static Path logFile(Path cacheRoot) {
+    return cacheRoot.getChild("mapped_action_log_v" + VERSION + ".blaze");
+  }
+
+  private static Path indexFile(Path cacheRoot) {
+    return cacheRoot.getChild("mapped_filename_index_v" + VERSION + ".blaze");
+  }
+
+  private static String indexJournalName() {
+    return "mapped_filename_index_v" + VERSION + ".journal";
+  }
+
+  private static byte[] toArray(ByteBuffer buffer) {
+    byte[] data = new byte[buffer.remaining()];
+    buffer.get(data);
+    return data;
+  }
+
+  @Override
+  public ActionCache.Entry get(String key) {
+    int index = indexer.getIndex(key);
+    if (index < 0) {
+      return null;
+    }
+    ByteBuffer data = log.get(index);
+    try {
+      return data != null ? CompactPersistentActionCache.decode(indexer, data) : null;
+    } catch (IOException e) {
+      // return entry marked as corrupted.
+      return ActionCache.Entry.CORRUPTED;
+    }
+  }
+
+  @Override
+  public void put(String key, ActionCache.Entry entry) {
+    // Encode record. Note that both methods may create new mappings in the indexer.
+    int index = indexer.getOrCreateIndex(key);
+    byte[] content;
+    try {
+      content = CompactPersistentActionCache.encode(indexer, entry);
+      append(() -> log.put(index, content));
+    } catch (IOException e) {
+      logger.atWarning().withCause(e).log("Failed to save cache entry %s with key %s", entry, key);
+      return;
+    }
+    maybeCommit();
+    maybeCompact();
+  }
+
+  @Override
+  public void remove(String key) {
+    int index = indexer.getIndex(key);
+    if (index < 0) {
+      return;
+    }
+    try {
+      append(() -> log.remove(index));
+    } catch (IOException e) {
+      logger.atWarning().withCause(e).log("Failed to remove cache entry with key %s", key);
+    }
+  }
+
+  private interface Append {
+    void run() throws IOException;
+  }
+
+  /**
+   * Runs {@code append}, making room in the log if it is full: first by compacting it, and if the
+   * live entries alone fill it, by dropping all entries.
+   */
+  private void append(Append append) throws IOException {
+    try {
+      append.run();
+      return;
+    } catch (MappedRecordLog.FullException e) {
+      // Make room below.
+    }
+    synchronized (makeRoomLock) {
+      while (!compacting.compareAndSet(false, true)) {
+        awaitCompaction();
+      }
+      try {
+        try {
+          append.run();
+          return;
+        } catch (MappedRecordLog.FullException e) {
+          // Another thread did not make enough room in the meantime.
+        }
+        log.compact();
+        try {
+          append.run();
+          return;
+        } catch (MappedRecordLog.FullException e) {
+          logger.atWarning().withCause(e).log("Action cache is full, dropping all entries");
+        }
+        log.clear();
+        append.run();
+      } finally {
+        compacting.set(false);
+      }
+    }
+  }
+
+  /**
+   * Makes appended entries visible to future servers once the string indexer has caught up with
+   * them. Mirrors the journal flushing of {@link CompactPersistentActionCache}.
+   */
+  private void maybeCommit() {
+    long now = clock.nanoTime();
+    long next = nextCommitNanos.get();
+    if (now < next
+        || !nextCommitNanos.compareAndSet(
+            next, now + TimeUnit.SECONDS.toNanos(COMMIT_INTERVAL_SECONDS))) {
+      return;
+    }
+    try {
+      commit();
+    } catch (IOException e) {
+      logger.atWarning().withCause(e).log("Failed to commit action cache entries");
+    }
+  }
+
+  private void commit() throws IOException {
+    // Write the validation record before flushing the indexer, so that the indexer on disk is at
+    // least as large as the committed validation record.
+    ByteBuffer buffer = ByteBuffer.allocate(4); // size of int in bytes
+    buffer.asIntBuffer().put(indexer.size());
+    log.put(CompactPersistentActionCache.VALIDATION_KEY, buffer.array());
+    indexer.flush();
+    log.commit();
+  }
+
+  private void maybeCompact() {
+    int length = log.length();
+    if (length < MIN_COMPACTION_BYTES || log.liveBytes() * 2 > length) {
+      return;
+    }
+    if (!compacting.compareAndSet(false, true)) {
+      return;
+    }
+    pendingCompaction =
+        compactionExecutor.submit(
+            () -> {
+              try {
+                log.compact();
+              } catch (IOException e) {
+                logger.atWarning().withCause(e).log("Failed to compact the action cache");
+              } finally {
+                compacting.set(false);
+              }
+            });
+  }
+
+  @ThreadSafety.ThreadHostile
+  @Override
+  public long save() throws IOException {
+    awaitCompaction();
+    commit();
+    long indexSize = indexer.save();
+    long logSize = log.save();
+    return indexSize + logSize;
+  }
+
+  @ThreadSafety.ThreadHostile
+  @Override
+  public void clear() {
+    awaitCompaction();
+    indexer.clear();
+    log.clear();
+  }
+
+  /** Stops compacting the log and closes it. The cache must not be used afterwards. */
+  @ThreadSafety.ThreadHostile
+  @Override
+  public void close() throws IOException {
+    compactionExecutor.shutdown();
+    awaitCompaction();
+    log.close();
+  }
+
+  private void awaitCompaction() {
+    Future<?> compaction = pendingCompaction;
+    if (compaction != null) {
+      try {
+        Uninterruptibles.getUninterruptibly(compaction);
+      } catch (ExecutionException e) {
+        // Already logged by the compaction itself.
+      }
+    }
+  }
+
+  @Override
+  public String toString() {
+    // log.size() - 1 to avoid counting the validation key.
+    return "Mapped action cache (" + Math.max(0, log.size() - 1) + " records)";
+  }
+
+  /** Dumps action cache content. */
+  @Override
+  public void dump(PrintStream out) {
+    out.println("String indexer content:\n");
+    out.println(indexer);
+    out.println("Action cache (" + log.size() + " records):\n");
+    log.forEach(
+        (key, data) -> {
+          if (key == CompactPersistentActionCache.VALIDATION_KEY) {
+            return;
+          }
+          int packedLength = data.remaining();
+          String content;
+          try {
+            content = CompactPersistentActionCache.decode(indexer, data).toString();
+          } catch (IOException e) {
+            content = e + "\n";
+          }
+          out.println(
+              key
+                  + ", "
+                  + indexer.getStringForIndex(key)
+                  + ":\n"
+                  + content
+                  + "\n      packed_len = "
+                  + packedLength
+                  + "\n");
+        });
+  }
+
+  @Override
+  public void accountHit() {
+    hits.incrementAndGet();
+  }
+
+  @Override
+  public void accountMiss(MissReason reason) {
+    AtomicInteger counter = misses.get(reason);
+    Preconditions.checkNotNull(
+        counter,
+        "Miss reason %s was not registered in the misses map " + "during cache construction",
+        reason);
+    counter.incrementAndGet();
+  }
+
+  @Override
+  public void mergeIntoActionCacheStatistics(ActionCacheStatistics.Builder builder) {
+    builder.setHits(hits.get());
+
+    int totalMisses = 0;
+    for (Map.Entry<MissReason, AtomicInteger> entry : misses.entrySet()) {
+      int count = entry.getValue().get();
+      builder.addMissDetailsBuilder().setReason(entry.getKey()).setCount(count);
+      totalMisses += count;
+    }
+    builder.setMisses(totalMisses);
+  }
+
+  @Override
+  public void resetStatistics() {
+    hits.set(0);
+    for (Map.Entry<MissReason, AtomicInteger> entry : misses.entrySet()) {
+      entry.getValue().set(0);
+    }
+  }
+}
@@ -0,0 +1,596 @@
+// Copyright 2026 The Bazel Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.google.devtools.build.lib.actions.cache;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.devtools.build.lib.concurrent.ThreadSafety.ThreadSafe;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
+import javax.annotation.Nullable;
+
+/**
+ * A memory-mapped, append-only log of {@code int -> byte[]} records with an off-heap hash index.
+ *
+ * <p>The file starts with a fixed header (magic, version, committed length) followed by records of
+ * the form {@code [int key][int length][length bytes]}. A length of {@link #TOMBSTONE} marks a
+ * removal. Puts and removals append to the log; lookups return a read-only view of the mapped
+ * record without copying. Only records before the committed length are read back on load, which
+ * lets the caller decide when appended records become durable (see {@link #commit}).
+ *
+ * <p>Overwritten and removed records stay in the file until {@link #compact} rewrites it. The
+ * compaction copies live records without blocking readers or writers and only takes the write lock
+ * to replay records appended in the meantime and to swap files.
+ *
+ * <p>The log is limited to 2 GiB, the maximum size of a single {@link MappedByteBuffer}. Appending
+ * to a full log throws a {@link FullException}, after which the caller may compact or clear it.
+ */
+@ThreadSafe
+final class MappedRecordLog {
+
+  private static final int MAGIC = 0x4241434c; // "BACL"
+  private static final int MAGIC_OFFSET = 0;
+  private static final int VERSION_OFFSET = 4;
+  private static final int COMMITTED_OFFSET = 8;
+  @VisibleForTesting static final int HEADER_SIZE = 16;
+  private static final int RECORD_HEADER_SIZE = 8;
+  private static final int TOMBSTONE = -1;
+  private static final int INITIAL_CAPACITY = 1 << 20;
+  private static final int MAX_CAPACITY = Integer.MAX_VALUE;
+
+  /** Thrown when a record does not fit in the log. */
+  static final class FullException extends IOException {
+    private FullException(long required) {
+      super("action cache log is full, " + required + " bytes required");
+    }
+  }
+
+  private final Path path;
+  private final int version;
+  private final int maxCapacity;
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+  // All fields below are guarded by lock.
+  private FileChannel channel;
+  private MappedByteBuffer buffer;
+  private OffHeapIndex index;
+  private int end;
+  private int liveBytes;
+
+  private MappedRecordLog(Path path, int version, int maxCapacity) {
+    this.path = path;
+    this.version = version;
+    this.maxCapacity = maxCapacity;
+  }
+
+  /**
+   * Opens the log at {@code path}, creating it if needed, and indexes its committed records.
+   *
+   * @throws IOException if the file cannot be mapped or its content is corrupted
+   */
+  static MappedRecordLog open(Path path, int version) throws IOException {
+    return open(path, version, MAX_CAPACITY);
+  }
+
+  /** Opens the log at {@code path}, which may grow to at most {@code maxCapacity} bytes. */
+  @VisibleForTesting
+  static MappedRecordLog open(Path path, int version, int maxCapacity) throws IOException {
+    checkArgument(maxCapacity > HEADER_SIZE, "maxCapacity too small: %s", maxCapacity);
+    MappedRecordLog log = new MappedRecordLog(path, version, maxCapacity);
+    log.load();
+    return log;
+  }
+
+  private void load() throws IOException {
+    boolean exists = Files.exists(path);
+    channel =
+        FileChannel.open(
+            path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    long size = channel.size();
+    if (size > maxCapacity) {
+      throw new IOException("action cache log too large: " + size);
+    }
+    buffer = channel.map(MapMode.READ_WRITE, 0, Math.max(size, initialCapacity()));
+    index = new OffHeapIndex(OffHeapIndex.MIN_CAPACITY);
+    if (!exists || size == 0) {
+      writeHeader();
+      return;
+    }
+    if (buffer.getInt(MAGIC_OFFSET) != MAGIC) {
+      throw new IOException("action cache log has a bad magic number");
+    }
+    if (buffer.getInt(VERSION_OFFSET) != version) {
+      throw new IOException("action cache log has an incompatible version");
+    }
+    long committed = buffer.getLong(COMMITTED_OFFSET);
+    if (committed < HEADER_SIZE || committed > size) {
+      throw new IOException("action cache log has an invalid length: " + committed);
+    }
+    end = HEADER_SIZE;
+    while (end < committed) {
+      if (committed - end < RECORD_HEADER_SIZE) {
+        throw new IOException("action cache log ends with a truncated record");
+      }
+      int key = buffer.getInt(end);
+      int length = buffer.getInt(end + 4);
+      if (length != TOMBSTONE && (length < 0 || length > committed - end - RECORD_HEADER_SIZE)) {
+        throw new IOException("action cache log has an invalid record length: " + length);
+      }
+      apply(key, end, length);
+    }
+  }
+
+  private int initialCapacity() {
+    return Math.min(INITIAL_CAPACITY, maxCapacity);
+  }
+
+  private void writeHeader() {
+    buffer.putInt(MAGIC_OFFSET, MAGIC);
+    buffer.putInt(VERSION_OFFSET, version);
+    buffer.putLong(COMMITTED_OFFSET, HEADER_SIZE);
+    end = HEADER_SIZE;
+    liveBytes = 0;
+  }
+
+  /** Indexes the record at {@code offset} and advances {@link #end} past it. */
+  private void apply(int key, int offset, int length) {
+    if (length == TOMBSTONE) {
+      long previous = index.remove(key);
+      if (previous >= 0) {
+        liveBytes -= recordSize((int) previous);
+      }
+      end = offset + RECORD_HEADER_SIZE;
+    } else {
+      long previous = index.put(key, offset);
+      if (previous >= 0) {
+        liveBytes -= recordSize((int) previous);
+      }
+      liveBytes += RECORD_HEADER_SIZE + length;
+      end = offset + RECORD_HEADER_SIZE + length;
+    }
+  }
+
+  private int recordSize(int offset) {
+    return RECORD_HEADER_SIZE + buffer.getInt(offset + 4);
+  }
+
+  /**
+   * Returns a read-only view of the value stored for {@code key}, or null. The view stays valid
+   * even if the log is later grown or compacted.
+   */
+  @Nullable
+  ByteBuffer get(int key) {
+    lock.readLock().lock();
+    try {
+      long offset = index.get(key);
+      if (offset < 0) {
+        return null;
+      }
+      int start = (int) offset + RECORD_HEADER_SIZE;
+      ByteBuffer view = buffer.asReadOnlyBuffer();
+      view.limit(start + buffer.getInt((int) offset + 4)).position(start);
+      return view.slice();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /** Appends a record for {@code key}, replacing any previous value. */
+  void put(int key, byte[] value) throws IOException {
+    lock.writeLock().lock();
+    try {
+      int offset = end;
+      ensureCapacity((long) offset + RECORD_HEADER_SIZE + value.length);
+      buffer.putInt(offset, key);
+      buffer.putInt(offset + 4, value.length);
+      ByteBuffer target = buffer.duplicate();
+      target.position(offset + RECORD_HEADER_SIZE);
+      target.put(value);
+      apply(key, offset, value.length);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /** Appends a removal record for {@code key} if it is present. */
+  void remove(int key) throws IOException {
+    lock.writeLock().lock();
+    try {
+      if (index.get(key) < 0) {
+        return;
+      }
+      int offset = end;
+      ensureCapacity((long) offset + RECORD_HEADER_SIZE);
+      buffer.putInt(offset, key);
+      buffer.putInt(offset + 4, TOMBSTONE);
+      apply(key, offset, TOMBSTONE);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  private void ensureCapacity(long required) throws IOException {
+    if (required <= buffer.capacity()) {
+      return;
+    }
+    if (required > maxCapacity) {
+      throw new FullException(required);
+    }
+    long capacity = Math.min(maxCapacity, Math.max(required, 2L * buffer.capacity()));
+    // The previous mapping stays valid for views handed out by get() until it is collected.
+    buffer = channel.map(MapMode.READ_WRITE, 0, capacity);
+  }
+
+  /**
+   * Marks every record appended so far as part of the log. Uncommitted records live in the page
+   * cache but are ignored by the next {@link #open}.
+   */
+  void commit() {
+    lock.writeLock().lock();
+    try {
+      buffer.putLong(COMMITTED_OFFSET, end);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /** Commits and flushes the log to disk. Returns the size of the log in bytes. */
+  long save() {
+    lock.writeLock().lock();
+    try {
+      buffer.putLong(COMMITTED_OFFSET, end);
+      buffer.force();
+      return end;
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /** Removes all records. */
+  void clear() {
+    lock.writeLock().lock();
+    try {
+      index = new OffHeapIndex(OffHeapIndex.MIN_CAPACITY);
+      writeHeader();
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /** Closes the underlying file. The log must not be used afterwards. */
+  void close() throws IOException {
+    lock.writeLock().lock();
+    try {
+      channel.close();
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /** Returns the number of live records. */
+  int size() {
+    lock.readLock().lock();
+    try {
+      return index.size();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /** Returns the number of bytes taken by live records, excluding the header. */
+  int liveBytes() {
+    lock.readLock().lock();
+    try {
+      return liveBytes;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /** Returns the number of bytes written to the log, including overwritten records. */
+  int length() {
+    lock.readLock().lock();
+    try {
+      return end;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /** Calls {@code consumer} with every live record, in log order. */
+  void forEach(BiConsumer<Integer, ByteBuffer> consumer) {
+    lock.readLock().lock();
+    try {
+      for (int offset = HEADER_SIZE; offset < end; ) {
+        int key = buffer.getInt(offset);
+        int length = buffer.getInt(offset + 4);
+        if (length == TOMBSTONE) {
+          offset += RECORD_HEADER_SIZE;
+          continue;
+        }
+        if (index.get(key) == offset) {
+          ByteBuffer view = buffer.asReadOnlyBuffer();
+          view.limit(offset + RECORD_HEADER_SIZE + length).position(offset + RECORD_HEADER_SIZE);
+          consumer.accept(key, view.slice());
+        }
+        offset += RECORD_HEADER_SIZE + length;
+      }
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Rewrites the log so that it only contains live records.
+   *
+   * <p>Records are immutable once appended, so the bulk of the copy happens while other threads
+   * keep reading and appending; liveness is checked against the index under the read lock. Only
+   * committed records are copied that way. Records appended since are replayed under the write
+   * lock right before the files are swapped, and the committed length of the new file ends where
+   * the replayed records stop being committed in the old one. A committed record that is
+   * overwritten or removed by an uncommitted one is not kept, so a crash before the next commit
+   * may lose it, which only costs a cache miss.
+   *
+   * <p>Must not be called concurrently with itself, {@link #clear} or {@link #close}.
+   */
+  void compact() throws IOException {
+    MappedByteBuffer source;
+    int copyEnd;
+    lock.readLock().lock();
+    try {
+      source = buffer;
+      copyEnd = committed();
+    } finally {
+      lock.readLock().unlock();
+    }
+
+    Path tmp = path.resolveSibling(path.getFileName() + ".compacting");
+    Files.deleteIfExists(tmp);
+    MappedRecordLog target = new MappedRecordLog(tmp, version, maxCapacity);
+    target.channel =
+        FileChannel.open(
+            tmp, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    boolean swapped = false;
+    try {
+      target.buffer = target.channel.map(MapMode.READ_WRITE, 0, initialCapacity());
+      target.index = new OffHeapIndex(OffHeapIndex.MIN_CAPACITY);
+      target.writeHeader();
+
+      for (int offset = HEADER_SIZE; offset < copyEnd; ) {
+        int key = source.getInt(offset);
+        int length = source.getInt(offset + 4);
+        int next = offset + RECORD_HEADER_SIZE + (length == TOMBSTONE ? 0 : length);
+        if (length != TOMBSTONE && isLive(key, offset)) {
+          target.copyRecord(source, offset, key, length);
+        }
+        offset = next;
+      }
+
+      lock.writeLock().lock();
+      try {
+        int committed = committed();
+        target.replay(buffer, index, copyEnd, committed);
+        target.buffer.putLong(COMMITTED_OFFSET, target.end);
+        target.replay(buffer, index, committed, end);
+        target.buffer.force();
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        channel.close();
+        channel = target.channel;
+        buffer = target.buffer;
+        index = target.index;
+        end = target.end;
+        liveBytes = target.liveBytes;
+        swapped = true;
+      } finally {
+        lock.writeLock().unlock();
+      }
+    } finally {
+      if (!swapped) {
+        target.channel.close();
+        Files.deleteIfExists(tmp);
+      }
+    }
+  }
+
+  private int committed() {
+    return (int) buffer.getLong(COMMITTED_OFFSET);
+  }
+
+  /**
+   * Appends copies of the live records between {@code from} and {@code to} in {@code source}, and
+   * the removals of records that this log has.
+   */
+  private void replay(ByteBuffer source, OffHeapIndex sourceIndex, int from, int to)
+      throws IOException {
+    for (int offset = from; offset < to; ) {
+      int key = source.getInt(offset);
+      int length = source.getInt(offset + 4);
+      if (length == TOMBSTONE) {
+        // The removed record may have been copied before the committed length, so the removal has
+        // to be in the file too.
+        if (index.get(key) >= 0) {
+          int targetOffset = end;
+          ensureCapacity((long) targetOffset + RECORD_HEADER_SIZE);
+          buffer.putInt(targetOffset, key);
+          buffer.putInt(targetOffset + 4, TOMBSTONE);
+          apply(key, targetOffset, TOMBSTONE);
+        }
+        offset += RECORD_HEADER_SIZE;
+      } else {
+        if (sourceIndex.get(key) == offset) {
+          copyRecord(source, offset, key, length);
+        }
+        offset += RECORD_HEADER_SIZE + length;
+      }
+    }
+  }
+
+  private boolean isLive(int key, int offset) {
+    lock.readLock().lock();
+    try {
+      return index.get(key) == offset;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /** Appends a copy of the record at {@code offset} in {@code source} to this log. */
+  private void copyRecord(ByteBuffer source, int offset, int key, int length) throws IOException {
+    int targetOffset = end;
+    ensureCapacity((long) targetOffset + RECORD_HEADER_SIZE + length);
+    ByteBuffer record = source.duplicate();
+    record.limit(offset + RECORD_HEADER_SIZE + length).position(offset);
+    ByteBuffer destination = buffer.duplicate();
+    destination.position(targetOffset);
+    destination.put(record);
+    long previous = index.put(key, targetOffset);
+    if (previous >= 0) {
+      liveBytes -= recordSize((int) previous);
+    }
+    liveBytes += RECORD_HEADER_SIZE + length;
+    end = targetOffset + RECORD_HEADER_SIZE + length;
+  }
+
+  /**
+   * An open-addressing {@code int -> long} hash map with linear probing, stored in direct buffers
+   * so that it does not add to the Java heap or to GC work. Not thread-safe.
+   */
+  private static final class OffHeapIndex {
+    static final int MIN_CAPACITY = 1 << 10;
+    private static final int EMPTY = Integer.MIN_VALUE;
+
+    private IntBuffer keys;
+    private LongBuffer values;
+    private int mask;
+    private int size;
+
+    OffHeapIndex(int capacity) {
+      checkArgument(Integer.bitCount(capacity) == 1, "capacity must be a power of two");
+      allocate(capacity);
+    }
+
+    private void allocate(int capacity) {
+      keys = ByteBuffer.allocateDirect(capacity * Integer.BYTES).asIntBuffer();
+      values = ByteBuffer.allocateDirect(capacity * Long.BYTES).asLongBuffer();
+      for (int i = 0; i < capacity; i++) {
+        keys.put(i, EMPTY);
+      }
+      mask = capacity - 1;
+      size = 0;
+    }
+
+    int size() {
+      return size;
+    }
+
+    private int slot(int key) {
+      int h = key * 0x9E3779B9;
+      return (h ^ (h >>> 16)) & mask;
+    }
+
+    /** Returns the value for {@code key}, or -1. */
+    long get(int key) {
+      for (int i = slot(key); ; i = (i + 1) & mask) {
+        int k = keys.get(i);
+        if (k == key) {
+          return values.get(i);
+        }
+        if (k == EMPTY) {
+          return -1;
+        }
+      }
+    }
+
+    /** Associates {@code value} with {@code key} and returns the previous value, or -1. */
+    long put(int key, long value) {
+      checkArgument(key != EMPTY && value >= 0);
+      if ((size + 1) * 2 > mask + 1) {
+        grow();
+      }
+      for (int i = slot(key); ; i = (i + 1) & mask) {
+        int k = keys.get(i);
+        if (k == key) {
+          long previous = values.get(i);
+          values.put(i, value);
+          return previous;
+        }
+        if (k == EMPTY) {
+          keys.put(i, key);
+          values.put(i, value);
+          size++;
+          return -1;
+        }
+      }
+    }
+
+    /** Removes {@code key} and returns its value, or -1 if it was absent. */
+    long remove(int key) {
+      int i = slot(key);
+      while (true) {
+        int k = keys.get(i);
+        if (k == EMPTY) {
+          return -1;
+        }
+        if (k == key) {
+          break;
+        }
+        i = (i + 1) & mask;
+      }
+      long previous = values.get(i);
+      // Shift back the following entries of the probe sequence instead of leaving a tombstone.
+      for (int j = (i + 1) & mask; ; j = (j + 1) & mask) {
+        int k = keys.get(j);
+        if (k == EMPTY) {
+          break;
+        }
+        int home = slot(k);
+        boolean reachable = i <= j ? (i < home && home <= j) : (i < home || home <= j);
+        if (!reachable) {
+          keys.put(i, k);
+          values.put(i, values.get(j));
+          i = j;
+        }
+      }
+      keys.put(i, EMPTY);
+      size--;
+      return previous;
+    }
+
+    private void grow() {
+      IntBuffer oldKeys = keys;
+      LongBuffer oldValues = values;
+      int oldCapacity = mask + 1;
+      allocate(oldCapacity * 2);
+      for (int i = 0; i < oldCapacity; i++) {
+        int k = oldKeys.get(i);
+        if (k != EMPTY) {
+          put(k, oldValues.get(i));
+        }
+      }
+    }
+  }
+}
@@ -65,11 +65,11 @@ public final class CustomCommandLine extends CommandLine {
      *
      * @param arguments The command line's argument vector.
      * @param argi The index of the next available argument.
-     * @param builder The command line builder to which we should add arguments.
+     * @param consumer The consumer to which we should pass the arguments.
      * @return The index of the next argument, after the ArgvFragment has consumed its args. If the
      *     ArgvFragment doesn't have any args, it should return {@code argi} unmodified.
      */
-    int eval(List<Object> arguments, int argi, ImmutableList.Builder<String> builder)
+    int eval(List<Object> arguments, int argi, Consumer<String> consumer)
         throws CommandLineExpansionException, InterruptedException;
 
     int addToFingerprint(
@@ -87,12 +87,12 @@ public final class CustomCommandLine extends CommandLine {
    */
   private abstract static class StandardArgvFragment implements ArgvFragment {
     @Override
-    public final int eval(List<Object> arguments, int argi, ImmutableList.Builder<String> builder) {
-      eval(builder);
+    public final int eval(List<Object> arguments, int argi, Consumer<String> consumer) {
+      eval(consumer);
       return argi; // Doesn't consume any arguments, so return argi unmodified
     }
 
-    abstract void eval(ImmutableList.Builder<String> builder);
+    abstract void eval(Consumer<String> consumer);
 
     @Override
     public int addToFingerprint(
@@ -362,63 +362,62 @@ public final class CustomCommandLine extends CommandLine {
 
       @SuppressWarnings("unchecked")
       @Override
-      public int eval(List<Object> arguments, int argi, ImmutableList.Builder<String> builder)
+      public int eval(List<Object> arguments, int argi, Consumer<String> consumer)
           throws CommandLineExpansionException, InterruptedException {
-        final List<String> mutatedValues;
         CommandLineItem.MapFn<Object> mapFn =
             hasMapEach ? (CommandLineItem.MapFn<Object>) arguments.get(argi++) : null;
+        // A NestedSet, or the number of values that follow.
+        Object values = arguments.get(argi++);
+        int valuesArgi = argi;
+        if (!isNestedSet) {
+          argi += (Integer) values;
+        }
+        String formatStr = hasFormatEach ? (String) arguments.get(argi++) : null;
+        String beforeEach = hasBeforeEach ? (String) arguments.get(argi++) : null;
+        String joinWith = hasJoinWith ? (String) arguments.get(argi++) : null;
+
+        // Each value is passed on as soon as it is mapped and formatted, unless they are joined.
+        List<String> joined = hasJoinWith ? new ArrayList<>() : null;
+        Consumer<String> each = // Hoisted out of the loops to reduce GC
+            value -> {
+              if (formatStr != null) {
+                value = SingleStringArgFormatter.format(formatStr, value);
+              }
+              if (joined != null) {
+                joined.add(value);
+              } else {
+                if (beforeEach != null) {
+                  consumer.accept(beforeEach);
+                }
+                consumer.accept(value);
+              }
+            };
         if (isNestedSet) {
-          NestedSet<Object> values = (NestedSet<Object>) arguments.get(argi++);
-          ImmutableList<Object> list = values.toList();
-          mutatedValues = new ArrayList<>(list.size());
-          if (mapFn != null) {
-            Consumer<String> args = mutatedValues::add; // Hoist out of loop to reduce GC
-            for (Object object : list) {
-              mapFn.expandToCommandLine(object, args);
-            }
-          } else {
-            for (Object object : list) {
-              mutatedValues.add(CommandLineItem.expandToCommandLine(object));
-            }
+          for (Object object : ((NestedSet<Object>) values).toList()) {
+            expand(mapFn, object, each);
           }
         } else {
-          int count = (Integer) arguments.get(argi++);
-          mutatedValues = new ArrayList<>(count);
-          if (mapFn != null) {
-            Consumer<String> args = mutatedValues::add; // Hoist out of loop to reduce GC
-            for (int i = 0; i < count; ++i) {
-              mapFn.expandToCommandLine(arguments.get(argi++), args);
-            }
-          } else {
-            for (int i = 0; i < count; ++i) {
-              mutatedValues.add(CommandLineItem.expandToCommandLine(arguments.get(argi++)));
-            }
-          }
-        }
-        final int count = mutatedValues.size();
-        if (hasFormatEach) {
-          String formatStr = (String) arguments.get(argi++);
+          int count = (Integer) values;
           for (int i = 0; i < count; ++i) {
-            mutatedValues.set(i, SingleStringArgFormatter.format(formatStr, mutatedValues.get(i)));
+            expand(mapFn, arguments.get(valuesArgi + i), each);
           }
         }
-        if (hasBeforeEach) {
-          String beforeEach = (String) arguments.get(argi++);
-          for (int i = 0; i < count; ++i) {
-            builder.add(beforeEach);
-            builder.add(mutatedValues.get(i));
-          }
-        } else if (hasJoinWith) {
-          String joinWith = (String) arguments.get(argi++);
-          builder.add(Joiner.on(joinWith).join(mutatedValues));
-        } else {
-          for (int i = 0; i < count; ++i) {
-            builder.add(mutatedValues.get(i));
-          }
+        if (joined != null) {
+          consumer.accept(Joiner.on(joinWith).join(joined));
         }
         return argi;
       }
 
+      private static void expand(
+          @Nullable CommandLineItem.MapFn<Object> mapFn, Object object, Consumer<String> each)
+          throws CommandLineExpansionException, InterruptedException {
+        if (mapFn != null) {
+          mapFn.expandToCommandLine(object, each);
+        } else {
+          each.accept(CommandLineItem.expandToCommandLine(object));
+        }
+      }
+
       @SuppressWarnings("unchecked")
       @Override
       public int addToFingerprint(
@@ -500,14 +499,14 @@ public final class CustomCommandLine extends CommandLine {
     }
 
     @Override
-    public int eval(List<Object> arguments, int argi, ImmutableList.Builder<String> builder) {
+    public int eval(List<Object> arguments, int argi, Consumer<String> consumer) {
       int argCount = (Integer) arguments.get(argi++);
       String formatStr = (String) arguments.get(argi++);
       Object[] args = new Object[argCount];
       for (int i = 0; i < argCount; ++i) {
         args[i] = CommandLineItem.expandToCommandLine(arguments.get(argi++));
       }
-      builder.add(String.format(formatStr, args));
+      consumer.accept(String.format(formatStr, args));
       return argi;
     }
 
@@ -541,10 +540,10 @@ public final class CustomCommandLine extends CommandLine {
     }
 
     @Override
-    public int eval(List<Object> arguments, int argi, ImmutableList.Builder<String> builder) {
+    public int eval(List<Object> arguments, int argi, Consumer<String> consumer) {
       String before = (String) arguments.get(argi++);
       Object arg = arguments.get(argi++);
-      builder.add(before + CommandLineItem.expandToCommandLine(arg));
+      consumer.accept(before + CommandLineItem.expandToCommandLine(arg));
       return argi;
     }
 
@@ -591,10 +590,10 @@ public final class CustomCommandLine extends CommandLine {
    */
   private abstract static class TreeArtifactExpansionArgvFragment extends StandardArgvFragment {
     /**
-     * Evaluates this argument fragment into an argument string and adds it into {@code builder}.
+     * Evaluates this argument fragment into an argument string and passes it to {@code consumer}.
      * The enclosed TreeArtifact will be expanded using {@code artifactExpander}.
      */
-    abstract void eval(ImmutableList.Builder<String> builder, ArtifactExpander artifactExpander);
+    abstract void eval(Consumer<String> consumer, ArtifactExpander artifactExpander);
 
     /**
      * Evaluates this argument fragment by serializing it into a string. Note that the returned
@@ -605,8 +604,8 @@ public final class CustomCommandLine extends CommandLine {
      * <p>Internally this method just calls {@link #describe}.
      */
     @Override
-    void eval(ImmutableList.Builder<String> builder) {
-      builder.add(describe());
+    void eval(Consumer<String> consumer) {
+      consumer.accept(describe());
     }
 
     /**
@@ -643,13 +642,13 @@ public final class CustomCommandLine extends CommandLine {
     }
 
     @Override
-    void eval(ImmutableList.Builder<String> builder, ArtifactExpander artifactExpander) {
+    void eval(Consumer<String> consumer, ArtifactExpander artifactExpander) {
       Set<Artifact> expandedArtifacts = new TreeSet<>();
       artifactExpander.expand(treeArtifact, expandedArtifacts);
 
       for (Artifact expandedArtifact : expandedArtifacts) {
         for (String commandLine : expandFunction.apply(expandedArtifact)) {
-          builder.add(commandLine);
+          consumer.accept(commandLine);
         }
       }
     }
@@ -1253,33 +1252,40 @@ public final class CustomCommandLine extends CommandLine {
   private ImmutableList<String> argumentsInternal(@Nullable ArtifactExpander artifactExpander)
       throws CommandLineExpansionException, InterruptedException {
     ImmutableList.Builder<String> builder = ImmutableList.builder();
+    expandArguments(artifactExpander, builder::add);
+    return builder.build();
+  }
+
+  @Override
+  public void expandArguments(
+      @Nullable ArtifactExpander artifactExpander, Consumer<String> consumer)
+      throws CommandLineExpansionException, InterruptedException {
     int count = arguments.size();
     for (int i = 0; i < count; ) {
       Object arg = arguments.get(i++);
       Object substitutedArg = substituteTreeFileArtifactArgvFragment(arg);
       if (substitutedArg instanceof NestedSet) {
-        evalSimpleVectorArg(((NestedSet<?>) substitutedArg).toList(), builder);
+        evalSimpleVectorArg(((NestedSet<?>) substitutedArg).toList(), consumer);
       } else if (substitutedArg instanceof Iterable) {
-        evalSimpleVectorArg((Iterable<?>) substitutedArg, builder);
+        evalSimpleVectorArg((Iterable<?>) substitutedArg, consumer);
       } else if (substitutedArg instanceof ArgvFragment) {
         if (artifactExpander != null
             && substitutedArg instanceof TreeArtifactExpansionArgvFragment) {
           TreeArtifactExpansionArgvFragment expansionArg =
               (TreeArtifactExpansionArgvFragment) substitutedArg;
-          expansionArg.eval(builder, artifactExpander);
+          expansionArg.eval(consumer, artifactExpander);
         } else {
-          i = ((ArgvFragment) substitutedArg).eval(arguments, i, builder);
+          i = ((ArgvFragment) substitutedArg).eval(arguments, i, consumer);
         }
       } else {
-        builder.add(CommandLineItem.expandToCommandLine(substitutedArg));
+        consumer.accept(CommandLineItem.expandToCommandLine(substitutedArg));
       }
     }
-    return builder.build();
   }
 
-  private void evalSimpleVectorArg(Iterable<?> arg, ImmutableList.Builder<String> builder) {
+  private void evalSimpleVectorArg(Iterable<?> arg, Consumer<String> consumer) {
     for (Object value : arg) {
-      builder.add(CommandLineItem.expandToCommandLine(value));
+      consumer.accept(CommandLineItem.expandToCommandLine(value));
     }
   }
 
@@ -27,7 +27,6 @@ import com.google.devtools.build.lib.actions.Artifact;
 import com.google.devtools.build.lib.actions.Artifact.ArtifactExpander;
 import com.google.devtools.build.lib.actions.CommandLine;
 import com.google.devtools.build.lib.actions.CommandLineExpansionException;
-import com.google.devtools.build.lib.actions.ExecException;
 import com.google.devtools.build.lib.actions.ParameterFile;
 import com.google.devtools.build.lib.actions.ParameterFile.ParameterFileType;
 import com.google.devtools.build.lib.actions.UserExecException;
@@ -42,6 +41,7 @@ import com.google.devtools.build.lib.skyframe.serialization.autocodec.AutoCodec.
 import com.google.devtools.build.lib.util.Fingerprint;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
 import javax.annotation.Nullable;
 import net.starlark.java.eval.EvalException;
@@ -116,7 +116,8 @@ public final class ParameterFileWriteAction extends AbstractFileWriteAction {
   public String getStringContents()
       throws CommandLineExpansionException, InterruptedException, IOException {
     ByteArrayOutputStream out = new ByteArrayOutputStream();
-    ParameterFile.writeParameterFile(out, getArguments(), type, ISO_8859_1);
+    ParameterFile.writeParameterFile(
+        out, commandLine, /*artifactExpander=*/ null, type, ISO_8859_1);
     return new String(out.toByteArray(), ISO_8859_1);
   }
 
@@ -134,21 +135,9 @@ public final class ParameterFileWriteAction extends AbstractFileWriteAction {
   }
 
   @Override
-  public DeterministicWriter newDeterministicWriter(ActionExecutionContext ctx)
-      throws ExecException, InterruptedException {
-    final Iterable<String> arguments;
-    try {
-      ArtifactExpander artifactExpander = Preconditions.checkNotNull(ctx.getArtifactExpander());
-      arguments = commandLine.arguments(artifactExpander);
-    } catch (CommandLineExpansionException e) {
-      throw new UserExecException(
-          e,
-          FailureDetail.newBuilder()
-              .setMessage(Strings.nullToEmpty(e.getMessage()))
-              .setSpawn(Spawn.newBuilder().setCode(Code.COMMAND_LINE_EXPANSION_FAILURE))
-              .build());
-    }
-    return new ParamFileWriter(arguments, type);
+  public DeterministicWriter newDeterministicWriter(ActionExecutionContext ctx) {
+    ArtifactExpander artifactExpander = Preconditions.checkNotNull(ctx.getArtifactExpander());
+    return new ParamFileWriter(commandLine, artifactExpander, type);
   }
 
   @VisibleForSerialization
@@ -156,18 +145,52 @@ public final class ParameterFileWriteAction extends AbstractFileWriteAction {
     return Iterables.getOnlyElement(outputs);
   }
 
+  /**
+   * Writes the parameter file while expanding the command line, so that the arguments, which may
+   * number in the hundreds of thousands for a link action, are never held in memory all at once.
+   */
   private static class ParamFileWriter implements DeterministicWriter {
-    private final Iterable<String> arguments;
+    private final CommandLine commandLine;
+    private final ArtifactExpander artifactExpander;
     private final ParameterFileType type;
 
-    ParamFileWriter(Iterable<String> arguments, ParameterFileType type) {
-      this.arguments = arguments;
+    ParamFileWriter(
+        CommandLine commandLine, ArtifactExpander artifactExpander, ParameterFileType type) {
+      this.commandLine = commandLine;
+      this.artifactExpander = artifactExpander;
       this.type = type;
     }
 
     @Override
     public void writeOutputFile(OutputStream out) throws IOException {
-      ParameterFile.writeParameterFile(out, arguments, type, ISO_8859_1);
+      try {
+        ParameterFile.writeParameterFile(out, commandLine, artifactExpander, type, ISO_8859_1);
+      } catch (CommandLineExpansionException e) {
+        throw new CommandLineExpansionIOException(e);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("interrupted while writing parameter file");
+      }
+    }
+  }
+
+  /**
+   * Thrown by {@link DeterministicWriter#writeOutputFile} if the command line of a parameter file
+   * cannot be expanded.
+   */
+  public static final class CommandLineExpansionIOException extends IOException {
+    CommandLineExpansionIOException(CommandLineExpansionException cause) {
+      super(cause.getMessage(), cause);
+    }
+
+    /** Returns the failure to report for this exception. */
+    public UserExecException toExecException() {
+      return new UserExecException(
+          getCause(),
+          FailureDetail.newBuilder()
+              .setMessage(Strings.nullToEmpty(getMessage()))
+              .setSpawn(Spawn.newBuilder().setCode(Code.COMMAND_LINE_EXPANSION_FAILURE))
+              .build());
     }
   }
 
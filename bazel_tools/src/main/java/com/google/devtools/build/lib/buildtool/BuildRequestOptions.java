@@ -422,6 +422,20 @@ public class BuildRequestOptions extends OptionsBase {
       help = "Whether to store output metadata in the action cache")
   public boolean actionCacheStoreOutputMetadata;
 
+  @Option(
+      name = "experimental_mapped_action_cache",
+      defaultValue = "false",
+      documentationCategory = OptionDocumentationCategory.UNDOCUMENTED,
+      effectTags = {
+        OptionEffectTag.BAZEL_INTERNAL_CONFIGURATION,
+        OptionEffectTag.HOST_MACHINE_RESOURCE_OPTIMIZATIONS
+      },
+      help =
+          "If enabled, the action cache is kept in a memory-mapped, append-only log instead of an"
+              + " in-memory map. This reduces heap usage and makes saving the cache at the end of a"
+              + " build cheap. The two formats are stored in separate files.")
+  public boolean useMappedActionCache;
+
   @Option(
       name = "discard_actions_after_execution",
       defaultValue = "true",
@@ -514,6 +528,45 @@ public class BuildRequestOptions extends OptionsBase {
       help = "The number of threads that are used by the FileSystemValueChecker.")
   public int fsvcThreads;
 
+  @Option(
+      name = "experimental_batched_skyframe_invalidation",
+      defaultValue = "false",
+      documentationCategory = OptionDocumentationCategory.UNDOCUMENTED,
+      metadataTags = OptionMetadataTag.EXPERIMENTAL,
+      effectTags = {OptionEffectTag.LOADING_AND_ANALYSIS, OptionEffectTag.EXECUTION},
+      help =
+          "If this flag is set, Skyframe dirties the nodes affected by changed files in waves, "
+              + "handling each node once per wave instead of once per changed dependency.")
+  public boolean batchedSkyframeInvalidation;
+
+  @Option(
+      name = "experimental_local_batch_stat",
+      defaultValue = "false",
+      documentationCategory = OptionDocumentationCategory.UNDOCUMENTED,
+      metadataTags = OptionMetadataTag.EXPERIMENTAL,
+      effectTags = {OptionEffectTag.EXECUTION},
+      help =
+          "If enabled, and no output service provides a batch stat, the outputs of the previous"
+              + " build are checked for changes by stat'ing the entries of each output directory"
+              + " through one descriptor of the directory, instead of resolving each output path"
+              + " on its own. Source files under package roots without diff information are"
+              + " checked the same way. Only has an effect on Unix file systems.")
+  public boolean useLocalBatchStat;
+
+  @Option(
+      name = "experimental_nested_set_flatten_cache_size",
+      defaultValue = "0",
+      documentationCategory = OptionDocumentationCategory.UNDOCUMENTED,
+      metadataTags = OptionMetadataTag.EXPERIMENTAL,
+      effectTags = {OptionEffectTag.BAZEL_INTERNAL_CONFIGURATION},
+      help =
+          "If greater than 0, the lists of elements of nested sets that are flattened more than"
+              + " once, such as transitive classpaths, are kept in memory, so that flattening them"
+              + " again returns the same list, and sets that extend them can be flattened without"
+              + " traversing them again. The number is the total number of elements to keep. Trades"
+              + " memory, and the garbage collection time it costs, for the time of flattening.")
+  public long nestedSetFlattenCacheSize;
+
   @Option(
       name = "experimental_aquery_dump_after_build_format",
       defaultValue = "null",
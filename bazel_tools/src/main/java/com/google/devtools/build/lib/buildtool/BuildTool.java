@@ -39,6 +39,7 @@ import com.google.devtools.build.lib.buildtool.buildevent.BuildStartingEvent;
 import com.google.devtools.build.lib.buildtool.buildevent.NoExecutionEvent;
 import com.google.devtools.build.lib.buildtool.buildevent.StartingAqueryDumpAfterBuildEvent;
 import com.google.devtools.build.lib.cmdline.TargetParsingException;
+import com.google.devtools.build.lib.collect.nestedset.NestedSetFlattenCache;
 import com.google.devtools.build.lib.events.Event;
 import com.google.devtools.build.lib.events.OutputFilter;
 import com.google.devtools.build.lib.events.Reporter;
@@ -188,6 +189,7 @@ public class BuildTool {
       env.throwPendingException();
 
       initializeOutputFilter(request);
+      NestedSetFlattenCache.configure(request.getBuildOptions().nestedSetFlattenCacheSize);
 
       if (request.getBuildOptions().mergedSkyframeAnalysisExecution) {
         // Target pattern evaluation.
@@ -632,6 +634,7 @@ public class BuildTool {
     // Skip the build complete events so that modules can run blazeShutdownOnCrash without thinking
     // that the build completed normally. BlazeCommandDispatcher will call handleCrash.
     if (crash == null) {
+      NestedSetFlattenCache.logStatistics();
       try {
         Profiler.instance().markPhase(ProfilePhase.FINISH);
       } catch (InterruptedException e) {
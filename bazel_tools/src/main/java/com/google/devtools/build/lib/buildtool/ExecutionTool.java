@@ -898,6 +898,7 @@ public class ExecutionTool {
     ExecutionOptions options = request.getOptions(ExecutionOptions.class);
     resourceMgr.setPrioritizeLocalActions(options.prioritizeLocalActions);
     resourceMgr.setUseLocalMemoryEstimate(options.localMemoryEstimate);
+    resourceMgr.setFairScheduling(options.fairResourceScheduling);
     resourceMgr.setAvailableResources(
         ResourceSet.create(
             options.localRamResources,
@@ -25,6 +25,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * A helper class for performing a custom visitation on the Skyframe graph, using {@link
@@ -66,6 +67,9 @@ public abstract class ParallelVisitor<
    */
   private final LinkedBlockingQueue<VisitKeyT> visitQueue = new LinkedBlockingQueue<>();
 
+  /** The number of result batches submitted for processing whose processing has not finished. */
+  private final AtomicInteger pendingResultBatches = new AtomicInteger();
+
   /**
    * The max time interval between two scheduling passes in milliseconds. A scheduling pass is
    * defined as the scheduler thread determining whether to drain all pending visits from the queue
@@ -186,6 +190,20 @@ public abstract class ParallelVisitor<
     executor.visitAndWaitForCompletion();
   }
 
+  /**
+   * Returns the number of result batches that may be pending processing by {@link #callback} before
+   * the scheduler stops starting new visits, or {@link Integer#MAX_VALUE} (the default) for no
+   * limit.
+   *
+   * <p>Visits produce results faster than a slow callback, such as one that formats and writes
+   * them, can consume them. A limit keeps the pending results from piling up in memory and from
+   * crowding out the processing of results in the thread pool. It is a soft limit: a visit that is
+   * already running submits all of its results.
+   */
+  protected int getMaxPendingResultBatches() {
+    return Integer.MAX_VALUE;
+  }
+
   /** Gets the {@link Visit} representing the local visitation of the given {@code values}. */
   protected abstract Visit getVisitResult(Iterable<VisitKeyT> values)
       throws ExceptionT, InterruptedException;
@@ -266,6 +284,7 @@ public abstract class ParallelVisitor<
       Visit visit = getVisitResult(keysToVisit);
       for (Iterable<OutputKeyT> keysToUseForResultBatch :
           Iterables.partition(visit.keysToUseForResult, processResultsBatchSize)) {
+        pendingResultBatches.incrementAndGet();
         executor.execute(
             new GetAndProcessUniqueResultsTask(keysToUseForResultBatch, exceptionClass));
       }
@@ -287,7 +306,11 @@ public abstract class ParallelVisitor<
 
     @Override
     protected void process() throws ExceptionT, InterruptedException {
-      callback.process(outputKeysToOutputValues(uniqueKeysToUseForResult));
+      try {
+        callback.process(outputKeysToOutputValues(uniqueKeysToUseForResult));
+      } finally {
+        pendingResultBatches.decrementAndGet();
+      }
     }
   }
 
@@ -310,6 +333,7 @@ public abstract class ParallelVisitor<
     }
 
     private void visitAndWaitForCompletion() throws ExceptionT, InterruptedException {
+      int maxPendingResultBatches = getMaxPendingResultBatches();
       // The scheduler keeps running until either of the following two conditions are met.
       //
       // 1. Errors (ExceptionT or InterruptedException) occurred and visitations should fail
@@ -321,7 +345,12 @@ public abstract class ParallelVisitor<
         //
         // 1. The number of pending tasks is low. We schedule new tasks to avoid wasting CPU.
         // 2. The process queue size is large.
-        if (getTaskCount() < minPendingTasks || visitQueue.size() >= batchCallbackSize) {
+        //
+        // Either way, the queue is left alone while too many result batches are pending, so that
+        // the callback can catch up. That cannot stall the visitation: each pending batch is a task
+        // that is queued or running.
+        if ((getTaskCount() < minPendingTasks || visitQueue.size() >= batchCallbackSize)
+            && pendingResultBatches.get() < maxPendingResultBatches) {
 
           Collection<VisitKeyT> pendingKeysToVisit = new ArrayList<>(visitQueue.size());
           visitQueue.drainTo(pendingKeysToVisit);
@@ -26,6 +26,8 @@ import com.google.devtools.build.lib.bugreport.CrashContext;
 import com.google.devtools.build.lib.collect.compacthashset.CompactHashSet;
 import com.google.devtools.build.lib.collect.nestedset.NestedSetStore.MissingNestedSetException;
 import com.google.devtools.build.lib.concurrent.MoreFutures;
+import com.google.devtools.build.lib.profiler.Profiler;
+import com.google.devtools.build.lib.profiler.ProfilerTask;
 import com.google.devtools.build.lib.server.FailureDetails.FailureDetail;
 import com.google.devtools.build.lib.server.FailureDetails.Interrupted;
 import com.google.devtools.build.lib.server.FailureDetails.Interrupted.Code;
@@ -576,23 +578,38 @@ public final class NestedSet<E> {
   }
 
   /**
-   * Implementation of {@link #toList}. Uses one of three strategies based on the value of {@code
+   * Implementation of {@link #toList}. Uses one of four strategies based on the value of {@code
    * this.memo}: wrap our direct items in a list, call {@link #lockedExpand} to perform the initial
-   * {@link #walk}, or call {@link #replay} if we have a nontrivial memo.
+   * {@link Walk}, return the list in the {@link NestedSetFlattenCache}, or call {@link #replay} if
+   * we have a nontrivial memo, and cache the result. Sets are cached on their second flattening.
    */
   private ImmutableList<E> expand(Object[] children) {
     // This value is only set in the constructor, so safe to test here with no lock.
     if (memo == NO_MEMO) {
       return ImmutableList.copyOf(new ArraySharingCollection<>(children));
     }
-    CompactHashSet<E> members = lockedExpand(children);
-    if (members != null) {
-      return ImmutableList.copyOf(members);
+    if (memo == null) {
+      ImmutableList<E> list = lockedExpand(children);
+      if (list != null) {
+        return list;
+      }
+    }
+    int size = memoizedFlattenAndGetSize();
+    NestedSetFlattenCache cache = NestedSetFlattenCache.instance();
+    if (cache != null && size >= NestedSetFlattenCache.MIN_CACHED_SIZE) {
+      ImmutableList<E> cached = (ImmutableList<E>) cache.getElements(children);
+      if (cached != null) {
+        return cached;
+      }
     }
-    ImmutableList.Builder<E> output =
-        ImmutableList.builderWithExpectedSize(memoizedFlattenAndGetSize());
-    replay(output, children, memo, 0);
-    return output.build();
+    ImmutableList.Builder<E> output = ImmutableList.builderWithExpectedSize(size);
+    byte[] memo = this.memo;
+    int pos = replay(output, children, memo, 0);
+    ImmutableList<E> list = output.build();
+    if (cache != null) {
+      cache.put(children, list, memo, pos);
+    }
+    return list;
   }
 
   // Hack to share our internal array with ImmutableList/ImmutableSet, or avoid
@@ -621,25 +638,30 @@ public final class NestedSet<E> {
   }
 
   /**
-   * If this is the first call for this object, fills {@code this.memo} and returns a set from
-   * {@link #walk}. Otherwise returns null, in which case some other thread must have completely
-   * populated memo; the caller should use {@link #replay} instead.
+   * If this is the first call for this object, fills {@code this.memo} and returns the elements
+   * found by a {@link Walk}. Otherwise returns null, in which case some other thread must have
+   * completely populated memo; the caller should use {@link #replay} instead.
    */
-  private synchronized CompactHashSet<E> lockedExpand(Object[] children) {
+  @Nullable
+  private synchronized ImmutableList<E> lockedExpand(Object[] children) {
     // Precondition: this is a non-leaf node with non-leaf successors (depth > 2).
     // Postcondition: memo is completely populated.
     if (memo != null) {
       return null;
     }
-    CompactHashSet<E> members = CompactHashSet.createWithExpectedSize(128);
-    CompactHashSet<Object> sets = CompactHashSet.createWithExpectedSize(128);
-    sets.add(children);
-    memo = new byte[3 + Math.min(ceildiv(children.length, 8), 8)]; // (+3 for size: a guess)
-    int pos = walk(sets, members, children, /*pos=*/ 0);
+    long startTime = Profiler.nanoTimeMaybe();
+    Walk<E> walk = new Walk<>(children.length);
+    NestedSetFlattenCache cache = NestedSetFlattenCache.instance();
+    if (cache != null && hasOnlyFirstSuccessorArray(children)) {
+      walk.prefixCache = cache;
+    }
+    walk.sets.add(children);
+    int pos = walk.walk(children, /*pos=*/ 0);
+    byte[] memo = walk.memo;
 
     // Append (nonzero) size to memo, in reverse varint encoding (7 bits at a time, least
     // significant first). Only the first encoded byte's top bit is set.
-    int size = members.size();
+    int size = walk.size();
     Preconditions.checkState(0 < size, "Size must be positive, was %s", size);
     int sizeVarIntLen = varintlen(size);
     int memoOffset = ceildiv(pos, 8);
@@ -655,7 +677,24 @@ public final class NestedSet<E> {
       size >>>= 7;
     }
 
-    return members;
+    ImmutableList<E> list = walk.toList();
+    this.memo = memo;
+    Profiler.instance()
+        .logSimpleTask(startTime, ProfilerTask.NESTED_SET_FLATTEN, "NestedSet.toList");
+    return list;
+  }
+
+  // Whether children[0] is the only array in children.
+  private static boolean hasOnlyFirstSuccessorArray(Object[] children) {
+    if (!(children[0] instanceof Object[])) {
+      return false;
+    }
+    for (int i = 1; i < children.length; i++) {
+      if (children[i] instanceof Object[]) {
+        return false;
+      }
+    }
+    return true;
   }
 
   // varintlen returns the length of the base128 varint encoding of n (n > 0).
@@ -673,46 +712,106 @@ public final class NestedSet<E> {
   }
 
   /**
-   * Perform a depth-first traversal of {@code children}, tracking visited arrays in {@code sets}
-   * and visited leaves in {@code members}. We also record which edges were taken in {@code
-   * this.memo} starting at {@code pos}.
+   * The state of a first, depth-first traversal of a set's DAG, which finds its elements and
+   * records which edges were taken in {@link #memo}.
    *
-   * <p>Returns the final value of {@code pos}.
+   * <p>Visited arrays are tracked in {@link #sets} and visited leaves in {@link #members}. If the
+   * set's only non-leaf successor comes first, as in a set built with {@code
+   * addTransitive(deps).add(jar)}, and it is in the {@link NestedSetFlattenCache}, its recorded
+   * traversal is copied into the memo instead of being repeated, and its elements become the
+   * {@link #prefix} of ours. This is not done when there are other non-leaf successors, because
+   * the arrays below the prefix are not in {@link #sets}, and walking them again on other paths
+   * would cost more than the prefix saves.
    */
-  private int walk(
-      CompactHashSet<Object> sets, CompactHashSet<E> members, Object[] children, int pos) {
-    for (Object child : children) {
-      if ((pos >> 3) >= memo.length) {
-        memo = Arrays.copyOf(memo, memo.length * 2);
+  private static final class Walk<E> {
+    private final CompactHashSet<Object> sets = CompactHashSet.createWithExpectedSize(128);
+    private final CompactHashSet<E> members = CompactHashSet.createWithExpectedSize(128);
+    @Nullable private NestedSetFlattenCache.Flattened prefix;
+    // Where to look up the first successor array, until it has been reached.
+    @Nullable private NestedSetFlattenCache prefixCache;
+    private byte[] memo;
+
+    Walk(int degree) {
+      this.memo = new byte[3 + Math.min(ceildiv(degree, 8), 8)]; // (+3 for size: a guess)
+    }
+
+    int size() {
+      return prefix == null ? members.size() : prefix.elements.size() + members.size();
+    }
+
+    ImmutableList<E> toList() {
+      if (prefix == null) {
+        return ImmutableList.copyOf(members);
       }
-      if (child instanceof Object[]) {
-        if (sets.add(child)) {
-          int prepos = pos;
-          int presize = members.size();
-          pos = walk(sets, members, (Object[]) child, pos + 1);
-          if (presize < members.size()) {
-            memo[prepos >> 3] |= (byte) (1 << (prepos & 7));
+      return ImmutableList.<E>builderWithExpectedSize(size())
+          .addAll((ImmutableList<E>) prefix.elements)
+          .addAll(members)
+          .build();
+    }
+
+    /**
+     * Walks {@code children}, whose edges are numbered from {@code pos} in {@link #memo}, and
+     * returns the number following the last one.
+     */
+    int walk(Object[] children, int pos) {
+      for (Object child : children) {
+        if ((pos >> 3) >= memo.length) {
+          memo = Arrays.copyOf(memo, memo.length * 2);
+        }
+        if (child instanceof Object[]) {
+          if (sets.add(child)) {
+            int prepos = pos;
+            int presize = size();
+            NestedSetFlattenCache.Flattened cached = null;
+            if (prefixCache != null) {
+              cached = prefixCache.getPrefix((Object[]) child);
+              prefixCache = null;
+            }
+            if (cached != null) {
+              prefix = cached;
+              pos = copyMemo(cached.memo, cached.memoBits, pos + 1);
+            } else {
+              pos = walk((Object[]) child, pos + 1);
+            }
+            if (presize < size()) {
+              memo[prepos >> 3] |= (byte) (1 << (prepos & 7));
+            } else {
+              // We didn't find any new nodes, so don't mark this branch as taken.
+              // Rewind pos.  The rest of the array is still zeros because no one
+              // deeper in the traversal set any bits.
+              pos = prepos + 1;
+            }
           } else {
-            // We didn't find any new nodes, so don't mark this branch as taken.
-            // Rewind pos.  The rest of the array is still zeros because no one
-            // deeper in the traversal set any bits.
-            pos = prepos + 1;
+            pos++;
           }
         } else {
+          if ((prefix == null || !prefix.contains(child)) && members.add((E) child)) {
+            memo[pos >> 3] |= (byte) (1 << (pos & 7));
+          }
           pos++;
         }
-      } else {
-        if (members.add((E) child)) {
-          memo[pos >> 3] |= (byte) (1 << (pos & 7));
+      }
+      return pos;
+    }
+
+    // Sets the bits of memo from pos on to the first n bits of src, and returns pos + n.
+    private int copyMemo(byte[] src, int n, int pos) {
+      int end = pos + n;
+      if (ceildiv(end, 8) > memo.length) {
+        memo = Arrays.copyOf(memo, Math.max(memo.length * 2, ceildiv(end, 8)));
+      }
+      for (int i = 0; i < n; i++) {
+        if ((src[i >> 3] & (1 << (i & 7))) != 0) {
+          int j = pos + i;
+          memo[j >> 3] |= (byte) (1 << (j & 7));
         }
-        pos++;
       }
+      return end;
     }
-    return pos;
   }
 
   /**
-   * Repeat a previous traversal of {@code children} performed by {@link #walk} and recorded in
+   * Repeat a previous traversal of {@code children} performed by {@link Walk} and recorded in
    * {@code memo}, appending leaves to {@code output}.
    */
   private static <E> int replay(
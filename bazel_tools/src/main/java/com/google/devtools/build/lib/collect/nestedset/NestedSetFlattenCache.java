@@ -0,0 +1,204 @@
+// Copyright 2026 The Bazel Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.google.devtools.build.lib.collect.nestedset;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.devtools.build.lib.profiler.Profiler;
+import com.google.devtools.build.lib.profiler.ProfilerTask;
+import java.util.concurrent.atomic.LongAdder;
+import javax.annotation.Nullable;
+
+/**
+ * A bounded, weak-keyed cache of the elements of flattened {@link NestedSet} nodes.
+ *
+ * <p>Transitive sets such as classpaths are flattened many times: once by each action or rule that
+ * consumes them, and again, implicitly, whenever a set that contains them is flattened for the
+ * first time. A {@link NestedSet} memoizes which edges of its traversal yield new elements, so
+ * flattening it again needs no hashing, but the result list is still rebuilt each time, and the
+ * first flattening of a set walks the whole DAG below it even if its successors were flattened
+ * before.
+ *
+ * <p>This cache maps the children array of a non-leaf node to the node's elements in traversal
+ * order, along with the node's memo. {@link NestedSet#toList} returns the cached list as is. And
+ * when the first flattening of a set starts with a successor that is in the cache, as a set built
+ * with {@code addTransitive(deps).add(jar)} in compile order does, the successor's memo becomes
+ * the prefix of the set's memo, and the rest of the traversal is deduplicated against the
+ * successor's elements without walking its DAG again.
+ *
+ * <p>Only nodes with at least {@link #MIN_CACHED_SIZE} elements are cached, and only when they are
+ * flattened for the second time: most sets are flattened just once, and replaying a memo is cheap,
+ * so that caching them on the first flattening costs more than it saves. The cache holds a
+ * configured number of elements in all; when it is full, its admission policy keeps the nodes
+ * flattened most often. Entries go away with the children array they are keyed on.
+ *
+ * <p>The cache is disabled by default: the lists it retains cost garbage collection time, which
+ * in a small heap can outweigh the cheap replays that it saves. See {@code
+ * --experimental_nested_set_flatten_cache_size}.
+ */
+public final class NestedSetFlattenCache {
+
+  @VisibleForTesting static final int MIN_CACHED_SIZE = 64;
+
+  // Null while caching is disabled.
+  @Nullable private static volatile NestedSetFlattenCache instance;
+
+  /** The elements and memo of a flattened node. */
+  static final class Flattened {
+    /** The elements of the node, in traversal order (before any reversal for link order). */
+    final ImmutableList<Object> elements;
+    /** The memo of the node; see {@link NestedSet}. */
+    final byte[] memo;
+    /** The number of leading bits of {@link #memo} that record the traversal. */
+    final int memoBits;
+
+    // Built on first use as a prefix; racy but idempotent.
+    @Nullable private ImmutableSet<Object> set;
+
+    private Flattened(ImmutableList<Object> elements, byte[] memo, int memoBits) {
+      this.elements = elements;
+      this.memo = memo;
+      this.memoBits = memoBits;
+    }
+
+    boolean contains(Object element) {
+      ImmutableSet<Object> set = this.set;
+      if (set == null) {
+        this.set = set = ImmutableSet.copyOf(elements);
+      }
+      return set.contains(element);
+    }
+  }
+
+  private final long maxElements;
+  private final Cache<Object[], Flattened> cache;
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder prefixHits = new LongAdder();
+
+  // Guarded by this.
+  private long loggedHits;
+  private long loggedMisses;
+  private long loggedPrefixHits;
+
+  private NestedSetFlattenCache(long maxElements) {
+    this.maxElements = maxElements;
+    this.cache =
+        Caffeine.newBuilder()
+            .weakKeys()
+            .maximumWeight(maxElements)
+            .weigher((Object[] children, Flattened flattened) -> flattened.elements.size())
+            .build();
+  }
+
+  /**
+   * Enables the cache with room for about {@code maxElements} elements in all, or disables it if
+   * {@code maxElements} is 0. The cached sets are kept if the size did not change.
+   */
+  public static synchronized void configure(long maxElements) {
+    NestedSetFlattenCache current = instance;
+    if (maxElements == 0) {
+      instance = null;
+    } else if (current == null || current.maxElements != maxElements) {
+      instance = new NestedSetFlattenCache(maxElements);
+    }
+  }
+
+  /** Returns the cache, or null if it is disabled. */
+  @Nullable
+  static NestedSetFlattenCache instance() {
+    return instance;
+  }
+
+  /** Returns the cached elements of the node with the given children, counting a hit or miss. */
+  @Nullable
+  ImmutableList<Object> getElements(Object[] children) {
+    Flattened flattened = cache.getIfPresent(children);
+    if (flattened == null) {
+      misses.increment();
+      return null;
+    }
+    hits.increment();
+    return flattened.elements;
+  }
+
+  /** Returns the cached node with the given children, to be used as the prefix of a traversal. */
+  @Nullable
+  Flattened getPrefix(Object[] children) {
+    Flattened flattened = cache.getIfPresent(children);
+    if (flattened != null) {
+      prefixHits.increment();
+    }
+    return flattened;
+  }
+
+  /**
+   * Caches the elements of the node with the given children, if there are enough of them. The
+   * first {@code memoBits} bits of {@code memo} must record the traversal that yielded {@code
+   * elements}, and neither may be modified afterwards.
+   */
+  void put(Object[] children, ImmutableList<?> elements, byte[] memo, int memoBits) {
+    if (elements.size() >= MIN_CACHED_SIZE) {
+      @SuppressWarnings("unchecked") // Only ever read as ImmutableList<E> of the same set.
+      ImmutableList<Object> objects = (ImmutableList<Object>) elements;
+      cache.put(children, new Flattened(objects, memo, memoBits));
+    }
+  }
+
+  @VisibleForTesting
+  long getHitCount() {
+    return hits.sum();
+  }
+
+  @VisibleForTesting
+  long getMissCount() {
+    return misses.sum();
+  }
+
+  @VisibleForTesting
+  long getPrefixHitCount() {
+    return prefixHits.sum();
+  }
+
+  /**
+   * Records in the profile how often flattened sets were found in the cache since the last call,
+   * if the cache is enabled and profiling is active.
+   */
+  public static void logStatistics() {
+    NestedSetFlattenCache cache = instance;
+    if (cache != null) {
+      cache.logStatistics(Profiler.instance());
+    }
+  }
+
+  private synchronized void logStatistics(Profiler profiler) {
+    long hits = this.hits.sum();
+    long misses = this.misses.sum();
+    long prefixHits = this.prefixHits.sum();
+    if (profiler.isActive()) {
+      profiler.logEventAtTime(
+          Profiler.nanoTimeMaybe(),
+          ProfilerTask.INFO,
+          String.format(
+              "NestedSet flatten cache: %d hits, %d misses, %d prefix hits",
+              hits - loggedHits, misses - loggedMisses, prefixHits - loggedPrefixHits));
+    }
+    loggedHits = hits;
+    loggedMisses = misses;
+    loggedPrefixHits = prefixHits;
+  }
+}
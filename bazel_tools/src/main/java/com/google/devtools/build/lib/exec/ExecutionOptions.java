@@ -368,6 +368,19 @@ public class ExecutionOptions extends OptionsBase {
               + " come last.")
   public boolean prioritizeLocalActions;
 
+  @Option(
+      name = "experimental_fair_resource_scheduling",
+      defaultValue = "false",
+      documentationCategory = OptionDocumentationCategory.UNCATEGORIZED,
+      effectTags = {OptionEffectTag.EXECUTION},
+      help =
+          "If set, actions whose resources are available acquire and release them without taking "
+              + "a lock, and an action that needs more resources than are free only lets a limited "
+              + "number of later actions start ahead of it. This keeps actions with large resource "
+              + "requests from waiting for most of the build, at the cost of longer waits for the "
+              + "small ones.")
+  public boolean fairResourceScheduling;
+
   @Option(
       name = "debug_print_action_contexts",
       defaultValue = "false",
@@ -389,6 +402,18 @@ public class ExecutionOptions extends OptionsBase {
               + "number of file digests to be cached.")
   public long cacheSizeForComputedFileDigests;
 
+  @Option(
+      name = "experimental_mmap_file_digests",
+      defaultValue = "false",
+      documentationCategory = OptionDocumentationCategory.UNDOCUMENTED,
+      effectTags = {OptionEffectTag.EXECUTION},
+      help =
+          "If enabled, files of 1 MiB or more are memory-mapped to compute their digests instead "
+              + "of being read through a stream, and BLAKE3 digests of them are computed by "
+              + "several threads. A file that is truncated while it is being digested then fails "
+              + "the digest. Has no effect on Windows.")
+  public boolean mmapFileDigests;
+
   @Option(
     name = "experimental_enable_critical_path_profiling",
     defaultValue = "true",
@@ -22,6 +22,7 @@ import com.google.devtools.build.lib.actions.RunningActionEvent;
 import com.google.devtools.build.lib.actions.SpawnContinuation;
 import com.google.devtools.build.lib.analysis.actions.DeterministicWriter;
 import com.google.devtools.build.lib.analysis.actions.FileWriteActionContext;
+import com.google.devtools.build.lib.analysis.actions.ParameterFileWriteAction.CommandLineExpansionIOException;
 import com.google.devtools.build.lib.profiler.AutoProfiler;
 import com.google.devtools.build.lib.profiler.GoogleAutoProfilerUtils;
 import com.google.devtools.build.lib.server.FailureDetails.Execution.Code;
@@ -60,6 +61,8 @@ public final class FileWriteStrategy implements FileWriteActionContext {
         if (makeExecutable) {
           outputPath.setExecutable(true);
         }
+      } catch (CommandLineExpansionIOException e) {
+        return SpawnContinuation.failedWithExecException(e.toExecException());
       } catch (IOException e) {
         return SpawnContinuation.failedWithExecException(
             new EnvironmentalExecException(e, Code.FILE_WRITE_IO_EXCEPTION));
@@ -28,12 +28,14 @@ import com.google.common.collect.ImmutableSortedSet;
 import com.google.common.collect.Interner;
 import com.google.common.collect.Sets;
 import com.google.common.flogger.GoogleLogger;
+import com.google.common.hash.HashCode;
 import com.google.common.io.CharStreams;
 import com.google.devtools.build.lib.actions.ActionExecutionContext;
 import com.google.devtools.build.lib.actions.ActionExecutionMetadata;
 import com.google.devtools.build.lib.actions.Artifact;
 import com.google.devtools.build.lib.actions.ArtifactFactory;
 import com.google.devtools.build.lib.actions.ExecException;
+import com.google.devtools.build.lib.actions.FileArtifactValue;
 import com.google.devtools.build.lib.cmdline.PackageIdentifier;
 import com.google.devtools.build.lib.concurrent.BlazeInterners;
 import com.google.devtools.build.lib.events.Event;
@@ -60,6 +62,11 @@ import com.google.devtools.build.skyframe.ValueOrException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.channels.ReadableByteChannel;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -76,6 +83,9 @@ import javax.annotation.Nullable;
  * Scans a source file and extracts the literal inclusions it specifies. Does not store results --
  * repeated requests to the same file will result in repeated scans. Clients should implement a
  * caching layer in order to avoid unnecessary disk access when requesting an already scanned file.
+ *
+ * <p>Results are persisted by {@link IncludeParsingCache}; a change to the inclusions found in a
+ * file must bump its parser version.
  */
 @VisibleForTesting
 class IncludeParser {
@@ -546,16 +556,60 @@ class IncludeParser {
     }
   }
 
+  /**
+   * Settings and server-lifetime state of fast parsing. Fast parsing memory-maps large files,
+   * searches them for directives eight bytes at a time instead of splitting them into lines, and
+   * caches the inclusions parsed from each file by the file's digest across builds.
+   */
+  static final class FastParsing {
+    /** Files at least this large are memory-mapped, smaller ones are cheaper to read. */
+    private static final int MMAP_THRESHOLD = 256 << 10;
+
+    private final int codeLimit;
+    private final IncludeParsingCache cache;
+
+    /**
+     * @param codeLimit if positive, stop scanning a file once this many bytes follow its last
+     *     directive, assuming that the rest of the file is code without inclusions
+     * @param cache the cache of inclusions parsed with this code limit
+     */
+    FastParsing(int codeLimit, IncludeParsingCache cache) {
+      this.codeLimit = codeLimit;
+      this.cache = cache;
+    }
+
+    int getCodeLimit() {
+      return codeLimit;
+    }
+
+    IncludeParsingCache getCache() {
+      return cache;
+    }
+  }
+
   /** The externally-scoped immutable hints helper that is shared by all scanners. */
   private final Hints hints;
 
+  @Nullable private final FastParsing fastParsing;
+
   /**
    * Constructs a new FileParser.
    *
    * @param hints regexps for converting computed includes into simple strings
    */
   public IncludeParser(Hints hints) {
+    this(hints, /* fastParsing= */ null);
+  }
+
+  /**
+   * Constructs a new FileParser.
+   *
+   * @param hints regexps for converting computed includes into simple strings
+   * @param fastParsing if not null, how to parse files with fast parsing
+   */
+  IncludeParser(Hints hints, @Nullable FastParsing fastParsing) {
     this.hints = hints;
+    this.fastParsing = fastParsing;
   }
 
   /**
@@ -811,7 +865,7 @@ class IncludeParser {
           break;
         } else if (chars[lineEnd] == '\\') {
           lineEnd++;
-          if (chars[lineEnd] == '\n') {
+          if (lineEnd < end && chars[lineEnd] == '\n') {
             lineEnd++;
           }
         } else {
@@ -839,6 +893,130 @@ class IncludeParser {
     return inclusions;
   }
 
+  /** Multiplied with a byte, repeats it in each byte of a word. */
+  private static final long EACH_BYTE = 0x0101010101010101L;
+
+  private static final long HIGH_BITS = 0x8080808080808080L;
+
+  /**
+   * Returns the position of the first {@code pattern} byte at or after {@code pos}, or {@code end}
+   * if there is none. Compares eight bytes at a time: subtracting one from each byte of the word
+   * XOR the pattern only borrows into the high bit of the bytes that matched, and of bytes after
+   * them, so the lowest high bit in a little-endian word marks the first match.
+   */
+  private static int indexOf(ByteBuffer chars, int pos, int end, long pattern) {
+    for (; pos + Long.BYTES <= end; pos += Long.BYTES) {
+      long word = chars.getLong(pos) ^ pattern;
+      long matches = (word - EACH_BYTE) & ~word & HIGH_BITS;
+      if (matches != 0) {
+        return pos + (Long.numberOfTrailingZeros(matches) >>> 3);
+      }
+    }
+    for (; pos < end; pos++) {
+      if (chars.get(pos) == (byte) pattern) {
+        return pos;
+      }
+    }
+    return end;
+  }
+
+  /**
+   * Extracts all inclusions from characters of a file like {@link #extractInclusions(byte[])}, but
+   * only looks at the lines that contain the {@link #getDirectiveMarker directive marker}.
+   *
+   * @param chars the file contents to parse & extract inclusions from, from position 0 to the limit
+   * @param codeLimit if positive, stops at the first directive that follows more than this many
+   *     bytes after the previous one
+   * @return a new set of inclusions, normalized to the cache
+   */
+  @VisibleForTesting
+  List<Inclusion> extractInclusions(ByteBuffer chars, int codeLimit) {
+    chars = chars.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+    byte marker = getDirectiveMarker();
+    long pattern = EACH_BYTE * (marker & 0xff);
+    List<Inclusion> inclusions = new ArrayList<>();
+    int end = chars.limit();
+    int directiveEnd = 0; // the end of the last directive
+    int pos = 0;
+    while ((pos = indexOf(chars, pos, end, pattern)) < end) {
+      // Lines end at a \n that does not follow a \, like in extractInclusions(byte[]).
+      int lineBegin = pos;
+      while (lineBegin > 0
+          && !(chars.get(lineBegin - 1) == '\n'
+              && (lineBegin < 2 || chars.get(lineBegin - 2) != '\\'))) {
+        lineBegin--;
+      }
+      int lineEnd = pos;
+      while (lineEnd < end && chars.get(lineEnd) != '\n') {
+        lineEnd +=
+            chars.get(lineEnd) == '\\' && lineEnd + 1 < end && chars.get(lineEnd + 1) == '\n'
+                ? 2
+                : 1;
+      }
+      if (codeLimit > 0 && lineBegin - directiveEnd > codeLimit) {
+        break;
+      }
+
+      byte[] line = new byte[lineEnd - lineBegin];
+      chars.position(lineBegin);
+      chars.get(line);
+      int directiveBegin = skipWhitespace(line, 0, line.length);
+      if (directiveBegin < line.length && line[directiveBegin] == marker) {
+        directiveEnd = lineEnd;
+      }
+      Inclusion inclusion = extractInclusion(line, 0, line.length);
+      if (inclusion != null && isValidInclusionKind(inclusion.kind)) {
+        inclusions.add(inclusion);
+      }
+      pos = lineEnd + 1;
+    }
+    return inclusions;
+  }
+
+  /**
+   * Extracts all inclusions from the file at {@code path} with fast parsing. Large files on the
+   * local file system are memory-mapped, all others are read.
+   */
+  @VisibleForTesting
+  List<Inclusion> extractInclusionsFast(Path path) throws IOException {
+    ByteBuffer chars = null;
+    try (ReadableByteChannel channel = path.createReadableByteChannel()) {
+      if (channel instanceof FileChannel) {
+        FileChannel fileChannel = (FileChannel) channel;
+        long size = fileChannel.size();
+        if (size >= FastParsing.MMAP_THRESHOLD && size <= Integer.MAX_VALUE) {
+          chars = fileChannel.map(MapMode.READ_ONLY, 0, size);
+        }
+      }
+    } catch (UnsupportedOperationException e) {
+      // The file system has no channels, read the file instead.
+    }
+    if (chars == null) {
+      chars = ByteBuffer.wrap(FileSystemUtils.readContent(path));
+    }
+    return extractInclusions(chars, fastParsing.getCodeLimit());
+  }
+
+  /**
+   * Returns the inclusions of {@code file} cached by its digest, parsing the file on a miss. Files
+   * without a digest are always parsed.
+   */
+  private List<Inclusion> getCachedInclusions(
+      Artifact file, Path path, ActionExecutionContext actionExecutionContext) throws IOException {
+    FileArtifactValue metadata = actionExecutionContext.getMetadataProvider().getMetadata(file);
+    byte[] digest = metadata == null ? null : metadata.getDigest();
+    if (digest == null) {
+      return extractInclusionsFast(path);
+    }
+    HashCode key = HashCode.fromBytes(digest);
+    ImmutableList<Inclusion> inclusions = fastParsing.getCache().get(key);
+    if (inclusions == null) {
+      inclusions = ImmutableList.copyOf(extractInclusionsFast(path));
+      fastParsing.getCache().put(key, inclusions);
+    }
+    return new ArrayList<>(inclusions);
+  }
+
   /**
    * Extracts all inclusions from a given source file.
    *
@@ -873,9 +1051,11 @@ class IncludeParser {
     } else {
       try (SilentCloseable c =
           Profiler.instance().profile(ProfilerTask.SCANNER, file.getExecPathString())) {
+        Path path = actionExecutionContext.getInputPath(file);
         inclusions =
-            extractInclusions(
-                FileSystemUtils.readContent(actionExecutionContext.getInputPath(file)));
+            fastParsing != null
+                ? getCachedInclusions(file, path, actionExecutionContext)
+                : extractInclusions(FileSystemUtils.readContent(path));
       } catch (IOException e) {
         if (remoteIncludeScanner != null && grepIncludes != null) {
           logger.atWarning().withCause(e).log(
@@ -958,6 +1138,14 @@ class IncludeParser {
     return IncludesKeywordData.NONE;
   }
 
+  /**
+   * Returns the character that starts all directives accepted by {@link #expectIncludeKeyword}.
+   * Fast parsing only looks at the lines that contain it. Can be overridden by subclasses.
+   */
+  protected byte getDirectiveMarker() {
+    return '#';
+  }
+
   /**
    * Returns true if we interested in the given inclusion kind. Can be overridden by the subclass.
    */
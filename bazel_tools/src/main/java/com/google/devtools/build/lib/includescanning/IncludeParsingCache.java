@@ -0,0 +1,238 @@
+// Copyright 2026 The Bazel Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.devtools.build.lib.includescanning;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.google.common.base.Stopwatch;
+import com.google.common.collect.ImmutableList;
+import com.google.common.flogger.GoogleLogger;
+import com.google.common.hash.HashCode;
+import com.google.devtools.build.lib.buildeventstream.BuildEventStreamProtos.BuildMetrics.IncludeScanningMetrics;
+import com.google.devtools.build.lib.includescanning.IncludeParser.Inclusion;
+import com.google.devtools.build.lib.vfs.DigestHashFunction;
+import com.google.devtools.build.lib.vfs.Path;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import javax.annotation.Nullable;
+
+/**
+ * Cache of the inclusions parsed from files, keyed by the digests of the files. It is kept for the
+ * lifetime of the server and optionally in a file, so that unchanged files are parsed neither in
+ * later builds nor after a server restart.
+ *
+ * <p>The digests come from the {@link com.google.devtools.build.lib.actions.FileArtifactValue} of
+ * each file, so an entry is only ever used for the contents it was parsed from. The include paths
+ * of the including actions are not part of the key: they only matter for resolving the inclusions,
+ * which is not cached.
+ *
+ * <p>The file is read on the first lookup, so that commands that parse no files do not pay for it,
+ * and replaced when the cache changed.
+ */
+final class IncludeParsingCache {
+  private static final GoogleLogger logger = GoogleLogger.forEnclosingClass();
+
+  private static final int MAGIC = 0x494e4331; // "INC1"
+
+  /**
+   * The version of the parsers' results. The file lives in the output base, which outlives the
+   * server binary, so this must be changed whenever a fix to {@link IncludeParser} changes the
+   * inclusions it finds in a file.
+   */
+  private static final int PARSER_VERSION = 1;
+
+  /** The most files whose inclusions are cached. */
+  private static final int MAX_CACHED_FILES = 1 << 20;
+
+  private final Cache<HashCode, ImmutableList<Inclusion>> inclusionsByDigest =
+      Caffeine.newBuilder().maximumSize(MAX_CACHED_FILES).build();
+
+  @Nullable private final Path file;
+  private final String key;
+  private volatile boolean loaded;
+  private volatile boolean changed;
+
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private long entriesLoaded;
+  private Duration loadTime = Duration.ZERO;
+
+  /**
+   * @param file where to keep the cache across server restarts, or null to only keep it in memory
+   * @param key the configuration of the parser and the digests that the entries depend on; a file
+   *     written with a different key is ignored
+   */
+  IncludeParsingCache(@Nullable Path file, String key) {
+    this.file = file;
+    this.key = key;
+    this.loaded = file == null;
+  }
+
+  /**
+   * Returns the key of a cache of inclusions parsed with {@code codeLimit} from files whose digests
+   * are computed with {@code digestFunction}.
+   */
+  static String key(DigestHashFunction digestFunction, int codeLimit) {
+    return PARSER_VERSION + "/" + digestFunction + "/" + codeLimit;
+  }
+
+  @Nullable
+  Path getFile() {
+    return file;
+  }
+
+  /** Returns the inclusions of the file with the given digest, or null if they are not cached. */
+  @Nullable
+  ImmutableList<Inclusion> get(HashCode digest) {
+    if (!loaded) {
+      load();
+    }
+    ImmutableList<Inclusion> inclusions = inclusionsByDigest.getIfPresent(digest);
+    (inclusions == null ? misses : hits).increment();
+    return inclusions;
+  }
+
+  void put(HashCode digest, ImmutableList<Inclusion> inclusions) {
+    inclusionsByDigest.put(digest, inclusions);
+    changed = true;
+  }
+
+  private synchronized void load() {
+    if (loaded) {
+      return;
+    }
+    Stopwatch stopwatch = Stopwatch.createStarted();
+    try (DataInputStream in =
+        new DataInputStream(new BufferedInputStream(file.getInputStream(), 1 << 16))) {
+      if (in.readInt() != MAGIC || !in.readUTF().equals(key)) {
+        logger.atInfo().log("Ignoring include parsing cache %s of another configuration", file);
+      } else {
+        // Counts are checked against the file size, so that a corrupt one fails fast.
+        long size = file.getFileSize();
+        Inclusion[] inclusions = new Inclusion[readCount(in, size)];
+        Inclusion.Kind[] kinds = Inclusion.Kind.values();
+        for (int i = 0; i < inclusions.length; i++) {
+          inclusions[i] = Inclusion.create(in.readUTF(), kinds[in.readUnsignedByte()]);
+        }
+        int entries = readCount(in, size);
+        for (int i = 0; i < entries; i++) {
+          byte[] digest = new byte[in.readUnsignedByte()];
+          in.readFully(digest);
+          ImmutableList.Builder<Inclusion> fileInclusions = ImmutableList.builder();
+          for (int j = readCount(in, size); j > 0; j--) {
+            fileInclusions.add(inclusions[in.readInt()]);
+          }
+          inclusionsByDigest.put(HashCode.fromBytes(digest), fileInclusions.build());
+        }
+        entriesLoaded = entries;
+      }
+    } catch (FileNotFoundException e) {
+      // Nothing was cached yet.
+    } catch (IOException | RuntimeException e) {
+      // The cache is only an optimization, so a broken file is replaced on the next save.
+      logger.atWarning().withCause(e).log("Failed to read include parsing cache %s", file);
+      inclusionsByDigest.invalidateAll();
+      entriesLoaded = 0;
+      changed = true;
+    }
+    loadTime = stopwatch.elapsed();
+    loaded = true;
+  }
+
+  private static int readCount(DataInputStream in, long fileSize) throws IOException {
+    int count = in.readInt();
+    if (count < 0 || count > fileSize) {
+      throw new IOException("Invalid count " + count);
+    }
+    return count;
+  }
+
+  /** Writes the cache to its file if it has one and changed since it was read or last written. */
+  synchronized void save() throws IOException {
+    if (file == null || !changed) {
+      return;
+    }
+    // Cleared before the entries are copied, so that a put during the save is saved next time.
+    changed = false;
+    try {
+      write();
+    } catch (IOException | RuntimeException e) {
+      changed = true;
+      throw e;
+    }
+  }
+
+  private void write() throws IOException {
+    // Files share most of their inclusions, so they are written once and referred to by index.
+    List<Map.Entry<HashCode, ImmutableList<Inclusion>>> entries =
+        new ArrayList<>(inclusionsByDigest.asMap().entrySet());
+    Map<Inclusion, Integer> ids = new HashMap<>();
+    List<Inclusion> inclusions = new ArrayList<>();
+    for (Map.Entry<HashCode, ImmutableList<Inclusion>> entry : entries) {
+      for (Inclusion inclusion : entry.getValue()) {
+        if (ids.putIfAbsent(inclusion, inclusions.size()) == null) {
+          inclusions.add(inclusion);
+        }
+      }
+    }
+
+    Path tmpFile = file.getParentDirectory().getChild(file.getBaseName() + ".tmp");
+    try (DataOutputStream out =
+        new DataOutputStream(new BufferedOutputStream(tmpFile.getOutputStream(), 1 << 16))) {
+      out.writeInt(MAGIC);
+      out.writeUTF(key);
+      out.writeInt(inclusions.size());
+      for (Inclusion inclusion : inclusions) {
+        out.writeUTF(inclusion.getPathString());
+        out.writeByte(inclusion.kind.ordinal());
+      }
+      out.writeInt(entries.size());
+      for (Map.Entry<HashCode, ImmutableList<Inclusion>> entry : entries) {
+        byte[] digest = entry.getKey().asBytes();
+        out.writeByte(digest.length);
+        out.write(digest);
+        out.writeInt(entry.getValue().size());
+        for (Inclusion inclusion : entry.getValue()) {
+          out.writeInt(ids.get(inclusion));
+        }
+      }
+    }
+    tmpFile.renameTo(file);
+  }
+
+  /** Returns the metrics of the lookups since the last call, and of reading the file. */
+  synchronized IncludeScanningMetrics getAndResetMetrics() {
+    IncludeScanningMetrics metrics =
+        IncludeScanningMetrics.newBuilder()
+            .setCacheHits(hits.sumThenReset())
+            .setCacheMisses(misses.sumThenReset())
+            .setEntriesLoaded(entriesLoaded)
+            .setLoadTimeInMs(loadTime.toMillis())
+            .build();
+    entriesLoaded = 0;
+    loadTime = Duration.ZERO;
+    return metrics;
+  }
+}
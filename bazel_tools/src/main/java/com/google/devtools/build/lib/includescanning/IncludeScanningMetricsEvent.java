@@ -0,0 +1,34 @@
+// Copyright 2026 The Bazel Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.devtools.build.lib.includescanning;
+
+import com.google.devtools.build.lib.buildeventstream.BuildEventStreamProtos.BuildMetrics.IncludeScanningMetrics;
+import com.google.devtools.build.lib.events.ExtendedEventHandler.Postable;
+
+/**
+ * Event transporting statistics about the files parsed for include scanning during the build.
+ * Emitted when the Bazel build is completed.
+ */
+public final class IncludeScanningMetricsEvent implements Postable {
+  private final IncludeScanningMetrics metrics;
+
+  IncludeScanningMetricsEvent(IncludeScanningMetrics metrics) {
+    this.metrics = metrics;
+  }
+
+  public IncludeScanningMetrics getMetrics() {
+    return metrics;
+  }
+}
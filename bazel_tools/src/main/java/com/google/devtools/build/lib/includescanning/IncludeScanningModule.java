@@ -18,6 +18,7 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Maps;
+import com.google.common.eventbus.Subscribe;
 import com.google.common.flogger.GoogleLogger;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.MoreExecutors;
@@ -31,6 +32,7 @@ import com.google.devtools.build.lib.actions.ArtifactResolver;
 import com.google.devtools.build.lib.actions.ExecException;
 import com.google.devtools.build.lib.analysis.BlazeDirectories;
 import com.google.devtools.build.lib.buildtool.BuildRequest;
+import com.google.devtools.build.lib.buildtool.CollectMetricsEvent;
 import com.google.devtools.build.lib.concurrent.ExecutorUtil;
 import com.google.devtools.build.lib.concurrent.ThreadSafety.ThreadHostile;
 import com.google.devtools.build.lib.events.Event;
@@ -54,12 +56,14 @@ import com.google.devtools.build.lib.skyframe.MutableSupplier;
 import com.google.devtools.build.lib.util.AbruptExitException;
 import com.google.devtools.build.lib.util.DetailedExitCode;
 import com.google.devtools.build.lib.vfs.IORuntimeException;
+import com.google.devtools.build.lib.vfs.Path;
 import com.google.devtools.build.lib.vfs.PathFragment;
 import com.google.devtools.build.skyframe.SkyFunction;
 import com.google.devtools.build.skyframe.SkyFunctionName;
 import com.google.devtools.common.options.OptionsBase;
 import java.io.IOException;
 import java.util.Collection;
+import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
@@ -77,10 +81,14 @@ import javax.annotation.Nullable;
 public class IncludeScanningModule extends BlazeModule {
   private static final GoogleLogger logger = GoogleLogger.forEnclosingClass();
 
+  private static final String INCLUDE_PARSING_CACHE = "include_parsing_cache";
+
   private final MutableSupplier<SpawnIncludeScanner> spawnIncludeScannerSupplier =
       new MutableSupplier<>();
   private final MutableSupplier<ArtifactFactory> artifactFactory = new MutableSupplier<>();
   private IncludeScannerLifecycleManager lifecycleManager;
+  // Kept across builds, so that unchanged files are not parsed again.
+  @Nullable private IncludeParser.FastParsing fastParsing;
 
   @Nullable
   protected PathFragment getIncludeHintsFilename() {
@@ -106,9 +114,29 @@ public class IncludeScanningModule extends BlazeModule {
   @Override
   @ThreadHostile
   public void executorInit(CommandEnvironment env, BuildRequest request, ExecutorBuilder builder) {
+    IncludeScanningOptions options = request.getOptions(IncludeScanningOptions.class);
+    Path cacheFile =
+        options.includeParsingDiskCache
+            ? env.getOutputBase().getRelative(INCLUDE_PARSING_CACHE)
+            : null;
+    if (!options.fastIncludeParsing) {
+      fastParsing = null;
+    } else if (fastParsing == null
+        || fastParsing.getCodeLimit() != options.includeParsingStopAfterCodeBytes
+        || !Objects.equals(fastParsing.getCache().getFile(), cacheFile)) {
+      int codeLimit = options.includeParsingStopAfterCodeBytes;
+      String cacheKey =
+          IncludeParsingCache.key(env.getRuntime().getFileSystem().getDigestFunction(), codeLimit);
+      fastParsing =
+          new IncludeParser.FastParsing(codeLimit, new IncludeParsingCache(cacheFile, cacheKey));
+    }
     lifecycleManager =
         new IncludeScannerLifecycleManager(
-            env, request, spawnIncludeScannerSupplier, getIncludeHintsFilename() != null);
+            env,
+            request,
+            spawnIncludeScannerSupplier,
+            getIncludeHintsFilename() != null,
+            fastParsing);
     builder.addExecutorLifecycleListener(lifecycleManager);
   }
 
@@ -131,6 +159,13 @@ public class IncludeScanningModule extends BlazeModule {
 
   @Override
   public void afterCommand() {
+    if (fastParsing != null) {
+      try {
+        fastParsing.getCache().save();
+      } catch (IOException e) {
+        logger.atWarning().withCause(e).log("Failed to write include parsing cache");
+      }
+    }
     spawnIncludeScannerSupplier.set(null);
     artifactFactory.set(null);
     lifecycleManager = null;
@@ -236,6 +271,7 @@ public class IncludeScanningModule extends BlazeModule {
     private final CommandEnvironment env;
     private final IncludeScanningOptions options;
     private final boolean useIncludeHints;
+    @Nullable private final IncludeParser.FastParsing fastParsing;
 
     private final Supplier<SpawnIncludeScanner> spawnScannerSupplier;
     private IncludeScannerSupplier includeScannerSupplier;
@@ -245,10 +281,12 @@ public class IncludeScanningModule extends BlazeModule {
         CommandEnvironment env,
         BuildRequest buildRequest,
         MutableSupplier<SpawnIncludeScanner> spawnScannerSupplier,
-        boolean useIncludeHints) {
+        boolean useIncludeHints,
+        @Nullable IncludeParser.FastParsing fastParsing) {
       this.env = env;
       this.options = buildRequest.getOptions(IncludeScanningOptions.class);
       this.useIncludeHints = useIncludeHints;
+      this.fastParsing = fastParsing;
 
       spawnScannerSupplier.set(
           new SpawnIncludeScanner(
@@ -263,6 +301,14 @@ public class IncludeScanningModule extends BlazeModule {
       return new CppIncludeScanningContextImpl(() -> includeScannerSupplier);
     }
 
+    @Subscribe
+    public void collectMetrics(@SuppressWarnings("unused") CollectMetricsEvent event) {
+      if (fastParsing != null) {
+        env.getEventBus()
+            .post(new IncludeScanningMetricsEvent(fastParsing.getCache().getAndResetMetrics()));
+      }
+    }
+
     private SwigIncludeScanningContextImpl getSwigActionContext() {
       return new SwigIncludeScanningContextImpl(env, spawnScannerSupplier, () -> includePool);
     }
@@ -295,8 +341,8 @@ public class IncludeScanningModule extends BlazeModule {
       }
       includeScannerSupplier.init(
           new IncludeParser(
-              new IncludeParser.Hints(
-                  hintsRules, env.getSkyframeBuildView().getArtifactFactory())));
+              new IncludeParser.Hints(hintsRules, env.getSkyframeBuildView().getArtifactFactory()),
+              fastParsing));
     }
 
     @Override
@@ -112,4 +112,50 @@ public class IncludeScanningOptions extends OptionsBase {
       defaultValue = "false",
       help = "If enabled core threads of include scanner pool will not die during execution.")
   public boolean experimentalReuseIncludeScanningThreads;
+
+  @Option(
+      name = "experimental_fast_include_parsing",
+      documentationCategory = OptionDocumentationCategory.UNDOCUMENTED,
+      effectTags = {
+        OptionEffectTag.BAZEL_INTERNAL_CONFIGURATION,
+        OptionEffectTag.EXECUTION,
+        OptionEffectTag.HOST_MACHINE_RESOURCE_OPTIMIZATIONS
+      },
+      defaultValue = "false",
+      help =
+          "If enabled, locally parsed files are memory-mapped if large and only the lines with"
+              + " directives are parsed. The inclusions of each file are kept in memory by file"
+              + " digest across builds.")
+  public boolean fastIncludeParsing;
+
+  @Option(
+      name = "experimental_include_parsing_stop_after_code_bytes",
+      documentationCategory = OptionDocumentationCategory.UNDOCUMENTED,
+      effectTags = {
+        OptionEffectTag.BAZEL_INTERNAL_CONFIGURATION,
+        OptionEffectTag.EXECUTION,
+        OptionEffectTag.HOST_MACHINE_RESOURCE_OPTIMIZATIONS
+      },
+      defaultValue = "0",
+      help =
+          "If positive and --experimental_fast_include_parsing is enabled, stops parsing a file"
+              + " once this many bytes follow its last directive. Inclusions after that are"
+              + " missed, so this is only correct for code bases that include files before all"
+              + " other code.")
+  public int includeParsingStopAfterCodeBytes;
+
+  @Option(
+      name = "experimental_include_parsing_disk_cache",
+      documentationCategory = OptionDocumentationCategory.UNDOCUMENTED,
+      effectTags = {
+        OptionEffectTag.BAZEL_INTERNAL_CONFIGURATION,
+        OptionEffectTag.EXECUTION,
+        OptionEffectTag.HOST_MACHINE_RESOURCE_OPTIMIZATIONS
+      },
+      defaultValue = "false",
+      help =
+          "If enabled together with --experimental_fast_include_parsing, the inclusions of the"
+              + " parsed files are also kept in the output base, so that they are not parsed again"
+              + " after a server restart.")
+  public boolean includeParsingDiskCache;
 }
@@ -66,6 +66,11 @@ class SwigIncludeParser extends IncludeParser {
     return IncludesKeywordData.NONE;
   }
 
+  @Override
+  protected byte getDirectiveMarker() {
+    return '%';
+  }
+
   @Override
   protected boolean isValidInclusionKind(Kind kind) {
     return !kind.isNext();
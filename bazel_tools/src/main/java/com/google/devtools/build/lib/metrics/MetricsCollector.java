@@ -31,9 +31,13 @@ import com.google.devtools.build.lib.buildeventstream.BuildEventStreamProtos.Bui
 import com.google.devtools.build.lib.buildeventstream.BuildEventStreamProtos.BuildMetrics.ArtifactMetrics;
 import com.google.devtools.build.lib.buildeventstream.BuildEventStreamProtos.BuildMetrics.BuildGraphMetrics;
 import com.google.devtools.build.lib.buildeventstream.BuildEventStreamProtos.BuildMetrics.CumulativeMetrics;
+import com.google.devtools.build.lib.buildeventstream.BuildEventStreamProtos.BuildMetrics.IncludeScanningMetrics;
+import com.google.devtools.build.lib.buildeventstream.BuildEventStreamProtos.BuildMetrics.LatencyMetrics;
+import com.google.devtools.build.lib.buildeventstream.BuildEventStreamProtos.BuildMetrics.LatencyMetrics.Histogram;
 import com.google.devtools.build.lib.buildeventstream.BuildEventStreamProtos.BuildMetrics.MemoryMetrics;
 import com.google.devtools.build.lib.buildeventstream.BuildEventStreamProtos.BuildMetrics.MemoryMetrics.GarbageMetrics;
 import com.google.devtools.build.lib.buildeventstream.BuildEventStreamProtos.BuildMetrics.PackageMetrics;
+import com.google.devtools.build.lib.buildeventstream.BuildEventStreamProtos.BuildMetrics.SandboxMetrics;
 import com.google.devtools.build.lib.buildeventstream.BuildEventStreamProtos.BuildMetrics.TargetMetrics;
 import com.google.devtools.build.lib.buildeventstream.BuildEventStreamProtos.BuildMetrics.TimingMetrics;
 import com.google.devtools.build.lib.buildeventstream.BuildEventStreamProtos.BuildMetrics.WorkerMetrics;
@@ -41,12 +45,16 @@ import com.google.devtools.build.lib.buildtool.BuildPrecompleteEvent;
 import com.google.devtools.build.lib.buildtool.buildevent.ExecutionStartingEvent;
 import com.google.devtools.build.lib.clock.BlazeClock;
 import com.google.devtools.build.lib.clock.BlazeClock.NanosToMillisSinceEpochConverter;
+import com.google.devtools.build.lib.includescanning.IncludeScanningMetricsEvent;
 import com.google.devtools.build.lib.metrics.MetricsModule.Options;
 import com.google.devtools.build.lib.metrics.PostGCMemoryUseRecorder.PeakHeap;
+import com.google.devtools.build.lib.profiler.LatencyHistogram;
 import com.google.devtools.build.lib.profiler.MemoryProfiler;
 import com.google.devtools.build.lib.profiler.Profiler;
+import com.google.devtools.build.lib.profiler.TaskLatencies;
 import com.google.devtools.build.lib.runtime.CommandEnvironment;
 import com.google.devtools.build.lib.runtime.SpawnStats;
+import com.google.devtools.build.lib.sandbox.SandboxMetricsEvent;
 import com.google.devtools.build.lib.skyframe.ExecutionFinishedEvent;
 import com.google.devtools.build.lib.worker.WorkerMetric;
 import com.google.devtools.build.lib.worker.WorkerMetricsEvent;
@@ -93,6 +101,9 @@ class MetricsCollector {
   private final ArtifactMetrics.Builder artifactMetrics = ArtifactMetrics.newBuilder();
   private final BuildGraphMetrics.Builder buildGraphMetrics = BuildGraphMetrics.newBuilder();
   private final List<WorkerMetrics> workerMetricsList = new ArrayList<>();
+  private SandboxMetrics sandboxMetrics = SandboxMetrics.getDefaultInstance();
+  private IncludeScanningMetrics includeScanningMetrics =
+      IncludeScanningMetrics.getDefaultInstance();
   private final SpawnStats spawnStats = new SpawnStats();
 
   private MetricsCollector(
@@ -210,6 +221,18 @@ class MetricsCollector {
     }
   }
 
+  @SuppressWarnings("unused")
+  @Subscribe
+  private void onSandboxMetricsEvent(SandboxMetricsEvent sandboxMetricsEvent) {
+    sandboxMetrics = sandboxMetricsEvent.getSandboxStats().toProto();
+  }
+
+  @SuppressWarnings("unused")
+  @Subscribe
+  private void onIncludeScanningMetricsEvent(IncludeScanningMetricsEvent event) {
+    includeScanningMetrics = event.getMetrics();
+  }
+
   private BuildMetrics createBuildMetrics() {
     return BuildMetrics.newBuilder()
         .setActionSummary(finishActionSummary())
@@ -221,6 +244,9 @@ class MetricsCollector {
         .setArtifactMetrics(artifactMetrics.build())
         .setBuildGraphMetrics(buildGraphMetrics.build())
         .addAllWorkerMetrics(workerMetricsList)
+        .setSandboxMetrics(sandboxMetrics)
+        .setIncludeScanningMetrics(includeScanningMetrics)
+        .setLatencyMetrics(createLatencyMetrics())
         .build();
   }
 
@@ -295,6 +321,43 @@ class MetricsCollector {
         .build();
   }
 
+  private static LatencyMetrics createLatencyMetrics() {
+    TaskLatencies.Snapshot latencies = Profiler.instance().getCommandTaskLatencies();
+    LatencyMetrics.Builder latencyMetrics = LatencyMetrics.newBuilder();
+    latencies
+        .getByType()
+        .forEach(
+            (type, histogram) -> latencyMetrics.addTaskLatency(toProto(type.name(), histogram)));
+    latencies
+        .getByMnemonic()
+        .forEach(
+            (mnemonic, histogram) ->
+                latencyMetrics.addMnemonicLatency(toProto(mnemonic, histogram)));
+    return latencyMetrics.build();
+  }
+
+  private static Histogram toProto(String name, LatencyHistogram.Snapshot snapshot) {
+    Histogram.Builder histogram =
+        Histogram.newBuilder()
+            .setName(name)
+            .setCount(snapshot.getCount())
+            .setTotalTimeInUs(snapshot.getTotal().toNanos() / 1000)
+            .setP50InUs(snapshot.getPercentile(50).toNanos() / 1000)
+            .setP90InUs(snapshot.getPercentile(90).toNanos() / 1000)
+            .setP99InUs(snapshot.getPercentile(99).toNanos() / 1000)
+            .setMaxInUs(snapshot.getMax().toNanos() / 1000);
+    for (int i = 0; i < snapshot.getBucketCount(); i++) {
+      if (snapshot.getCount(i) > 0) {
+        histogram.addBucket(
+            Histogram.Bucket.newBuilder()
+                .setLowerBoundInUs(snapshot.getLowerBound(i).toNanos() / 1000)
+                .setUpperBoundInUs(snapshot.getUpperBound(i).toNanos() / 1000)
+                .setCount(snapshot.getCount(i)));
+      }
+    }
+    return histogram.build();
+  }
+
   private TimingMetrics finishTimingMetrics() {
     Duration elapsedWallTime = Profiler.elapsedTimeMaybe();
     if (elapsedWallTime != null) {
@@ -63,7 +63,16 @@ abstract class AttributeContainer {
 
   /** Returns a frozen AttributeContainer with the same attributes, and a compact representation. */
   @CheckReturnValue
-  abstract AttributeContainer freeze();
+  final AttributeContainer freeze() {
+    return freeze(/*interner=*/ null);
+  }
+
+  /**
+   * Like {@link #freeze()}, but the compact representation shares its layout with equal ones of
+   * other rules of the package, through {@code interner}.
+   */
+  @CheckReturnValue
+  abstract AttributeContainer freeze(@Nullable AttributeInterner interner);
 
   /** Returns an AttributeContainer for holding attributes of the given rule class. */
   static AttributeContainer newMutableInstance(RuleClass ruleClass) {
@@ -123,11 +132,11 @@ abstract class AttributeContainer {
     }
 
     @Override
-    public AttributeContainer freeze() {
+    AttributeContainer freeze(@Nullable AttributeInterner interner) {
       if (values.length < 126) {
-        return new Small(values, explicitAttrs);
+        return new Small(values, explicitAttrs, interner);
       } else {
-        return new Large(values, explicitAttrs);
+        return new Large(values, explicitAttrs, interner);
       }
     }
 
@@ -148,7 +157,7 @@ abstract class AttributeContainer {
     }
 
     @Override
-    final AttributeContainer freeze() {
+    final AttributeContainer freeze(@Nullable AttributeInterner interner) {
       return this;
     }
   }
@@ -210,7 +219,8 @@ abstract class AttributeContainer {
     // The 'value' and 'explicit' components are encoded in the same byte.
     // Since this class only supports ruleClass with < 126 attributes,
     // state[i] encodes the the 'value' index in the 7 lower bits and 'explicit' in the top bit.
-    // This is the common case.
+    // This is the common case. The array may be shared with other containers (see
+    // AttributeInterner).
     private final byte[] state;
 
     // Useful Terminology for reading the code.
@@ -224,8 +234,10 @@ abstract class AttributeContainer {
      *
      * @param attrValues values for all attributes, null values are considered unset.
      * @param explicitAttrs holds explicit bit for each attribute index
+     * @param interner shares the state array with other containers, if non-null
      */
-    private Small(Object[] attrValues, BitSet explicitAttrs) {
+    private Small(
+        Object[] attrValues, BitSet explicitAttrs, @Nullable AttributeInterner interner) {
       maxAttrCount = attrValues.length;
       int numSet = nonNullCount(attrValues);
       if (numSet == 0) {
@@ -234,7 +246,7 @@ abstract class AttributeContainer {
         return;
       }
       values = new Object[numSet];
-      state = new byte[numSet];
+      byte[] state = new byte[numSet];
       int index = 0;
       int attrIndex = -1;
       for (Object attrValue : attrValues) {
@@ -250,6 +262,7 @@ abstract class AttributeContainer {
         values[index] = attrValue;
         index += 1;
       }
+      this.state = interner != null ? interner.internLayout(state) : state;
     }
 
     /**
@@ -312,6 +325,7 @@ abstract class AttributeContainer {
     // - actual memory savings may not be much since memory is allocated in blocks of 8 bytes and
     //   the savings is at most 8 bytes.
     // - this implementation is used only if ruleClass supports > 126 attributes (very rare).
+    // The array may be shared with other containers (see AttributeInterner).
     private final byte[] state;
 
     // Useful Terminology for reading the code.
@@ -346,8 +360,10 @@ abstract class AttributeContainer {
      *
      * @param attrValues values for all attributes, null values are considered unset.
      * @param explicitAttrs holds explicit bit for each attribute index
+     * @param interner shares the state array with other containers, if non-null
      */
-    private Large(Object[] attrValues, BitSet explicitAttrs) {
+    private Large(
+        Object[] attrValues, BitSet explicitAttrs, @Nullable AttributeInterner interner) {
       this.maxAttrCount = attrValues.length;
       int numSet = nonNullCount(attrValues);
       if (numSet == 0) {
@@ -357,7 +373,7 @@ abstract class AttributeContainer {
       }
       int p = prefixSize(maxAttrCount);
       values = new Object[numSet];
-      state = new byte[p + numSet];
+      byte[] state = new byte[p + numSet];
       int index = 0;
       int attrIndex = -1;
       for (Object attrValue : attrValues) {
@@ -372,6 +388,7 @@ abstract class AttributeContainer {
         values[index] = attrValue;
         index += 1;
       }
+      this.state = interner != null ? interner.internLayout(state) : state;
     }
 
     /**
@@ -0,0 +1,88 @@
+// Copyright 2026 The Bazel Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.google.devtools.build.lib.packages;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Interner;
+import com.google.devtools.build.lib.concurrent.ThreadSafety.ThreadCompatible;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Shares equal attribute data among the rules of one package, and estimates the memory this saves.
+ *
+ * <p>It is common for multiple rule instances in the same package to have the same value for some
+ * attributes, such as the tags of several tests, or the deps and copts of the rules expanded from
+ * one macro. Such lists are interned as they are converted. Labels are interned globally by {@link
+ * com.google.devtools.build.lib.cmdline.Label} already.
+ *
+ * <p>Rules of the same class instantiated the same way also set the same attributes, with the same
+ * explicit bits, so the frozen {@link AttributeContainer}s of such rules share their layout arrays
+ * and each holds only its own values.
+ */
+@ThreadCompatible
+final class AttributeInterner implements Interner<ImmutableList<?>> {
+
+  private final Map<ImmutableList<?>, ImmutableList<?>> lists = new HashMap<>();
+  private final Map<ByteBuffer, byte[]> layouts = new HashMap<>();
+  private long bytesSaved;
+
+  @Override
+  public ImmutableList<?> intern(ImmutableList<?> list) {
+    ImmutableList<?> existing = lists.putIfAbsent(list, list);
+    if (existing == null) {
+      return list;
+    }
+    if (existing != list) {
+      bytesSaved += shallowSize(list);
+    }
+    return existing;
+  }
+
+  /** Returns an array with the same contents as {@code layout}, which must not be modified. */
+  byte[] internLayout(byte[] layout) {
+    byte[] existing = layouts.putIfAbsent(ByteBuffer.wrap(layout), layout);
+    if (existing == null) {
+      return layout;
+    }
+    bytesSaved += arraySize(layout.length);
+    return existing;
+  }
+
+  /**
+   * Returns the estimated number of bytes no longer retained by the package's rules because of
+   * sharing.
+   */
+  long getBytesSaved() {
+    return bytesSaved;
+  }
+
+  // Estimates the size of an ImmutableList and its array, but not of its elements, which are
+  // shared with the equal list. Assumes compressed references.
+  private static long shallowSize(ImmutableList<?> list) {
+    switch (list.size()) {
+      case 0:
+        return 0; // a singleton
+      case 1:
+        return 16; // SingletonImmutableList
+      default:
+        return 16 + arraySize(4L * list.size()); // RegularImmutableList
+    }
+  }
+
+  private static long arraySize(long bytes) {
+    return (16 + bytes + 7) & ~7;
+  }
+}
@@ -18,7 +18,9 @@ import com.google.common.base.Preconditions;
 import com.google.common.base.Predicate;
 import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.SettableFuture;
 import com.google.devtools.build.lib.actions.ThreadStateReceiver;
 import com.google.devtools.build.lib.cmdline.PackageIdentifier;
@@ -34,6 +36,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -155,16 +158,65 @@ public class GlobCache {
       throws BadGlobException {
     Future<List<Path>> cached = globCache.get(Pair.of(pattern, excludeDirs));
     if (cached == null) {
-      if (maxDirectoriesToEagerlyVisit > -1
-          && !globalStarted.getAndSet(true)) {
-        packageDirectory.prefetchPackageAsync(maxDirectoriesToEagerlyVisit);
-      }
+      maybePrefetchPackage();
       cached = safeGlobUnsorted(pattern, excludeDirs);
       setGlobPaths(pattern, excludeDirs, cached);
     }
     return cached;
   }
 
+  /**
+   * Starts evaluating those of {@code patterns} that are not cached yet. They are evaluated in a
+   * single traversal of the package, which lists each directory once and matches the common
+   * prefixes of the patterns once for all of them.
+   *
+   * @throws BadGlobException if any of the patterns was syntactically invalid, or contained uplevel
+   *     references.
+   */
+  void startGlobs(Collection<String> patterns, boolean excludeDirs) throws BadGlobException {
+    Set<String> uncached = new LinkedHashSet<>();
+    for (String pattern : patterns) {
+      if (!globCache.containsKey(Pair.of(pattern, excludeDirs))) {
+        checkPattern(pattern);
+        uncached.add(pattern);
+      }
+    }
+    if (uncached.size() == 1) {
+      @SuppressWarnings("unused")
+      Future<?> possiblyIgnoredError =
+          getGlobUnsortedAsync(Iterables.getOnlyElement(uncached), excludeDirs);
+      return;
+    }
+    if (uncached.isEmpty()) {
+      return;
+    }
+    maybePrefetchPackage();
+    Future<Map<String, List<Path>>> globsByPattern;
+    try {
+      globsByPattern =
+          UnixGlob.forPath(packageDirectory)
+              .addPatterns(uncached)
+              .setExcludeDirectories(excludeDirs)
+              .setDirectoryFilter(childDirectoryPredicate)
+              .setExecutor(globExecutor)
+              .setFilesystemCalls(syscalls)
+              .globAsyncByPattern();
+    } catch (UnixGlob.BadPattern ex) {
+      throw new BadGlobException(ex.getMessage());
+    }
+    for (String pattern : uncached) {
+      // Cancelling any of these cancels the shared traversal, like cancelBackgroundTasks() does.
+      setGlobPaths(
+          pattern, excludeDirs, Futures.lazyTransform(globsByPattern, globs -> globs.get(pattern)));
+    }
+  }
+
+  private void maybePrefetchPackage() {
+    if (maxDirectoriesToEagerlyVisit > -1 && !globalStarted.getAndSet(true)) {
+      packageDirectory.prefetchPackageAsync(maxDirectoriesToEagerlyVisit);
+    }
+  }
+
   @VisibleForTesting
   List<String> getGlobUnsorted(String pattern)
       throws IOException, BadGlobException, InterruptedException {
@@ -208,15 +260,7 @@ public class GlobCache {
    */
   @VisibleForTesting
   Future<List<Path>> safeGlobUnsorted(String pattern, boolean excludeDirs) throws BadGlobException {
-    // Forbidden patterns:
-    if (pattern.indexOf('?') != -1) {
-      throw new BadGlobException("glob pattern '" + pattern + "' contains forbidden '?' wildcard");
-    }
-    // Patterns forbidden by UnixGlob library:
-    String error = UnixGlob.checkPatternForError(pattern);
-    if (error != null) {
-      throw new BadGlobException(error + " (in glob pattern '" + pattern + "')");
-    }
+    checkPattern(pattern);
     try {
       return UnixGlob.forPath(packageDirectory)
           .addPattern(pattern)
@@ -230,6 +274,18 @@ public class GlobCache {
     }
   }
 
+  private static void checkPattern(String pattern) throws BadGlobException {
+    // Forbidden patterns:
+    if (pattern.indexOf('?') != -1) {
+      throw new BadGlobException("glob pattern '" + pattern + "' contains forbidden '?' wildcard");
+    }
+    // Patterns forbidden by UnixGlob library:
+    String error = UnixGlob.checkPatternForError(pattern);
+    if (error != null) {
+      throw new BadGlobException(error + " (in glob pattern '" + pattern + "')");
+    }
+  }
+
   /**
    * Sanitize the future exceptions - the only expected checked exception
    * is IOException.
@@ -255,13 +311,10 @@ public class GlobCache {
   public List<String> globUnsorted(
       List<String> includes, List<String> excludes, boolean excludeDirs, boolean allowEmpty)
       throws IOException, BadGlobException, InterruptedException {
-    // Start globbing all patterns in parallel. The getGlob() calls below will
-    // block on an individual pattern's results, but the other globs can
+    // Start globbing all patterns together. The getGlob() calls below will
+    // block on an individual pattern's results, but the traversal can
     // continue in the background.
-    for (String pattern : includes) {
-      @SuppressWarnings("unused")
-      Future<?> possiblyIgnoredError = getGlobUnsortedAsync(pattern, excludeDirs);
-    }
+    startGlobs(includes, excludeDirs);
 
     HashSet<String> results = new HashSet<>();
     for (String pattern : includes) {
@@ -16,7 +16,6 @@ package com.google.devtools.build.lib.packages;
 
 import java.io.IOException;
 import java.util.List;
-import java.util.concurrent.Future;
 
 /** {@link Globber} that uses {@link GlobCache} instead of Skyframe. */
 public class NonSkyframeGlobber implements Globber {
@@ -46,10 +45,7 @@ public class NonSkyframeGlobber implements Globber {
   public Token runAsync(
       List<String> includes, List<String> excludes, boolean excludeDirs, boolean allowEmpty)
       throws BadGlobException {
-    for (String pattern : includes) {
-      @SuppressWarnings("unused")
-      Future<?> possiblyIgnoredError = globCache.getGlobUnsortedAsync(pattern, excludeDirs);
-    }
+    globCache.startGlobs(includes, excludeDirs);
     return new Token(includes, excludes, excludeDirs, allowEmpty);
   }
 
@@ -14,8 +14,6 @@
 
 package com.google.devtools.build.lib.packages;
 
-import static com.google.common.base.MoreObjects.firstNonNull;
-
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.BiMap;
@@ -36,7 +34,6 @@ import com.google.devtools.build.lib.cmdline.RepositoryMapping;
 import com.google.devtools.build.lib.cmdline.RepositoryName;
 import com.google.devtools.build.lib.cmdline.TargetPattern;
 import com.google.devtools.build.lib.collect.CollectionUtils;
-import com.google.devtools.build.lib.concurrent.ThreadSafety.ThreadCompatible;
 import com.google.devtools.build.lib.events.Event;
 import com.google.devtools.build.lib.events.EventHandler;
 import com.google.devtools.build.lib.events.EventKind;
@@ -244,6 +241,8 @@ public class Package {
 
   private long computationSteps;
 
+  private long attributeBytesSaved;
+
   private ImmutableMap<String, Module> loads;
 
   /** Returns the number of Starlark computation steps executed by this BUILD file. */
@@ -251,6 +250,14 @@ public class Package {
     return computationSteps;
   }
 
+  /**
+   * Returns the estimated number of bytes saved by sharing equal attribute values and layouts
+   * among the rules of this package, rather than retaining a copy per rule.
+   */
+  public long getAttributeBytesSaved() {
+    return attributeBytesSaved;
+  }
+
   /**
    * Returns the mapping, for each load statement in this BUILD file in source order, from the load
    * string to the module it loads. It thus indirectly records the package's complete load DAG. In
@@ -1016,7 +1023,7 @@ public class Package {
      */
     private final Map<String, OutputFile> outputFilePrefixes = new HashMap<>();
 
-    private final Interner<ImmutableList<?>> listInterner = new ThreadCompatibleInterner<>();
+    private final AttributeInterner attributeInterner = new AttributeInterner();
 
     private final HashMap<String, Label> convertedLabelsInPackage = new HashMap<>();
 
@@ -1052,17 +1059,6 @@ public class Package {
       return testSuiteImplicitTestsAccumulator.getTestSuiteImplicitTestsRefForTags(tags);
     }
 
-    @ThreadCompatible
-    private static final class ThreadCompatibleInterner<T> implements Interner<T> {
-      private final Map<T, T> interns = new HashMap<>();
-
-      @Override
-      public T intern(T sample) {
-        T existing = interns.putIfAbsent(sample, sample);
-        return firstNonNull(existing, sample);
-      }
-    }
-
     private boolean alreadyBuilt = false;
 
     Builder(
@@ -1133,7 +1129,7 @@ public class Package {
     }
 
     Interner<ImmutableList<?>> getListInterner() {
-      return listInterner;
+      return attributeInterner;
     }
 
     HashMap<String, Label> getConvertedLabelsInPackage() {
@@ -1820,8 +1816,9 @@ public class Package {
 
       // Freeze targets and distributions.
       for (Rule rule : getRules()) {
-        rule.freeze();
+        rule.freeze(attributeInterner);
       }
+      pkg.attributeBytesSaved = attributeInterner.getBytesSaved();
       ruleLabels = null;
       targets = Maps.unmodifiableBiMap(targets);
       defaultDistributionSet =
@@ -632,8 +632,8 @@ public class Rule implements Target, DependencyFilter.AttributeInfoProvider {
     return transitions;
   }
 
-  void freeze() {
-    attributes = attributes.freeze();
+  void freeze(AttributeInterner interner) {
+    attributes = attributes.freeze(interner);
   }
 
   /**
@@ -56,7 +56,8 @@ public class PackageMetricsPackageLoadingListener implements PackageLoadingListe
             .setLoadDuration(Durations.fromNanos(loadTimeNanos))
             .setComputationSteps(pkg.getComputationSteps())
             .setNumTargets(pkg.getTargets().size())
-            .setNumTransitiveLoads(pkg.getStarlarkFileDependencies().size());
+            .setNumTransitiveLoads(pkg.getStarlarkFileDependencies().size())
+            .setAttributeBytesSaved(pkg.getAttributeBytesSaved());
 
     if (packageOverhead.isPresent()) {
       builder.setPackageOverhead(packageOverhead.getAsLong());
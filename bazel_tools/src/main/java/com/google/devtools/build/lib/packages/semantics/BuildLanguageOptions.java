@@ -258,6 +258,18 @@ public final class BuildLanguageOptions extends OptionsBase {
               + "directory.")
   public boolean experimentalSiblingRepositoryLayout;
 
+  @Option(
+      name = "experimental_starlark_bytecode",
+      defaultValue = "false",
+      documentationCategory = OptionDocumentationCategory.STARLARK_SEMANTICS,
+      effectTags = {OptionEffectTag.LOADING_AND_ANALYSIS},
+      metadataTags = {OptionMetadataTag.EXPERIMENTAL},
+      help =
+          "If set to true, Starlark functions are compiled to bytecode on their first call instead"
+              + " of being evaluated by walking their syntax trees. Top-level code and functions"
+              + " run under a debugger are always evaluated from the syntax tree.")
+  public boolean experimentalStarlarkBytecode;
+
   @Option(
       name = "experimental_allow_tags_propagation",
       oldName = "incompatible_allow_tags_propagation",
@@ -573,6 +585,7 @@ public final class BuildLanguageOptions extends OptionsBase {
             .setBool(EXPERIMENTAL_REPO_REMOTE_EXEC, experimentalRepoRemoteExec)
             .setBool(EXPERIMENTAL_DISABLE_EXTERNAL_PACKAGE, experimentalDisableExternalPackage)
             .setBool(EXPERIMENTAL_SIBLING_REPOSITORY_LAYOUT, experimentalSiblingRepositoryLayout)
+            .setBool(StarlarkSemantics.EXPERIMENTAL_STARLARK_BYTECODE, experimentalStarlarkBytecode)
             .setBool(
                 INCOMPATIBLE_DISABLE_TARGET_PROVIDER_FIELDS,
                 incompatibleDisableTargetProviderFields)
@@ -0,0 +1,135 @@
+// Copyright 2026 The Bazel Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.devtools.build.lib.profiler;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Constants and primitives of the binary profile format, a compact alternative to the JSON trace
+ * format that each thread can append to without a global queue.
+ *
+ * <p>A binary profile starts with {@link #MAGIC}, the {@link #VERSION}, and the build id, output
+ * base and date as strings. The rest of the file is a sequence of chunks, each a varint length
+ * followed by that many bytes of events. Chunks are self-contained: strings in a chunk are written
+ * once and then referred to by their index in the chunk, so chunks can be written by different
+ * threads in any order. Each event starts with one of the {@code *_EVENT} kinds:
+ *
+ * <ul>
+ *   <li>{@link #TASK_EVENT}: category, name, thread id, start and duration in microseconds, a byte
+ *       of {@code HAS_*} flags and the flagged strings
+ *   <li>{@link #COUNTER_EVENT}: name, thread id, time in microseconds and value
+ *   <li>{@link #THREAD_NAME_EVENT}: thread id and name
+ *   <li>{@link #THREAD_SORT_INDEX_EVENT}: thread id and sort index
+ * </ul>
+ *
+ * <p>Numbers are unsigned varints, except for times, which are zigzag-encoded signed varints.
+ */
+final class BinaryProfileFormat {
+  static final byte[] MAGIC = {(byte) 0x89, 'B', 'Z', 'P'};
+  static final int VERSION = 1;
+
+  static final int TASK_EVENT = 1;
+  static final int COUNTER_EVENT = 2;
+  static final int THREAD_NAME_EVENT = 3;
+  static final int THREAD_SORT_INDEX_EVENT = 4;
+
+  static final int HAS_PRIMARY_OUTPUT = 1;
+  static final int HAS_TARGET_LABEL = 2;
+  static final int HAS_MNEMONIC = 4;
+
+  /** The most bytes that a varint takes. */
+  static final int MAX_VARINT_SIZE = 10;
+
+  private BinaryProfileFormat() {}
+
+  /** Returns whether the stream starts with {@link #MAGIC}, leaving it at its original position. */
+  static boolean hasMagic(InputStream in) throws IOException {
+    in.mark(MAGIC.length);
+    byte[] magic = new byte[MAGIC.length];
+    int read = in.readNBytes(magic, 0, magic.length);
+    in.reset();
+    return read == MAGIC.length && Arrays.equals(magic, MAGIC);
+  }
+
+  /** Writes {@code value} as a varint to {@code buf} at {@code pos}, returning the new position. */
+  static int putVarint(byte[] buf, int pos, long value) {
+    while ((value & ~0x7FL) != 0) {
+      buf[pos++] = (byte) ((value & 0x7F) | 0x80);
+      value >>>= 7;
+    }
+    buf[pos++] = (byte) value;
+    return pos;
+  }
+
+  static long zigzag(long value) {
+    return (value << 1) ^ (value >> 63);
+  }
+
+  static long unzigzag(long value) {
+    return (value >>> 1) ^ -(value & 1);
+  }
+
+  static void writeVarint(OutputStream out, long value) throws IOException {
+    byte[] buf = new byte[MAX_VARINT_SIZE];
+    out.write(buf, 0, putVarint(buf, 0, value));
+  }
+
+  static void writeString(OutputStream out, String value) throws IOException {
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    writeVarint(out, bytes.length);
+    out.write(bytes);
+  }
+
+  static long readVarint(InputStream in) throws IOException {
+    int first = in.read();
+    if (first == -1) {
+      throw new EOFException("Truncated binary profile");
+    }
+    return readVarint(in, first);
+  }
+
+  /** Reads a non-negative varint, or returns -1 if the stream is at its end. */
+  static long readVarintOrEof(InputStream in) throws IOException {
+    int first = in.read();
+    return first == -1 ? -1 : readVarint(in, first);
+  }
+
+  private static long readVarint(InputStream in, int b) throws IOException {
+    long value = 0;
+    for (int shift = 0; shift < 64; shift += 7) {
+      value |= (long) (b & 0x7F) << shift;
+      if ((b & 0x80) == 0) {
+        return value;
+      }
+      if ((b = in.read()) == -1) {
+        throw new EOFException("Truncated binary profile");
+      }
+    }
+    throw new IOException("Malformed varint in binary profile");
+  }
+
+  static String readString(InputStream in) throws IOException {
+    byte[] bytes = new byte[Math.toIntExact(readVarint(in))];
+    if (in.readNBytes(bytes, 0, bytes.length) != bytes.length) {
+      throw new EOFException("Truncated binary profile");
+    }
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+}
@@ -18,7 +18,10 @@ import com.google.auto.value.AutoValue;
 import com.google.devtools.build.lib.profiler.statistics.PhaseSummaryStatistics;
 import com.google.gson.stream.JsonReader;
 import com.google.gson.stream.JsonToken;
+import java.io.BufferedInputStream;
 import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
@@ -26,12 +29,14 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
 import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.zip.GZIPInputStream;
 import javax.annotation.Nullable;
 
 /**
- * Utility class to handle parsing the JSON trace profiles.
+ * Utility class to handle parsing the JSON trace profiles, and profiles in the {@link
+ * BinaryProfileFormat binary format}, which are read into the same trace events.
  *
  * <p>The format itself is documented in
  * https://docs.google.com/document/d/1CvAClvFfyA5R-PhYUmn5OOQtYMH4h6I0nSsKchNAySU/preview
@@ -46,6 +51,14 @@ public final class JsonProfile {
   }
 
   public JsonProfile(InputStream inputStream) throws IOException {
+    inputStream = new BufferedInputStream(inputStream);
+    if (BinaryProfileFormat.hasMagic(inputStream)) {
+      try (InputStream in = inputStream) {
+        readBinaryProfile(in);
+      }
+      computePhaseSummaryStatistics();
+      return;
+    }
     try (JsonReader reader =
         new JsonReader(
             new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8)))) {
@@ -57,33 +70,7 @@ public final class JsonProfile {
             buildMetadata = parseBuildMetadata(reader);
           } else if ("traceEvents".equals(objectKey)) {
             traceEvents = TraceEvent.parseTraceEvents(reader);
-            phaseSummaryStatistics = new PhaseSummaryStatistics();
-            TraceEvent lastPhaseEvent = null;
-            Duration maxEndTime = Duration.ZERO;
-            for (TraceEvent traceEvent : traceEvents) {
-              if (traceEvent.timestamp() != null) {
-                Duration curEndTime = traceEvent.timestamp();
-                if (traceEvent.duration() != null) {
-                  curEndTime = curEndTime.plus(traceEvent.duration());
-                }
-                if (curEndTime.compareTo(maxEndTime) > 0) {
-                  maxEndTime = curEndTime;
-                }
-              }
-              if (ProfilerTask.PHASE.description.equals(traceEvent.category())) {
-                if (lastPhaseEvent != null) {
-                  phaseSummaryStatistics.addProfilePhase(
-                      ProfilePhase.getPhaseFromDescription(lastPhaseEvent.name()),
-                      traceEvent.timestamp().minus(lastPhaseEvent.timestamp()));
-                }
-                lastPhaseEvent = traceEvent;
-              }
-            }
-            if (lastPhaseEvent != null) {
-              phaseSummaryStatistics.addProfilePhase(
-                  ProfilePhase.getPhaseFromDescription(lastPhaseEvent.name()),
-                  maxEndTime.minus(lastPhaseEvent.timestamp()));
-            }
+            computePhaseSummaryStatistics();
           } else {
             reader.skipValue();
           }
@@ -95,6 +82,155 @@ public final class JsonProfile {
     }
   }
 
+  private void computePhaseSummaryStatistics() {
+    phaseSummaryStatistics = new PhaseSummaryStatistics();
+    TraceEvent lastPhaseEvent = null;
+    Duration maxEndTime = Duration.ZERO;
+    for (TraceEvent traceEvent : traceEvents) {
+      if (traceEvent.timestamp() != null) {
+        Duration curEndTime = traceEvent.timestamp();
+        if (traceEvent.duration() != null) {
+          curEndTime = curEndTime.plus(traceEvent.duration());
+        }
+        if (curEndTime.compareTo(maxEndTime) > 0) {
+          maxEndTime = curEndTime;
+        }
+      }
+      if (ProfilerTask.PHASE.description.equals(traceEvent.category())) {
+        if (lastPhaseEvent != null) {
+          phaseSummaryStatistics.addProfilePhase(
+              ProfilePhase.getPhaseFromDescription(lastPhaseEvent.name()),
+              traceEvent.timestamp().minus(lastPhaseEvent.timestamp()));
+        }
+        lastPhaseEvent = traceEvent;
+      }
+    }
+    if (lastPhaseEvent != null) {
+      phaseSummaryStatistics.addProfilePhase(
+          ProfilePhase.getPhaseFromDescription(lastPhaseEvent.name()),
+          maxEndTime.minus(lastPhaseEvent.timestamp()));
+    }
+  }
+
+  /**
+   * Reads a profile in the binary format into trace events like those of the equivalent JSON
+   * profile. Chunks are read in the order in which they were written, so the events of different
+   * threads are not in order of their timestamps.
+   */
+  private void readBinaryProfile(InputStream in) throws IOException {
+    in.readNBytes(BinaryProfileFormat.MAGIC.length);
+    long version = BinaryProfileFormat.readVarint(in);
+    if (version != BinaryProfileFormat.VERSION) {
+      throw new IOException("Unsupported binary profile version " + version);
+    }
+    String buildId = BinaryProfileFormat.readString(in);
+    String outputBase = BinaryProfileFormat.readString(in);
+    String date = BinaryProfileFormat.readString(in);
+    buildMetadata = BuildMetadata.create(buildId, date, outputBase);
+
+    traceEvents = new ArrayList<>();
+    List<String> strings = new ArrayList<>();
+    long length;
+    while ((length = BinaryProfileFormat.readVarintOrEof(in)) != -1) {
+      byte[] chunk = new byte[Math.toIntExact(length)];
+      if (in.readNBytes(chunk, 0, chunk.length) != chunk.length) {
+        throw new EOFException("Truncated binary profile");
+      }
+      ByteArrayInputStream events = new ByteArrayInputStream(chunk);
+      strings.clear();
+      int kind;
+      while ((kind = events.read()) != -1) {
+        switch (kind) {
+          case BinaryProfileFormat.TASK_EVENT:
+            {
+              String category = readString(events, strings);
+              String name = readString(events, strings);
+              long threadId = BinaryProfileFormat.readVarint(events);
+              Duration timestamp = readMicros(events);
+              long durationMicros = BinaryProfileFormat.readVarint(events);
+              int flags = events.read();
+              traceEvents.add(
+                  TraceEvent.create(
+                      category,
+                      name,
+                      timestamp,
+                      durationMicros == 0 ? null : Duration.ofNanos(durationMicros * 1000),
+                      threadId,
+                      (flags & BinaryProfileFormat.HAS_PRIMARY_OUTPUT) != 0
+                          ? readString(events, strings)
+                          : null,
+                      (flags & BinaryProfileFormat.HAS_TARGET_LABEL) != 0
+                          ? readString(events, strings)
+                          : null,
+                      (flags & BinaryProfileFormat.HAS_MNEMONIC) != 0
+                          ? readString(events, strings)
+                          : null));
+              break;
+            }
+          case BinaryProfileFormat.COUNTER_EVENT:
+            {
+              String name = readString(events, strings);
+              long threadId = BinaryProfileFormat.readVarint(events);
+              Duration timestamp = readMicros(events);
+              readString(events, strings); // The value is not part of trace events.
+              traceEvents.add(createPlainEvent(name, timestamp, threadId));
+              break;
+            }
+          case BinaryProfileFormat.THREAD_NAME_EVENT:
+            {
+              long threadId = BinaryProfileFormat.readVarint(events);
+              readString(events, strings);
+              traceEvents.add(createPlainEvent("thread_name", /* timestamp= */ null, threadId));
+              break;
+            }
+          case BinaryProfileFormat.THREAD_SORT_INDEX_EVENT:
+            {
+              long threadId = BinaryProfileFormat.readVarint(events);
+              BinaryProfileFormat.readVarint(events);
+              traceEvents.add(
+                  createPlainEvent("thread_sort_index", /* timestamp= */ null, threadId));
+              break;
+            }
+          default:
+            throw new IOException("Corrupted binary profile: unknown event kind " + kind);
+        }
+      }
+    }
+  }
+
+  /** Returns an event like those of counters and thread metadata in JSON profiles. */
+  private static TraceEvent createPlainEvent(
+      String name, @Nullable Duration timestamp, long threadId) {
+    return TraceEvent.create(
+        /* category= */ null,
+        name,
+        timestamp,
+        /* duration= */ null,
+        threadId,
+        /* primaryOutputPath= */ null,
+        /* targetLabel= */ null,
+        /* mnemonic= */ null);
+  }
+
+  private static Duration readMicros(InputStream in) throws IOException {
+    long micros = BinaryProfileFormat.unzigzag(BinaryProfileFormat.readVarint(in));
+    return Duration.ofNanos(micros * 1000);
+  }
+
+  /** Reads a string of a chunk, which is either new or a reference to an earlier one. */
+  private static String readString(InputStream in, List<String> strings) throws IOException {
+    int index = Math.toIntExact(BinaryProfileFormat.readVarint(in));
+    if (index == 0) {
+      String value = BinaryProfileFormat.readString(in);
+      strings.add(value);
+      return value;
+    }
+    if (index > strings.size()) {
+      throw new IOException("Corrupted binary profile: unknown string " + index);
+    }
+    return strings.get(index - 1);
+  }
+
   private static InputStream getInputStream(File profileFile) throws IOException {
     InputStream inputStream = new FileInputStream(profileFile);
     if (profileFile.getName().endsWith(".gz")) {
@@ -0,0 +1,184 @@
+// Copyright 2026 The Bazel Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.devtools.build.lib.profiler;
+
+import com.google.common.base.Preconditions;
+import com.google.devtools.build.lib.concurrent.ThreadSafety.ThreadSafe;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A histogram of task durations with buckets whose width grows with their bounds, so that any
+ * duration is off by at most 1/8th of its value, as in an HDR histogram.
+ *
+ * <p>Recording is lock-free and cheap enough to do for every task: the counts are sharded by
+ * thread, so that threads recording at the same time rarely update the same memory. Shards are
+ * allocated the first time a thread with their index records a duration.
+ */
+@ThreadSafe
+public final class LatencyHistogram {
+  private static final int SHARDS = 8;
+
+  // Durations below 2^SUB_BUCKET_BITS microseconds have a bucket each. Above, every power of two
+  // is split into 2^SUB_BUCKET_BITS buckets.
+  private static final int SUB_BUCKET_BITS = 3;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  // Longer durations, about 19 hours, end up in the last bucket.
+  private static final long MAX_MICROS = (1L << 36) - 1;
+  static final int BUCKETS = bucketOf(MAX_MICROS) + 1;
+
+  // Each shard holds the count of each bucket followed by the sum of the durations in microseconds.
+  private final AtomicReferenceArray<AtomicLongArray> shards = new AtomicReferenceArray<>(SHARDS);
+
+  /** Records a task that took {@code durationNanos}. */
+  public void record(long durationNanos) {
+    long micros = Math.min(Math.max(durationNanos / 1000, 0), MAX_MICROS);
+    AtomicLongArray shard = getShard((int) (Thread.currentThread().getId() % SHARDS));
+    shard.incrementAndGet(bucketOf(micros));
+    shard.addAndGet(BUCKETS, micros);
+  }
+
+  private AtomicLongArray getShard(int index) {
+    AtomicLongArray shard = shards.get(index);
+    if (shard == null) {
+      shards.compareAndSet(index, null, new AtomicLongArray(BUCKETS + 1));
+      shard = shards.get(index);
+    }
+    return shard;
+  }
+
+  /** Returns the durations recorded so far. Durations recorded concurrently may be missing. */
+  public Snapshot snapshot() {
+    long[] counts = new long[BUCKETS + 1];
+    for (int i = 0; i < SHARDS; i++) {
+      AtomicLongArray shard = shards.get(i);
+      if (shard != null) {
+        for (int bucket = 0; bucket <= BUCKETS; bucket++) {
+          counts[bucket] += shard.get(bucket);
+        }
+      }
+    }
+    return new Snapshot(counts);
+  }
+
+  static int bucketOf(long micros) {
+    if (micros < SUB_BUCKETS) {
+      return (int) micros;
+    }
+    int exponent = 63 - Long.numberOfLeadingZeros(micros);
+    int subBucket = (int) (micros >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+    return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+  }
+
+  /** Returns the smallest duration in microseconds that is counted in {@code bucket}. */
+  static long lowerBoundOf(int bucket) {
+    if (bucket < SUB_BUCKETS) {
+      return bucket;
+    }
+    int shift = bucket / SUB_BUCKETS - 1;
+    return (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+  }
+
+  /** Returns the largest duration in microseconds that is counted in {@code bucket}. */
+  static long upperBoundOf(int bucket) {
+    return bucket == BUCKETS - 1 ? MAX_MICROS : lowerBoundOf(bucket + 1) - 1;
+  }
+
+  /** An immutable copy of the counts of a {@link LatencyHistogram}. */
+  public static final class Snapshot {
+    static final Snapshot EMPTY = new Snapshot(new long[BUCKETS + 1]);
+
+    private final long[] counts;
+    private final long count;
+
+    private Snapshot(long[] counts) {
+      this.counts = counts;
+      long count = 0;
+      for (int bucket = 0; bucket < BUCKETS; bucket++) {
+        count += counts[bucket];
+      }
+      this.count = count;
+    }
+
+    /** Returns the durations recorded since {@code earlier}, a snapshot of the same histogram. */
+    public Snapshot minus(Snapshot earlier) {
+      long[] difference = new long[BUCKETS + 1];
+      for (int i = 0; i <= BUCKETS; i++) {
+        difference[i] = counts[i] - earlier.counts[i];
+      }
+      return new Snapshot(difference);
+    }
+
+    public long getCount() {
+      return count;
+    }
+
+    public Duration getTotal() {
+      return Duration.ofNanos(counts[BUCKETS] * 1000);
+    }
+
+    /**
+     * Returns the duration that {@code percentile} percent of the recorded durations do not exceed,
+     * rounded up to the upper bound of its bucket, or zero if nothing was recorded.
+     */
+    public Duration getPercentile(double percentile) {
+      Preconditions.checkArgument(percentile > 0 && percentile <= 100, percentile);
+      long rank = (long) Math.ceil(count * percentile / 100);
+      long seen = 0;
+      for (int bucket = 0; bucket < BUCKETS; bucket++) {
+        seen += counts[bucket];
+        if (seen >= rank && seen > 0) {
+          return getUpperBound(bucket);
+        }
+      }
+      return Duration.ZERO;
+    }
+
+    public Duration getMax() {
+      return getPercentile(100);
+    }
+
+    /** Returns the number of buckets, of which bucket {@code i} counts {@link #getCount(int)}. */
+    public int getBucketCount() {
+      return BUCKETS;
+    }
+
+    public long getCount(int bucket) {
+      return counts[bucket];
+    }
+
+    /** Returns the smallest duration that is counted in {@code bucket}. */
+    public Duration getLowerBound(int bucket) {
+      return Duration.ofNanos(lowerBoundOf(bucket) * 1000);
+    }
+
+    /** Returns the largest duration that is counted in {@code bucket}. */
+    public Duration getUpperBound(int bucket) {
+      return Duration.ofNanos(upperBoundOf(bucket) * 1000);
+    }
+
+    @Override
+    public String toString() {
+      return String.format(
+          "count=%d p50=%.2fms p90=%.2fms p99=%.2fms max=%.2fms",
+          count,
+          getPercentile(50).toNanos() / 1e6,
+          getPercentile(90).toNanos() / 1e6,
+          getPercentile(99).toNanos() / 1e6,
+          getMax().toNanos() / 1e6);
+    }
+  }
+}
@@ -45,13 +45,16 @@ import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.zip.GZIPOutputStream;
+import javax.annotation.Nullable;
 
 /**
  * Blaze internal profiler. Provides facility to report various Blaze tasks and store them
@@ -87,7 +90,9 @@ public final class Profiler {
   /** File format enum. */
   public enum Format {
     JSON_TRACE_FILE_FORMAT,
-    JSON_TRACE_FILE_COMPRESSED_FORMAT
+    JSON_TRACE_FILE_COMPRESSED_FORMAT,
+    BINARY_TRACE_FILE_FORMAT,
+    BINARY_TRACE_FILE_COMPRESSED_FORMAT
   }
 
   /** A task that was very slow. */
@@ -263,7 +268,7 @@ public final class Profiler {
    * The reference to the current writer, if any. If the referenced writer is null, then disk writes
    * are disabled. This can happen when slowest task recording is enabled.
    */
-  private AtomicReference<FileWriter> writerRef = new AtomicReference<>();
+  private AtomicReference<TraceWriter> writerRef = new AtomicReference<>();
 
   private final SlowestTaskAggregator[] slowestTasks =
       new SlowestTaskAggregator[ProfilerTask.values().length];
@@ -271,6 +276,11 @@ public final class Profiler {
   @VisibleForTesting
   final StatRecorder[] tasksHistograms = new StatRecorder[ProfilerTask.values().length];
 
+  /** The latencies of all tasks since the server started, recorded while profiling is active. */
+  private final TaskLatencies taskLatencies = new TaskLatencies();
+
+  private TaskLatencies.Snapshot taskLatenciesAtStart = TaskLatencies.Snapshot.EMPTY;
+
   /** Thread that collects local cpu usage data (if enabled). */
   private CollectLocalResourceUsage cpuUsageThread;
 
@@ -318,6 +328,19 @@ public final class Profiler {
     return isActive() ? ImmutableList.copyOf(tasksHistograms) : ImmutableList.of();
   }
 
+  /**
+   * Returns the latencies of the tasks of the current command by task type and action mnemonic,
+   * or of the last command if the profiler is not active.
+   */
+  public synchronized TaskLatencies.Snapshot getCommandTaskLatencies() {
+    return taskLatencies.snapshot().minus(taskLatenciesAtStart);
+  }
+
+  /** Returns the latencies of the tasks of all commands since the server started. */
+  public TaskLatencies.Snapshot getTaskLatencies() {
+    return taskLatencies.snapshot();
+  }
+
   public static Profiler instance() {
     return instance;
   }
@@ -394,6 +417,7 @@ public final class Profiler {
     this.actionCountTimeSeries =
         new TimeSeries(Duration.ofNanos(actionCountStartTime).toMillis(), ACTION_COUNT_BUCKET_MS);
     this.collectTaskHistograms = collectTaskHistograms;
+    this.taskLatenciesAtStart = taskLatencies.snapshot();
 
     // Check for current limitation on the number of supported types due to using enum.ordinal() to
     // store them instead of EnumSet for performance reasons.
@@ -404,7 +428,7 @@ public final class Profiler {
     // Reset state for the new profiling session.
     taskId.set(0);
     this.recordAllDurations = recordAllDurations;
-    FileWriter writer = null;
+    TraceWriter writer = null;
     if (stream != null && format != null) {
       switch (format) {
         case JSON_TRACE_FILE_FORMAT:
@@ -428,6 +452,28 @@ public final class Profiler {
                   buildID,
                   includePrimaryOutput,
                   includeTargetLabel);
+          break;
+        case BINARY_TRACE_FILE_FORMAT:
+          writer =
+              new BinaryTraceFileWriter(
+                  stream,
+                  clock,
+                  execStartTimeNanos,
+                  outputBase,
+                  buildID,
+                  includePrimaryOutput,
+                  includeTargetLabel);
+          break;
+        case BINARY_TRACE_FILE_COMPRESSED_FORMAT:
+          writer =
+              new BinaryTraceFileWriter(
+                  new GZIPOutputStream(stream),
+                  clock,
+                  execStartTimeNanos,
+                  outputBase,
+                  buildID,
+                  includePrimaryOutput,
+                  includeTargetLabel);
       }
       writer.start();
     }
@@ -502,7 +548,7 @@ public final class Profiler {
 
     // Log a final event to update the duration of ProfilePhase.FINISH.
     logEvent(ProfilerTask.INFO, "Finishing");
-    FileWriter writer = writerRef.getAndSet(null);
+    TraceWriter writer = writerRef.getAndSet(null);
     if (writer != null) {
       writer.shutdown();
       writer = null;
@@ -558,11 +604,15 @@ public final class Profiler {
     if (collectTaskHistograms && statRecorder != null) {
       statRecorder.addStat((int) Duration.ofNanos(duration).toMillis(), description);
     }
+    // Events and counters have no duration.
+    if (duration > 0 && isActive()) {
+      taskLatencies.record(type, /* mnemonic= */ null, duration);
+    }
 
     if (isActive() && startTimeNanos >= 0 && isProfiling(type)) {
       // Store instance fields as local variables so they are not nulled out from under us by
       // #clear.
-      FileWriter currentWriter = writerRef.get();
+      TraceWriter currentWriter = writerRef.get();
       if (wasTaskSlowEnoughToRecord(type, duration)) {
         TaskData data = new TaskData(taskId.incrementAndGet(), startTimeNanos, type, description);
         data.duration = duration;
@@ -631,6 +681,15 @@ public final class Profiler {
     logTask(atTimeNanos, 0, type, description);
   }
 
+  /** Returns the number of threads that hold a buffer of tasks for a binary profile. */
+  @VisibleForTesting
+  int getBufferedTraceChunkCount() {
+    TraceWriter writer = writerRef.get();
+    return writer instanceof BinaryTraceFileWriter
+        ? ((BinaryTraceFileWriter) writer).getBufferedChunkCount()
+        : 0;
+  }
+
   /** Used to log "events" - tasks with zero duration. */
   @VisibleForTesting
   void logEvent(ProfilerTask type, String description) {
@@ -740,8 +799,9 @@ public final class Profiler {
     if (isActive()) {
       long endTime = clock.nanoTime();
       data.duration = endTime - data.startTimeNanos;
+      taskLatencies.record(data.type, data.mnemonic.getValueForJson(), data.duration);
       boolean shouldRecordTask = wasTaskSlowEnoughToRecord(data.type, data.duration);
-      FileWriter writer = writerRef.get();
+      TraceWriter writer = writerRef.get();
       if (shouldRecordTask && writer != null) {
         writer.enqueue(data);
       }
@@ -770,7 +830,18 @@ public final class Profiler {
     }
   }
 
-  private abstract static class FileWriter implements Runnable {
+  /** Writes the recorded tasks to the profile. */
+  private interface TraceWriter {
+    void start();
+
+    /** Hands over a completed task, which must not be modified afterwards. */
+    void enqueue(TaskData data);
+
+    /** Writes all tasks handed over so far and closes the profile. */
+    void shutdown() throws IOException;
+  }
+
+  private abstract static class FileWriter implements TraceWriter, Runnable {
     protected final BlockingQueue<TaskData> queue;
     protected final Thread thread;
     protected IOException savedException;
@@ -780,6 +851,7 @@ public final class Profiler {
       this.thread = new Thread(this, "profile-writer-thread");
     }
 
+    @Override
     public void shutdown() throws IOException {
       // Add poison pill to queue and then wait for writer thread to shut down.
       queue.add(POISON_PILL);
@@ -794,10 +866,12 @@ public final class Profiler {
       }
     }
 
+    @Override
     public void start() {
       thread.start();
     }
 
+    @Override
     public void enqueue(TaskData data) {
       queue.add(data);
     }
@@ -1235,4 +1309,312 @@ public final class Profiler {
       }
     }
   }
+
+  /**
+   * Writes the profile in the {@link BinaryProfileFormat binary format}. There is no queue and no
+   * writer thread: each thread encodes its tasks into a chunk of its own as they complete and
+   * appends the chunk to the output when it is full, so memory use is bounded by the chunks of the
+   * threads, and a slow output slows down the recording threads instead of accumulating tasks.
+   * The chunks of threads that ended or went idle are written and their buffers released, so only
+   * the threads that recently recorded tasks hold a buffer.
+   *
+   * <p>Events are not merged, so {@code slimProfile} has no effect.
+   */
+  private static final class BinaryTraceFileWriter implements TraceWriter {
+    private static final int CHUNK_SIZE = 32 << 10;
+
+    /** How long a thread may record nothing before its chunk is written and released. */
+    private static final long IDLE_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    private final OutputStream out;
+    private final long profileStartTimeNanos;
+    private final boolean includePrimaryOutput;
+    private final boolean includeTargetLabel;
+    private final String buildId;
+    private final String outputBase;
+    private final Clock clock;
+
+    // The chunks of all threads that may still record tasks. Each thread only adds its own. This is
+    // not a ThreadLocal, because a chunk refers to the writer, so the entries of long-lived threads
+    // would keep every past writer and its output buffer alive.
+    private final ConcurrentHashMap<Thread, Chunk> chunks = new ConcurrentHashMap<>();
+    private final AtomicLong nextReleaseNanos;
+    private boolean outputClosed;
+    private IOException savedException;
+
+    BinaryTraceFileWriter(
+        OutputStream out,
+        Clock clock,
+        long profileStartTimeNanos,
+        String outputBase,
+        UUID buildID,
+        boolean includePrimaryOutput,
+        boolean includeTargetLabel) {
+      // The buffer size of 262144 is chosen to match the JSON trace file writer.
+      this.out = new BufferedOutputStream(out, 262144);
+      this.profileStartTimeNanos = profileStartTimeNanos;
+      this.outputBase = outputBase;
+      this.buildId = buildID.toString();
+      this.includePrimaryOutput = includePrimaryOutput;
+      this.includeTargetLabel = includeTargetLabel;
+      this.clock = clock;
+      this.nextReleaseNanos = new AtomicLong(clock.nanoTime() + IDLE_NANOS);
+    }
+
+    private Chunk newChunk(Thread thread) {
+      Chunk newChunk = new Chunk();
+      String threadName = thread.getName();
+      newChunk.addThreadMetadata(
+          thread.getId(),
+          JsonTraceFileWriter.getReadableName(threadName),
+          JsonTraceFileWriter.getSortIndex(threadName));
+      chunks.put(thread, newChunk);
+      return newChunk;
+    }
+
+    @Override
+    public void start() {
+      try {
+        out.write(BinaryProfileFormat.MAGIC);
+        BinaryProfileFormat.writeVarint(out, BinaryProfileFormat.VERSION);
+        BinaryProfileFormat.writeString(out, buildId);
+        BinaryProfileFormat.writeString(out, outputBase);
+        BinaryProfileFormat.writeString(out, new Date().toString());
+      } catch (IOException e) {
+        savedException = e;
+      }
+      Chunk criticalPath = new Chunk();
+      criticalPath.addThreadMetadata(
+          JsonTraceFileWriter.CRITICAL_PATH_THREAD_ID,
+          "Critical Path",
+          JsonTraceFileWriter.CRITICAL_PATH_SORT_INDEX);
+      criticalPath.flush();
+    }
+
+    @Override
+    public void enqueue(TaskData data) {
+      long now = clock.nanoTime();
+      Thread thread = Thread.currentThread();
+      Chunk threadChunk = chunks.get(thread);
+      if (threadChunk == null) {
+        threadChunk = newChunk(thread);
+      }
+      threadChunk.add(data, now);
+      long next = nextReleaseNanos.get();
+      if (now >= next && nextReleaseNanos.compareAndSet(next, now + IDLE_NANOS)) {
+        releaseChunks(now);
+      }
+    }
+
+    /**
+     * Writes and forgets the chunks of threads that ended, and writes and releases the buffers of
+     * the chunks of threads that recorded nothing for {@link #IDLE_NANOS}.
+     */
+    private void releaseChunks(long now) {
+      for (Chunk c : chunks.values()) {
+        if (!c.thread.isAlive()) {
+          c.close();
+          chunks.remove(c.thread, c);
+        } else if (now - c.lastUsedNanos >= IDLE_NANOS) {
+          c.release();
+        }
+      }
+    }
+
+    /** Returns the number of chunks that hold a buffer. */
+    int getBufferedChunkCount() {
+      int count = 0;
+      for (Chunk c : chunks.values()) {
+        if (c.hasBuffer()) {
+          count++;
+        }
+      }
+      return count;
+    }
+
+    @Override
+    public void shutdown() throws IOException {
+      for (Chunk remainingChunk : chunks.values()) {
+        remainingChunk.close();
+      }
+      chunks.clear();
+      synchronized (this) {
+        outputClosed = true;
+        try {
+          out.close();
+        } catch (IOException e) {
+          if (savedException == null) {
+            savedException = e;
+          }
+        }
+        if (savedException != null) {
+          throw savedException;
+        }
+      }
+    }
+
+    /** Appends the events in {@code buf} up to {@code length} to the output as a chunk. */
+    private synchronized void write(byte[] buf, int length) {
+      if (outputClosed || savedException != null) {
+        return;
+      }
+      try {
+        BinaryProfileFormat.writeVarint(out, length);
+        out.write(buf, 0, length);
+      } catch (IOException e) {
+        savedException = e;
+      }
+    }
+
+    /**
+     * The events of one thread that were not written yet. Only the thread itself adds events, but
+     * {@link #shutdown} and {@link #releaseChunks} may flush the chunk concurrently, so access is
+     * synchronized.
+     */
+    private final class Chunk {
+      private final Thread thread = Thread.currentThread();
+      // Allocated when the thread records a task, and dropped when the thread goes idle.
+      @Nullable private byte[] buf;
+      private int pos;
+      private boolean closed;
+      private long lastUsedNanos;
+      // Indices of the strings written in this chunk, starting at 1.
+      private Map<String, Integer> strings = new HashMap<>();
+
+      synchronized void add(TaskData data, long now) {
+        if (closed) {
+          return;
+        }
+        lastUsedNanos = now;
+        ProfilerTask type = data.type;
+        long micros = TimeUnit.NANOSECONDS.toMicros(data.startTimeNanos - profileStartTimeNanos);
+        if (type == ProfilerTask.LOCAL_CPU_USAGE
+            || type == ProfilerTask.LOCAL_MEMORY_USAGE
+            || type == ProfilerTask.ACTION_COUNTS
+            || type == ProfilerTask.SYSTEM_CPU_USAGE
+            || type == ProfilerTask.SYSTEM_MEMORY_USAGE) {
+          // Skip counts equal to zero, like the JSON trace file writer.
+          if ("0.0".equals(data.description)) {
+            return;
+          }
+          reserve(
+              4 * BinaryProfileFormat.MAX_VARINT_SIZE
+                  + maxSize(type.description)
+                  + maxSize(data.description));
+          buf[pos++] = BinaryProfileFormat.COUNTER_EVENT;
+          putString(type.description);
+          pos = BinaryProfileFormat.putVarint(buf, pos, data.threadId);
+          pos = BinaryProfileFormat.putVarint(buf, pos, BinaryProfileFormat.zigzag(micros));
+          putString(data.description);
+          return;
+        }
+
+        String primaryOutput = null;
+        String targetLabel = null;
+        String mnemonic = null;
+        if (data instanceof ActionTaskData) {
+          primaryOutput = includePrimaryOutput ? ((ActionTaskData) data).primaryOutputPath : null;
+          targetLabel = includeTargetLabel ? ((ActionTaskData) data).targetLabel : null;
+          mnemonic = data.mnemonic.hasBeenSet() ? data.mnemonic.getValueForJson() : null;
+        }
+        reserve(
+            6 * BinaryProfileFormat.MAX_VARINT_SIZE
+                + maxSize(type.description)
+                + maxSize(data.description)
+                + maxSize(primaryOutput)
+                + maxSize(targetLabel)
+                + maxSize(mnemonic));
+        buf[pos++] = BinaryProfileFormat.TASK_EVENT;
+        putString(type.description);
+        putString(data.description);
+        pos =
+            BinaryProfileFormat.putVarint(
+                buf,
+                pos,
+                type == ProfilerTask.CRITICAL_PATH_COMPONENT
+                    ? JsonTraceFileWriter.CRITICAL_PATH_THREAD_ID
+                    : data.threadId);
+        pos = BinaryProfileFormat.putVarint(buf, pos, BinaryProfileFormat.zigzag(micros));
+        pos = BinaryProfileFormat.putVarint(buf, pos, TimeUnit.NANOSECONDS.toMicros(data.duration));
+        buf[pos++] =
+            (byte)
+                ((primaryOutput != null ? BinaryProfileFormat.HAS_PRIMARY_OUTPUT : 0)
+                    | (targetLabel != null ? BinaryProfileFormat.HAS_TARGET_LABEL : 0)
+                    | (mnemonic != null ? BinaryProfileFormat.HAS_MNEMONIC : 0));
+        for (String value : new String[] {primaryOutput, targetLabel, mnemonic}) {
+          if (value != null) {
+            putString(value);
+          }
+        }
+      }
+
+      synchronized void addThreadMetadata(long threadId, String name, long sortIndex) {
+        reserve(5 * BinaryProfileFormat.MAX_VARINT_SIZE + maxSize(name));
+        buf[pos++] = BinaryProfileFormat.THREAD_NAME_EVENT;
+        pos = BinaryProfileFormat.putVarint(buf, pos, threadId);
+        putString(name);
+        buf[pos++] = BinaryProfileFormat.THREAD_SORT_INDEX_EVENT;
+        pos = BinaryProfileFormat.putVarint(buf, pos, threadId);
+        pos = BinaryProfileFormat.putVarint(buf, pos, sortIndex);
+      }
+
+      /** Makes room for {@code size} more bytes, writing the chunk if it doesn't have it. */
+      private void reserve(int size) {
+        if (buf == null) {
+          buf = new byte[Math.max(size, CHUNK_SIZE)];
+        } else if (pos + size > buf.length) {
+          flush();
+          if (size > buf.length) {
+            buf = new byte[size];
+          }
+        }
+      }
+
+      synchronized void flush() {
+        if (pos > 0) {
+          write(buf, pos);
+        }
+        pos = 0;
+        strings.clear();
+        if (buf != null && buf.length > CHUNK_SIZE) {
+          buf = new byte[CHUNK_SIZE];
+        }
+      }
+
+      /** Writes the chunk and drops its buffer until the thread records a task again. */
+      synchronized void release() {
+        flush();
+        buf = null;
+        strings = new HashMap<>();
+      }
+
+      synchronized boolean hasBuffer() {
+        return buf != null;
+      }
+
+      synchronized void close() {
+        release();
+        closed = true;
+      }
+
+      private void putString(String value) {
+        Integer index = strings.get(value);
+        if (index != null) {
+          pos = BinaryProfileFormat.putVarint(buf, pos, index);
+          return;
+        }
+        strings.put(value, strings.size() + 1);
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        pos = BinaryProfileFormat.putVarint(buf, pos, 0);
+        pos = BinaryProfileFormat.putVarint(buf, pos, bytes.length);
+        System.arraycopy(bytes, 0, buf, pos, bytes.length);
+        pos += bytes.length;
+      }
+    }
+
+    /** Returns the most bytes that {@code value} takes in a chunk. */
+    private static int maxSize(String value) {
+      return value == null ? 0 : 2 * BinaryProfileFormat.MAX_VARINT_SIZE + 3 * value.length();
+    }
+  }
 }
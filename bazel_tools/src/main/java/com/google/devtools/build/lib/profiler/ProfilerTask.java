@@ -84,6 +84,7 @@ public enum ProfilerTask {
   WORKER_BORROW("borrowing a worker"),
   WORKER_WORKING("waiting for response from worker"),
   WORKER_COPYING_OUTPUTS("copying outputs from worker"),
+  NESTED_SET_FLATTEN("nested set flattening", Threshold.TEN_MILLIS),
   UNKNOWN("Unknown event");
 
   private static class Threshold {
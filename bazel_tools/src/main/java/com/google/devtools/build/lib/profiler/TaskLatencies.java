@@ -0,0 +1,106 @@
+// Copyright 2026 The Bazel Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.devtools.build.lib.profiler;
+
+import com.google.common.collect.ImmutableSortedMap;
+import com.google.devtools.build.lib.concurrent.ThreadSafety.ThreadSafe;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.annotation.Nullable;
+
+/**
+ * The {@link LatencyHistogram}s of the tasks seen by the {@link Profiler}, by task type and by the
+ * mnemonic of actions.
+ */
+@ThreadSafe
+public final class TaskLatencies {
+  private final LatencyHistogram[] byType = new LatencyHistogram[ProfilerTask.values().length];
+  private final ConcurrentHashMap<String, LatencyHistogram> byMnemonic = new ConcurrentHashMap<>();
+
+  TaskLatencies() {
+    for (int i = 0; i < byType.length; i++) {
+      byType[i] = new LatencyHistogram();
+    }
+  }
+
+  void record(ProfilerTask type, @Nullable String mnemonic, long durationNanos) {
+    byType[type.ordinal()].record(durationNanos);
+    if (mnemonic != null) {
+      byMnemonic.computeIfAbsent(mnemonic, m -> new LatencyHistogram()).record(durationNanos);
+    }
+  }
+
+  Snapshot snapshot() {
+    ImmutableSortedMap.Builder<ProfilerTask, LatencyHistogram.Snapshot> types =
+        ImmutableSortedMap.naturalOrder();
+    for (ProfilerTask type : ProfilerTask.values()) {
+      LatencyHistogram.Snapshot snapshot = byType[type.ordinal()].snapshot();
+      if (snapshot.getCount() > 0) {
+        types.put(type, snapshot);
+      }
+    }
+    ImmutableSortedMap.Builder<String, LatencyHistogram.Snapshot> mnemonics =
+        ImmutableSortedMap.naturalOrder();
+    for (Map.Entry<String, LatencyHistogram> entry : byMnemonic.entrySet()) {
+      mnemonics.put(entry.getKey(), entry.getValue().snapshot());
+    }
+    return new Snapshot(types.buildOrThrow(), mnemonics.buildOrThrow());
+  }
+
+  /** The latencies of the tasks recorded up to some point. Only non-empty histograms are kept. */
+  public static final class Snapshot {
+    static final Snapshot EMPTY = new Snapshot(ImmutableSortedMap.of(), ImmutableSortedMap.of());
+
+    private final ImmutableSortedMap<ProfilerTask, LatencyHistogram.Snapshot> byType;
+    private final ImmutableSortedMap<String, LatencyHistogram.Snapshot> byMnemonic;
+
+    private Snapshot(
+        ImmutableSortedMap<ProfilerTask, LatencyHistogram.Snapshot> byType,
+        ImmutableSortedMap<String, LatencyHistogram.Snapshot> byMnemonic) {
+      this.byType = byType;
+      this.byMnemonic = byMnemonic;
+    }
+
+    public ImmutableSortedMap<ProfilerTask, LatencyHistogram.Snapshot> getByType() {
+      return byType;
+    }
+
+    public ImmutableSortedMap<String, LatencyHistogram.Snapshot> getByMnemonic() {
+      return byMnemonic;
+    }
+
+    /** Returns the latencies of the tasks recorded since {@code earlier}. */
+    public Snapshot minus(Snapshot earlier) {
+      return new Snapshot(minus(byType, earlier.byType), minus(byMnemonic, earlier.byMnemonic));
+    }
+
+    private static <K extends Comparable<K>> ImmutableSortedMap<K, LatencyHistogram.Snapshot> minus(
+        ImmutableSortedMap<K, LatencyHistogram.Snapshot> later,
+        ImmutableSortedMap<K, LatencyHistogram.Snapshot> earlier) {
+      ImmutableSortedMap.Builder<K, LatencyHistogram.Snapshot> result =
+          ImmutableSortedMap.naturalOrder();
+      for (Map.Entry<K, LatencyHistogram.Snapshot> entry : later.entrySet()) {
+        LatencyHistogram.Snapshot difference =
+            entry
+                .getValue()
+                .minus(earlier.getOrDefault(entry.getKey(), LatencyHistogram.Snapshot.EMPTY));
+        if (difference.getCount() > 0) {
+          result.put(entry.getKey(), difference);
+        }
+      }
+      return result.buildOrThrow();
+    }
+  }
+}
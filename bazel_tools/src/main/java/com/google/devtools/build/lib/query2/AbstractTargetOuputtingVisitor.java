@@ -49,6 +49,11 @@ public abstract class AbstractTargetOuputtingVisitor<VisitKeyT>
     this.env = env;
   }
 
+  @Override
+  protected int getMaxPendingResultBatches() {
+    return env.getMaxPendingResultBatchesForParallelVisitation();
+  }
+
   @Override
   protected Iterable<Target> outputKeysToOutputValues(Iterable<SkyKey> targetKeys)
       throws InterruptedException, QueryException {
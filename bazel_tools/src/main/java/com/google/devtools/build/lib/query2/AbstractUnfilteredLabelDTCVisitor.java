@@ -42,6 +42,11 @@ public abstract class AbstractUnfilteredLabelDTCVisitor<T>
     this.env = env;
   }
 
+  @Override
+  protected int getMaxPendingResultBatches() {
+    return env.getMaxPendingResultBatchesForParallelVisitation();
+  }
+
   @Override
   protected Visit getVisitResult(Iterable<SkyKey> labelKeys) throws InterruptedException {
     Map<SkyKey, Iterable<SkyKey>> depsMap = env.getFwdDepLabels(labelKeys);
@@ -23,6 +23,7 @@ import com.google.devtools.build.lib.concurrent.ThreadSafety.ThreadSafe;
 import com.google.devtools.build.lib.packages.Target;
 import com.google.devtools.build.lib.query2.engine.Callback;
 import com.google.devtools.build.lib.query2.engine.QueryEnvironment.QueryTaskFuture;
+import com.google.devtools.build.lib.query2.engine.QueryEnvironment.Setting;
 import com.google.devtools.build.lib.query2.engine.QueryEnvironment.ThreadSafeMutableSet;
 import com.google.devtools.build.lib.query2.engine.QueryException;
 import com.google.devtools.build.lib.query2.engine.QueryExpression;
@@ -52,6 +53,14 @@ public class ParallelSkyQueryUtils {
   /** The maximum number of keys to visit at once. */
   @VisibleForTesting public static final int VISIT_BATCH_SIZE = 10000;
 
+  /**
+   * With {@link Setting#SHARDED_VISITATION}, the number of result batches per thread that may wait
+   * for the callback before visitations stop visiting new keys. Enough to keep every thread busy
+   * with results while the callback is slow, and few enough that the targets of the pending
+   * batches don't matter for memory.
+   */
+  static final int PENDING_RESULT_BATCHES_PER_THREAD = 2;
+
   private ParallelSkyQueryUtils() {
   }
 
@@ -107,6 +116,12 @@ public class ParallelSkyQueryUtils {
     Function<ThreadSafeMutableSet<Target>, QueryTaskFuture<Predicate<SkyKey>>>
         getTransitiveClosureAsyncFunction =
             universeValue -> {
+              if (env.isSettingEnabled(Setting.SHARDED_VISITATION)) {
+                return env.execute(
+                    () ->
+                        getDTCSkyKeyPredicateSharded(
+                            env, universeValue, processResultsBatchSize, concurrencyLevel));
+              }
               ThreadSafeAggregateAllSkyKeysCallback aggregateAllCallback =
                   new ThreadSafeAggregateAllSkyKeysCallback(concurrencyLevel);
               return env.execute(
@@ -127,6 +142,26 @@ public class ParallelSkyQueryUtils {
     return env.transformAsync(universeValueFuture, getTransitiveClosureAsyncFunction);
   }
 
+  /**
+   * Visits the DTC of {@code universeValue} and returns its visited keys as the predicate, instead
+   * of collecting them again into a set. For a universe such as {@code //...}, the keys are most of
+   * the graph.
+   */
+  private static Predicate<SkyKey> getDTCSkyKeyPredicateSharded(
+      SkyQueryEnvironment env,
+      ThreadSafeMutableSet<Target> universeValue,
+      int processResultsBatchSize,
+      int concurrencyLevel)
+      throws QueryException, InterruptedException {
+    ShardedSkyKeyUniquifier visited = new ShardedSkyKeyUniquifier(concurrencyLevel);
+    UnfilteredSkyKeyLabelDTCVisitor visitor =
+        new UnfilteredSkyKeyLabelDTCVisitor.Factory(
+                env, visited, processResultsBatchSize, /*callback=*/ partialResult -> {})
+            .create();
+    visitor.visitAndWaitForCompletion(SkyQueryEnvironment.makeLabelsStrict(universeValue));
+    return visited::contains;
+  }
+
   static QueryTaskFuture<Void> getRdepsInUniverseBoundedParallel(
       SkyQueryEnvironment env,
       QueryExpression expression,
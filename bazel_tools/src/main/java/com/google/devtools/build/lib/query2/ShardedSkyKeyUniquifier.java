@@ -0,0 +1,141 @@
+// Copyright 2026 The Bazel Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.google.devtools.build.lib.query2;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+import com.google.devtools.build.lib.concurrent.ThreadSafety.ThreadSafe;
+import com.google.devtools.build.lib.query2.engine.QueryUtil.UniquifierImpl;
+import com.google.devtools.build.lib.query2.engine.Uniquifier;
+import com.google.devtools.build.skyframe.SkyKey;
+
+/**
+ * A {@link Uniquifier} of {@link SkyKey}s for visitations that reach millions of keys, such as the
+ * reverse transitive closure of a target within {@code //...}.
+ *
+ * <p>{@link UniquifierImpl} keeps the visited keys in a {@link
+ * java.util.concurrent.ConcurrentHashMap}, which costs about 40 bytes per key besides the key
+ * itself. This class splits the keys by hash into many shards, each an insert-only open-addressing
+ * table of keys guarded by its own lock, which costs 5 to 11 bytes per key. With several shards per
+ * thread, the locks are rarely contended.
+ *
+ * <p>The visited keys can be tested with {@link #contains} after the visitation, so that the
+ * uniquifier of a visitation of a universe can serve as the predicate for that universe.
+ */
+@ThreadSafe
+final class ShardedSkyKeyUniquifier implements Uniquifier<SkyKey> {
+  private static final int SHARDS_PER_THREAD = 16;
+
+  private final Shard[] shards;
+  private final int shardShift;
+
+  ShardedSkyKeyUniquifier(int concurrencyLevel) {
+    int shardBits =
+        32 - Integer.numberOfLeadingZeros(Math.max(1, concurrencyLevel) * SHARDS_PER_THREAD - 1);
+    this.shards = new Shard[1 << shardBits];
+    this.shardShift = 32 - shardBits;
+    for (int i = 0; i < shards.length; i++) {
+      shards[i] = new Shard();
+    }
+  }
+
+  @Override
+  public boolean uniquePure(SkyKey key) {
+    return !contains(key);
+  }
+
+  @Override
+  public boolean unique(SkyKey key) {
+    int hash = hash(key);
+    return shards[hash >>> shardShift].add(key, hash);
+  }
+
+  @Override
+  public ImmutableList<SkyKey> unique(Iterable<SkyKey> keys) {
+    ImmutableList.Builder<SkyKey> result = ImmutableList.builder();
+    for (SkyKey key : keys) {
+      if (unique(key)) {
+        result.add(key);
+      }
+    }
+    return result.build();
+  }
+
+  /** Returns whether {@code key} has been seen by {@link #unique}. */
+  boolean contains(SkyKey key) {
+    int hash = hash(key);
+    return shards[hash >>> shardShift].contains(key, hash);
+  }
+
+  @VisibleForTesting
+  long size() {
+    long size = 0;
+    for (Shard shard : shards) {
+      synchronized (shard) {
+        size += shard.size;
+      }
+    }
+    return size;
+  }
+
+  // The high bits choose the shard and the low bits the slot in it, so both need to be mixed.
+  private static int hash(SkyKey key) {
+    int hash = key.hashCode() * 0x9e3779b9;
+    return hash ^ (hash >>> 16);
+  }
+
+  private static final class Shard {
+    private SkyKey[] table = new SkyKey[16];
+    private int size;
+
+    synchronized boolean contains(SkyKey key, int hash) {
+      return table[find(table, key, hash)] != null;
+    }
+
+    synchronized boolean add(SkyKey key, int hash) {
+      int slot = find(table, key, hash);
+      if (table[slot] != null) {
+        return false;
+      }
+      table[slot] = key;
+      // Keep the table at most three quarters full, so that probe sequences stay short.
+      if (++size > table.length - (table.length >> 2)) {
+        resize();
+      }
+      return true;
+    }
+
+    private void resize() {
+      SkyKey[] newTable = new SkyKey[table.length * 2];
+      for (SkyKey key : table) {
+        if (key != null) {
+          newTable[find(newTable, key, hash(key))] = key;
+        }
+      }
+      table = newTable;
+    }
+
+    /** Returns the slot that holds {@code key}, or else the empty slot where it belongs. */
+    private static int find(SkyKey[] table, SkyKey key, int hash) {
+      int mask = table.length - 1;
+      int slot = hash & mask;
+      for (SkyKey existing = table[slot];
+          existing != null && !existing.equals(key);
+          existing = table[slot]) {
+        slot = (slot + 1) & mask;
+      }
+      return slot;
+    }
+  }
+}
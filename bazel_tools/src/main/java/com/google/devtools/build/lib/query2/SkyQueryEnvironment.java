@@ -843,6 +843,9 @@ public class SkyQueryEnvironment extends AbstractBlazeQueryEnvironment<Target>
 
   @ThreadSafe
   public Uniquifier<SkyKey> createSkyKeyUniquifier() {
+    if (settings.contains(Setting.SHARDED_VISITATION)) {
+      return new ShardedSkyKeyUniquifier(queryEvaluationParallelismLevel);
+    }
     return new UniquifierImpl<>(SkyKeyKeyExtractor.INSTANCE, queryEvaluationParallelismLevel);
   }
 
@@ -975,6 +978,16 @@ public class SkyQueryEnvironment extends AbstractBlazeQueryEnvironment<Target>
     return ParallelSkyQueryUtils.VISIT_BATCH_SIZE;
   }
 
+  /**
+   * Returns the number of result batches of a parallel visitation that may wait for the callback
+   * before the visitation stops visiting new keys.
+   */
+  protected int getMaxPendingResultBatchesForParallelVisitation() {
+    return settings.contains(Setting.SHARDED_VISITATION)
+        ? ParallelSkyQueryUtils.PENDING_RESULT_BATCHES_PER_THREAD * queryEvaluationParallelismLevel
+        : Integer.MAX_VALUE;
+  }
+
   public VisitTaskStatusCallback getVisitTaskStatusCallback() {
     return VisitTaskStatusCallback.NULL_INSTANCE;
   }
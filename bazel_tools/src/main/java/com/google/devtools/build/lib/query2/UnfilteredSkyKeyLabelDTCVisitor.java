@@ -13,9 +13,8 @@
 // limitations under the License.
 package com.google.devtools.build.lib.query2;
 
-import com.google.common.collect.ImmutableSet;
 import com.google.devtools.build.lib.query2.ParallelVisitorUtils.QueryVisitorFactory;
-import com.google.devtools.build.lib.query2.engine.QueryUtil.AggregateAllCallback;
+import com.google.devtools.build.lib.query2.engine.Callback;
 import com.google.devtools.build.lib.query2.engine.Uniquifier;
 import com.google.devtools.build.skyframe.SkyKey;
 
@@ -28,12 +27,12 @@ class UnfilteredSkyKeyLabelDTCVisitor extends AbstractUnfilteredLabelDTCVisitor<
       SkyQueryEnvironment env,
       Uniquifier<SkyKey> uniquifier,
       int processResultsBatchSize,
-      AggregateAllCallback<SkyKey, ImmutableSet<SkyKey>> aggregateAllCallback) {
+      Callback<SkyKey> callback) {
     super(
         env,
         uniquifier,
         processResultsBatchSize,
-        aggregateAllCallback);
+        callback);
   }
 
   @Override
@@ -44,24 +43,24 @@ class UnfilteredSkyKeyLabelDTCVisitor extends AbstractUnfilteredLabelDTCVisitor<
   static class Factory implements QueryVisitorFactory<SkyKey, SkyKey, SkyKey> {
     private final SkyQueryEnvironment env;
     private final Uniquifier<SkyKey> uniquifier;
-    private final AggregateAllCallback<SkyKey, ImmutableSet<SkyKey>> aggregateAllCallback;
+    private final Callback<SkyKey> callback;
     private final int processResultsBatchSize;
 
     Factory(
         SkyQueryEnvironment env,
         Uniquifier<SkyKey> uniquifier,
         int processResultsBatchSize,
-        AggregateAllCallback<SkyKey, ImmutableSet<SkyKey>> aggregateAllCallback) {
+        Callback<SkyKey> callback) {
       this.env = env;
       this.uniquifier = uniquifier;
       this.processResultsBatchSize = processResultsBatchSize;
-      this.aggregateAllCallback = aggregateAllCallback;
+      this.callback = callback;
     }
 
     @Override
     public UnfilteredSkyKeyLabelDTCVisitor create() {
       return new UnfilteredSkyKeyLabelDTCVisitor(
-          env, uniquifier, processResultsBatchSize, aggregateAllCallback);
+          env, uniquifier, processResultsBatchSize, callback);
     }
   }
 }
@@ -562,7 +562,14 @@ public interface QueryEnvironment<T> {
     NO_NODEP_DEPS,
 
     /** Include aspect-generated output. No-op for query, which always follows aspects. */
-    INCLUDE_ASPECTS;
+    INCLUDE_ASPECTS,
+
+    /**
+     * Bound the memory of parallel visitations of the Skyframe graph, at some cost in speed, by
+     * keeping visited keys in compact sharded sets and limiting the results pending output. Only
+     * affects query evaluation with a --universe_scope, and never changes the results.
+     */
+    SHARDED_VISITATION;
   }
 
   /**
@@ -189,6 +189,19 @@ public class QueryOptions extends CommonQueryOptions {
               + " output formatters.")
   public TriState useGraphlessQuery;
 
+  @Option(
+      name = "experimental_sharded_sky_query_visitation",
+      defaultValue = "false",
+      documentationCategory = OptionDocumentationCategory.QUERY,
+      effectTags = {OptionEffectTag.EXECUTION},
+      metadataTags = {OptionMetadataTag.EXPERIMENTAL},
+      help =
+          "If true, queries with a --universe_scope keep the sets of visited targets of parallel"
+              + " visitations, such as that of rdeps(//..., //foo), in compact sharded tables, and"
+              + " stop visiting new targets while too many results are waiting to be output. Uses"
+              + " much less memory for large universes.")
+  public boolean useShardedSkyQueryVisitation;
+
   /** Return the current options as a set of QueryEnvironment settings. */
   @Override
   public Set<Setting> toSettings() {
@@ -196,6 +209,9 @@ public class QueryOptions extends CommonQueryOptions {
     if (strictTestSuite) {
       settings.add(Setting.TESTS_EXPRESSION_STRICT);
     }
+    if (useShardedSkyQueryVisitation) {
+      settings.add(Setting.SHARDED_VISITATION);
+    }
     return settings;
   }
 }
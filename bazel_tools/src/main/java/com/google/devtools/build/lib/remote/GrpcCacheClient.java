@@ -19,6 +19,8 @@ import static com.google.common.base.Strings.isNullOrEmpty;
 import build.bazel.remote.execution.v2.ActionCacheGrpc;
 import build.bazel.remote.execution.v2.ActionCacheGrpc.ActionCacheFutureStub;
 import build.bazel.remote.execution.v2.ActionResult;
+import build.bazel.remote.execution.v2.BatchUpdateBlobsRequest;
+import build.bazel.remote.execution.v2.BatchUpdateBlobsResponse;
 import build.bazel.remote.execution.v2.ContentAddressableStorageGrpc;
 import build.bazel.remote.execution.v2.ContentAddressableStorageGrpc.ContentAddressableStorageFutureStub;
 import build.bazel.remote.execution.v2.Digest;
@@ -41,6 +43,7 @@ import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.MoreExecutors;
 import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.devtools.build.lib.authandtls.CallCredentialsProvider;
 import com.google.devtools.build.lib.concurrent.ThreadSafety.ThreadSafe;
 import com.google.devtools.build.lib.remote.RemoteRetrier.ProgressiveBackoff;
@@ -65,6 +68,8 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
@@ -83,6 +88,14 @@ public class GrpcCacheClient implements RemoteCacheClient, MissingDigestsFinder
   private final DigestUtil digestUtil;
   private final RemoteRetrier retrier;
   private final ByteStreamUploader uploader;
+  // Reads the files of batched uploads, of which few are in flight at a time.
+  private final ExecutorService uploadReadExecutor =
+      Executors.newCachedThreadPool(
+          new ThreadFactoryBuilder()
+              .setNameFormat("remote-upload-read-%d")
+              .setDaemon(true)
+              .build());
+  private final UploadScheduler uploadScheduler;
   private final int maxMissingBlobsDigestsPerMessage;
 
   private AtomicBoolean closed = new AtomicBoolean();
@@ -95,12 +108,49 @@ public class GrpcCacheClient implements RemoteCacheClient, MissingDigestsFinder
       RemoteRetrier retrier,
       DigestUtil digestUtil,
       ByteStreamUploader uploader) {
+    this(
+        channel,
+        callCredentialsProvider,
+        options,
+        retrier,
+        digestUtil,
+        uploader,
+        /* maxBatchTotalSizeBytes= */ 0);
+  }
+
+  /**
+   * Creates a new instance.
+   *
+   * @param maxBatchTotalSizeBytes the maximum size of a batch request that the server accepts, as
+   *     advertised in its cache capabilities, or 0 if the server has no limit
+   */
+  public GrpcCacheClient(
+      ReferenceCountedChannel channel,
+      CallCredentialsProvider callCredentialsProvider,
+      RemoteOptions options,
+      RemoteRetrier retrier,
+      DigestUtil digestUtil,
+      ByteStreamUploader uploader,
+      long maxBatchTotalSizeBytes) {
     this.callCredentialsProvider = callCredentialsProvider;
     this.channel = channel;
     this.options = options;
     this.digestUtil = digestUtil;
     this.retrier = retrier;
     this.uploader = uploader;
+    this.uploadScheduler =
+        new UploadScheduler(
+            uploader,
+            this::batchUpdateBlobs,
+            retrier,
+            uploadReadExecutor,
+            options.remoteInstanceName,
+            options.cacheCompression,
+            options.remoteUploadBatchBlobSize,
+            maxBatchTotalSizeBytes > 0
+                ? Math.min(maxBatchTotalSizeBytes, options.maxOutboundMessageSize)
+                : options.maxOutboundMessageSize,
+            options.remoteUploadMaxInFlightBytes);
     maxMissingBlobsDigestsPerMessage = computeMaxMissingBlobsDigestsPerMessage();
     Preconditions.checkState(
         maxMissingBlobsDigestsPerMessage > 0, "Error: gRPC message size too small.");
@@ -157,6 +207,7 @@ public class GrpcCacheClient implements RemoteCacheClient, MissingDigestsFinder
     if (closed.getAndSet(true)) {
       return;
     }
+    uploadReadExecutor.shutdown();
     uploader.release();
     channel.release();
   }
@@ -233,6 +284,16 @@ public class GrpcCacheClient implements RemoteCacheClient, MissingDigestsFinder
         callCredentialsProvider);
   }
 
+  private ListenableFuture<BatchUpdateBlobsResponse> batchUpdateBlobs(
+      RemoteActionExecutionContext context, BatchUpdateBlobsRequest request) {
+    // The UploadScheduler retries the request, as well as the blobs that failed in it.
+    return Utils.refreshIfUnauthenticatedAsync(
+        () ->
+            channel.withChannelFuture(
+                channel -> casFutureStub(context, channel).batchUpdateBlobs(request)),
+        callCredentialsProvider);
+  }
+
   private ListenableFuture<CachedActionResult> handleStatus(
       ListenableFuture<ActionResult> download) {
     ListenableFuture<CachedActionResult> cachedActionResult =
@@ -436,26 +497,12 @@ public class GrpcCacheClient implements RemoteCacheClient, MissingDigestsFinder
   @Override
   public ListenableFuture<Void> uploadFile(
       RemoteActionExecutionContext context, Digest digest, Path path) {
-    return uploader.uploadBlobAsync(
-        context,
-        digest,
-        Chunker.builder()
-            .setInput(digest.getSizeBytes(), path)
-            .setCompressed(options.cacheCompression)
-            .build(),
-        /* forceUpload= */ true);
+    return uploadScheduler.uploadFile(context, digest, path);
   }
 
   @Override
   public ListenableFuture<Void> uploadBlob(
       RemoteActionExecutionContext context, Digest digest, ByteString data) {
-    return uploader.uploadBlobAsync(
-        context,
-        digest,
-        Chunker.builder()
-            .setInput(data.toByteArray())
-            .setCompressed(options.cacheCompression)
-            .build(),
-        /* forceUpload= */ true);
+    return uploadScheduler.uploadBlob(context, digest, data);
   }
 }
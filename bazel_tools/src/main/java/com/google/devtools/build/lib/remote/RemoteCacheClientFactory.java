@@ -19,6 +19,7 @@ import com.google.common.base.Ascii;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
 import com.google.devtools.build.lib.authandtls.AuthAndTLSOptions;
+import com.google.devtools.build.lib.clock.BlazeClock;
 import com.google.devtools.build.lib.remote.common.RemoteCacheClient;
 import com.google.devtools.build.lib.remote.disk.DiskAndRemoteCacheClient;
 import com.google.devtools.build.lib.remote.disk.DiskCacheClient;
@@ -49,7 +50,12 @@ public final class RemoteCacheClientFactory {
       RemoteOptions options)
       throws IOException {
     DiskCacheClient diskCacheClient =
-        createDiskCache(workingDirectory, diskCachePath, remoteVerifyDownloads, digestUtil);
+        createDiskCache(
+            workingDirectory,
+            diskCachePath,
+            remoteVerifyDownloads,
+            options.diskCacheMaxSizeMb,
+            digestUtil);
     return new DiskAndRemoteCacheClient(diskCacheClient, remoteCacheClient, options);
   }
 
@@ -70,7 +76,11 @@ public final class RemoteCacheClientFactory {
     }
     if (isDiskCache(options)) {
       return createDiskCache(
-          workingDirectory, options.diskCache, options.remoteVerifyDownloads, digestUtil);
+          workingDirectory,
+          options.diskCache,
+          options.remoteVerifyDownloads,
+          options.diskCacheMaxSizeMb,
+          digestUtil);
     }
     throw new IllegalArgumentException(
         "Unrecognized RemoteOptions configuration: remote Http cache URL and/or local disk cache"
@@ -129,6 +139,7 @@ public final class RemoteCacheClientFactory {
       Path workingDirectory,
       PathFragment diskCachePath,
       boolean verifyDownloads,
+      long maxSizeMb,
       DigestUtil digestUtil)
       throws IOException {
     Path cacheDir =
@@ -136,6 +147,10 @@ public final class RemoteCacheClientFactory {
     if (!cacheDir.exists()) {
       cacheDir.createDirectoryAndParents();
     }
+    if (maxSizeMb > 0) {
+      return new DiskCacheClient(
+          cacheDir, verifyDownloads, digestUtil, maxSizeMb * 1024 * 1024, BlazeClock.instance());
+    }
     return new DiskCacheClient(cacheDir, verifyDownloads, digestUtil);
   }
 
@@ -399,7 +399,7 @@ public class RemoteExecutionService {
           (Object nodeKey, InputWalker walker) -> {
             subMerkleTrees.add(buildMerkleTreeVisitor(nodeKey, walker, metadataProvider));
           });
-      return MerkleTree.merge(subMerkleTrees, digestUtil);
+      return MerkleTree.merge(subMerkleTrees, digestUtil, merkleTreeCache);
     } else {
       SortedMap<PathFragment, ActionInput> inputMap = remotePathResolver.getInputMapping(context);
       return MerkleTree.build(inputMap, context.getMetadataProvider(), execRoot, digestUtil);
@@ -428,7 +428,7 @@ public class RemoteExecutionService {
         (Object subNodeKey, InputWalker subWalker) -> {
           subMerkleTrees.add(buildMerkleTreeVisitor(subNodeKey, subWalker, metadataProvider));
         });
-    return MerkleTree.merge(subMerkleTrees, digestUtil);
+    return MerkleTree.merge(subMerkleTrees, digestUtil, merkleTreeCache);
   }
 
   @Nullable
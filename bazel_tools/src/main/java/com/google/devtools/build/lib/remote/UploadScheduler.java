@@ -0,0 +1,468 @@
+// Copyright 2026 The Bazel Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.google.devtools.build.lib.remote;
+
+import static java.lang.String.format;
+
+import build.bazel.remote.execution.v2.BatchUpdateBlobsRequest;
+import build.bazel.remote.execution.v2.BatchUpdateBlobsResponse;
+import build.bazel.remote.execution.v2.Digest;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.devtools.build.lib.concurrent.ThreadSafety.ThreadSafe;
+import com.google.devtools.build.lib.remote.common.RemoteActionExecutionContext;
+import com.google.devtools.build.lib.vfs.Path;
+import com.google.protobuf.ByteString;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+
+/**
+ * Schedules the uploads of blobs to the CAS for a {@link GrpcCacheClient}.
+ *
+ * <p>Blobs of at most {@code maxBatchBlobSize} bytes are coalesced into {@code BatchUpdateBlobs}
+ * requests of at most {@code maxBatchSize} bytes, one batch per {@link
+ * RemoteActionExecutionContext} so that each request carries the metadata of its blobs. While fewer
+ * than {@link #MAX_BATCHES_IN_FLIGHT} batches are in flight, a batch is sent as soon as it has a
+ * blob; otherwise it collects blobs until it is full or a batch in flight completes. Batches thus
+ * grow with the rate of uploads instead of waiting for more blobs after a delay. Larger blobs are
+ * streamed by the {@link ByteStreamUploader}, compressed with zstd if cache compression is enabled.
+ *
+ * <p>A batch is retried by the {@link RemoteRetrier}, both if the request fails and if some of its
+ * blobs fail with a retriable status, in which case only those blobs are sent again. A batch with
+ * blobs from files is read on the {@code readExecutor} rather than on the thread that completed an
+ * earlier upload, which may be a gRPC thread.
+ *
+ * <p>If {@code maxInFlightBytes} is positive, uploads are started in order while the blobs in
+ * flight add up to less than that, and wait for earlier uploads to complete otherwise. A blob
+ * larger than the limit is uploaded when nothing else is in flight.
+ */
+@ThreadSafe
+final class UploadScheduler {
+
+  /** Sends a {@code BatchUpdateBlobs} request to the CAS once, without retrying. */
+  interface BatchUpdateBlobs {
+    ListenableFuture<BatchUpdateBlobsResponse> call(
+        RemoteActionExecutionContext context, BatchUpdateBlobsRequest request);
+  }
+
+  @VisibleForTesting static final int MAX_BATCHES_IN_FLIGHT = 16;
+
+  /** A generous bound on the protobuf framing of a message and of each of its blobs. */
+  private static final int FRAMING_BYTES = 32;
+
+  private final ByteStreamUploader uploader;
+  private final BatchUpdateBlobs batchUpdateBlobs;
+  private final RemoteRetrier retrier;
+  private final Executor readExecutor;
+  private final String instanceName;
+  private final boolean compressed;
+  private final long maxBatchBlobSize;
+  private final long maxBatchSize;
+  private final long maxInFlightBytes;
+
+  private final Object lock = new Object();
+
+  @GuardedBy("lock")
+  private final Map<Digest, ListenableFuture<Void>> uploadsInProgress = new HashMap<>();
+
+  @GuardedBy("lock")
+  private final Deque<Upload> queuedUploads = new ArrayDeque<>();
+
+  /**
+   * The batches collecting blobs by their context, in the order in which they got their first
+   * blob. Each is sent once it is full or a batch may be sent.
+   */
+  @GuardedBy("lock")
+  private final Map<RemoteActionExecutionContext, Batch> batches = new LinkedHashMap<>();
+
+  @GuardedBy("lock")
+  private int batchesInFlight;
+
+  /** The bytes of the blobs being uploaded, including those in {@link #batches}. */
+  @GuardedBy("lock")
+  private long inFlightBytes;
+
+  /** Whether a thread is starting uploads, which it does until there are none left to start. */
+  @GuardedBy("lock")
+  private boolean draining;
+
+  /**
+   * Creates a new instance.
+   *
+   * @param uploader streams the blobs that are not batched
+   * @param batchUpdateBlobs sends the batches
+   * @param retrier retries the batches
+   * @param readExecutor reads the files of the batches, at most {@link #MAX_BATCHES_IN_FLIGHT}
+   *     batches at a time
+   * @param instanceName the instance name of the batches
+   * @param compressed whether streamed blobs are compressed with zstd
+   * @param maxBatchBlobSize the size of the largest blob to batch, or 0 to batch no blobs
+   * @param maxBatchSize the size of the largest {@code BatchUpdateBlobs} request
+   * @param maxInFlightBytes the bytes of blobs that may be uploaded at once, or 0 for no limit
+   */
+  UploadScheduler(
+      ByteStreamUploader uploader,
+      BatchUpdateBlobs batchUpdateBlobs,
+      RemoteRetrier retrier,
+      Executor readExecutor,
+      @Nullable String instanceName,
+      boolean compressed,
+      long maxBatchBlobSize,
+      long maxBatchSize,
+      long maxInFlightBytes) {
+    this.uploader = uploader;
+    this.batchUpdateBlobs = batchUpdateBlobs;
+    this.retrier = retrier;
+    this.readExecutor = readExecutor;
+    this.instanceName = instanceName == null ? "" : instanceName;
+    this.compressed = compressed;
+    this.maxBatchBlobSize = maxBatchBlobSize;
+    this.maxBatchSize = maxBatchSize - this.instanceName.length() - FRAMING_BYTES;
+    this.maxInFlightBytes = maxInFlightBytes;
+  }
+
+  /** Uploads the contents of {@code path}, whose digest is {@code digest}. */
+  ListenableFuture<Void> uploadFile(
+      RemoteActionExecutionContext context, Digest digest, Path path) {
+    return upload(new Upload(context, digest, path, /* data= */ null));
+  }
+
+  /** Uploads {@code data}, whose digest is {@code digest}. */
+  ListenableFuture<Void> uploadBlob(
+      RemoteActionExecutionContext context, Digest digest, ByteString data) {
+    return upload(new Upload(context, digest, /* path= */ null, data));
+  }
+
+  private ListenableFuture<Void> upload(Upload upload) {
+    if (maxInFlightBytes <= 0 && !isBatched(upload.digest)) {
+      return stream(upload);
+    }
+    synchronized (lock) {
+      ListenableFuture<Void> inProgress = uploadsInProgress.get(upload.digest);
+      if (inProgress != null) {
+        return inProgress;
+      }
+      uploadsInProgress.put(upload.digest, upload.result);
+      queuedUploads.add(upload);
+    }
+    upload.result.addListener(
+        () -> {
+          synchronized (lock) {
+            uploadsInProgress.remove(upload.digest, upload.result);
+          }
+        },
+        MoreExecutors.directExecutor());
+    drain();
+    return upload.result;
+  }
+
+  private boolean isBatched(Digest digest) {
+    return maxBatchBlobSize > 0
+        && digest.getSizeBytes() <= maxBatchBlobSize
+        && requestSize(digest) <= maxBatchSize;
+  }
+
+  private static long requestSize(Digest digest) {
+    return digest.getSizeBytes() + digest.getHash().length() + FRAMING_BYTES;
+  }
+
+  /**
+   * Starts the queued uploads that the in-flight limit allows, and sends the batches that may be.
+   * Uploads that complete while this thread is starting others are picked up by it.
+   */
+  private void drain() {
+    synchronized (lock) {
+      if (draining) {
+        return;
+      }
+      draining = true;
+    }
+    boolean drained = false;
+    try {
+      while (true) {
+        List<Upload> streams = new ArrayList<>();
+        List<Batch> toSend = new ArrayList<>();
+        synchronized (lock) {
+          while (!queuedUploads.isEmpty()) {
+            Digest digest = queuedUploads.peek().digest;
+            if (maxInFlightBytes > 0
+                && inFlightBytes > 0
+                && inFlightBytes + digest.getSizeBytes() > maxInFlightBytes) {
+              break;
+            }
+            Upload upload = queuedUploads.remove();
+            inFlightBytes += digest.getSizeBytes();
+            if (!isBatched(digest)) {
+              streams.add(upload);
+              continue;
+            }
+            Batch batch = batches.get(upload.context);
+            if (batch != null && batch.size + requestSize(digest) > maxBatchSize) {
+              batches.remove(upload.context);
+              batchesInFlight++;
+              toSend.add(batch);
+              batch = null;
+            }
+            if (batch == null) {
+              batch = new Batch(upload.context);
+              batches.put(upload.context, batch);
+            }
+            batch.uploads.add(upload);
+            batch.size += requestSize(digest);
+          }
+          Iterator<Batch> collecting = batches.values().iterator();
+          while (collecting.hasNext() && batchesInFlight < MAX_BATCHES_IN_FLIGHT) {
+            toSend.add(collecting.next());
+            collecting.remove();
+            batchesInFlight++;
+          }
+          if (streams.isEmpty() && toSend.isEmpty()) {
+            draining = false;
+            drained = true;
+            return;
+          }
+        }
+        for (Upload upload : streams) {
+          ListenableFuture<Void> result = stream(upload);
+          result.addListener(
+              () -> release(upload.digest.getSizeBytes()), MoreExecutors.directExecutor());
+          upload.result.setFuture(result);
+        }
+        for (Batch batch : toSend) {
+          send(batch);
+        }
+      }
+    } finally {
+      if (!drained) {
+        // Let the next upload or completion start the uploads left over by an exception.
+        synchronized (lock) {
+          draining = false;
+        }
+      }
+    }
+  }
+
+  private void release(long bytes) {
+    synchronized (lock) {
+      inFlightBytes -= bytes;
+    }
+    drain();
+  }
+
+  private ListenableFuture<Void> stream(Upload upload) {
+    Chunker.Builder chunker = Chunker.builder().setCompressed(compressed);
+    if (upload.path != null) {
+      chunker.setInput(upload.digest.getSizeBytes(), upload.path);
+    } else {
+      chunker.setInput(upload.data.toByteArray());
+    }
+    return uploader.uploadBlobAsync(
+        upload.context, upload.digest, chunker.build(), /* forceUpload= */ true);
+  }
+
+  private void send(Batch batch) {
+    boolean inMemory = true;
+    for (Upload upload : batch.uploads) {
+      inMemory &= upload.data != null;
+    }
+    if (inMemory) {
+      readAndSend(batch);
+      return;
+    }
+    try {
+      readExecutor.execute(() -> readAndSend(batch));
+    } catch (RejectedExecutionException e) {
+      for (Upload upload : batch.uploads) {
+        upload.result.setException(new IOException(e));
+      }
+      completed(batch);
+    }
+  }
+
+  private void readAndSend(Batch batch) {
+    List<Upload> remaining = new ArrayList<>(batch.uploads.size());
+    for (Upload upload : batch.uploads) {
+      try {
+        upload.contents = upload.read();
+        remaining.add(upload);
+      } catch (IOException e) {
+        upload.result.setException(e);
+      }
+    }
+
+    ListenableFuture<Void> sent =
+        remaining.isEmpty()
+            ? Futures.immediateVoidFuture()
+            : retrier.executeAsync(() -> sendOnce(batch.context, remaining));
+    sent.addListener(() -> completed(batch), MoreExecutors.directExecutor());
+    Futures.addCallback(
+        sent,
+        new FutureCallback<Void>() {
+          @Override
+          public void onSuccess(Void unused) {}
+
+          @Override
+          public void onFailure(Throwable t) {
+            // Only the uploads without a result yet are affected.
+            for (Upload upload : remaining) {
+              upload.result.setException(
+                  t instanceof StatusRuntimeException
+                      ? uploadError(upload.digest, (StatusRuntimeException) t)
+                      : t);
+            }
+          }
+        },
+        MoreExecutors.directExecutor());
+  }
+
+  private void completed(Batch batch) {
+    long bytes = 0;
+    for (Upload upload : batch.uploads) {
+      upload.contents = null;
+      bytes += upload.digest.getSizeBytes();
+    }
+    synchronized (lock) {
+      batchesInFlight--;
+    }
+    release(bytes);
+  }
+
+  /**
+   * Sends the {@code remaining} uploads in one request and completes those with a final status,
+   * removing them from {@code remaining}. Fails with a retriable status if some are left.
+   */
+  private ListenableFuture<Void> sendOnce(
+      RemoteActionExecutionContext context, List<Upload> remaining) {
+    BatchUpdateBlobsRequest.Builder request =
+        BatchUpdateBlobsRequest.newBuilder().setInstanceName(instanceName);
+    for (Upload upload : remaining) {
+      request.addRequests(
+          BatchUpdateBlobsRequest.Request.newBuilder()
+              .setDigest(upload.digest)
+              .setData(upload.contents));
+    }
+    return Futures.transformAsync(
+        batchUpdateBlobs.call(context, request.build()),
+        response -> {
+          Map<Digest, com.google.rpc.Status> statuses = new HashMap<>();
+          for (BatchUpdateBlobsResponse.Response blobResponse : response.getResponsesList()) {
+            statuses.put(blobResponse.getDigest(), blobResponse.getStatus());
+          }
+          StatusRuntimeException retriable = null;
+          for (Iterator<Upload> it = remaining.iterator(); it.hasNext(); ) {
+            Upload upload = it.next();
+            com.google.rpc.Status status = statuses.get(upload.digest);
+            if (status != null && status.getCode() == Status.Code.OK.value()) {
+              upload.result.set(null);
+              it.remove();
+              continue;
+            }
+            StatusRuntimeException error =
+                status == null
+                    ? Status.INTERNAL
+                        .withDescription("Missing from the BatchUpdateBlobs response")
+                        .asRuntimeException()
+                    : Status.fromCodeValue(status.getCode())
+                        .withDescription(status.getMessage())
+                        .asRuntimeException();
+            if (status != null && retrier.isRetriable(error)) {
+              retriable = error;
+            } else {
+              upload.result.setException(uploadError(upload.digest, error));
+              it.remove();
+            }
+          }
+          return retriable == null
+              ? Futures.immediateVoidFuture()
+              : Futures.immediateFailedFuture(retriable);
+        },
+        MoreExecutors.directExecutor());
+  }
+
+  private static IOException uploadError(Digest digest, StatusRuntimeException e) {
+    return new IOException(
+        format(
+            "Error while uploading artifact with digest '%s/%s'",
+            digest.getHash(), digest.getSizeBytes()),
+        e);
+  }
+
+  /** The blobs of one context to send in one {@code BatchUpdateBlobs} request. */
+  private static final class Batch {
+    private final RemoteActionExecutionContext context;
+    private final List<Upload> uploads = new ArrayList<>();
+    private long size;
+
+    Batch(RemoteActionExecutionContext context) {
+      this.context = context;
+    }
+  }
+
+  /** A blob to upload, either from a file or from memory. */
+  private static final class Upload {
+    private final RemoteActionExecutionContext context;
+    private final Digest digest;
+    @Nullable private final Path path;
+    @Nullable private final ByteString data;
+    private final SettableFuture<Void> result = SettableFuture.create();
+
+    /** The contents of the blob while it is in a batch in flight. */
+    @Nullable private ByteString contents;
+
+    Upload(
+        RemoteActionExecutionContext context,
+        Digest digest,
+        @Nullable Path path,
+        @Nullable ByteString data) {
+      this.context = context;
+      this.digest = digest;
+      this.path = path;
+      this.data = data;
+    }
+
+    ByteString read() throws IOException {
+      ByteString contents = data;
+      if (contents == null) {
+        try (InputStream in = path.getInputStream()) {
+          contents = ByteString.readFrom(in);
+        }
+      }
+      if (contents.size() != digest.getSizeBytes()) {
+        throw new IOException(
+            format(
+                "Expected %d bytes for the blob with digest '%s', got %d",
+                digest.getSizeBytes(), digest.getHash(), contents.size()));
+      }
+      return contents;
+    }
+  }
+}
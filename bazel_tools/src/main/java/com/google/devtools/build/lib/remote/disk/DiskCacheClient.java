@@ -15,11 +15,14 @@ package com.google.devtools.build.lib.remote.disk;
 
 import build.bazel.remote.execution.v2.ActionResult;
 import build.bazel.remote.execution.v2.Digest;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.io.ByteStreams;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.MoreExecutors;
+import com.google.devtools.build.lib.clock.Clock;
 import com.google.devtools.build.lib.remote.common.CacheNotFoundException;
 import com.google.devtools.build.lib.remote.common.RemoteActionExecutionContext;
 import com.google.devtools.build.lib.remote.common.RemoteCacheClient;
@@ -34,7 +37,12 @@ import java.io.OutputStream;
 import java.util.UUID;
 import javax.annotation.Nullable;
 
-/** A on-disk store for the remote action cache. */
+/**
+ * A on-disk store for the remote action cache.
+ *
+ * <p>By default the cache grows without bound. If a maximum size is given, a {@link
+ * DiskCacheIndex} tracks the entries and evicts the least recently used ones in the background.
+ */
 public class DiskCacheClient implements RemoteCacheClient {
 
   private static final String AC_DIRECTORY = "ac";
@@ -43,11 +51,33 @@ public class DiskCacheClient implements RemoteCacheClient {
   private final Path root;
   private final boolean verifyDownloads;
   private final DigestUtil digestUtil;
+  @Nullable private final DiskCacheIndex index;
 
   public DiskCacheClient(Path root, boolean verifyDownloads, DigestUtil digestUtil) {
+    this(root, verifyDownloads, digestUtil, /* index= */ null);
+  }
+
+  /**
+   * Creates a disk cache that evicts its least recently used entries once it holds more than
+   * {@code maxSizeBytes}.
+   */
+  public DiskCacheClient(
+      Path root, boolean verifyDownloads, DigestUtil digestUtil, long maxSizeBytes, Clock clock) {
+    this(
+        root,
+        verifyDownloads,
+        digestUtil,
+        new DiskCacheIndex(
+            root, ImmutableList.of(AC_DIRECTORY, CAS_DIRECTORY), maxSizeBytes, clock));
+  }
+
+  @VisibleForTesting
+  DiskCacheClient(
+      Path root, boolean verifyDownloads, DigestUtil digestUtil, @Nullable DiskCacheIndex index) {
     this.root = root;
     this.verifyDownloads = verifyDownloads;
     this.digestUtil = digestUtil;
+    this.index = index;
   }
 
   /** Returns {@code true} if the provided {@code key} is stored in the CAS. */
@@ -64,6 +94,9 @@ public class DiskCacheClient implements RemoteCacheClient {
     Path target = toPath(digest.getHash(), isActionCache);
     target.getParentDirectory().createDirectoryAndParents();
     src.renameTo(target);
+    if (index != null) {
+      index.recordWrite(target, target.getFileSize());
+    }
   }
 
   private ListenableFuture<Void> download(Digest digest, OutputStream out, boolean isActionCache) {
@@ -73,6 +106,9 @@ public class DiskCacheClient implements RemoteCacheClient {
     } else {
       try (InputStream in = p.getInputStream()) {
         ByteStreams.copy(in, out);
+        if (index != null) {
+          index.recordAccess(p);
+        }
         return Futures.immediateFuture(null);
       } catch (IOException e) {
         return Futures.immediateFailedFuture(e);
@@ -123,7 +159,11 @@ public class DiskCacheClient implements RemoteCacheClient {
   }
 
   @Override
-  public void close() {}
+  public void close() {
+    if (index != null) {
+      index.close();
+    }
+  }
 
   @Override
   public ListenableFuture<Void> uploadFile(
@@ -168,17 +208,24 @@ public class DiskCacheClient implements RemoteCacheClient {
   private void saveFile(String key, InputStream in, boolean actionResult) throws IOException {
     Path target = toPath(key, actionResult);
     if (target.exists()) {
+      if (index != null) {
+        index.recordAccess(target);
+      }
       return;
     }
     target.getParentDirectory().createDirectoryAndParents();
 
     // Write a temporary file first, and then rename, to avoid data corruption in case of a crash.
     Path temp = toPathNoSplit(UUID.randomUUID().toString());
+    long size;
     try (OutputStream out = temp.getOutputStream()) {
-      ByteStreams.copy(in, out);
+      size = ByteStreams.copy(in, out);
     }
     // TODO(ulfjack): Fsync temp here before we rename it to avoid data loss in the case of machine
     // crashes (the OS may reorder the writes and the rename).
     temp.renameTo(target);
+    if (index != null) {
+      index.recordWrite(target, size);
+    }
   }
 }
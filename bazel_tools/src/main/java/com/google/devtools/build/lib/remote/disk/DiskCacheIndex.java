@@ -0,0 +1,264 @@
+// Copyright 2026 The Bazel Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.google.devtools.build.lib.remote.disk;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.flogger.GoogleLogger;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.devtools.build.lib.clock.Clock;
+import com.google.devtools.build.lib.vfs.FileStatus;
+import com.google.devtools.build.lib.vfs.Path;
+import com.google.devtools.build.lib.vfs.Symlinks;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.Nullable;
+
+/**
+ * An in-memory index of the entries of a {@link DiskCacheClient} that evicts the least recently
+ * used entries once the cache grows beyond a maximum size.
+ *
+ * <p>The index is populated lazily: the first access schedules a scan of the cache directory on a
+ * background thread, and entries written or read before the scan finishes are tracked right away.
+ * Eviction also runs on that background thread, so callers on the hot path only ever update an
+ * in-memory map.
+ *
+ * <p>The modification time of a cache file doubles as its access time. Hits refresh it on disk at
+ * most once per {@link #TOUCH_INTERVAL_MILLIS}, which lets several Bazel servers share one cache
+ * directory: before deleting a file, the evictor re-stats it and spares it if another server has
+ * touched it since it was last seen. Readers racing with a deletion either keep reading from the
+ * already open file or observe a cache miss; neither corrupts the cache.
+ */
+final class DiskCacheIndex {
+
+  private static final GoogleLogger logger = GoogleLogger.forEnclosingClass();
+
+  /** Minimum delay between two updates of the on-disk access time of the same entry. */
+  @VisibleForTesting static final long TOUCH_INTERVAL_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+  /** Eviction stops once the cache is below this fraction of its maximum size. */
+  private static final double EVICTION_LOW_WATERMARK = 0.9;
+
+  private static final class Entry {
+    private final long size;
+    private volatile long lastAccessMillis;
+    private volatile long lastTouchMillis;
+
+    private Entry(long size, long lastAccessMillis) {
+      this.size = size;
+      this.lastAccessMillis = lastAccessMillis;
+      this.lastTouchMillis = lastAccessMillis;
+    }
+  }
+
+  private final Path root;
+  private final Iterable<String> subdirectories;
+  private final long maxSizeBytes;
+  private final long targetSizeBytes;
+  private final Clock clock;
+  private final ExecutorService executor;
+
+  private final Map<Path, Entry> entries = new ConcurrentHashMap<>();
+  private final AtomicLong totalSizeBytes = new AtomicLong();
+  private final AtomicLong evictedEntries = new AtomicLong();
+  private final AtomicBoolean loadStarted = new AtomicBoolean();
+  private final AtomicBoolean evictionScheduled = new AtomicBoolean();
+
+  DiskCacheIndex(Path root, Iterable<String> subdirectories, long maxSizeBytes, Clock clock) {
+    this(
+        root,
+        subdirectories,
+        maxSizeBytes,
+        clock,
+        Executors.newSingleThreadExecutor(
+            new ThreadFactoryBuilder()
+                .setNameFormat("disk-cache-evictor-%d")
+                .setDaemon(true)
+                .build()));
+  }
+
+  @VisibleForTesting
+  DiskCacheIndex(
+      Path root,
+      Iterable<String> subdirectories,
+      long maxSizeBytes,
+      Clock clock,
+      ExecutorService executor) {
+    checkArgument(maxSizeBytes > 0, "maxSizeBytes must be positive, got %s", maxSizeBytes);
+    this.root = root;
+    this.subdirectories = subdirectories;
+    this.maxSizeBytes = maxSizeBytes;
+    this.targetSizeBytes = (long) (maxSizeBytes * EVICTION_LOW_WATERMARK);
+    this.clock = clock;
+    this.executor = executor;
+  }
+
+  /** Records a cache hit on {@code path}. */
+  void recordAccess(Path path) {
+    ensureLoadStarted();
+    Entry entry = entries.get(path);
+    if (entry == null) {
+      // Either written by another server or not yet seen by the initial scan, which will add it.
+      return;
+    }
+    long now = clock.currentTimeMillis();
+    entry.lastAccessMillis = now;
+    if (now - entry.lastTouchMillis >= TOUCH_INTERVAL_MILLIS) {
+      entry.lastTouchMillis = now;
+      submit(() -> touch(path, now));
+    }
+  }
+
+  /** Records that {@code path} has been added to the cache with the given size. */
+  void recordWrite(Path path, long sizeBytes) {
+    ensureLoadStarted();
+    Entry previous = entries.put(path, new Entry(sizeBytes, clock.currentTimeMillis()));
+    totalSizeBytes.addAndGet(previous == null ? sizeBytes : sizeBytes - previous.size);
+    maybeScheduleEviction();
+  }
+
+  /** Returns the total size of the entries currently known to the index. */
+  long getTotalSizeBytes() {
+    return totalSizeBytes.get();
+  }
+
+  /** Returns the number of entries this index has deleted so far. */
+  long getEvictedEntries() {
+    return evictedEntries.get();
+  }
+
+  /** Stops the background thread. Pending scans and evictions are abandoned. */
+  void close() {
+    executor.shutdownNow();
+  }
+
+  private void ensureLoadStarted() {
+    if (loadStarted.compareAndSet(false, true)) {
+      submit(this::load);
+    }
+  }
+
+  private void maybeScheduleEviction() {
+    if (totalSizeBytes.get() > maxSizeBytes && evictionScheduled.compareAndSet(false, true)) {
+      submit(this::evict);
+    }
+  }
+
+  private void submit(Runnable task) {
+    try {
+      executor.execute(task);
+    } catch (RejectedExecutionException e) {
+      // The client has been closed; the next server to use the cache will catch up.
+    }
+  }
+
+  private void load() {
+    for (String subdirectory : subdirectories) {
+      Path dir = root.getChild(subdirectory);
+      try {
+        if (!dir.isDirectory()) {
+          continue;
+        }
+        for (Path shard : dir.getDirectoryEntries()) {
+          if (!shard.isDirectory()) {
+            continue;
+          }
+          for (Path file : shard.getDirectoryEntries()) {
+            FileStatus status = file.statIfFound(Symlinks.NOFOLLOW);
+            if (status == null || !status.isFile()) {
+              continue;
+            }
+            Entry entry = new Entry(status.getSize(), status.getLastModifiedTime());
+            if (entries.putIfAbsent(file, entry) == null) {
+              totalSizeBytes.addAndGet(entry.size);
+            }
+          }
+        }
+      } catch (IOException e) {
+        logger.atWarning().withCause(e).log("Failed to index disk cache directory %s", dir);
+      }
+    }
+    maybeScheduleEviction();
+  }
+
+  private void evict() {
+    evictionScheduled.set(false);
+    if (totalSizeBytes.get() <= maxSizeBytes) {
+      return;
+    }
+    List<Map.Entry<Path, Entry>> candidates = new ArrayList<>(entries.entrySet());
+    candidates.sort(Comparator.comparingLong(e -> e.getValue().lastAccessMillis));
+    for (Map.Entry<Path, Entry> candidate : candidates) {
+      if (totalSizeBytes.get() <= targetSizeBytes || Thread.currentThread().isInterrupted()) {
+        break;
+      }
+      Path path = candidate.getKey();
+      Entry entry = candidate.getValue();
+      long lastAccessMillis = entry.lastAccessMillis;
+      try {
+        FileStatus status = path.statIfFound(Symlinks.NOFOLLOW);
+        if (status != null && status.getLastModifiedTime() > lastAccessMillis) {
+          // Another server has used this entry since we last looked at it.
+          entry.lastAccessMillis = status.getLastModifiedTime();
+          continue;
+        }
+        if (entry.lastAccessMillis != lastAccessMillis) {
+          // Accessed by this server while we were looking at it.
+          continue;
+        }
+        if (status != null) {
+          path.delete();
+          evictedEntries.incrementAndGet();
+        }
+        removeEntry(path, entry);
+      } catch (IOException e) {
+        // E.g. the file is still open on Windows. Leave it for the next round.
+        logger.atFine().withCause(e).log("Failed to evict %s from the disk cache", path);
+      }
+    }
+  }
+
+  private void removeEntry(Path path, Entry entry) {
+    if (entries.remove(path, entry)) {
+      totalSizeBytes.addAndGet(-entry.size);
+    }
+  }
+
+  private static void touch(Path path, long nowMillis) {
+    try {
+      path.setLastModifiedTime(nowMillis);
+    } catch (IOException e) {
+      // The entry may have been evicted by another server in the meantime.
+      logger.atFine().withCause(e).log("Failed to update the access time of %s", path);
+    }
+  }
+
+  @VisibleForTesting
+  @Nullable
+  Long getLastAccessMillis(Path path) {
+    Entry entry = entries.get(path);
+    return entry == null ? null : entry.lastAccessMillis;
+  }
+}
@@ -17,15 +17,16 @@ import build.bazel.remote.execution.v2.Digest;
 import build.bazel.remote.execution.v2.Directory;
 import build.bazel.remote.execution.v2.DirectoryNode;
 import build.bazel.remote.execution.v2.FileNode;
+import com.github.benmanes.caffeine.cache.Cache;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ImmutableSortedMap;
 import com.google.common.collect.ImmutableSortedSet;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Multimap;
-import com.google.common.collect.Sets;
 import com.google.devtools.build.lib.actions.ActionInput;
 import com.google.devtools.build.lib.actions.MetadataProvider;
 import com.google.devtools.build.lib.profiler.Profiler;
@@ -37,8 +38,9 @@ import com.google.protobuf.ByteString;
 import java.io.IOException;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
-import java.util.Objects;
 import java.util.SortedMap;
 import java.util.SortedSet;
 import java.util.TreeMap;
@@ -268,27 +270,53 @@ public class MerkleTree {
   }
 
   public static MerkleTree merge(Collection<MerkleTree> merkleTrees, DigestUtil digestUtil) {
-    if (merkleTrees.isEmpty()) {
+    return merge(merkleTrees, digestUtil, /*mergedTrees=*/ null);
+  }
+
+  /**
+   * Merges {@code merkleTrees} into a single tree, memoizing the merged tree of every directory in
+   * {@code mergedTrees} if it is not null.
+   *
+   * <p>Merged trees are keyed by the root digests of the trees merged into them, so the inputs of
+   * actions that share nested sets, whose Merkle trees are built and cached per nested set node,
+   * are merged and hashed once per directory. The file protos of the merged trees are reused
+   * rather than rebuilt.
+   */
+  public static MerkleTree merge(
+      Collection<MerkleTree> merkleTrees,
+      DigestUtil digestUtil,
+      @Nullable Cache<Object, MerkleTree> mergedTrees) {
+    // Trees without contents or with the same contents as an earlier one add nothing to the merge.
+    Map<Digest, MerkleTree> distinctTrees = new LinkedHashMap<>();
+    for (MerkleTree merkleTree : merkleTrees) {
+      if (!merkleTree.getFiles().isEmpty() || !merkleTree.getDirectories().isEmpty()) {
+        distinctTrees.putIfAbsent(merkleTree.getRootDigest(), merkleTree);
+      }
+    }
+    if (distinctTrees.isEmpty()) {
       return build(new DirectoryTree(ImmutableMap.of(), 0), digestUtil);
     }
-
-    MerkleTree firstMerkleTree = merkleTrees.iterator().next();
-    Digest firstRootDigest = firstMerkleTree.getRootDigest();
-    if (merkleTrees.stream()
-        .allMatch((mt) -> Objects.equals(mt.getRootDigest(), firstRootDigest))) {
-      // All are the same, pick the first one.
-      return firstMerkleTree;
+    if (distinctTrees.size() == 1) {
+      return Iterables.getOnlyElement(distinctTrees.values());
     }
 
-    // Some differ, do a full merge.
-    SortedSet<DirectoryTree.FileNode> files = Sets.newTreeSet();
-    for (MerkleTree merkleTree : merkleTrees) {
-      files.addAll(merkleTree.getFiles());
+    MergeKey key = null;
+    if (mergedTrees != null) {
+      key = new MergeKey(ImmutableSet.copyOf(distinctTrees.keySet()));
+      MerkleTree merged = mergedTrees.getIfPresent(key);
+      if (merged != null) {
+        return merged;
+      }
     }
 
-    // Group all Merkle trees per path.
+    // The file protos of a tree are in the order of its files.
+    TreeMap<DirectoryTree.FileNode, FileNode> files = new TreeMap<>();
     Multimap<String, MerkleTree> allDirsToMerge = ArrayListMultimap.create();
-    for (MerkleTree merkleTree : merkleTrees) {
+    for (MerkleTree merkleTree : distinctTrees.values()) {
+      Iterator<FileNode> fileProtos = merkleTree.getRootProto().getFilesList().iterator();
+      for (DirectoryTree.FileNode file : merkleTree.getFiles()) {
+        files.putIfAbsent(file, fileProtos.next());
+      }
       merkleTree.getDirectories().forEach(allDirsToMerge::put);
     }
     // Merge the Merkle trees for each path.
@@ -296,19 +324,36 @@ public class MerkleTree {
     allDirsToMerge
         .asMap()
         .forEach(
-            (baseName, dirsToMerge) -> directories.put(baseName, merge(dirsToMerge, digestUtil)));
+            (baseName, dirsToMerge) ->
+                directories.put(baseName, merge(dirsToMerge, digestUtil, mergedTrees)));
+
+    MerkleTree merged =
+        buildMerkleTree(
+            ImmutableSortedSet.copyOfSorted(files.navigableKeySet()),
+            files.values(),
+            directories,
+            digestUtil);
+    if (key != null) {
+      mergedTrees.put(key, merged);
+    }
+    return merged;
+  }
 
-    return buildMerkleTree(files, directories, digestUtil);
+  private static MerkleTree buildMerkleTree(
+      SortedSet<DirectoryTree.FileNode> files,
+      SortedMap<String, MerkleTree> directories,
+      DigestUtil digestUtil) {
+    return buildMerkleTree(
+        files, Iterables.transform(files, MerkleTree::buildProto), directories, digestUtil);
   }
 
   private static MerkleTree buildMerkleTree(
       SortedSet<DirectoryTree.FileNode> files,
+      Iterable<FileNode> fileProtos,
       SortedMap<String, MerkleTree> directories,
       DigestUtil digestUtil) {
     Directory.Builder b = Directory.newBuilder();
-    for (DirectoryTree.FileNode file : files) {
-      b.addFiles(buildProto(file));
-    }
+    b.addAllFiles(fileProtos);
     for (Map.Entry<String, MerkleTree> nameAndDir : directories.entrySet()) {
       b.addDirectories(buildProto(nameAndDir.getKey(), nameAndDir.getValue()));
     }
@@ -343,6 +388,25 @@ public class MerkleTree {
     return DirectoryNode.newBuilder().setName(baseName).setDigest(dir.getRootDigest()).build();
   }
 
+  /** The key of a memoized merge: the root digests of the trees that were merged. */
+  private static final class MergeKey {
+    private final ImmutableSet<Digest> rootDigests;
+
+    MergeKey(ImmutableSet<Digest> rootDigests) {
+      this.rootDigests = rootDigests;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      return o instanceof MergeKey && rootDigests.equals(((MergeKey) o).rootDigests);
+    }
+
+    @Override
+    public int hashCode() {
+      return rootDigests.hashCode();
+    }
+  }
+
   private static PathOrBytes toPathOrBytes(DirectoryTree.FileNode file) {
     return file.getPath() != null
         ? new PathOrBytes(file.getPath())
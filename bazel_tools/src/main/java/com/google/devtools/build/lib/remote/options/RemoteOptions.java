@@ -337,6 +337,18 @@ public final class RemoteOptions extends OptionsBase {
               + "If the directory does not exist, it will be created.")
   public PathFragment diskCache;
 
+  @Option(
+      name = "experimental_disk_cache_max_size_mb",
+      defaultValue = "0",
+      documentationCategory = OptionDocumentationCategory.REMOTE,
+      effectTags = {OptionEffectTag.HOST_MACHINE_RESOURCE_OPTIMIZATIONS},
+      help =
+          "If set to a positive value, the maximum size in megabytes of the directory given by"
+              + " --disk_cache. Once exceeded, the least recently used entries are deleted in the"
+              + " background until the cache is back below 90% of this size. Several Bazel"
+              + " servers may share the same cache directory. 0 means unlimited.")
+  public long diskCacheMaxSizeMb;
+
   @Option(
       name = "experimental_guard_against_concurrent_changes",
       defaultValue = "false",
@@ -534,8 +546,9 @@ public final class RemoteOptions extends OptionsBase {
       effectTags = {OptionEffectTag.UNKNOWN},
       help =
           "If set to true, Merkle tree calculations will be memoized to improve the remote cache "
-              + "hit checking speed. The memory foot print of the cache is controlled by "
-              + "--experimental_remote_merkle_tree_cache_size.")
+              + "hit checking speed. Trees are memoized per nested set of inputs, and so are the "
+              + "merges of those trees into the input trees of actions. The memory foot print of "
+              + "the cache is controlled by --experimental_remote_merkle_tree_cache_size.")
   public boolean remoteMerkleTreeCache;
 
   @Option(
@@ -550,6 +563,29 @@ public final class RemoteOptions extends OptionsBase {
               + "(default), the cache size is unlimited.")
   public long remoteMerkleTreeCacheSize;
 
+  @Option(
+      name = "experimental_remote_upload_batch_blob_size",
+      defaultValue = "0",
+      documentationCategory = OptionDocumentationCategory.REMOTE,
+      effectTags = {OptionEffectTag.UNKNOWN},
+      help =
+          "Blobs of at most this many bytes are uploaded to the remote cache together in "
+              + "BatchUpdateBlobs requests rather than each in its own ByteStream write. A batch "
+              + "never exceeds the maximum batch size of the server nor the maximum gRPC message "
+              + "size. If set to 0 (default), every blob is uploaded with its own write.")
+  public long remoteUploadBatchBlobSize;
+
+  @Option(
+      name = "experimental_remote_upload_max_inflight_bytes",
+      defaultValue = "0",
+      documentationCategory = OptionDocumentationCategory.REMOTE,
+      effectTags = {OptionEffectTag.HOST_MACHINE_RESOURCE_OPTIMIZATIONS},
+      help =
+          "The number of bytes of blobs that may be uploaded to the remote cache at the same time. "
+              + "Further uploads wait for earlier ones to complete; a blob larger than the limit "
+              + "is uploaded on its own. If set to 0 (default), uploads are not limited.")
+  public long remoteUploadMaxInFlightBytes;
+
   @Option(
       name = "remote_download_symlink_template",
       defaultValue = "",
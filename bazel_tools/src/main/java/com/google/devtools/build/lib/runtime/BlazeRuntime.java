@@ -332,8 +332,11 @@ public final class BlazeRuntime implements BugReport.BlazeRuntimeInterface {
     try {
       if (tracerEnabled) {
         if (options.profilePath == null) {
-          profileName = "command.profile.gz";
-          format = Format.JSON_TRACE_FILE_COMPRESSED_FORMAT;
+          profileName = options.binaryProfile ? "command.profile.bin.gz" : "command.profile.gz";
+          format =
+              options.binaryProfile
+                  ? Format.BINARY_TRACE_FILE_COMPRESSED_FORMAT
+                  : Format.JSON_TRACE_FILE_COMPRESSED_FORMAT;
           if (bepOptions != null && bepOptions.streamingLogFileUploads) {
             BuildEventArtifactUploader buildEventArtifactUploader =
                 newUploader(env, bepOptions.buildEventUploadStrategy);
@@ -344,10 +347,18 @@ public final class BlazeRuntime implements BugReport.BlazeRuntimeInterface {
             out = profilePath.getOutputStream();
           }
         } else {
-          format =
-              options.profilePath.toString().endsWith(".gz")
-                  ? Format.JSON_TRACE_FILE_COMPRESSED_FORMAT
-                  : Format.JSON_TRACE_FILE_FORMAT;
+          boolean compressed = options.profilePath.toString().endsWith(".gz");
+          if (options.binaryProfile) {
+            format =
+                compressed
+                    ? Format.BINARY_TRACE_FILE_COMPRESSED_FORMAT
+                    : Format.BINARY_TRACE_FILE_FORMAT;
+          } else {
+            format =
+                compressed
+                    ? Format.JSON_TRACE_FILE_COMPRESSED_FORMAT
+                    : Format.JSON_TRACE_FILE_FORMAT;
+          }
           profilePath = workspace.getWorkspace().getRelative(options.profilePath);
           out = profilePath.getOutputStream(/* append= */ false, /* internal= */ true);
         }
@@ -715,6 +726,9 @@ public final class BlazeRuntime implements BugReport.BlazeRuntimeInterface {
   /** Invokes {@link BlazeModule#blazeShutdown()} on all registered modules. */
   public void shutdown() {
     try {
+      if (workspace != null) {
+        workspace.saveGraphSnapshot();
+      }
       for (BlazeModule module : blazeModules) {
         module.blazeShutdown();
       }
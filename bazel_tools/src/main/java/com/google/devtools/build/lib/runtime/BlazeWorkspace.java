@@ -23,6 +23,7 @@ import com.google.common.eventbus.SubscriberExceptionHandler;
 import com.google.common.flogger.GoogleLogger;
 import com.google.devtools.build.lib.actions.cache.ActionCache;
 import com.google.devtools.build.lib.actions.cache.CompactPersistentActionCache;
+import com.google.devtools.build.lib.actions.cache.MappedPersistentActionCache;
 import com.google.devtools.build.lib.analysis.BlazeDirectories;
 import com.google.devtools.build.lib.analysis.WorkspaceStatusAction;
 import com.google.devtools.build.lib.buildtool.BuildRequestOptions;
@@ -32,6 +33,7 @@ import com.google.devtools.build.lib.profiler.AutoProfiler;
 import com.google.devtools.build.lib.profiler.ProfilerTask;
 import com.google.devtools.build.lib.profiler.memory.AllocationTracker;
 import com.google.devtools.build.lib.skyframe.SkyframeExecutor;
+import com.google.devtools.build.lib.skyframe.SkyframeGraphSnapshot;
 import com.google.devtools.build.lib.vfs.FileSystemUtils;
 import com.google.devtools.build.lib.vfs.Path;
 import com.google.devtools.common.options.OptionsParsingResult;
@@ -68,6 +70,10 @@ public final class BlazeWorkspace {
    * command with {@code --nouse_action_cache} to save memory.
    */
   @Nullable private ActionCache actionCache;
+  private boolean useMappedActionCache;
+
+  /** Created on the first command that enables graph snapshots. */
+  @Nullable private SkyframeGraphSnapshot graphSnapshot;
 
   /** The execution time range of the previous build command in this server, if any. */
   @Nullable private Range<Long> lastExecutionRange = null;
@@ -217,7 +223,18 @@ public final class BlazeWorkspace {
     if (buildRequestOptions != null && !buildRequestOptions.useActionCache) {
       // Drop the action cache reference to save memory since we don't need it for this build. If a
       // subsequent build needs it, getOrLoadPersistentActionCache will reload it from disk.
-      actionCache = null;
+      dropActionCache();
+    }
+    if (buildRequestOptions != null
+        && buildRequestOptions.useMappedActionCache != useMappedActionCache) {
+      // The two implementations use different files, so switching requires reloading.
+      useMappedActionCache = buildRequestOptions.useMappedActionCache;
+      dropActionCache();
+    }
+    CommonCommandOptions commonOptions = options.getOptions(CommonCommandOptions.class);
+    if (commonOptions != null) {
+      skyframeExecutor.setGraphSnapshot(
+          commonOptions.skyframeGraphSnapshot ? getOrCreateGraphSnapshot() : null);
     }
     return env;
   }
@@ -239,11 +256,48 @@ public final class BlazeWorkspace {
   public void clearCaches() throws IOException {
     if (actionCache != null) {
       actionCache.clear();
+      actionCache.close();
     }
     actionCache = null;
     getCacheDirectory().deleteTree();
   }
 
+  /** Closes the action cache and drops the reference to it. */
+  private void dropActionCache() {
+    if (actionCache == null) {
+      return;
+    }
+    try {
+      actionCache.close();
+    } catch (IOException e) {
+      logger.atWarning().withCause(e).log("Failed to close the action cache");
+    }
+    actionCache = null;
+  }
+
+  /**
+   * Returns the graph snapshot of this workspace. It is kept in the cache directory, so that it is
+   * removed by {@link #clearCaches}. Returns null if the install base has no fingerprint to tell
+   * snapshots of different binaries apart.
+   */
+  @Nullable
+  private SkyframeGraphSnapshot getOrCreateGraphSnapshot() {
+    if (graphSnapshot == null && directories.getInstallMD5() != null) {
+      graphSnapshot =
+          SkyframeGraphSnapshot.create(
+              getCacheDirectory().getChild("skyframe_graph"),
+              directories.getInstallMD5().toString(),
+              runtime.getRuleClassProvider(),
+              getWorkspace());
+    }
+    return graphSnapshot;
+  }
+
+  /** Saves the Skyframe graph to the graph snapshot, if enabled by the last command. */
+  void saveGraphSnapshot() {
+    skyframeExecutor.saveGraphSnapshot();
+  }
+
   /**
    * Returns reference to the lazily instantiated persistent action cache instance. Note, that
    * method may recreate instance between different build requests, so return value should not be
@@ -253,7 +307,11 @@ public final class BlazeWorkspace {
     if (actionCache == null) {
       try (AutoProfiler p = profiledAndLogged("Loading action cache", ProfilerTask.INFO)) {
         actionCache =
-            CompactPersistentActionCache.create(getCacheDirectory(), runtime.getClock(), reporter);
+            useMappedActionCache
+                ? MappedPersistentActionCache.create(
+                    getCacheDirectory(), runtime.getClock(), reporter)
+                : CompactPersistentActionCache.create(
+                    getCacheDirectory(), runtime.getClock(), reporter);
       }
     }
     return actionCache;
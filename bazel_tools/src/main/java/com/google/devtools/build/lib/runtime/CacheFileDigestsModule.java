@@ -22,7 +22,7 @@ import com.google.devtools.build.lib.exec.ExecutionOptions;
 import com.google.devtools.build.lib.exec.ExecutorBuilder;
 import com.google.devtools.build.lib.vfs.DigestUtils;
 
-/** Enables the caching of file digests in {@link DigestUtils}. */
+/** Enables the caching and memory-mapped computation of file digests in {@link DigestUtils}. */
 public class CacheFileDigestsModule extends BlazeModule {
 
   private static final GoogleLogger logger = GoogleLogger.forEnclosingClass();
@@ -53,6 +53,7 @@ public class CacheFileDigestsModule extends BlazeModule {
   @Override
   public void executorInit(CommandEnvironment env, BuildRequest request, ExecutorBuilder builder) {
     ExecutionOptions options = request.getOptions(ExecutionOptions.class);
+    DigestUtils.configureMappedDigests(options.mmapFileDigests);
     if (lastKnownCacheSize == null
         || options.cacheSizeForComputedFileDigests != lastKnownCacheSize) {
       logger.atInfo().log(
@@ -26,6 +26,7 @@ import com.google.devtools.build.lib.actions.ResourceManager;
 import com.google.devtools.build.lib.analysis.AnalysisOptions;
 import com.google.devtools.build.lib.analysis.BlazeDirectories;
 import com.google.devtools.build.lib.analysis.config.CoreOptions;
+import com.google.devtools.build.lib.buildtool.BuildRequestOptions;
 import com.google.devtools.build.lib.clock.Clock;
 import com.google.devtools.build.lib.cmdline.Label;
 import com.google.devtools.build.lib.events.Reporter;
@@ -43,6 +44,8 @@ import com.google.devtools.build.lib.server.FailureDetails.FailureDetail;
 import com.google.devtools.build.lib.skyframe.SkyframeBuildView;
 import com.google.devtools.build.lib.skyframe.SkyframeExecutor;
 import com.google.devtools.build.lib.skyframe.WorkspaceInfoFromDiff;
+import com.google.devtools.build.lib.unix.UnixBatchStat;
+import com.google.devtools.build.lib.unix.UnixFileSystem;
 import com.google.devtools.build.lib.util.AbruptExitException;
 import com.google.devtools.build.lib.util.DetailedExitCode;
 import com.google.devtools.build.lib.util.io.OutErr;
@@ -743,6 +746,13 @@ public class CommandEnvironment {
 
     SkyframeExecutor skyframeExecutor = getSkyframeExecutor();
     skyframeExecutor.setOutputService(outputService);
+    BuildRequestOptions buildRequestOptions = options.getOptions(BuildRequestOptions.class);
+    skyframeExecutor.setLocalBatchStatter(
+        buildRequestOptions != null
+                && buildRequestOptions.useLocalBatchStat
+                && getRuntime().getFileSystem() instanceof UnixFileSystem
+            ? new UnixBatchStat(getExecRoot())
+            : null);
     skyframeExecutor.noteCommandStart();
 
     // Fail fast in the case where a Blaze command forgets to install the package path correctly.
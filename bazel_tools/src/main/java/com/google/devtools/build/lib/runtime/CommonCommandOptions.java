@@ -264,6 +264,18 @@ public class CommonCommandOptions extends OptionsBase {
       help = "Includes target label in action events' JSON profile data.")
   public boolean profileIncludeTargetLabel;
 
+  @Option(
+      name = "experimental_binary_profile",
+      defaultValue = "false",
+      documentationCategory = OptionDocumentationCategory.LOGGING,
+      effectTags = {OptionEffectTag.AFFECTS_OUTPUTS, OptionEffectTag.BAZEL_MONITORING},
+      help =
+          "If enabled, the profile is written in a compact binary format instead of JSON, without"
+              + " queueing the events in memory. bazel analyze-profile reads both formats, but"
+              + " chrome://tracing only reads JSON. The default profile in the output base is then"
+              + " called command.profile.bin.gz.")
+  public boolean binaryProfile;
+
   @Option(
       name = "experimental_announce_profile_path",
       defaultValue = "false",
@@ -481,6 +493,18 @@ public class CommonCommandOptions extends OptionsBase {
               + "one.")
   public boolean keepStateAfterBuild;
 
+  @Option(
+      name = "experimental_skyframe_graph_snapshot",
+      defaultValue = "false",
+      documentationCategory = OptionDocumentationCategory.UNDOCUMENTED,
+      effectTags = {OptionEffectTag.BAZEL_INTERNAL_CONFIGURATION},
+      help =
+          "If enabled, the Skyframe graph is saved to the output base when the server shuts down,"
+              + " and a new server restores it on its first command instead of starting from an"
+              + " empty graph. Restored file system state is checked against the file system"
+              + " before it is used.")
+  public boolean skyframeGraphSnapshot;
+
   @Option(
       name = "repo_env",
       converter = Converters.OptionalAssignmentConverter.class,
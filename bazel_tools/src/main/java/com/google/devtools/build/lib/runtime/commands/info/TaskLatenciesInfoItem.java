@@ -0,0 +1,54 @@
+// Copyright 2026 The Bazel Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.devtools.build.lib.runtime.commands.info;
+
+import com.google.common.base.Supplier;
+import com.google.devtools.build.lib.analysis.config.BuildConfigurationValue;
+import com.google.devtools.build.lib.profiler.LatencyHistogram;
+import com.google.devtools.build.lib.profiler.Profiler;
+import com.google.devtools.build.lib.profiler.TaskLatencies;
+import com.google.devtools.build.lib.runtime.CommandEnvironment;
+import com.google.devtools.build.lib.runtime.InfoItem;
+import java.util.Map;
+
+/**
+ * Info item for the latencies of the tasks that the profiler saw since the server started, by task
+ * type and by action mnemonic. It prints one line per histogram, so it is hidden by default.
+ */
+public final class TaskLatenciesInfoItem extends InfoItem {
+  public TaskLatenciesInfoItem() {
+    super(
+        "task-latencies",
+        "Latency percentiles of the profiled tasks by type and action mnemonic since the server"
+            + " started.",
+        true);
+  }
+
+  @Override
+  public byte[] get(
+      Supplier<BuildConfigurationValue> configurationSupplier, CommandEnvironment env) {
+    TaskLatencies.Snapshot latencies = Profiler.instance().getTaskLatencies();
+    StringBuilder result = new StringBuilder();
+    for (Map.Entry<?, LatencyHistogram.Snapshot> entry : latencies.getByType().entrySet()) {
+      result.append("task ").append(entry.getKey()).append(": ").append(entry.getValue());
+      result.append('\n');
+    }
+    for (Map.Entry<?, LatencyHistogram.Snapshot> entry : latencies.getByMnemonic().entrySet()) {
+      result.append("mnemonic ").append(entry.getKey()).append(": ").append(entry.getValue());
+      result.append('\n');
+    }
+    return print(result.toString().trim());
+  }
+}
@@ -310,7 +310,8 @@ final class DarwinSandboxedSpawnRunner extends AbstractSandboxSpawnRunner {
           statisticsPath,
           getSandboxOptions().reuseSandboxDirectories,
           sandboxBase,
-          spawn.getMnemonic()) {
+          spawn.getMnemonic(),
+          helpers.getStats()) {
         @Override
         public void createFileSystem() throws IOException {
           super.createFileSystem();
@@ -260,7 +260,8 @@ final class LinuxSandboxedSpawnRunner extends AbstractSandboxSpawnRunner {
           statisticsPath,
           getSandboxOptions().reuseSandboxDirectories,
           sandboxBase,
-          spawn.getMnemonic());
+          spawn.getMnemonic(),
+          helpers.getStats());
     }
   }
 
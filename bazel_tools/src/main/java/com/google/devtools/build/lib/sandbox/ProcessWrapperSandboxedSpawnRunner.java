@@ -143,7 +143,8 @@ final class ProcessWrapperSandboxedSpawnRunner extends AbstractSandboxSpawnRunne
           statisticsPath,
           getSandboxOptions().reuseSandboxDirectories,
           sandboxBase,
-          spawn.getMnemonic());
+          spawn.getMnemonic(),
+          helpers.getStats());
     }
   }
 
@@ -66,6 +66,8 @@ public final class SandboxHelpers {
    */
   private final boolean delayVirtualInputMaterialization;
 
+  private final SandboxStats stats = new SandboxStats();
+
   /**
    * Constructs a new collection of helpers.
    *
@@ -76,6 +78,11 @@ public final class SandboxHelpers {
     this.delayVirtualInputMaterialization = delayVirtualInputMaterialization;
   }
 
+  /** Returns the statistics about the sandboxes set up with these helpers. */
+  public SandboxStats getStats() {
+    return stats;
+  }
+
   /**
    * Writes a virtual input file so that the final file is always consistent to all readers.
    *
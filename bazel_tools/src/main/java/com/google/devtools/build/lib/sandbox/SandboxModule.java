@@ -26,6 +26,7 @@ import com.google.devtools.build.lib.actions.ForbiddenActionInputException;
 import com.google.devtools.build.lib.actions.Spawn;
 import com.google.devtools.build.lib.actions.SpawnExecutedEvent;
 import com.google.devtools.build.lib.actions.SpawnResult;
+import com.google.devtools.build.lib.buildtool.CollectMetricsEvent;
 import com.google.devtools.build.lib.buildtool.buildevent.BuildCompleteEvent;
 import com.google.devtools.build.lib.buildtool.buildevent.BuildInterruptedEvent;
 import com.google.devtools.build.lib.events.Event;
@@ -107,6 +108,9 @@ public final class SandboxModule extends BlazeModule {
    */
   private boolean shouldCleanupSandboxBase;
 
+  /** Statistics about the sandboxes of the current build, reported in the build metrics. */
+  @Nullable private SandboxStats sandboxStats;
+
   @Override
   public Iterable<Class<? extends OptionsBase>> getCommandOptions(Command command) {
     return "build".equals(command.name())
@@ -199,6 +203,7 @@ public final class SandboxModule extends BlazeModule {
     sandboxBase = computeSandboxBase(options, env);
 
     SandboxHelpers helpers = new SandboxHelpers(options.delayVirtualInputMaterialization);
+    sandboxStats = helpers.getStats();
 
     // Do not remove the sandbox base when --sandbox_debug was specified so that people can check
     // out the contents of the generated sandbox directories.
@@ -561,6 +566,13 @@ public final class SandboxModule extends BlazeModule {
     }
   }
 
+  @Subscribe
+  public void collectMetrics(@SuppressWarnings("unused") CollectMetricsEvent event) {
+    if (sandboxStats != null) {
+      env.getEventBus().post(new SandboxMetricsEvent(sandboxStats));
+    }
+  }
+
   @Subscribe
   public void buildComplete(@SuppressWarnings("unused") BuildCompleteEvent event) {
     unmountSandboxfs();
@@ -634,6 +646,7 @@ public final class SandboxModule extends BlazeModule {
     }
 
     spawnRunners.clear();
+    sandboxStats = null;
 
     env.getEventBus().unregister(this);
     env = null;
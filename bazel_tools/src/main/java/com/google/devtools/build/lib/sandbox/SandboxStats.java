@@ -0,0 +1,75 @@
+// Copyright 2026 The Bazel Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.devtools.build.lib.sandbox;
+
+import com.google.devtools.build.lib.buildeventstream.BuildEventStreamProtos.BuildMetrics.SandboxMetrics;
+import java.time.Duration;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Statistics about the sandboxes set up by the sandboxed spawns of a build, in particular how much
+ * of the input tree reused sandboxes could keep. Safe to update from concurrent spawns.
+ */
+public final class SandboxStats {
+  private final LongAdder sandboxesSetUp = new LongAdder();
+  private final LongAdder sandboxesReused = new LongAdder();
+  private final LongAdder setupTimeNanos = new LongAdder();
+  private final LongAdder symlinksCreated = new LongAdder();
+  private final LongAdder symlinksKept = new LongAdder();
+
+  /**
+   * Records the setup of the file system of a sandbox.
+   *
+   * @param reused whether the sandbox was patched from a stashed sandbox
+   * @param created the number of input symlinks created
+   * @param kept the number of input symlinks that the stashed sandbox already had
+   * @param setupTime the wall time it took to set up the sandbox
+   */
+  void recordSetup(boolean reused, int created, int kept, Duration setupTime) {
+    sandboxesSetUp.increment();
+    if (reused) {
+      sandboxesReused.increment();
+    }
+    symlinksCreated.add(created);
+    symlinksKept.add(kept);
+    setupTimeNanos.add(setupTime.toNanos());
+  }
+
+  long getSandboxesReused() {
+    return sandboxesReused.sum();
+  }
+
+  long getSymlinksCreated() {
+    return symlinksCreated.sum();
+  }
+
+  long getSymlinksKept() {
+    return symlinksKept.sum();
+  }
+
+  Duration getSetupTime() {
+    return Duration.ofNanos(setupTimeNanos.sum());
+  }
+
+  public SandboxMetrics toProto() {
+    return SandboxMetrics.newBuilder()
+        .setSandboxesSetUp(sandboxesSetUp.sum())
+        .setSandboxesReused(sandboxesReused.sum())
+        .setSetupTimeInMs(getSetupTime().toMillis())
+        .setSymlinksCreated(symlinksCreated.sum())
+        .setSymlinksKept(symlinksKept.sum())
+        .build();
+  }
+}
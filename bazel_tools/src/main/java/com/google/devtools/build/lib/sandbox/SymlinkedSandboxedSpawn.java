@@ -16,6 +16,7 @@ package com.google.devtools.build.lib.sandbox;
 
 import static com.google.common.base.Strings.isNullOrEmpty;
 
+import com.google.common.base.Stopwatch;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.flogger.GoogleLogger;
@@ -55,6 +56,16 @@ public class SymlinkedSandboxedSpawn extends AbstractContainerizingSandboxedSpaw
   /** Mnemonic of the action running in this spawn. */
   private final String mnemonic;
 
+  private final SandboxStats stats;
+
+  /** Whether {@link #createFileSystem} patched a stashed sandbox instead of a new one. */
+  private boolean reused;
+
+  /** How many input symlinks {@link #createFileSystem} creates and keeps, respectively. */
+  private int symlinksCreated;
+
+  private int symlinksKept;
+
   public SymlinkedSandboxedSpawn(
       Path sandboxPath,
       Path sandboxExecRoot,
@@ -67,7 +78,8 @@ public class SymlinkedSandboxedSpawn extends AbstractContainerizingSandboxedSpaw
       @Nullable Path statisticsPath,
       boolean reuseSandboxDirectories,
       Path sandboxBase,
-      String mnemonic) {
+      String mnemonic,
+      SandboxStats stats) {
     super(
         sandboxPath,
         sandboxExecRoot,
@@ -80,14 +92,24 @@ public class SymlinkedSandboxedSpawn extends AbstractContainerizingSandboxedSpaw
         statisticsPath);
     this.sandboxBase = sandboxBase;
     this.reuseSandboxDirectories = reuseSandboxDirectories;
-    this.mnemonic = isNullOrEmpty(mnemonic) ? mnemonic : "_NoMnemonic_";
+    this.mnemonic = isNullOrEmpty(mnemonic) ? "_NoMnemonic_" : mnemonic;
+    this.stats = stats;
+  }
+
+  @Override
+  public void createFileSystem() throws IOException {
+    Stopwatch setupTime = Stopwatch.createStarted();
+    super.createFileSystem();
+    stats.recordSetup(reused, symlinksCreated, symlinksKept, setupTime.elapsed());
   }
 
   @Override
   public void filterInputsAndDirsToCreate(
       Set<PathFragment> inputsToCreate, LinkedHashSet<PathFragment> dirsToCreate)
       throws IOException {
+    int inputsBeforeCleaning = inputsToCreate.size();
     if (reuseSandboxDirectories && takeStashedSandbox()) {
+      reused = true;
       // When reusing an old sandbox, we do a full traversal of the parent directory of
       // `sandboxExecRoot`. This will use what we computed above, delete anything unnecessary, and
       // update `inputsToCreate`/`dirsToCreate` if something can be left without changes (e.g., a,
@@ -101,6 +123,8 @@ public class SymlinkedSandboxedSpawn extends AbstractContainerizingSandboxedSpaw
           dirsToCreate,
           sandboxExecRoot);
     }
+    symlinksCreated = inputsToCreate.size();
+    symlinksKept = inputsBeforeCleaning - symlinksCreated;
   }
 
   /**
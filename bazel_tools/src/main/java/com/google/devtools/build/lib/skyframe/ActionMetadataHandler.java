@@ -18,7 +18,9 @@ import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Preconditions.checkState;
 import static java.util.concurrent.TimeUnit.MINUTES;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.MoreObjects;
+import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
@@ -51,9 +53,14 @@ import com.google.devtools.build.lib.vfs.RootedPath;
 import com.google.devtools.build.lib.vfs.Symlinks;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicBoolean;
 import javax.annotation.Nullable;
 
@@ -79,6 +86,9 @@ final class ActionMetadataHandler implements MetadataHandler {
 
   private static final GoogleLogger logger = GoogleLogger.forEnclosingClass();
 
+  /** Trees with fewer files have their metadata constructed on the calling thread. */
+  @VisibleForTesting static final int MIN_CHILDREN_TO_DIGEST_CONCURRENTLY = 16;
+
   /**
    * Creates a new metadata handler.
    *
@@ -332,6 +342,7 @@ final class ActionMetadataHandler implements MetadataHandler {
     }
 
     TreeArtifactValue.Builder tree = TreeArtifactValue.newBuilder(parent);
+    List<TreeFileArtifact> children = new ArrayList<>();
 
     TreeArtifactValue.visitTree(
         treeDir,
@@ -342,22 +353,17 @@ final class ActionMetadataHandler implements MetadataHandler {
           if (type == Dirent.Type.DIRECTORY) {
             return; // The final TreeArtifactValue does not contain child directories.
           }
-          TreeFileArtifact child = TreeFileArtifact.createTreeOutput(parent, parentRelativePath);
-          FileArtifactValue metadata;
-          try {
-            metadata = constructFileArtifactValueFromFilesystem(child);
-          } catch (FileNotFoundException e) {
-            String errorMessage =
-                String.format(
-                    "Failed to resolve relative path %s inside TreeArtifact %s. "
-                        + "The associated file is either missing or is an invalid symlink.",
-                    parentRelativePath, treeDir);
-            throw new IOException(errorMessage, e);
-          }
-
-          tree.putChild(child, metadata);
+          children.add(TreeFileArtifact.createTreeOutput(parent, parentRelativePath));
         });
 
+    if (children.size() < MIN_CHILDREN_TO_DIGEST_CONCURRENTLY) {
+      for (TreeFileArtifact child : children) {
+        tree.putChild(child, constructTreeFileArtifactValue(child, treeDir));
+      }
+    } else {
+      putChildrenConcurrently(tree, children, treeDir);
+    }
+
     if (archivedTreeArtifactsEnabled) {
       ArchivedTreeArtifact archivedTreeArtifact = ArchivedTreeArtifact.createForTree(parent);
       FileStatus statNoFollow =
@@ -378,6 +384,51 @@ final class ActionMetadataHandler implements MetadataHandler {
     return tree.build();
   }
 
+  /**
+   * Constructs the metadata of the children of a large tree artifact in the digesting pool of
+   * {@link DigestUtils}, so that the files of the tree are stat'ed and digested concurrently.
+   */
+  private void putChildrenConcurrently(
+      TreeArtifactValue.Builder tree, List<TreeFileArtifact> children, Path treeDir)
+      throws IOException {
+    List<Future<FileArtifactValue>> futures = new ArrayList<>(children.size());
+    try {
+      for (TreeFileArtifact child : children) {
+        futures.add(
+            DigestUtils.getDigestExecutor()
+                .submit(() -> constructTreeFileArtifactValue(child, treeDir)));
+      }
+      for (int i = 0; i < children.size(); i++) {
+        tree.putChild(children.get(i), futures.get(i).get());
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while constructing metadata of " + treeDir);
+    } catch (ExecutionException e) {
+      Throwables.throwIfInstanceOf(e.getCause(), IOException.class);
+      Throwables.throwIfUnchecked(e.getCause());
+      throw new IllegalStateException(e.getCause());
+    } finally {
+      for (Future<FileArtifactValue> future : futures) {
+        future.cancel(/*mayInterruptIfRunning=*/ true);
+      }
+    }
+  }
+
+  private FileArtifactValue constructTreeFileArtifactValue(TreeFileArtifact child, Path treeDir)
+      throws IOException {
+    try {
+      return constructFileArtifactValueFromFilesystem(child);
+    } catch (FileNotFoundException e) {
+      String errorMessage =
+          String.format(
+              "Failed to resolve relative path %s inside TreeArtifact %s. "
+                  + "The associated file is either missing or is an invalid symlink.",
+              child.getParentRelativePath(), treeDir);
+      throw new IOException(errorMessage, e);
+    }
+  }
+
   @Override
   public ImmutableSet<TreeFileArtifact> getTreeArtifactChildren(SpecialArtifact treeArtifact) {
     checkArgument(treeArtifact.isTreeArtifact(), "%s is not a tree artifact", treeArtifact);
@@ -22,12 +22,14 @@ import com.google.common.collect.ImmutableList;
 import com.google.devtools.build.lib.actions.FileStateValue;
 import com.google.devtools.build.lib.skyframe.ExternalFilesHelper.FileType;
 import com.google.devtools.build.lib.util.io.TimestampGranularityMonitor;
+import com.google.devtools.build.lib.vfs.FileStatusWithDigest;
 import com.google.devtools.build.lib.vfs.Root;
 import com.google.devtools.build.lib.vfs.RootedPath;
 import com.google.devtools.build.skyframe.SkyKey;
 import com.google.devtools.build.skyframe.SkyValue;
 import java.io.IOException;
 import java.util.EnumSet;
+import java.util.Map;
 import java.util.Set;
 import javax.annotation.Nullable;
 
@@ -36,6 +38,18 @@ public class DirtinessCheckerUtils {
   private DirtinessCheckerUtils() {}
 
   static class FileDirtinessChecker extends SkyValueDirtinessChecker {
+    // Stats taken ahead of the check, without following symlinks. A path mapped to null doesn't
+    // exist. Paths that aren't in the map are stat'ed when they are checked.
+    @Nullable private final Map<RootedPath, FileStatusWithDigest> prefetchedStats;
+
+    FileDirtinessChecker() {
+      this(/*prefetchedStats=*/ null);
+    }
+
+    FileDirtinessChecker(@Nullable Map<RootedPath, FileStatusWithDigest> prefetchedStats) {
+      this.prefetchedStats = prefetchedStats;
+    }
+
     @Override
     public boolean applies(SkyKey skyKey) {
       return skyKey.functionName().equals(FILE_STATE);
@@ -46,6 +60,13 @@ public class DirtinessCheckerUtils {
     public SkyValue createNewValue(SkyKey key, @Nullable TimestampGranularityMonitor tsgm) {
       RootedPath rootedPath = (RootedPath) key.argument();
       try {
+        if (prefetchedStats != null && prefetchedStats.containsKey(rootedPath)) {
+          FileStatusWithDigest stat = prefetchedStats.get(rootedPath);
+          return stat == null
+              ? FileStateValue.NONEXISTENT_FILE_STATE_NODE
+              : FileStateValue.createWithStatNoFollow(
+                  rootedPath, stat, /*digestWillBeInjected=*/ false, tsgm);
+        }
         return FileStateValue.create(rootedPath, tsgm);
       } catch (IOException e) {
         // TODO(bazel-team): An IOException indicates a failure to get a file digest or a symlink
@@ -75,10 +96,19 @@ public class DirtinessCheckerUtils {
   }
 
   static class BasicFilesystemDirtinessChecker extends SkyValueDirtinessChecker {
-    private final FileDirtinessChecker fdc = new FileDirtinessChecker();
+    private final FileDirtinessChecker fdc;
     private final DirectoryDirtinessChecker ddc = new DirectoryDirtinessChecker();
-    private final UnionDirtinessChecker checker =
-        new UnionDirtinessChecker(ImmutableList.of(fdc, ddc));
+    private final UnionDirtinessChecker checker;
+
+    BasicFilesystemDirtinessChecker() {
+      this(/*prefetchedStats=*/ null);
+    }
+
+    BasicFilesystemDirtinessChecker(
+        @Nullable Map<RootedPath, FileStatusWithDigest> prefetchedStats) {
+      this.fdc = new FileDirtinessChecker(prefetchedStats);
+      this.checker = new UnionDirtinessChecker(ImmutableList.of(fdc, ddc));
+    }
 
     @Override
     public boolean applies(SkyKey skyKey) {
@@ -96,6 +126,17 @@ public class DirtinessCheckerUtils {
     private final Set<Root> missingDiffPackageRoots;
 
     MissingDiffDirtinessChecker(final Set<Root> missingDiffPackageRoots) {
+      this(missingDiffPackageRoots, /*prefetchedStats=*/ null);
+    }
+
+    /**
+     * Creates a checker that takes the stats of files from {@code prefetchedStats}, as returned by
+     * {@link FilesystemValueChecker#batchStatFileStates}, instead of stat'ing them one by one.
+     */
+    MissingDiffDirtinessChecker(
+        Set<Root> missingDiffPackageRoots,
+        @Nullable Map<RootedPath, FileStatusWithDigest> prefetchedStats) {
+      super(prefetchedStats);
       this.missingDiffPackageRoots = missingDiffPackageRoots;
     }
 
@@ -22,6 +22,7 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ImmutableSortedSet;
 import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Range;
 import com.google.common.collect.Sets;
@@ -31,6 +32,7 @@ import com.google.devtools.build.lib.actions.Artifact;
 import com.google.devtools.build.lib.actions.Artifact.TreeFileArtifact;
 import com.google.devtools.build.lib.actions.FileArtifactValue;
 import com.google.devtools.build.lib.actions.FileStateType;
+import com.google.devtools.build.lib.actions.FileStateValue;
 import com.google.devtools.build.lib.concurrent.ExecutorUtil;
 import com.google.devtools.build.lib.concurrent.Sharder;
 import com.google.devtools.build.lib.profiler.AutoProfiler;
@@ -47,6 +49,8 @@ import com.google.devtools.build.lib.vfs.FileStatusWithDigest;
 import com.google.devtools.build.lib.vfs.ModifiedFileSet;
 import com.google.devtools.build.lib.vfs.Path;
 import com.google.devtools.build.lib.vfs.PathFragment;
+import com.google.devtools.build.lib.vfs.Root;
+import com.google.devtools.build.lib.vfs.RootedPath;
 import com.google.devtools.build.lib.vfs.Symlinks;
 import com.google.devtools.build.skyframe.Differencer;
 import com.google.devtools.build.skyframe.Differencer.DiffWithDelta.Delta;
@@ -56,6 +60,7 @@ import com.google.devtools.build.skyframe.SkyKey;
 import com.google.devtools.build.skyframe.SkyValue;
 import com.google.devtools.build.skyframe.WalkableGraph;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -108,6 +113,54 @@ public class FilesystemValueChecker {
         dirtinessChecker, /*checkMissingValues=*/false);
   }
 
+  /**
+   * Stats the files of the {@link FileStateValue} keys in {@code valuesMap} that are under one of
+   * {@code roots} in a single call to {@code batchStatter}, without following symlinks. Maps each
+   * path to its stat, or to null if the file doesn't exist.
+   *
+   * <p>Returns null if the batch stat fails, so that the caller stats the files one by one.
+   */
+  @Nullable
+  static Map<RootedPath, FileStatusWithDigest> batchStatFileStates(
+      Map<SkyKey, SkyValue> valuesMap, Set<Root> roots, BatchStat batchStatter)
+      throws InterruptedException {
+    List<RootedPath> paths = new ArrayList<>();
+    for (SkyKey key : valuesMap.keySet()) {
+      if (!key.functionName().equals(FileStateValue.FILE_STATE)) {
+        continue;
+      }
+      RootedPath path = (RootedPath) key.argument();
+      // The root directory has no parent to stat it in.
+      if (roots.contains(path.getRoot()) && path.asPath().getParentDirectory() != null) {
+        paths.add(path);
+      }
+    }
+    List<FileStatusWithDigest> stats;
+    try (SilentCloseable c = Profiler.instance().profile("fsvc.batchStatFileStates")) {
+      stats =
+          batchStatter.batchStat(
+              /*includeDigest=*/ false,
+              /*includeLinks=*/ true,
+              Lists.transform(paths, path -> path.asPath().asFragment()));
+    } catch (IOException e) {
+      logger.atWarning().withCause(e).log(
+          "Unable to batch stat %d files, falling back to individual stats", paths.size());
+      return null;
+    }
+    Preconditions.checkState(
+        paths.size() == stats.size(),
+        "paths.size() == %s stats.size() == %s",
+        paths.size(),
+        stats.size());
+    // Allows null values for the missing files.
+    Map<RootedPath, FileStatusWithDigest> statsByPath =
+        Maps.newHashMapWithExpectedSize(paths.size());
+    for (int i = 0; i < paths.size(); i++) {
+      statsByPath.put(paths.get(i), stats.get(i));
+    }
+    return statsByPath;
+  }
+
   /**
    * Returns a {@link Differencer.DiffWithDelta} containing keys that are dirty according to the
    * passed-in {@code dirtinessChecker}.
@@ -83,6 +83,7 @@ import com.google.devtools.build.lib.util.Pair;
 import com.google.devtools.build.lib.util.ResourceUsage;
 import com.google.devtools.build.lib.util.io.TimestampGranularityMonitor;
 import com.google.devtools.build.lib.vfs.BatchStat;
+import com.google.devtools.build.lib.vfs.FileStatusWithDigest;
 import com.google.devtools.build.lib.vfs.FileSystem;
 import com.google.devtools.build.lib.vfs.ModifiedFileSet;
 import com.google.devtools.build.lib.vfs.Root;
@@ -90,6 +91,7 @@ import com.google.devtools.build.lib.vfs.RootedPath;
 import com.google.devtools.build.skyframe.BuildDriver;
 import com.google.devtools.build.skyframe.Differencer;
 import com.google.devtools.build.skyframe.EvaluationContext;
+import com.google.devtools.build.skyframe.FunctionHermeticity;
 import com.google.devtools.build.skyframe.GraphInconsistencyReceiver;
 import com.google.devtools.build.skyframe.InMemoryMemoizingEvaluator;
 import com.google.devtools.build.skyframe.Injectable;
@@ -154,6 +156,11 @@ public final class SequencedSkyframeExecutor extends SkyframeExecutor {
   // If this is null then workspace header pre-calculation won't happen.
   @Nullable private final ManagedDirectoriesKnowledge managedDirectoriesKnowledge;
   private final WorkspaceInfoFromDiffReceiver workspaceInfoFromDiffReceiver;
+  private SequentialBuildDriver sequentialBuildDriver;
+
+  @Nullable private SkyframeGraphSnapshot graphSnapshot;
+  // The graph is restored from the snapshot at most once per server, on the first sync.
+  private boolean graphSnapshotRestoreAttempted = false;
 
   private SequencedSkyframeExecutor(
       Consumer<SkyframeExecutor> skyframeExecutorConsumerOnInit,
@@ -205,7 +212,8 @@ public final class SequencedSkyframeExecutor extends SkyframeExecutor {
 
   @Override
   protected BuildDriver createBuildDriver() {
-    return new SequentialBuildDriver(memoizingEvaluator);
+    sequentialBuildDriver = new SequentialBuildDriver(memoizingEvaluator);
+    return sequentialBuildDriver;
   }
 
   @Override
@@ -261,6 +269,8 @@ public final class SequencedSkyframeExecutor extends SkyframeExecutor {
       resetEvaluator();
       evaluatorNeedsReset = false;
     }
+    // Restore before handling diffs, which validates the restored file system states.
+    maybeRestoreGraphSnapshot(packageLocator);
     super.sync(
         eventHandler,
         packageOptions,
@@ -374,6 +384,9 @@ public final class SequencedSkyframeExecutor extends SkyframeExecutor {
     // TODO(bazel-team): Should use --experimental_fsvc_threads instead of the hardcoded constant
     // but plumbing the flag through is hard.
     int fsvcThreads = buildRequestOptions == null ? 200 : buildRequestOptions.fsvcThreads;
+    // The nodes are actually invalidated at the beginning of the next evaluation.
+    sequentialBuildDriver.setUseBatchedInvalidation(
+        buildRequestOptions != null && buildRequestOptions.batchedSkyframeInvalidation);
     handleDiffsWithCompleteDiffInformation(
         tsgm, modifiedFilesByPathEntry, managedDirectoriesChanged, fsvcThreads);
     handleDiffsWithMissingDiffInformation(
@@ -525,17 +538,30 @@ public final class SequencedSkyframeExecutor extends SkyframeExecutor {
       logger.atInfo().log(
           "About to scan skyframe graph checking for filesystem nodes of types %s",
           Iterables.toString(fileTypesToCheck));
+      Map<SkyKey, SkyValue> values = memoizingEvaluator.getValues();
+      // Without diff information every source file is stat'ed. Where resolving each path on its
+      // own is slow, as on NFS, stat them per directory instead.
+      Map<RootedPath, FileStatusWithDigest> sourceFileStats = null;
+      if (localBatchStatter != null && !diffPackageRootsUnderWhichToCheck.isEmpty()) {
+        sourceFileStats =
+            FilesystemValueChecker.batchStatFileStates(
+                values, diffPackageRootsUnderWhichToCheck, localBatchStatter);
+        if (sourceFileStats != null) {
+          logger.atInfo().log("Stat'ed source files with %s", localBatchStatter);
+        }
+      }
       ImmutableBatchDirtyResult batchDirtyResult;
       try (SilentCloseable c = Profiler.instance().profile("fsvc.getDirtyKeys")) {
         batchDirtyResult =
             fsvc.getDirtyKeys(
-                memoizingEvaluator.getValues(),
+                values,
                 new UnionDirtinessChecker(
                     Iterables.concat(
                         customDirtinessCheckers,
                         ImmutableList.<SkyValueDirtinessChecker>of(
                             new ExternalDirtinessChecker(tmpExternalFilesHelper, fileTypesToCheck),
-                            new MissingDiffDirtinessChecker(diffPackageRootsUnderWhichToCheck)))));
+                            new MissingDiffDirtinessChecker(
+                                diffPackageRootsUnderWhichToCheck, sourceFileStats)))));
       }
       handleChangedFiles(
           diffPackageRootsUnderWhichToCheck,
@@ -721,6 +747,80 @@ public final class SequencedSkyframeExecutor extends SkyframeExecutor {
     return trackIncrementalState;
   }
 
+  @Override
+  public void setGraphSnapshot(@Nullable SkyframeGraphSnapshot graphSnapshot) {
+    this.graphSnapshot = graphSnapshot;
+  }
+
+  @Override
+  public void saveGraphSnapshot() {
+    if (graphSnapshot == null
+        || !trackIncrementalState
+        || !(memoizingEvaluator instanceof InMemoryMemoizingEvaluator)
+        || pkgLocator.get() == null) {
+      return;
+    }
+    ImmutableSet<Root> pkgRoots = ImmutableSet.copyOf(pkgLocator.get().getPathEntries());
+    try (SilentCloseable c = Profiler.instance().profile("saveGraphSnapshot")) {
+      int written =
+          graphSnapshot.save(
+              (InMemoryMemoizingEvaluator) memoizingEvaluator,
+              key -> canSaveInGraphSnapshot(key, pkgRoots));
+      logger.atInfo().log("Saved %d nodes to %s", written, graphSnapshot.getPath());
+    } catch (IOException e) {
+      logger.atWarning().withCause(e).log(
+          "Failed to save graph snapshot to %s", graphSnapshot.getPath());
+    }
+  }
+
+  /**
+   * Whether the node of {@code key} can be saved in a graph snapshot. Apart from hermetic nodes,
+   * only the states of files and directories under the package roots can be, because they are all
+   * checked against the file system on the first sync after a restart: there is no diff
+   * information to rely on yet. Precomputed values are injected again by every command, so they
+   * are not saved, and neither are the nodes that depend on them.
+   */
+  private static boolean canSaveInGraphSnapshot(SkyKey key, Set<Root> pkgRoots) {
+    if (isFileSystemStateKey(key)) {
+      return pkgRoots.contains(((RootedPath) key.argument()).getRoot());
+    }
+    return key.functionName().getHermeticity() == FunctionHermeticity.HERMETIC;
+  }
+
+  private static boolean isFileSystemStateKey(SkyKey key) {
+    return key.functionName().equals(FileStateValue.FILE_STATE)
+        || key.functionName().equals(SkyFunctions.DIRECTORY_LISTING_STATE);
+  }
+
+  private void maybeRestoreGraphSnapshot(PathPackageLocator packageLocator) {
+    if (graphSnapshot == null
+        || graphSnapshotRestoreAttempted
+        || !trackIncrementalState
+        || !(memoizingEvaluator instanceof InMemoryMemoizingEvaluator)
+        || !memoizingEvaluator.getValues().isEmpty()) {
+      return;
+    }
+    graphSnapshotRestoreAttempted = true;
+    try (SilentCloseable c = Profiler.instance().profile("restoreGraphSnapshot")) {
+      int restored = graphSnapshot.restore((InMemoryMemoizingEvaluator) memoizingEvaluator);
+      logger.atInfo().log("Restored %d nodes from %s", restored, graphSnapshot.getPath());
+    } catch (IOException e) {
+      // A partially read snapshot leaves a consistent graph, so there is nothing to undo.
+      logger.atWarning().withCause(e).log(
+          "Failed to restore graph snapshot from %s", graphSnapshot.getPath());
+    }
+    // The diffs only validate the file system states under the current package roots. If the
+    // snapshot was saved with other roots, handle it like a change of the package locator.
+    ImmutableSet<Root> pkgRoots = ImmutableSet.copyOf(packageLocator.getPathEntries());
+    if (memoizingEvaluator.getValues().keySet().stream()
+        .anyMatch(
+            key ->
+                isFileSystemStateKey(key)
+                    && !pkgRoots.contains(((RootedPath) key.argument()).getRoot()))) {
+      invalidate(SkyFunctionName.functionIsIn(PACKAGE_LOCATOR_DEPENDENT_VALUES));
+    }
+  }
+
   @Override
   public void clearAnalysisCacheImpl(
       Collection<ConfiguredTarget> topLevelTargets, ImmutableSet<AspectKey> topLevelAspects) {
@@ -768,6 +868,9 @@ public final class SequencedSkyframeExecutor extends SkyframeExecutor {
         new FilesystemValueChecker(
             Preconditions.checkNotNull(tsgm.get()), lastExecutionTimeRange, fsvcThreads);
     BatchStat batchStatter = outputService == null ? null : outputService.getBatchStatter();
+    if (batchStatter == null) {
+      batchStatter = localBatchStatter;
+    }
     recordingDiffer.invalidate(
         fsvc.getDirtyActionValues(
             memoizingEvaluator.getValues(),
@@ -778,6 +881,9 @@ public final class SequencedSkyframeExecutor extends SkyframeExecutor {
     outputDirtyFiles += fsvc.getNumberOfModifiedOutputFiles();
     modifiedFilesDuringPreviousBuild += fsvc.getNumberOfModifiedOutputFilesDuringPreviousBuild();
     logger.atInfo().log("Found %d modified files from last build", modifiedFiles);
+    if (batchStatter == localBatchStatter && batchStatter != null) {
+      logger.atInfo().log("Checked output files with %s", batchStatter);
+    }
     long stopTime = System.nanoTime();
     Profiler.instance()
         .logSimpleTask(startTime, stopTime, ProfilerTask.INFO, "detectModifiedOutputFiles");
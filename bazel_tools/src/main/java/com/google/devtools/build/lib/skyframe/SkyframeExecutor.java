@@ -178,6 +178,7 @@ import com.google.devtools.build.lib.util.DetailedExitCode;
 import com.google.devtools.build.lib.util.ResourceUsage;
 import com.google.devtools.build.lib.util.TestType;
 import com.google.devtools.build.lib.util.io.TimestampGranularityMonitor;
+import com.google.devtools.build.lib.vfs.BatchStat;
 import com.google.devtools.build.lib.vfs.Dirent;
 import com.google.devtools.build.lib.vfs.FileSystem;
 import com.google.devtools.build.lib.vfs.ModifiedFileSet;
@@ -267,6 +268,9 @@ public abstract class SkyframeExecutor implements WalkableGraphFactory, Configur
   private final FilesMetricConsumer topLevelArtifactsMetric = new FilesMetricConsumer();
 
   @Nullable protected OutputService outputService;
+  // Used to check output files if the output service, if any, has no batch statter, and source
+  // files under package roots without diff information.
+  @Nullable protected BatchStat localBatchStatter;
 
   // TODO(bazel-team): Figure out how to handle value builders that block internally. Blocking
   // operations may need to be handled in another (bigger?) thread pool. Also, we should detect
@@ -733,6 +737,15 @@ public abstract class SkyframeExecutor implements WalkableGraphFactory, Configur
     this.outputService = outputService;
   }
 
+  /**
+   * Sets the {@link BatchStat} used to check the output files of the previous build for changes
+   * when the output service doesn't provide one, and the source files under package roots that
+   * have no diff information. Null to stat the files one by one.
+   */
+  public void setLocalBatchStatter(@Nullable BatchStat localBatchStatter) {
+    this.localBatchStatter = localBatchStatter;
+  }
+
   /** Inform this SkyframeExecutor that a new command is starting. */
   public void noteCommandStart() {}
 
@@ -959,6 +972,19 @@ public abstract class SkyframeExecutor implements WalkableGraphFactory, Configur
     return true;
   }
 
+  /**
+   * Sets the snapshot that an empty graph is restored from on the next {@link #sync}, and that
+   * {@link #saveGraphSnapshot} writes to. Null disables snapshots.
+   */
+  public void setGraphSnapshot(@Nullable SkyframeGraphSnapshot graphSnapshot) {
+    // Snapshots are not supported by default.
+  }
+
+  /** Saves the graph to the snapshot set by {@link #setGraphSnapshot}, if any. */
+  public void saveGraphSnapshot() {
+    // Snapshots are not supported by default.
+  }
+
   /**
    * Whether this executor may reuse analysis phase nodes for the purpose of improving incremental
    * performance.
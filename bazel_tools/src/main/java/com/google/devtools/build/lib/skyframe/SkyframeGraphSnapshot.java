@@ -0,0 +1,147 @@
+// Copyright 2026 The Bazel Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.google.devtools.build.lib.skyframe;
+
+import com.google.common.collect.ImmutableClassToInstanceMap;
+import com.google.common.flogger.GoogleLogger;
+import com.google.devtools.build.lib.packages.RuleClassProvider;
+import com.google.devtools.build.lib.skyframe.serialization.AutoRegistry;
+import com.google.devtools.build.lib.skyframe.serialization.ObjectCodecs;
+import com.google.devtools.build.lib.skyframe.serialization.SerializationException;
+import com.google.devtools.build.lib.vfs.Path;
+import com.google.devtools.build.lib.vfs.Root;
+import com.google.devtools.build.lib.vfs.Root.RootCodecDependencies;
+import com.google.devtools.build.skyframe.InMemoryGraphSnapshot;
+import com.google.devtools.build.skyframe.InMemoryMemoizingEvaluator;
+import com.google.devtools.build.skyframe.SkyKey;
+import com.google.protobuf.ByteString;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.function.Predicate;
+import javax.annotation.Nullable;
+
+/**
+ * A file holding a snapshot of the Skyframe graph, written when the server shuts down so that the
+ * next server can start from the graph of the previous one instead of from an empty graph.
+ *
+ * <p>Keys and values are serialized with the codecs of {@link AutoRegistry}. Nodes whose key or
+ * value has no codec, or whose codec needs a dependency that is not available here, are left out
+ * of the snapshot together with all the nodes that depend on them. That includes packages: their
+ * codec needs a {@link com.google.devtools.build.lib.packages.PackageCodecDependencies}, and this
+ * tree has no package serializer to provide one with.
+ *
+ * <p>The snapshot is deleted once it was restored, so that a server that fails before it writes
+ * the next one is followed by a server that starts from an empty graph.
+ */
+public final class SkyframeGraphSnapshot {
+  private static final GoogleLogger logger = GoogleLogger.forEnclosingClass();
+
+  private final Path path;
+  private final String fingerprint;
+  private final ObjectCodecs codecs;
+
+  private final InMemoryGraphSnapshot.Serializer serializer =
+      new InMemoryGraphSnapshot.Serializer() {
+        @Nullable
+        @Override
+        public byte[] serialize(Object keyOrValue) {
+          try {
+            return codecs.serializeMemoized(keyOrValue).toByteArray();
+          } catch (SerializationException | RuntimeException e) {
+            // Some codecs fail with unchecked exceptions, for instance when one of their
+            // dependencies was not provided. Either way the node is just left out.
+            logger.atFine().withCause(e).log("Cannot serialize %s", keyOrValue);
+            return null;
+          }
+        }
+
+        @Override
+        public Object deserialize(byte[] bytes) throws IOException {
+          try {
+            return codecs.deserializeMemoized(ByteString.copyFrom(bytes));
+          } catch (SerializationException e) {
+            throw new IOException(e);
+          }
+        }
+      };
+
+  private SkyframeGraphSnapshot(Path path, String fingerprint, ObjectCodecs codecs) {
+    this.path = path;
+    this.fingerprint = fingerprint;
+    this.codecs = codecs;
+  }
+
+  /**
+   * Creates a snapshot stored at {@code path}. Snapshots written with a different {@code
+   * fingerprint}, which should identify the Blaze binary, are ignored.
+   */
+  public static SkyframeGraphSnapshot create(
+      Path path,
+      String fingerprint,
+      RuleClassProvider ruleClassProvider,
+      @Nullable Path workspace) {
+    RootCodecDependencies rootCodecDependencies =
+        workspace == null
+            ? new RootCodecDependencies()
+            : new RootCodecDependencies(Root.fromPath(workspace));
+    return new SkyframeGraphSnapshot(
+        path,
+        fingerprint,
+        new ObjectCodecs(
+            AutoRegistry.get(),
+            ImmutableClassToInstanceMap.builder()
+                .put(RuleClassProvider.class, ruleClassProvider)
+                .put(RootCodecDependencies.class, rootCodecDependencies)
+                .build()));
+  }
+
+  public Path getPath() {
+    return path;
+  }
+
+  /**
+   * Replaces the snapshot with the nodes of {@code evaluator} accepted by {@code filter}. The file
+   * is written under a temporary name first, so that an interrupted write leaves the previous
+   * snapshot, if any, in place.
+   *
+   * @return the number of nodes written
+   */
+  int save(InMemoryMemoizingEvaluator evaluator, Predicate<SkyKey> filter) throws IOException {
+    path.getParentDirectory().createDirectoryAndParents();
+    Path tmpPath = path.getParentDirectory().getChild(path.getBaseName() + ".tmp");
+    int written;
+    try (OutputStream out = tmpPath.getOutputStream()) {
+      written = evaluator.writeSnapshot(filter, serializer, fingerprint, out);
+    }
+    tmpPath.renameTo(path);
+    return written;
+  }
+
+  /**
+   * Restores the snapshot into {@code evaluator}, whose graph must be empty, and deletes it.
+   *
+   * @return the number of nodes restored, which is zero if there is no snapshot
+   */
+  int restore(InMemoryMemoizingEvaluator evaluator) throws IOException {
+    if (!path.exists()) {
+      return 0;
+    }
+    try (InputStream in = path.getInputStream()) {
+      return evaluator.restoreSnapshot(serializer, fingerprint, in);
+    } finally {
+      path.delete();
+    }
+  }
+}
@@ -294,6 +294,23 @@ public final class NativePosixFiles {
   private static native Dirents readdir(String path, char typeCode)
       throws IOException;
 
+  /**
+   * Stats the entries {@code names} of the directory {@code dir} through a single descriptor of the
+   * directory, using fstatat(2). Unlike separate calls to {@link #errnoStat}, this resolves the
+   * path of the directory once rather than once per entry.
+   *
+   * @param dir the directory containing the entries.
+   * @param names the names of the entries; must not contain separators.
+   * @param followSymlinks whether to stat the targets of symlinks rather than the symlinks.
+   * @param listFirst whether to read the directory with readdir(3) first, and report the names it
+   *   does not contain as missing without a stat call. Pays off when most of the entries of the
+   *   directory are stat'ed, or many of the names are expected to be missing.
+   * @return the status of each entry, in the order of {@code names}. If the directory cannot be
+   *   opened, all of them carry the error of open(2).
+   */
+  public static native ErrnoFileStatus[] statAll(
+      String dir, String[] names, boolean followSymlinks, boolean listFirst);
+
   /**
    * Native wrapper around POSIX rename(2) syscall.
    *
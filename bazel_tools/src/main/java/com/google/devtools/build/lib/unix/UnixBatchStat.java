@@ -0,0 +1,226 @@
+// Copyright 2026 The Bazel Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.google.devtools.build.lib.unix;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.MoreObjects;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.devtools.build.lib.concurrent.ThreadSafety.ThreadSafe;
+import com.google.devtools.build.lib.unix.UnixFileSystem.UnixFileStatus;
+import com.google.devtools.build.lib.vfs.BatchStat;
+import com.google.devtools.build.lib.vfs.FileStatusWithDigest;
+import com.google.devtools.build.lib.vfs.FileStatusWithDigestAdapter;
+import com.google.devtools.build.lib.vfs.Path;
+import com.google.devtools.build.lib.vfs.PathFragment;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link BatchStat} for {@link UnixFileSystem} that groups the paths by directory and stats the
+ * entries of each directory through a single descriptor of the directory with {@link
+ * NativePosixFiles#statAll}. This resolves each directory once instead of once per file, which
+ * dominates the cost of checking many files on network file systems. Directories with many
+ * requested entries are listed first, so that the missing ones cost no stat call.
+ *
+ * <p>Large batches are split across a bounded pool of threads shared by all instances. Digests are
+ * never included: callers compute them from the file when they need them.
+ */
+@ThreadSafe
+public final class UnixBatchStat implements BatchStat {
+  /** Directories with at least this many requested entries are listed before being stat'ed. */
+  @VisibleForTesting static final int LIST_FIRST_THRESHOLD = 16;
+
+  /** Batches with fewer paths are stat'ed on the calling thread. */
+  private static final int MIN_PATHS_PER_SHARD = 256;
+
+  private static final int POOL_SIZE = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+
+  private static final ExecutorService pool =
+      Executors.newFixedThreadPool(
+          POOL_SIZE,
+          new ThreadFactoryBuilder().setNameFormat("unix-batch-stat-%d").setDaemon(true).build());
+
+  private final Path execRoot;
+
+  private final AtomicLong pathCount = new AtomicLong();
+  private final AtomicLong directoryCount = new AtomicLong();
+  private final AtomicLong statCallsSaved = new AtomicLong();
+
+  /** Creates a batch statter for paths relative to {@code execRoot}. */
+  public UnixBatchStat(Path execRoot) {
+    this.execRoot = execRoot;
+  }
+
+  @Override
+  public List<FileStatusWithDigest> batchStat(
+      boolean includeDigest, boolean includeLinks, Iterable<PathFragment> paths)
+      throws IOException, InterruptedException {
+    Map<PathFragment, Directory> directoriesByPath = new LinkedHashMap<>();
+    int size = 0;
+    for (PathFragment path : paths) {
+      PathFragment absolute = execRoot.asFragment().getRelative(path);
+      PathFragment parent = absolute.getParentDirectory();
+      if (parent == null) {
+        throw new IOException("Cannot batch stat the root directory");
+      }
+      directoriesByPath
+          .computeIfAbsent(parent, Directory::new)
+          .add(size++, absolute.getBaseName());
+    }
+    List<Directory> directories = new ArrayList<>(directoriesByPath.values());
+
+    FileStatusWithDigest[] result = new FileStatusWithDigest[size];
+    boolean followSymlinks = !includeLinks;
+    int shardCount = Math.min(POOL_SIZE, size / MIN_PATHS_PER_SHARD);
+    if (shardCount <= 1 || directories.size() == 1) {
+      statDirectories(directories, followSymlinks, result);
+    } else {
+      statInShards(directories, shardCount, followSymlinks, result);
+    }
+
+    pathCount.addAndGet(size);
+    directoryCount.addAndGet(directories.size());
+    return Arrays.asList(result);
+  }
+
+  private void statInShards(
+      List<Directory> directories,
+      int shardCount,
+      boolean followSymlinks,
+      FileStatusWithDigest[] result)
+      throws IOException, InterruptedException {
+    List<List<Directory>> shards = new ArrayList<>(shardCount);
+    for (int i = 0; i < shardCount; i++) {
+      shards.add(new ArrayList<>());
+    }
+    // Deal the directories in order, which keeps each shard's share of paths roughly even.
+    for (int i = 0; i < directories.size(); i++) {
+      shards.get(i % shardCount).add(directories.get(i));
+    }
+    List<Future<?>> futures = new ArrayList<>(shardCount);
+    try {
+      for (List<Directory> shard : shards) {
+        futures.add(
+            pool.submit(
+                () -> {
+                  statDirectories(shard, followSymlinks, result);
+                  return null;
+                }));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof IOException) {
+        throw (IOException) e.getCause();
+      }
+      throw new IllegalStateException(e.getCause());
+    } finally {
+      for (Future<?> future : futures) {
+        future.cancel(/*mayInterruptIfRunning=*/ true);
+      }
+    }
+  }
+
+  /**
+   * Stats the requested entries of {@code directories} into their slots of {@code result}, which no
+   * other shard writes to.
+   */
+  private void statDirectories(
+      List<Directory> directories, boolean followSymlinks, FileStatusWithDigest[] result)
+      throws IOException {
+    for (Directory directory : directories) {
+      boolean listFirst = directory.names.size() >= LIST_FIRST_THRESHOLD;
+      ErrnoFileStatus[] statuses =
+          NativePosixFiles.statAll(
+              directory.path.getPathString(),
+              directory.names.toArray(new String[0]),
+              followSymlinks,
+              listFirst);
+      for (int i = 0; i < statuses.length; i++) {
+        result[directory.indices.get(i)] = toFileStatus(directory, i, statuses[i], listFirst);
+      }
+    }
+  }
+
+  private FileStatusWithDigest toFileStatus(
+      Directory directory, int i, ErrnoFileStatus status, boolean listFirst) throws IOException {
+    if (!status.hasError()) {
+      return FileStatusWithDigestAdapter.adapt(new UnixFileStatus(status));
+    }
+    int errno = status.getErrno();
+    if (errno == ErrnoFileStatus.ENOENT || errno == ErrnoFileStatus.ENOTDIR) {
+      if (listFirst) {
+        statCallsSaved.incrementAndGet();
+      }
+      return null;
+    }
+    throw new IOException(
+        String.format(
+            "Cannot stat %s: errno %d", directory.path.getRelative(directory.names.get(i)), errno));
+  }
+
+  /** Returns the number of paths stat'ed by this instance. */
+  public long getPathCount() {
+    return pathCount.get();
+  }
+
+  /**
+   * Returns the number of directories this instance opened to stat its paths. Stat'ing the paths
+   * individually would have resolved {@link #getPathCount} directories instead.
+   */
+  public long getDirectoryCount() {
+    return directoryCount.get();
+  }
+
+  /** Returns the number of missing paths that were found in directory listings without a stat. */
+  public long getStatCallsSaved() {
+    return statCallsSaved.get();
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this)
+        .add("paths", getPathCount())
+        .add("directories", getDirectoryCount())
+        .add("directoryLookupsSaved", getPathCount() - getDirectoryCount())
+        .add("statCallsSaved", getStatCallsSaved())
+        .toString();
+  }
+
+  /** The requested entries of one directory, and their positions in the batch. */
+  private static final class Directory {
+    private final PathFragment path;
+    private final List<String> names = new ArrayList<>();
+    private final List<Integer> indices = new ArrayList<>();
+
+    Directory(PathFragment path) {
+      this.path = path;
+    }
+
+    void add(int index, String name) {
+      indices.add(index);
+      names.add(name);
+    }
+  }
+}
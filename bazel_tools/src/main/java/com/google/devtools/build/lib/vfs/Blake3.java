@@ -0,0 +1,400 @@
+// Copyright 2026 The Bazel Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.google.devtools.build.lib.vfs;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * The BLAKE3 hash function with its default 32-byte output, in plain Java.
+ *
+ * <p>BLAKE3 splits its input into 1 KiB chunks, hashes every chunk independently and combines the
+ * chaining values of the chunks in a binary tree whose left subtrees are always complete. Unlike
+ * SHA-256, a large input can therefore be hashed by several threads at once: {@link #hashParallel}
+ * hashes the subtrees of a (typically memory-mapped) input as fork-join tasks. {@link Hasher}
+ * hashes a stream of bytes incrementally and produces the same digests.
+ */
+final class Blake3 {
+  static final int OUT_LEN = 32;
+
+  private static final int BLOCK_LEN = 64;
+  private static final int CHUNK_LEN = 1024;
+
+  private static final int CHUNK_START = 1;
+  private static final int CHUNK_END = 2;
+  private static final int PARENT = 4;
+  private static final int ROOT = 8;
+
+  private static final int[] IV = {
+    0x6A09E667, 0xBB67AE85, 0x3C6EF372, 0xA54FF53A, 0x510E527F, 0x9B05688C, 0x1F83D9AB, 0x5BE0CD19
+  };
+
+  /** The message word order of each of the 7 rounds, derived from the BLAKE3 permutation. */
+  private static final int[][] SCHEDULE = messageSchedule();
+
+  /**
+   * The size of the windows that {@link #hashParallel} expects its input in: the largest power of two
+   * that a single {@link java.nio.MappedByteBuffer} can hold. It is a multiple of the chunk size,
+   * so no chunk straddles two windows.
+   */
+  static final int WINDOW_SIZE = 1 << 30;
+
+  /** Subtrees larger than this are split into parallel tasks. */
+  private static final int MIN_PARALLEL_SUBTREE = 1 << 20;
+
+  private Blake3() {}
+
+  /** Hashes the remaining bytes of {@code input} on the calling thread. */
+  static byte[] hash(ByteBuffer input) {
+    return hashParallel(windows(input), /*pool=*/ null);
+  }
+
+  /**
+   * Hashes the concatenation of {@code windows}, all but the last of which must hold exactly
+   * {@link #WINDOW_SIZE} bytes, splitting large subtrees into tasks of {@code pool}. Hashes on the
+   * calling thread if {@code pool} is null.
+   */
+  static byte[] hashParallel(List<ByteBuffer> windows, ForkJoinPool pool) {
+    Input input = new Input(windows);
+    if (input.length <= CHUNK_LEN) {
+      return chunkOutput(input.window(0), 0, (int) input.length, 0).rootBytes();
+    }
+    long leftLength = leftLength(input.length);
+    long rightLength = input.length - leftLength;
+    if (pool == null || input.length <= MIN_PARALLEL_SUBTREE) {
+      int[] leftCv = subtreeCv(input, 0, leftLength);
+      return parentOutput(leftCv, subtreeCv(input, leftLength, rightLength)).rootBytes();
+    }
+    SubtreeTask left = new SubtreeTask(input, 0, leftLength);
+    SubtreeTask right = new SubtreeTask(input, leftLength, rightLength);
+    pool.invoke(
+        new RecursiveAction() {
+          @Override
+          protected void compute() {
+            invokeAll(left, right);
+          }
+        });
+    return parentOutput(left.join(), right.join()).rootBytes();
+  }
+
+  /** Splits {@code input} into the windows that {@link #hashParallel} expects. */
+  static List<ByteBuffer> windows(ByteBuffer input) {
+    List<ByteBuffer> windows = new ArrayList<>();
+    int position = input.position();
+    do {
+      int size = Math.min(WINDOW_SIZE, input.limit() - position);
+      ByteBuffer window = input.duplicate();
+      window.position(position).limit(position + size);
+      windows.add(window.slice());
+      position += size;
+    } while (position < input.limit());
+    return windows;
+  }
+
+  /** Random access to the concatenation of the windows, as little-endian words. */
+  private static final class Input {
+    private final ByteBuffer[] windows;
+    private final long length;
+
+    Input(List<ByteBuffer> windows) {
+      this.windows = new ByteBuffer[windows.size()];
+      long length = 0;
+      for (int i = 0; i < windows.size(); i++) {
+        ByteBuffer window = windows.get(i);
+        checkArgument(
+            i == windows.size() - 1 || window.remaining() == WINDOW_SIZE,
+            "Window %s of %s holds %s bytes",
+            i,
+            windows.size(),
+            window.remaining());
+        this.windows[i] = window.slice().order(ByteOrder.LITTLE_ENDIAN);
+        length += window.remaining();
+      }
+      this.length = length;
+    }
+
+    ByteBuffer window(long offset) {
+      return windows[(int) (offset / WINDOW_SIZE)];
+    }
+  }
+
+  /** Computes the chaining value of a subtree that is not the root, forking if it is large. */
+  private static final class SubtreeTask extends RecursiveTask<int[]> {
+    private final Input input;
+    private final long offset;
+    private final long length;
+
+    SubtreeTask(Input input, long offset, long length) {
+      this.input = input;
+      this.offset = offset;
+      this.length = length;
+    }
+
+    @Override
+    protected int[] compute() {
+      if (length <= MIN_PARALLEL_SUBTREE) {
+        return subtreeCv(input, offset, length);
+      }
+      long leftLength = leftLength(length);
+      SubtreeTask right = new SubtreeTask(input, offset + leftLength, length - leftLength);
+      right.fork();
+      int[] leftCv = new SubtreeTask(input, offset, leftLength).compute();
+      return parentOutput(leftCv, right.join()).chainingValue();
+    }
+  }
+
+  private static int[] subtreeCv(Input input, long offset, long length) {
+    if (length <= CHUNK_LEN) {
+      ByteBuffer window = input.window(offset);
+      return chunkOutput(window, (int) (offset % WINDOW_SIZE), (int) length, offset / CHUNK_LEN)
+          .chainingValue();
+    }
+    long leftLength = leftLength(length);
+    int[] leftCv = subtreeCv(input, offset, leftLength);
+    int[] rightCv = subtreeCv(input, offset + leftLength, length - leftLength);
+    return parentOutput(leftCv, rightCv).chainingValue();
+  }
+
+  /**
+   * Returns the length of the left subtree of a tree over {@code length > CHUNK_LEN} bytes: the
+   * largest power of two number of chunks that leaves at least one byte to the right subtree.
+   */
+  private static long leftLength(long length) {
+    long fullChunks = (length - 1) / CHUNK_LEN;
+    return Long.highestOneBit(fullChunks) * CHUNK_LEN;
+  }
+
+  /** Compresses all but the last block of a chunk and returns the output of the last block. */
+  private static Output chunkOutput(ByteBuffer window, int offset, int length, long counter) {
+    int[] cv = IV.clone();
+    int[] words = new int[16];
+    int flags = CHUNK_START;
+    while (length > BLOCK_LEN) {
+      for (int i = 0; i < 16; i++) {
+        words[i] = window.getInt(offset + 4 * i);
+      }
+      compress(cv, words, counter, BLOCK_LEN, flags, cv);
+      flags = 0;
+      offset += BLOCK_LEN;
+      length -= BLOCK_LEN;
+    }
+    byte[] block = new byte[BLOCK_LEN];
+    for (int i = 0; i < length; i++) {
+      block[i] = window.get(offset + i);
+    }
+    return new Output(cv, wordsOf(block, 0), counter, length, flags | CHUNK_END);
+  }
+
+  private static Output parentOutput(int[] leftCv, int[] rightCv) {
+    int[] words = Arrays.copyOf(leftCv, 16);
+    System.arraycopy(rightCv, 0, words, 8, 8);
+    return new Output(IV, words, 0, BLOCK_LEN, PARENT);
+  }
+
+  /** The last compression of a node, which depends on whether the node is the root. */
+  private static final class Output {
+    private final int[] inputCv;
+    private final int[] blockWords;
+    private final long counter;
+    private final int blockLength;
+    private final int flags;
+
+    Output(int[] inputCv, int[] blockWords, long counter, int blockLength, int flags) {
+      this.inputCv = inputCv;
+      this.blockWords = blockWords;
+      this.counter = counter;
+      this.blockLength = blockLength;
+      this.flags = flags;
+    }
+
+    int[] chainingValue() {
+      int[] cv = new int[8];
+      compress(inputCv, blockWords, counter, blockLength, flags, cv);
+      return cv;
+    }
+
+    byte[] rootBytes() {
+      int[] words = new int[8];
+      compress(inputCv, blockWords, 0, blockLength, flags | ROOT, words);
+      byte[] bytes = new byte[OUT_LEN];
+      ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).asIntBuffer().put(words);
+      return bytes;
+    }
+  }
+
+  /**
+   * Hashes a stream of bytes. It keeps the current chunk and the chaining values of the complete
+   * subtrees to its left, which are merged as soon as their right sibling is complete.
+   */
+  static final class Hasher implements Cloneable {
+    private int[] chunkCv = IV.clone();
+    private long chunkCounter;
+    private byte[] block = new byte[BLOCK_LEN];
+    private int blockLength;
+    private int blocksCompressed;
+    private int[][] cvStack = new int[54][];
+    private int cvStackLength;
+
+    void update(byte b) {
+      if (chunkLength() == CHUNK_LEN) {
+        finishChunk();
+      }
+      if (blockLength == BLOCK_LEN) {
+        compressBlock();
+      }
+      block[blockLength++] = b;
+    }
+
+    void update(byte[] input, int offset, int length) {
+      while (length > 0) {
+        if (chunkLength() == CHUNK_LEN) {
+          finishChunk();
+        }
+        if (blockLength == BLOCK_LEN) {
+          compressBlock();
+        }
+        int take = Math.min(BLOCK_LEN - blockLength, length);
+        System.arraycopy(input, offset, block, blockLength, take);
+        blockLength += take;
+        offset += take;
+        length -= take;
+      }
+    }
+
+    /** Returns the digest of the bytes so far, without resetting the hasher. */
+    byte[] digest() {
+      byte[] padded = Arrays.copyOf(block, BLOCK_LEN);
+      Arrays.fill(padded, blockLength, BLOCK_LEN, (byte) 0);
+      int flags = (blocksCompressed == 0 ? CHUNK_START : 0) | CHUNK_END;
+      Output output = new Output(chunkCv, wordsOf(padded, 0), chunkCounter, blockLength, flags);
+      for (int i = cvStackLength - 1; i >= 0; i--) {
+        output = parentOutput(cvStack[i], output.chainingValue());
+      }
+      return output.rootBytes();
+    }
+
+    void reset() {
+      chunkCv = IV.clone();
+      chunkCounter = 0;
+      blockLength = 0;
+      blocksCompressed = 0;
+      cvStackLength = 0;
+    }
+
+    @Override
+    public Hasher clone() {
+      try {
+        Hasher clone = (Hasher) super.clone();
+        clone.chunkCv = chunkCv.clone();
+        clone.block = block.clone();
+        clone.cvStack = cvStack.clone();
+        return clone;
+      } catch (CloneNotSupportedException e) {
+        throw new IllegalStateException(e);
+      }
+    }
+
+    private int chunkLength() {
+      return blocksCompressed * BLOCK_LEN + blockLength;
+    }
+
+    private void compressBlock() {
+      int flags = blocksCompressed == 0 ? CHUNK_START : 0;
+      compress(chunkCv, wordsOf(block, 0), chunkCounter, BLOCK_LEN, flags, chunkCv);
+      blocksCompressed++;
+      blockLength = 0;
+    }
+
+    private void finishChunk() {
+      int flags = (blocksCompressed == 0 ? CHUNK_START : 0) | CHUNK_END;
+      int[] cv = new int[8];
+      compress(chunkCv, wordsOf(block, 0), chunkCounter, blockLength, flags, cv);
+      // A chunk completes as many subtrees as there are trailing zeros in the number of chunks.
+      long totalChunks = chunkCounter + 1;
+      while ((totalChunks & 1) == 0) {
+        cv = parentOutput(cvStack[--cvStackLength], cv).chainingValue();
+        totalChunks >>= 1;
+      }
+      cvStack[cvStackLength++] = cv;
+      chunkCv = IV.clone();
+      chunkCounter++;
+      blockLength = 0;
+      blocksCompressed = 0;
+    }
+  }
+
+  private static int[] wordsOf(byte[] block, int offset) {
+    int[] words = new int[16];
+    ByteBuffer.wrap(block, offset, BLOCK_LEN)
+        .order(ByteOrder.LITTLE_ENDIAN)
+        .asIntBuffer()
+        .get(words);
+    return words;
+  }
+
+  /** Compresses one block into the chaining value {@code out}, which may be {@code cv}. */
+  private static void compress(
+      int[] cv, int[] m, long counter, int blockLength, int flags, int[] out) {
+    int[] v = {
+      cv[0], cv[1], cv[2], cv[3], cv[4], cv[5], cv[6], cv[7],
+      IV[0], IV[1], IV[2], IV[3], (int) counter, (int) (counter >>> 32), blockLength, flags
+    };
+    for (int[] s : SCHEDULE) {
+      g(v, 0, 4, 8, 12, m[s[0]], m[s[1]]);
+      g(v, 1, 5, 9, 13, m[s[2]], m[s[3]]);
+      g(v, 2, 6, 10, 14, m[s[4]], m[s[5]]);
+      g(v, 3, 7, 11, 15, m[s[6]], m[s[7]]);
+      g(v, 0, 5, 10, 15, m[s[8]], m[s[9]]);
+      g(v, 1, 6, 11, 12, m[s[10]], m[s[11]]);
+      g(v, 2, 7, 8, 13, m[s[12]], m[s[13]]);
+      g(v, 3, 4, 9, 14, m[s[14]], m[s[15]]);
+    }
+    for (int i = 0; i < 8; i++) {
+      out[i] = v[i] ^ v[i + 8];
+    }
+  }
+
+  private static void g(int[] v, int a, int b, int c, int d, int x, int y) {
+    v[a] += v[b] + x;
+    v[d] = Integer.rotateRight(v[d] ^ v[a], 16);
+    v[c] += v[d];
+    v[b] = Integer.rotateRight(v[b] ^ v[c], 12);
+    v[a] += v[b] + y;
+    v[d] = Integer.rotateRight(v[d] ^ v[a], 8);
+    v[c] += v[d];
+    v[b] = Integer.rotateRight(v[b] ^ v[c], 7);
+  }
+
+  private static int[][] messageSchedule() {
+    int[] permutation = {2, 6, 3, 10, 7, 0, 4, 13, 1, 11, 12, 5, 9, 14, 15, 8};
+    int[][] schedule = new int[7][16];
+    for (int i = 0; i < 16; i++) {
+      schedule[0][i] = i;
+    }
+    for (int round = 1; round < 7; round++) {
+      for (int i = 0; i < 16; i++) {
+        schedule[round][i] = schedule[round - 1][permutation[i]];
+      }
+    }
+    return schedule;
+  }
+}
@@ -0,0 +1,272 @@
+// Copyright 2026 The Bazel Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.google.devtools.build.lib.vfs;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkPositionIndexes;
+import static com.google.common.base.Preconditions.checkState;
+
+import com.google.common.hash.Funnel;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hasher;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.Provider;
+
+/**
+ * A {@link HashFunction} computing {@link Blake3} digests, for {@link DigestHashFunction#BLAKE3}.
+ */
+final class Blake3HashFunction implements HashFunction {
+
+  @Override
+  public Hasher newHasher() {
+    return new Blake3Hasher();
+  }
+
+  @Override
+  public Hasher newHasher(int expectedInputSize) {
+    checkArgument(expectedInputSize >= 0, "expectedInputSize must be >= 0");
+    return newHasher();
+  }
+
+  @Override
+  public HashCode hashInt(int input) {
+    return newHasher().putInt(input).hash();
+  }
+
+  @Override
+  public HashCode hashLong(long input) {
+    return newHasher().putLong(input).hash();
+  }
+
+  @Override
+  public HashCode hashBytes(byte[] input) {
+    return hashBytes(input, 0, input.length);
+  }
+
+  @Override
+  public HashCode hashBytes(byte[] input, int off, int len) {
+    checkPositionIndexes(off, off + len, input.length);
+    return HashCode.fromBytes(Blake3.hash(ByteBuffer.wrap(input, off, len)));
+  }
+
+  @Override
+  public HashCode hashBytes(ByteBuffer input) {
+    return HashCode.fromBytes(Blake3.hash(input));
+  }
+
+  @Override
+  public HashCode hashUnencodedChars(CharSequence input) {
+    return newHasher().putUnencodedChars(input).hash();
+  }
+
+  @Override
+  public HashCode hashString(CharSequence input, Charset charset) {
+    return hashBytes(input.toString().getBytes(charset));
+  }
+
+  @Override
+  public <T> HashCode hashObject(T instance, Funnel<? super T> funnel) {
+    return newHasher().putObject(instance, funnel).hash();
+  }
+
+  @Override
+  public int bits() {
+    return Blake3.OUT_LEN * 8;
+  }
+
+  @Override
+  public String toString() {
+    return "Hashing.blake3()";
+  }
+
+  /** Feeds a {@link Blake3.Hasher}, encoding primitives in little-endian order like Guava. */
+  private static final class Blake3Hasher implements Hasher {
+    private final Blake3.Hasher hasher = new Blake3.Hasher();
+    private final ByteBuffer scratch = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+    private boolean done;
+
+    @Override
+    public Hasher putByte(byte b) {
+      checkNotDone();
+      hasher.update(b);
+      return this;
+    }
+
+    @Override
+    public Hasher putBytes(byte[] bytes) {
+      return putBytes(bytes, 0, bytes.length);
+    }
+
+    @Override
+    public Hasher putBytes(byte[] bytes, int off, int len) {
+      checkPositionIndexes(off, off + len, bytes.length);
+      checkNotDone();
+      hasher.update(bytes, off, len);
+      return this;
+    }
+
+    @Override
+    public Hasher putBytes(ByteBuffer bytes) {
+      checkNotDone();
+      if (bytes.hasArray()) {
+        hasher.update(bytes.array(), bytes.arrayOffset() + bytes.position(), bytes.remaining());
+        bytes.position(bytes.limit());
+      } else {
+        while (bytes.hasRemaining()) {
+          hasher.update(bytes.get());
+        }
+      }
+      return this;
+    }
+
+    @Override
+    public Hasher putShort(short s) {
+      scratch.putShort(s);
+      return flushScratch();
+    }
+
+    @Override
+    public Hasher putInt(int i) {
+      scratch.putInt(i);
+      return flushScratch();
+    }
+
+    @Override
+    public Hasher putLong(long l) {
+      scratch.putLong(l);
+      return flushScratch();
+    }
+
+    @Override
+    public Hasher putFloat(float f) {
+      return putInt(Float.floatToRawIntBits(f));
+    }
+
+    @Override
+    public Hasher putDouble(double d) {
+      return putLong(Double.doubleToRawLongBits(d));
+    }
+
+    @Override
+    public Hasher putBoolean(boolean b) {
+      return putByte(b ? (byte) 1 : (byte) 0);
+    }
+
+    @Override
+    public Hasher putChar(char c) {
+      scratch.putChar(c);
+      return flushScratch();
+    }
+
+    @Override
+    public Hasher putUnencodedChars(CharSequence charSequence) {
+      for (int i = 0; i < charSequence.length(); i++) {
+        putChar(charSequence.charAt(i));
+      }
+      return this;
+    }
+
+    @Override
+    public Hasher putString(CharSequence charSequence, Charset charset) {
+      return putBytes(charSequence.toString().getBytes(charset));
+    }
+
+    @Override
+    public <T> Hasher putObject(T instance, Funnel<? super T> funnel) {
+      funnel.funnel(instance, this);
+      return this;
+    }
+
+    @Override
+    public HashCode hash() {
+      checkNotDone();
+      done = true;
+      return HashCode.fromBytes(hasher.digest());
+    }
+
+    @Override
+    @Deprecated
+    public int hashCode() {
+      return super.hashCode();
+    }
+
+    private Hasher flushScratch() {
+      putBytes(scratch.array(), 0, scratch.position());
+      scratch.clear();
+      return this;
+    }
+
+    private void checkNotDone() {
+      checkState(!done, "Cannot re-use a Hasher after calling hash() on it");
+    }
+  }
+
+  /** A {@link MessageDigest} computing {@link Blake3} digests. */
+  public static final class Blake3MessageDigest extends MessageDigest implements Cloneable {
+    private Blake3.Hasher hasher = new Blake3.Hasher();
+
+    public Blake3MessageDigest() {
+      super("BLAKE3");
+    }
+
+    @Override
+    protected void engineUpdate(byte input) {
+      hasher.update(input);
+    }
+
+    @Override
+    protected void engineUpdate(byte[] input, int offset, int len) {
+      hasher.update(input, offset, len);
+    }
+
+    @Override
+    protected int engineGetDigestLength() {
+      return Blake3.OUT_LEN;
+    }
+
+    @Override
+    protected byte[] engineDigest() {
+      byte[] digest = hasher.digest();
+      hasher.reset();
+      return digest;
+    }
+
+    @Override
+    protected void engineReset() {
+      hasher.reset();
+    }
+
+    @Override
+    public Object clone() throws CloneNotSupportedException {
+      Blake3MessageDigest clone = (Blake3MessageDigest) super.clone();
+      clone.hasher = hasher.clone();
+      return clone;
+    }
+  }
+
+  /**
+   * Makes {@link Blake3MessageDigest} available as {@code MessageDigest.getInstance("BLAKE3")},
+   * which {@link DigestHashFunction#register} requires.
+   */
+  static final class Blake3Provider extends Provider {
+    Blake3Provider() {
+      super("BazelBlake3", "1.0", "BLAKE3 message digest");
+      put("MessageDigest.BLAKE3", Blake3MessageDigest.class.getName());
+    }
+  }
+}
@@ -25,6 +25,7 @@ import com.google.devtools.common.options.Converter;
 import com.google.devtools.common.options.OptionsParsingException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.security.Security;
 import java.util.HashMap;
 import java.util.Map.Entry;
 
@@ -68,6 +69,12 @@ public class DigestHashFunction {
   public static final DigestHashFunction SHA1 = register(Hashing.sha1(), "SHA-1", "SHA1");
   public static final DigestHashFunction SHA256 = register(Hashing.sha256(), "SHA-256", "SHA256");
 
+  /**
+   * BLAKE3, whose tree structure lets {@link DigestUtils} hash large files on several threads at
+   * once.
+   */
+  public static final DigestHashFunction BLAKE3 = registerBlake3();
+
   private final HashFunction hashFunction;
   private final DigestLength digestLength;
   private final String name;
@@ -127,6 +134,11 @@ public class DigestHashFunction {
     return hashFunction;
   }
 
+  private static DigestHashFunction registerBlake3() {
+    Security.addProvider(new Blake3HashFunction.Blake3Provider());
+    return register(new Blake3HashFunction(), "BLAKE3");
+  }
+
   /** Converts a string to its registered {@link DigestHashFunction}. */
   public static class DigestFunctionConverter implements Converter<DigestHashFunction> {
     @Override
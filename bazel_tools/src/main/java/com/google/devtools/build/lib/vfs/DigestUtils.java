@@ -16,9 +16,28 @@ package com.google.devtools.build.lib.vfs;
 import com.github.benmanes.caffeine.cache.Cache;
 import com.github.benmanes.caffeine.cache.Caffeine;
 import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
 import com.google.common.primitives.Longs;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.devtools.build.lib.unsafe.UnsafeProvider;
+import com.google.devtools.build.lib.util.OS;
+import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
 
 /**
  * Utility class for getting digests of files.
@@ -36,6 +55,11 @@ import java.io.IOException;
  *
  * <p>Note that the (path, metadata) tuples must be unique, otherwise the XOR-based approach will
  * fail.
+ *
+ * <p>This class also owns the bounded pool that file digests are computed in: {@link
+ * #manuallyComputeDigestAsync} digests many files concurrently, and {@link #digestFile} can hash
+ * large files through memory maps, splitting {@link DigestHashFunction#BLAKE3} digests across the
+ * pool.
  */
 public class DigestUtils {
   // Typical size for a digest byte array.
@@ -112,6 +136,33 @@ public class DigestUtils {
    */
   private static Cache<CacheKey, byte[]> globalCache = null;
 
+  /** Files at least this large are memory-mapped rather than read through a heap buffer. */
+  @VisibleForTesting static final long MAP_THRESHOLD = 1 << 20;
+
+  private static final int READ_BUFFER_SIZE = 64 << 10;
+
+  /**
+   * Whether {@link #digestFile} memory-maps large files. Off by default, since a file that is
+   * truncated while it is mapped can no longer be read, and mapped files cannot be deleted or
+   * overwritten on Windows until the mapping is released.
+   */
+  private static volatile boolean mapLargeFiles = false;
+
+  private static final ForkJoinPool digestPool =
+      new ForkJoinPool(
+          Math.max(2, Runtime.getRuntime().availableProcessors()),
+          pool -> {
+            ForkJoinWorkerThread thread =
+                ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("file-digest-" + thread.getPoolIndex());
+            return thread;
+          },
+          /*handler=*/ null,
+          /*asyncMode=*/ false);
+
+  private static final ListeningExecutorService digestExecutor =
+      MoreExecutors.listeningDecorator(digestPool);
+
   /** Private constructor to prevent instantiation of utility class. */
   private DigestUtils() {}
 
@@ -206,6 +257,106 @@ public class DigestUtils {
     return digest;
   }
 
+  /**
+   * Calculates the digest manually like {@link #manuallyComputeDigest}, in the shared pool of
+   * digesting threads.
+   */
+  public static ListenableFuture<byte[]> manuallyComputeDigestAsync(Path path, long fileSize) {
+    return digestExecutor.submit(() -> manuallyComputeDigest(path, fileSize));
+  }
+
+  /**
+   * Returns the bounded pool of threads that file digests are computed in. Callers digesting many
+   * files at once should submit their work here instead of to a pool of their own, so that the
+   * number of concurrent reads stays bounded across the server.
+   */
+  public static ListeningExecutorService getDigestExecutor() {
+    return digestExecutor;
+  }
+
+  /**
+   * Configures whether large files are digested through memory maps. Ignored on Windows, where a
+   * mapped file stays locked until the mapping is garbage collected.
+   */
+  public static void configureMappedDigests(boolean enabled) {
+    mapLargeFiles = enabled && OS.getCurrent() != OS.WINDOWS;
+  }
+
+  /**
+   * Returns whether file systems should digest files with {@link #digestFile} rather than by
+   * reading them through a stream.
+   */
+  public static boolean mapsLargeFiles() {
+    return mapLargeFiles;
+  }
+
+  /**
+   * Digests the file at {@code file} on the local file system with {@code digestFunction}.
+   *
+   * <p>Files are read through a heap buffer, unless {@link #configureMappedDigests} enabled memory
+   * maps. Then files of at least {@link #MAP_THRESHOLD} bytes are mapped, which saves copying
+   * their contents, and {@link DigestHashFunction#BLAKE3} digests of those are computed by the
+   * threads of the digesting pool together. The mappings are released before this returns.
+   */
+  public static byte[] digestFile(java.nio.file.Path file, DigestHashFunction digestFunction)
+      throws IOException {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      long size = channel.size();
+      if (!mapLargeFiles || size < MAP_THRESHOLD) {
+        return digestByReading(channel, digestFunction);
+      }
+      List<ByteBuffer> windows = new ArrayList<>();
+      try {
+        for (long offset = 0; offset < size; offset += Blake3.WINDOW_SIZE) {
+          windows.add(
+              channel.map(MapMode.READ_ONLY, offset, Math.min(Blake3.WINDOW_SIZE, size - offset)));
+        }
+        byte[] digest = digestMapped(windows, digestFunction);
+        // Only unmap once no thread reads the windows anymore: touching an unmapped window crashes
+        // the JVM. After a failure, subtasks may still be running, so leave the windows to the GC.
+        for (ByteBuffer window : windows) {
+          UnsafeProvider.getInstance().invokeCleaner(window);
+        }
+        return digest;
+      } catch (InternalError e) {
+        // Reading a mapped page past the end of a file that shrank faults, which the JVM reports
+        // as an InternalError.
+        throw new IOException(file + " changed while it was being digested", e);
+      }
+    } catch (NoSuchFileException e) {
+      throw new FileNotFoundException(file + " (No such file or directory)");
+    } catch (ClosedByInterruptException e) {
+      // Unlike streams, file channels are interruptible. Report interruption like other reads do.
+      InterruptedIOException interrupted =
+          new InterruptedIOException("Interrupted while digesting " + file);
+      interrupted.initCause(e);
+      throw interrupted;
+    }
+  }
+
+  private static byte[] digestMapped(List<ByteBuffer> windows, DigestHashFunction digestFunction) {
+    if (digestFunction == DigestHashFunction.BLAKE3) {
+      return Blake3.hashParallel(windows, digestPool);
+    }
+    MessageDigest digest = digestFunction.cloneOrCreateMessageDigest();
+    for (ByteBuffer window : windows) {
+      digest.update(window);
+    }
+    return digest.digest();
+  }
+
+  private static byte[] digestByReading(FileChannel channel, DigestHashFunction digestFunction)
+      throws IOException {
+    MessageDigest digest = digestFunction.cloneOrCreateMessageDigest();
+    ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+    while (channel.read(buffer) != -1) {
+      buffer.flip();
+      digest.update(buffer);
+      buffer.clear();
+    }
+    return digest.digest();
+  }
+
   /** Compute lhs ^= rhs bitwise operation of the arrays. May clobber either argument. */
   public static byte[] xor(byte[] lhs, byte[] rhs) {
     int n = rhs.length;
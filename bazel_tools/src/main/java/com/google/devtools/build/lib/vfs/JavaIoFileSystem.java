@@ -417,7 +417,10 @@ public class JavaIoFileSystem extends AbstractFileSystemWithCustomStat {
     String name = path.toString();
     long startTime = Profiler.nanoTimeMaybe();
     try {
-      return super.getDigest(path);
+      if (!DigestUtils.mapsLargeFiles()) {
+        return super.getDigest(path);
+      }
+      return DigestUtils.digestFile(getNioPath(path), getDigestFunction());
     } finally {
       profiler.logSimpleTask(startTime, ProfilerTask.VFS_MD5, name);
     }
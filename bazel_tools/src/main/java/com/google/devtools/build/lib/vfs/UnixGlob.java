@@ -22,6 +22,8 @@ import com.google.common.base.Predicates;
 import com.google.common.base.Splitter;
 import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
@@ -38,6 +40,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -48,7 +51,9 @@ import java.util.concurrent.Executor;
 import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
 import java.util.regex.Pattern;
+import javax.annotation.Nullable;
 
 /**
  * Implementation of a subset of UNIX-style file globbing, expanding "*" and "?" as wildcards, but
@@ -77,7 +82,7 @@ public final class UnixGlob {
       FilesystemCalls syscalls,
       Executor executor)
       throws IOException, InterruptedException, BadPattern {
-    GlobVisitor visitor = new GlobVisitor(executor);
+    GlobVisitor<List<Path>> visitor = new GlobVisitor<>(executor, UnixGlob::union);
     return visitor.glob(base, patterns, excludeDirectories, dirPred, syscalls);
   }
 
@@ -89,7 +94,7 @@ public final class UnixGlob {
       FilesystemCalls syscalls,
       Executor executor)
       throws IOException, BadPattern {
-    GlobVisitor visitor = new GlobVisitor(executor);
+    GlobVisitor<List<Path>> visitor = new GlobVisitor<>(executor, UnixGlob::union);
     return visitor.globUninterruptible(base, patterns, excludeDirectories, dirPred, syscalls);
   }
 
@@ -101,24 +106,47 @@ public final class UnixGlob {
       FilesystemCalls syscalls,
       Executor executor)
       throws IOException, InterruptedException, BadPattern {
-    GlobVisitor visitor = new GlobVisitor(executor);
+    GlobVisitor<List<Path>> visitor = new GlobVisitor<>(executor, UnixGlob::union);
     visitor.glob(base, patterns, excludeDirectories, dirPred, syscalls);
     return visitor.getNumGlobTasksForTesting();
   }
 
-  private static Future<List<Path>> globAsyncInternal(
+  private static <T> Future<T> globAsyncInternal(
       Path base,
       Collection<String> patterns,
       boolean excludeDirectories,
       Predicate<Path> dirPred,
       FilesystemCalls syscalls,
-      Executor executor)
+      Executor executor,
+      Function<Map<String, Set<Path>>, T> resultFunction)
       throws BadPattern {
     Preconditions.checkNotNull(executor, "%s %s", base, patterns);
-    return new GlobVisitor(executor)
+    return new GlobVisitor<>(executor, resultFunction)
         .globAsync(base, patterns, excludeDirectories, dirPred, syscalls);
   }
 
+  /** Returns the paths matched by any of the patterns. */
+  private static List<Path> union(Map<String, Set<Path>> matchesByPattern) {
+    if (matchesByPattern.size() == 1) {
+      return ImmutableList.copyOf(Iterables.getOnlyElement(matchesByPattern.values()));
+    }
+    ImmutableSet.Builder<Path> union = ImmutableSet.builder();
+    for (Set<Path> matches : matchesByPattern.values()) {
+      union.addAll(matches);
+    }
+    return union.build().asList();
+  }
+
+  /** Returns the paths matched by each of the patterns. */
+  private static Map<String, List<Path>> byPattern(Map<String, Set<Path>> matchesByPattern) {
+    ImmutableMap.Builder<String, List<Path>> byPattern =
+        ImmutableMap.builderWithExpectedSize(matchesByPattern.size());
+    for (Map.Entry<String, Set<Path>> entry : matchesByPattern.entrySet()) {
+      byPattern.put(entry.getKey(), ImmutableList.copyOf(entry.getValue()));
+    }
+    return byPattern.build();
+  }
+
   /**
    * Checks that each pattern is valid, splits it into segments and checks that each segment
    * contains only valid wildcards.
@@ -457,23 +485,45 @@ public final class UnixGlob {
      */
     public Future<List<Path>> globAsync() throws BadPattern {
       return globAsyncInternal(
-          base, patterns, excludeDirectories, pathFilter, syscalls.get(), executor);
+          base,
+          patterns,
+          excludeDirectories,
+          pathFilter,
+          syscalls.get(),
+          executor,
+          UnixGlob::union);
+    }
+
+    /**
+     * Executes the glob asynchronously and returns the matches of each pattern separately. All
+     * patterns are evaluated in a single traversal, so this is cheaper than globbing each of them
+     * on its own. {@link #setExecutor} must have been called already with a non-null argument.
+     */
+    public Future<Map<String, List<Path>>> globAsyncByPattern() throws BadPattern {
+      return globAsyncInternal(
+          base,
+          patterns,
+          excludeDirectories,
+          pathFilter,
+          syscalls.get(),
+          executor,
+          UnixGlob::byPattern);
     }
   }
 
   /**
    * Adapts the result of the glob visitation as a Future.
    */
-  private static class GlobFuture extends ForwardingListenableFuture<List<Path>> {
-    private final GlobVisitor visitor;
-    private final SettableFuture<List<Path>> delegate = SettableFuture.create();
+  private static class GlobFuture<T> extends ForwardingListenableFuture<T> {
+    private final GlobVisitor<T> visitor;
+    private final SettableFuture<T> delegate = SettableFuture.create();
 
-    public GlobFuture(GlobVisitor visitor) {
+    public GlobFuture(GlobVisitor<T> visitor) {
       this.visitor = visitor;
     }
 
     @Override
-    protected ListenableFuture<List<Path>> delegate() {
+    protected ListenableFuture<T> delegate() {
       return delegate;
     }
 
@@ -481,8 +531,8 @@ public final class UnixGlob {
       delegate.setException(throwable);
     }
 
-    public void set(List<Path> paths) {
-      delegate.set(paths);
+    public void set(T result) {
+      delegate.set(result);
     }
 
     @Override
@@ -497,16 +547,95 @@ public final class UnixGlob {
     }
   }
 
+  /**
+   * A node in the trie of the segments of the patterns of a glob. Patterns with a common prefix
+   * share the nodes of that prefix, so a directory reached through the prefix is listed and matched
+   * once for all of them: {@code [**\/*.java, **\/*.proto]} walks the package once, not twice.
+   *
+   * <p>Visiting a directory at a node means that the path from the base to the directory matched
+   * the segments from the root to the node. The trie is built before the visitation starts and is
+   * not modified afterwards.
+   */
+  private static final class PatternNode {
+    /** The segment matched by this node, or null for the root. */
+    @Nullable private final String segment;
+
+    /** The number of {@code **} segments from the root to this node, inclusive. */
+    private final int recursiveDepth;
+
+    private final Map<String, PatternNode> children = new HashMap<>();
+
+    /** Children for {@code **}, which also match the directory they are visited from. */
+    private final List<PatternNode> recursiveChildren = new ArrayList<>();
+
+    /** Children without wildcards, which are stat'ed instead of listing the directory. */
+    private final List<PatternNode> literalChildren = new ArrayList<>();
+
+    /**
+     * The nodes that entries of a directory visited at this node are matched against: children with
+     * wildcards, and this node itself if it is a {@code **}.
+     */
+    private final List<PatternNode> listingChildren = new ArrayList<>();
+
+    /** The index of the pattern that ends at this node, or -1 if none does. */
+    private int patternIndex = -1;
+
+    private PatternNode(@Nullable String segment, int recursiveDepth) {
+      this.segment = segment;
+      this.recursiveDepth = recursiveDepth;
+      if (segment != null && GlobVisitor.isRecursivePattern(segment)) {
+        listingChildren.add(this);
+      }
+    }
+
+    static PatternNode root() {
+      return new PatternNode(null, 0);
+    }
+
+    /** Adds the pattern with the given segments and index below this node. */
+    void add(String[] segments, int index) {
+      PatternNode node = this;
+      for (String segment : segments) {
+        node = node.child(segment);
+      }
+      node.patternIndex = index;
+    }
+
+    private PatternNode child(String segment) {
+      PatternNode child = children.get(segment);
+      if (child == null) {
+        boolean isRecursive = GlobVisitor.isRecursivePattern(segment);
+        child = new PatternNode(segment, recursiveDepth + (isRecursive ? 1 : 0));
+        children.put(segment, child);
+        if (isRecursive) {
+          recursiveChildren.add(child);
+        } else if (isWildcardFree(segment)) {
+          literalChildren.add(child);
+        } else {
+          listingChildren.add(child);
+        }
+      }
+      return child;
+    }
+
+    @Override
+    public String toString() {
+      return segment == null ? "<root>" : segment;
+    }
+  }
+
   /**
    * GlobVisitor executes a glob using parallelism, which is useful when
    * the glob() requires many readdir() calls on high latency filesystems.
    */
-  private static final class GlobVisitor {
+  private static final class GlobVisitor<T> {
     // These collections are used across workers and must therefore be thread-safe.
-    private final Collection<Path> results = Sets.newConcurrentHashSet();
     private final ConcurrentHashMap<String, Pattern> cache = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Path, Boolean> traversableDirs = new ConcurrentHashMap<>();
+    private final Set<GlobTask> visitedGlobSubTasks = Sets.newConcurrentHashSet();
 
-    private final GlobFuture result;
+    private final Function<Map<String, Set<Path>>, T> resultFunction;
+    private final GlobFuture<T> result;
     private final Executor executor;
     private final AtomicLong totalOps = new AtomicLong(0);
     private final AtomicLong pendingOps = new AtomicLong(0);
@@ -515,9 +644,17 @@ public final class UnixGlob {
     private final AtomicReference<Error> error = new AtomicReference<>();
     private volatile boolean canceled = false;
 
-    GlobVisitor(Executor executor) {
+    // Set up by globAsync() before the first task is enqueued, and only read afterwards.
+    private ImmutableList<String> patterns;
+    private List<Set<Path>> results;
+    private boolean excludeDirectories;
+    private Predicate<Path> dirPred;
+    private FilesystemCalls syscalls;
+
+    GlobVisitor(Executor executor, Function<Map<String, Set<Path>>, T> resultFunction) {
       this.executor = executor;
-      this.result = new GlobFuture(this);
+      this.resultFunction = resultFunction;
+      this.result = new GlobFuture<>(this);
     }
 
     /**
@@ -535,7 +672,7 @@ public final class UnixGlob {
      *     #checkPatternForError(String) contains errors} or if any include pattern segment contains
      *     <code>**</code> but not equal to it.
      */
-    List<Path> glob(
+    T glob(
         Path base,
         Collection<String> patterns,
         boolean excludeDirectories,
@@ -551,7 +688,7 @@ public final class UnixGlob {
       }
     }
 
-    List<Path> globUninterruptible(
+    T globUninterruptible(
         Path base,
         Collection<String> patterns,
         boolean excludeDirectories,
@@ -577,13 +714,22 @@ public final class UnixGlob {
      * Same as {@link #glob}, except does so asynchronously and returns a {@link Future} for the
      * result.
      */
-    Future<List<Path>> globAsync(
+    Future<T> globAsync(
         Path base,
         Collection<String> patterns,
         boolean excludeDirectories,
         Predicate<Path> dirPred,
         FilesystemCalls syscalls)
         throws BadPattern {
+      this.patterns = ImmutableSet.copyOf(patterns).asList();
+      this.results = new ArrayList<>(this.patterns.size());
+      for (int i = 0; i < this.patterns.size(); i++) {
+        results.add(Sets.newConcurrentHashSet());
+      }
+      this.excludeDirectories = excludeDirectories;
+      this.dirPred = dirPred;
+      this.syscalls = syscalls;
+
       FileStatus baseStat;
       try {
         baseStat = syscalls.statIfFound(base, Symlinks.FOLLOW);
@@ -591,30 +737,21 @@ public final class UnixGlob {
         return Futures.immediateFailedFuture(e);
       }
       if (baseStat == null || patterns.isEmpty()) {
-        return Futures.immediateFuture(Collections.<Path>emptyList());
+        return Futures.immediateFuture(resultFunction.apply(getResultsByPattern()));
       }
 
       // TODO(adonovan): validate pattern unconditionally, before I/O (potentially breaking change).
-      List<String[]> splitPatterns = checkAndSplitPatterns(patterns);
+      List<String[]> splitPatterns = checkAndSplitPatterns(this.patterns);
 
-      // We do a dumb loop, even though it will likely duplicate logical work (note that the
-      // physical filesystem operations are cached). In order to optimize, we would need to keep
-      // track of which patterns shared sub-patterns and which did not (for example consider the
-      // glob [*/*.java, sub/*.java, */*.txt]).
+      // The patterns are matched together, sharing the directory listings and the matching of their
+      // common prefixes (for example consider the glob [*/*.java, sub/*.java, */*.txt]).
+      PatternNode root = PatternNode.root();
+      for (int i = 0; i < splitPatterns.size(); i++) {
+        root.add(splitPatterns.get(i), i);
+      }
       pendingOps.incrementAndGet();
       try {
-        for (String[] splitPattern : splitPatterns) {
-          int numRecursivePatterns = 0;
-          for (String pattern : splitPattern) {
-            if (isRecursivePattern(pattern)) {
-              ++numRecursivePatterns;
-            }
-          }
-          GlobTaskContext context = numRecursivePatterns > 1
-              ? new RecursiveGlobTaskContext(splitPattern, excludeDirectories, dirPred, syscalls)
-              : new GlobTaskContext(splitPattern, excludeDirectories, dirPred, syscalls);
-          context.queueGlob(base, baseStat.isDirectory(), 0);
-        }
+        queueGlob(base, baseStat.isDirectory(), root);
       } finally {
         decrementAndCheckDone();
       }
@@ -622,6 +759,14 @@ public final class UnixGlob {
       return result;
     }
 
+    private Map<String, Set<Path>> getResultsByPattern() {
+      Map<String, Set<Path>> resultsByPattern = new LinkedHashMap<>();
+      for (int i = 0; i < patterns.size(); i++) {
+        resultsByPattern.put(patterns.get(i), results.get(i));
+      }
+      return resultsByPattern;
+    }
+
     private Throwable getMostSeriousThrowableSoFar() {
       if (error.get() != null) {
         return error.get();
@@ -635,16 +780,28 @@ public final class UnixGlob {
       return null;
     }
 
-    /** Should only be called by link {@link GlobTaskContext}. */
-    private void queueGlob(
-        final Path base, final boolean baseIsDir, final int idx, final GlobTaskContext context) {
+    /** Queues a visit of {@code base} at {@code node}, unless it was already queued. */
+    private void queueGlob(final Path base, final boolean baseIsDir, final PatternNode node) {
+      // With a single "**" on the way to a node, there is only one way to reach a directory at that
+      // node. With more there may be several, so such visits are deduplicated. For example,
+      // consider
+      //   glob(['**/a/**/foo.txt'])
+      // with the only file being
+      //   a/a/foo.txt
+      //
+      // there are multiple ways to reach a/a/foo.txt: one route starts by recursively globbing
+      // 'a/**/foo.txt' in the base directory of the package, and another route starts by
+      // recursively globbing '**/a/**/foo.txt' in subdirectory 'a'.
+      if (node.recursiveDepth > 1 && !visitedGlobSubTasks.add(new GlobTask(base, node))) {
+        return;
+      }
       enqueue(
           new Runnable() {
             @Override
             public void run() {
               try (SilentCloseable c =
                   Profiler.instance().profile(ProfilerTask.VFS_GLOB, base.getPathString())) {
-                reallyGlob(base, baseIsDir, idx, context);
+                reallyGlob(base, baseIsDir, node);
               } catch (IOException e) {
                 ioException.set(e);
               } catch (RuntimeException e) {
@@ -659,17 +816,12 @@ public final class UnixGlob {
               return String.format(
                   "%s glob(include=[%s], exclude_directories=%s)",
                   base.getPathString(),
-                  "\"" + Joiner.on("\", \"").join(context.patternParts) + "\"",
-                  context.excludeDirectories);
+                  "\"" + Joiner.on("\", \"").join(patterns) + "\"",
+                  excludeDirectories);
             }
           });
     }
 
-    /** Should only be called by link {@link GlobTaskContext}. */
-    private void queueTask(Runnable runnable) {
-      enqueue(runnable);
-    }
-
     void enqueue(final Runnable r) {
       totalOps.incrementAndGet();
       pendingOps.incrementAndGet();
@@ -712,93 +864,46 @@ public final class UnixGlob {
         } else if (mostSeriousThrowable != null) {
           result.setException(mostSeriousThrowable);
         } else {
-          result.set(ImmutableList.copyOf(results));
+          result.set(resultFunction.apply(getResultsByPattern()));
         }
       }
     }
 
-    /** A context for evaluating all the subtasks of a single top-level glob task. */
-    private class GlobTaskContext {
-      private final String[] patternParts;
-      private final boolean excludeDirectories;
-      private final Predicate<Path> dirPred;
-      private final FilesystemCalls syscalls;
-
-      GlobTaskContext(
-          String[] patternParts,
-          boolean excludeDirectories,
-          Predicate<Path> dirPred,
-          FilesystemCalls syscalls) {
-        this.patternParts = patternParts;
-        this.excludeDirectories = excludeDirectories;
-        this.dirPred = dirPred;
-        this.syscalls = syscalls;
-      }
-
-      protected void queueGlob(Path base, boolean baseIsDir, int patternIdx) {
-        GlobVisitor.this.queueGlob(base, baseIsDir, patternIdx, this);
-      }
+    /** A visit of a directory at a node of the pattern trie. */
+    private static final class GlobTask {
+      private final Path base;
+      private final PatternNode node;
 
-      protected void queueTask(Runnable runnable) {
-        GlobVisitor.this.queueTask(runnable);
+      private GlobTask(Path base, PatternNode node) {
+        this.base = base;
+        this.node = node;
       }
-    }
-
-    /**
-     * A special implementation of {@link GlobTaskContext} that dedupes glob subtasks. Our naive
-     * implementation of recursive patterns means there are multiple ways to enqueue the same
-     * logical subtask.
-     */
-    private class RecursiveGlobTaskContext extends GlobTaskContext {
-
-      private class GlobTask {
-        private final Path base;
-        private final int patternIdx;
-
-        private GlobTask(Path base, int patternIdx) {
-          this.base = base;
-          this.patternIdx = patternIdx;
-        }
 
-        @Override
-        public boolean equals(Object obj) {
-          if (!(obj instanceof GlobTask)) {
-            return false;
-          }
-          GlobTask other = (GlobTask) obj;
-          return base.equals(other.base) && patternIdx == other.patternIdx;
-        }
-
-        @Override
-        public int hashCode() {
-          return Objects.hash(base, patternIdx);
+      @Override
+      public boolean equals(Object obj) {
+        if (!(obj instanceof GlobTask)) {
+          return false;
         }
+        GlobTask other = (GlobTask) obj;
+        return base.equals(other.base) && node == other.node;
       }
 
-      private final Set<GlobTask> visitedGlobSubTasks = Sets.newConcurrentHashSet();
-
-      private RecursiveGlobTaskContext(
-          String[] patternParts,
-          boolean excludeDirectories,
-          Predicate<Path> dirPred,
-          FilesystemCalls syscalls) {
-        super(patternParts, excludeDirectories, dirPred, syscalls);
+      @Override
+      public int hashCode() {
+        return Objects.hash(base, System.identityHashCode(node));
       }
+    }
 
-      @Override
-      protected void queueGlob(Path base, boolean baseIsDir, int patternIdx) {
-        if (visitedGlobSubTasks.add(new GlobTask(base, patternIdx))) {
-          // This is a unique glob task. For example of how duplicates can arise, consider:
-          //   glob(['**/a/**/foo.txt'])
-          // with the only file being
-          //   a/a/foo.txt
-          //
-          // there are multiple ways to reach a/a/foo.txt: one route starts by recursively globbing
-          // 'a/**/foo.txt' in the base directory of the package, and another route starts by
-          // recursively globbing '**/a/**/foo.txt' in subdirectory 'a'.
-          super.queueGlob(base, baseIsDir, patternIdx);
-        }
+    /** Returns whether the directory may be traversed, asking {@link #dirPred} only once. */
+    private boolean isTraversable(Path dir) {
+      // The predicate may be slow, so it is not called under the lock of computeIfAbsent. Racing
+      // threads may both call it, which is harmless.
+      Boolean traversable = traversableDirs.get(dir);
+      if (traversable == null) {
+        traversable = dirPred.apply(dir);
+        traversableDirs.put(dir, traversable);
       }
+      return traversable;
     }
 
     /**
@@ -808,19 +913,18 @@ public final class UnixGlob {
      *  reallyGlob base []     = { base }
      *  reallyGlob base [x:xs] = union { reallyGlob(f, xs) | f results "base/x" }
      * </pre>
+     *
+     * <p>where the segments still to match are those of all patterns below {@code node}.
      */
-    private void reallyGlob(Path base, boolean baseIsDir, int idx, GlobTaskContext context)
-        throws IOException {
-      if (baseIsDir && !context.dirPred.apply(base)) {
+    private void reallyGlob(Path base, boolean baseIsDir, PatternNode node) throws IOException {
+      if (baseIsDir && !isTraversable(base)) {
         return;
       }
 
-      if (idx == context.patternParts.length) { // Base case.
-        if (!(context.excludeDirectories && baseIsDir)) {
-          results.add(base);
+      if (node.patternIndex >= 0) { // Base case.
+        if (!(excludeDirectories && baseIsDir)) {
+          results.get(node.patternIndex).add(base);
         }
-
-        return;
       }
 
       if (!baseIsDir) {
@@ -828,41 +932,51 @@ public final class UnixGlob {
         return;
       }
 
-      String pattern = context.patternParts[idx];
-
       // ** is special: it can match nothing at all.
       // For example, x/** matches x, **/y matches y, and x/**/y matches x/y.
-      if (isRecursivePattern(pattern)) {
-        context.queueGlob(base, baseIsDir, idx + 1);
+      for (PatternNode child : node.recursiveChildren) {
+        queueGlob(base, baseIsDir, child);
       }
 
-      if (!pattern.contains("*") && !pattern.contains("?")) {
+      for (PatternNode child : node.literalChildren) {
         // We do not need to do a readdir in this case, just a stat.
-        Path child = base.getChild(pattern);
-        FileStatus status = context.syscalls.statIfFound(child, Symlinks.FOLLOW);
+        Path path = base.getChild(child.segment);
+        FileStatus status = syscalls.statIfFound(path, Symlinks.FOLLOW);
         if (status == null || (!status.isDirectory() && !status.isFile())) {
           // The file is a dangling symlink, fifo, does not exist, etc.
-          return;
+          continue;
         }
 
-        context.queueGlob(child, status.isDirectory(), idx + 1);
+        queueGlob(path, status.isDirectory(), child);
+      }
+
+      if (node.listingChildren.isEmpty()) {
         return;
       }
 
-      Collection<Dirent> dents = context.syscalls.readdir(base);
+      Collection<Dirent> dents = syscalls.readdir(base);
       for (Dirent dent : dents) {
         Dirent.Type childType = dent.getType();
         if (childType == Dirent.Type.UNKNOWN) {
           // The file is a special file (fifo, etc.). No need to even match against the pattern.
           continue;
         }
-        if (matches(pattern, dent.getName(), cache)) {
+        List<PatternNode> matchingNodes = null;
+        for (PatternNode child : node.listingChildren) {
+          if (matches(child.segment, dent.getName(), cache)) {
+            if (matchingNodes == null) {
+              matchingNodes = new ArrayList<>(node.listingChildren.size());
+            }
+            matchingNodes.add(child);
+          }
+        }
+        if (matchingNodes != null) {
           Path child = base.getChild(dent.getName());
 
           if (childType == Dirent.Type.SYMLINK) {
-            processSymlink(child, idx, context);
+            processSymlink(child, matchingNodes);
           } else {
-            processFileOrDirectory(child, childType == Dirent.Type.DIRECTORY, idx, context);
+            processFileOrDirectory(child, childType == Dirent.Type.DIRECTORY, matchingNodes);
           }
         }
       }
@@ -874,13 +988,13 @@ public final class UnixGlob {
      * underlying file system is networked and a single directory contains many symlinks, that can
      * lead to substantial slowness.
      */
-    private void processSymlink(Path path, int idx, GlobTaskContext context) {
-      context.queueTask(
+    private void processSymlink(Path path, List<PatternNode> matchingNodes) {
+      enqueue(
           () -> {
             try {
-              FileStatus status = context.syscalls.statIfFound(path, Symlinks.FOLLOW);
+              FileStatus status = syscalls.statIfFound(path, Symlinks.FOLLOW);
               if (status != null) {
-                processFileOrDirectory(path, status.isDirectory(), idx, context);
+                processFileOrDirectory(path, status.isDirectory(), matchingNodes);
               }
             } catch (IOException e) {
               ioException.compareAndSet(null, e);
@@ -888,13 +1002,15 @@ public final class UnixGlob {
           });
     }
 
+    /** Continues the visitation from a directory entry that matched the given nodes. */
     private void processFileOrDirectory(
-        Path path, boolean isDir, int idx, GlobTaskContext context) {
-      boolean isRecursivePattern = isRecursivePattern(context.patternParts[idx]);
-      if (isDir) {
-        context.queueGlob(path, /* baseIsDir= */ true, idx + (isRecursivePattern ? 0 : 1));
-      } else if (idx + 1 == context.patternParts.length) {
-        results.add(path);
+        Path path, boolean isDir, List<PatternNode> matchingNodes) {
+      for (PatternNode node : matchingNodes) {
+        if (isDir) {
+          queueGlob(path, /* baseIsDir= */ true, node);
+        } else if (node.patternIndex >= 0) {
+          results.get(node.patternIndex).add(path);
+        }
       }
     }
   }
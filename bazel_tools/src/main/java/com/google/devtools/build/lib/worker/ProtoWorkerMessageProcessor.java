@@ -13,11 +13,13 @@
 // limitations under the License.
 package com.google.devtools.build.lib.worker;
 
+import com.google.devtools.build.lib.worker.WorkerProtocol.SharedPayload;
 import com.google.devtools.build.lib.worker.WorkerProtocol.WorkRequest;
 import com.google.devtools.build.lib.worker.WorkerProtocol.WorkResponse;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.file.Paths;
 
 /** Implementation of the Worker Protocol using Proto to communicate with Bazel. */
 public final class ProtoWorkerMessageProcessor
@@ -29,6 +31,12 @@ public final class ProtoWorkerMessageProcessor
   /** This worker's stdout. Only {@link WorkRequest}s should be written here. */
   private final OutputStream stdout;
 
+  /**
+   * The file through which Bazel sends large requests, if this worker declares the {@code
+   * proto_shared_memory} protocol format. Opened when the first such request arrives.
+   */
+  private SharedPayloadBuffer sharedPayloads;
+
   /** Constructs a {@link WorkRequestHandler} that reads and writes Protocol Buffers. */
   public ProtoWorkerMessageProcessor(InputStream stdin, OutputStream stdout) {
     this.stdin = stdin;
@@ -37,7 +45,19 @@ public final class ProtoWorkerMessageProcessor
 
   @Override
   public WorkRequest readWorkRequest() throws IOException {
-    return WorkRequest.parseDelimitedFrom(stdin);
+    WorkRequest request = WorkRequest.parseDelimitedFrom(stdin);
+    if (request == null || !request.hasSharedPayload()) {
+      return request;
+    }
+    SharedPayload payload = request.getSharedPayload();
+    if (sharedPayloads == null || !sharedPayloads.getPath().toString().equals(payload.getPath())) {
+      close();
+      sharedPayloads = SharedPayloadBuffer.open(Paths.get(payload.getPath()));
+    }
+    request =
+        WorkRequest.parseFrom(sharedPayloads.slice(payload.getOffset(), payload.getLength()));
+    sharedPayloads.release(payload.getOffset(), payload.getLength());
+    return request;
   }
 
   @Override
@@ -50,5 +70,10 @@ public final class ProtoWorkerMessageProcessor
   }
 
   @Override
-  public void close() {}
+  public void close() throws IOException {
+    if (sharedPayloads != null) {
+      sharedPayloads.close();
+      sharedPayloads = null;
+    }
+  }
 }
@@ -13,11 +13,16 @@
 // limitations under the License.
 package com.google.devtools.build.lib.worker;
 
+import com.google.devtools.build.lib.vfs.Path;
+import com.google.devtools.build.lib.worker.WorkerProtocol.SharedPayload;
 import com.google.devtools.build.lib.worker.WorkerProtocol.WorkRequest;
 import com.google.devtools.build.lib.worker.WorkerProtocol.WorkResponse;
+import com.google.protobuf.CodedOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.file.Files;
+import javax.annotation.Nullable;
 
 /** An implementation of a Bazel worker using Proto to communicate with the worker process. */
 final class ProtoWorkerProtocol implements WorkerProtocolImpl {
@@ -25,16 +30,72 @@ final class ProtoWorkerProtocol implements WorkerProtocolImpl {
   /** The worker process's stdin, which we send requests to. */
   private final OutputStream workersStdin;
 
+  /**
+   * Requests of at least this many bytes go through {@link #sharedPayloads}, smaller ones are
+   * cheaper to send through the pipe.
+   */
+  static final int MIN_SHARED_PAYLOAD_SIZE = 16 << 10;
+
+  /** The capacity of {@link #sharedPayloads}. Only the pages that get used take up memory. */
+  private static final int SHARED_PAYLOAD_BUFFER_CAPACITY = 64 << 20;
+
   /** The worker process's stdout, which we read responses from. */
   private final InputStream workersStdout;
 
+  /** The file shared with the worker process for large requests, or null if not used. */
+  @Nullable private final SharedPayloadBuffer sharedPayloads;
+
   public ProtoWorkerProtocol(OutputStream workersStdin, InputStream workersStdout) {
+    this(workersStdin, workersStdout, /*sharedPayloads=*/ null);
+  }
+
+  /**
+   * Creates a protocol that sends large requests through {@code sharedPayloads}, for workers that
+   * declare the {@code proto_shared_memory} protocol format. Takes ownership of {@code
+   * sharedPayloads} and deletes its file when closed.
+   */
+  public ProtoWorkerProtocol(
+      OutputStream workersStdin,
+      InputStream workersStdout,
+      @Nullable SharedPayloadBuffer sharedPayloads) {
     this.workersStdin = workersStdin;
     this.workersStdout = workersStdout;
+    this.sharedPayloads = sharedPayloads;
+  }
+
+  /**
+   * Creates a protocol for a worker that uses the {@code proto_shared_memory} protocol format, with
+   * the shared file next to the worker's log file.
+   */
+  static ProtoWorkerProtocol withSharedPayloads(
+      OutputStream workersStdin, InputStream workersStdout, Path logFile) throws IOException {
+    Path file = logFile.getParentDirectory().getChild(logFile.getBaseName() + ".payloads");
+    return new ProtoWorkerProtocol(
+        workersStdin,
+        workersStdout,
+        SharedPayloadBuffer.create(file.getPathFile().toPath(), SHARED_PAYLOAD_BUFFER_CAPACITY));
   }
 
   @Override
   public void putRequest(WorkRequest request) throws IOException {
+    if (sharedPayloads != null) {
+      int size = request.getSerializedSize();
+      long offset = size >= MIN_SHARED_PAYLOAD_SIZE ? sharedPayloads.allocate(size) : -1;
+      if (offset >= 0) {
+        CodedOutputStream out = CodedOutputStream.newInstance(sharedPayloads.slice(offset, size));
+        request.writeTo(out);
+        out.flush();
+        request =
+            WorkRequest.newBuilder()
+                .setRequestId(request.getRequestId())
+                .setSharedPayload(
+                    SharedPayload.newBuilder()
+                        .setPath(sharedPayloads.getPath().toString())
+                        .setOffset(offset)
+                        .setLength(size))
+                .build();
+      }
+    }
     request.writeDelimitedTo(workersStdin);
     workersStdin.flush();
   }
@@ -52,5 +113,10 @@ final class ProtoWorkerProtocol implements WorkerProtocolImpl {
   }
 
   @Override
-  public void close() {}
+  public void close() throws IOException {
+    if (sharedPayloads != null) {
+      sharedPayloads.close();
+      Files.deleteIfExists(sharedPayloads.getPath());
+    }
+  }
 }
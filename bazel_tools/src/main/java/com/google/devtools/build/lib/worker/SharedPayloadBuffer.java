@@ -0,0 +1,154 @@
+// Copyright 2026 The Bazel Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.devtools.build.lib.worker;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A file that Bazel and a worker process both map into memory, so that large payloads, such as
+ * {@link WorkerProtocol.WorkRequest}s with many inputs, don't have to be copied through the
+ * worker's stdin. Only a small {@link WorkerProtocol.SharedPayload} that locates the payload goes
+ * through the pipe.
+ *
+ * <p>The file is a ring buffer with a single writer, Bazel, and a single reader, the worker, which
+ * reads payloads in the order they were written. Offsets count bytes written since the buffer was
+ * created, so that they only grow. The header of the file holds how far the reader has consumed
+ * payloads, which tells the writer which parts of the file it may reuse. A payload is never split
+ * across the end of the file. If there is no room for a payload, {@link #allocate} fails and the
+ * payload has to be sent through the pipe instead, so the writer never waits for the reader.
+ */
+public final class SharedPayloadBuffer implements Closeable {
+  /** The size of the header, which holds the offset up to which payloads were consumed. */
+  static final int HEADER_SIZE = 64;
+
+  private static final VarHandle CONSUMED =
+      MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+  private final Path path;
+  private final FileChannel channel;
+  private final MappedByteBuffer buffer;
+  private final int capacity;
+  /** The offset after the last payload allocated. Only used by the writer. */
+  private long allocated;
+
+  private SharedPayloadBuffer(Path path, FileChannel channel, int capacity) throws IOException {
+    this.path = path;
+    this.channel = channel;
+    this.capacity = capacity;
+    this.buffer = channel.map(MapMode.READ_WRITE, 0, HEADER_SIZE + (long) capacity);
+  }
+
+  /**
+   * Creates the buffer for the writer side, replacing any file at {@code path}. The file is sparse,
+   * so only the parts of the capacity that get used take up memory.
+   */
+  public static SharedPayloadBuffer create(Path path, int capacity) throws IOException {
+    FileChannel channel =
+        FileChannel.open(
+            path,
+            StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING,
+            StandardOpenOption.READ,
+            StandardOpenOption.WRITE);
+    try {
+      return new SharedPayloadBuffer(path, channel, capacity);
+    } catch (IOException e) {
+      channel.close();
+      throw e;
+    }
+  }
+
+  /** Opens the buffer that the writer created at {@code path}, for the reader side. */
+  public static SharedPayloadBuffer open(Path path) throws IOException {
+    FileChannel channel =
+        FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    try {
+      long size = channel.size();
+      if (size <= HEADER_SIZE || size - HEADER_SIZE > Integer.MAX_VALUE) {
+        throw new IOException("Not a shared payload buffer: " + path + " has " + size + " bytes");
+      }
+      return new SharedPayloadBuffer(path, channel, (int) (size - HEADER_SIZE));
+    } catch (IOException e) {
+      channel.close();
+      throw e;
+    }
+  }
+
+  public Path getPath() {
+    return path;
+  }
+
+  int getCapacity() {
+    return capacity;
+  }
+
+  /**
+   * Reserves room for a payload of {@code length} bytes, which the caller then writes to {@link
+   * #slice}. Returns the offset of the payload, or -1 if the reader hasn't consumed enough of the
+   * earlier payloads to make room for it.
+   */
+  public synchronized long allocate(int length) {
+    if (length > capacity) {
+      return -1;
+    }
+    long start = allocated;
+    int position = (int) (start % capacity);
+    if (position + length > capacity) {
+      // Skip the rest of the file, so that the payload is contiguous.
+      start += capacity - position;
+    }
+    if (start + length - (long) CONSUMED.getAcquire(buffer, 0) > capacity) {
+      return -1;
+    }
+    allocated = start + length;
+    return start;
+  }
+
+  /** Returns the part of the file that holds the payload at {@code offset}. */
+  public ByteBuffer slice(long offset, int length) throws IOException {
+    if (offset < 0 || length < 0 || length > capacity || offset % capacity + length > capacity) {
+      throw new IOException(
+          String.format("Invalid shared payload at %d with %d bytes in %s", offset, length, path));
+    }
+    ByteBuffer slice = buffer.duplicate();
+    int position = HEADER_SIZE + (int) (offset % capacity);
+    slice.limit(position + length).position(position);
+    return slice.slice();
+  }
+
+  /**
+   * Marks the payload at {@code offset} and all payloads before it as consumed, so that the writer
+   * may reuse their space. Called by the reader once it no longer needs the payload's bytes.
+   */
+  public void release(long offset, int length) {
+    CONSUMED.setRelease(buffer, 0, offset + length);
+  }
+
+  @Override
+  public void close() throws IOException {
+    // The mapping itself stays valid until the buffer is garbage collected.
+    channel.close();
+  }
+}
@@ -14,8 +14,20 @@
 package com.google.devtools.build.lib.worker;
 
 import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.flogger.GoogleLogger;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.devtools.build.lib.clock.BlazeClock;
+import com.google.devtools.build.lib.clock.Clock;
 import java.io.IOException;
+import java.time.Duration;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
 import javax.annotation.concurrent.ThreadSafe;
 import org.apache.commons.pool2.impl.GenericKeyedObjectPool;
 import org.apache.commons.pool2.impl.GenericKeyedObjectPoolConfig;
@@ -28,9 +40,50 @@ import org.apache.commons.pool2.impl.GenericKeyedObjectPoolConfig;
  */
 @ThreadSafe
 final class SimpleWorkerPool extends GenericKeyedObjectPool<WorkerKey, Worker> {
+  private static final GoogleLogger logger = GoogleLogger.forEnclosingClass();
+
+  /**
+   * How long it takes the peak demand for the workers of a key to fall by half, once demand is
+   * lower than it.
+   */
+  static final Duration DEMAND_HALF_LIFE = Duration.ofSeconds(30);
+
+  /**
+   * How many idle workers to start per key ahead of demand, by mnemonic, see {@link #prestart}.
+   * The empty mnemonic gives the number for mnemonics that are not listed.
+   */
+  private final ImmutableMap<String, Integer> prestartConfig;
+  /** Starts workers in the background; null if no mnemonic has workers started ahead of demand. */
+  @Nullable private final ExecutorService prestarter;
+
+  private final Clock clock;
+  /** The demand for the workers of each key that has workers started ahead of demand. */
+  private final ConcurrentHashMap<WorkerKey, Demand> demand = new ConcurrentHashMap<>();
+  /** How many workers of each key are being started in the background. */
+  private final ConcurrentHashMap<WorkerKey, AtomicInteger> starting = new ConcurrentHashMap<>();
 
   public SimpleWorkerPool(WorkerFactory factory, int max) {
+    this(factory, max, /*prestartConfig=*/ ImmutableMap.of());
+  }
+
+  public SimpleWorkerPool(
+      WorkerFactory factory, int max, ImmutableMap<String, Integer> prestartConfig) {
+    this(factory, max, prestartConfig, BlazeClock.instance());
+  }
+
+  SimpleWorkerPool(
+      WorkerFactory factory, int max, ImmutableMap<String, Integer> prestartConfig, Clock clock) {
     super(factory, makeConfig(max));
+    this.prestartConfig = prestartConfig;
+    this.clock = clock;
+    this.prestarter =
+        prestartConfig.values().stream().anyMatch(n -> n > 0)
+            ? Executors.newCachedThreadPool(
+                new ThreadFactoryBuilder()
+                    .setNameFormat("worker-prestart-%d")
+                    .setDaemon(true)
+                    .build())
+            : null;
   }
 
   static SimpleWorkerPoolConfig makeConfig(int max) {
@@ -40,7 +93,8 @@ final class SimpleWorkerPool extends GenericKeyedObjectPool<WorkerKey, Worker> {
     // from JIT optimizations as much as possible.
     config.setLifo(true);
 
-    // Keep a fixed number of workers running per key.
+    // Keep a fixed number of workers running per key. The minimum number of idle workers is only
+    // enforced by eviction, which is disabled; see prestart() instead.
     config.setMaxIdlePerKey(max);
     config.setMaxTotalPerKey(max);
     config.setMinIdlePerKey(max);
@@ -63,8 +117,30 @@ final class SimpleWorkerPool extends GenericKeyedObjectPool<WorkerKey, Worker> {
     return config;
   }
 
+  /** Returns how many idle workers of the given key to start ahead of demand. */
+  private int getPrestartInstances(WorkerKey key) {
+    return prestartConfig.getOrDefault(key.getMnemonic(), prestartConfig.getOrDefault("", 0));
+  }
+
   @Override
   public Worker borrowObject(WorkerKey key) throws IOException, InterruptedException {
+    if (prestarter == null || getPrestartInstances(key) == 0) {
+      return borrow(key);
+    }
+    Demand keyDemand = demand.computeIfAbsent(key, k -> new Demand());
+    keyDemand.increment(clock.nanoTime());
+    Worker worker;
+    try {
+      worker = borrow(key);
+    } catch (IOException | InterruptedException | RuntimeException e) {
+      keyDemand.decrement();
+      throw e;
+    }
+    prestart(key, keyDemand);
+    return worker;
+  }
+
+  private Worker borrow(WorkerKey key) throws IOException, InterruptedException {
     try {
       return super.borrowObject(key);
     } catch (Throwable t) {
@@ -73,6 +149,15 @@ final class SimpleWorkerPool extends GenericKeyedObjectPool<WorkerKey, Worker> {
     }
   }
 
+  @Override
+  public void returnObject(WorkerKey key, Worker obj) {
+    super.returnObject(key, obj);
+    Demand keyDemand = demand.get(key);
+    if (keyDemand != null) {
+      keyDemand.decrement();
+    }
+  }
+
   @Override
   public void invalidateObject(WorkerKey key, Worker obj) throws IOException, InterruptedException {
     try {
@@ -81,6 +166,98 @@ final class SimpleWorkerPool extends GenericKeyedObjectPool<WorkerKey, Worker> {
       Throwables.propagateIfPossible(t, IOException.class, InterruptedException.class);
       throw new RuntimeException("unexpected", t);
     }
+    Demand keyDemand = demand.get(key);
+    if (keyDemand != null) {
+      keyDemand.decrement();
+      // Replace the worker before the next action needs it.
+      prestart(key, keyDemand);
+    }
+  }
+
+  /**
+   * Starts workers of the given key in the background, so that the next borrowers don't have to
+   * wait for a worker process to start. Keeps {@link #getPrestartInstances} idle workers beyond
+   * the ones in demand, and as many workers as were in demand at once recently, see {@link
+   * Demand#getRecentPeak}, so that invalidated workers are replaced while the key is busy.
+   */
+  private void prestart(WorkerKey key, Demand keyDemand) {
+    int target =
+        Math.min(
+            getMaxTotalPerKey(),
+            keyDemand.getTarget(clock.nanoTime(), getPrestartInstances(key)));
+    AtomicInteger keyStarting = starting.computeIfAbsent(key, k -> new AtomicInteger());
+    while (true) {
+      int inProgress = keyStarting.get();
+      if (getNumActive(key) + getNumIdle(key) + inProgress >= target) {
+        return;
+      }
+      if (keyStarting.compareAndSet(inProgress, inProgress + 1)) {
+        prestarter.execute(
+            () -> {
+              try {
+                // Creating the worker also validates it, see makeConfig(). The pool doesn't
+                // create more than getMaxTotalPerKey() workers of a key.
+                addObject(key);
+                if (isClosed()) {
+                  clear(key);
+                }
+              } catch (Exception e) {
+                if (!isClosed()) {
+                  logger.atWarning().withCause(e).log("Could not start worker for %s", key);
+                }
+              } finally {
+                keyStarting.decrementAndGet();
+              }
+            });
+      }
+    }
+  }
+
+  @Override
+  public void close() {
+    if (prestarter != null) {
+      prestarter.shutdownNow();
+    }
+    super.close();
+  }
+
+  /**
+   * The number of workers of one key that are borrowed or waited for, and the most that were at
+   * once recently. The peak decays by half every {@link #DEMAND_HALF_LIFE} while demand is lower.
+   */
+  @ThreadSafe
+  static final class Demand {
+    @GuardedBy("this")
+    private int current;
+
+    @GuardedBy("this")
+    private int peak;
+
+    @GuardedBy("this")
+    private long peakNanos;
+
+    synchronized void increment(long nanos) {
+      current++;
+      if (current >= getRecentPeak(nanos)) {
+        peak = current;
+        peakNanos = nanos;
+      }
+    }
+
+    synchronized void decrement() {
+      current--;
+    }
+
+    /** Returns the peak demand, halved for every {@link #DEMAND_HALF_LIFE} since it was reached. */
+    synchronized int getRecentPeak(long nanos) {
+      long halvings = Math.max(0, (nanos - peakNanos) / DEMAND_HALF_LIFE.toNanos());
+      return Math.max(current, halvings >= Integer.SIZE ? 0 : peak >> halvings);
+    }
+
+    /** Returns how many workers the key needs, with {@code idle} workers beyond those in demand. */
+    synchronized int getTarget(long nanos, int idle) {
+      return Math.max(getRecentPeak(nanos), current + idle);
+    }
   }
 
   /**
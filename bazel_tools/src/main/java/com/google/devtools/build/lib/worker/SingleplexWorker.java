@@ -118,6 +118,11 @@ class SingleplexWorker extends Worker {
         case PROTO:
           workerProtocol = new ProtoWorkerProtocol(process.getOutputStream(), recordingInputStream);
           break;
+        case PROTO_SHARED_MEMORY:
+          workerProtocol =
+              ProtoWorkerProtocol.withSharedPayloads(
+                  process.getOutputStream(), recordingInputStream, logFile);
+          break;
       }
     }
   }
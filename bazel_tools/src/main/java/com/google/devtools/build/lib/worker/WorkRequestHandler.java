@@ -40,7 +40,10 @@ import java.util.function.BiFunction;
 public class WorkRequestHandler implements AutoCloseable {
   /** Contains the logic for reading {@link WorkRequest}s and writing {@link WorkResponse}s. */
   public interface WorkerMessageProcessor {
-    /** Reads the next incoming request from this worker's stdin. */
+    /**
+     * Reads the next incoming request from this worker's stdin, including the parts that Bazel
+     * passed through a shared file, if any.
+     */
     WorkRequest readWorkRequest() throws IOException;
 
     /**
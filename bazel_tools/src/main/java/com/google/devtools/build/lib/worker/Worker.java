@@ -25,6 +25,7 @@ import java.io.IOException;
 import java.util.Optional;
 import java.util.Set;
 import java.util.SortedMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * An abstract superclass for persistent workers. Workers execute actions in long-running processes
@@ -38,6 +39,8 @@ public abstract class Worker {
   protected final int workerId;
   /** The path of the log file for this worker. */
   protected final Path logFile;
+  /** How many requests this worker has been sent. */
+  private final AtomicInteger requestCount = new AtomicInteger();
 
   public Worker(WorkerKey workerKey, int workerId, Path logFile) {
     this.workerKey = workerKey;
@@ -53,6 +56,11 @@ public abstract class Worker {
     return this.workerId;
   }
 
+  /** Counts a request sent to this worker, and returns how many requests it was sent before. */
+  int countRequest() {
+    return requestCount.getAndIncrement();
+  }
+
   /** Returns the path of the log file for this worker. */
   public Path getLogFile() {
     return logFile;
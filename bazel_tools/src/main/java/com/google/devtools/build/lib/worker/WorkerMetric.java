@@ -14,6 +14,7 @@
 package com.google.devtools.build.lib.worker;
 
 import com.google.devtools.build.lib.buildeventstream.BuildEventStreamProtos.BuildMetrics.WorkerMetrics;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
@@ -23,6 +24,12 @@ import java.util.List;
  * com.google.devtools.build.lib.buildeventstream.BuildEventStreamProtos.BuildMetrics.WorkerMetrics}
  */
 public final class WorkerMetric {
+  /**
+   * How many requests a worker handles before it counts as warmed up. The first requests of a JVM
+   * worker run mostly interpreted code and are much slower than the later ones.
+   */
+  static final int WARMUP_REQUESTS = 10;
+
   private final int workerId;
   private final long processId;
   private final String mnemonic;
@@ -32,6 +39,11 @@ public final class WorkerMetric {
 
   private List<WorkerStat> workerStats;
 
+  private int warmupRequestCount;
+  private Duration warmupRequestTime = Duration.ZERO;
+  private int steadyRequestCount;
+  private Duration steadyRequestTime = Duration.ZERO;
+
   /** Worker measurement of used memory. */
   public static class WorkerStat {
     private final int usedMemoryInKB;
@@ -66,6 +78,21 @@ public final class WorkerMetric {
     this.workerStats.add(workerStat);
   }
 
+  /**
+   * Records the execution time of a request of this worker.
+   *
+   * @param requestsBefore how many requests the worker handled before this one, since it started
+   */
+  public synchronized void addRequest(int requestsBefore, Duration executionTime) {
+    if (requestsBefore < WARMUP_REQUESTS) {
+      warmupRequestCount++;
+      warmupRequestTime = warmupRequestTime.plus(executionTime);
+    } else {
+      steadyRequestCount++;
+      steadyRequestTime = steadyRequestTime.plus(executionTime);
+    }
+  }
+
   public void setIsMeasurable(boolean isMeasurable) {
     this.isMeasurable = isMeasurable;
   }
@@ -110,6 +137,12 @@ public final class WorkerMetric {
     builder.setMnemonic(mnemonic);
     builder.setIsSandbox(isSandboxed);
     builder.setIsMultiplex(isMultiplex);
+    synchronized (this) {
+      builder.setWarmupRequestCount(warmupRequestCount);
+      builder.setWarmupRequestTimeInMs(warmupRequestTime.toMillis());
+      builder.setSteadyRequestCount(steadyRequestCount);
+      builder.setSteadyRequestTimeInMs(steadyRequestTime.toMillis());
+    }
 
     WorkerMetrics.WorkerStats.Builder statsBuilder = WorkerMetrics.WorkerStats.newBuilder();
     for (WorkerStat workerStat : workerStats) {
@@ -126,7 +126,8 @@ public class WorkerModule extends BlazeModule {
             workerFactory,
             options.workerMaxInstances,
             options.workerMaxMultiplexInstances,
-            options.highPriorityWorkers);
+            options.highPriorityWorkers,
+            options.workerPrestartInstances);
 
     // If the config changed compared to the last run, we have to create a new pool.
     if (workerPool == null || !newConfig.equals(workerPool.getWorkerPoolConfig())) {
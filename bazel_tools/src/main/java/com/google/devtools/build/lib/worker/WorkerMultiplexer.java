@@ -167,6 +167,11 @@ public class WorkerMultiplexer {
           case PROTO:
             workerProtocol = new ProtoWorkerProtocol(process.getOutputStream(), recordingStream);
             break;
+          case PROTO_SHARED_MEMORY:
+            workerProtocol =
+                ProtoWorkerProtocol.withSharedPayloads(
+                    process.getOutputStream(), recordingStream, logFile);
+            break;
         }
       }
       String id = workerKey.getMnemonic() + "-" + workerKey.hashCode();
@@ -242,6 +247,13 @@ public class WorkerMultiplexer {
       for (Semaphore semaphore : responseChecker.values()) {
         semaphore.release();
       }
+      if (workerProtocol != null) {
+        try {
+          workerProtocol.close();
+        } catch (IOException e) {
+          report("Failed to close the protocol of " + workerKey.getMnemonic() + ": " + e);
+        }
+      }
       // Read this for detailed explanation: http://www.ibm.com/developerworks/library/j-jtp05236/
       if (wasInterrupted) {
         Thread.currentThread().interrupt(); // preserve interrupted status
@@ -122,6 +122,22 @@ public class WorkerOptions extends OptionsBase {
       allowMultiple = true)
   public List<Map.Entry<String, Integer>> workerMaxMultiplexInstances;
 
+  @Option(
+      name = "experimental_worker_prestart_instances",
+      converter = MultiResourceConverter.class,
+      defaultValue = "null",
+      documentationCategory = OptionDocumentationCategory.UNDOCUMENTED,
+      effectTags = {OptionEffectTag.HOST_MACHINE_RESOURCE_OPTIMIZATIONS},
+      help =
+          "How many idle worker processes to start in the background ahead of demand, per worker"
+              + " key. Workers that are lost are also replaced in the background, up to the most"
+              + " workers of the key that were in use or waited for at once recently, and never"
+              + " beyond --worker_max_instances. May be specified as [name=value] to give a"
+              + " different value per worker mnemonic. \"=value\" sets a default for unspecified"
+              + " mnemonics. 0, the default, starts workers only when an action needs one.",
+      allowMultiple = true)
+  public List<Map.Entry<String, Integer>> workerPrestartInstances;
+
   @Option(
       name = "high_priority_workers",
       defaultValue = "null",
@@ -14,6 +14,7 @@
 package com.google.devtools.build.lib.worker;
 
 import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.devtools.build.lib.worker.WorkerOptions.MultiResourceConverter;
@@ -67,12 +68,18 @@ final class WorkerPool {
     Map<String, Integer> config = createConfigFromOptions(workerPoolConfig.getWorkerMaxInstances());
     Map<String, Integer> multiplexConfig =
         createConfigFromOptions(workerPoolConfig.getWorkerMaxMultiplexInstances());
+    ImmutableMap<String, Integer> prestartConfig =
+        createConfigFromOptions(workerPoolConfig.getWorkerPrestartInstances(), /*defaultValue=*/ 0);
 
     workerPools =
-        createWorkerPools(workerPoolConfig.getWorkerFactory(), config, DEFAULT_MAX_WORKERS);
+        createWorkerPools(
+            workerPoolConfig.getWorkerFactory(), config, prestartConfig, DEFAULT_MAX_WORKERS);
     multiplexPools =
         createWorkerPools(
-            workerPoolConfig.getWorkerFactory(), multiplexConfig, DEFAULT_MAX_MULTIPLEX_WORKERS);
+            workerPoolConfig.getWorkerFactory(),
+            multiplexConfig,
+            prestartConfig,
+            DEFAULT_MAX_MULTIPLEX_WORKERS);
   }
 
   public WorkerPoolConfig getWorkerPoolConfig() {
@@ -86,6 +93,12 @@ final class WorkerPool {
   @Nonnull
   private static ImmutableMap<String, Integer> createConfigFromOptions(
       List<Entry<String, Integer>> options) {
+    return createConfigFromOptions(options, MultiResourceConverter.DEFAULT_VALUE);
+  }
+
+  @Nonnull
+  private static ImmutableMap<String, Integer> createConfigFromOptions(
+      List<Entry<String, Integer>> options, int defaultValue) {
     LinkedHashMap<String, Integer> newConfigBuilder = new LinkedHashMap<>();
     for (Map.Entry<String, Integer> entry : options) {
       newConfigBuilder.put(entry.getKey(), entry.getValue());
@@ -94,19 +107,23 @@ final class WorkerPool {
     if (!newConfigBuilder.containsKey("")) {
       // Empty string gives the number of workers for any type of worker not explicitly specified.
       // If no value is given, use the default, 2.
-      newConfigBuilder.put("", MultiResourceConverter.DEFAULT_VALUE);
+      newConfigBuilder.put("", defaultValue);
     }
 
     return ImmutableMap.copyOf(newConfigBuilder);
   }
 
   private static ImmutableMap<String, SimpleWorkerPool> createWorkerPools(
-      WorkerFactory factory, Map<String, Integer> config, int defaultMaxWorkers) {
+      WorkerFactory factory,
+      Map<String, Integer> config,
+      ImmutableMap<String, Integer> prestartConfig,
+      int defaultMaxWorkers) {
     ImmutableMap.Builder<String, SimpleWorkerPool> workerPoolsBuilder = ImmutableMap.builder();
     config.forEach(
-        (key, value) -> workerPoolsBuilder.put(key, new SimpleWorkerPool(factory, value)));
+        (key, value) ->
+            workerPoolsBuilder.put(key, new SimpleWorkerPool(factory, value, prestartConfig)));
     if (!config.containsKey("")) {
-      workerPoolsBuilder.put("", new SimpleWorkerPool(factory, defaultMaxWorkers));
+      workerPoolsBuilder.put("", new SimpleWorkerPool(factory, defaultMaxWorkers, prestartConfig));
     }
     return workerPoolsBuilder.build();
   }
@@ -205,16 +222,32 @@ final class WorkerPool {
     private final List<Entry<String, Integer>> workerMaxInstances;
     private final List<Entry<String, Integer>> workerMaxMultiplexInstances;
     private final List<String> highPriorityWorkers;
+    private final List<Entry<String, Integer>> workerPrestartInstances;
 
     WorkerPoolConfig(
         WorkerFactory workerFactory,
         List<Entry<String, Integer>> workerMaxInstances,
         List<Entry<String, Integer>> workerMaxMultiplexInstances,
         List<String> highPriorityWorkers) {
+      this(
+          workerFactory,
+          workerMaxInstances,
+          workerMaxMultiplexInstances,
+          highPriorityWorkers,
+          ImmutableList.of());
+    }
+
+    WorkerPoolConfig(
+        WorkerFactory workerFactory,
+        List<Entry<String, Integer>> workerMaxInstances,
+        List<Entry<String, Integer>> workerMaxMultiplexInstances,
+        List<String> highPriorityWorkers,
+        List<Entry<String, Integer>> workerPrestartInstances) {
       this.workerFactory = workerFactory;
       this.workerMaxInstances = workerMaxInstances;
       this.workerMaxMultiplexInstances = workerMaxMultiplexInstances;
       this.highPriorityWorkers = highPriorityWorkers;
+      this.workerPrestartInstances = workerPrestartInstances;
     }
 
     public WorkerFactory getWorkerFactory() {
@@ -233,6 +266,10 @@ final class WorkerPool {
       return highPriorityWorkers;
     }
 
+    public List<Entry<String, Integer>> getWorkerPrestartInstances() {
+      return workerPrestartInstances;
+    }
+
     @Override
     public boolean equals(Object o) {
       if (this == o) {
@@ -245,13 +282,18 @@ final class WorkerPool {
       return workerFactory.equals(that.workerFactory)
           && workerMaxInstances.equals(that.workerMaxInstances)
           && workerMaxMultiplexInstances.equals(that.workerMaxMultiplexInstances)
-          && highPriorityWorkers.equals(that.highPriorityWorkers);
+          && highPriorityWorkers.equals(that.highPriorityWorkers)
+          && workerPrestartInstances.equals(that.workerPrestartInstances);
     }
 
     @Override
     public int hashCode() {
       return Objects.hash(
-          workerFactory, workerMaxInstances, workerMaxMultiplexInstances, highPriorityWorkers);
+          workerFactory,
+          workerMaxInstances,
+          workerMaxMultiplexInstances,
+          highPriorityWorkers,
+          workerPrestartInstances);
     }
   }
 }
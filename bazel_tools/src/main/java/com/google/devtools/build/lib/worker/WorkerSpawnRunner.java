@@ -479,7 +479,13 @@ final class WorkerSpawnRunner implements SpawnRunner {
             throw createUnparsableResponseException(recordingStreamMessage, worker.getLogFile(), e);
           }
         }
-        spawnMetrics.setExecutionWallTime(executionStopwatch.elapsed());
+        Duration executionTime = executionStopwatch.elapsed();
+        spawnMetrics.setExecutionWallTime(executionTime);
+        int requestsBefore = worker.countRequest();
+        WorkerMetric workerMetric = workerIdToWorkerMetric.get(worker.getWorkerId());
+        if (workerMetric != null) {
+          workerMetric.addRequest(requestsBefore, executionTime);
+        }
       }
 
       if (response == null) {
@@ -0,0 +1,108 @@
+// Copyright 2026 The Bazel Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.google.devtools.build.skyframe;
+
+import com.google.common.annotations.VisibleForTesting;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * An {@link InMemoryGraph} that stores the edges of done nodes as packed arrays of integer ids.
+ *
+ * <p>Every key in the graph is assigned a dense id by a {@link SkyKeyIndex}. When a node finishes
+ * evaluating, its direct and reverse deps are re-encoded as {@code int[]}s of those ids (see {@link
+ * CompactInMemoryNodeEntry}). Primitive arrays are smaller than the nested arrays and lists they
+ * replace and, more importantly, the garbage collector never has to trace through them, which makes
+ * full collections of a large graph much cheaper. Edges are decoded on demand when read.
+ *
+ * <p>Nodes whose reverse deps are modified other than by adding to them are unpacked and recorded
+ * here; {@link #compactInflatedNodes} packs them again and should be called after each evaluation.
+ *
+ * <p>Ids of removed nodes are not reused until {@link #releaseRemovedKeys} is called, since nodes
+ * that have not been deleted may still refer to them in their packed reverse deps until the
+ * deletion pass has finished removing those edges.
+ */
+final class CompactInMemoryGraph extends InMemoryGraphImpl {
+
+  private final SkyKeyIndex keyIndex = new SkyKeyIndex();
+  private final ConcurrentHashMap<CompactInMemoryNodeEntry, Boolean> inflatedNodes =
+      new ConcurrentHashMap<>();
+  private final ConcurrentLinkedQueue<Integer> removedIds = new ConcurrentLinkedQueue<>();
+
+  CompactInMemoryGraph() {
+    super(/*keepEdges=*/ true);
+  }
+
+  @Override
+  protected NodeEntry newNodeEntry(SkyKey key) {
+    return new CompactInMemoryNodeEntry(this, keyIndex.allocate(key));
+  }
+
+  @Override
+  public void remove(SkyKey skyKey) {
+    NodeEntry entry = nodeMap.remove(skyKey);
+    if (entry instanceof CompactInMemoryNodeEntry) {
+      CompactInMemoryNodeEntry compactEntry = (CompactInMemoryNodeEntry) entry;
+      inflatedNodes.remove(compactEntry);
+      removedIds.add(compactEntry.getId());
+    }
+  }
+
+  /** Returns the id of {@code key}, or -1 if it is not in the graph. */
+  int idOf(SkyKey key) {
+    NodeEntry entry = nodeMap.get(key);
+    return entry instanceof CompactInMemoryNodeEntry
+        ? ((CompactInMemoryNodeEntry) entry).getId()
+        : -1;
+  }
+
+  /** Returns the key with the given id. */
+  SkyKey keyOf(int id) {
+    return keyIndex.get(id);
+  }
+
+  /** Records that {@code entry} has unpacked its edges and should be compacted again. */
+  void scheduleCompaction(CompactInMemoryNodeEntry entry) {
+    inflatedNodes.put(entry, Boolean.TRUE);
+  }
+
+  /**
+   * Packs the edges of done nodes that were unpacked since the last call. Must not be called
+   * concurrently with an evaluation.
+   */
+  void compactInflatedNodes() {
+    inflatedNodes.forEachKey(/*parallelismThreshold=*/ 1024, CompactInMemoryNodeEntry::compact);
+    inflatedNodes.clear();
+  }
+
+  /**
+   * Makes the ids of removed nodes available for reuse. Must only be called once all edges to
+   * removed nodes have been deleted from the graph, i.e. after a deletion pass has completed.
+   */
+  void releaseRemovedKeys() {
+    for (Integer id = removedIds.poll(); id != null; id = removedIds.poll()) {
+      keyIndex.release(id);
+    }
+  }
+
+  @VisibleForTesting
+  int getInflatedNodeCount() {
+    return inflatedNodes.size();
+  }
+
+  @VisibleForTesting
+  int getKeyCount() {
+    return keyIndex.size();
+  }
+}
@@ -0,0 +1,304 @@
+// Copyright 2026 The Bazel Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.google.devtools.build.skyframe;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.devtools.build.lib.util.GroupedList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import javax.annotation.Nullable;
+
+/**
+ * An {@link InMemoryNodeEntry} owned by a {@link CompactInMemoryGraph} that stores the edges of a
+ * done node as arrays of the ids its graph assigned to the keys.
+ *
+ * <p>Once done, {@link #directDeps} holds a packed {@code int[]}: a group with a single element is
+ * stored as that element's id, and a group of {@code n > 1} elements as {@code -n} followed by the
+ * ids of the elements. {@link #reverseDeps} holds a packed {@code int[]} whose first element is the
+ * number of reverse deps, followed by their ids and possibly some spare capacity, so that reverse
+ * deps can be added to a done node without unpacking it.
+ *
+ * <p>All other operations on reverse deps go through {@link ReverseDepsUtility}, which works on the
+ * object representation of {@link InMemoryNodeEntry}. Such operations unpack the reverse deps in
+ * place and ask the graph to pack them again once the current evaluation is over. In practice this
+ * only happens to nodes that are being dirtied, re-evaluated or deleted.
+ */
+final class CompactInMemoryNodeEntry extends InMemoryNodeEntry {
+
+  private static final int[] NO_DEPS = new int[0];
+
+  private static final @GroupedList.Compressed Object EMPTY_COMPRESSED_DEPS =
+      new GroupedList<SkyKey>().compress();
+
+  private final CompactInMemoryGraph graph;
+  private final int id;
+
+  CompactInMemoryNodeEntry(CompactInMemoryGraph graph, int id) {
+    this.graph = graph;
+    this.id = id;
+  }
+
+  /** Returns the id of this node's key in the owning graph. */
+  int getId() {
+    return id;
+  }
+
+  @Override
+  public synchronized Set<SkyKey> setValue(
+      SkyValue value, Version graphVersion, @Nullable Version maxTransitiveSourceVersion)
+      throws InterruptedException {
+    Set<SkyKey> reverseDepsToSignal =
+        super.setValue(value, graphVersion, maxTransitiveSourceVersion);
+    compact();
+    return reverseDepsToSignal;
+  }
+
+  @Override
+  public synchronized NodeValueAndRdepsToSignal markClean() throws InterruptedException {
+    NodeValueAndRdepsToSignal result = super.markClean();
+    compact();
+    return result;
+  }
+
+  @Override
+  synchronized void restoreDone(SkyValue value, @GroupedList.Compressed Object compressedDeps) {
+    super.restoreDone(value, compressedDeps);
+    compact();
+  }
+
+  @Override
+  public DependencyState addReverseDepAndCheckIfDone(SkyKey reverseDep) {
+    if (reverseDep != null) {
+      synchronized (this) {
+        if (isDone() && reverseDeps instanceof int[]) {
+          int reverseDepId = graph.idOf(reverseDep);
+          if (reverseDepId >= 0) {
+            appendPackedReverseDep(reverseDepId);
+            return DependencyState.DONE;
+          }
+        }
+      }
+    }
+    return super.addReverseDepAndCheckIfDone(reverseDep);
+  }
+
+  @Override
+  public synchronized Collection<SkyKey> getReverseDepsForDoneEntry() {
+    if (!(reverseDeps instanceof int[])) {
+      return super.getReverseDepsForDoneEntry();
+    }
+    ImmutableList<SkyKey> reverseDepsList = unpackReverseDeps((int[]) reverseDeps);
+    ImmutableSet<SkyKey> set = ImmutableSet.copyOf(reverseDepsList);
+    Preconditions.checkState(
+        set.size() == reverseDepsList.size(),
+        "Duplicate reverse deps present in %s: %s",
+        reverseDepsList,
+        this);
+    return set;
+  }
+
+  @Override
+  public synchronized @GroupedList.Compressed Object getCompressedDirectDepsForDoneEntry() {
+    if (!(directDeps instanceof int[])) {
+      return super.getCompressedDirectDepsForDoneEntry();
+    }
+    Preconditions.checkState(isDone(), "no deps until done. NodeEntry: %s", this);
+    return unpackDirectDeps((int[]) directDeps);
+  }
+
+  @Override
+  public synchronized boolean hasAtLeastOneDep() {
+    if (!(directDeps instanceof int[])) {
+      return super.hasAtLeastOneDep();
+    }
+    Preconditions.checkState(isDone(), "no deps until done. NodeEntry: %s", this);
+    return ((int[]) directDeps).length > 0;
+  }
+
+  @Override
+  synchronized Object getReverseDepsRawForReverseDepsUtil() {
+    if (reverseDeps instanceof int[]) {
+      int[] packed = (int[]) reverseDeps;
+      switch (packed[0]) {
+        case 0:
+          reverseDeps = ImmutableList.of();
+          break;
+        case 1:
+          reverseDeps = graph.keyOf(packed[1]);
+          break;
+        default:
+          reverseDeps = new ArrayList<>(unpackReverseDeps(packed));
+      }
+      graph.scheduleCompaction(this);
+    }
+    return super.getReverseDepsRawForReverseDepsUtil();
+  }
+
+  /**
+   * Packs the edges of this node if it is done. Pending reverse dep operations are consolidated
+   * first. Edges that refer to keys not in the graph are left as they are.
+   */
+  synchronized void compact() {
+    if (!isDone()) {
+      return;
+    }
+    if (getReverseDepsDataToConsolidateForReverseDepsUtil() != null) {
+      ReverseDepsUtility.getReverseDeps(this, /*checkConsistency=*/ false);
+    }
+    if (directDeps != null && !(directDeps instanceof int[])) {
+      int[] packed = packDirectDeps(GroupedList.castAsCompressed(directDeps));
+      if (packed != null) {
+        directDeps = packed;
+      }
+    }
+    if (!(reverseDeps instanceof int[])) {
+      int[] packed = packReverseDeps(reverseDeps);
+      if (packed != null) {
+        reverseDeps = packed;
+      }
+    }
+  }
+
+  @Override
+  protected synchronized InMemoryNodeEntry cloneNodeEntry(InMemoryNodeEntry newEntry) {
+    super.cloneNodeEntry(newEntry);
+    newEntry.directDeps = getCompressedDirectDepsForDoneEntry();
+    return newEntry;
+  }
+
+  @Override
+  protected synchronized MoreObjects.ToStringHelper toStringHelper() {
+    if (!(reverseDeps instanceof int[])) {
+      return super.toStringHelper().add("id", id);
+    }
+    // Don't unpack the reverse deps just to print them.
+    return MoreObjects.toStringHelper(this)
+        .add("identity", System.identityHashCode(this))
+        .add("id", id)
+        .add("value", value)
+        .add("lastChangedVersion", lastChangedVersion)
+        .add("lastEvaluatedVersion", lastEvaluatedVersion)
+        .add("directDeps", GroupedList.create(getCompressedDirectDepsForDoneEntry()))
+        .add("reverseDeps", unpackReverseDeps((int[]) reverseDeps))
+        .add("dirtyBuildingState", dirtyBuildingState);
+  }
+
+  private void appendPackedReverseDep(int reverseDepId) {
+    int[] packed = (int[]) reverseDeps;
+    int size = packed[0];
+    if (size + 1 == packed.length) {
+      packed = Arrays.copyOf(packed, packed.length + Math.max(1, packed.length >> 1));
+      reverseDeps = packed;
+    }
+    packed[size + 1] = reverseDepId;
+    packed[0] = size + 1;
+  }
+
+  @Nullable
+  @SuppressWarnings("unchecked") // Cast to List<SkyKey>.
+  private int[] packDirectDeps(@GroupedList.Compressed Object compressed) {
+    if (compressed == EMPTY_COMPRESSED_DEPS) {
+      return NO_DEPS;
+    }
+    if (!compressed.getClass().isArray()) {
+      int depId = graph.idOf((SkyKey) compressed);
+      return depId < 0 ? null : new int[] {depId};
+    }
+    Object[] groups = (Object[]) compressed;
+    int length = 0;
+    for (Object group : groups) {
+      length += group instanceof List ? ((List<?>) group).size() + 1 : 1;
+    }
+    int[] packed = new int[length];
+    int i = 0;
+    for (Object group : groups) {
+      if (group instanceof List) {
+        List<SkyKey> keys = (List<SkyKey>) group;
+        packed[i++] = -keys.size();
+        for (SkyKey key : keys) {
+          int depId = graph.idOf(key);
+          if (depId < 0) {
+            return null;
+          }
+          packed[i++] = depId;
+        }
+      } else {
+        int depId = graph.idOf((SkyKey) group);
+        if (depId < 0) {
+          return null;
+        }
+        packed[i++] = depId;
+      }
+    }
+    return packed;
+  }
+
+  private @GroupedList.Compressed Object unpackDirectDeps(int[] packed) {
+    if (packed.length == 0) {
+      return EMPTY_COMPRESSED_DEPS;
+    }
+    if (packed.length == 1) {
+      return GroupedList.createCompressedSingleton(graph.keyOf(packed[0]));
+    }
+    List<Object> groups = new ArrayList<>();
+    for (int i = 0; i < packed.length; ) {
+      int next = packed[i++];
+      if (next >= 0) {
+        groups.add(graph.keyOf(next));
+        continue;
+      }
+      ImmutableList.Builder<SkyKey> group = ImmutableList.builderWithExpectedSize(-next);
+      for (int j = 0; j < -next; j++) {
+        group.add(graph.keyOf(packed[i++]));
+      }
+      groups.add(group.build());
+    }
+    return GroupedList.castAsCompressed(groups.toArray());
+  }
+
+  @Nullable
+  @SuppressWarnings("unchecked") // Cast to List<SkyKey>.
+  private int[] packReverseDeps(Object raw) {
+    if (!(raw instanceof List)) {
+      int reverseDepId = graph.idOf((SkyKey) raw);
+      return reverseDepId < 0 ? null : new int[] {1, reverseDepId};
+    }
+    List<SkyKey> keys = (List<SkyKey>) raw;
+    int[] packed = new int[keys.size() + 1];
+    packed[0] = keys.size();
+    int i = 1;
+    for (SkyKey key : keys) {
+      int reverseDepId = graph.idOf(key);
+      if (reverseDepId < 0) {
+        return null;
+      }
+      packed[i++] = reverseDepId;
+    }
+    return packed;
+  }
+
+  private ImmutableList<SkyKey> unpackReverseDeps(int[] packed) {
+    ImmutableList.Builder<SkyKey> keys = ImmutableList.builderWithExpectedSize(packed[0]);
+    for (int i = 1; i <= packed[0]; i++) {
+      keys.add(graph.keyOf(packed[i]));
+    }
+    return keys.build();
+  }
+}
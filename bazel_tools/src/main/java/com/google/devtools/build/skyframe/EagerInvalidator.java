@@ -71,8 +71,22 @@ public final class EagerInvalidator {
       Iterable<SkyKey> diff,
       DirtyTrackingProgressReceiver progressReceiver,
       InvalidationState state) {
+    return createInvalidatingVisitorIfNeeded(
+        graph, diff, progressReceiver, state, /*batched=*/ false);
+  }
+
+  @VisibleForTesting
+  @Nullable
+  static DirtyingNodeVisitor createInvalidatingVisitorIfNeeded(
+      QueryableGraph graph,
+      Iterable<SkyKey> diff,
+      DirtyTrackingProgressReceiver progressReceiver,
+      InvalidationState state,
+      boolean batched) {
     state.update(diff);
-    return state.isEmpty() ? null : new DirtyingNodeVisitor(graph, progressReceiver, state);
+    return state.isEmpty()
+        ? null
+        : new DirtyingNodeVisitor(graph, progressReceiver, state, batched);
   }
 
   /** Invalidates given values and their upward transitive closure in the graph if necessary. */
@@ -82,8 +96,23 @@ public final class EagerInvalidator {
       DirtyTrackingProgressReceiver progressReceiver,
       InvalidationState state)
       throws InterruptedException {
+    invalidate(graph, diff, progressReceiver, state, /*batched=*/ false);
+  }
+
+  /**
+   * Invalidates given values and their upward transitive closure in the graph if necessary. If
+   * {@code batched} is true, the graph is traversed in waves of sharded batches, which is faster
+   * when many values have changed. See {@link DirtyingNodeVisitor}.
+   */
+  public static void invalidate(
+      QueryableGraph graph,
+      Iterable<SkyKey> diff,
+      DirtyTrackingProgressReceiver progressReceiver,
+      InvalidationState state,
+      boolean batched)
+      throws InterruptedException {
     DirtyingNodeVisitor visitor =
-        createInvalidatingVisitorIfNeeded(graph, diff, progressReceiver, state);
+        createInvalidatingVisitorIfNeeded(graph, diff, progressReceiver, state, batched);
     if (visitor != null) {
       visitor.run();
     }
@@ -35,6 +35,7 @@ public class EvaluationContext {
   private final boolean isExecutionPhase;
   private final int cpuHeavySkyKeysThreadPoolSize;
   private final int executionPhaseThreadPoolSize;
+  private final boolean useBatchedInvalidation;
 
   protected EvaluationContext(
       int numThreads,
@@ -44,7 +45,8 @@ public class EvaluationContext {
       boolean useForkJoinPool,
       boolean isExecutionPhase,
       int cpuHeavySkyKeysThreadPoolSize,
-      int executionPhaseThreadPoolSize) {
+      int executionPhaseThreadPoolSize,
+      boolean useBatchedInvalidation) {
     Preconditions.checkArgument(0 < numThreads, "numThreads must be positive");
     this.numThreads = numThreads;
     this.executorServiceSupplier = executorServiceSupplier;
@@ -54,6 +56,7 @@ public class EvaluationContext {
     this.isExecutionPhase = isExecutionPhase;
     this.cpuHeavySkyKeysThreadPoolSize = cpuHeavySkyKeysThreadPoolSize;
     this.executionPhaseThreadPoolSize = executionPhaseThreadPoolSize;
+    this.useBatchedInvalidation = useBatchedInvalidation;
   }
 
   public int getParallelism() {
@@ -84,7 +87,8 @@ public class EvaluationContext {
           this.useForkJoinPool,
           this.isExecutionPhase,
           this.cpuHeavySkyKeysThreadPoolSize,
-          this.executionPhaseThreadPoolSize);
+          this.executionPhaseThreadPoolSize,
+          this.useBatchedInvalidation);
     }
   }
 
@@ -118,6 +122,14 @@ public class EvaluationContext {
     return isExecutionPhase;
   }
 
+  /**
+   * Returns whether nodes invalidated since the last evaluation should be dirtied in sharded
+   * batches rather than one reverse dep edge at a time. This pays off when many nodes changed.
+   */
+  public boolean getUseBatchedInvalidation() {
+    return useBatchedInvalidation;
+  }
+
   public static Builder newBuilder() {
     return new Builder();
   }
@@ -132,6 +144,7 @@ public class EvaluationContext {
     private int cpuHeavySkyKeysThreadPoolSize;
     private int executionJobsThreadPoolSize = 0;
     private boolean isExecutionPhase = false;
+    private boolean useBatchedInvalidation;
 
     private Builder() {}
 
@@ -144,6 +157,7 @@ public class EvaluationContext {
       this.useForkJoinPool = evaluationContext.useForkJoinPool;
       this.executionJobsThreadPoolSize = evaluationContext.executionPhaseThreadPoolSize;
       this.cpuHeavySkyKeysThreadPoolSize = evaluationContext.cpuHeavySkyKeysThreadPoolSize;
+      this.useBatchedInvalidation = evaluationContext.useBatchedInvalidation;
       return this;
     }
 
@@ -187,6 +201,11 @@ public class EvaluationContext {
       return this;
     }
 
+    public Builder setUseBatchedInvalidation(boolean useBatchedInvalidation) {
+      this.useBatchedInvalidation = useBatchedInvalidation;
+      return this;
+    }
+
     public EvaluationContext build() {
       return new EvaluationContext(
           numThreads,
@@ -196,7 +215,8 @@ public class EvaluationContext {
           useForkJoinPool,
           isExecutionPhase,
           cpuHeavySkyKeysThreadPoolSize,
-          executionJobsThreadPoolSize);
+          executionJobsThreadPoolSize,
+          useBatchedInvalidation);
     }
   }
 }
@@ -0,0 +1,329 @@
+// Copyright 2026 The Bazel Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.google.devtools.build.skyframe;
+
+import com.google.common.collect.ImmutableList;
+import com.google.devtools.build.lib.util.GroupedList;
+import com.google.devtools.build.skyframe.QueryableGraph.Reason;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.zip.CRC32;
+import javax.annotation.Nullable;
+
+/**
+ * Writes the done nodes of an {@link InMemoryGraph} to a stream, and restores them into an empty
+ * graph, so that a new process can start from the graph of a previous one.
+ *
+ * <p>A node is written only if it is done, its value carries no error, events or postables, it is
+ * not the {@link ErrorTransienceValue} node, which is re-evaluated by every evaluation, it is
+ * accepted by the caller's filter, its key and value can be serialized, and all of its direct deps
+ * are written too. The last condition keeps the restored graph closed under dependencies, which is
+ * what makes it usable incrementally: restored nodes have minimal versions, so once the caller has
+ * invalidated the nodes whose inputs may have changed since the snapshot was written (typically by
+ * checking file state nodes against the file system), the next evaluation re-evaluates the nodes
+ * that depend on a change and marks the others clean, as for any other incremental build.
+ *
+ * <p>Nodes are written in dependency order, and refer to their deps by their position in the
+ * stream. A truncated snapshot therefore still restores to a consistent graph.
+ *
+ * <p>Restoring deserializes the keys and rebuilds the edges, which invalidation needs before the
+ * first evaluation. Values are deserialized by the node when they are first read, so a command
+ * only pays for the values it uses. The values that are never read are written back to the next
+ * snapshot as they were read.
+ */
+public final class InMemoryGraphSnapshot {
+
+  /** Serializes the keys and values of a snapshot. */
+  public interface Serializer {
+    /** Returns the serialized form of {@code keyOrValue}, or null if it cannot be serialized. */
+    @Nullable
+    byte[] serialize(Object keyOrValue);
+
+    Object deserialize(byte[] bytes) throws IOException;
+  }
+
+  private static final int MAGIC = 0x534b5953;
+  private static final int FORMAT_VERSION = 2;
+
+  private static final int END_OF_NODES = -1;
+  private static final int NOT_WRITTEN = -1;
+  private static final int BEING_VISITED = -2;
+
+  private InMemoryGraphSnapshot() {}
+
+  /**
+   * Writes the eligible nodes of {@code graph} to {@code out}. The {@code fingerprint} identifies
+   * the writer, for instance by its binary; {@link #read} rejects snapshots with a different one.
+   * Must not be called concurrently with an evaluation.
+   *
+   * @return the number of nodes written
+   */
+  static int write(
+      InMemoryGraph graph,
+      Predicate<SkyKey> filter,
+      Serializer serializer,
+      String fingerprint,
+      OutputStream out)
+      throws IOException {
+    DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+    data.writeInt(MAGIC);
+    data.writeInt(FORMAT_VERSION);
+    data.writeUTF(fingerprint);
+    Writer writer = new Writer(graph.getAllValues(), filter, serializer, data);
+    for (SkyKey key : graph.getAllValues().keySet()) {
+      writer.visit(key);
+    }
+    data.writeInt(END_OF_NODES);
+    data.flush();
+    return writer.written;
+  }
+
+  /**
+   * Restores the nodes of a snapshot written by {@link #write} into {@code graph}, which must not
+   * contain any of them. If the snapshot ends prematurely, the nodes read up to that point are
+   * kept and an {@link IOException} is thrown.
+   *
+   * @return the number of nodes restored
+   * @throws IOException if the snapshot cannot be read, or was written with a different format or
+   *     fingerprint
+   */
+  static int read(
+      InMemoryGraph graph, Serializer serializer, String fingerprint, InputStream in)
+      throws IOException {
+    DataInputStream data = new DataInputStream(new BufferedInputStream(in));
+    if (data.readInt() != MAGIC || data.readInt() != FORMAT_VERSION) {
+      throw new IOException("Not a graph snapshot of a supported format");
+    }
+    String snapshotFingerprint = data.readUTF();
+    if (!snapshotFingerprint.equals(fingerprint)) {
+      throw new IOException(
+          String.format(
+              "Graph snapshot was written by %s, not %s", snapshotFingerprint, fingerprint));
+    }
+    List<SkyKey> keys = new ArrayList<>();
+    for (int keyLength = data.readInt(); keyLength != END_OF_NODES; keyLength = data.readInt()) {
+      SkyKey key = (SkyKey) serializer.deserialize(readBytes(data, keyLength));
+      byte[] valueBytes = readBytes(data, data.readInt());
+      // Values are deserialized later, when a failure can no longer be handled, so a corrupt one
+      // is detected here.
+      if (data.readInt() != checksum(valueBytes)) {
+        throw new IOException("Corrupt value of " + key);
+      }
+      GroupedList<SkyKey> deps = new GroupedList<>();
+      int numGroups = data.readInt();
+      for (int i = 0; i < numGroups; i++) {
+        int groupSize = data.readInt();
+        List<SkyKey> group = new ArrayList<>(groupSize);
+        for (int j = 0; j < groupSize; j++) {
+          group.add(keys.get(data.readInt()));
+        }
+        deps.appendGroup(group);
+      }
+      InMemoryNodeEntry entry =
+          (InMemoryNodeEntry)
+              graph.createIfAbsentBatch(null, Reason.OTHER, ImmutableList.of(key)).get(key);
+      entry.restoreDone(new SerializedValue(valueBytes, serializer), deps.compress());
+      for (SkyKey dep : deps.getAllElementsAsIterable()) {
+        ((InMemoryNodeEntry) graph.get(null, Reason.OTHER, dep)).addReverseDepAndCheckIfDone(key);
+      }
+      keys.add(key);
+    }
+    return keys.size();
+  }
+
+  private static int checksum(byte[] bytes) {
+    CRC32 crc = new CRC32();
+    crc.update(bytes);
+    return (int) crc.getValue();
+  }
+
+  /**
+   * The value of a restored node, as it was read from the snapshot. {@link InMemoryNodeEntry}
+   * replaces it by its deserialized form when the value is first read.
+   */
+  static final class SerializedValue implements SkyValue {
+    private final byte[] bytes;
+    private final Serializer serializer;
+    @Nullable private SkyValue value;
+
+    private SerializedValue(byte[] bytes, Serializer serializer) {
+      this.bytes = bytes;
+      this.serializer = serializer;
+    }
+
+    /** Returns the deserialized value, which is the same instance on every call. */
+    synchronized SkyValue deserialize() {
+      if (value == null) {
+        try {
+          value = (SkyValue) serializer.deserialize(bytes);
+        } catch (IOException e) {
+          // The bytes were checked on restore and were written by the same binary.
+          throw new IllegalStateException("Cannot deserialize a value restored from a snapshot", e);
+        }
+      }
+      return value;
+    }
+
+    @Override
+    public String toString() {
+      return "SerializedValue{" + bytes.length + " bytes}";
+    }
+  }
+
+  private static byte[] readBytes(DataInputStream data, int length) throws IOException {
+    if (length < 0) {
+      throw new EOFException("Bad record length " + length);
+    }
+    byte[] bytes = new byte[length];
+    data.readFully(bytes);
+    return bytes;
+  }
+
+  /**
+   * Writes nodes after their deps with an iterative depth-first traversal, since the graph can be
+   * far deeper than the stack.
+   */
+  private static final class Writer {
+    private final Map<SkyKey, ? extends NodeEntry> nodes;
+    private final Predicate<SkyKey> filter;
+    private final Serializer serializer;
+    private final DataOutputStream data;
+    // The position of each visited key in the stream, or NOT_WRITTEN or BEING_VISITED.
+    private final Map<SkyKey, Integer> positions = new HashMap<>();
+    private int written;
+
+    Writer(
+        Map<SkyKey, ? extends NodeEntry> nodes,
+        Predicate<SkyKey> filter,
+        Serializer serializer,
+        DataOutputStream data) {
+      this.nodes = nodes;
+      this.filter = filter;
+      this.serializer = serializer;
+      this.data = data;
+    }
+
+    void visit(SkyKey root) throws IOException {
+      if (positions.containsKey(root)) {
+        return;
+      }
+      Deque<Frame> stack = new ArrayDeque<>();
+      push(root, stack);
+      while (!stack.isEmpty()) {
+        Frame frame = stack.peek();
+        if (frame.eligible && frame.nextDep < frame.deps.size()) {
+          SkyKey dep = frame.deps.get(frame.nextDep++);
+          Integer position = positions.get(dep);
+          if (position == null) {
+            push(dep, stack);
+          } else if (position < 0) {
+            frame.eligible = false;
+          }
+          continue;
+        }
+        stack.pop();
+        int position = frame.eligible ? writeNode(frame) : NOT_WRITTEN;
+        positions.put(frame.key, position);
+        if (position == NOT_WRITTEN && !stack.isEmpty()) {
+          stack.peek().eligible = false;
+        }
+      }
+    }
+
+    private void push(SkyKey key, Deque<Frame> stack) {
+      InMemoryNodeEntry entry = (InMemoryNodeEntry) nodes.get(key);
+      if (entry == null
+          || !entry.isDone()
+          || key.equals(ErrorTransienceValue.KEY)
+          || !filter.test(key)) {
+        markNotWritten(key, stack);
+        return;
+      }
+      SkyValue value = entry.getValueMaybeSerialized();
+      if (value instanceof ValueWithMetadata) {
+        markNotWritten(key, stack);
+        return;
+      }
+      positions.put(key, BEING_VISITED);
+      stack.push(
+          new Frame(
+              key,
+              value,
+              GroupedList.create(entry.getCompressedDirectDepsForDoneEntry())));
+    }
+
+    private void markNotWritten(SkyKey key, Deque<Frame> stack) {
+      positions.put(key, NOT_WRITTEN);
+      if (!stack.isEmpty()) {
+        stack.peek().eligible = false;
+      }
+    }
+
+    private int writeNode(Frame frame) throws IOException {
+      byte[] keyBytes = serializer.serialize(frame.key);
+      byte[] valueBytes = null;
+      if (keyBytes != null) {
+        valueBytes =
+            frame.value instanceof SerializedValue
+                ? ((SerializedValue) frame.value).bytes
+                : serializer.serialize(frame.value);
+      }
+      if (valueBytes == null) {
+        return NOT_WRITTEN;
+      }
+      data.writeInt(keyBytes.length);
+      data.write(keyBytes);
+      data.writeInt(valueBytes.length);
+      data.write(valueBytes);
+      data.writeInt(checksum(valueBytes));
+      data.writeInt(frame.groupedDeps.listSize());
+      for (List<SkyKey> group : frame.groupedDeps) {
+        data.writeInt(group.size());
+        for (SkyKey dep : group) {
+          data.writeInt(positions.get(dep));
+        }
+      }
+      return written++;
+    }
+  }
+
+  private static final class Frame {
+    private final SkyKey key;
+    private final SkyValue value;
+    private final GroupedList<SkyKey> groupedDeps;
+    private final List<SkyKey> deps;
+    private int nextDep;
+    private boolean eligible = true;
+
+    Frame(SkyKey key, SkyValue value, GroupedList<SkyKey> groupedDeps) {
+      this.key = key;
+      this.value = value;
+      this.groupedDeps = groupedDeps;
+      this.deps = ImmutableList.copyOf(groupedDeps.getAllElementsAsIterable());
+    }
+  }
+}
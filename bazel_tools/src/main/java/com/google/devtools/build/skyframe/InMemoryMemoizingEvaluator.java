@@ -31,6 +31,9 @@ import com.google.devtools.build.skyframe.InvalidatingNodeVisitor.DeletingInvali
 import com.google.devtools.build.skyframe.InvalidatingNodeVisitor.DirtyingInvalidationState;
 import com.google.devtools.build.skyframe.InvalidatingNodeVisitor.InvalidationState;
 import com.google.devtools.build.skyframe.QueryableGraph.Reason;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.PrintStream;
 import java.time.Duration;
 import java.util.HashMap;
@@ -107,12 +110,40 @@ public final class InMemoryMemoizingEvaluator implements MemoizingEvaluator {
       EventFilter eventFilter,
       EmittedEventState emittedEventState,
       boolean keepEdges) {
+    this(
+        skyFunctions,
+        differencer,
+        progressReceiver,
+        graphInconsistencyReceiver,
+        eventFilter,
+        emittedEventState,
+        keepEdges,
+        /*compactDoneNodes=*/ false);
+  }
+
+  /**
+   * Creates an evaluator. If {@code compactDoneNodes} is true, the edges of done nodes are stored
+   * as packed arrays of integer ids instead of lists of keys, which shrinks the heap and the amount
+   * of work for the garbage collector at the cost of decoding edges when they are read. This
+   * requires {@code keepEdges}.
+   */
+  public InMemoryMemoizingEvaluator(
+      Map<SkyFunctionName, SkyFunction> skyFunctions,
+      Differencer differencer,
+      @Nullable EvaluationProgressReceiver progressReceiver,
+      GraphInconsistencyReceiver graphInconsistencyReceiver,
+      EventFilter eventFilter,
+      EmittedEventState emittedEventState,
+      boolean keepEdges,
+      boolean compactDoneNodes) {
+    Preconditions.checkArgument(
+        keepEdges || !compactDoneNodes, "Compacting done nodes requires keeping edges");
     this.skyFunctions = ImmutableMap.copyOf(skyFunctions);
     this.differencer = Preconditions.checkNotNull(differencer);
     this.progressReceiver = new DirtyTrackingProgressReceiver(progressReceiver);
     this.graphInconsistencyReceiver = Preconditions.checkNotNull(graphInconsistencyReceiver);
     this.eventFilter = eventFilter;
-    this.graph = new InMemoryGraphImpl(keepEdges);
+    this.graph = compactDoneNodes ? new CompactInMemoryGraph() : new InMemoryGraphImpl(keepEdges);
     this.emittedEventState = emittedEventState;
     this.keepEdges = keepEdges;
   }
@@ -183,7 +214,10 @@ public final class InMemoryMemoizingEvaluator implements MemoizingEvaluator {
         pruneInjectedValues(valuesToInject);
         invalidate(valuesToInject.keySet());
 
-        performInvalidation();
+        performInvalidation(evaluationContext.getUseBatchedInvalidation());
+        if (graph instanceof CompactInMemoryGraph) {
+          ((CompactInMemoryGraph) graph).releaseRemovedKeys();
+        }
         injectValues(intVersion);
       }
 
@@ -217,6 +251,11 @@ public final class InMemoryMemoizingEvaluator implements MemoizingEvaluator {
           .setWalkableGraph(new DelegatingWalkableGraph(graph))
           .build();
     } finally {
+      if (graph instanceof CompactInMemoryGraph) {
+        try (SilentCloseable c = Profiler.instance().profile("CompactInMemoryGraph.compact")) {
+          ((CompactInMemoryGraph) graph).compactInflatedNodes();
+        }
+      }
       lastGraphVersion = intVersion;
       setAndCheckEvaluateState(false, roots);
     }
@@ -280,14 +319,15 @@ public final class InMemoryMemoizingEvaluator implements MemoizingEvaluator {
     valuesToInject = new HashMap<>();
   }
 
-  private void performInvalidation() throws InterruptedException {
+  private void performInvalidation(boolean batched) throws InterruptedException {
     EagerInvalidator.delete(graph, valuesToDelete, progressReceiver, deleterState, keepEdges);
     // Note that clearing the valuesToDelete would not do an internal resizing. Therefore, if any
     // build has a large set of dirty values, subsequent operations (even clearing) will be slower.
     // Instead, just start afresh with a new LinkedHashSet.
     valuesToDelete = new LinkedHashSet<>();
 
-    EagerInvalidator.invalidate(graph, valuesToDirty, progressReceiver, invalidatorState);
+    EagerInvalidator.invalidate(
+        graph, valuesToDirty, progressReceiver, invalidatorState, batched);
     // Ditto.
     valuesToDirty = new LinkedHashSet<>();
   }
@@ -317,6 +357,54 @@ public final class InMemoryMemoizingEvaluator implements MemoizingEvaluator {
     return graph.getDoneValues();
   }
 
+  /**
+   * Writes a snapshot of the done nodes accepted by {@code filter} to {@code out}. See {@link
+   * InMemoryGraphSnapshot} for which nodes are included. Nodes with pending invalidations or
+   * injections are left out.
+   *
+   * @return the number of nodes written
+   * @throws IOException if writing fails, or if an interrupted invalidation has yet to be completed
+   */
+  public int writeSnapshot(
+      Predicate<SkyKey> filter,
+      InMemoryGraphSnapshot.Serializer serializer,
+      String fingerprint,
+      OutputStream out)
+      throws IOException {
+    Preconditions.checkState(keepEdges, "Snapshots require keeping edges");
+    if (!invalidatorState.isEmpty() || !deleterState.isEmpty()) {
+      throw new IOException("Graph has an incomplete invalidation");
+    }
+    Set<SkyKey> pendingDirty = valuesToDirty;
+    Set<SkyKey> pendingDelete = valuesToDelete;
+    Map<SkyKey, SkyValue> pendingInject = valuesToInject;
+    return InMemoryGraphSnapshot.write(
+        graph,
+        key ->
+            filter.test(key)
+                && !pendingDirty.contains(key)
+                && !pendingDelete.contains(key)
+                && !pendingInject.containsKey(key),
+        serializer,
+        fingerprint,
+        out);
+  }
+
+  /**
+   * Restores a snapshot written by {@link #writeSnapshot} into the graph, which must be empty. The
+   * caller is responsible for invalidating the restored nodes whose inputs may have changed since
+   * the snapshot was written before the next evaluation.
+   *
+   * @return the number of nodes restored
+   */
+  public int restoreSnapshot(
+      InMemoryGraphSnapshot.Serializer serializer, String fingerprint, InputStream in)
+      throws IOException {
+    Preconditions.checkState(keepEdges, "Snapshots require keeping edges");
+    Preconditions.checkState(graph.valuesSize() == 0, "Snapshots can only be restored when empty");
+    return InMemoryGraphSnapshot.read(graph, serializer, fingerprint, in);
+  }
+
   private static boolean isDone(@Nullable NodeEntry entry) {
     return entry != null && entry.isDone();
   }
@@ -425,4 +513,25 @@ public final class InMemoryMemoizingEvaluator implements MemoizingEvaluator {
       };
 
   public static final EvaluatorSupplier SUPPLIER = InMemoryMemoizingEvaluator::new;
+
+  /**
+   * Like {@link #SUPPLIER}, but creates evaluators that compact done nodes whenever edges are kept.
+   */
+  public static final EvaluatorSupplier COMPACT_SUPPLIER =
+      (skyFunctions,
+          differencer,
+          progressReceiver,
+          graphInconsistencyReceiver,
+          eventFilter,
+          emittedEventState,
+          keepEdges) ->
+          new InMemoryMemoizingEvaluator(
+              skyFunctions,
+              differencer,
+              progressReceiver,
+              graphInconsistencyReceiver,
+              eventFilter,
+              emittedEventState,
+              keepEdges,
+              /*compactDoneNodes=*/ keepEdges);
 }
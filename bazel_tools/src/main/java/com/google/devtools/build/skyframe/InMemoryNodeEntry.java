@@ -181,15 +181,38 @@ public class InMemoryNodeEntry implements NodeEntry {
   @Override
   public SkyValue getValue() {
     Preconditions.checkState(isDone(), "no value until done. ValueEntry: %s", this);
-    return ValueWithMetadata.justValue(value);
+    return ValueWithMetadata.justValue(getValueMaybeWithMetadata());
   }
 
   @Override
   @Nullable
   public SkyValue getValueMaybeWithMetadata() {
+    SkyValue value = this.value;
+    return value instanceof InMemoryGraphSnapshot.SerializedValue
+        ? deserializeValue((InMemoryGraphSnapshot.SerializedValue) value)
+        : value;
+  }
+
+  /**
+   * Like {@link #getValueMaybeWithMetadata}, but returns a value restored from a graph snapshot as
+   * it was read if it was not deserialized yet.
+   */
+  @Nullable
+  SkyValue getValueMaybeSerialized() {
     return value;
   }
 
+  private SkyValue deserializeValue(InMemoryGraphSnapshot.SerializedValue serialized) {
+    SkyValue deserialized = serialized.deserialize();
+    synchronized (this) {
+      // The node may have been dirtied in the meantime.
+      if (value == serialized) {
+        value = deserialized;
+      }
+    }
+    return deserialized;
+  }
+
   @Override
   public SkyValue toValue() {
     if (isDone()) {
@@ -219,7 +242,7 @@ public class InMemoryNodeEntry implements NodeEntry {
   }
 
   /** Returns the compressed {@link GroupedList} of direct deps. Can only be called when done. */
-  public final synchronized @GroupedList.Compressed Object getCompressedDirectDepsForDoneEntry() {
+  public synchronized @GroupedList.Compressed Object getCompressedDirectDepsForDoneEntry() {
     assertKeepDeps();
     Preconditions.checkState(isDone(), "no deps until done. NodeEntry: %s", this);
     Preconditions.checkNotNull(directDeps, "deps can't be null: %s", this);
@@ -472,7 +495,9 @@ public class InMemoryNodeEntry implements NodeEntry {
           KeepEdgesPolicy.NONE.equals(keepEdges())
               ? EMPTY_LIST
               : GroupedList.create(getCompressedDirectDepsForDoneEntry());
-      dirtyBuildingState = createDirtyBuildingStateForDoneNode(dirtyType, directDeps, value);
+      dirtyBuildingState =
+          createDirtyBuildingStateForDoneNode(
+              dirtyType, directDeps, getValueMaybeWithMetadata());
       value = null;
       this.directDeps = null;
       return new MarkedDirtyResult(
@@ -671,6 +696,21 @@ public class InMemoryNodeEntry implements NodeEntry {
     return newEntry;
   }
 
+  /**
+   * Makes this new entry done with the given value and direct deps without evaluating it. Its
+   * versions are left minimal, so that it is re-evaluated if any of its deps changes in a later
+   * evaluation. Reverse deps must be added separately. Used to restore graph snapshots, whose
+   * values are deserialized on first use.
+   */
+  synchronized void restoreDone(SkyValue value, @GroupedList.Compressed Object compressedDeps) {
+    Preconditions.checkState(
+        this.value == null && dirtyBuildingState == null && directDeps == null,
+        "Entry is not new: %s",
+        this);
+    directDeps = compressedDeps;
+    this.value = value;
+  }
+
   /**
    * Do not use except in custom evaluator implementations! Added only temporarily.
    *
@@ -24,31 +24,47 @@ import javax.annotation.Nullable;
 public class SequentialBuildDriver implements BuildDriver {
   private final MemoizingEvaluator memoizingEvaluator;
   private IntVersion curVersion;
+  private boolean useBatchedInvalidation;
 
   public SequentialBuildDriver(MemoizingEvaluator evaluator) {
     this.memoizingEvaluator = Preconditions.checkNotNull(evaluator);
     this.curVersion = IntVersion.of(0);
   }
 
+  /**
+   * Makes subsequent evaluations use batched invalidation, as if their {@link EvaluationContext}
+   * asked for it.
+   */
+  public void setUseBatchedInvalidation(boolean useBatchedInvalidation) {
+    this.useBatchedInvalidation = useBatchedInvalidation;
+  }
+
   @Override
   public <T extends SkyValue> EvaluationResult<T> evaluate(
       Iterable<? extends SkyKey> roots, EvaluationContext evaluationContext)
       throws InterruptedException {
+    EvaluationContext context =
+        useBatchedInvalidation && !evaluationContext.getUseBatchedInvalidation()
+            ? EvaluationContext.newBuilder()
+                .copyFrom(evaluationContext)
+                .setUseBatchedInvalidation(true)
+                .build()
+            : evaluationContext;
     try {
       return memoizingEvaluator.evaluate(
           roots,
           curVersion,
-          evaluationContext.getExecutorServiceSupplier().isPresent()
-              ? evaluationContext
+          context.getExecutorServiceSupplier().isPresent()
+              ? context
               : EvaluationContext.newBuilder()
-                  .copyFrom(evaluationContext)
-                  .setNumThreads(evaluationContext.getParallelism())
+                  .copyFrom(context)
+                  .setNumThreads(context.getParallelism())
                   .setExecutorServiceSupplier(
                       () ->
                           AbstractQueueVisitor.createExecutorService(
-                              evaluationContext.getParallelism(),
+                              context.getParallelism(),
                               "skyframe-evaluator",
-                              evaluationContext.getUseForkJoinPool()))
+                              context.getUseForkJoinPool()))
                   .build());
     } finally {
       curVersion = curVersion.next();
@@ -0,0 +1,116 @@
+// Copyright 2026 The Bazel Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.google.devtools.build.skyframe;
+
+import com.google.common.base.Preconditions;
+import com.google.devtools.build.lib.concurrent.ThreadSafety.ThreadSafe;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Assigns dense, non-negative integer ids to {@link SkyKey}s and maps them back.
+ *
+ * <p>Keys are stored in fixed-size chunks, so looking up a key by id is two array reads and
+ * growing the index never copies existing keys. Ids of released keys are reused.
+ *
+ * <p>Callers must publish an id to other threads through a happens-before edge that follows the
+ * call to {@link #allocate}, such as by storing it in a concurrent map. {@link #get} does not
+ * synchronize otherwise.
+ */
+@ThreadSafe
+final class SkyKeyIndex {
+
+  private static final int CHUNK_BITS = 14;
+  private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+  private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+  private volatile SkyKey[][] chunks = new SkyKey[16][];
+  private final AtomicInteger nextId = new AtomicInteger();
+  private final AtomicInteger liveIds = new AtomicInteger();
+
+  private final Object lock = new Object();
+  // Guarded by lock.
+  private int[] freeIds = new int[16];
+  // Guarded by lock.
+  private int freeIdCount = 0;
+  // Lets allocate() skip the lock while there are no ids to reuse, which is the common case.
+  private volatile boolean hasFreeIds = false;
+
+  /** Returns a fresh id for {@code key}. */
+  int allocate(SkyKey key) {
+    Preconditions.checkNotNull(key);
+    int id = hasFreeIds ? pollFreeId() : -1;
+    if (id < 0) {
+      id = nextId.getAndIncrement();
+      Preconditions.checkState(id >= 0, "Too many keys");
+    }
+    chunkFor(id)[id & CHUNK_MASK] = key;
+    liveIds.incrementAndGet();
+    return id;
+  }
+
+  /** Forgets the key with the given id. The id may be handed out again by {@link #allocate}. */
+  void release(int id) {
+    chunks[id >>> CHUNK_BITS][id & CHUNK_MASK] = null;
+    liveIds.decrementAndGet();
+    synchronized (lock) {
+      if (freeIdCount == freeIds.length) {
+        freeIds = Arrays.copyOf(freeIds, freeIds.length * 2);
+      }
+      freeIds[freeIdCount++] = id;
+      hasFreeIds = true;
+    }
+  }
+
+  /** Returns the key with the given id. */
+  SkyKey get(int id) {
+    return Preconditions.checkNotNull(chunks[id >>> CHUNK_BITS][id & CHUNK_MASK], id);
+  }
+
+  /** Returns the number of ids currently allocated. */
+  int size() {
+    return liveIds.get();
+  }
+
+  private int pollFreeId() {
+    synchronized (lock) {
+      if (freeIdCount == 0) {
+        return -1;
+      }
+      int id = freeIds[--freeIdCount];
+      hasFreeIds = freeIdCount > 0;
+      return id;
+    }
+  }
+
+  private SkyKey[] chunkFor(int id) {
+    int chunkIndex = id >>> CHUNK_BITS;
+    SkyKey[][] current = chunks;
+    if (chunkIndex < current.length && current[chunkIndex] != null) {
+      return current[chunkIndex];
+    }
+    synchronized (lock) {
+      current = chunks;
+      if (chunkIndex >= current.length || current[chunkIndex] == null) {
+        // Always publish a new outer array so that readers of the volatile field see the chunk.
+        SkyKey[][] grown =
+            Arrays.copyOf(current, Math.max(current.length, Integer.highestOneBit(chunkIndex) * 2));
+        grown[chunkIndex] = new SkyKey[CHUNK_SIZE];
+        chunks = grown;
+        current = grown;
+      }
+      return current[chunkIndex];
+    }
+  }
+}
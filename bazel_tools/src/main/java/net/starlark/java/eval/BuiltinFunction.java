@@ -73,6 +73,15 @@ public final class BuiltinFunction implements StarlarkCallable {
   public Object fastcall(StarlarkThread thread, Object[] positional, Object[] named)
       throws EvalException, InterruptedException {
     MethodDescriptor desc = getMethodDescriptor(thread.getSemantics());
+    if (named.length == 0 && desc.acceptsPositional(positional.length)) {
+      // Fast path: pass the positional arguments through without building a vector.
+      ParamDescriptor[] parameters = desc.getParameters();
+      int self = obj instanceof String ? 1 : 0;
+      for (int i = 0; i < positional.length; i++) {
+        checkParamValue(parameters[self + i], positional[i]);
+      }
+      return desc.callPositional(obj, positional, thread.mutability());
+    }
     Object[] vector = getArgumentVector(thread, desc, positional, named);
     return desc.call(
         obj instanceof String ? StringModule.INSTANCE : obj, vector, thread.mutability());
@@ -0,0 +1,633 @@
+// Copyright 2026 The Bazel Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package net.starlark.java.eval;
+
+import com.google.common.collect.Iterables;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import javax.annotation.Nullable;
+import net.starlark.java.syntax.Identifier;
+import net.starlark.java.syntax.Location;
+import net.starlark.java.syntax.Resolver;
+import net.starlark.java.syntax.TokenKind;
+
+/**
+ * The compiled form of the body of a Starlark function, and the interpreter that executes it.
+ *
+ * <p>{@link BytecodeCompiler} translates the syntax tree of a resolved function into instructions
+ * for a stack machine. Local variables are addressed by the slot the resolver assigned them;
+ * literals, predeclared values and the data of each call, attribute and function site live in a
+ * constant pool. For each instruction the compiler records the location that {@link Eval} would
+ * report if the corresponding operation failed, so the two evaluators produce the same values,
+ * effects, errors and call stacks.
+ *
+ * <p>A function is compiled on its first call by a thread whose semantics enable {@link
+ * StarlarkSemantics#EXPERIMENTAL_STARLARK_BYTECODE}. The top-level statements of a file run only
+ * once and are always evaluated by {@link Eval}, as are the frames of a thread under a debugger.
+ */
+final class Bytecode {
+
+  // Each instruction is an opcode followed by its operands. Stack effects are shown
+  // as [before] -> [after], with the top of the stack on the right.
+
+  static final int STEPS = 0; // n: adds n computation steps to the thread
+  static final int CONST = 1; // k: [] -> [consts[k]]
+  static final int LOCAL = 2; // i k: [] -> [locals[i]]; consts[k] is the Identifier
+  static final int CELL = 3; // i k: [] -> [locals[i].x]
+  static final int FREE = 4; // i k: [] -> [fn.freevars[i].x]
+  static final int GLOBAL = 5; // i k: [] -> [fn.globals[i]]
+  static final int UNDEFINED = 6; // k: fails; a predeclared or universal name has no value
+  static final int SET_LOCAL = 7; // i: [x] -> []
+  static final int SET_CELL = 8; // i: [x] -> []
+  static final int SET_GLOBAL = 9; // i: [x] -> []
+  static final int POP = 10; // [x] -> []
+  static final int DUP = 11; // [x] -> [x x]
+  static final int DUP2 = 12; // [x y] -> [x y x y]
+  static final int SWAP = 13; // [x y] -> [y x]
+  static final int ROT3 = 14; // [x y z] -> [z x y]
+  static final int BINARY = 15; // op: [x y] -> [x op y]
+  static final int BINARY_CONST = 16; // op k: [x] -> [x op consts[k]]
+  static final int INPLACE = 17; // op: [x y] -> [x op= y]
+  static final int UNARY = 18; // op: [x] -> [op x]
+  static final int JUMP = 19; // pc
+  static final int JUMP_IF_FALSE = 20; // pc: [x] -> []
+  static final int JUMP_IF_FALSE_OR_POP = 21; // pc: [x] -> [x] if x is false, else []
+  static final int JUMP_IF_TRUE_OR_POP = 22; // pc: [x] -> [x] if x is true, else []
+  static final int DOT = 23; // k: [x] -> [x.name]; consts[k] is a DotSite
+  static final int SET_FIELD = 24; // k: [v x] -> []; consts[k] is the field name
+  static final int INDEX = 25; // [x i] -> [x[i]]
+  static final int SET_INDEX = 26; // [v x i] -> []
+  static final int SLICE = 27; // [x start stop step] -> [x[start:stop:step]]
+  static final int CALL = 28; // k: [fn args...] -> [fn(args...)]; consts[k] is a CallSite
+  static final int CHECK_STAR_ARG = 29; // [x] -> [x]
+  static final int CHECK_STARSTAR_ARG = 30; // [x] -> [x]
+  static final int LIST = 31; // n: [x1...xn] -> [[x1...xn]]
+  static final int TUPLE = 32; // n: [x1...xn] -> [(x1...xn)]
+  static final int NEW_LIST = 33; // [] -> [[]]
+  static final int LIST_APPEND = 34; // [list x] -> [list]
+  static final int NEW_DICT = 35; // [] -> [{}]
+  static final int DICT_PUT = 36; // [dict k v] -> [dict]; fails on a duplicate key
+  static final int DICT_COMP_PUT = 37; // [dict k v] -> [dict]
+  static final int CHECK_HASHABLE = 38; // [k] -> [k]
+  static final int UNPACK = 39; // n: [x] -> [iterator over the n elements of x]
+  static final int UNPACK_NEXT = 40; // [iterator] -> [iterator x]
+  static final int ITER = 41; // [x] -> []; starts a loop over x
+  // pc steps i: checks for interruption; then, if the innermost loop has a next element x,
+  // adds steps and sets locals[i] = x, or pushes x if i < 0; otherwise jumps to pc
+  static final int FOR_NEXT = 42;
+  static final int END_ITER = 43; // ends the innermost loop
+  static final int MAKE_FUNCTION = 44; // k: [defaults...] -> [fn]; consts[k] is a FunctionSite
+  static final int CHECK_INTERRUPT = 45;
+  static final int RETURN = 46; // [x] -> returns x
+
+  private static final TokenKind[] TOKEN_KINDS = TokenKind.values();
+  private static final Object[] EMPTY = {};
+
+  private final Module module; // the module whose predeclared values were folded into consts
+  private final int[] code;
+  private final Object[] consts;
+  private final Location[] errorLocations; // indexed by the pc of an opcode; may contain nulls
+  private final int maxStack;
+  private final int maxLoops;
+
+  Bytecode(
+      Module module,
+      int[] code,
+      Object[] consts,
+      Location[] errorLocations,
+      int maxStack,
+      int maxLoops) {
+    this.module = module;
+    this.code = code;
+    this.consts = consts;
+    this.errorLocations = errorLocations;
+    this.maxStack = maxStack;
+    this.maxLoops = maxLoops;
+  }
+
+  /**
+   * The compiled code of a function, produced on first use. There is one instance per {@link
+   * Resolver.Function}, shared by all of its closures whether they were created by bytecode or by
+   * the tree-walking {@link Eval}.
+   */
+  static final class Lazy {
+    private final Resolver.Function rfn;
+
+    // Racy: compilation is deterministic, so a thread that compiles a second copy is harmless,
+    // and the fields of a Bytecode are final.
+    @Nullable private Bytecode code;
+
+    private Lazy(Resolver.Function rfn) {
+      this.rfn = rfn;
+    }
+
+    /** Returns the compiled code of {@code rfn}. */
+    static Lazy of(Resolver.Function rfn) {
+      Object code = rfn.getCompiledCode();
+      if (code instanceof Lazy) {
+        return (Lazy) code;
+      }
+      Lazy lazy = new Lazy(rfn);
+      rfn.setCompiledCode(lazy); // racy but benign
+      return lazy;
+    }
+
+    Bytecode get(Module module) {
+      Bytecode code = this.code;
+      if (code == null || code.module != module) {
+        code = BytecodeCompiler.compile(rfn, module);
+        this.code = code;
+      }
+      return code;
+    }
+  }
+
+  /** The attribute name of a dot expression, and an inline cache of its method lookup. */
+  static final class DotSite {
+    final String name;
+    @Nullable private DotCacheEntry cache; // racy; entries are immutable
+
+    DotSite(String name) {
+      this.name = name;
+    }
+  }
+
+  // The method (or null for none) that CallUtils returned for a class and semantics.
+  private static final class DotCacheEntry {
+    final Class<?> cls;
+    final StarlarkSemantics semantics;
+    @Nullable final MethodDescriptor method;
+
+    DotCacheEntry(Class<?> cls, StarlarkSemantics semantics, @Nullable MethodDescriptor method) {
+      this.cls = cls;
+      this.semantics = semantics;
+      this.method = method;
+    }
+  }
+
+  /** The shape of the arguments of a call expression. */
+  static final class CallSite {
+    final Location lparenLocation;
+    final int npos; // number of positional arguments
+    final String[] names; // names of the keyword arguments
+    final boolean hasStar;
+    final boolean hasStarStar;
+
+    CallSite(
+        Location lparenLocation, int npos, String[] names, boolean hasStar, boolean hasStarStar) {
+      this.lparenLocation = lparenLocation;
+      this.npos = npos;
+      this.names = names;
+      this.hasStar = hasStar;
+      this.hasStarStar = hasStarStar;
+    }
+  }
+
+  /** A nested def statement or lambda expression. */
+  static final class FunctionSite {
+    final Resolver.Function rfn;
+    final int ndefaults; // number of default values on the stack
+
+    FunctionSite(Resolver.Function rfn, int ndefaults) {
+      this.rfn = rfn;
+      this.ndefaults = ndefaults;
+    }
+  }
+
+  /** Executes the body of function {@code fn}, whose frame {@code fr} is on top of the stack. */
+  Object exec(StarlarkThread.Frame fr, StarlarkFunction fn)
+      throws EvalException, InterruptedException {
+    StarlarkThread thread = fr.thread;
+    Object[] locals = fr.locals;
+    int[] code = this.code;
+    Object[] consts = this.consts;
+    Object[] stack = new Object[maxStack];
+    int sp = 0;
+    // The sequences being iterated over by the enclosing loops, and their iterators.
+    Object[] loopSeqs = maxLoops == 0 ? EMPTY : new Object[maxLoops];
+    Iterator<?>[] loopIters = maxLoops == 0 ? null : new Iterator<?>[maxLoops];
+    int loops = 0;
+    int pc = 0;
+    int opPc = 0;
+    try {
+      while (true) {
+        opPc = pc;
+        switch (code[pc++]) {
+          case STEPS:
+            addSteps(thread, code[pc++]);
+            break;
+          case CONST:
+            stack[sp++] = consts[code[pc++]];
+            break;
+          case LOCAL:
+            stack[sp++] = checkAssigned(locals[code[pc]], consts[code[pc + 1]]);
+            pc += 2;
+            break;
+          case CELL:
+            stack[sp++] =
+                checkAssigned(((StarlarkFunction.Cell) locals[code[pc]]).x, consts[code[pc + 1]]);
+            pc += 2;
+            break;
+          case FREE:
+            stack[sp++] = checkAssigned(fn.getFreeVar(code[pc]).x, consts[code[pc + 1]]);
+            pc += 2;
+            break;
+          case GLOBAL:
+            stack[sp++] = checkAssigned(fn.getGlobal(code[pc]), consts[code[pc + 1]]);
+            pc += 2;
+            break;
+          case UNDEFINED:
+            throw notAssigned((Identifier) consts[code[pc]]);
+          case SET_LOCAL:
+            locals[code[pc++]] = stack[--sp];
+            break;
+          case SET_CELL:
+            ((StarlarkFunction.Cell) locals[code[pc++]]).x = stack[--sp];
+            break;
+          case SET_GLOBAL:
+            fn.setGlobal(code[pc++], stack[--sp]);
+            break;
+          case POP:
+            sp--;
+            break;
+          case DUP:
+            stack[sp] = stack[sp - 1];
+            sp++;
+            break;
+          case DUP2:
+            stack[sp] = stack[sp - 2];
+            stack[sp + 1] = stack[sp - 1];
+            sp += 2;
+            break;
+          case SWAP:
+            {
+              Object x = stack[sp - 2];
+              stack[sp - 2] = stack[sp - 1];
+              stack[sp - 1] = x;
+              break;
+            }
+          case ROT3:
+            {
+              Object z = stack[sp - 1];
+              stack[sp - 1] = stack[sp - 2];
+              stack[sp - 2] = stack[sp - 3];
+              stack[sp - 3] = z;
+              break;
+            }
+          case BINARY:
+            {
+              Object y = stack[--sp];
+              stack[sp - 1] =
+                  EvalUtils.binaryOp(TOKEN_KINDS[code[pc++]], stack[sp - 1], y, thread);
+              break;
+            }
+          case BINARY_CONST:
+            stack[sp - 1] =
+                EvalUtils.binaryOp(
+                    TOKEN_KINDS[code[pc]], stack[sp - 1], consts[code[pc + 1]], thread);
+            pc += 2;
+            break;
+          case INPLACE:
+            {
+              Object y = stack[--sp];
+              stack[sp - 1] = Eval.inplaceBinaryOp(fr, TOKEN_KINDS[code[pc++]], stack[sp - 1], y);
+              break;
+            }
+          case UNARY:
+            stack[sp - 1] = EvalUtils.unaryOp(TOKEN_KINDS[code[pc++]], stack[sp - 1]);
+            break;
+          case JUMP:
+            pc = code[pc];
+            break;
+          case JUMP_IF_FALSE:
+            pc = Starlark.truth(stack[--sp]) ? pc + 1 : code[pc];
+            break;
+          case JUMP_IF_FALSE_OR_POP:
+            if (Starlark.truth(stack[sp - 1])) {
+              sp--;
+              pc++;
+            } else {
+              pc = code[pc];
+            }
+            break;
+          case JUMP_IF_TRUE_OR_POP:
+            if (Starlark.truth(stack[sp - 1])) {
+              pc = code[pc];
+            } else {
+              sp--;
+              pc++;
+            }
+            break;
+          case DOT:
+            stack[sp - 1] = getattr(thread, (DotSite) consts[code[pc++]], stack[sp - 1]);
+            break;
+          case SET_FIELD:
+            {
+              Object x = stack[--sp];
+              Object v = stack[--sp];
+              EvalUtils.setField(x, (String) consts[code[pc++]], v);
+              break;
+            }
+          case INDEX:
+            {
+              Object key = stack[--sp];
+              stack[sp - 1] = EvalUtils.index(thread, stack[sp - 1], key);
+              break;
+            }
+          case SET_INDEX:
+            {
+              Object key = stack[--sp];
+              Object x = stack[--sp];
+              EvalUtils.setIndex(x, key, stack[--sp]);
+              break;
+            }
+          case SLICE:
+            {
+              sp -= 3;
+              stack[sp - 1] =
+                  Starlark.slice(
+                      thread.mutability(), stack[sp - 1], stack[sp], stack[sp + 1], stack[sp + 2]);
+              break;
+            }
+          case CALL:
+            {
+              CallSite site = (CallSite) consts[code[pc++]];
+              sp = call(fr, site, stack, sp);
+              break;
+            }
+          case CHECK_STAR_ARG:
+            {
+              Object x = stack[sp - 1];
+              if (!(x instanceof StarlarkIterable)) {
+                throw Starlark.errorf(
+                    "argument after * must be an iterable, not %s", Starlark.type(x));
+              }
+              break;
+            }
+          case CHECK_STARSTAR_ARG:
+            {
+              Object x = stack[sp - 1];
+              if (!(x instanceof Dict)) {
+                throw Starlark.errorf("argument after ** must be a dict, not %s", Starlark.type(x));
+              }
+              for (Object k : ((Dict<?, ?>) x).keySet()) {
+                if (!(k instanceof String)) {
+                  throw Starlark.errorf("keywords must be strings, not %s", Starlark.type(k));
+                }
+              }
+              break;
+            }
+          case LIST:
+          case TUPLE:
+            {
+              int n = code[pc++];
+              Object[] array = Arrays.copyOfRange(stack, sp - n, sp);
+              sp -= n;
+              stack[sp++] =
+                  code[opPc] == TUPLE
+                      ? Tuple.wrap(array)
+                      : StarlarkList.wrap(thread.mutability(), array);
+              break;
+            }
+          case NEW_LIST:
+            stack[sp++] = StarlarkList.newList(thread.mutability());
+            break;
+          case LIST_APPEND:
+            {
+              @SuppressWarnings("unchecked")
+              StarlarkList<Object> list = (StarlarkList<Object>) stack[sp - 2];
+              list.addElement(stack[--sp]);
+              break;
+            }
+          case NEW_DICT:
+            stack[sp++] = Dict.of(thread.mutability());
+            break;
+          case DICT_PUT:
+            {
+              Object v = stack[--sp];
+              Object k = stack[--sp];
+              @SuppressWarnings("unchecked")
+              Dict<Object, Object> dict = (Dict<Object, Object>) stack[sp - 1];
+              int before = dict.size();
+              dict.putEntry(k, v);
+              if (dict.size() == before) {
+                throw Starlark.errorf(
+                    "dictionary expression has duplicate key: %s", Starlark.repr(k));
+              }
+              break;
+            }
+          case DICT_COMP_PUT:
+            {
+              Object v = stack[--sp];
+              Object k = stack[--sp];
+              @SuppressWarnings("unchecked")
+              Dict<Object, Object> dict = (Dict<Object, Object>) stack[sp - 1];
+              dict.putEntry(k, v);
+              break;
+            }
+          case CHECK_HASHABLE:
+            Starlark.checkHashable(stack[sp - 1]);
+            break;
+          case UNPACK:
+            stack[sp - 1] = unpack(stack[sp - 1], code[pc++]);
+            break;
+          case UNPACK_NEXT:
+            stack[sp] = ((Iterator<?>) stack[sp - 1]).next();
+            sp++;
+            break;
+          case ITER:
+            {
+              Iterable<?> seq = Starlark.toIterable(stack[--sp]);
+              EvalUtils.addIterator(seq);
+              loopSeqs[loops] = seq;
+              loopIters[loops] = seq.iterator();
+              loops++;
+              break;
+            }
+          case FOR_NEXT:
+            {
+              thread.checkInterrupt();
+              Iterator<?> it = loopIters[loops - 1];
+              if (it.hasNext()) {
+                Object x = it.next();
+                int local = code[pc + 2];
+                if (local >= 0) {
+                  locals[local] = x;
+                } else {
+                  stack[sp++] = x;
+                }
+                addSteps(thread, code[pc + 1]);
+                pc += 3;
+              } else {
+                pc = code[pc];
+              }
+              break;
+            }
+          case END_ITER:
+            loops--;
+            EvalUtils.removeIterator(loopSeqs[loops]);
+            loopSeqs[loops] = null;
+            loopIters[loops] = null;
+            break;
+          case MAKE_FUNCTION:
+            {
+              FunctionSite site = (FunctionSite) consts[code[pc++]];
+              Object[] defaults = EMPTY;
+              if (site.ndefaults > 0) {
+                defaults = Arrays.copyOfRange(stack, sp - site.ndefaults, sp);
+                sp -= site.ndefaults;
+              }
+              stack[sp++] = newFunction(fr, fn, site, defaults);
+              break;
+            }
+          case CHECK_INTERRUPT:
+            thread.checkInterrupt();
+            break;
+          case RETURN:
+            return stack[sp - 1];
+          default:
+            throw new IllegalStateException("bad opcode " + code[opPc] + " at pc " + opPc);
+        }
+      }
+    } catch (EvalException ex) {
+      Location loc = errorLocations[opPc];
+      if (loc != null) {
+        fr.setErrorLocation(loc);
+      }
+      throw ex;
+    } finally {
+      while (loops > 0) {
+        EvalUtils.removeIterator(loopSeqs[--loops]);
+      }
+    }
+  }
+
+  private static void addSteps(StarlarkThread thread, int n) throws EvalException {
+    long steps = thread.steps + n;
+    if (steps >= thread.stepLimit) {
+      // Stop where one-at-a-time counting would have stopped.
+      thread.steps = Math.max(thread.steps + 1, thread.stepLimit);
+      throw new EvalException("Starlark computation cancelled: too many steps");
+    }
+    thread.steps = steps;
+  }
+
+  private static Object checkAssigned(@Nullable Object x, Object id) throws EvalException {
+    if (x == null) {
+      throw notAssigned((Identifier) id);
+    }
+    return x;
+  }
+
+  private static EvalException notAssigned(Identifier id) {
+    return Starlark.errorf(
+        "%s variable '%s' is referenced before assignment.",
+        id.getBinding().getScope(), id.getName());
+  }
+
+  private static Object getattr(StarlarkThread thread, DotSite site, Object x)
+      throws EvalException, InterruptedException {
+    StarlarkSemantics semantics = thread.getSemantics();
+    DotCacheEntry entry = site.cache;
+    if (entry == null || entry.cls != x.getClass() || entry.semantics != semantics) {
+      MethodDescriptor method =
+          CallUtils.getAnnotatedMethods(semantics, x.getClass()).get(site.name);
+      entry = new DotCacheEntry(x.getClass(), semantics, method);
+      site.cache = entry;
+    }
+    return Starlark.getattr(
+        thread.mutability(), semantics, x, site.name, /*defaultValue=*/ null, entry.method);
+  }
+
+  // Pops the callee and arguments of a call from the stack, and pushes its result.
+  // Returns the new stack pointer.
+  private static int call(StarlarkThread.Frame fr, CallSite site, Object[] stack, int sp)
+      throws EvalException, InterruptedException {
+    Dict<?, ?> kwargs = site.hasStarStar ? (Dict<?, ?>) stack[--sp] : null;
+    Object varargs = site.hasStar ? stack[--sp] : null;
+    String[] names = site.names;
+    Object[] named = names.length == 0 ? EMPTY : new Object[2 * names.length];
+    sp -= names.length;
+    for (int i = 0; i < names.length; i++) {
+      named[2 * i] = names[i];
+      named[2 * i + 1] = stack[sp + i];
+    }
+    int npos = site.npos;
+    Object[] positional = npos == 0 ? EMPTY : Arrays.copyOfRange(stack, sp - npos, sp);
+    sp -= npos;
+    Object fn = stack[--sp];
+
+    // f(*args)
+    if (varargs != null) {
+      ArrayList<Object> list = new ArrayList<>();
+      Collections.addAll(list, positional);
+      Iterables.addAll(list, ((Iterable<?>) varargs));
+      positional = list.toArray();
+    }
+
+    // f(**kwargs)
+    if (kwargs != null) {
+      int j = named.length;
+      named = Arrays.copyOf(named, j + 2 * kwargs.size());
+      for (Map.Entry<?, ?> e : kwargs.entrySet()) {
+        named[j++] = e.getKey();
+        named[j++] = e.getValue();
+      }
+    }
+
+    fr.setLocation(site.lparenLocation);
+    stack[sp++] = Starlark.fastcall(fr.thread, fn, positional, named);
+    return sp;
+  }
+
+  // Checks that x is a sequence of n elements, and returns an iterator over them.
+  private static Iterator<?> unpack(Object x, int n) throws EvalException {
+    int len = Starlark.len(x);
+    if (len < 0 || x instanceof String) { // strings are not iterable
+      throw Starlark.errorf(
+          "got '%s' in sequence assignment (want %d-element sequence)", Starlark.type(x), n);
+    }
+    Iterable<?> seq = Starlark.toIterable(x);
+    if (len != n) {
+      throw Starlark.errorf(
+          "too %s values to unpack (got %d, want %d)", len < n ? "few" : "many", len, n);
+    }
+    return seq.iterator();
+  }
+
+  private static StarlarkFunction newFunction(
+      StarlarkThread.Frame fr, StarlarkFunction fn, FunctionSite site, Object[] defaults) {
+    // Capture the cells of the function's free variables from the lexical environment.
+    Object[] freevars = new Object[site.rfn.getFreeVars().size()];
+    int i = 0;
+    for (Resolver.Binding bind : site.rfn.getFreeVars()) {
+      switch (bind.getScope()) {
+        case FREE:
+          freevars[i++] = fn.getFreeVar(bind.getIndex());
+          break;
+        case CELL:
+          freevars[i++] = fr.locals[bind.getIndex()];
+          break;
+        default:
+          throw new IllegalStateException("unexpected: " + bind);
+      }
+    }
+    return new StarlarkFunction(
+        site.rfn, fn.getModule(), fn.globalIndex, Tuple.wrap(defaults), Tuple.wrap(freevars));
+  }
+}
@@ -0,0 +1,790 @@
+// Copyright 2026 The Bazel Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package net.starlark.java.eval;
+
+import static net.starlark.java.eval.Bytecode.BINARY;
+import static net.starlark.java.eval.Bytecode.BINARY_CONST;
+import static net.starlark.java.eval.Bytecode.CALL;
+import static net.starlark.java.eval.Bytecode.CELL;
+import static net.starlark.java.eval.Bytecode.CHECK_HASHABLE;
+import static net.starlark.java.eval.Bytecode.CHECK_INTERRUPT;
+import static net.starlark.java.eval.Bytecode.CHECK_STARSTAR_ARG;
+import static net.starlark.java.eval.Bytecode.CHECK_STAR_ARG;
+import static net.starlark.java.eval.Bytecode.CONST;
+import static net.starlark.java.eval.Bytecode.DICT_COMP_PUT;
+import static net.starlark.java.eval.Bytecode.DICT_PUT;
+import static net.starlark.java.eval.Bytecode.DOT;
+import static net.starlark.java.eval.Bytecode.DUP;
+import static net.starlark.java.eval.Bytecode.DUP2;
+import static net.starlark.java.eval.Bytecode.END_ITER;
+import static net.starlark.java.eval.Bytecode.FOR_NEXT;
+import static net.starlark.java.eval.Bytecode.FREE;
+import static net.starlark.java.eval.Bytecode.GLOBAL;
+import static net.starlark.java.eval.Bytecode.INDEX;
+import static net.starlark.java.eval.Bytecode.INPLACE;
+import static net.starlark.java.eval.Bytecode.ITER;
+import static net.starlark.java.eval.Bytecode.JUMP;
+import static net.starlark.java.eval.Bytecode.JUMP_IF_FALSE;
+import static net.starlark.java.eval.Bytecode.JUMP_IF_FALSE_OR_POP;
+import static net.starlark.java.eval.Bytecode.JUMP_IF_TRUE_OR_POP;
+import static net.starlark.java.eval.Bytecode.LIST;
+import static net.starlark.java.eval.Bytecode.LIST_APPEND;
+import static net.starlark.java.eval.Bytecode.LOCAL;
+import static net.starlark.java.eval.Bytecode.MAKE_FUNCTION;
+import static net.starlark.java.eval.Bytecode.NEW_DICT;
+import static net.starlark.java.eval.Bytecode.NEW_LIST;
+import static net.starlark.java.eval.Bytecode.POP;
+import static net.starlark.java.eval.Bytecode.RETURN;
+import static net.starlark.java.eval.Bytecode.ROT3;
+import static net.starlark.java.eval.Bytecode.SET_CELL;
+import static net.starlark.java.eval.Bytecode.SET_FIELD;
+import static net.starlark.java.eval.Bytecode.SET_GLOBAL;
+import static net.starlark.java.eval.Bytecode.SET_INDEX;
+import static net.starlark.java.eval.Bytecode.SET_LOCAL;
+import static net.starlark.java.eval.Bytecode.SLICE;
+import static net.starlark.java.eval.Bytecode.STEPS;
+import static net.starlark.java.eval.Bytecode.SWAP;
+import static net.starlark.java.eval.Bytecode.TUPLE;
+import static net.starlark.java.eval.Bytecode.UNARY;
+import static net.starlark.java.eval.Bytecode.UNDEFINED;
+import static net.starlark.java.eval.Bytecode.UNPACK;
+import static net.starlark.java.eval.Bytecode.UNPACK_NEXT;
+
+import com.google.common.collect.ImmutableList;
+import java.math.BigInteger;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import javax.annotation.Nullable;
+import net.starlark.java.syntax.Argument;
+import net.starlark.java.syntax.AssignmentStatement;
+import net.starlark.java.syntax.BinaryOperatorExpression;
+import net.starlark.java.syntax.CallExpression;
+import net.starlark.java.syntax.Comprehension;
+import net.starlark.java.syntax.ConditionalExpression;
+import net.starlark.java.syntax.DefStatement;
+import net.starlark.java.syntax.DictExpression;
+import net.starlark.java.syntax.DotExpression;
+import net.starlark.java.syntax.Expression;
+import net.starlark.java.syntax.ExpressionStatement;
+import net.starlark.java.syntax.FloatLiteral;
+import net.starlark.java.syntax.FlowStatement;
+import net.starlark.java.syntax.ForStatement;
+import net.starlark.java.syntax.Identifier;
+import net.starlark.java.syntax.IfStatement;
+import net.starlark.java.syntax.IndexExpression;
+import net.starlark.java.syntax.IntLiteral;
+import net.starlark.java.syntax.LambdaExpression;
+import net.starlark.java.syntax.ListExpression;
+import net.starlark.java.syntax.Location;
+import net.starlark.java.syntax.Resolver;
+import net.starlark.java.syntax.ReturnStatement;
+import net.starlark.java.syntax.SliceExpression;
+import net.starlark.java.syntax.Statement;
+import net.starlark.java.syntax.StringLiteral;
+import net.starlark.java.syntax.TokenKind;
+import net.starlark.java.syntax.UnaryOperatorExpression;
+
+/**
+ * Translates the body of a resolved function into {@link Bytecode}.
+ *
+ * <p>The compiler visits the syntax tree in the order in which {@link Eval} evaluates it, so that
+ * the effects of the compiled code occur in the same order. Two aspects of the translation keep
+ * the observable behavior the same:
+ *
+ * <ul>
+ *   <li>Error locations. Eval reports the location of the innermost enclosing construct that
+ *       catches an error. The compiler tracks that location as it descends (see {@link #handler})
+ *       and records it for each instruction.
+ *   <li>Computation steps. Eval counts one step for each statement and expression it visits.
+ *       Within a straight-line run of code, the compiler adds up those steps and emits them as a
+ *       single {@link Bytecode#STEPS} instruction at the first counted node, so a completed
+ *       computation takes the same number of steps. A computation that fails or is cancelled part
+ *       way through a run may have counted the steps of the rest of that run.
+ * </ul>
+ */
+final class BytecodeCompiler {
+
+  private final Module module;
+
+  private int[] code = new int[64];
+  private Location[] errorLocations = new Location[64];
+  private int pc;
+  private final ArrayList<Object> consts = new ArrayList<>();
+  // Constants are shared by identity only: equal values of different types, such as 1 and 1.0,
+  // must remain distinct.
+  private final IdentityHashMap<Object, Integer> constIndex = new IdentityHashMap<>();
+
+  private int sp; // operand stack depth at pc
+  private int maxStack;
+  private int loops; // depth of loop nesting at pc
+  private int maxLoops;
+
+  // The location Eval would report for an error in the code being compiled
+  // that the failing operation itself does not locate; null if none.
+  @Nullable private Location handler;
+
+  // The pc of the operand of the STEPS instruction of the current straight-line run,
+  // or -1 if the run has not yet counted a step.
+  private int stepsPc = -1;
+
+  private final ArrayDeque<Loop> loopStack = new ArrayDeque<>();
+
+  private BytecodeCompiler(Module module) {
+    this.module = module;
+  }
+
+  /**
+   * Compiles the body of a function defined in the given module. Predeclared values of the module
+   * are folded into the constant pool.
+   */
+  static Bytecode compile(Resolver.Function rfn, Module module) {
+    BytecodeCompiler c = new BytecodeCompiler(module);
+    c.emit(CHECK_INTERRUPT, 0);
+    c.execStatements(rfn.getBody());
+    // Falling off the end returns None.
+    c.emit(CONST, +1, c.constant(Starlark.NONE));
+    c.emit(RETURN, -1);
+    return new Bytecode(
+        module,
+        Arrays.copyOf(c.code, c.pc),
+        c.consts.toArray(),
+        Arrays.copyOf(c.errorLocations, c.pc),
+        c.maxStack,
+        c.maxLoops);
+  }
+
+  /** A jump target. */
+  private static final class Label {
+    int pc = -1;
+    final ArrayList<Integer> uses = new ArrayList<>(); // pcs of operands that refer to this label
+  }
+
+  /** The jump targets of break and continue statements in a loop. */
+  private static final class Loop {
+    final Label breakLabel;
+    final Label continueLabel;
+
+    Loop(Label breakLabel, Label continueLabel) {
+      this.breakLabel = breakLabel;
+      this.continueLabel = continueLabel;
+    }
+  }
+
+  // ---- emission ----
+
+  // Appends an instruction whose failures are reported at the current handler location.
+  private void emit(int op, int stackDelta, int... operands) {
+    emitAt(handler, op, stackDelta, operands);
+  }
+
+  // Appends an instruction whose failures are reported at the given location.
+  private void emitAt(@Nullable Location loc, int op, int stackDelta, int... operands) {
+    if (pc + 1 + operands.length > code.length) {
+      code = Arrays.copyOf(code, Math.max(2 * code.length, pc + 1 + operands.length));
+      errorLocations = Arrays.copyOf(errorLocations, code.length);
+    }
+    errorLocations[pc] = loc;
+    code[pc++] = op;
+    for (int operand : operands) {
+      code[pc++] = operand;
+    }
+    sp += stackDelta;
+    maxStack = Math.max(maxStack, sp);
+  }
+
+  // Appends a jump instruction, whose first operand is the target.
+  private void emitJump(int op, int stackDelta, Label target, int... moreOperands) {
+    int[] operands = new int[1 + moreOperands.length];
+    operands[0] = target.pc;
+    System.arraycopy(moreOperands, 0, operands, 1, moreOperands.length);
+    emit(op, stackDelta, operands);
+    if (target.pc < 0) {
+      target.uses.add(pc - operands.length);
+    }
+    stepsPc = -1; // the code after a jump starts a new run
+  }
+
+  private void bind(Label label) {
+    label.pc = pc;
+    for (int use : label.uses) {
+      code[use] = pc;
+    }
+    stepsPc = -1; // a jump target starts a new run
+  }
+
+  // Counts a computation step in the current straight-line run.
+  private void step() {
+    if (stepsPc < 0) {
+      emit(STEPS, 0, 0);
+      stepsPc = pc - 1;
+    }
+    code[stepsPc]++;
+  }
+
+  private int constant(Object x) {
+    Integer index = constIndex.get(x);
+    if (index == null) {
+      index = consts.size();
+      consts.add(x);
+      constIndex.put(x, index);
+    }
+    return index;
+  }
+
+  // Adds a constant that is not shared with any other instruction, such as an inline cache.
+  private int uniqueConstant(Object x) {
+    consts.add(x);
+    return consts.size() - 1;
+  }
+
+  // ---- statements ----
+
+  private void execStatements(List<Statement> statements) {
+    for (Statement stmt : statements) {
+      exec(stmt);
+    }
+  }
+
+  private void exec(Statement st) {
+    step();
+    switch (st.kind()) {
+      case ASSIGNMENT:
+        execAssignment((AssignmentStatement) st);
+        return;
+      case EXPRESSION:
+        eval(((ExpressionStatement) st).getExpression());
+        emit(POP, -1);
+        return;
+      case FLOW:
+        execFlow((FlowStatement) st);
+        return;
+      case FOR:
+        execFor((ForStatement) st);
+        return;
+      case DEF:
+        DefStatement def = (DefStatement) st;
+        newFunction(def.getResolvedFunction());
+        assignIdentifier(def.getIdentifier());
+        return;
+      case IF:
+        execIf((IfStatement) st);
+        return;
+      case LOAD:
+        // The resolver allows load statements only at top level, which is not compiled.
+        throw new IllegalStateException("load statement in function");
+      case RETURN:
+        Expression result = ((ReturnStatement) st).getResult();
+        if (result != null) {
+          eval(result);
+        } else {
+          emit(CONST, +1, constant(Starlark.NONE));
+        }
+        emit(RETURN, -1);
+        stepsPc = -1; // what follows is unreachable
+        return;
+    }
+    throw new IllegalArgumentException("unexpected statement: " + st.kind());
+  }
+
+  private void execAssignment(AssignmentStatement node) {
+    Location saved = handler;
+    handler = node.getOperatorLocation();
+    if (node.isAugmented()) {
+      execAugmentedAssignment(node);
+    } else {
+      eval(node.getRHS());
+      assign(node.getLHS());
+    }
+    handler = saved;
+  }
+
+  private void execFlow(FlowStatement node) {
+    switch (node.getKind()) {
+      case BREAK:
+        emitJump(JUMP, 0, loopStack.peek().breakLabel);
+        return;
+      case CONTINUE:
+        emitJump(JUMP, 0, loopStack.peek().continueLabel);
+        return;
+      case PASS:
+        return;
+      default:
+        throw new IllegalStateException(node.getKind().toString());
+    }
+  }
+
+  private void execFor(ForStatement node) {
+    Expression collection = node.getCollection();
+    eval(collection);
+    beginLoop(collection);
+
+    Location saved = handler;
+    handler = node.getStartLocation();
+    Label head = new Label();
+    Label end = new Label();
+    bind(head);
+    forNext(node.getVars(), end);
+    loopStack.push(new Loop(end, head));
+    execStatements(node.getBody());
+    loopStack.pop();
+    emitJump(JUMP, 0, head);
+    bind(end);
+    endLoop();
+    handler = saved;
+  }
+
+  // Emits the head of a loop, which assigns the next element to vars or exits to end.
+  // The head also counts the steps of the first run of the loop body, and checks for
+  // interruption, which Eval does after each iteration.
+  private void forNext(Expression vars, Label end) {
+    if (vars instanceof Identifier
+        && ((Identifier) vars).getBinding().getScope() == Resolver.Scope.LOCAL) {
+      emitJump(FOR_NEXT, 0, end, /*steps=*/ 0, ((Identifier) vars).getBinding().getIndex());
+      stepsPc = pc - 2;
+    } else {
+      emitJump(FOR_NEXT, +1, end, /*steps=*/ 0, /*local=*/ -1);
+      stepsPc = pc - 2;
+      assign(vars);
+    }
+  }
+
+  // Starts a loop over the value of the collection, which is on the stack.
+  private void beginLoop(Expression collection) {
+    emitAt(collection.getStartLocation(), ITER, -1);
+    loops++;
+    maxLoops = Math.max(maxLoops, loops);
+  }
+
+  private void endLoop() {
+    emit(END_ITER, 0);
+    loops--;
+  }
+
+  private void execIf(IfStatement node) {
+    eval(node.getCondition());
+    Label elseLabel = new Label();
+    emitJump(JUMP_IF_FALSE, -1, elseLabel);
+    execStatements(node.getThenBlock());
+    if (node.getElseBlock() != null) {
+      Label end = new Label();
+      emitJump(JUMP, 0, end);
+      bind(elseLabel);
+      execStatements(node.getElseBlock());
+      bind(end);
+    } else {
+      bind(elseLabel);
+    }
+  }
+
+  // Emits code that assigns the value on top of the stack to lhs.
+  private void assign(Expression lhs) {
+    if (lhs instanceof Identifier) {
+      // x = ...
+      assignIdentifier((Identifier) lhs);
+
+    } else if (lhs instanceof IndexExpression) {
+      // x[i] = ...
+      IndexExpression index = (IndexExpression) lhs;
+      eval(index.getObject());
+      eval(index.getKey());
+      emit(SET_INDEX, -3);
+
+    } else if (lhs instanceof ListExpression) {
+      // a, b, c = ...
+      List<Expression> elems = ((ListExpression) lhs).getElements();
+      emit(UNPACK, 0, elems.size());
+      for (Expression elem : elems) {
+        emit(UNPACK_NEXT, +1);
+        assign(elem);
+      }
+      emit(POP, -1);
+
+    } else if (lhs instanceof DotExpression) {
+      // x.f = ...
+      DotExpression dot = (DotExpression) lhs;
+      eval(dot.getObject());
+      emitAt(dot.getDotLocation(), SET_FIELD, -2, constant(dot.getField().getName()));
+
+    } else {
+      // Not possible for resolved ASTs.
+      throw new IllegalStateException("cannot assign to " + lhs);
+    }
+  }
+
+  private void assignIdentifier(Identifier id) {
+    Resolver.Binding bind = id.getBinding();
+    switch (bind.getScope()) {
+      case LOCAL:
+        emit(SET_LOCAL, -1, bind.getIndex());
+        break;
+      case CELL:
+        emit(SET_CELL, -1, bind.getIndex());
+        break;
+      case GLOBAL:
+        emit(SET_GLOBAL, -1, bind.getIndex());
+        break;
+      default:
+        throw new IllegalStateException(bind.getScope().toString());
+    }
+  }
+
+  private void execAugmentedAssignment(AssignmentStatement stmt) {
+    Expression lhs = stmt.getLHS();
+    int op = stmt.getOperator().ordinal();
+    Expression rhs = stmt.getRHS();
+
+    if (lhs instanceof Identifier) {
+      // x op= y
+      eval(lhs);
+      eval(rhs);
+      emit(INPLACE, -1, op);
+      assignIdentifier((Identifier) lhs);
+
+    } else if (lhs instanceof IndexExpression) {
+      // object[index] op= y
+      IndexExpression index = (IndexExpression) lhs;
+      eval(index.getObject());
+      eval(index.getKey());
+      emit(DUP2, +2);
+      emit(INDEX, -1);
+      eval(rhs);
+      emit(INPLACE, -1, op);
+      emit(ROT3, 0);
+      emit(SET_INDEX, -3);
+
+    } else if (lhs instanceof DotExpression) {
+      // object.field op= y
+      DotExpression dot = (DotExpression) lhs;
+      eval(dot.getObject());
+      Location saved = handler;
+      handler = dot.getDotLocation();
+      emit(DUP, +1);
+      emit(DOT, 0, uniqueConstant(new Bytecode.DotSite(dot.getField().getName())));
+      eval(rhs);
+      emitAt(stmt.getOperatorLocation(), INPLACE, -1, op);
+      emit(SWAP, 0);
+      emit(SET_FIELD, -2, constant(dot.getField().getName()));
+      handler = saved;
+
+    } else {
+      // Not possible for resolved ASTs.
+      throw new IllegalStateException("cannot perform augmented assignment on " + lhs);
+    }
+  }
+
+  // Emits code that pushes a new function for a def statement or lambda expression.
+  private void newFunction(Resolver.Function rfn) {
+    // Evaluate the default values of optional parameters, as in Eval.newFunction.
+    int ndefaults = 0;
+    int nparams =
+        rfn.getParameters().size() - (rfn.hasKwargs() ? 1 : 0) - (rfn.hasVarargs() ? 1 : 0);
+    for (int i = 0; i < nparams; i++) {
+      Expression expr = rfn.getParameters().get(i).getDefaultValue();
+      if (expr == null && ndefaults == 0) {
+        continue; // skip prefix of required parameters
+      }
+      if (expr == null) {
+        emit(CONST, +1, constant(StarlarkFunction.MANDATORY));
+      } else {
+        eval(expr);
+      }
+      ndefaults++;
+    }
+    emit(MAKE_FUNCTION, 1 - ndefaults, uniqueConstant(new Bytecode.FunctionSite(rfn, ndefaults)));
+  }
+
+  // ---- expressions ----
+
+  // Emits code that pushes the value of expr.
+  private void eval(Expression expr) {
+    step();
+    switch (expr.kind()) {
+      case BINARY_OPERATOR:
+        evalBinaryOperator((BinaryOperatorExpression) expr);
+        return;
+      case COMPREHENSION:
+        evalComprehension((Comprehension) expr);
+        return;
+      case CONDITIONAL:
+        evalConditional((ConditionalExpression) expr);
+        return;
+      case DICT_EXPR:
+        evalDict((DictExpression) expr);
+        return;
+      case DOT:
+        DotExpression dot = (DotExpression) expr;
+        eval(dot.getObject());
+        emitAt(
+            dot.getDotLocation(),
+            DOT,
+            0,
+            uniqueConstant(new Bytecode.DotSite(dot.getField().getName())));
+        return;
+      case CALL:
+        evalCall((CallExpression) expr);
+        return;
+      case IDENTIFIER:
+        evalIdentifier((Identifier) expr);
+        return;
+      case INDEX:
+        IndexExpression index = (IndexExpression) expr;
+        eval(index.getObject());
+        eval(index.getKey());
+        emitAt(index.getLbracketLocation(), INDEX, -1);
+        return;
+      case INT_LITERAL:
+      case FLOAT_LITERAL:
+      case STRING_LITERAL:
+        emit(CONST, +1, constant(literalValue(expr)));
+        return;
+      case LAMBDA:
+        newFunction(((LambdaExpression) expr).getResolvedFunction());
+        return;
+      case LIST_EXPR:
+        ListExpression list = (ListExpression) expr;
+        for (Expression elem : list.getElements()) {
+          eval(elem);
+        }
+        int size = list.getElements().size();
+        emit(list.isTuple() ? TUPLE : LIST, 1 - size, size);
+        return;
+      case SLICE:
+        evalSlice((SliceExpression) expr);
+        return;
+      case UNARY_OPERATOR:
+        UnaryOperatorExpression unop = (UnaryOperatorExpression) expr;
+        eval(unop.getX());
+        emitAt(unop.getStartLocation(), UNARY, 0, unop.getOperator().ordinal());
+        return;
+    }
+    throw new IllegalArgumentException("unexpected expression: " + expr.kind());
+  }
+
+  private void evalBinaryOperator(BinaryOperatorExpression binop) {
+    eval(binop.getX());
+    // AND and OR require short-circuit evaluation.
+    TokenKind op = binop.getOperator();
+    if (op == TokenKind.AND || op == TokenKind.OR) {
+      Label end = new Label();
+      emitJump(op == TokenKind.AND ? JUMP_IF_FALSE_OR_POP : JUMP_IF_TRUE_OR_POP, -1, end);
+      eval(binop.getY());
+      bind(end);
+    } else {
+      Object y = literalValue(binop.getY());
+      if (y != null) {
+        step();
+        emitAt(binop.getOperatorLocation(), BINARY_CONST, 0, op.ordinal(), constant(y));
+      } else {
+        eval(binop.getY());
+        emitAt(binop.getOperatorLocation(), BINARY, -1, op.ordinal());
+      }
+    }
+  }
+
+  // Returns the value of a literal expression, or null if expr is not a literal.
+  @Nullable
+  private static Object literalValue(Expression expr) {
+    switch (expr.kind()) {
+      case INT_LITERAL:
+        Number n = ((IntLiteral) expr).getValue();
+        if (n instanceof Integer) {
+          return StarlarkInt.of((Integer) n);
+        } else if (n instanceof Long) {
+          return StarlarkInt.of((Long) n);
+        } else {
+          return StarlarkInt.of((BigInteger) n);
+        }
+      case FLOAT_LITERAL:
+        return StarlarkFloat.of(((FloatLiteral) expr).getValue());
+      case STRING_LITERAL:
+        return ((StringLiteral) expr).getValue();
+      default:
+        return null;
+    }
+  }
+
+  private void evalConditional(ConditionalExpression cond) {
+    eval(cond.getCondition());
+    Label elseLabel = new Label();
+    Label end = new Label();
+    emitJump(JUMP_IF_FALSE, -1, elseLabel);
+    eval(cond.getThenCase());
+    emitJump(JUMP, -1, end); // the else case starts at the depth before the then case
+    bind(elseLabel);
+    eval(cond.getElseCase());
+    bind(end);
+  }
+
+  private void evalDict(DictExpression dictexpr) {
+    emit(NEW_DICT, +1);
+    for (DictExpression.Entry entry : dictexpr.getEntries()) {
+      eval(entry.getKey());
+      eval(entry.getValue());
+      emitAt(entry.getColonLocation(), DICT_PUT, -2);
+    }
+  }
+
+  private void evalCall(CallExpression call) {
+    emit(CHECK_INTERRUPT, 0);
+    eval(call.getFunction());
+
+    // StarStar and Star args are guaranteed to be last, if they occur.
+    ImmutableList<Argument> arguments = call.getArguments();
+    int n = arguments.size();
+    Argument.StarStar starstar = null;
+    if (n > 0 && arguments.get(n - 1) instanceof Argument.StarStar) {
+      starstar = (Argument.StarStar) arguments.get(n - 1);
+      n--;
+    }
+    Argument.Star star = null;
+    if (n > 0 && arguments.get(n - 1) instanceof Argument.Star) {
+      star = (Argument.Star) arguments.get(n - 1);
+      n--;
+    }
+
+    int npos = call.getNumPositionalArguments();
+    String[] names = new String[n - npos];
+    for (int i = 0; i < n; i++) {
+      Argument arg = arguments.get(i);
+      eval(arg.getValue());
+      if (i >= npos) {
+        names[i - npos] = ((Argument.Keyword) arg).getName();
+      }
+    }
+    if (star != null) {
+      eval(star.getValue());
+      emitAt(star.getStartLocation(), CHECK_STAR_ARG, 0);
+    }
+    if (starstar != null) {
+      eval(starstar.getValue());
+      emitAt(starstar.getStartLocation(), CHECK_STARSTAR_ARG, 0);
+    }
+
+    Location lparen = call.getLparenLocation();
+    Bytecode.CallSite site =
+        new Bytecode.CallSite(lparen, npos, names, star != null, starstar != null);
+    int nargs = n + (star != null ? 1 : 0) + (starstar != null ? 1 : 0);
+    emitAt(lparen, CALL, -nargs, uniqueConstant(site));
+  }
+
+  private void evalIdentifier(Identifier id) {
+    Resolver.Binding bind = id.getBinding();
+    Location loc = id.getStartLocation();
+    switch (bind.getScope()) {
+      case LOCAL:
+        emitAt(loc, LOCAL, +1, bind.getIndex(), constant(id));
+        return;
+      case CELL:
+        emitAt(loc, CELL, +1, bind.getIndex(), constant(id));
+        return;
+      case FREE:
+        emitAt(loc, FREE, +1, bind.getIndex(), constant(id));
+        return;
+      case GLOBAL:
+        emitAt(loc, GLOBAL, +1, bind.getIndex(), constant(id));
+        return;
+      case PREDECLARED:
+      case UNIVERSAL:
+        // These bindings never change, so fold them into constants.
+        Object value =
+            bind.getScope() == Resolver.Scope.PREDECLARED
+                ? module.getPredeclared(id.getName())
+                : Starlark.UNIVERSE.get(id.getName());
+        if (value != null) {
+          emit(CONST, +1, constant(value));
+        } else {
+          emitAt(loc, UNDEFINED, +1, constant(id));
+        }
+        return;
+      default:
+        throw new IllegalStateException(bind.toString());
+    }
+  }
+
+  private void evalSlice(SliceExpression slice) {
+    eval(slice.getObject());
+    for (Expression x : new Expression[] {slice.getStart(), slice.getStop(), slice.getStep()}) {
+      if (x == null) {
+        emit(CONST, +1, constant(Starlark.NONE));
+      } else {
+        eval(x);
+      }
+    }
+    emitAt(slice.getLbracketLocation(), SLICE, -3);
+  }
+
+  private void evalComprehension(Comprehension comp) {
+    emit(comp.isDict() ? NEW_DICT : NEW_LIST, +1);
+    execClauses(comp, 0, null);
+  }
+
+  // Emits the clauses of a comprehension starting at index, and finally its body, which adds
+  // an element to the result on the stack. An if clause that fails continues the innermost
+  // enclosing for clause, whose continue label is next.
+  private void execClauses(Comprehension comp, int index, @Nullable Label next) {
+    // Eval checks for interruption on entry to each clause. The head of each loop does so
+    // in the compiled code.
+    if (index == 0) {
+      emit(CHECK_INTERRUPT, 0);
+    }
+
+    // recursive case: one or more clauses
+    if (index < comp.getClauses().size()) {
+      Comprehension.Clause clause = comp.getClauses().get(index);
+      if (clause instanceof Comprehension.For) {
+        Comprehension.For forClause = (Comprehension.For) clause;
+        eval(forClause.getIterable());
+        beginLoop(forClause.getIterable());
+
+        Location saved = handler;
+        handler = forClause.getStartLocation();
+        Label head = new Label();
+        Label end = new Label();
+        bind(head);
+        forNext(forClause.getVars(), end);
+        execClauses(comp, index + 1, head);
+        emitJump(JUMP, 0, head);
+        bind(end);
+        endLoop();
+        handler = saved;
+
+      } else {
+        Comprehension.If ifClause = (Comprehension.If) clause;
+        eval(ifClause.getCondition());
+        emitJump(JUMP_IF_FALSE, -1, next);
+        execClauses(comp, index + 1, next);
+      }
+      return;
+    }
+
+    // base case: evaluate body and add to result.
+    if (comp.isDict()) {
+      DictExpression.Entry body = (DictExpression.Entry) comp.getBody();
+      eval(body.getKey());
+      Location saved = handler;
+      handler = body.getColonLocation();
+      emit(CHECK_HASHABLE, 0);
+      eval(body.getValue());
+      emit(DICT_COMP_PUT, -2);
+      handler = saved;
+    } else {
+      eval((Expression) comp.getBody());
+      emit(LIST_APPEND, -1);
+    }
+  }
+}
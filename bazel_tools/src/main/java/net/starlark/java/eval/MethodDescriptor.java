@@ -17,7 +17,9 @@ package net.starlark.java.eval;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Throwables;
 import com.google.errorprone.annotations.CheckReturnValue;
-import java.lang.reflect.InvocationTargetException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Method;
 import java.util.Arrays;
 import javax.annotation.Nullable;
@@ -30,9 +32,22 @@ import net.starlark.java.annot.StarlarkMethod;
  *
  * <p>The annotation metadata is duplicated in this class to avoid usage of Java dynamic proxies
  * which are ~7× slower.
+ *
+ * <p>The method is invoked through a {@link MethodHandle} adapted once, when the descriptor is
+ * created, to accept its Java arguments as an array. Methods whose parameters are all positional
+ * additionally get a handle for each number of arguments a call may supply, with the default
+ * values of the remaining parameters bound in, so that such calls pass the caller's array of
+ * positional arguments straight through; see {@link #callPositional}.
  */
 final class MethodDescriptor {
   private final Method method;
+  private final MethodHandle handle; // (Object obj, Object[] args) -> Object
+
+  // positionalHandles[k] accepts (Object x, Object[] positional) where positional.length == k and
+  // x is the Starlark receiver (the string, for methods of StringModule). It is null if a call
+  // with k positional arguments and no named ones needs the slow path (missing mandatory
+  // parameters, too many arguments) or if the method has any parameter not fixed by position.
+  @Nullable private final MethodHandle[] positionalHandles;
   private final StarlarkMethod annotation;
 
   private final String name;
@@ -83,6 +98,8 @@ final class MethodDescriptor {
     this.allowReturnNones = allowReturnNones;
     this.useStarlarkThread = useStarlarkThread;
     this.useStarlarkSemantics = useStarlarkSemantics;
+    this.handle = spread(unreflect(method), 1, method.getParameterCount());
+    this.positionalHandles = makePositionalHandles();
 
     Class<?> ret = method.getReturnType();
     if (ret == void.class || ret == boolean.class) {
@@ -102,6 +119,62 @@ final class MethodDescriptor {
     }
   }
 
+  // Returns the method as a handle of type (Object, Object...) -> Object.
+  private static MethodHandle unreflect(Method method) {
+    MethodHandle mh;
+    try {
+      mh = MethodHandles.lookup().unreflect(method); // method.setAccessible was called
+    } catch (IllegalAccessException ex) {
+      // "Can't happen": the annotated processor ensures that annotated methods are accessible.
+      throw new IllegalStateException(ex);
+    }
+    // void becomes null, and primitive results are boxed.
+    return mh.asType(MethodType.genericMethodType(mh.type().parameterCount()));
+  }
+
+  // Adapts mh, of type (Object, Object...) -> Object, so that its n parameters following the
+  // first k are collected from an array.
+  private static MethodHandle spread(MethodHandle mh, int k, int n) {
+    return mh.asSpreader(k, Object[].class, n);
+  }
+
+  @Nullable
+  private MethodHandle[] makePositionalHandles() {
+    if (extraPositionals || extraKeywords || useStarlarkThread || useStarlarkSemantics) {
+      return null;
+    }
+    for (ParamDescriptor param : parameters) {
+      if (!param.isPositional() || param.disabledByFlag() != null) {
+        return null;
+      }
+    }
+
+    // String methods are declared on StringModule and take the string as their first parameter.
+    MethodHandle mh = unreflect(method);
+    int self = 0;
+    if (method.getDeclaringClass() == StringModule.class) {
+      mh = MethodHandles.insertArguments(mh, 0, StringModule.INSTANCE);
+      self = 1;
+    }
+
+    // mh now has type (x, q[0], ..., q[m-1]) -> Object, where q[i] is parameters[self + i].
+    // handles[k] binds the default values of q[k:].
+    int m = parameters.length - self;
+    MethodHandle[] handles = new MethodHandle[m + 1];
+    for (int k = m; ; k--) {
+      handles[k] = spread(mh, 1, k);
+      if (k == 0) {
+        break;
+      }
+      Object defaultValue = parameters[self + k - 1].getDefaultValue();
+      if (defaultValue == null) {
+        break; // mandatory
+      }
+      mh = MethodHandles.insertArguments(mh, k, defaultValue);
+    }
+    return handles;
+  }
+
   /** Returns the StarlarkMethod annotation corresponding to this method. */
   StarlarkMethod getAnnotation() {
     return annotation;
@@ -159,44 +232,113 @@ final class MethodDescriptor {
     Preconditions.checkNotNull(obj);
     Object result;
     try {
-      result = method.invoke(obj, args);
-    } catch (IllegalAccessException ex) {
-      // "Can't happen": the annotated processor ensures that annotated methods are accessible.
-      throw new IllegalStateException(ex);
+      result = (Object) handle.invokeExact(obj, args);
+    } catch (ClassCastException ex) {
+      checkArgumentTypes(ex, obj, args);
+      throw ex; // thrown by the method itself
+    } catch (Throwable ex) {
+      throw rethrow(ex);
+    }
+    return convertResult(result, args, mu);
+  }
 
-    } catch (IllegalArgumentException ex) {
-      // "Can't happen": unexpected type mismatch.
-      // Show details to aid debugging (see e.g. b/162444744).
-      StringBuilder buf = new StringBuilder();
-      buf.append(
-          String.format(
-              "IllegalArgumentException (%s) in Starlark call of %s, obj=%s (%s), args=[",
-              ex.getMessage(), method, Starlark.repr(obj), Starlark.type(obj)));
-      String sep = "";
-      for (Object arg : args) {
-        buf.append(String.format("%s%s (%s)", sep, Starlark.repr(arg), Starlark.type(arg)));
-        sep = ", ";
-      }
-      buf.append(']');
-      throw new IllegalArgumentException(buf.toString());
+  /**
+   * Returns true if {@link #callPositional} accepts a call with {@code n} positional arguments,
+   * not counting the receiver.
+   */
+  boolean acceptsPositional(int n) {
+    return positionalHandles != null
+        && n < positionalHandles.length
+        && positionalHandles[n] != null;
+  }
 
-    } catch (InvocationTargetException ex) {
-      Throwable e = ex.getCause();
-      if (e == null) {
-        throw new IllegalStateException(e);
-      }
-      // Don't intercept unchecked exceptions.
-      Throwables.throwIfUnchecked(e);
-      if (e instanceof EvalException) {
-        throw (EvalException) e;
-      } else if (e instanceof InterruptedException) {
-        throw (InterruptedException) e;
+  /**
+   * Invokes this method with the Starlark receiver {@code x} (a string, for string methods) and
+   * the given positional arguments, which must have been checked against the parameter types.
+   * The missing trailing parameters take their default values. The caller must first check that
+   * {@link #acceptsPositional} is true for the number of arguments.
+   */
+  Object callPositional(Object x, Object[] positional, @Nullable Mutability mu)
+      throws EvalException, InterruptedException {
+    Preconditions.checkNotNull(x);
+    Object result;
+    try {
+      result = (Object) positionalHandles[positional.length].invokeExact(x, positional);
+    } catch (ClassCastException ex) {
+      if (method.getDeclaringClass() == StringModule.class) {
+        checkArgumentTypes(ex, StringModule.INSTANCE, getJavaArguments(x, positional));
       } else {
-        // All other checked exceptions (e.g. LabelSyntaxException) are reported to Starlark.
-        throw new EvalException(e);
+        checkArgumentTypes(ex, x, getJavaArguments(null, positional));
       }
+      throw ex; // thrown by the method itself
+    } catch (Throwable ex) {
+      throw rethrow(ex);
+    }
+    return convertResult(result, positional, mu);
+  }
+
+  // Returns the Java arguments that a call of callPositional passes to the method: the string
+  // receiver of a string method, if not null, the positional arguments and the default values of
+  // the remaining parameters.
+  private Object[] getJavaArguments(@Nullable Object self, Object[] positional) {
+    Object[] args = new Object[parameters.length];
+    int i = 0;
+    if (self != null) {
+      args[i++] = self;
+    }
+    for (Object arg : positional) {
+      args[i++] = arg;
+    }
+    for (; i < args.length; i++) {
+      args[i] = parameters[i].getDefaultValue();
+    }
+    return args;
+  }
+
+  // Throws an exception thrown by the method itself, or reports it to Starlark if it is a checked
+  // exception other than EvalException and InterruptedException. The caller throws the result.
+  private static EvalException rethrow(Throwable e) throws EvalException, InterruptedException {
+    // Don't intercept unchecked exceptions.
+    Throwables.throwIfUnchecked(e);
+    if (e instanceof EvalException) {
+      throw (EvalException) e;
+    } else if (e instanceof InterruptedException) {
+      throw (InterruptedException) e;
+    } else {
+      // All other checked exceptions (e.g. LabelSyntaxException) are reported to Starlark.
+      return new EvalException(e);
     }
+  }
+
+  // Throws an IllegalArgumentException if the handle failed to cast an argument to the type of
+  // its parameter. "Can't happen": unexpected type mismatch. A null argument casts to any
+  // reference type, so it never causes the exception.
+  private void checkArgumentTypes(ClassCastException ex, Object obj, Object[] args) {
+    Class<?>[] types = method.getParameterTypes();
+    boolean ok = method.getDeclaringClass().isInstance(obj);
+    for (int i = 0; ok && i < args.length; i++) {
+      Class<?> type = MethodType.methodType(types[i]).wrap().returnType();
+      ok = args[i] == null || type.isInstance(args[i]);
+    }
+    if (ok) {
+      return;
+    }
+    // Show details to aid debugging (see e.g. b/162444744).
+    StringBuilder buf = new StringBuilder();
+    buf.append(
+        String.format(
+            "IllegalArgumentException (%s) in Starlark call of %s, obj=%s (%s), args=[",
+            ex.getMessage(), method, Starlark.repr(obj), Starlark.type(obj)));
+    String sep = "";
+    for (Object arg : args) {
+      buf.append(String.format("%s%s (%s)", sep, Starlark.repr(arg), Starlark.type(arg)));
+      sep = ", ";
+    }
+    buf.append(']');
+    throw new IllegalArgumentException(buf.toString(), ex);
+  }
 
+  private Object convertResult(Object result, Object[] args, @Nullable Mutability mu) {
     // This switch is an optimization to reduce the overhead
     // of an unconditional null check and fromJava call.
     switch (howToHandleReturn) {
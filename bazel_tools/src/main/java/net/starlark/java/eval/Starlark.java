@@ -700,8 +700,23 @@ public final class Starlark {
       String name,
       @Nullable Object defaultValue)
       throws EvalException, InterruptedException {
-    // StarlarkMethod-annotated field or method?
     MethodDescriptor method = CallUtils.getAnnotatedMethods(semantics, x.getClass()).get(name);
+    return getattr(mu, semantics, x, name, defaultValue, method);
+  }
+
+  /**
+   * Variant of {@link #getattr} for a caller that has already looked up the annotated method, if
+   * any, of {@code x}'s class for {@code name} under {@code semantics}.
+   */
+  static Object getattr(
+      Mutability mu,
+      StarlarkSemantics semantics,
+      Object x,
+      String name,
+      @Nullable Object defaultValue,
+      @Nullable MethodDescriptor method)
+      throws EvalException, InterruptedException {
+    // StarlarkMethod-annotated field or method?
     if (method != null) {
       if (method.isStructField()) {
         return method.callField(x, semantics, mu);
@@ -188,6 +188,11 @@ public final class StarlarkFunction implements StarlarkCallable {
       fr.locals[index] = new Cell(fr.locals[index]);
     }
 
+    // Top-level code runs only once, and the debugger steps through syntax trees.
+    if (thread.useBytecode() && fr.dbg == null && !rfn.isToplevel()) {
+      return Bytecode.Lazy.of(rfn).get(module).exec(fr, this);
+    }
+
     return Eval.execFunctionBody(fr, rfn.getBody());
   }
 
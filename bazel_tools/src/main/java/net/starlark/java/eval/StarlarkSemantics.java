@@ -241,4 +241,10 @@ public final class StarlarkSemantics {
    * unconditionally prohibits recursion.
    */
   public static final String ALLOW_RECURSION = "-allow_recursion";
+
+  /**
+   * Whether Starlark functions are compiled to bytecode on their first call, instead of being
+   * evaluated directly from their syntax trees. The results are the same either way.
+   */
+  public static final String EXPERIMENTAL_STARLARK_BYTECODE = "-experimental_starlark_bytecode";
 }
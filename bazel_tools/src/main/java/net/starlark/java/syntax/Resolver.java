@@ -132,6 +132,9 @@ public final class Resolver extends NodeVisitor {
     private final ImmutableList<Binding> freevars;
     private final ImmutableList<String> globals; // TODO(adonovan): move to Program.
 
+    // The evaluator's compiled form of the function. Racy; see setCompiledCode.
+    @Nullable private Object compiledCode;
+
     private Function(
         String name,
         Location loc,
@@ -274,6 +277,24 @@ public final class Resolver extends NodeVisitor {
     public boolean isToplevel() {
       return isToplevel;
     }
+
+    /**
+     * Returns the value last passed to {@link #setCompiledCode}, or null. It is not interpreted by
+     * this package.
+     */
+    @Nullable
+    public Object getCompiledCode() {
+      return compiledCode;
+    }
+
+    /**
+     * Records the evaluator's compiled form of this function, so that all closures of the function
+     * share it. The field is written without synchronization, so the value must be safe to publish
+     * racily, and a concurrent caller may replace it with an equivalent one.
+     */
+    public void setCompiledCode(Object compiledCode) {
+      this.compiledCode = compiledCode;
+    }
   }
 
   /**
@@ -33,6 +33,7 @@
 // absl::Mutex but we cannot yet because Bazel doesn't depend on absl.
 #include <mutex>  // NOLINT
 #include <string>
+#include <unordered_set>
 #include <vector>
 
 #include "src/main/cpp/util/port.h"
@@ -791,6 +792,99 @@ Java_com_google_devtools_build_lib_unix_NativePosixFiles_readdir(JNIEnv *env,
   return NewDirents(env, names_obj, types_obj);
 }
 
+/*
+ * Class:     com.google.devtools.build.lib.unix.NativePosixFiles
+ * Method:    statAll
+ * Signature: (Ljava/lang/String;[Ljava/lang/String;ZZ)[Lcom/google/devtools/build/lib/unix/ErrnoFileStatus;
+ */
+extern "C" JNIEXPORT jobjectArray JNICALL
+Java_com_google_devtools_build_lib_unix_NativePosixFiles_statAll(
+    JNIEnv *env, jclass clazz, jstring dir, jobjectArray names,
+    jboolean follow_symlinks, jboolean list_first) {
+  jsize len = env->GetArrayLength(names);
+  jobjectArray result =
+      env->NewObjectArray(len, errno_file_status_class, nullptr);
+  if (result == nullptr && env->ExceptionOccurred()) {
+    return nullptr;  // async exception!
+  }
+
+  portable_stat_struct statbuf;
+  const char *dir_chars = GetStringLatin1Chars(env, dir);
+  int dir_fd;
+  while ((dir_fd = ::open(dir_chars, O_RDONLY | PORTABLE_O_DIRECTORY)) == -1 &&
+         errno == EINTR) {
+  }
+  int open_errno = errno;
+  ReleaseStringLatin1Chars(dir_chars);
+  if (dir_fd == -1) {
+    // The directory cannot be opened, so none of its entries can be stat'ed.
+    jobject status = NewErrnoFileStatus(env, open_errno, statbuf);
+    if (status == nullptr && env->ExceptionOccurred()) {
+      return nullptr;
+    }
+    for (jsize i = 0; i < len; i++) {
+      env->SetObjectArrayElement(result, i, status);
+    }
+    return result;
+  }
+
+  // Listing the directory first answers the names that do not exist without a
+  // stat call each. The listing uses its own descriptor, which closedir closes.
+  bool listed = false;
+  std::unordered_set<std::string> entries;
+  if (list_first) {
+    int list_fd = ::dup(dir_fd);
+    DIR *dirh = list_fd == -1 ? nullptr : ::fdopendir(list_fd);
+    if (dirh != nullptr) {
+      listed = true;
+      for (;;) {
+        errno = 0;
+        struct dirent *entry = ::readdir(dirh);
+        if (entry == nullptr) {
+          if (errno == 0) break;  // EOF
+          if (errno == EINTR || errno == EIO) continue;
+          listed = false;  // Fall back to stat'ing every name.
+          break;
+        }
+        entries.insert(entry->d_name);
+      }
+      ::closedir(dirh);
+    } else if (list_fd != -1) {
+      ::close(list_fd);
+    }
+  }
+
+  int flags = follow_symlinks ? 0 : AT_SYMLINK_NOFOLLOW;
+  for (jsize i = 0; i < len; i++) {
+    jstring name = static_cast<jstring>(env->GetObjectArrayElement(names, i));
+    const char *name_chars = GetStringLatin1Chars(env, name);
+    int saved_errno = 0;
+    if (listed && entries.find(name_chars) == entries.end()) {
+      saved_errno = ENOENT;
+    } else {
+      int r;
+      while ((r = portable_fstatat(dir_fd, const_cast<char *>(name_chars),
+                                   &statbuf, flags)) == -1 &&
+             errno == EINTR) {
+      }
+      if (r == -1) {
+        saved_errno = errno;
+      }
+    }
+    ReleaseStringLatin1Chars(name_chars);
+    env->DeleteLocalRef(name);
+    jobject status = NewErrnoFileStatus(env, saved_errno, statbuf);
+    if (status == nullptr && env->ExceptionOccurred()) {
+      ::close(dir_fd);
+      return nullptr;
+    }
+    env->SetObjectArrayElement(result, i, status);
+    env->DeleteLocalRef(status);
+  }
+  ::close(dir_fd);
+  return result;
+}
+
 /*
  * Class:     com.google.devtools.build.lib.unix.NativePosixFiles
  * Method:    rename
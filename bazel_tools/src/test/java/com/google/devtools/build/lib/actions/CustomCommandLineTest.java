@@ -39,6 +39,7 @@ import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.function.Consumer;
+import javax.annotation.Nullable;
 import net.starlark.java.eval.EvalException;
 import org.junit.Before;
 import org.junit.Test;
@@ -999,6 +1000,94 @@ public class CustomCommandLineTest {
     assertThrows(NullPointerException.class, () -> commandLineTemplate.arguments());
   }
 
+  @Test
+  public void testExpandArgumentsMatchesArguments() throws Exception {
+    NestedSet<String> values = nestedSet("a", "b", "c");
+    CommandLineItem.MapFn<String> twice =
+        (s, args) -> {
+          args.accept(s);
+          args.accept(s + s);
+        };
+    ImmutableList<CustomCommandLine> commandLines =
+        ImmutableList.of(
+            builder().add("--arg").addAll(values).addAll(list("d", "e")).build(),
+            builder().addAll(VectorArg.of(values).mapped(twice)).build(),
+            builder()
+                .addAll(VectorArg.of(list(foo("1"), foo("2"))).mapped(Foo::expandToStr))
+                .build(),
+            builder().addAll(VectorArg.format("--foo=%s").each(values)).build(),
+            builder().addAll("--arg", VectorArg.addBefore("-I").each(list("x", "y"))).build(),
+            builder().addAll(VectorArg.join(":").each(values)).build(),
+            builder().addAll(VectorArg.join(":").each(ImmutableList.of())).build(),
+            builder()
+                .addAll(VectorArg.format("--foo=%s").addBefore("-f").each(values).mapped(twice))
+                .build(),
+            builder()
+                .addAll(VectorArg.format("%s.o").join(",").each(list("x", "y")).mapped(twice))
+                .build(),
+            builder()
+                .addExecPaths(VectorArg.addBefore("-l").each(nestedSet(artifact1, artifact2)))
+                .addFormatted("%s=%s", "key", "value")
+                .addPrefixed("prefix-", "foo")
+                .build());
+    for (CustomCommandLine commandLine : commandLines) {
+      assertThat(expandArguments(commandLine, /* artifactExpander= */ null))
+          .containsExactlyElementsIn(commandLine.arguments())
+          .inOrder();
+    }
+  }
+
+  @Test
+  public void testExpandArgumentsMatchesArgumentsWithTreeArtifactExpansion() throws Exception {
+    SpecialArtifact treeArtifact = createTreeArtifact("myArtifact/treeArtifact");
+    TreeFileArtifact child1 = TreeFileArtifact.createTreeOutput(treeArtifact, "children/child1");
+    TreeFileArtifact child2 = TreeFileArtifact.createTreeOutput(treeArtifact, "children/child2");
+    Artifact.ArtifactExpander artifactExpander =
+        (artifact, output) -> {
+          if (artifact.equals(treeArtifact)) {
+            output.add(child2);
+            output.add(child1);
+          }
+        };
+
+    CustomCommandLine commandLine =
+        builder()
+            .add("--before")
+            .addExpandedTreeArtifactExecPaths("--input", treeArtifact)
+            .addExpandedTreeArtifact(
+                treeArtifact, artifact -> ImmutableList.of("-f", artifact.getFilename()))
+            .add("--after")
+            .build();
+
+    assertThat(expandArguments(commandLine, artifactExpander))
+        .containsExactly(
+            "--before",
+            "--input",
+            "dir/myArtifact/treeArtifact/children/child1",
+            "--input",
+            "dir/myArtifact/treeArtifact/children/child2",
+            "-f",
+            "child1",
+            "-f",
+            "child2",
+            "--after")
+        .inOrder();
+    assertThat(expandArguments(commandLine, artifactExpander))
+        .containsExactlyElementsIn(commandLine.arguments(artifactExpander))
+        .inOrder();
+    assertThat(expandArguments(commandLine, /* artifactExpander= */ null))
+        .containsExactlyElementsIn(commandLine.arguments())
+        .inOrder();
+  }
+
+  private static ImmutableList<String> expandArguments(
+      CommandLine commandLine, @Nullable Artifact.ArtifactExpander artifactExpander)
+      throws Exception {
+    ImmutableList.Builder<String> args = ImmutableList.builder();
+    commandLine.expandArguments(artifactExpander, args::add);
+    return args.build();
+  }
+
   private SpecialArtifact createTreeArtifact(String rootRelativePath) {
     return ActionsTestUtil.createTreeArtifactWithGeneratingAction(
         rootDir, rootDir.getExecPath().getRelative(rootRelativePath));
@@ -0,0 +1,134 @@
+// Copyright 2026 The Bazel Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.google.devtools.build.lib.actions;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.CountingOutputStream;
+import com.google.devtools.build.lib.actions.ParameterFile.ParameterFileType;
+import com.google.devtools.build.lib.analysis.actions.CustomCommandLine;
+import com.google.devtools.build.lib.analysis.actions.CustomCommandLine.VectorArg;
+import com.google.devtools.build.lib.collect.nestedset.NestedSet;
+import com.google.devtools.build.lib.collect.nestedset.NestedSetBuilder;
+import com.google.devtools.build.lib.vfs.PathFragment;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Compares writing a parameter file from a materialized argument list with streaming the
+ * arguments of the command line into it, for link-sized command lines.
+ *
+ * <p>Usage: {@code ParameterFileBenchmark [inputs] [writes] [runs]}. Builds a C++ link command
+ * line with {@code inputs} (200 thousand by default) object files, a tenth as many libraries and
+ * search directories, and a Java compile command line with as many sources, a joined classpath of
+ * a tenth as many jars and mapped direct dependencies. Each is written {@code writes} (10 by
+ * default) times in each mode. Reports the time and throughput of a write and the bytes it
+ * allocates; in the materialized mode, the expanded arguments stay reachable until the write ends.
+ */
+public final class ParameterFileBenchmark {
+
+  public static void main(String[] args) throws Exception {
+    int inputs = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+    int writes = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+    int runs = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+
+    CommandLine cppLink = cppLinkCommandLine(inputs);
+    CommandLine javaCompile = javaCompileCommandLine(inputs);
+    for (int run = 0; run < runs; run++) {
+      for (boolean streamed : new boolean[] {false, true}) {
+        run("c++ link    ", cppLink, ParameterFileType.GCC_QUOTED, streamed, writes);
+        run("java compile", javaCompile, ParameterFileType.UNQUOTED, streamed, writes);
+      }
+    }
+  }
+
+  private static void run(
+      String name, CommandLine commandLine, ParameterFileType type, boolean streamed, int writes)
+      throws Exception {
+    long outputBytes = 0;
+    long bytes = allocatedBytes();
+    long start = System.nanoTime();
+    for (int i = 0; i < writes; i++) {
+      CountingOutputStream out = new CountingOutputStream(ByteStreams.nullOutputStream());
+      if (streamed) {
+        ParameterFile.writeParameterFile(
+            out, commandLine, /* artifactExpander= */ null, type, StandardCharsets.ISO_8859_1);
+      } else {
+        ParameterFile.writeParameterFile(
+            out, commandLine.arguments(), type, StandardCharsets.ISO_8859_1);
+      }
+      outputBytes += out.getCount();
+    }
+    long nanos = System.nanoTime() - start;
+    bytes = allocatedBytes() - bytes;
+
+    System.out.printf(
+        "%s, %s: %.1f ms, %.0f MB/s, allocated %.1f MB per write%n",
+        name,
+        streamed ? "streamed    " : "materialized",
+        nanos / 1e6 / writes,
+        outputBytes * 1e3 / nanos,
+        bytes / 1e6 / writes);
+  }
+
+  private static CommandLine cppLinkCommandLine(int inputs) {
+    NestedSetBuilder<PathFragment> objects = NestedSetBuilder.linkOrder();
+    for (int i = 0; i < inputs; i++) {
+      objects.add(PathFragment.create("bazel-out/k8-opt/bin/pkg" + i % 1000 + "/o" + i + ".o"));
+    }
+    ImmutableList.Builder<String> libraries = ImmutableList.builder();
+    ImmutableList.Builder<PathFragment> searchDirs = ImmutableList.builder();
+    for (int i = 0; i < inputs / 10; i++) {
+      libraries.add("lib" + i);
+      searchDirs.add(PathFragment.create("bazel-out/k8-opt/bin/_solib_k8/lib" + i));
+    }
+    return CustomCommandLine.builder()
+        .add("-o")
+        .add("bazel-out/k8-opt/bin/pkg/binary")
+        .addPaths(objects.build())
+        .addPaths(VectorArg.addBefore("-L").each(searchDirs.build()))
+        .add("-Wl,--start-group")
+        .addAll(VectorArg.format("-l%s").each(libraries.build()))
+        .add("-Wl,--end-group")
+        .build();
+  }
+
+  private static CommandLine javaCompileCommandLine(int inputs) {
+    NestedSetBuilder<PathFragment> sources = NestedSetBuilder.stableOrder();
+    for (int i = 0; i < inputs; i++) {
+      sources.add(PathFragment.create("java/com/example/pkg" + i % 1000 + "/Source" + i + ".java"));
+    }
+    NestedSetBuilder<PathFragment> classpath = NestedSetBuilder.naiveLinkOrder();
+    for (int i = 0; i < inputs / 10; i++) {
+      classpath.add(PathFragment.create("bazel-out/k8-fastbuild/bin/pkg" + i + "/liblib-hjar.jar"));
+    }
+    NestedSet<PathFragment> jars = classpath.build();
+    return CustomCommandLine.builder()
+        .add("--output")
+        .add("bazel-out/k8-fastbuild/bin/pkg/liblib.jar")
+        .addPaths("--sources", VectorArg.of(sources.build()))
+        .addPaths("--classpath", VectorArg.join(":").each(jars))
+        .addAll(
+            "--direct_dependencies",
+            VectorArg.of(jars).mapped((jar, args) -> args.accept(jar.getPathString())))
+        .build();
+  }
+
+  private static long allocatedBytes() {
+    return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+        .getCurrentThreadAllocatedBytes();
+  }
+
+  private ParameterFileBenchmark() {}
+}
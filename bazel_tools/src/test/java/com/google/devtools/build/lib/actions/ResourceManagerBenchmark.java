@@ -0,0 +1,122 @@
+// Copyright 2026 The Bazel Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.google.devtools.build.lib.actions;
+
+import com.google.devtools.build.lib.actions.ResourceManager.ResourceHandle;
+import com.google.devtools.build.lib.actions.ResourceManager.ResourcePriority;
+import com.google.devtools.build.lib.actions.util.ActionsTestUtil.NullAction;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Measures the throughput of {@link ResourceManager} and the time actions wait in it.
+ *
+ * <p>Usage: {@code ResourceManagerBenchmark [cycles] [threads] [runs]}. {@code threads} (500 by
+ * default, as with {@code --jobs=500}) threads share {@code cycles} (10 thousand by default)
+ * acquire/release cycles on a host with 32 CPUs and 64 GB of RAM. One request in 20 is large (16
+ * CPUs and 16 GB, held for 2 ms); the rest take one CPU and 250 MB for 100 µs. Reports the
+ * cycles per second and the wait times of the small and the large requests, so that both
+ * contention and starvation of the large requests show, once with the default scheduling and once
+ * with {@code --experimental_fair_resource_scheduling}.
+ */
+public final class ResourceManagerBenchmark {
+
+  private static final ResourceSet SMALL = ResourceSet.createWithRamCpu(250, 1);
+  private static final ResourceSet LARGE = ResourceSet.createWithRamCpu(16_000, 16);
+  private static final int LARGE_EVERY = 20;
+
+  public static void main(String[] args) throws Exception {
+    int cycles = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+    int threads = args.length > 1 ? Integer.parseInt(args[1]) : 500;
+    int runs = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+
+    ActionExecutionMetadata owner = new NullAction();
+    for (int run = 0; run < runs; run++) {
+      for (boolean fair : new boolean[] {false, true}) {
+        run(owner, run, fair, cycles, threads);
+      }
+    }
+  }
+
+  private static void run(
+      ActionExecutionMetadata owner, int run, boolean fair, int cycles, int threads)
+      throws InterruptedException {
+    ResourceManager rm = ResourceManager.instanceForTestingOnly();
+    rm.setAvailableResources(ResourceSet.createWithRamCpu(64_000, 32));
+    rm.setFairScheduling(fair);
+
+    long[] waitNanos = new long[cycles];
+    AtomicInteger next = new AtomicInteger();
+    CountDownLatch done = new CountDownLatch(threads);
+    long start = System.nanoTime();
+    for (int t = 0; t < threads; t++) {
+      new Thread(
+              () -> {
+                try {
+                  for (int i = next.getAndIncrement(); i < cycles; i = next.getAndIncrement()) {
+                    boolean large = i % LARGE_EVERY == 0;
+                    ResourceSet resources = large ? LARGE : SMALL;
+                    long before = System.nanoTime();
+                    try (ResourceHandle handle =
+                        rm.acquireResources(owner, resources, ResourcePriority.LOCAL)) {
+                      waitNanos[i] = System.nanoTime() - before;
+                      LockSupport.parkNanos(large ? TimeUnit.MILLISECONDS.toNanos(2) : 100_000);
+                    }
+                  }
+                } catch (InterruptedException e) {
+                  Thread.currentThread().interrupt();
+                } finally {
+                  done.countDown();
+                }
+              })
+          .start();
+    }
+    done.await();
+    long nanos = System.nanoTime() - start;
+
+    long[] small = new long[cycles - (cycles + LARGE_EVERY - 1) / LARGE_EVERY];
+    long[] large = new long[cycles - small.length];
+    for (int i = 0, s = 0, l = 0; i < cycles; i++) {
+      if (i % LARGE_EVERY == 0) {
+        large[l++] = waitNanos[i];
+      } else {
+        small[s++] = waitNanos[i];
+      }
+    }
+    System.out.printf(
+        "run %d, %s: %d cycles/s; small wait %s; large wait %s%n",
+        run,
+        fair ? "fair   " : "default",
+        cycles * 1_000_000_000L / nanos,
+        percentiles(small),
+        percentiles(large));
+  }
+
+  private static String percentiles(long[] waitNanos) {
+    Arrays.sort(waitNanos);
+    return String.format(
+        "p50 %.2f ms, p99 %.2f ms, max %.2f ms",
+        percentile(waitNanos, 0.5), percentile(waitNanos, 0.99), percentile(waitNanos, 1.0));
+  }
+
+  private static double percentile(long[] sorted, double fraction) {
+    int index = (int) Math.ceil(fraction * sorted.length) - 1;
+    return sorted[Math.max(0, index)] / 1e6;
+  }
+
+  private ResourceManagerBenchmark() {}
+}
@@ -55,6 +55,7 @@ public class ResourceManagerTest {
     sync2 = new CyclicBarrier(2);
     rm.resetResourceUsage();
     rm.setPrioritizeLocalActions(true);
+    rm.setFairScheduling(false);
   }
 
   private ResourceHandle acquire(double ram, double cpu, int tests, ResourcePriority priority)
@@ -594,6 +595,87 @@ public class ResourceManagerTest {
     syncDynamicStandalone1.await(1, TimeUnit.SECONDS);
   }
 
+  @Test
+  public void testLargeRequestIsNotStarvedBySmallOnes() throws Exception {
+    rm.setFairScheduling(true);
+    TestThread holder =
+        new TestThread(
+            () -> {
+              acquire(600, 0, 0);
+              sync.await();
+              sync.await();
+              release(600, 0, 0);
+            });
+    holder.start();
+    sync.await(1, TimeUnit.SECONDS);
+
+    TestThread large =
+        new TestThread(
+            () -> {
+              acquire(900, 0, 0);
+              validate(1);
+              release(900, 0, 0);
+            });
+    large.start();
+    while (rm.getWaitCount() == 0) {
+      Thread.yield();
+    }
+
+    // Small requests fit next to the holder and may go ahead of the large one for a while.
+    for (int i = 0; i < ResourceManager.MAX_RELEASES_PASSED_OVER; i++) {
+      ResourceHandle handle = acquireNonblocking(100, 0, 0);
+      assertThat(handle).isNotNull();
+      handle.close();
+    }
+    // But then they have to wait for it.
+    assertThat(acquireNonblocking(100, 0, 0)).isNull();
+    assertThat(counter.get()).isEqualTo(0);
+
+    sync.await(1, TimeUnit.SECONDS);
+    holder.joinAndAssertState(TestUtils.WAIT_TIMEOUT_MILLISECONDS);
+    large.joinAndAssertState(TestUtils.WAIT_TIMEOUT_MILLISECONDS);
+    assertThat(counter.get()).isEqualTo(1);
+    assertThat(acquireNonblocking(100, 0, 0)).isNotNull();
+  }
+
+  @Test
+  public void testSmallRequestsPassLargeOneWithoutFairScheduling() throws Exception {
+    TestThread holder =
+        new TestThread(
+            () -> {
+              acquire(600, 0, 0);
+              sync.await();
+              sync.await();
+              release(600, 0, 0);
+            });
+    holder.start();
+    sync.await(1, TimeUnit.SECONDS);
+
+    TestThread large =
+        new TestThread(
+            () -> {
+              acquire(900, 0, 0);
+              validate(1);
+              release(900, 0, 0);
+            });
+    large.start();
+    while (rm.getWaitCount() == 0) {
+      Thread.yield();
+    }
+
+    for (int i = 0; i < 2 * ResourceManager.MAX_RELEASES_PASSED_OVER; i++) {
+      ResourceHandle handle = acquireNonblocking(100, 0, 0);
+      assertThat(handle).isNotNull();
+      handle.close();
+    }
+    assertThat(counter.get()).isEqualTo(0);
+
+    sync.await(1, TimeUnit.SECONDS);
+    holder.joinAndAssertState(TestUtils.WAIT_TIMEOUT_MILLISECONDS);
+    large.joinAndAssertState(TestUtils.WAIT_TIMEOUT_MILLISECONDS);
+    assertThat(counter.get()).isEqualTo(1);
+  }
+
   private CyclicBarrier startAcquireReleaseThread(ResourcePriority priority) {
     final CyclicBarrier sync = new CyclicBarrier(2);
     TestThread thread =
@@ -0,0 +1,132 @@
+// Copyright 2026 The Bazel Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.google.devtools.build.lib.actions.cache;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.devtools.build.lib.actions.FileArtifactValue;
+import com.google.devtools.build.lib.clock.BlazeClock;
+import com.google.devtools.build.lib.clock.Clock;
+import com.google.devtools.build.lib.events.NullEventHandler;
+import com.google.devtools.build.lib.vfs.DigestHashFunction;
+import com.google.devtools.build.lib.vfs.JavaIoFileSystem;
+import com.google.devtools.build.lib.vfs.Path;
+import com.google.devtools.build.lib.vfs.PathFragment;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+
+/**
+ * Compares {@link CompactPersistentActionCache} with {@link MappedPersistentActionCache}.
+ *
+ * <p>Usage: {@code ActionCacheBenchmark [entries] [inputs_per_entry]}. For each implementation the
+ * benchmark populates a cache, saves it, and then measures the time to load it in a fresh instance,
+ * the heap retained by the loaded cache, and the latency of {@link ActionCache#save} after a small
+ * incremental update, which is what a typical incremental build pays at the end of every command.
+ */
+public final class ActionCacheBenchmark {
+
+  private interface Factory {
+    ActionCache create(Path cacheRoot, Clock clock) throws IOException;
+  }
+
+  public static void main(String[] args) throws Exception {
+    int entries = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+    int inputsPerEntry = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+
+    run(
+        "compact",
+        (root, clock) -> CompactPersistentActionCache.create(root, clock, NullEventHandler.INSTANCE),
+        entries,
+        inputsPerEntry);
+    run(
+        "mapped",
+        (root, clock) -> MappedPersistentActionCache.create(root, clock, NullEventHandler.INSTANCE),
+        entries,
+        inputsPerEntry);
+  }
+
+  private static void run(String name, Factory factory, int entries, int inputsPerEntry)
+      throws Exception {
+    JavaIoFileSystem fs = new JavaIoFileSystem(DigestHashFunction.SHA256);
+    Path root = fs.getPath(Files.createTempDirectory("action_cache_benchmark").toString());
+    Clock clock = BlazeClock.instance();
+    Random random = new Random(42);
+    try {
+      ActionCache cache = factory.create(root, clock);
+      for (int i = 0; i < entries; i++) {
+        cache.put("action-" + i, newEntry(random, i, inputsPerEntry));
+      }
+      cache.save();
+      cache = null;
+
+      long heapBefore = usedHeap();
+      long start = System.nanoTime();
+      ActionCache loaded = factory.create(root, clock);
+      long loadNanos = System.nanoTime() - start;
+      long heapAfter = usedHeap();
+
+      long[] saveNanos = new long[10];
+      for (int round = 0; round < saveNanos.length; round++) {
+        for (int i = 0; i < entries / 100; i++) {
+          int id = random.nextInt(entries);
+          loaded.put("action-" + id, newEntry(random, id, inputsPerEntry));
+        }
+        start = System.nanoTime();
+        loaded.save();
+        saveNanos[round] = System.nanoTime() - start;
+      }
+      long totalSaveNanos = 0;
+      for (long nanos : saveNanos) {
+        totalSaveNanos += nanos;
+      }
+
+      System.out.printf(
+          "%-8s load %8.1fms | retained heap %8.1fMiB | incremental save avg %8.1fms%n",
+          name,
+          loadNanos / 1e6,
+          (heapAfter - heapBefore) / (1024.0 * 1024.0),
+          totalSaveNanos / 1e6 / saveNanos.length);
+      // Keep the loaded cache reachable until after the heap has been measured.
+      loaded.resetStatistics();
+    } finally {
+      root.deleteTree();
+    }
+  }
+
+  private static ActionCache.Entry newEntry(Random random, int id, int inputsPerEntry) {
+    ActionCache.Entry entry =
+        new ActionCache.Entry(
+            "key-" + random.nextLong(), ImmutableMap.of(), /* discoversInputs= */ true);
+    for (int i = 0; i < inputsPerEntry; i++) {
+      byte[] digest = new byte[32];
+      random.nextBytes(digest);
+      entry.addInputFile(
+          PathFragment.create("pkg" + (id % 1000) + "/src/file" + i + ".cc"),
+          FileArtifactValue.createForVirtualActionInput(digest, 1024));
+    }
+    entry.getFileDigest();
+    return entry;
+  }
+
+  private static long usedHeap() throws InterruptedException {
+    Runtime runtime = Runtime.getRuntime();
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+      Thread.sleep(100);
+    }
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+
+  private ActionCacheBenchmark() {}
+}
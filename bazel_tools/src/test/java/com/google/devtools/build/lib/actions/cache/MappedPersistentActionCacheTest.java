@@ -0,0 +1,170 @@
+// Copyright 2026 The Bazel Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.google.devtools.build.lib.actions.cache;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.devtools.build.lib.actions.Artifact;
+import com.google.devtools.build.lib.actions.FileArtifactValue.RemoteFileArtifactValue;
+import com.google.devtools.build.lib.actions.util.ActionsTestUtil;
+import com.google.devtools.build.lib.events.NullEventHandler;
+import com.google.devtools.build.lib.testutil.ManualClock;
+import com.google.devtools.build.lib.testutil.TestUtils;
+import com.google.devtools.build.lib.vfs.Path;
+import java.io.RandomAccessFile;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link MappedPersistentActionCache}. */
+@RunWith(JUnit4.class)
+public class MappedPersistentActionCacheTest {
+
+  private final ManualClock clock = new ManualClock();
+  private Path cacheRoot;
+  private MappedPersistentActionCache cache;
+
+  @Before
+  public final void createCache() throws Exception {
+    // The log is memory-mapped, so it needs a real file system.
+    cacheRoot = TestUtils.createUniqueTmpDir(null).getChild("cache");
+    cache = MappedPersistentActionCache.create(cacheRoot, clock, NullEventHandler.INSTANCE);
+  }
+
+  @Test
+  public void testGetInvalidKey() {
+    assertThat(cache.get("key")).isNull();
+  }
+
+  @Test
+  public void testPutAndGet() {
+    putKey("key", cache, /* discoversInputs= */ true);
+    ActionCache.Entry entry = cache.get("key");
+    assertThat(entry).isNotNull();
+    assertThat(entry.toString()).isEqualTo(cache.get("key").toString());
+  }
+
+  @Test
+  public void testPutAndRemove() {
+    putKey("key", cache, /* discoversInputs= */ false);
+    cache.remove("key");
+    assertThat(cache.get("key")).isNull();
+  }
+
+  @Test
+  public void testPutAndGet_savesRemoteFileMetadata() {
+    ActionCache.Entry entry = new ActionCache.Entry("key", ImmutableMap.of(), false);
+    Artifact artifact = ActionsTestUtil.DUMMY_ARTIFACT;
+    RemoteFileArtifactValue metadata =
+        new RemoteFileArtifactValue(new byte[] {1, 2, 3}, 3, 1, "action-id");
+    entry.addOutputFile(artifact, metadata, /*saveFileMetadata=*/ true);
+
+    cache.put("key", entry);
+
+    assertThat(cache.get("key").getOutputFile(artifact)).isEqualTo(metadata);
+  }
+
+  @Test
+  public void testSaveAndReload() throws Exception {
+    for (int i = 0; i < 300; i++) {
+      putKey(Integer.toString(i), cache, i % 2 == 0);
+    }
+    cache.remove("7");
+    assertThat(cache.save()).isGreaterThan(0L);
+
+    MappedPersistentActionCache newCache =
+        MappedPersistentActionCache.create(cacheRoot, clock, NullEventHandler.INSTANCE);
+    for (int i = 0; i < 300; i++) {
+      String key = Integer.toString(i);
+      if (i == 7) {
+        assertThat(newCache.get(key)).isNull();
+      } else {
+        assertThat(newCache.get(key).toString()).isEqualTo(cache.get(key).toString());
+      }
+    }
+  }
+
+  @Test
+  public void testUnsavedEntriesAreCommittedPeriodically() throws Exception {
+    putKey("early", cache, false);
+    clock.advanceMillis(5000);
+    putKey("late", cache, false);
+
+    MappedPersistentActionCache newCache =
+        MappedPersistentActionCache.create(cacheRoot, clock, NullEventHandler.INSTANCE);
+    assertThat(newCache.get("early")).isNotNull();
+    assertThat(newCache.get("late")).isNotNull();
+  }
+
+  @Test
+  public void testClear() throws Exception {
+    putKey("key", cache, false);
+    cache.clear();
+    assertThat(cache.get("key")).isNull();
+  }
+
+  @Test
+  public void testCorruptedLogIsReset() throws Exception {
+    putKey("key", cache, false);
+    cache.save();
+    Path logFile = MappedPersistentActionCache.logFile(cacheRoot);
+    try (RandomAccessFile file = new RandomAccessFile(logFile.getPathFile(), "rw")) {
+      file.writeInt(0xdeadbeef);
+    }
+
+    MappedPersistentActionCache newCache =
+        MappedPersistentActionCache.create(cacheRoot, clock, NullEventHandler.INSTANCE);
+
+    assertThat(newCache.get("key")).isNull();
+    assertThat(cacheRoot.getChild(logFile.getBaseName() + ".bad").exists()).isTrue();
+  }
+
+  @Test
+  public void testFullLogIsCompacted() throws Exception {
+    MappedPersistentActionCache small =
+        MappedPersistentActionCache.create(
+            cacheRoot.getChild("small"), clock, NullEventHandler.INSTANCE, /* maxLogBytes= */ 4096);
+    for (int i = 0; i < 1000; i++) {
+      putKey("key" + i % 5, small, false);
+    }
+
+    for (int i = 0; i < 5; i++) {
+      assertThat(small.get("key" + i)).isNotNull();
+    }
+    small.close();
+  }
+
+  @Test
+  public void testFullLogOfLiveEntriesIsCleared() throws Exception {
+    MappedPersistentActionCache small =
+        MappedPersistentActionCache.create(
+            cacheRoot.getChild("small"), clock, NullEventHandler.INSTANCE, /* maxLogBytes= */ 4096);
+    for (int i = 0; i < 1000; i++) {
+      putKey("key" + i, small, false);
+    }
+
+    assertThat(small.get("key0")).isNull();
+    assertThat(small.get("key999")).isNotNull();
+    small.close();
+  }
+
+  private static void putKey(String key, ActionCache ac, boolean discoversInputs) {
+    ActionCache.Entry entry =
+        new ActionCache.Entry(key, ImmutableMap.of("k", "v"), discoversInputs);
+    entry.getFileDigest();
+    ac.put(key, entry);
+  }
+}
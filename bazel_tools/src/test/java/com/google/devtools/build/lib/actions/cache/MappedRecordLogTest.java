@@ -0,0 +1,197 @@
+// Copyright 2026 The Bazel Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.google.devtools.build.lib.actions.cache;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertThrows;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import javax.annotation.Nullable;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link MappedRecordLog}. */
+@RunWith(JUnit4.class)
+public class MappedRecordLogTest {
+
+  private static final int VERSION = 7;
+
+  private Path file;
+
+  @Before
+  public final void createFile() throws Exception {
+    file = Files.createTempDirectory("mapped_record_log").resolve("log");
+  }
+
+  @Test
+  public void putGetAndRemove() throws Exception {
+    MappedRecordLog log = MappedRecordLog.open(file, VERSION);
+    log.put(1, bytes("one"));
+    log.put(2, bytes("two"));
+    log.put(1, bytes("uno"));
+    log.remove(2);
+
+    assertThat(string(log.get(1))).isEqualTo("uno");
+    assertThat(log.get(2)).isNull();
+    assertThat(log.get(3)).isNull();
+    assertThat(log.size()).isEqualTo(1);
+  }
+
+  @Test
+  public void onlyCommittedRecordsAreReloaded() throws Exception {
+    MappedRecordLog log = MappedRecordLog.open(file, VERSION);
+    log.put(1, bytes("committed"));
+    log.commit();
+    log.put(2, bytes("pending"));
+    log.close();
+
+    MappedRecordLog reloaded = MappedRecordLog.open(file, VERSION);
+    assertThat(string(reloaded.get(1))).isEqualTo("committed");
+    assertThat(reloaded.get(2)).isNull();
+  }
+
+  @Test
+  public void saveSurvivesReload() throws Exception {
+    MappedRecordLog log = MappedRecordLog.open(file, VERSION);
+    for (int i = 0; i < 10_000; i++) {
+      log.put(i, bytes("value" + i));
+    }
+    log.remove(17);
+    log.save();
+    log.close();
+
+    MappedRecordLog reloaded = MappedRecordLog.open(file, VERSION);
+    assertThat(reloaded.size()).isEqualTo(9_999);
+    assertThat(string(reloaded.get(9_999))).isEqualTo("value9999");
+    assertThat(reloaded.get(17)).isNull();
+  }
+
+  @Test
+  public void growsBeyondInitialMapping() throws Exception {
+    MappedRecordLog log = MappedRecordLog.open(file, VERSION);
+    byte[] large = new byte[3 << 20];
+    large[large.length - 1] = 42;
+    log.put(1, large);
+    ByteBuffer view = log.get(1);
+    log.put(2, large);
+
+    assertThat(view.get(large.length - 1)).isEqualTo(42);
+    assertThat(log.get(2).remaining()).isEqualTo(large.length);
+  }
+
+  @Test
+  public void compactionDropsDeadRecordsAndKeepsLiveOnes() throws Exception {
+    MappedRecordLog log = MappedRecordLog.open(file, VERSION);
+    Map<Integer, String> expected = new HashMap<>();
+    for (int round = 0; round < 5; round++) {
+      for (int i = 0; i < 1000; i++) {
+        String value = "value" + i + "@" + round;
+        log.put(i, bytes(value));
+        expected.put(i, value);
+      }
+    }
+    for (int i = 0; i < 1000; i += 3) {
+      log.remove(i);
+      expected.remove(i);
+    }
+    int before = log.length();
+
+    log.compact();
+
+    assertThat(log.length()).isLessThan(before);
+    assertThat(log.length()).isEqualTo(MappedRecordLog.HEADER_SIZE + log.liveBytes());
+    assertThat(log.size()).isEqualTo(expected.size());
+    for (int i = 0; i < 1000; i++) {
+      assertThat(string(log.get(i))).isEqualTo(expected.get(i));
+    }
+    log.save();
+    log.close();
+    MappedRecordLog reloaded = MappedRecordLog.open(file, VERSION);
+    for (int i = 0; i < 1000; i++) {
+      assertThat(string(reloaded.get(i))).isEqualTo(expected.get(i));
+    }
+  }
+
+  @Test
+  public void compactionKeepsUncommittedRecordsUncommitted() throws Exception {
+    MappedRecordLog log = MappedRecordLog.open(file, VERSION);
+    log.put(1, bytes("committed"));
+    log.commit();
+    log.put(2, bytes("pending"));
+
+    log.compact();
+    log.close();
+
+    MappedRecordLog reloaded = MappedRecordLog.open(file, VERSION);
+    assertThat(string(reloaded.get(1))).isEqualTo("committed");
+    assertThat(reloaded.get(2)).isNull();
+  }
+
+  @Test
+  public void fullLogThrowsUntilCompacted() throws Exception {
+    MappedRecordLog log = MappedRecordLog.open(file, VERSION, /* maxCapacity= */ 256);
+    byte[] value = new byte[50];
+    for (int i = 0; i < 4; i++) {
+      log.put(1, value);
+    }
+
+    assertThrows(MappedRecordLog.FullException.class, () -> log.put(1, value));
+    log.compact();
+    log.put(1, value);
+    assertThat(log.get(1).remaining()).isEqualTo(value.length);
+  }
+
+  @Test
+  public void clearRemovesEverything() throws Exception {
+    MappedRecordLog log = MappedRecordLog.open(file, VERSION);
+    log.put(1, bytes("one"));
+    log.clear();
+
+    assertThat(log.get(1)).isNull();
+    assertThat(log.size()).isEqualTo(0);
+    assertThat(log.length()).isEqualTo(MappedRecordLog.HEADER_SIZE);
+  }
+
+  @Test
+  public void rejectsOtherVersion() throws Exception {
+    MappedRecordLog log = MappedRecordLog.open(file, VERSION);
+    log.put(1, bytes("one"));
+    log.save();
+    log.close();
+
+    assertThrows(IOException.class, () -> MappedRecordLog.open(file, VERSION + 1));
+  }
+
+  private static byte[] bytes(String s) {
+    return s.getBytes(UTF_8);
+  }
+
+  @Nullable
+  private static String string(@Nullable ByteBuffer buffer) {
+    if (buffer == null) {
+      return null;
+    }
+    byte[] data = new byte[buffer.remaining()];
+    buffer.get(data);
+    return new String(data, UTF_8);
+  }
+}
@@ -19,14 +19,17 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMultimap;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.Uninterruptibles;
 import com.google.devtools.build.lib.cmdline.BatchCallback.SafeBatchCallback;
 import com.google.devtools.build.lib.concurrent.ThreadSafety.ThreadSafe;
 import com.google.devtools.build.lib.testutil.TestThread;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
@@ -237,4 +240,43 @@ public class ParallelVisitorTest {
       assertThat(Iterables.size(resultBatch)).isAtMost(processResultsBatchSize);
     }
   }
+
+  @Test
+  public void testBoundsPendingResultBatches() throws Exception {
+    ImmutableMultimap.Builder<String, String> chain = ImmutableMultimap.builder();
+    for (int i = 0; i < 20; i++) {
+      chain.put("k" + i, "k" + (i + 1));
+    }
+    AtomicInteger pendingResults = new AtomicInteger();
+    AtomicInteger maxPendingResults = new AtomicInteger();
+    RecordingCallback callback =
+        new RecordingCallback() {
+          @Override
+          public void process(Iterable<String> partialResult) {
+            // A callback much slower than the visitation, like one that writes the results.
+            Uninterruptibles.sleepUninterruptibly(Duration.ofMillis(5));
+            super.process(partialResult);
+            pendingResults.addAndGet(-Iterables.size(partialResult));
+          }
+        };
+    RecordingParallelVisitor visitor =
+        new RecordingParallelVisitor(
+            chain.build(), callback, /*visitBatchSize=*/ 1, /*processResultsBatchSize=*/ 1) {
+          @Override
+          protected int getMaxPendingResultBatches() {
+            return 1;
+          }
+
+          @Override
+          protected Visit getVisitResult(Iterable<String> values) {
+            maxPendingResults.accumulateAndGet(
+                pendingResults.addAndGet(Iterables.size(values)), Math::max);
+            return super.getVisitResult(values);
+          }
+        };
+    visitor.visitAndWaitForCompletion(ImmutableList.of(new InputKey("k0")));
+
+    assertThat(Iterables.concat(callback.results)).hasSize(21);
+    assertThat(maxPendingResults.get()).isEqualTo(1);
+  }
 }
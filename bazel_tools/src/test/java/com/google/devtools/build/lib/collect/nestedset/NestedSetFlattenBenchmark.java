@@ -0,0 +1,100 @@
+// Copyright 2026 The Bazel Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.google.devtools.build.lib.collect.nestedset;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Measures the time and garbage of flattening classpath-like {@link NestedSet}s.
+ *
+ * <p>Usage: {@code NestedSetFlattenBenchmark [depth] [consumers] [flattenings] [runs]}. Builds
+ * {@code depth} (1000 by default) libraries in compile order, each of which has one or two jars
+ * of its own, in two shapes: a chain, in which each library depends on the one before it, and a
+ * DAG, in which each depends on up to three of the ten libraries before it, so that the transitive
+ * classpaths overlap heavily. Each classpath is flattened {@code consumers} (2 by default) times
+ * as soon as it is built, as by the actions of a library, and then all of them are flattened
+ * {@code flattenings} (10 by default) more times, as by repeated consumers of the same sets.
+ * Reports the time and allocations of both phases, for each shape.
+ */
+public final class NestedSetFlattenBenchmark {
+
+  public static void main(String[] args) {
+    int depth = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+    int consumers = args.length > 1 ? Integer.parseInt(args[1]) : 2;
+    int flattenings = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+    int runs = args.length > 3 ? Integer.parseInt(args[3]) : 5;
+
+    for (int run = 0; run < 2 * runs; run++) {
+      boolean chain = run % 2 == 0;
+      Random random = new Random(run);
+      List<NestedSet<String>> classpaths = new ArrayList<>(depth);
+      long elements = 0;
+
+      long bytes = allocatedBytes();
+      long start = System.nanoTime();
+      for (int i = 0; i < depth; i++) {
+        NestedSet<String> classpath = buildClasspath(classpaths, chain, random);
+        classpaths.add(classpath);
+        for (int j = 0; j < consumers; j++) {
+          elements += classpath.toList().size();
+        }
+      }
+      long buildNanos = System.nanoTime() - start;
+      long buildBytes = allocatedBytes() - bytes;
+
+      bytes = allocatedBytes();
+      start = System.nanoTime();
+      for (int i = 0; i < flattenings; i++) {
+        for (NestedSet<String> classpath : classpaths) {
+          elements += classpath.toList().size();
+        }
+      }
+      long repeatNanos = System.nanoTime() - start;
+      long repeatBytes = allocatedBytes() - bytes;
+
+      System.out.printf(
+          "%s: %d elements; build: %.1f ms, %.1f MB; each repetition: %.1f ms, %.1f MB%n",
+          chain ? "chain" : "dag  ",
+          elements,
+          buildNanos / 1e6,
+          buildBytes / 1e6,
+          repeatNanos / 1e6 / flattenings,
+          repeatBytes / 1e6 / flattenings);
+    }
+  }
+
+  private static NestedSet<String> buildClasspath(
+      List<NestedSet<String>> classpaths, boolean chain, Random random) {
+    int i = classpaths.size();
+    NestedSetBuilder<String> builder = NestedSetBuilder.compileOrder();
+    int deps = Math.min(i, chain ? 1 : 1 + random.nextInt(3));
+    for (int j = 0; j < deps; j++) {
+      builder.addTransitive(
+          classpaths.get(chain ? i - 1 : i - 1 - random.nextInt(Math.min(i, 10))));
+    }
+    builder.add("lib" + i + ".jar");
+    if (random.nextBoolean()) {
+      builder.add("lib" + i + "-resources.jar");
+    }
+    return builder.build();
+  }
+
+  private static long allocatedBytes() {
+    return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+        .getCurrentThreadAllocatedBytes();
+  }
+}
@@ -0,0 +1,165 @@
+// Copyright 2026 The Bazel Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.google.devtools.build.lib.collect.nestedset;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.collect.ImmutableList;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link NestedSetFlattenCache} and its use by {@link NestedSet#toList}. */
+@RunWith(JUnit4.class)
+public final class NestedSetFlattenCacheTest {
+
+  private NestedSetFlattenCache cache;
+
+  @Before
+  public void enableCache() {
+    NestedSetFlattenCache.configure(1 << 20);
+    cache = NestedSetFlattenCache.instance();
+  }
+
+  @After
+  public void disableCache() {
+    NestedSetFlattenCache.configure(0);
+  }
+
+  @Test
+  public void repeatedFlatteningReturnsCachedList() {
+    NestedSet<String> set = chain(Order.STABLE_ORDER, 2 * NestedSetFlattenCache.MIN_CACHED_SIZE);
+    ImmutableList<String> first = set.toList();
+    ImmutableList<String> second = set.toList();
+    long hits = cache.getHitCount();
+
+    assertThat(second).isNotSameInstanceAs(first);
+    assertThat(set.toList()).isSameInstanceAs(second);
+    assertThat(cache.getHitCount()).isEqualTo(hits + 1);
+  }
+
+  @Test
+  public void smallSetsAreNotCached() {
+    NestedSet<String> set = chain(Order.STABLE_ORDER, NestedSetFlattenCache.MIN_CACHED_SIZE / 2);
+    ImmutableList<String> second = set.toList();
+    second = set.toList();
+
+    assertThat(set.toList()).isNotSameInstanceAs(second);
+    assertThat(set.toList()).isEqualTo(second);
+  }
+
+  @Test
+  public void disabledCacheKeepsNothing() {
+    NestedSetFlattenCache.configure(0);
+    NestedSet<String> set = chain(Order.STABLE_ORDER, 2 * NestedSetFlattenCache.MIN_CACHED_SIZE);
+    ImmutableList<String> second = set.toList();
+    second = set.toList();
+
+    assertThat(NestedSetFlattenCache.instance()).isNull();
+    assertThat(set.toList()).isNotSameInstanceAs(second);
+    assertThat(set.toList()).isEqualTo(second);
+  }
+
+  @Test
+  public void chainReusesFlattenedPrefix() {
+    int depth = 4 * NestedSetFlattenCache.MIN_CACHED_SIZE;
+    List<NestedSet<String>> sets = new ArrayList<>();
+    NestedSet<String> set = NestedSetBuilder.emptySet(Order.COMPILE_ORDER);
+    long prefixHits = cache.getPrefixHitCount();
+    for (int i = 0; i < depth; i++) {
+      set = NestedSetBuilder.<String>compileOrder().addTransitive(set).add("jar" + i).build();
+      sets.add(set);
+      // The second flattening caches the set.
+      assertThat(set.toList()).containsExactlyElementsIn(naiveToList(set)).inOrder();
+      assertThat(set.toList()).containsExactlyElementsIn(naiveToList(set)).inOrder();
+    }
+
+    // Every set whose transitive part has enough elements to be cached starts from it.
+    assertThat(cache.getPrefixHitCount() - prefixHits)
+        .isEqualTo(depth - NestedSetFlattenCache.MIN_CACHED_SIZE);
+    assertReplaysMatch(sets);
+  }
+
+  @Test
+  public void randomDagsMatchNaiveTraversal() {
+    Random random = new Random(42);
+    for (Order order : Order.values()) {
+      List<NestedSet<Integer>> sets = new ArrayList<>();
+      for (int i = 0; i < 300; i++) {
+        NestedSetBuilder<Integer> builder = new NestedSetBuilder<>(order);
+        int transitive = sets.isEmpty() ? 0 : random.nextInt(4);
+        for (int j = 0; j < transitive; j++) {
+          // Favor recent sets, so that the DAG gets deep.
+          int index = Math.max(0, sets.size() - 1 - random.nextInt(Math.min(sets.size(), 8)));
+          builder.addTransitive(sets.get(index));
+        }
+        for (int j = random.nextInt(3); j >= 0; j--) {
+          builder.add(random.nextInt(2000));
+        }
+        NestedSet<Integer> set = builder.build();
+        sets.add(set);
+        // Flatten sets zero to two times, so that some are cached, and some walks reuse a prefix.
+        for (int j = random.nextInt(3); j > 0; j--) {
+          assertThat(set.toList()).containsExactlyElementsIn(naiveToList(set)).inOrder();
+        }
+      }
+      assertReplaysMatch(sets);
+    }
+  }
+
+  /**
+   * Checks that the memos of the given sets, some of which were copied from cached successors,
+   * replay the same traversals as a walk would.
+   */
+  private static <E> void assertReplaysMatch(List<NestedSet<E>> sets) {
+    NestedSetFlattenCache.configure(0);
+    for (NestedSet<E> set : sets) {
+      ImmutableList<E> expected = naiveToList(set);
+      assertThat(set.toList()).containsExactlyElementsIn(expected).inOrder();
+      assertThat(set.memoizedFlattenAndGetSize()).isEqualTo(expected.size());
+    }
+  }
+
+  private static NestedSet<String> chain(Order order, int depth) {
+    NestedSet<String> set = NestedSetBuilder.emptySet(order);
+    for (int i = 0; i < depth; i++) {
+      set = new NestedSetBuilder<String>(order).addTransitive(set).add("e" + i).build();
+    }
+    return set;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <E> ImmutableList<E> naiveToList(NestedSet<E> set) {
+    LinkedHashSet<Object> elements = new LinkedHashSet<>();
+    naiveWalk(set.children, elements);
+    ImmutableList<E> list = (ImmutableList<E>) ImmutableList.copyOf(elements);
+    return set.getOrder() == Order.LINK_ORDER ? list.reverse() : list;
+  }
+
+  private static void naiveWalk(Object children, LinkedHashSet<Object> elements) {
+    if (children instanceof Object[]) {
+      for (Object child : (Object[]) children) {
+        naiveWalk(child, elements);
+      }
+    } else {
+      elements.add(children);
+    }
+  }
+}
@@ -17,8 +17,11 @@ package com.google.devtools.build.lib.exec;
 import static com.google.common.truth.Truth.assertThat;
 
 import com.google.common.collect.ImmutableList;
+import com.google.devtools.build.lib.actions.CommandLine;
 import com.google.devtools.build.lib.actions.ParameterFile;
 import com.google.devtools.build.lib.actions.ParameterFile.ParameterFileType;
+import com.google.devtools.build.lib.analysis.actions.CustomCommandLine;
+import com.google.devtools.build.lib.analysis.actions.CustomCommandLine.VectorArg;
 import com.google.devtools.build.lib.testutil.FoundationTestCase;
 import com.google.devtools.build.lib.vfs.PathFragment;
 import java.io.ByteArrayOutputStream;
@@ -64,6 +67,32 @@ public class ParameterFileTest extends FoundationTestCase {
         .containsExactly("--lambda=λ");
   }
 
+  @Test
+  public void testWriteCommandLine() throws Exception {
+    CommandLine commandLine =
+        CommandLine.concat(
+            ImmutableList.of("--prefix"),
+            CommandLine.concat(
+                CustomCommandLine.builder()
+                    .add("--foo")
+                    .addAll(ImmutableList.of("a b", "--füü"))
+                    .addAll(VectorArg.format("--bar=%s").each(ImmutableList.of("x", "y z")))
+                    .addAll("--baz", VectorArg.join(" ").each(ImmutableList.of("1", "2")))
+                    .build(),
+                ImmutableList.of("--suffix")));
+    for (ParameterFileType type : ParameterFileType.values()) {
+      for (Charset charset :
+          ImmutableList.of(StandardCharsets.ISO_8859_1, StandardCharsets.UTF_8)) {
+        ByteArrayOutputStream streamed = new ByteArrayOutputStream();
+        ParameterFile.writeParameterFile(
+            streamed, commandLine, /* artifactExpander= */ null, type, charset);
+        ByteArrayOutputStream materialized = new ByteArrayOutputStream();
+        ParameterFile.writeParameterFile(materialized, commandLine.arguments(), type, charset);
+        assertThat(streamed.toByteArray()).isEqualTo(materialized.toByteArray());
+      }
+    }
+  }
+
   private static final ImmutableList<String> MIXED_ARGS =
       ImmutableList.of("a", "--b", "--c=d", "e");
 
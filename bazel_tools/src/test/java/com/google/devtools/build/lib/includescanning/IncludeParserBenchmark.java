@@ -0,0 +1,163 @@
+// Copyright 2026 The Bazel Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.devtools.build.lib.includescanning;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.hash.HashCode;
+import com.google.devtools.build.lib.buildeventstream.BuildEventStreamProtos.BuildMetrics.IncludeScanningMetrics;
+import com.google.devtools.build.lib.includescanning.IncludeParser.Inclusion;
+import com.google.devtools.build.lib.vfs.DigestHashFunction;
+import com.google.devtools.build.lib.vfs.FileSystemUtils;
+import com.google.devtools.build.lib.vfs.JavaIoFileSystem;
+import com.google.devtools.build.lib.vfs.Path;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Measures parsing a synthetic corpus of C++ headers, splitting each file into lines like the
+ * default {@link IncludeParser} and with fast parsing, with and without the code limit, and writing
+ * and reading the inclusions of all headers with an {@link IncludeParsingCache} file, as after a
+ * server restart.
+ *
+ * <p>Usage: {@code IncludeParserBenchmark [headers] [code lines per header] [runs]}. Every tenth
+ * header has a hundred times as much code, so that it is large enough to be memory-mapped.
+ */
+public final class IncludeParserBenchmark {
+  private static final int CODE_LIMIT = 4096;
+
+  public static void main(String[] args) throws Exception {
+    int headers = args.length > 0 ? Integer.parseInt(args[0]) : 5_000;
+    int codeLines = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+    int runs = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+
+    JavaIoFileSystem fileSystem = new JavaIoFileSystem(DigestHashFunction.SHA256);
+    Path root =
+        fileSystem.getPath(Files.createTempDirectory("include-parser-benchmark").toString());
+    try {
+      List<Path> files = new ArrayList<>();
+      long bytes = 0;
+      for (int i = 0; i < headers; i++) {
+        Path file = root.getRelative("lib" + i % 100 + "/header" + i + ".h");
+        file.getParentDirectory().createDirectoryAndParents();
+        FileSystemUtils.writeContent(
+            file, StandardCharsets.UTF_8, header(i, i % 10 == 0 ? codeLines * 100 : codeLines));
+        files.add(file);
+        bytes += file.getFileSize();
+      }
+      System.out.printf("%d headers, %d MB%n", headers, bytes >> 20);
+
+      IncludeParser lines = new IncludeParser(/* hints= */ null);
+      IncludeParser fast =
+          new IncludeParser(
+              /* hints= */ null,
+              new IncludeParser.FastParsing(/* codeLimit= */ 0, new IncludeParsingCache(null, "")));
+      IncludeParser limited =
+          new IncludeParser(
+              /* hints= */ null,
+              new IncludeParser.FastParsing(CODE_LIMIT, new IncludeParsingCache(null, "")));
+      for (Path file : files) {
+        List<Inclusion> expected = lines.extractInclusions(FileSystemUtils.readContent(file));
+        if (!fast.extractInclusionsFast(file).equals(expected)
+            || !limited.extractInclusionsFast(file).equals(expected)) {
+          throw new IllegalStateException("Parsers disagree on " + file);
+        }
+      }
+      for (int run = 0; run < runs; run++) {
+        long start = System.nanoTime();
+        for (Path file : files) {
+          lines.extractInclusions(FileSystemUtils.readContent(file));
+        }
+        report("lines  ", start, files.size(), bytes);
+        start = System.nanoTime();
+        for (Path file : files) {
+          fast.extractInclusionsFast(file);
+        }
+        report("fast   ", start, files.size(), bytes);
+        start = System.nanoTime();
+        for (Path file : files) {
+          limited.extractInclusionsFast(file);
+        }
+        report("limited", start, files.size(), bytes);
+      }
+
+      Path cacheFile = root.getRelative("include_parsing_cache");
+      IncludeParsingCache cache = new IncludeParsingCache(cacheFile, "benchmark");
+      List<HashCode> digests = new ArrayList<>();
+      for (Path file : files) {
+        HashCode digest = HashCode.fromBytes(file.getDigest());
+        cache.put(digest, ImmutableList.copyOf(fast.extractInclusionsFast(file)));
+        digests.add(digest);
+      }
+      long start = System.nanoTime();
+      cache.save();
+      System.out.printf(
+          "save   : %.0f ms, %d KB%n",
+          (System.nanoTime() - start) / 1e6, cacheFile.getFileSize() >> 10);
+      IncludeParsingCache reloaded = new IncludeParsingCache(cacheFile, "benchmark");
+      for (int i = 0; i < files.size(); i++) {
+        if (!reloaded.get(digests.get(i)).equals(cache.get(digests.get(i)))) {
+          throw new IllegalStateException("Cache file disagrees on " + files.get(i));
+        }
+      }
+      for (int run = 0; run < runs; run++) {
+        start = System.nanoTime();
+        IncludeParsingCache loaded = new IncludeParsingCache(cacheFile, "benchmark");
+        for (int i = 0; i < files.size(); i++) {
+          if (loaded.get(digests.get(i)) == null) {
+            throw new IllegalStateException("Cache misses " + files.get(i));
+          }
+        }
+        double millis = (System.nanoTime() - start) / 1e6;
+        IncludeScanningMetrics metrics = loaded.getAndResetMetrics();
+        System.out.printf(
+            "load   : %d entries in %d ms, %.0f ms with lookups%n",
+            metrics.getEntriesLoaded(), metrics.getLoadTimeInMs(), millis);
+      }
+    } finally {
+      root.deleteTree();
+    }
+  }
+
+  private static void report(String name, long start, int files, long bytes) {
+    double seconds = (System.nanoTime() - start) / 1e9;
+    System.out.printf(
+        "%s: %.0f ms, %.0f files/s, %.0f MB/s%n",
+        name, seconds * 1e3, files / seconds, bytes / seconds / 1e6);
+  }
+
+  /** Like a library header: includes and macros at the top, followed by inline code. */
+  private static String header(int i, int codeLines) {
+    StringBuilder header = new StringBuilder();
+    header.append("// Copyright 2026 Example Inc.\n// Licensed under the Apache License.\n\n");
+    header.append("#ifndef LIB_HEADER").append(i).append("_H_\n");
+    header.append("#define LIB_HEADER").append(i).append("_H_\n\n");
+    header.append("#include <stdint.h>\n#include <string>\n#include <vector>\n");
+    for (int j = 1; j <= 20; j++) {
+      header.append("#include \"lib").append((i + j) % 100).append("/header");
+      header.append(i + j).append(".h\"\n");
+    }
+    header.append("#define LIB_HEADER").append(i).append("_CHECK(x) \\\n");
+    header.append("  do { if (!(x)) abort(); } \\\n");
+    header.append("  while (0)\n\nnamespace lib {\n\n");
+    for (int j = 0; j < codeLines; j++) {
+      header.append("inline int64_t Function").append(j).append("(const std::string& s) {");
+      header.append(" return s.size() * ").append(j).append("; }\n");
+    }
+    header.append("\n}  // namespace lib\n\n#endif  // LIB_HEADER").append(i).append("_H_\n");
+    return header.toString();
+  }
+}
@@ -0,0 +1,185 @@
+// Copyright 2026 The Bazel Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.google.devtools.build.lib.includescanning;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+
+import com.google.common.base.Strings;
+import com.google.devtools.build.lib.includescanning.IncludeParser.Inclusion;
+import com.google.devtools.build.lib.includescanning.IncludeParser.Inclusion.Kind;
+import com.google.devtools.build.lib.testutil.TestUtils;
+import com.google.devtools.build.lib.vfs.DigestHashFunction;
+import com.google.devtools.build.lib.vfs.FileSystem;
+import com.google.devtools.build.lib.vfs.FileSystemUtils;
+import com.google.devtools.build.lib.vfs.JavaIoFileSystem;
+import com.google.devtools.build.lib.vfs.Path;
+import com.google.devtools.build.lib.vfs.inmemoryfs.InMemoryFileSystem;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link IncludeParser}, in particular that fast parsing matches parsing by line. */
+@RunWith(JUnit4.class)
+public class IncludeParserTest {
+  /** Large enough for fast parsing to memory-map the file. */
+  private static final int MAPPED_SIZE = 256 << 10;
+
+  private final IncludeParser parser = new IncludeParser(/* hints= */ null);
+
+  @Test
+  public void testExtractInclusions() {
+    assertThat(parse(parser, "#include \"a.h\"\n  # include <b.h>\n#include_next <c.h>\n"))
+        .containsExactly(
+            Inclusion.create("a.h", Kind.QUOTE),
+            Inclusion.create("b.h", Kind.ANGLE),
+            Inclusion.create("c.h", Kind.NEXT_ANGLE))
+        .inOrder();
+  }
+
+  @Test
+  public void testLineContinuations() {
+    assertThat(parse(parser, "#include \\\n  \"a.h\"\n#inc\\\nlude <b.h>\n"))
+        .containsExactly(Inclusion.create("a.h", Kind.QUOTE))
+        .inOrder();
+    // A directive continued from a line that does not start with one is not a directive.
+    assertThat(parse(parser, "int x; \\\n#include \"a.h\"\n#include <b.h>\n"))
+        .containsExactly(Inclusion.create("b.h", Kind.ANGLE));
+    // An escaped backslash still continues the line, and a line may start with a continuation.
+    assertThat(parse(parser, "#define X \\\\\n#include \"a.h\"\n\\\n#include <b.h>\n"))
+        .containsExactly(Inclusion.create("b.h", Kind.ANGLE));
+  }
+
+  @Test
+  public void testTrailingBackslash() {
+    assertThat(parse(parser, "\\")).isEmpty();
+    assertThat(parse(parser, "#include \"a.h\"\n#define X \\"))
+        .containsExactly(Inclusion.create("a.h", Kind.QUOTE));
+    assertThat(parse(parser, "#include \"a.h\"\\"))
+        .containsExactly(Inclusion.create("a.h", Kind.QUOTE));
+    assertThat(parse(parser, "#include <a.h>\\\n\\"))
+        .containsExactly(Inclusion.create("a.h", Kind.ANGLE));
+  }
+
+  @Test
+  public void testSwigDirectives() {
+    IncludeParser swig = new SwigIncludeParser();
+    assertThat(
+            parse(
+                swig,
+                "%module m\n%include \"a.i\"\n  %import(module=\"x\") <b.i>\n#include \"c.h\"\n"
+                    + "%extern \\\n \"d.i\"\nint x = 1 % 2; %include \"e.i\"\n"))
+        .containsExactly(
+            Inclusion.create("a.i", Kind.QUOTE),
+            Inclusion.create("b.i", Kind.ANGLE),
+            Inclusion.create("d.i", Kind.QUOTE))
+        .inOrder();
+  }
+
+  @Test
+  public void testMappedAndReadFiles() throws Exception {
+    String content =
+        "#include \"a.h\"\n"
+            + Strings.repeat("int f(); // # not a directive \\\n continued\n", MAPPED_SIZE / 40)
+            + "#include <b.h>\n#define X \\";
+    assertThat(content.length()).isAtLeast(MAPPED_SIZE);
+    List<Inclusion> expected = parser.extractInclusions(content.getBytes(ISO_8859_1));
+    assertThat(expected)
+        .containsExactly(Inclusion.create("a.h", Kind.QUOTE), Inclusion.create("b.h", Kind.ANGLE))
+        .inOrder();
+
+    IncludeParser fast = fastParser(/* codeLimit= */ 0);
+    FileSystem javaIo = new JavaIoFileSystem(DigestHashFunction.SHA256);
+    Path dir = TestUtils.createUniqueTmpDir(javaIo);
+    FileSystem inMemory = new InMemoryFileSystem(DigestHashFunction.SHA256);
+    for (Path file :
+        new Path[] {
+          dir.getRelative("mapped.h"), // local and large, so memory-mapped
+          inMemory.getPath("/read.h"), // without a file channel, so read
+        }) {
+      FileSystemUtils.writeContent(file, content.getBytes(ISO_8859_1));
+      assertThat(fast.extractInclusionsFast(file)).isEqualTo(expected);
+    }
+    Path small = dir.getRelative("small.h"); // local but small, so read
+    FileSystemUtils.writeContent(small, "#include \"a.h\"\n#define X \\".getBytes(ISO_8859_1));
+    assertThat(fast.extractInclusionsFast(small))
+        .containsExactly(Inclusion.create("a.h", Kind.QUOTE));
+  }
+
+  @Test
+  public void testCodeLimit() {
+    String head = "#include \"a.h\"\n// comment\n#include <b.h>\n";
+    String code = Strings.repeat("int f();\n", 100); // 900 bytes
+    String content = head + code + "#include \"c.h\"\n";
+    ByteBuffer chars = ByteBuffer.wrap(content.getBytes(ISO_8859_1));
+
+    assertThat(parser.extractInclusions(chars, /* codeLimit= */ 0))
+        .containsExactly(
+            Inclusion.create("a.h", Kind.QUOTE),
+            Inclusion.create("b.h", Kind.ANGLE),
+            Inclusion.create("c.h", Kind.QUOTE))
+        .inOrder();
+    assertThat(parser.extractInclusions(chars, /* codeLimit= */ 1000))
+        .isEqualTo(parser.extractInclusions(content.getBytes(ISO_8859_1)));
+    // Stops at the first directive that follows more than the limit after the previous one.
+    assertThat(parser.extractInclusions(chars, /* codeLimit= */ 800))
+        .containsExactly(Inclusion.create("a.h", Kind.QUOTE), Inclusion.create("b.h", Kind.ANGLE))
+        .inOrder();
+    // Lines that merely contain the marker do not count as directives.
+    String marked = head + code + "char c = '#';\n" + code + "#include \"c.h\"\n";
+    assertThat(parser.extractInclusions(ByteBuffer.wrap(marked.getBytes(ISO_8859_1)), 1000))
+        .hasSize(2);
+  }
+
+  /** Compares both parsers on random files made of the tokens that matter to them. */
+  @Test
+  public void testFastParsingMatchesParsingByLine() {
+    String[] tokens = {
+      "#", "%", "\\", "\n", "\\\n", " ", "\t", "include", "include_next", "import", "extern",
+      "__has_include", "(", ")", "\"a.h\"", "<b/c.h>", "\"", "<", ">", "/*", "*/", "//", "x",
+    };
+    IncludeParser swig = new SwigIncludeParser();
+    Random random = new Random(42);
+    for (int i = 0; i < 20_000; i++) {
+      StringBuilder content = new StringBuilder();
+      for (int j = random.nextInt(40); j > 0; j--) {
+        content.append(tokens[random.nextInt(tokens.length)]);
+      }
+      byte[] chars = content.toString().getBytes(ISO_8859_1);
+      for (IncludeParser p : new IncludeParser[] {parser, swig}) {
+        assertThat(p.extractInclusions(ByteBuffer.wrap(chars), /* codeLimit= */ 0))
+            .isEqualTo(p.extractInclusions(chars));
+      }
+    }
+  }
+
+  /** Parses {@code content} by line and checks that fast parsing finds the same inclusions. */
+  private static List<Inclusion> parse(IncludeParser parser, String content) {
+    byte[] chars = content.getBytes(ISO_8859_1);
+    List<Inclusion> inclusions = parser.extractInclusions(chars);
+    assertThat(parser.extractInclusions(ByteBuffer.wrap(chars), /* codeLimit= */ 0))
+        .isEqualTo(inclusions);
+    return inclusions;
+  }
+
+  private static IncludeParser fastParser(int codeLimit) {
+    return new IncludeParser(
+        /* hints= */ null,
+        new IncludeParser.FastParsing(
+            codeLimit, new IncludeParsingCache(/* file= */ null, /* key= */ "")));
+  }
+}
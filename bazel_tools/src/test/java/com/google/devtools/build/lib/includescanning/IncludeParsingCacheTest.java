@@ -0,0 +1,178 @@
+// Copyright 2026 The Bazel Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.google.devtools.build.lib.includescanning;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.hash.HashCode;
+import com.google.devtools.build.lib.buildeventstream.BuildEventStreamProtos.BuildMetrics.IncludeScanningMetrics;
+import com.google.devtools.build.lib.includescanning.IncludeParser.Inclusion;
+import com.google.devtools.build.lib.includescanning.IncludeParser.Inclusion.Kind;
+import com.google.devtools.build.lib.vfs.DigestHashFunction;
+import com.google.devtools.build.lib.vfs.FileSystemUtils;
+import com.google.devtools.build.lib.vfs.Path;
+import com.google.devtools.build.lib.vfs.inmemoryfs.InMemoryFileSystem;
+import java.io.IOException;
+import java.util.Arrays;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link IncludeParsingCache}. */
+@RunWith(JUnit4.class)
+public class IncludeParsingCacheTest {
+  private static final String KEY = IncludeParsingCache.key(DigestHashFunction.SHA256, 0);
+
+  private static final HashCode DIGEST_A = HashCode.fromInt(1);
+  private static final HashCode DIGEST_B = HashCode.fromInt(2);
+  private static final ImmutableList<Inclusion> INCLUSIONS_A =
+      ImmutableList.of(Inclusion.create("a.h", Kind.QUOTE), Inclusion.create("c.h", Kind.ANGLE));
+  private static final ImmutableList<Inclusion> INCLUSIONS_B =
+      ImmutableList.of(
+          Inclusion.create("c.h", Kind.ANGLE), Inclusion.create("d.h", Kind.NEXT_QUOTE));
+
+  private final Path file =
+      new InMemoryFileSystem(DigestHashFunction.SHA256).getPath("/output_base/cache");
+
+  @Test
+  public void testSaveAndLoad() throws Exception {
+    file.getParentDirectory().createDirectoryAndParents();
+    writeCache(KEY);
+
+    IncludeParsingCache cache = new IncludeParsingCache(file, KEY);
+    assertThat(cache.get(DIGEST_A)).isEqualTo(INCLUSIONS_A);
+    assertThat(cache.get(DIGEST_B)).isEqualTo(INCLUSIONS_B);
+    assertThat(cache.get(HashCode.fromInt(3))).isNull();
+    IncludeScanningMetrics metrics = cache.getAndResetMetrics();
+    assertThat(metrics.getEntriesLoaded()).isEqualTo(2);
+    assertThat(metrics.getCacheHits()).isEqualTo(2);
+    assertThat(metrics.getCacheMisses()).isEqualTo(1);
+  }
+
+  @Test
+  public void testMissingFile() throws Exception {
+    IncludeParsingCache cache = new IncludeParsingCache(file, KEY);
+    assertThat(cache.get(DIGEST_A)).isNull();
+    assertThat(cache.getAndResetMetrics().getEntriesLoaded()).isEqualTo(0);
+  }
+
+  @Test
+  public void testIgnoresFileOfAnotherConfiguration() throws Exception {
+    file.getParentDirectory().createDirectoryAndParents();
+    writeCache(KEY);
+
+    for (String key :
+        ImmutableList.of(
+            IncludeParsingCache.key(DigestHashFunction.SHA1, 0),
+            IncludeParsingCache.key(DigestHashFunction.SHA256, 4096))) {
+      IncludeParsingCache cache = new IncludeParsingCache(file, key);
+      assertThat(cache.get(DIGEST_A)).isNull();
+      assertThat(cache.getAndResetMetrics().getEntriesLoaded()).isEqualTo(0);
+    }
+  }
+
+  @Test
+  public void testRecoversFromTruncatedFile() throws Exception {
+    file.getParentDirectory().createDirectoryAndParents();
+    writeCache(KEY);
+    byte[] content = FileSystemUtils.readContent(file);
+
+    for (int length = 0; length < content.length; length++) {
+      FileSystemUtils.writeContent(file, Arrays.copyOf(content, length));
+      IncludeParsingCache cache = new IncludeParsingCache(file, KEY);
+      assertThat(cache.get(DIGEST_A)).isNull();
+      assertThat(cache.get(DIGEST_B)).isNull();
+      assertThat(cache.getAndResetMetrics().getEntriesLoaded()).isEqualTo(0);
+    }
+  }
+
+  @Test
+  public void testRecoversFromCorruptFile() throws Exception {
+    file.getParentDirectory().createDirectoryAndParents();
+    writeCache(KEY);
+    byte[] content = FileSystemUtils.readContent(file);
+
+    // Makes a huge or negative count, or an invalid kind, index or string.
+    for (byte b : new byte[] {(byte) 0xff, 0x7f}) {
+      for (int i = 0; i < content.length; i++) {
+        byte[] corrupt = content.clone();
+        corrupt[i] = b;
+        FileSystemUtils.writeContent(file, corrupt);
+        IncludeParsingCache cache = new IncludeParsingCache(file, KEY);
+        cache.get(DIGEST_A);
+        cache.get(DIGEST_B);
+      }
+    }
+
+    // The broken file is replaced on the next save, even if nothing was added.
+    FileSystemUtils.writeContent(file, new byte[] {1, 2, 3});
+    IncludeParsingCache cache = new IncludeParsingCache(file, KEY);
+    assertThat(cache.get(DIGEST_A)).isNull();
+    cache.save();
+    assertThat(FileSystemUtils.readContent(file)).isNotEqualTo(new byte[] {1, 2, 3});
+    assertThat(new IncludeParsingCache(file, KEY).get(DIGEST_A)).isNull();
+  }
+
+  @Test
+  public void testLoadsFileOnFirstLookup() throws Exception {
+    file.getParentDirectory().createDirectoryAndParents();
+    IncludeParsingCache cache = new IncludeParsingCache(file, KEY);
+    // The file is written after the cache was created, but before the first lookup.
+    writeCache(KEY);
+    assertThat(cache.getAndResetMetrics().getEntriesLoaded()).isEqualTo(0);
+
+    assertThat(cache.get(DIGEST_A)).isEqualTo(INCLUSIONS_A);
+    assertThat(cache.getAndResetMetrics().getEntriesLoaded()).isEqualTo(2);
+  }
+
+  @Test
+  public void testSavesOnlyWhenChanged() throws Exception {
+    file.getParentDirectory().createDirectoryAndParents();
+    writeCache(KEY);
+    IncludeParsingCache cache = new IncludeParsingCache(file, KEY);
+    assertThat(cache.get(DIGEST_A)).isEqualTo(INCLUSIONS_A);
+    file.delete();
+
+    cache.save();
+    assertThat(file.exists()).isFalse();
+    cache.put(HashCode.fromInt(3), ImmutableList.of());
+    cache.save();
+    assertThat(new IncludeParsingCache(file, KEY).get(DIGEST_B)).isEqualTo(INCLUSIONS_B);
+  }
+
+  @Test
+  public void testSavesAgainAfterFailedSave() throws Exception {
+    file.getParentDirectory().createDirectoryAndParents();
+    IncludeParsingCache cache = new IncludeParsingCache(file, KEY);
+    cache.put(DIGEST_A, INCLUSIONS_A);
+    // The temporary file cannot be written where a directory is.
+    Path tmpFile = file.getParentDirectory().getChild("cache.tmp");
+    tmpFile.createDirectory();
+    assertThrows(IOException.class, cache::save);
+    assertThat(file.exists()).isFalse();
+
+    tmpFile.delete();
+    cache.save();
+    assertThat(new IncludeParsingCache(file, KEY).get(DIGEST_A)).isEqualTo(INCLUSIONS_A);
+  }
+
+  private void writeCache(String key) throws Exception {
+    IncludeParsingCache cache = new IncludeParsingCache(file, key);
+    cache.put(DIGEST_A, INCLUSIONS_A);
+    cache.put(DIGEST_B, INCLUSIONS_B);
+    cache.save();
+  }
+}
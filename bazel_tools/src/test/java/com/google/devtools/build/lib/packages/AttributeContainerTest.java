@@ -16,6 +16,7 @@ package com.google.devtools.build.lib.packages;
 import static com.google.common.truth.Truth.assertThat;
 import static org.junit.Assert.assertThrows;
 
+import com.google.common.collect.ImmutableList;
 import com.google.devtools.build.lib.packages.AttributeContainer.Mutable;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -159,6 +160,45 @@ public class AttributeContainerTest {
     checkFreezeWorks((short) 150, AttributeContainer.Large.class);
   }
 
+  private void checkFreezeSharesLayout(int maxAttrCount) {
+    AttributeInterner interner = new AttributeInterner();
+    List<AttributeContainer> frozen = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      AttributeContainer container = new Mutable(maxAttrCount);
+      container.setAttributeValue(ATTR1, "value " + i, /*explicit=*/ true);
+      container.setAttributeValue(ATTR2, i, /*explicit=*/ i == 2);
+      frozen.add(container.freeze(interner));
+    }
+    // The first two containers have the same layout.
+    assertThat(interner.getBytesSaved()).isGreaterThan(0L);
+    for (int i = 0; i < 3; i++) {
+      assertThat(frozen.get(i).getAttributeValue(ATTR1)).isEqualTo("value " + i);
+      assertThat(frozen.get(i).isAttributeValueExplicitlySpecified(ATTR1)).isTrue();
+      assertThat(frozen.get(i).getAttributeValue(ATTR2)).isEqualTo(i);
+      assertThat(frozen.get(i).isAttributeValueExplicitlySpecified(ATTR2)).isEqualTo(i == 2);
+    }
+  }
+
+  @Test
+  public void testFreezeSharesLayout_smallImplementation() {
+    checkFreezeSharesLayout(20);
+  }
+
+  @Test
+  public void testFreezeSharesLayout_largeImplementation() {
+    checkFreezeSharesLayout(150);
+  }
+
+  @Test
+  public void testInternerSharesEqualLists() {
+    AttributeInterner interner = new AttributeInterner();
+    ImmutableList<String> first = ImmutableList.of("a", "b");
+    assertThat(interner.intern(first)).isSameInstanceAs(first);
+    assertThat(interner.getBytesSaved()).isEqualTo(0);
+    assertThat(interner.intern(ImmutableList.of("a", "b"))).isSameInstanceAs(first);
+    assertThat(interner.getBytesSaved()).isGreaterThan(0L);
+  }
+
   private void testContainerSize(int size) {
     AttributeContainer container = new Mutable(size);
     for (int i = 0; i < size; i++) {
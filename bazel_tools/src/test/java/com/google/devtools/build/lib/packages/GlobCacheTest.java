@@ -191,6 +191,23 @@ public class GlobCacheTest {
         Pair.of("*.js", false), Pair.of("foo/first.*", false));
   }
 
+  @Test
+  public void testStartGlobs() throws Exception {
+    cache.getGlobUnsorted("*.js");
+    cache.startGlobs(list("*.js", "**/*.js", "*/first.js", "**/*.js"), false);
+    assertThat(cache.getKeySet())
+        .containsExactly(
+            Pair.of("*.js", false), Pair.of("**/*.js", false), Pair.of("*/first.js", false));
+
+    assertThat(cache.getGlobUnsorted("**/*.js"))
+        .containsExactly(
+            "first.js", "second.js", "foo/first.js", "foo/second.js", "bar/first.js",
+            "bar/second.js");
+    assertThat(cache.getGlobUnsorted("*/first.js")).containsExactly("foo/first.js", "bar/first.js");
+    assertThrows(BadGlobException.class, () -> cache.startGlobs(list("*.txt", "invalid?"), false));
+    assertThat(cache.getKeySet()).doesNotContain(Pair.of("*.txt", false));
+  }
+
   @Test
   public void testGlob() throws Exception {
     assertEmpty(cache.globUnsorted(list("*.java"), NONE, false, true));
@@ -0,0 +1,73 @@
+// Copyright 2026 The Bazel Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.devtools.build.lib.profiler;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Measures the cost of recording durations from many threads at once in a {@link LatencyHistogram}
+ * and, for comparison, in the {@link SingleStatRecorder} that all threads update in common.
+ *
+ * <p>Usage: {@code LatencyHistogramBenchmark [threads] [durations per thread] [runs]}.
+ */
+public final class LatencyHistogramBenchmark {
+  private interface Recorder {
+    void record(long durationNanos);
+  }
+
+  public static void main(String[] args) throws Exception {
+    int threads = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+    int durations = args.length > 1 ? Integer.parseInt(args[1]) : 5_000_000;
+    int runs = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+
+    for (int run = 0; run < runs; run++) {
+      LatencyHistogram histogram = new LatencyHistogram();
+      run("latency histogram ", histogram::record, threads, durations);
+      SingleStatRecorder recorder = new SingleStatRecorder("benchmark", 20);
+      run(
+          "single stat recorder",
+          nanos -> recorder.addStat((int) (nanos / 1_000_000), null),
+          threads,
+          durations);
+    }
+  }
+
+  private static void run(String name, Recorder recorder, int threadCount, int durations)
+      throws Exception {
+    List<Thread> threads = new ArrayList<>();
+    for (int t = 0; t < threadCount; t++) {
+      threads.add(
+          new Thread(
+              () -> {
+                for (int i = 0; i < durations; i++) {
+                  // Durations from microseconds to seconds.
+                  recorder.record(1000L << (i & 31));
+                }
+              }));
+    }
+    long start = System.nanoTime();
+    for (Thread thread : threads) {
+      thread.start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    long nanos = System.nanoTime() - start;
+    System.out.printf(
+        "%s: %d threads, %d ms, %.1f ns per recorded duration%n",
+        name, threadCount, nanos / 1_000_000, (double) nanos / threadCount / durations);
+  }
+}
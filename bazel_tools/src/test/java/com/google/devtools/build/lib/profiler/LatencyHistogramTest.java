@@ -0,0 +1,106 @@
+// Copyright 2026 The Bazel Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.devtools.build.lib.profiler;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.collect.Range;
+import java.time.Duration;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link LatencyHistogram}. */
+@RunWith(JUnit4.class)
+public class LatencyHistogramTest {
+
+  @Test
+  public void bucketsCoverAllDurationsWithoutGaps() {
+    for (int bucket = 0; bucket < LatencyHistogram.BUCKETS; bucket++) {
+      long lower = LatencyHistogram.lowerBoundOf(bucket);
+      long upper = LatencyHistogram.upperBoundOf(bucket);
+      assertThat(LatencyHistogram.bucketOf(lower)).isEqualTo(bucket);
+      assertThat(LatencyHistogram.bucketOf(upper)).isEqualTo(bucket);
+      assertThat(upper - lower).isAtMost(lower / 8);
+      if (bucket > 0) {
+        assertThat(LatencyHistogram.upperBoundOf(bucket - 1)).isEqualTo(lower - 1);
+      }
+    }
+  }
+
+  @Test
+  public void percentiles() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    for (int i = 1; i <= 100; i++) {
+      histogram.record(Duration.ofMillis(i).toNanos());
+    }
+    LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+
+    assertThat(snapshot.getCount()).isEqualTo(100);
+    assertThat(snapshot.getTotal()).isEqualTo(Duration.ofMillis(5050));
+    assertThat(snapshot.getPercentile(50).toNanos()).isIn(range(Duration.ofMillis(50)));
+    assertThat(snapshot.getPercentile(90).toNanos()).isIn(range(Duration.ofMillis(90)));
+    assertThat(snapshot.getMax().toNanos()).isIn(range(Duration.ofMillis(100)));
+  }
+
+  @Test
+  public void emptyHistogram() {
+    LatencyHistogram.Snapshot snapshot = new LatencyHistogram().snapshot();
+
+    assertThat(snapshot.getCount()).isEqualTo(0);
+    assertThat(snapshot.getPercentile(50)).isEqualTo(Duration.ZERO);
+    assertThat(snapshot.getMax()).isEqualTo(Duration.ZERO);
+  }
+
+  @Test
+  public void minusCountsOnlyLaterDurations() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    histogram.record(Duration.ofSeconds(10).toNanos());
+    LatencyHistogram.Snapshot earlier = histogram.snapshot();
+    histogram.record(Duration.ofMillis(1).toNanos());
+
+    LatencyHistogram.Snapshot difference = histogram.snapshot().minus(earlier);
+
+    assertThat(difference.getCount()).isEqualTo(1);
+    assertThat(difference.getTotal()).isEqualTo(Duration.ofMillis(1));
+    assertThat(difference.getMax().toNanos()).isIn(range(Duration.ofMillis(1)));
+  }
+
+  @Test
+  public void concurrentRecording() throws Exception {
+    LatencyHistogram histogram = new LatencyHistogram();
+    Thread[] threads = new Thread[16];
+    for (int t = 0; t < threads.length; t++) {
+      threads[t] =
+          new Thread(
+              () -> {
+                for (int i = 0; i < 10_000; i++) {
+                  histogram.record(i * 1000L);
+                }
+              });
+      threads[t].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    assertThat(histogram.snapshot().getCount()).isEqualTo(16 * 10_000);
+  }
+
+  /** The durations that a bucket counting {@code duration} can be rounded up to. */
+  private static Range<Long> range(Duration duration) {
+    return Range.closed(duration.toNanos(), duration.toNanos() + duration.toNanos() / 8);
+  }
+}
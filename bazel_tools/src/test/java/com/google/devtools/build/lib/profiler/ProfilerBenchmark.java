@@ -0,0 +1,114 @@
+// Copyright 2026 The Bazel Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.devtools.build.lib.profiler;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.CountingOutputStream;
+import com.google.devtools.build.lib.bugreport.BugReporter;
+import com.google.devtools.build.lib.clock.BlazeClock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Measures the overhead of recording tasks from many threads with the JSON and the binary trace
+ * file writers, and the size of the profiles they write.
+ *
+ * <p>Usage: {@code ProfilerBenchmark [threads] [tasks per thread] [runs]}. All tasks are recorded,
+ * regardless of their duration. The time includes stopping the profiler, which waits until all
+ * tasks are written.
+ */
+public final class ProfilerBenchmark {
+  public static void main(String[] args) throws Exception {
+    int threads = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+    int tasks = args.length > 1 ? Integer.parseInt(args[1]) : 200_000;
+    int runs = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+
+    for (int run = 0; run < runs; run++) {
+      for (Profiler.Format format :
+          new Profiler.Format[] {
+            Profiler.Format.JSON_TRACE_FILE_FORMAT, Profiler.Format.BINARY_TRACE_FILE_FORMAT
+          }) {
+        run(format, threads, tasks);
+      }
+    }
+  }
+
+  private static void run(Profiler.Format format, int threadCount, int tasks) throws Exception {
+    Profiler profiler = Profiler.instance();
+    CountingOutputStream out = new CountingOutputStream(ByteStreams.nullOutputStream());
+    profiler.start(
+        ImmutableSet.of(ProfilerTask.ACTION, ProfilerTask.VFS_STAT),
+        out,
+        format,
+        "/output/base",
+        UUID.randomUUID(),
+        /* recordAllDurations= */ true,
+        BlazeClock.instance(),
+        BlazeClock.nanoTime(),
+        /* slimProfile= */ false,
+        /* includePrimaryOutput= */ true,
+        /* includeTargetLabel= */ true,
+        /* collectTaskHistograms= */ false,
+        BugReporter.defaultInstance());
+    long start = System.nanoTime();
+    List<Thread> threads = new ArrayList<>();
+    for (int t = 0; t < threadCount; t++) {
+      Thread thread =
+          new Thread(
+              () -> {
+                long time = BlazeClock.nanoTime();
+                for (int i = 0; i < tasks; i++) {
+                  if (i % 10 == 0) {
+                    profiler.profileAction(
+                            ProfilerTask.ACTION,
+                            "Javac",
+                            "Compiling pkg" + i % 1000 + "/Class.java",
+                            "bazel-out/bin/pkg" + i % 1000 + "/libclass.jar",
+                            "//pkg" + i % 1000 + ":class")
+                        .close();
+                  } else {
+                    profiler.logSimpleTaskDuration(
+                        time, Duration.ofMillis(1), ProfilerTask.VFS_STAT, "pkg/BUILD");
+                  }
+                  time += 1000;
+                }
+              },
+              "skyframe-evaluator-" + t);
+      threads.add(thread);
+      thread.start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    long recorded = System.nanoTime();
+    profiler.stop();
+    long stopped = System.nanoTime();
+
+    long total = (long) threadCount * tasks;
+    System.out.printf(
+        "%s: %d tasks on %d threads in %d ms (stop %d ms), %.0f ns per task, %.1f bytes per"
+            + " task%n",
+        format == Profiler.Format.JSON_TRACE_FILE_FORMAT ? "json  " : "binary",
+        total,
+        threadCount,
+        (stopped - start) / 1_000_000,
+        (stopped - recorded) / 1_000_000,
+        (double) (stopped - start) / total,
+        (double) out.getCount() / total);
+  }
+}
@@ -16,12 +16,14 @@ package com.google.devtools.build.lib.profiler;
 import static com.google.common.collect.ImmutableList.toImmutableList;
 import static com.google.common.collect.MoreCollectors.onlyElement;
 import static com.google.common.truth.Truth.assertThat;
+import static com.google.devtools.build.lib.profiler.Profiler.Format.BINARY_TRACE_FILE_FORMAT;
 import static com.google.devtools.build.lib.profiler.Profiler.Format.JSON_TRACE_FILE_FORMAT;
 import static org.junit.Assert.assertThrows;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
+import com.google.common.testing.GcFinalization;
 import com.google.devtools.build.lib.bugreport.BugReporter;
 import com.google.devtools.build.lib.clock.BlazeClock;
 import com.google.devtools.build.lib.clock.Clock;
@@ -33,10 +35,13 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.lang.ref.WeakReference;
 import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 import org.junit.After;
@@ -629,6 +634,35 @@ public final class ProfilerTest {
     profiler.stop();
   }
 
+  @Test
+  public void testTaskLatencies() throws Exception {
+    startUnbuffered(getAllProfilerTasks());
+    profiler.logSimpleTaskDuration(
+        Profiler.nanoTimeMaybe(), Duration.ofSeconds(10), ProfilerTask.INFO, "foo");
+    profiler.stop();
+    startUnbuffered(getAllProfilerTasks());
+    try (SilentCloseable c =
+        profiler.profileAction(ProfilerTask.ACTION, "Javac", "compile", "foo.jar", "//foo")) {
+      clock.advanceMillis(100);
+    }
+    profiler.logSimpleTaskDuration(
+        Profiler.nanoTimeMaybe(), Duration.ofMillis(20), ProfilerTask.INFO, "bar");
+
+    TaskLatencies.Snapshot latencies = profiler.getCommandTaskLatencies();
+    profiler.stop();
+
+    assertThat(latencies.getByType().keySet())
+        .containsExactly(ProfilerTask.ACTION, ProfilerTask.INFO);
+    LatencyHistogram.Snapshot info = latencies.getByType().get(ProfilerTask.INFO);
+    assertThat(info.getCount()).isEqualTo(1);
+    assertThat(info.getTotal()).isEqualTo(Duration.ofMillis(20));
+    assertThat(latencies.getByMnemonic().keySet()).containsExactly("Javac");
+    assertThat(latencies.getByMnemonic().get("Javac").getTotal())
+        .isEqualTo(Duration.ofMillis(100));
+    assertThat(profiler.getTaskLatencies().getByType().get(ProfilerTask.INFO).getCount())
+        .isAtLeast(2);
+  }
+
   @Test
   public void testIOExceptionInOutputStreamBinaryFormat() throws Exception {
     OutputStream failingOutputStream = new OutputStream() {
@@ -640,7 +674,7 @@ public final class ProfilerTest {
     profiler.start(
         getAllProfilerTasks(),
         failingOutputStream,
-        JSON_TRACE_FILE_FORMAT,
+        BINARY_TRACE_FILE_FORMAT,
         "dummy_output_base",
         UUID.randomUUID(),
         false,
@@ -750,6 +784,177 @@ public final class ProfilerTest {
         .hasSize(1);
   }
 
+  private List<TraceEvent> profileActions(Profiler.Format format) throws Exception {
+    ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    profiler.start(
+        getAllProfilerTasks(),
+        buffer,
+        format,
+        "dummy_output_base",
+        UUID.randomUUID(),
+        true,
+        clock,
+        clock.nanoTime(),
+        /*slimProfile=*/ false,
+        /*includePrimaryOutput=*/ true,
+        /*includeTargetLabel=*/ true,
+        /*collectTaskHistograms=*/ true,
+        BugReporter.defaultInstance());
+    Thread thread =
+        new Thread(
+            () -> {
+              for (int i = 0; i < 10000; i++) {
+                Profiler.instance().logEvent(ProfilerTask.INFO, "event" + i % 10);
+              }
+            },
+            "skyframe-evaluator-1");
+    try (SilentCloseable c = profiler.profile(ProfilerTask.PHASE, "main task")) {
+      try (SilentCloseable c2 =
+          profiler.profileAction(ProfilerTask.ACTION, "Javac", "compile", "foo.jar", "//foo:bar")) {
+        clock.advanceMillis(100);
+      }
+      thread.start();
+      thread.join();
+      long startTime = clock.nanoTime();
+      clock.advanceMillis(20);
+      profiler.logSimpleTask(startTime, ProfilerTask.VFS_STAT, "stat");
+    }
+    profiler.stop();
+    // Each call profiles a new thread, so give its events a thread id that does not change.
+    return removeUsageEvents(
+            new JsonProfile(new ByteArrayInputStream(buffer.toByteArray())).getTraceEvents())
+        .stream()
+        .map(
+            e ->
+                e.threadId() != thread.getId()
+                    ? e
+                    : TraceEvent.create(
+                        e.category(),
+                        e.name(),
+                        e.timestamp(),
+                        e.duration(),
+                        /* threadId= */ -1,
+                        e.primaryOutputPath(),
+                        e.targetLabel(),
+                        e.mnemonic()))
+        .collect(toImmutableList());
+  }
+
+  @Test
+  public void testBinaryProfileHasSameEventsAsJsonProfile() throws Exception {
+    List<TraceEvent> jsonEvents = profileActions(JSON_TRACE_FILE_FORMAT);
+    List<TraceEvent> binaryEvents = profileActions(BINARY_TRACE_FILE_FORMAT);
+
+    assertThat(binaryEvents).containsExactlyElementsIn(jsonEvents);
+    TraceEvent action =
+        binaryEvents.stream().filter(e -> "compile".equals(e.name())).collect(onlyElement());
+    assertThat(action.mnemonic()).isEqualTo("Javac");
+    assertThat(action.primaryOutputPath()).isEqualTo("foo.jar");
+    assertThat(action.targetLabel()).isEqualTo("//foo:bar");
+    assertThat(action.duration()).isEqualTo(Duration.ofMillis(100));
+  }
+
+  @Test
+  public void testBinaryProfileIsSmallerThanJsonProfile() throws Exception {
+    ByteArrayOutputStream json = getProfileOutputStream(JSON_TRACE_FILE_FORMAT);
+    ByteArrayOutputStream binary = getProfileOutputStream(BINARY_TRACE_FILE_FORMAT);
+
+    assertThat(json.size()).isAtLeast(4 * binary.size());
+    // The number of resource usage samples depends on how long each profile took to write.
+    assertThat(
+            removeUsageEvents(
+                new JsonProfile(new ByteArrayInputStream(binary.toByteArray())).getTraceEvents()))
+        .hasSize(
+            removeUsageEvents(
+                    new JsonProfile(new ByteArrayInputStream(json.toByteArray())).getTraceEvents())
+                .size());
+  }
+
+  @Test
+  public void testBinaryProfileReleasesChunksOfEndedAndIdleThreads() throws Exception {
+    ByteArrayOutputStream buffer = start(getAllProfilerTasks(), BINARY_TRACE_FILE_FORMAT);
+    for (int i = 0; i < 100; i++) {
+      Thread thread = new Thread(() -> profiler.logEvent(ProfilerTask.INFO, "ended"));
+      thread.start();
+      thread.join();
+    }
+    CountDownLatch recorded = new CountDownLatch(1);
+    CountDownLatch resume = new CountDownLatch(1);
+    Thread idle =
+        new Thread(
+            () -> {
+              profiler.logEvent(ProfilerTask.INFO, "idle");
+              recorded.countDown();
+              try {
+                resume.await();
+              } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+              }
+              profiler.logEvent(ProfilerTask.INFO, "resumed");
+            });
+    idle.start();
+    recorded.await();
+    assertThat(profiler.getBufferedTraceChunkCount()).isEqualTo(101);
+
+    clock.advanceMillis(Duration.ofSeconds(10).toMillis());
+    profiler.logEvent(ProfilerTask.INFO, "active");
+    assertThat(profiler.getBufferedTraceChunkCount()).isEqualTo(1);
+
+    resume.countDown();
+    idle.join();
+    assertThat(profiler.getBufferedTraceChunkCount()).isEqualTo(2);
+    profiler.stop();
+
+    assertThat(
+            new JsonProfile(new ByteArrayInputStream(buffer.toByteArray()))
+                .getTraceEvents().stream()
+                    .filter(e -> ProfilerTask.INFO.description.equals(e.category()))
+                    .map(TraceEvent::name)
+                    .collect(toImmutableList()))
+        .containsExactlyElementsIn(
+            ImmutableList.<String>builder()
+                .addAll(Collections.nCopies(100, "ended"))
+                .add("idle", "active", "resumed", "Finishing")
+                .build());
+  }
+
+  @Test
+  public void testBinaryProfileIsNotRetainedByThreadsThatRecordedIntoIt() throws Exception {
+    WeakReference<ByteArrayOutputStream> buffer =
+        new WeakReference<>(start(getAllProfilerTasks(), BINARY_TRACE_FILE_FORMAT));
+    profiler.logEvent(ProfilerTask.INFO, "event");
+    profiler.stop();
+
+    // This thread outlives the profile, like the threads of a server outlive its commands.
+    GcFinalization.awaitClear(buffer);
+  }
+
+  private ByteArrayOutputStream getProfileOutputStream(Profiler.Format format) throws IOException {
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    profiler.start(
+        getAllProfilerTasks(),
+        outputStream,
+        format,
+        "dummy_output_base",
+        UUID.randomUUID(),
+        false,
+        BlazeClock.instance(),
+        BlazeClock.instance().nanoTime(),
+        /*slimProfile=*/ false,
+        /*includePrimaryOutput=*/ false,
+        /*includeTargetLabel=*/ false,
+        /*collectTaskHistograms=*/ true,
+        BugReporter.defaultInstance());
+    long curTime = Profiler.nanoTimeMaybe();
+    for (int i = 0; i < 100_000; i++) {
+      Duration duration = Duration.ofMillis(i % 250);
+      profiler.logSimpleTaskDuration(curTime, duration, ProfilerTask.INFO, "foo");
+      curTime += duration.toNanos();
+    }
+    profiler.stop();
+    return outputStream;
+  }
+
   private ByteArrayOutputStream getJsonProfileOutputStream(boolean slimProfile) throws IOException {
     ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
     profiler.start(
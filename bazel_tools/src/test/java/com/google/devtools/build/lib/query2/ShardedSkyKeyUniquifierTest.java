@@ -0,0 +1,113 @@
+// Copyright 2026 The Bazel Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.google.devtools.build.lib.query2;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.collect.ImmutableList;
+import com.google.devtools.build.lib.cmdline.Label;
+import com.google.devtools.build.skyframe.SkyKey;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link ShardedSkyKeyUniquifier}. */
+@RunWith(JUnit4.class)
+public final class ShardedSkyKeyUniquifierTest {
+
+  @Test
+  public void uniqueReturnsTrueOnlyTheFirstTime() {
+    ShardedSkyKeyUniquifier uniquifier = new ShardedSkyKeyUniquifier(/*concurrencyLevel=*/ 1);
+    Label foo = Label.parseAbsoluteUnchecked("//a:foo");
+
+    assertThat(uniquifier.uniquePure(foo)).isTrue();
+    assertThat(uniquifier.contains(foo)).isFalse();
+    assertThat(uniquifier.unique(foo)).isTrue();
+    assertThat(uniquifier.unique(foo)).isFalse();
+    assertThat(uniquifier.unique(Label.parseAbsoluteUnchecked("//a:foo"))).isFalse();
+    assertThat(uniquifier.uniquePure(foo)).isFalse();
+    assertThat(uniquifier.contains(foo)).isTrue();
+  }
+
+  @Test
+  public void uniqueIterableDropsSeenAndRepeatedKeys() {
+    ShardedSkyKeyUniquifier uniquifier = new ShardedSkyKeyUniquifier(/*concurrencyLevel=*/ 1);
+    Label foo = Label.parseAbsoluteUnchecked("//a:foo");
+    Label bar = Label.parseAbsoluteUnchecked("//a:bar");
+    Label baz = Label.parseAbsoluteUnchecked("//b:baz");
+    uniquifier.unique(foo);
+
+    assertThat(uniquifier.unique(ImmutableList.<SkyKey>of(bar, foo, baz, bar)))
+        .containsExactly(bar, baz)
+        .inOrder();
+    assertThat(uniquifier.size()).isEqualTo(3);
+  }
+
+  @Test
+  public void growsToManyKeys() {
+    ShardedSkyKeyUniquifier uniquifier = new ShardedSkyKeyUniquifier(/*concurrencyLevel=*/ 2);
+    for (int i = 0; i < 100_000; i++) {
+      assertThat(uniquifier.unique(label(i))).isTrue();
+    }
+
+    for (int i = 0; i < 100_000; i++) {
+      assertThat(uniquifier.contains(label(i))).isTrue();
+    }
+    assertThat(uniquifier.contains(label(100_000))).isFalse();
+    assertThat(uniquifier.size()).isEqualTo(100_000);
+  }
+
+  @Test
+  public void concurrentCallersSeeEachKeyAsUniqueOnce() throws Exception {
+    int threads = 8;
+    int keys = 50_000;
+    ShardedSkyKeyUniquifier uniquifier = new ShardedSkyKeyUniquifier(threads);
+    AtomicInteger uniqueCount = new AtomicInteger();
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int t = 0; t < threads; t++) {
+        int offset = t;
+        futures.add(
+            executor.submit(
+                () -> {
+                  // Each thread visits all keys, starting at a different one.
+                  for (int i = 0; i < keys; i++) {
+                    if (uniquifier.unique(label((i + offset * keys / threads) % keys))) {
+                      uniqueCount.incrementAndGet();
+                    }
+                  }
+                }));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    assertThat(uniqueCount.get()).isEqualTo(keys);
+    assertThat(uniquifier.size()).isEqualTo(keys);
+  }
+
+  private static Label label(int i) {
+    return Label.parseAbsoluteUnchecked("//pkg" + i % 100 + ":t" + i);
+  }
+}
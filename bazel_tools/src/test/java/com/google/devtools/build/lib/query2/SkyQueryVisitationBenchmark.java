@@ -0,0 +1,214 @@
+// Copyright 2026 The Bazel Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.google.devtools.build.lib.query2;
+
+import com.google.common.collect.ImmutableList;
+import com.google.devtools.build.lib.cmdline.ParallelVisitor.VisitTaskStatusCallback;
+import com.google.devtools.build.lib.query2.engine.Callback;
+import com.google.devtools.build.lib.query2.engine.QueryUtil.UniquifierImpl;
+import com.google.devtools.build.lib.query2.engine.Uniquifier;
+import com.google.devtools.build.skyframe.SkyFunctionName;
+import com.google.devtools.build.skyframe.SkyKey;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures the reverse transitive closure visitation of sky query on a synthetic graph, with the
+ * default visited set and with the {@link ShardedSkyKeyUniquifier} and bounded pending results of
+ * {@link com.google.devtools.build.lib.query2.engine.QueryEnvironment.Setting#SHARDED_VISITATION}.
+ *
+ * <p>Usage: {@code SkyQueryVisitationBenchmark [nodes] [runs]}. Builds a DAG of {@code nodes} (a
+ * million by default) keys, each of which depends on up to four random keys created before it, and
+ * visits the rdeps of the first key, which reach nearly all of them, with the same thread pool and
+ * batch sizes as sky query. The output callback is synchronized and does a little work for each
+ * result, like a formatter. Reports the time of each visitation, the heap retained by its visited
+ * set, and the largest number of results that were pending output at once.
+ */
+public final class SkyQueryVisitationBenchmark {
+  private static final SkyFunctionName NODE = SkyFunctionName.createHermetic("BENCHMARK_NODE");
+
+  public static void main(String[] args) throws Exception {
+    int nodes = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+    int runs = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+
+    Node[] graph = buildGraph(nodes, new Random(42));
+    int threads = SkyQueryEnvironment.DEFAULT_THREAD_COUNT;
+    for (int run = 0; run < runs; run++) {
+      for (boolean sharded : new boolean[] {false, true}) {
+        long heapBefore = usedHeapAfterGc();
+        Uniquifier<SkyKey> uniquifier =
+            sharded
+                ? new ShardedSkyKeyUniquifier(threads)
+                : new UniquifierImpl<>(key -> key, threads);
+        AtomicLong pendingResults = new AtomicLong();
+        OutputCallback callback = new OutputCallback(pendingResults);
+        RdepsVisitor visitor =
+            new RdepsVisitor(
+                uniquifier,
+                callback,
+                pendingResults,
+                sharded
+                    ? ParallelSkyQueryUtils.PENDING_RESULT_BATCHES_PER_THREAD * threads
+                    : Integer.MAX_VALUE);
+
+        long start = System.nanoTime();
+        visitor.visitAndWaitForCompletion(ImmutableList.of(graph[0]));
+        long nanos = System.nanoTime() - start;
+        long retained = usedHeapAfterGc() - heapBefore;
+
+        System.out.printf(
+            "%s: %d results in %.0f ms; visited set %.1f MB; at most %d results pending%n",
+            sharded ? "sharded   " : "concurrent",
+            callback.results,
+            nanos / 1e6,
+            retained / 1e6,
+            visitor.maxPendingResults.get());
+        if (uniquifier.uniquePure(graph[0])) {
+          throw new IllegalStateException("The visited set must be retained while measured");
+        }
+      }
+    }
+    // The threads of the shared visitor pool would keep the JVM alive.
+    System.exit(0);
+  }
+
+  private static Node[] buildGraph(int nodes, Random random) {
+    Node[] graph = new Node[nodes];
+    int[] rdepCounts = new int[nodes];
+    int[][] deps = new int[nodes][];
+    for (int i = 0; i < nodes; i++) {
+      graph[i] = new Node(i);
+      deps[i] = new int[i == 0 ? 0 : 1 + random.nextInt(4)];
+      for (int j = 0; j < deps[i].length; j++) {
+        // Favor nearby keys, like the deps of a target in a repository mostly are, but always
+        // reach back to the root eventually.
+        deps[i][j] = random.nextBoolean() ? i - 1 - random.nextInt(Math.min(i, 100)) : 0;
+        rdepCounts[deps[i][j]]++;
+      }
+    }
+    for (int i = 0; i < nodes; i++) {
+      graph[i].rdeps = new Node[rdepCounts[i]];
+    }
+    for (int i = 0; i < nodes; i++) {
+      for (int dep : deps[i]) {
+        graph[dep].rdeps[--rdepCounts[dep]] = graph[i];
+      }
+    }
+    return graph;
+  }
+
+  private static long usedHeapAfterGc() {
+    MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+    }
+    return memory.getHeapMemoryUsage().getUsed();
+  }
+
+  /** A key with a hash code as well spread as that of a label. */
+  private static final class Node implements SkyKey {
+    private final int id;
+    private Node[] rdeps;
+
+    private Node(int id) {
+      this.id = id;
+    }
+
+    @Override
+    public SkyFunctionName functionName() {
+      return NODE;
+    }
+
+    @Override
+    public int hashCode() {
+      return Integer.hashCode(id) * 31 + 17;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      return obj instanceof Node && ((Node) obj).id == id;
+    }
+  }
+
+  private static final class OutputCallback implements Callback<SkyKey> {
+    private final AtomicLong pendingResults;
+    private long results;
+    private long checksum;
+
+    private OutputCallback(AtomicLong pendingResults) {
+      this.pendingResults = pendingResults;
+    }
+
+    @Override
+    public synchronized void process(Iterable<SkyKey> partialResult) {
+      long count = 0;
+      for (SkyKey key : partialResult) {
+        checksum += String.valueOf(((Node) key).id).hashCode();
+        count++;
+      }
+      results += count;
+      pendingResults.addAndGet(-count);
+    }
+  }
+
+  private static final class RdepsVisitor extends AbstractSkyKeyParallelVisitor<SkyKey> {
+    private final AtomicLong pendingResults;
+    private final AtomicLong maxPendingResults = new AtomicLong();
+    private final int maxPendingResultBatches;
+
+    private RdepsVisitor(
+        Uniquifier<SkyKey> uniquifier,
+        OutputCallback callback,
+        AtomicLong pendingResults,
+        int maxPendingResultBatches) {
+      super(
+          uniquifier,
+          callback,
+          ParallelSkyQueryUtils.VISIT_BATCH_SIZE,
+          SkyQueryEnvironment.BATCH_CALLBACK_SIZE,
+          VisitTaskStatusCallback.NULL_INSTANCE);
+      this.pendingResults = pendingResults;
+      this.maxPendingResultBatches = maxPendingResultBatches;
+    }
+
+    @Override
+    protected int getMaxPendingResultBatches() {
+      return maxPendingResultBatches;
+    }
+
+    @Override
+    protected Visit getVisitResult(Iterable<SkyKey> keys) {
+      ImmutableList.Builder<SkyKey> rdeps = ImmutableList.builder();
+      long count = 0;
+      for (SkyKey key : keys) {
+        rdeps.add(((Node) key).rdeps);
+        count++;
+      }
+      maxPendingResults.accumulateAndGet(pendingResults.addAndGet(count), Math::max);
+      return new Visit(keys, rdeps.build());
+    }
+
+    @Override
+    protected Iterable<SkyKey> outputKeysToOutputValues(Iterable<SkyKey> keys) {
+      return keys;
+    }
+
+    @Override
+    protected Iterable<SkyKey> preprocessInitialVisit(Iterable<SkyKey> keys) {
+      return keys;
+    }
+  }
+}
@@ -26,6 +26,8 @@ import static org.mockito.Mockito.when;
 import build.bazel.remote.execution.v2.Action;
 import build.bazel.remote.execution.v2.ActionCacheGrpc.ActionCacheImplBase;
 import build.bazel.remote.execution.v2.ActionResult;
+import build.bazel.remote.execution.v2.BatchUpdateBlobsRequest;
+import build.bazel.remote.execution.v2.BatchUpdateBlobsResponse;
 import build.bazel.remote.execution.v2.Command;
 import build.bazel.remote.execution.v2.ContentAddressableStorageGrpc.ContentAddressableStorageImplBase;
 import build.bazel.remote.execution.v2.Digest;
@@ -50,9 +52,12 @@ import com.google.bytestream.ByteStreamProto.WriteResponse;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSortedMap;
+import com.google.common.collect.Iterables;
 import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.ListeningScheduledExecutorService;
 import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
 import com.google.devtools.build.lib.actions.ActionInputHelper;
 import com.google.devtools.build.lib.actions.cache.VirtualActionInput;
 import com.google.devtools.build.lib.actions.util.ActionsTestUtil;
@@ -105,7 +110,11 @@ import io.reactivex.rxjava3.core.Single;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -202,6 +211,12 @@ public class GrpcCacheClientTest {
 
   protected GrpcCacheClient newClient(
       RemoteOptions remoteOptions, Supplier<Backoff> backoffSupplier) throws IOException {
+    return newClient(remoteOptions, backoffSupplier, /* maxBatchTotalSizeBytes= */ 0);
+  }
+
+  private GrpcCacheClient newClient(
+      RemoteOptions remoteOptions, Supplier<Backoff> backoffSupplier, long maxBatchTotalSizeBytes)
+      throws IOException {
     AuthAndTLSOptions authTlsOptions = Options.getDefaults(AuthAndTLSOptions.class);
     authTlsOptions.useGoogleDefaultCredentials = true;
     authTlsOptions.googleCredentials = "/execroot/main/creds.json";
@@ -254,7 +269,13 @@ public class GrpcCacheClientTest {
             retrier,
             remoteOptions.maximumOpenFiles);
     return new GrpcCacheClient(
-        channel.retain(), callCredentialsProvider, remoteOptions, retrier, DIGEST_UTIL, uploader);
+        channel.retain(),
+        callCredentialsProvider,
+        remoteOptions,
+        retrier,
+        DIGEST_UTIL,
+        uploader,
+        maxBatchTotalSizeBytes);
   }
 
   protected static byte[] downloadBlob(
@@ -805,6 +826,357 @@ public class GrpcCacheClientTest {
     assertThat(numGetMissingCalls.get()).isEqualTo(4);
   }
 
+  /** A CAS that holds the responses to batches until they are answered by the test. */
+  private static class HoldingBatchCas extends ContentAddressableStorageImplBase {
+    private final List<BatchUpdateBlobsRequest> batches = new ArrayList<>();
+    private final List<StreamObserver<BatchUpdateBlobsResponse>> responseObservers =
+        new ArrayList<>();
+
+    @Override
+    public void batchUpdateBlobs(
+        BatchUpdateBlobsRequest request,
+        StreamObserver<BatchUpdateBlobsResponse> responseObserver) {
+      batches.add(request);
+      responseObservers.add(responseObserver);
+    }
+
+    void respond(int batch) {
+      BatchUpdateBlobsResponse.Builder response = BatchUpdateBlobsResponse.newBuilder();
+      for (BatchUpdateBlobsRequest.Request blob : batches.get(batch).getRequestsList()) {
+        response.addResponsesBuilder().setDigest(blob.getDigest());
+      }
+      responseObservers.get(batch).onNext(response.build());
+      responseObservers.get(batch).onCompleted();
+    }
+  }
+
+  /** A ByteStream service that counts writes and answers them at once. */
+  private static class CountingByteStream extends ByteStreamImplBase {
+    private final AtomicInteger writes = new AtomicInteger();
+
+    @Override
+    public StreamObserver<WriteRequest> write(StreamObserver<WriteResponse> responseObserver) {
+      writes.incrementAndGet();
+      return new StreamObserver<WriteRequest>() {
+        private long committedSize;
+
+        @Override
+        public void onNext(WriteRequest request) {
+          committedSize = request.getWriteOffset() + request.getData().size();
+        }
+
+        @Override
+        public void onCompleted() {
+          responseObserver.onNext(
+              WriteResponse.newBuilder().setCommittedSize(committedSize).build());
+          responseObserver.onCompleted();
+        }
+
+        @Override
+        public void onError(Throwable t) {
+          fail("An error occurred: " + t);
+        }
+      };
+    }
+  }
+
+  private ListenableFuture<Void> uploadBlob(GrpcCacheClient client, String contents) {
+    ByteString data = ByteString.copyFromUtf8(contents);
+    return client.uploadBlob(context, DIGEST_UTIL.compute(data.toByteArray()), data);
+  }
+
+  @Test
+  public void uploadBlobBatchesSmallBlobsWhileBatchesAreInFlight() throws Exception {
+    RemoteOptions remoteOptions = Options.getDefaults(RemoteOptions.class);
+    remoteOptions.remoteUploadBatchBlobSize = 10;
+    GrpcCacheClient client = newClient(remoteOptions);
+    HoldingBatchCas cas = new HoldingBatchCas();
+    CountingByteStream byteStream = new CountingByteStream();
+    serviceRegistry.addService(cas);
+    serviceRegistry.addService(byteStream);
+
+    List<ListenableFuture<Void>> uploads = new ArrayList<>();
+    for (int i = 0; i < UploadScheduler.MAX_BATCHES_IN_FLIGHT + 3; i++) {
+      uploads.add(uploadBlob(client, "blob" + i));
+    }
+    getFromFuture(uploadBlob(client, "a blob too large to be batched"));
+
+    // The first blobs are sent at once, and the others wait for a batch to complete.
+    assertThat(cas.batches).hasSize(UploadScheduler.MAX_BATCHES_IN_FLIGHT);
+    assertThat(byteStream.writes.get()).isEqualTo(1);
+    cas.respond(0);
+    assertThat(cas.batches).hasSize(UploadScheduler.MAX_BATCHES_IN_FLIGHT + 1);
+    assertThat(Iterables.getLast(cas.batches).getRequestsCount()).isEqualTo(3);
+    for (int i = 1; i < cas.batches.size(); i++) {
+      cas.respond(i);
+    }
+    for (ListenableFuture<Void> upload : uploads) {
+      getFromFuture(upload);
+    }
+    assertThat(byteStream.writes.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void uploadBlobBatchesAreNoLargerThanTheServerAllows() throws Exception {
+    RemoteOptions remoteOptions = Options.getDefaults(RemoteOptions.class);
+    remoteOptions.remoteUploadBatchBlobSize = 100;
+    GrpcCacheClient client =
+        newClient(
+            remoteOptions,
+            () -> new ExponentialBackoff(remoteOptions),
+            /* maxBatchTotalSizeBytes= */ 500);
+    HoldingBatchCas cas = new HoldingBatchCas();
+    serviceRegistry.addService(cas);
+
+    List<ListenableFuture<Void>> uploads = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      uploads.add(uploadBlob(client, String.format("blob %5d", i)));
+    }
+    for (int i = 0; i < cas.batches.size(); i++) {
+      cas.respond(i);
+    }
+
+    for (ListenableFuture<Void> upload : uploads) {
+      getFromFuture(upload);
+    }
+    int blobs = 0;
+    for (BatchUpdateBlobsRequest batch : cas.batches) {
+      assertThat(batch.getSerializedSize()).isAtMost(500);
+      blobs += batch.getRequestsCount();
+    }
+    assertThat(blobs).isEqualTo(100);
+    assertThat(cas.batches.size()).isLessThan(100);
+  }
+
+  @Test
+  public void uploadBlobFailsOnlyForTheBlobsThatFailedInTheBatch() throws Exception {
+    RemoteOptions remoteOptions = Options.getDefaults(RemoteOptions.class);
+    remoteOptions.remoteUploadBatchBlobSize = 10;
+    GrpcCacheClient client = newClient(remoteOptions);
+    Digest failing = DIGEST_UTIL.computeAsUtf8("failing");
+    serviceRegistry.addService(
+        new ContentAddressableStorageImplBase() {
+          @Override
+          public void batchUpdateBlobs(
+              BatchUpdateBlobsRequest request,
+              StreamObserver<BatchUpdateBlobsResponse> responseObserver) {
+            BatchUpdateBlobsResponse.Builder response = BatchUpdateBlobsResponse.newBuilder();
+            for (BatchUpdateBlobsRequest.Request blob : request.getRequestsList()) {
+              response
+                  .addResponsesBuilder()
+                  .setDigest(blob.getDigest())
+                  .setStatus(
+                      com.google.rpc.Status.newBuilder()
+                          .setCode(
+                              blob.getDigest().equals(failing)
+                                  ? Status.Code.INVALID_ARGUMENT.value()
+                                  : Status.Code.OK.value()));
+            }
+            responseObserver.onNext(response.build());
+            responseObserver.onCompleted();
+          }
+        });
+
+    getFromFuture(uploadBlob(client, "succeeding"));
+    IOException e =
+        assertThrows(IOException.class, () -> getFromFuture(uploadBlob(client, "failing")));
+
+    assertThat(e).hasMessageThat().contains(failing.getHash());
+    assertThat(Status.fromThrowable(e).getCode()).isEqualTo(Status.Code.INVALID_ARGUMENT);
+  }
+
+  @Test
+  public void uploadBlobWaitsForTheBytesInFlight() throws Exception {
+    RemoteOptions remoteOptions = Options.getDefaults(RemoteOptions.class);
+    remoteOptions.remoteUploadMaxInFlightBytes = 10;
+    GrpcCacheClient client = newClient(remoteOptions);
+    List<StreamObserver<WriteResponse>> pendingWrites = new ArrayList<>();
+    serviceRegistry.addService(
+        new ByteStreamImplBase() {
+          @Override
+          public StreamObserver<WriteRequest> write(
+              StreamObserver<WriteResponse> responseObserver) {
+            return new StreamObserver<WriteRequest>() {
+              @Override
+              public void onNext(WriteRequest request) {}
+
+              @Override
+              public void onCompleted() {
+                pendingWrites.add(responseObserver);
+              }
+
+              @Override
+              public void onError(Throwable t) {
+                fail("An error occurred: " + t);
+              }
+            };
+          }
+        });
+
+    ListenableFuture<Void> first = uploadBlob(client, "8 bytes1");
+    ListenableFuture<Void> second = uploadBlob(client, "8 bytes2");
+
+    assertThat(pendingWrites).hasSize(1);
+    pendingWrites.get(0).onNext(WriteResponse.newBuilder().setCommittedSize(8).build());
+    pendingWrites.get(0).onCompleted();
+    getFromFuture(first);
+    assertThat(second.isDone()).isFalse();
+    assertThat(pendingWrites).hasSize(2);
+    pendingWrites.get(1).onNext(WriteResponse.newBuilder().setCommittedSize(8).build());
+    pendingWrites.get(1).onCompleted();
+    getFromFuture(second);
+  }
+
+  /**
+   * Sends batches to a fake CAS that answers at once, except for the first calls that the test
+   * answers. Fails the blobs in {@link #unavailableOnce} with UNAVAILABLE the first time.
+   */
+  private static final class FakeBatchUpdateBlobs implements UploadScheduler.BatchUpdateBlobs {
+    private final List<RemoteActionExecutionContext> contexts = new ArrayList<>();
+    private final List<BatchUpdateBlobsRequest> requests = new ArrayList<>();
+    private final List<SettableFuture<BatchUpdateBlobsResponse>> held = new ArrayList<>();
+    private final Set<Digest> unavailableOnce = new HashSet<>();
+    private final int callsToHold;
+
+    FakeBatchUpdateBlobs(int callsToHold) {
+      this.callsToHold = callsToHold;
+    }
+
+    @Override
+    public synchronized ListenableFuture<BatchUpdateBlobsResponse> call(
+        RemoteActionExecutionContext context, BatchUpdateBlobsRequest request) {
+      contexts.add(context);
+      requests.add(request);
+      SettableFuture<BatchUpdateBlobsResponse> response = SettableFuture.create();
+      if (held.size() < callsToHold) {
+        held.add(response);
+      } else {
+        response.set(responseTo(request));
+      }
+      return response;
+    }
+
+    void respond(int call) {
+      SettableFuture<BatchUpdateBlobsResponse> response;
+      BatchUpdateBlobsResponse result;
+      synchronized (this) {
+        response = held.get(call);
+        result = responseTo(requests.get(call));
+      }
+      response.set(result);
+    }
+
+    private BatchUpdateBlobsResponse responseTo(BatchUpdateBlobsRequest request) {
+      BatchUpdateBlobsResponse.Builder response = BatchUpdateBlobsResponse.newBuilder();
+      for (BatchUpdateBlobsRequest.Request blob : request.getRequestsList()) {
+        Status.Code code =
+            unavailableOnce.remove(blob.getDigest()) ? Status.Code.UNAVAILABLE : Status.Code.OK;
+        response
+            .addResponsesBuilder()
+            .setDigest(blob.getDigest())
+            .setStatus(com.google.rpc.Status.newBuilder().setCode(code.value()));
+      }
+      return response.build();
+    }
+
+    synchronized List<Digest> digestsOf(int call) {
+      List<Digest> digests = new ArrayList<>();
+      for (BatchUpdateBlobsRequest.Request blob : requests.get(call).getRequestsList()) {
+        digests.add(blob.getDigest());
+      }
+      return digests;
+    }
+  }
+
+  private UploadScheduler newUploadScheduler(
+      UploadScheduler.BatchUpdateBlobs batchUpdateBlobs, Executor readExecutor) {
+    RemoteOptions remoteOptions = Options.getDefaults(RemoteOptions.class);
+    return new UploadScheduler(
+        /* uploader= */ null,
+        batchUpdateBlobs,
+        TestUtils.newRemoteRetrier(
+            () -> new ExponentialBackoff(remoteOptions),
+            RemoteRetrier.RETRIABLE_GRPC_ERRORS,
+            retryService),
+        readExecutor,
+        /* instanceName= */ null,
+        /* compressed= */ false,
+        /* maxBatchBlobSize= */ 100,
+        /* maxBatchSize= */ 1000,
+        /* maxInFlightBytes= */ 0);
+  }
+
+  private static ListenableFuture<Void> uploadBlob(
+      UploadScheduler scheduler, RemoteActionExecutionContext context, String contents) {
+    ByteString data = ByteString.copyFromUtf8(contents);
+    return scheduler.uploadBlob(context, DIGEST_UTIL.compute(data.toByteArray()), data);
+  }
+
+  @Test
+  public void uploadBlobRetriesOnlyTheBlobsThatFailedWithARetriableStatus() throws Exception {
+    FakeBatchUpdateBlobs cas = new FakeBatchUpdateBlobs(UploadScheduler.MAX_BATCHES_IN_FLIGHT);
+    UploadScheduler scheduler = newUploadScheduler(cas, MoreExecutors.directExecutor());
+    Digest ok = DIGEST_UTIL.computeAsUtf8("ok");
+    Digest flaky = DIGEST_UTIL.computeAsUtf8("flaky");
+    cas.unavailableOnce.add(flaky);
+    for (int i = 0; i < UploadScheduler.MAX_BATCHES_IN_FLIGHT; i++) {
+      uploadBlob(scheduler, context, "blob" + i);
+    }
+    ListenableFuture<Void> okUpload = uploadBlob(scheduler, context, "ok");
+    ListenableFuture<Void> flakyUpload = uploadBlob(scheduler, context, "flaky");
+
+    cas.respond(0);
+    getFromFuture(okUpload);
+    getFromFuture(flakyUpload);
+
+    int batch = UploadScheduler.MAX_BATCHES_IN_FLIGHT;
+    assertThat(cas.digestsOf(batch)).containsExactly(ok, flaky);
+    assertThat(cas.digestsOf(batch + 1)).containsExactly(flaky);
+  }
+
+  @Test
+  public void uploadBlobBatchesBlobsByContext() throws Exception {
+    FakeBatchUpdateBlobs cas = new FakeBatchUpdateBlobs(UploadScheduler.MAX_BATCHES_IN_FLIGHT);
+    UploadScheduler scheduler = newUploadScheduler(cas, MoreExecutors.directExecutor());
+    RemoteActionExecutionContext otherContext =
+        RemoteActionExecutionContext.create(
+            TracingMetadataUtils.buildMetadata("none", "none", "other action", null));
+    for (int i = 0; i < UploadScheduler.MAX_BATCHES_IN_FLIGHT; i++) {
+      uploadBlob(scheduler, context, "blob" + i);
+    }
+    uploadBlob(scheduler, context, "a");
+    uploadBlob(scheduler, otherContext, "b");
+    uploadBlob(scheduler, context, "c");
+
+    cas.respond(0);
+    cas.respond(1);
+
+    int batch = UploadScheduler.MAX_BATCHES_IN_FLIGHT;
+    assertThat(cas.contexts.get(batch)).isSameInstanceAs(context);
+    assertThat(cas.digestsOf(batch))
+        .containsExactly(DIGEST_UTIL.computeAsUtf8("a"), DIGEST_UTIL.computeAsUtf8("c"));
+    assertThat(cas.contexts.get(batch + 1)).isSameInstanceAs(otherContext);
+    assertThat(cas.digestsOf(batch + 1)).containsExactly(DIGEST_UTIL.computeAsUtf8("b"));
+  }
+
+  @Test
+  public void uploadFileReadsTheFileOnTheReadExecutor() throws Exception {
+    FakeBatchUpdateBlobs cas = new FakeBatchUpdateBlobs(/* callsToHold= */ 0);
+    List<Runnable> reads = new ArrayList<>();
+    UploadScheduler scheduler = newUploadScheduler(cas, reads::add);
+    Path file = execRoot.getRelative("file");
+    FileSystemUtils.writeContent(file, UTF_8, "contents");
+    Digest digest = DIGEST_UTIL.computeAsUtf8("contents");
+
+    ListenableFuture<Void> upload = scheduler.uploadFile(context, digest, file);
+
+    assertThat(cas.requests).isEmpty();
+    assertThat(reads).hasSize(1);
+    reads.get(0).run();
+    getFromFuture(upload);
+    assertThat(cas.requests.get(0).getRequests(0).getData().toStringUtf8()).isEqualTo("contents");
+  }
+
   @Test
   public void testUploadCacheMissesWithRetries() throws Exception {
     RemoteOptions remoteOptions = Options.getDefaults(RemoteOptions.class);
@@ -0,0 +1,237 @@
+// Copyright 2026 The Bazel Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.google.devtools.build.lib.remote;
+
+import build.bazel.remote.execution.v2.BatchUpdateBlobsRequest;
+import build.bazel.remote.execution.v2.BatchUpdateBlobsResponse;
+import build.bazel.remote.execution.v2.ContentAddressableStorageGrpc.ContentAddressableStorageImplBase;
+import build.bazel.remote.execution.v2.Digest;
+import com.google.bytestream.ByteStreamGrpc.ByteStreamImplBase;
+import com.google.bytestream.ByteStreamProto.WriteRequest;
+import com.google.bytestream.ByteStreamProto.WriteResponse;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningScheduledExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.devtools.build.lib.authandtls.CallCredentialsProvider;
+import com.google.devtools.build.lib.remote.common.RemoteActionExecutionContext;
+import com.google.devtools.build.lib.remote.grpc.ChannelConnectionFactory;
+import com.google.devtools.build.lib.remote.options.RemoteOptions;
+import com.google.devtools.build.lib.remote.util.DigestUtil;
+import com.google.devtools.build.lib.remote.util.TracingMetadataUtils;
+import com.google.devtools.build.lib.vfs.DigestHashFunction;
+import com.google.devtools.common.options.Options;
+import com.google.protobuf.ByteString;
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.StreamObserver;
+import io.reactivex.rxjava3.core.Single;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Compares uploading the outputs of an action that emits many small files with a ByteStream write
+ * per blob, with batching, and with batching and a limit on the bytes in flight.
+ *
+ * <p>Usage: {@code UploadBenchmark [small_blobs] [large_blobs] [latency_ms] [runs]}. Uploads
+ * {@code small_blobs} (10 thousand by default) blobs of 100 bytes and {@code large_blobs} (8 by
+ * default) blobs of 4 MiB through a {@link GrpcCacheClient} to an in-process CAS, which answers
+ * every call after {@code latency_ms} (2 by default) milliseconds. Reports the wall time and the
+ * number of calls the CAS received.
+ */
+public final class UploadBenchmark {
+
+  private static final String SERVER_NAME = "upload benchmark";
+  private static final int SMALL_BLOB_SIZE = 100;
+  private static final int LARGE_BLOB_SIZE = 4 << 20;
+
+  /** A CAS that drops what it receives and answers after a fixed latency. */
+  private static final class Cas {
+    private final ScheduledExecutorService responder = Executors.newScheduledThreadPool(4);
+    private final long latencyMillis;
+    private final AtomicLong calls = new AtomicLong();
+
+    Cas(long latencyMillis) {
+      this.latencyMillis = latencyMillis;
+    }
+
+    ContentAddressableStorageImplBase contentAddressableStorage() {
+      return new ContentAddressableStorageImplBase() {
+        @Override
+        public void batchUpdateBlobs(
+            BatchUpdateBlobsRequest request,
+            StreamObserver<BatchUpdateBlobsResponse> responseObserver) {
+          calls.incrementAndGet();
+          BatchUpdateBlobsResponse.Builder response = BatchUpdateBlobsResponse.newBuilder();
+          for (BatchUpdateBlobsRequest.Request blob : request.getRequestsList()) {
+            response.addResponsesBuilder().setDigest(blob.getDigest());
+          }
+          respond(responseObserver, response.build());
+        }
+      };
+    }
+
+    ByteStreamImplBase byteStream() {
+      return new ByteStreamImplBase() {
+        @Override
+        public StreamObserver<WriteRequest> write(StreamObserver<WriteResponse> responseObserver) {
+          calls.incrementAndGet();
+          return new StreamObserver<WriteRequest>() {
+            private long committedSize;
+
+            @Override
+            public void onNext(WriteRequest request) {
+              committedSize = request.getWriteOffset() + request.getData().size();
+            }
+
+            @Override
+            public void onCompleted() {
+              respond(
+                  responseObserver,
+                  WriteResponse.newBuilder().setCommittedSize(committedSize).build());
+            }
+
+            @Override
+            public void onError(Throwable t) {}
+          };
+        }
+      };
+    }
+
+    private <T> void respond(StreamObserver<T> responseObserver, T response) {
+      responder.schedule(
+          () -> {
+            responseObserver.onNext(response);
+            responseObserver.onCompleted();
+          },
+          latencyMillis,
+          TimeUnit.MILLISECONDS);
+    }
+  }
+
+  public static void main(String[] args) throws Exception {
+    int smallBlobs = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+    int largeBlobs = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+    long latencyMillis = args.length > 2 ? Long.parseLong(args[2]) : 2;
+    int runs = args.length > 3 ? Integer.parseInt(args[3]) : 3;
+
+    Cas cas = new Cas(latencyMillis);
+    Server server =
+        InProcessServerBuilder.forName(SERVER_NAME)
+            .addService(cas.contentAddressableStorage())
+            .addService(cas.byteStream())
+            .build()
+            .start();
+    ListeningScheduledExecutorService retryScheduler =
+        MoreExecutors.listeningDecorator(Executors.newScheduledThreadPool(1));
+    try {
+      for (int run = 0; run < runs; run++) {
+        // Fresh contents every run, so that no upload is deduplicated with an earlier one.
+        Random random = new Random(run);
+        List<ByteString> blobs = new ArrayList<>(smallBlobs + largeBlobs);
+        for (int i = 0; i < smallBlobs + largeBlobs; i++) {
+          byte[] data = new byte[i < smallBlobs ? SMALL_BLOB_SIZE : LARGE_BLOB_SIZE];
+          random.nextBytes(data);
+          blobs.add(ByteString.copyFrom(data));
+        }
+        for (String mode : new String[] {"writes", "batches", "batches, 16 MiB in flight"}) {
+          RemoteOptions options = Options.getDefaults(RemoteOptions.class);
+          options.maxOutboundMessageSize = 4 << 20;
+          if (!mode.equals("writes")) {
+            options.remoteUploadBatchBlobSize = 64 << 10;
+          }
+          if (mode.endsWith("in flight")) {
+            options.remoteUploadMaxInFlightBytes = 16 << 20;
+          }
+          cas.calls.set(0);
+          long nanos = upload(options, retryScheduler, blobs);
+          System.out.printf(
+              "run %d, %s: %d ms, %d calls%n", run, mode, nanos / 1_000_000, cas.calls.get());
+        }
+      }
+    } finally {
+      retryScheduler.shutdownNow();
+      cas.responder.shutdownNow();
+      server.shutdownNow();
+    }
+  }
+
+  private static long upload(
+      RemoteOptions options,
+      ListeningScheduledExecutorService retryScheduler,
+      List<ByteString> blobs)
+      throws Exception {
+    DigestUtil digestUtil = new DigestUtil(DigestHashFunction.SHA256);
+    RemoteRetrier retrier =
+        new RemoteRetrier(
+            options, RemoteRetrier.RETRIABLE_GRPC_ERRORS, retryScheduler, Retrier.ALLOW_ALL_CALLS);
+    ReferenceCountedChannel channel =
+        new ReferenceCountedChannel(
+            new ChannelConnectionFactory() {
+              @Override
+              public Single<? extends ChannelConnection> create() {
+                ManagedChannel ch = InProcessChannelBuilder.forName(SERVER_NAME).build();
+                return Single.just(new ChannelConnection(ch));
+              }
+
+              @Override
+              public int maxConcurrency() {
+                return 100;
+              }
+            });
+    ByteStreamUploader uploader =
+        new ByteStreamUploader(
+            options.remoteInstanceName,
+            channel.retain(),
+            CallCredentialsProvider.NO_CREDENTIALS,
+            options.remoteTimeout.getSeconds(),
+            retrier,
+            options.maximumOpenFiles);
+    GrpcCacheClient client =
+        new GrpcCacheClient(
+            channel,
+            CallCredentialsProvider.NO_CREDENTIALS,
+            options,
+            retrier,
+            digestUtil,
+            uploader);
+    RemoteActionExecutionContext context =
+        RemoteActionExecutionContext.create(
+            TracingMetadataUtils.buildMetadata("none", "none", "upload-benchmark", null));
+
+    List<Digest> digests = new ArrayList<>(blobs.size());
+    for (ByteString blob : blobs) {
+      digests.add(digestUtil.compute(blob.toByteArray()));
+    }
+    long start = System.nanoTime();
+    List<ListenableFuture<Void>> uploads = new ArrayList<>(blobs.size());
+    for (int i = 0; i < blobs.size(); i++) {
+      uploads.add(client.uploadBlob(context, digests.get(i), blobs.get(i)));
+    }
+    for (ListenableFuture<Void> upload : uploads) {
+      upload.get();
+    }
+    long nanos = System.nanoTime() - start;
+    client.close();
+    return nanos;
+  }
+
+  private UploadBenchmark() {}
+}
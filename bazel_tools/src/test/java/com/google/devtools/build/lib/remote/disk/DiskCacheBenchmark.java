@@ -0,0 +1,141 @@
+// Copyright 2026 The Bazel Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.google.devtools.build.lib.remote.disk;
+
+import static com.google.devtools.build.lib.remote.util.Utils.getFromFuture;
+
+import build.bazel.remote.execution.v2.Digest;
+import build.bazel.remote.execution.v2.RequestMetadata;
+import com.google.devtools.build.lib.clock.JavaClock;
+import com.google.devtools.build.lib.remote.common.CacheNotFoundException;
+import com.google.devtools.build.lib.remote.common.RemoteActionExecutionContext;
+import com.google.devtools.build.lib.remote.util.DigestUtil;
+import com.google.devtools.build.lib.vfs.DigestHashFunction;
+import com.google.devtools.build.lib.vfs.JavaIoFileSystem;
+import com.google.devtools.build.lib.vfs.Path;
+import com.google.protobuf.ByteString;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Measures the hit and miss latency of {@link DiskCacheClient} with and without a size bound.
+ *
+ * <p>Usage: {@code DiskCacheBenchmark [entries] [entry_bytes]}. Each scenario uploads {@code
+ * entries} random blobs and then reads back a random mix of present and absent digests. In the
+ * "pressure" scenario the cache is bounded to a quarter of the uploaded data, so eviction runs
+ * continuously in the background while the reads are measured.
+ */
+public final class DiskCacheBenchmark {
+
+  private static final RemoteActionExecutionContext CONTEXT =
+      RemoteActionExecutionContext.create(RequestMetadata.getDefaultInstance());
+
+  public static void main(String[] args) throws Exception {
+    int entries = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+    int entryBytes = args.length > 1 ? Integer.parseInt(args[1]) : 4096;
+    long totalBytes = (long) entries * entryBytes;
+
+    run("unbounded", entries, entryBytes, /* maxSizeBytes= */ 0);
+    run("bounded, no pressure", entries, entryBytes, totalBytes * 2);
+    run("bounded, eviction pressure", entries, entryBytes, totalBytes / 4);
+  }
+
+  private static void run(String name, int entries, int entryBytes, long maxSizeBytes)
+      throws Exception {
+    DigestUtil digestUtil = new DigestUtil(DigestHashFunction.SHA256);
+    JavaIoFileSystem fs = new JavaIoFileSystem(DigestHashFunction.SHA256);
+    Path root = fs.getPath(Files.createTempDirectory("disk_cache_benchmark").toString());
+    DiskCacheClient client =
+        maxSizeBytes > 0
+            ? new DiskCacheClient(
+                root, /* verifyDownloads= */ false, digestUtil, maxSizeBytes, new JavaClock())
+            : new DiskCacheClient(root, /* verifyDownloads= */ false, digestUtil);
+    Random random = new Random(42);
+    try {
+      List<Digest> digests = new ArrayList<>(entries);
+      long uploadNanos = 0;
+      for (int i = 0; i < entries; i++) {
+        byte[] data = new byte[entryBytes];
+        random.nextBytes(data);
+        Digest digest = digestUtil.compute(data);
+        long start = System.nanoTime();
+        getFromFuture(client.uploadBlob(CONTEXT, digest, ByteString.copyFrom(data)));
+        uploadNanos += System.nanoTime() - start;
+        digests.add(digest);
+      }
+
+      long[] hitNanos = new long[entries];
+      long[] missNanos = new long[entries];
+      int hits = 0;
+      int misses = 0;
+      for (int i = 0; i < entries; i++) {
+        Digest digest =
+            random.nextBoolean()
+                ? digests.get(random.nextInt(entries))
+                : digestUtil.computeAsUtf8("absent-" + i);
+        long start = System.nanoTime();
+        boolean hit = download(client, digest);
+        long elapsed = System.nanoTime() - start;
+        if (hit) {
+          hitNanos[hits++] = elapsed;
+        } else {
+          missNanos[misses++] = elapsed;
+        }
+      }
+
+      System.out.printf(
+          "%-28s upload avg %7.1fus | hit p50 %7.1fus p99 %7.1fus (%d) | miss p50 %7.1fus p99"
+              + " %7.1fus (%d)%n",
+          name,
+          uploadNanos / 1e3 / entries,
+          percentile(hitNanos, hits, 0.5),
+          percentile(hitNanos, hits, 0.99),
+          hits,
+          percentile(missNanos, misses, 0.5),
+          percentile(missNanos, misses, 0.99),
+          misses);
+    } finally {
+      client.close();
+      root.deleteTree();
+    }
+  }
+
+  private static boolean download(DiskCacheClient client, Digest digest) throws IOException {
+    try {
+      getFromFuture(client.downloadBlob(CONTEXT, digest, OutputStream.nullOutputStream()));
+      return true;
+    } catch (CacheNotFoundException e) {
+      return false;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException(e);
+    }
+  }
+
+  private static double percentile(long[] nanos, int count, double p) {
+    if (count == 0) {
+      return 0;
+    }
+    long[] sorted = Arrays.copyOf(nanos, count);
+    Arrays.sort(sorted);
+    return sorted[Math.min(count - 1, (int) (p * count))] / 1e3;
+  }
+
+  private DiskCacheBenchmark() {}
+}
@@ -0,0 +1,148 @@
+// Copyright 2026 The Bazel Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.google.devtools.build.lib.remote.disk;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.devtools.build.lib.remote.util.Utils.getFromFuture;
+
+import build.bazel.remote.execution.v2.Digest;
+import build.bazel.remote.execution.v2.RequestMetadata;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.devtools.build.lib.remote.common.RemoteActionExecutionContext;
+import com.google.devtools.build.lib.remote.util.DigestUtil;
+import com.google.devtools.build.lib.testutil.ManualClock;
+import com.google.devtools.build.lib.vfs.DigestHashFunction;
+import com.google.devtools.build.lib.vfs.FileSystemUtils;
+import com.google.devtools.build.lib.vfs.Path;
+import com.google.devtools.build.lib.vfs.inmemoryfs.InMemoryFileSystem;
+import com.google.protobuf.ByteString;
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link DiskCacheIndex} and the size-bounded mode of {@link DiskCacheClient}. */
+@RunWith(JUnit4.class)
+public class DiskCacheIndexTest {
+
+  private static final long MAX_SIZE_BYTES = 100;
+
+  private final DigestUtil digestUtil = new DigestUtil(DigestHashFunction.SHA256);
+  private final RemoteActionExecutionContext context =
+      RemoteActionExecutionContext.create(RequestMetadata.getDefaultInstance());
+
+  private ManualClock clock;
+  private Path root;
+  private DiskCacheIndex index;
+  private DiskCacheClient client;
+
+  @Before
+  public final void setUp() throws Exception {
+    clock = new ManualClock();
+    clock.advanceMillis(TimeUnit.DAYS.toMillis(1));
+    InMemoryFileSystem fs = new InMemoryFileSystem(clock, DigestHashFunction.SHA256);
+    root = fs.getPath("/disk_cache");
+    root.createDirectoryAndParents();
+    index =
+        new DiskCacheIndex(
+            root,
+            ImmutableList.of("ac", "cas"),
+            MAX_SIZE_BYTES,
+            clock,
+            MoreExecutors.newDirectExecutorService());
+    client = new DiskCacheClient(root, /* verifyDownloads= */ true, digestUtil, index);
+  }
+
+  @Test
+  public void evictsLeastRecentlyUsedEntries() throws Exception {
+    Digest a = upload('a');
+    Digest b = upload('b');
+    download(a);
+    Digest c = upload('c');
+
+    assertThat(client.contains(a)).isTrue();
+    assertThat(client.contains(b)).isFalse();
+    assertThat(client.contains(c)).isTrue();
+    assertThat(index.getTotalSizeBytes()).isEqualTo(80);
+    assertThat(index.getEvictedEntries()).isEqualTo(1);
+  }
+
+  @Test
+  public void hitRefreshesAccessTimeOnDisk() throws Exception {
+    Digest a = upload('a');
+    download(a);
+
+    Path path = client.toPath(a.getHash(), /* actionResult= */ false);
+    assertThat(path.getLastModifiedTime()).isEqualTo(clock.currentTimeMillis());
+    assertThat(index.getLastAccessMillis(path)).isEqualTo(clock.currentTimeMillis());
+  }
+
+  @Test
+  public void sparesEntriesUsedByAnotherServer() throws Exception {
+    Digest a = upload('a');
+    Digest b = upload('b');
+    clock.advanceMillis(DiskCacheIndex.TOUCH_INTERVAL_MILLIS);
+    // Another server sharing the directory hits 'a' and refreshes its modification time.
+    client
+        .toPath(a.getHash(), /* actionResult= */ false)
+        .setLastModifiedTime(clock.currentTimeMillis());
+    Digest c = upload('c');
+
+    assertThat(client.contains(a)).isTrue();
+    assertThat(client.contains(b)).isFalse();
+    assertThat(client.contains(c)).isTrue();
+  }
+
+  @Test
+  public void loadsExistingEntriesOnFirstUse() throws Exception {
+    for (char ch : new char[] {'a', 'b', 'c', 'd'}) {
+      byte[] data = blob(ch);
+      Path path = client.toPath(digestUtil.compute(data).getHash(), /* actionResult= */ false);
+      path.getParentDirectory().createDirectoryAndParents();
+      FileSystemUtils.writeContent(path, data);
+      clock.advanceMillis(DiskCacheIndex.TOUCH_INTERVAL_MILLIS);
+    }
+    assertThat(index.getTotalSizeBytes()).isEqualTo(0);
+
+    Digest d = digestUtil.compute(blob('d'));
+    download(d);
+
+    assertThat(index.getTotalSizeBytes()).isEqualTo(80);
+    assertThat(client.contains(digestUtil.compute(blob('a')))).isFalse();
+    assertThat(client.contains(digestUtil.compute(blob('b')))).isFalse();
+    assertThat(client.contains(d)).isTrue();
+  }
+
+  private static byte[] blob(char ch) {
+    byte[] data = new byte[40];
+    Arrays.fill(data, (byte) ch);
+    return data;
+  }
+
+  private Digest upload(char ch) throws Exception {
+    byte[] data = blob(ch);
+    Digest digest = digestUtil.compute(data);
+    getFromFuture(client.uploadBlob(context, digest, ByteString.copyFrom(data)));
+    clock.advanceMillis(DiskCacheIndex.TOUCH_INTERVAL_MILLIS);
+    return digest;
+  }
+
+  private void download(Digest digest) throws Exception {
+    getFromFuture(client.downloadBlob(context, digest, new ByteArrayOutputStream()));
+  }
+}
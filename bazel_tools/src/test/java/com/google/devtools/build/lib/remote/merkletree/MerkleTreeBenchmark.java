@@ -0,0 +1,114 @@
+// Copyright 2026 The Bazel Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.google.devtools.build.lib.remote.merkletree;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.google.devtools.build.lib.remote.util.DigestUtil;
+import com.google.devtools.build.lib.vfs.DigestHashFunction;
+import com.google.devtools.build.lib.vfs.FileSystem;
+import com.google.devtools.build.lib.vfs.FileSystemUtils;
+import com.google.devtools.build.lib.vfs.Path;
+import com.google.devtools.build.lib.vfs.PathFragment;
+import com.google.devtools.build.lib.vfs.inmemoryfs.InMemoryFileSystem;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Compares merging the Merkle trees of overlapping action inputs with and without memoizing the
+ * merged directories.
+ *
+ * <p>Usage: {@code MerkleTreeBenchmark [actions] [packages] [groups] [runs]}. Creates {@code
+ * groups} (500 by default) header libraries of 20 files each in an in-memory file system, and
+ * builds one Merkle tree per library, as the Merkle tree cache does per nested set. Then {@code
+ * actions} (10 thousand by default) actions, spread evenly over {@code packages} (100 by default)
+ * packages that each depend on 50 random libraries, merge the trees of their dependencies with
+ * the tree of their own source file. Only the root directory differs between the actions of a
+ * package, so with memoization the rest is merged and hashed once per package.
+ */
+public final class MerkleTreeBenchmark {
+
+  private static final int FILES_PER_GROUP = 20;
+  private static final int GROUPS_PER_PACKAGE = 50;
+
+  public static void main(String[] args) throws Exception {
+    int actions = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+    int packages = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+    int groups = args.length > 2 ? Integer.parseInt(args[2]) : 500;
+    int runs = args.length > 3 ? Integer.parseInt(args[3]) : 5;
+
+    FileSystem fs = new InMemoryFileSystem(DigestHashFunction.SHA256);
+    DigestUtil digestUtil = new DigestUtil(fs.getDigestFunction());
+    Path execRoot = fs.getPath("/exec");
+
+    List<MerkleTree> groupTrees = new ArrayList<>(groups);
+    for (int g = 0; g < groups; g++) {
+      SortedMap<PathFragment, Path> files = new TreeMap<>();
+      for (int f = 0; f < FILES_PER_GROUP; f++) {
+        String name = "lib/group" + g + "/include/header" + f + ".h";
+        files.put(PathFragment.create(name), createFile(execRoot.getRelative(name)));
+      }
+      groupTrees.add(MerkleTree.build(files, digestUtil));
+    }
+
+    Random random = new Random(actions);
+    List<List<MerkleTree>> actionTrees = new ArrayList<>(actions);
+    List<MerkleTree> packageTrees = new ArrayList<>();
+    int actionsPerPackage = Math.max(1, actions / packages);
+    for (int a = 0; a < actions; a++) {
+      if (a % actionsPerPackage == 0) {
+        packageTrees = new ArrayList<>(GROUPS_PER_PACKAGE + 1);
+        for (int g = 0; g < GROUPS_PER_PACKAGE; g++) {
+          packageTrees.add(groupTrees.get(random.nextInt(groups)));
+        }
+      }
+      String name = "pkg" + a / actionsPerPackage + "/src" + a + ".cc";
+      SortedMap<PathFragment, Path> source = new TreeMap<>();
+      source.put(PathFragment.create(name), createFile(execRoot.getRelative(name)));
+      List<MerkleTree> trees = new ArrayList<>(packageTrees);
+      trees.add(MerkleTree.build(source, digestUtil));
+      actionTrees.add(trees);
+    }
+    System.out.printf("%d actions in %d packages over %d libraries%n", actions, packages, groups);
+
+    for (int run = 0; run < runs; run++) {
+      for (boolean memoize : new boolean[] {false, true}) {
+        Cache<Object, MerkleTree> mergedTrees = memoize ? Caffeine.newBuilder().build() : null;
+        long start = System.nanoTime();
+        for (List<MerkleTree> trees : actionTrees) {
+          MerkleTree.merge(trees, digestUtil, mergedTrees);
+        }
+        System.out.printf(
+            "run %d, %s: %d ms%s%n",
+            run,
+            memoize ? "memoized" : "not memoized",
+            (System.nanoTime() - start) / 1_000_000,
+            memoize ? " (" + mergedTrees.estimatedSize() + " merged directories)" : "");
+      }
+    }
+  }
+
+  private static Path createFile(Path path) throws IOException {
+    path.getParentDirectory().createDirectoryAndParents();
+    FileSystemUtils.writeContent(path, path.getPathString().getBytes(StandardCharsets.UTF_8));
+    return path;
+  }
+
+  private MerkleTreeBenchmark() {}
+}
@@ -19,6 +19,8 @@ import build.bazel.remote.execution.v2.Digest;
 import build.bazel.remote.execution.v2.Directory;
 import build.bazel.remote.execution.v2.DirectoryNode;
 import build.bazel.remote.execution.v2.FileNode;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.Iterables;
 import com.google.devtools.build.lib.actions.ActionInput;
@@ -182,6 +184,44 @@ public class MerkleTreeTest {
     assertThat(mergedTree12.getAllDigests()).containsExactlyElementsIn(treeAll.getAllDigests());
   }
 
+  @Test
+  public void mergeMerkleTreesMemoizesMergedDirectories() throws IOException {
+    SortedMap<PathFragment, ActionInput> sortedInputs1 = new TreeMap<>();
+    SortedMap<PathFragment, ActionInput> sortedInputs2 = new TreeMap<>();
+    SortedMap<PathFragment, ActionInput> sortedInputsAll = new TreeMap<>();
+    Map<ActionInput, FileArtifactValue> metadata = new HashMap<>();
+    addFile("srcs/foo.cc", "foo", sortedInputs1, metadata);
+    addFile("srcs/bar.cc", "bar", sortedInputs2, metadata);
+    addFile("srcs/fizz/buzz.cc", "buzz", sortedInputs1, metadata);
+    addFile("srcs/fizz/fizzbuzz.cc", "fizzbuzz", sortedInputs2, metadata);
+    sortedInputsAll.putAll(sortedInputs1);
+    sortedInputsAll.putAll(sortedInputs2);
+    MerkleTree treeEmpty =
+        MerkleTree.build(
+            new TreeMap<>(), new StaticMetadataProvider(metadata), execRoot, digestUtil);
+    MerkleTree tree1 =
+        MerkleTree.build(sortedInputs1, new StaticMetadataProvider(metadata), execRoot, digestUtil);
+    MerkleTree tree2 =
+        MerkleTree.build(sortedInputs2, new StaticMetadataProvider(metadata), execRoot, digestUtil);
+    MerkleTree treeAll =
+        MerkleTree.build(
+            sortedInputsAll, new StaticMetadataProvider(metadata), execRoot, digestUtil);
+    Cache<Object, MerkleTree> mergedTrees = Caffeine.newBuilder().build();
+
+    MerkleTree mergedTree12 =
+        MerkleTree.merge(Arrays.asList(tree1, tree2), digestUtil, mergedTrees);
+    MerkleTree mergedTree21 =
+        MerkleTree.merge(Arrays.asList(tree2, treeEmpty, tree1, tree2), digestUtil, mergedTrees);
+
+    assertThat(mergedTree12.getRootDigest()).isEqualTo(treeAll.getRootDigest());
+    assertThat(mergedTree12.getAllDigests()).containsExactlyElementsIn(treeAll.getAllDigests());
+    assertThat(mergedTree21).isSameInstanceAs(mergedTree12);
+    // The root, srcs and srcs/fizz were merged.
+    assertThat(mergedTrees.asMap()).hasSize(3);
+    assertThat(MerkleTree.merge(Arrays.asList(tree1, treeEmpty), digestUtil, mergedTrees))
+        .isSameInstanceAs(tree1);
+  }
+
   private Artifact addFile(
       String path,
       String content,
@@ -0,0 +1,116 @@
+// Copyright 2026 The Bazel Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.devtools.build.lib.sandbox;
+
+import com.google.common.base.Stopwatch;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.devtools.build.lib.sandbox.SandboxHelpers.SandboxInputs;
+import com.google.devtools.build.lib.sandbox.SandboxHelpers.SandboxOutputs;
+import com.google.devtools.build.lib.vfs.DigestHashFunction;
+import com.google.devtools.build.lib.vfs.FileSystemUtils;
+import com.google.devtools.build.lib.vfs.JavaIoFileSystem;
+import com.google.devtools.build.lib.vfs.Path;
+import com.google.devtools.build.lib.vfs.PathFragment;
+import java.nio.file.Files;
+import java.time.Duration;
+
+/**
+ * Measures setting up and tearing down symlinked sandboxes for actions with many inputs, once with
+ * a fresh sandbox per action and once patching the stashed sandbox of the previous action.
+ *
+ * <p>Usage: {@code SandboxReuseBenchmark [inputs] [actions] [changed inputs per action]}. Deletion
+ * is synchronous, so that the times include all of the file system work of each action.
+ */
+public final class SandboxReuseBenchmark {
+  public static void main(String[] args) throws Exception {
+    int inputs = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+    int actions = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+    int changed = args.length > 2 ? Integer.parseInt(args[2]) : 100;
+
+    JavaIoFileSystem fileSystem = new JavaIoFileSystem(DigestHashFunction.SHA256);
+    Path root =
+        fileSystem.getPath(Files.createTempDirectory("sandbox-reuse-benchmark").toString());
+    try {
+      Path workspace = root.getRelative("workspace");
+      for (int i = 0; i < inputs + changed; i++) {
+        Path file = workspace.getRelative(inputPath(i));
+        file.getParentDirectory().createDirectoryAndParents();
+        FileSystemUtils.createEmptyFile(file);
+      }
+      for (boolean reuse : new boolean[] {false, true}) {
+        run(root, workspace, inputs, actions, changed, reuse);
+      }
+    } finally {
+      root.deleteTree();
+    }
+  }
+
+  private static void run(
+      Path root, Path workspace, int inputs, int actions, int changed, boolean reuse)
+      throws Exception {
+    Path sandboxBase = root.getRelative(reuse ? "reuse" : "fresh");
+    sandboxBase.createDirectory();
+    SandboxStats stats = new SandboxStats();
+    Stopwatch stopwatch = Stopwatch.createStarted();
+    for (int action = 0; action < actions; action++) {
+      // Like consecutive compilations of one library, each action swaps a few inputs.
+      ImmutableMap.Builder<PathFragment, Path> inputMap = ImmutableMap.builder();
+      for (int i = 0; i < inputs; i++) {
+        int input = i < changed && action % 2 == 1 ? inputs + i : i;
+        inputMap.put(inputPath(input), workspace.getRelative(inputPath(input)));
+      }
+      Path sandboxPath = sandboxBase.getRelative("linux-sandbox/" + action);
+      Path sandboxExecRoot = sandboxPath.getRelative("execroot/main");
+      sandboxExecRoot.createDirectoryAndParents();
+      SymlinkedSandboxedSpawn spawn =
+          new SymlinkedSandboxedSpawn(
+              sandboxPath,
+              sandboxExecRoot,
+              ImmutableList.of("/bin/true"),
+              ImmutableMap.of(),
+              new SandboxInputs(inputMap.buildOrThrow(), ImmutableSet.of(), ImmutableMap.of()),
+              SandboxOutputs.create(
+                  ImmutableSet.of(PathFragment.create("bazel-out/bin/lib.jar")),
+                  ImmutableSet.of()),
+              ImmutableSet.of(sandboxExecRoot),
+              new SynchronousTreeDeleter(),
+              /* statisticsPath= */ null,
+              reuse,
+              sandboxBase,
+              "Javac",
+              stats);
+      spawn.createFileSystem();
+      spawn.delete();
+    }
+    Duration elapsed = stopwatch.elapsed();
+    System.out.printf(
+        "%s: %d actions with %d inputs in %d ms, %d ms per action (setup %d ms), %d symlinks"
+            + " created, %d kept%n",
+        reuse ? "reuse" : "fresh",
+        actions,
+        inputs,
+        elapsed.toMillis(),
+        elapsed.toMillis() / actions,
+        stats.getSetupTime().toMillis() / actions,
+        stats.getSymlinksCreated(),
+        stats.getSymlinksKept());
+  }
+
+  private static PathFragment inputPath(int i) {
+    return PathFragment.create("java/com/example/pkg" + i % 100 + "/Source" + i + ".java");
+  }
+}
@@ -41,6 +41,7 @@ public class SymlinkedSandboxedSpawnTest {
   private Path sandboxDir;
   private Path execRoot;
   private Path outputsDir;
+  private Path sandboxBase;
 
   @Before
   public final void setupTestDirs() throws IOException {
@@ -56,6 +57,8 @@ public class SymlinkedSandboxedSpawnTest {
     execRoot.createDirectory();
     outputsDir = testRoot.getRelative("outputs");
     outputsDir.createDirectory();
+    sandboxBase = testRoot.getRelative("sandbox_base");
+    sandboxBase.createDirectory();
   }
 
   @Test
@@ -80,7 +83,8 @@ public class SymlinkedSandboxedSpawnTest {
             /* statisticsPath= */ null,
             false,
             execRoot,
-            "SomeMnemonic");
+            "SomeMnemonic",
+            new SandboxStats());
 
     symlinkedExecRoot.createFileSystem();
 
@@ -90,6 +94,56 @@ public class SymlinkedSandboxedSpawnTest {
     assertThat(execRoot.getRelative("wow/writable").isDirectory()).isTrue();
   }
 
+  @Test
+  public void createFileSystem_reusesStashedSandbox() throws Exception {
+    Path a = workspaceDir.getRelative("a.txt");
+    Path b = workspaceDir.getRelative("b.txt");
+    Path c = workspaceDir.getRelative("c.txt");
+    FileSystemUtils.createEmptyFile(a);
+    FileSystemUtils.createEmptyFile(b);
+    FileSystemUtils.createEmptyFile(c);
+    SandboxStats stats = new SandboxStats();
+
+    SymlinkedSandboxedSpawn first =
+        createReusableSpawn(
+            ImmutableMap.of(PathFragment.create("in/a.txt"), a, PathFragment.create("in/b.txt"), b),
+            stats);
+    first.createFileSystem();
+    first.delete();
+    assertThat(sandboxDir.exists()).isFalse();
+    sandboxDir.createDirectory();
+    SymlinkedSandboxedSpawn second =
+        createReusableSpawn(
+            ImmutableMap.of(PathFragment.create("in/a.txt"), a, PathFragment.create("in/c.txt"), c),
+            stats);
+    second.createFileSystem();
+
+    assertThat(execRoot.getRelative("in/a.txt").readSymbolicLink()).isEqualTo(a.asFragment());
+    assertThat(execRoot.getRelative("in/b.txt").exists(Symlinks.NOFOLLOW)).isFalse();
+    assertThat(execRoot.getRelative("in/c.txt").readSymbolicLink()).isEqualTo(c.asFragment());
+    assertThat(stats.getSandboxesReused()).isEqualTo(1);
+    assertThat(stats.getSymlinksCreated()).isEqualTo(3);
+    assertThat(stats.getSymlinksKept()).isEqualTo(1);
+  }
+
+  private SymlinkedSandboxedSpawn createReusableSpawn(
+      ImmutableMap<PathFragment, Path> inputs, SandboxStats stats) {
+    return new SymlinkedSandboxedSpawn(
+        sandboxDir,
+        execRoot,
+        ImmutableList.of("/bin/true"),
+        ImmutableMap.of(),
+        new SandboxInputs(inputs, ImmutableSet.of(), ImmutableMap.of()),
+        SandboxOutputs.create(ImmutableSet.of(), ImmutableSet.of()),
+        ImmutableSet.of(),
+        new SynchronousTreeDeleter(),
+        /* statisticsPath= */ null,
+        /* reuseSandboxDirectories= */ true,
+        sandboxBase,
+        "SomeMnemonic",
+        stats);
+  }
+
   @Test
   public void copyOutputs() throws Exception {
     // These tests are very simple because we just rely on
@@ -110,7 +164,8 @@ public class SymlinkedSandboxedSpawnTest {
             /* statisticsPath= */ null,
             false,
             execRoot,
-            "SomeMnemonic");
+            "SomeMnemonic",
+            new SandboxStats());
     symlinkedExecRoot.createFileSystem();
 
     FileSystemUtils.createEmptyFile(outputFile);
@@ -276,6 +276,52 @@ public final class ActionMetadataHandlerTest {
     assertThat(chmodCalls).isEmpty();
   }
 
+  @Test
+  public void createsLargeTreeArtifactValueFromFilesystemConcurrently() throws Exception {
+    int size = ActionMetadataHandler.MIN_CHILDREN_TO_DIGEST_CONCURRENTLY * 4;
+    for (int i = 0; i < size; i++) {
+      scratch.file("/output/bin/foo/bar/dir" + i % 3 + "/child" + i, "child" + i);
+    }
+    SpecialArtifact treeArtifact =
+        ActionsTestUtil.createTreeArtifactWithGeneratingAction(
+            outputRoot, PathFragment.create("bin/foo/bar"));
+    ActionMetadataHandler handler =
+        createHandler(
+            new ActionInputMap(0),
+            /*forInputDiscovery=*/ false,
+            /*outputs=*/ ImmutableSet.of(treeArtifact));
+
+    handler.getMetadata(treeArtifact);
+    TreeArtifactValue tree = handler.getOutputStore().getTreeArtifactData(treeArtifact);
+
+    assertThat(tree.getChildren()).hasSize(size);
+    for (int i = 0; i < size; i++) {
+      TreeFileArtifact child =
+          TreeFileArtifact.createTreeOutput(treeArtifact, "dir" + i % 3 + "/child" + i);
+      assertThat(tree.getChildValues().get(child).getDigest())
+          .isEqualTo(child.getPath().getDigest());
+    }
+  }
+
+  @Test
+  public void danglingSymlinkInLargeTreeArtifactFails() throws Exception {
+    for (int i = 0; i < ActionMetadataHandler.MIN_CHILDREN_TO_DIGEST_CONCURRENTLY; i++) {
+      scratch.file("/output/bin/foo/bar/child" + i, "child" + i);
+    }
+    scratch.resolve("/output/bin/foo/bar/link").createSymbolicLink(PathFragment.create("missing"));
+    SpecialArtifact treeArtifact =
+        ActionsTestUtil.createTreeArtifactWithGeneratingAction(
+            outputRoot, PathFragment.create("bin/foo/bar"));
+    ActionMetadataHandler handler =
+        createHandler(
+            new ActionInputMap(0),
+            /*forInputDiscovery=*/ false,
+            /*outputs=*/ ImmutableSet.of(treeArtifact));
+
+    IOException e = assertThrows(IOException.class, () -> handler.getMetadata(treeArtifact));
+    assertThat(e).hasMessageThat().contains("Failed to resolve relative path link");
+  }
+
   @Test
   public void resettingOutputs() throws Exception {
     PathFragment path = PathFragment.create("foo/bar");
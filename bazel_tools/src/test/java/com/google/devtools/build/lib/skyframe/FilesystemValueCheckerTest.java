@@ -47,6 +47,7 @@ import com.google.devtools.build.lib.io.FileSymlinkInfiniteExpansionUniquenessFu
 import com.google.devtools.build.lib.packages.WorkspaceFileValue;
 import com.google.devtools.build.lib.pkgcache.PathPackageLocator;
 import com.google.devtools.build.lib.skyframe.DirtinessCheckerUtils.BasicFilesystemDirtinessChecker;
+import com.google.devtools.build.lib.skyframe.DirtinessCheckerUtils.MissingDiffDirtinessChecker;
 import com.google.devtools.build.lib.skyframe.ExternalFilesHelper.ExternalFileAction;
 import com.google.devtools.build.lib.skyframe.PackageLookupFunction.CrossRepositoryLabelViolationStrategy;
 import com.google.devtools.build.lib.testutil.TestConstants;
@@ -366,6 +367,76 @@ public final class FilesystemValueCheckerTest extends FilesystemValueCheckerTest
     assertThat(diff.changedKeysWithNewValues()).isEmpty();
   }
 
+  @Test
+  public void testMissingDiffCheckerUsesBatchStatOfSourceFiles() throws Exception {
+    Root root = Root.fromPath(pkgRoot);
+    Path unchanged = pkgRoot.getRelative("unchanged");
+    Path modified = pkgRoot.getRelative("modified");
+    Path deleted = pkgRoot.getRelative("deleted");
+    Path created = pkgRoot.getRelative("created");
+    Path symlink = pkgRoot.getRelative("symlink");
+    Path outside = fs.getPath("/outside");
+    SkyKey unchangedKey = FileStateValue.key(RootedPath.toRootedPath(root, unchanged));
+    SkyKey modifiedKey = FileStateValue.key(RootedPath.toRootedPath(root, modified));
+    SkyKey deletedKey = FileStateValue.key(RootedPath.toRootedPath(root, deleted));
+    SkyKey createdKey = FileStateValue.key(RootedPath.toRootedPath(root, created));
+    SkyKey symlinkKey = FileStateValue.key(RootedPath.toRootedPath(root, symlink));
+    SkyKey outsideKey =
+        FileStateValue.key(RootedPath.toRootedPath(Root.absoluteRoot(fs), outside));
+    FileSystemUtils.createEmptyFile(unchanged);
+    FileSystemUtils.createEmptyFile(modified);
+    FileSystemUtils.createEmptyFile(deleted);
+    symlink.createSymbolicLink(PathFragment.create("unchanged"));
+    FileSystemUtils.createEmptyFile(outside);
+    ImmutableList<SkyKey> keys =
+        ImmutableList.of(
+            unchangedKey, modifiedKey, deletedKey, createdKey, symlinkKey, outsideKey);
+    assertThat(driver.evaluate(keys, EVALUATION_OPTIONS).hasError()).isFalse();
+
+    FileSystemUtils.writeContentAsLatin1(modified, "hello");
+    deleted.delete();
+    FileSystemUtils.createEmptyFile(created);
+    symlink.delete();
+    symlink.createSymbolicLink(PathFragment.create("modified"));
+    FileSystemUtils.writeContentAsLatin1(outside, "hello");
+
+    List<ImmutableList<PathFragment>> batches = new ArrayList<>();
+    BatchStat delegate = BatchStatMode.ENABLED.getBatchStat(fs);
+    BatchStat batchStatter =
+        (includeDigest, includeLinks, paths) -> {
+          batches.add(ImmutableList.copyOf(paths));
+          return delegate.batchStat(includeDigest, includeLinks, paths);
+        };
+    Map<RootedPath, FileStatusWithDigest> stats =
+        FilesystemValueChecker.batchStatFileStates(
+            evaluator.getValues(), ImmutableSet.of(root), batchStatter);
+    // Only the files under the root are stat'ed, all in one batch.
+    assertThat(batches).hasSize(1);
+    assertThat(batches.get(0))
+        .containsExactly(
+            unchanged.asFragment(),
+            modified.asFragment(),
+            deleted.asFragment(),
+            created.asFragment(),
+            symlink.asFragment());
+    assertThat(stats).containsKey(RootedPath.toRootedPath(root, deleted));
+    assertThat(stats.get(RootedPath.toRootedPath(root, deleted))).isNull();
+
+    FilesystemValueChecker checker =
+        new FilesystemValueChecker(
+            /* tsgm= */ null, /* lastExecutionTimeRange= */ null, FSVC_THREADS_FOR_TEST);
+    Diff batched =
+        checker.getDirtyKeys(
+            evaluator.getValues(),
+            new MissingDiffDirtinessChecker(ImmutableSet.of(root), stats));
+    Diff individual =
+        checker.getDirtyKeys(
+            evaluator.getValues(), new MissingDiffDirtinessChecker(ImmutableSet.of(root)));
+    assertDiffWithNewValues(batched, modifiedKey, deletedKey, createdKey, symlinkKey);
+    assertThat(batched.changedKeysWithNewValues())
+        .containsExactlyEntriesIn(individual.changedKeysWithNewValues());
+  }
+
   @Test
   public void testFilesInCycleNotConsideredDirty() throws Exception {
     Path path1 = pkgRoot.getRelative("foo1");
@@ -0,0 +1,132 @@
+// Copyright 2026 The Bazel Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.google.devtools.build.lib.unix;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.devtools.build.lib.vfs.DigestHashFunction;
+import com.google.devtools.build.lib.vfs.FileSystem;
+import com.google.devtools.build.lib.vfs.Path;
+import com.google.devtools.build.lib.vfs.PathFragment;
+import com.google.devtools.build.lib.vfs.Symlinks;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Compares stat'ing output files one by one, as {@code FilesystemValueChecker} does without a batch
+ * statter, with {@link UnixBatchStat}, on the output check of a no-op build.
+ *
+ * <p>Usage: {@code UnixBatchStatBenchmark <dir> [files] [files_per_dir] [shards] [runs]}. Creates
+ * {@code files} (1 million by default) empty files under {@code dir}, {@code files_per_dir} (100 by
+ * default) per directory, unless they already exist. Then it repeatedly checks all of them in
+ * {@code shards} parallel shards (the number of cores times 4 by default, as the checker does),
+ * each shard covering consecutive files like the checker's action shards. Point {@code dir} at the
+ * file system of interest; the gap is widest on network file systems.
+ */
+public final class UnixBatchStatBenchmark {
+
+  public static void main(String[] args) throws Exception {
+    if (args.length < 1) {
+      System.err.println(
+          "Usage: UnixBatchStatBenchmark <dir> [files] [files_per_dir] [shards] [runs]");
+      System.exit(2);
+    }
+    int files = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+    int filesPerDir = args.length > 2 ? Integer.parseInt(args[2]) : 100;
+    int shards =
+        args.length > 3
+            ? Integer.parseInt(args[3])
+            : Runtime.getRuntime().availableProcessors() * 4;
+    int runs = args.length > 4 ? Integer.parseInt(args[4]) : 5;
+
+    FileSystem fs = new UnixFileSystem(DigestHashFunction.SHA256, /*hashAttributeName=*/ "");
+    Path root = fs.getPath(args[0]);
+    List<PathFragment> paths = createFiles(root, files, filesPerDir);
+    List<List<PathFragment>> shardedPaths =
+        Lists.partition(paths, Math.max(1, (paths.size() + shards - 1) / shards));
+    ExecutorService executor = Executors.newFixedThreadPool(shards);
+    try {
+      for (int run = 0; run < runs; run++) {
+        long individualNanos =
+            time(
+                executor,
+                shardedPaths,
+                shard -> {
+                  for (PathFragment path : shard) {
+                    root.getRelative(path).statIfFound(Symlinks.NOFOLLOW);
+                  }
+                });
+        UnixBatchStat batchStat = new UnixBatchStat(root);
+        long batchNanos =
+            time(
+                executor,
+                shardedPaths,
+                shard ->
+                    batchStat.batchStat(
+                        /*includeDigest=*/ false, /*includeLinks=*/ true, shard));
+        System.out.printf(
+            "run %d: individual %d ms, batched %d ms (%s)%n",
+            run, individualNanos / 1_000_000, batchNanos / 1_000_000, batchStat);
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private static List<PathFragment> createFiles(Path root, int files, int filesPerDir)
+      throws Exception {
+    List<PathFragment> paths = new ArrayList<>(files);
+    for (int i = 0; i < files; i++) {
+      PathFragment path = PathFragment.create("dir" + i / filesPerDir + "/file" + i);
+      Path file = root.getRelative(path);
+      if (i % filesPerDir == 0) {
+        file.getParentDirectory().createDirectoryAndParents();
+      }
+      if (!file.exists()) {
+        file.getOutputStream().close();
+      }
+      paths.add(path);
+    }
+    return paths;
+  }
+
+  private interface ShardCheck {
+    void check(List<PathFragment> shard) throws Exception;
+  }
+
+  private static long time(
+      ExecutorService executor, List<List<PathFragment>> shardedPaths, ShardCheck check)
+      throws Exception {
+    long start = System.nanoTime();
+    List<Future<?>> futures = new ArrayList<>();
+    for (List<PathFragment> shard : shardedPaths) {
+      ImmutableList<PathFragment> copy = ImmutableList.copyOf(shard);
+      futures.add(
+          executor.submit(
+              () -> {
+                check.check(copy);
+                return null;
+              }));
+    }
+    for (Future<?> future : futures) {
+      future.get();
+    }
+    return System.nanoTime() - start;
+  }
+
+  private UnixBatchStatBenchmark() {}
+}
@@ -0,0 +1,174 @@
+// Copyright 2026 The Bazel Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.google.devtools.build.lib.unix;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.collect.ImmutableList;
+import com.google.devtools.build.lib.testutil.TestUtils;
+import com.google.devtools.build.lib.vfs.DigestHashFunction;
+import com.google.devtools.build.lib.vfs.FileStatus;
+import com.google.devtools.build.lib.vfs.FileStatusWithDigest;
+import com.google.devtools.build.lib.vfs.FileSystem;
+import com.google.devtools.build.lib.vfs.FileSystemUtils;
+import com.google.devtools.build.lib.vfs.Path;
+import com.google.devtools.build.lib.vfs.PathFragment;
+import com.google.devtools.build.lib.vfs.Symlinks;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link UnixBatchStat}. */
+@RunWith(JUnit4.class)
+public class UnixBatchStatTest {
+  private Path execRoot;
+  private UnixBatchStat batchStat;
+
+  @Before
+  public final void createExecRoot() throws Exception {
+    FileSystem fs = new UnixFileSystem(DigestHashFunction.SHA256, /*hashAttributeName=*/ "");
+    execRoot = fs.getPath(new File(TestUtils.tmpDir()).getCanonicalPath()).getChild("execroot");
+    execRoot.deleteTree();
+    execRoot.createDirectoryAndParents();
+    batchStat = new UnixBatchStat(execRoot);
+  }
+
+  @Test
+  public void statsFilesDirectoriesAndSymlinks() throws Exception {
+    Path dir = execRoot.getRelative("out/dir");
+    dir.createDirectoryAndParents();
+    FileSystemUtils.writeContentAsLatin1(dir.getChild("file"), "content");
+    dir.getChild("link").createSymbolicLink(PathFragment.create("file"));
+    dir.getChild("subdir").createDirectory();
+
+    List<FileStatusWithDigest> stats =
+        batchStat.batchStat(
+            /*includeDigest=*/ false,
+            /*includeLinks=*/ true,
+            fragments("out/dir/file", "out/dir/link", "out/dir/subdir", "out/dir/missing"));
+
+    assertThat(stats).hasSize(4);
+    assertSameStat(stats.get(0), dir.getChild("file").stat(Symlinks.NOFOLLOW));
+    assertThat(stats.get(0).getDigest()).isNull();
+    assertThat(stats.get(1).isSymbolicLink()).isTrue();
+    assertThat(stats.get(2).isDirectory()).isTrue();
+    assertThat(stats.get(3)).isNull();
+    assertThat(batchStat.getPathCount()).isEqualTo(4);
+    assertThat(batchStat.getDirectoryCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void followsSymlinksUnlessLinksAreIncluded() throws Exception {
+    Path dir = execRoot.getRelative("out");
+    dir.createDirectoryAndParents();
+    FileSystemUtils.writeContentAsLatin1(dir.getChild("file"), "content");
+    dir.getChild("link").createSymbolicLink(PathFragment.create("file"));
+
+    List<FileStatusWithDigest> stats =
+        batchStat.batchStat(
+            /*includeDigest=*/ false, /*includeLinks=*/ false, fragments("out/link"));
+
+    assertSameStat(stats.get(0), dir.getChild("file").stat(Symlinks.NOFOLLOW));
+  }
+
+  @Test
+  public void entriesOfMissingDirectoriesAreMissing() throws Exception {
+    FileSystemUtils.writeContentAsLatin1(execRoot.getChild("file"), "content");
+
+    List<FileStatusWithDigest> stats =
+        batchStat.batchStat(
+            /*includeDigest=*/ false,
+            /*includeLinks=*/ true,
+            fragments("missing/file", "file/not_a_directory"));
+
+    assertThat(stats).containsExactly(null, null);
+  }
+
+  @Test
+  public void largeDirectoriesAreListedFirst() throws Exception {
+    Path dir = execRoot.getRelative("out");
+    dir.createDirectoryAndParents();
+    List<String> paths = new ArrayList<>();
+    for (int i = 0; i < UnixBatchStat.LIST_FIRST_THRESHOLD; i++) {
+      if (i % 2 == 0) {
+        FileSystemUtils.writeContentAsLatin1(dir.getChild("file" + i), "content");
+      }
+      paths.add("out/file" + i);
+    }
+
+    List<FileStatusWithDigest> stats =
+        batchStat.batchStat(
+            /*includeDigest=*/ false, /*includeLinks=*/ true, fragments(paths));
+
+    for (int i = 0; i < paths.size(); i++) {
+      if (i % 2 == 0) {
+        assertSameStat(stats.get(i), dir.getChild("file" + i).stat(Symlinks.NOFOLLOW));
+      } else {
+        assertThat(stats.get(i)).isNull();
+      }
+    }
+    assertThat(batchStat.getStatCallsSaved()).isEqualTo(paths.size() / 2);
+  }
+
+  @Test
+  public void largeBatchesKeepTheOrderOfThePaths() throws Exception {
+    List<String> paths = new ArrayList<>();
+    for (int d = 0; d < 40; d++) {
+      Path dir = execRoot.getRelative("out/dir" + d);
+      dir.createDirectoryAndParents();
+      for (int f = 0; f < 50; f++) {
+        FileSystemUtils.writeContentAsLatin1(dir.getChild("file" + f), "content" + d + "/" + f);
+        paths.add("out/dir" + d + "/file" + f);
+      }
+    }
+    // Interleave the directories, so that consecutive paths end up in different shards.
+    List<String> interleaved = new ArrayList<>();
+    for (int f = 0; f < 50; f++) {
+      for (int d = 0; d < 40; d++) {
+        interleaved.add(paths.get(d * 50 + f));
+      }
+    }
+
+    List<FileStatusWithDigest> stats =
+        batchStat.batchStat(
+            /*includeDigest=*/ false, /*includeLinks=*/ true, fragments(interleaved));
+
+    assertThat(stats).hasSize(interleaved.size());
+    for (int i = 0; i < interleaved.size(); i++) {
+      assertSameStat(stats.get(i), execRoot.getRelative(interleaved.get(i)).stat());
+    }
+    assertThat(batchStat.getDirectoryCount()).isEqualTo(40);
+  }
+
+  private static void assertSameStat(FileStatusWithDigest actual, FileStatus expected)
+      throws Exception {
+    assertThat(actual).isNotNull();
+    assertThat(actual.getNodeId()).isEqualTo(expected.getNodeId());
+    assertThat(actual.getSize()).isEqualTo(expected.getSize());
+    assertThat(actual.getLastModifiedTime()).isEqualTo(expected.getLastModifiedTime());
+    assertThat(actual.isFile()).isEqualTo(expected.isFile());
+  }
+
+  private static ImmutableList<PathFragment> fragments(String... paths) {
+    return fragments(ImmutableList.copyOf(paths));
+  }
+
+  private static ImmutableList<PathFragment> fragments(List<String> paths) {
+    return paths.stream().map(PathFragment::create).collect(ImmutableList.toImmutableList());
+  }
+}
@@ -0,0 +1,120 @@
+// Copyright 2026 The Bazel Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.google.devtools.build.lib.vfs;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.io.BaseEncoding;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link Blake3}. */
+@RunWith(JUnit4.class)
+public final class Blake3Test {
+
+  @Test
+  public void matchesTestVectors() {
+    // From the test vectors of the BLAKE3 reference implementation, whose input of length n is the
+    // bytes 0, 1, ..., 250, 0, 1, ... of length n.
+    assertHash(0, "af1349b9f5f9a1a6a0404dea36dcc9499bcb25c9adc112b7cc9a93cae41f3262");
+    assertHash(1, "2d3adedff11b61f14c886e35afa036736dcd87a74d27b5c1510225d0f592e213");
+    assertHash(1023, "10108970eeda3eb932baac1428c7a2163b0e924c9a9e25b35bba72b28f70bd11");
+    assertHash(1024, "42214739f095a406f3fc83deb889744ac00df831c10daa55189b5d121c855af7");
+    assertHash(1025, "d00278ae47eb27b34faecf67b4fe263f82d5412916c1ffd97c8cb7fb814b8444");
+    assertHash(2048, "e776b6028c7cd22a4d0ba182a8bf62205d2ef576467e838ed6f2529b85fba24a");
+    assertHash(3073, "7124b49501012f81cc7f11ca069ec9226cecb8a2c850cfe644e327d22d3e1cd3");
+    assertHash(8193, "bab6c09cb8ce8cf459261398d2e7aef35700bf488116ceb94a36d0f5f1b7bc3b");
+    assertHash(102400, "bc3e3d41a1146b069abffad3c0d44860cf664390afce4d9661f7902e7943e085");
+  }
+
+  @Test
+  public void hashFunctionMatchesStringVector() {
+    assertThat(
+            DigestHashFunction.BLAKE3
+                .getHashFunction()
+                .hashString("abc", StandardCharsets.US_ASCII)
+                .toString())
+        .isEqualTo("6437b3ac38465133ffb63b75273a8db548c558465d79db03fd359c6cd5bd9d85");
+  }
+
+  @Test
+  public void incrementalHashingMatchesOneShot() {
+    for (int length : new int[] {0, 63, 64, 65, 1024, 1025, 5000, 31744, 100_000}) {
+      byte[] input = input(length);
+      Blake3.Hasher hasher = new Blake3.Hasher();
+      // Feed the input in pieces that do not line up with blocks or chunks.
+      int offset = 0;
+      for (int piece = 1; offset < length; piece = piece * 3 % 1031 + 1) {
+        int size = Math.min(piece, length - offset);
+        if (size == 1) {
+          hasher.update(input[offset]);
+        } else {
+          hasher.update(input, offset, size);
+        }
+        offset += size;
+      }
+      assertThat(hasher.digest()).isEqualTo(Blake3.hash(ByteBuffer.wrap(input)));
+    }
+  }
+
+  @Test
+  public void parallelHashingMatchesSerial() {
+    ForkJoinPool pool = new ForkJoinPool(4);
+    try {
+      for (int length : new int[] {(1 << 20) + 1, 3 << 20, (5 << 20) + 12345}) {
+        ByteBuffer input = ByteBuffer.allocateDirect(length);
+        input.put(input(length)).flip();
+        Blake3.Hasher hasher = new Blake3.Hasher();
+        hasher.update(input(length), 0, length);
+
+        assertThat(Blake3.hashParallel(Blake3.windows(input), pool)).isEqualTo(hasher.digest());
+      }
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  @Test
+  public void messageDigestResetsAndClones() throws Exception {
+    MessageDigest digest = DigestHashFunction.BLAKE3.cloneOrCreateMessageDigest();
+    digest.update(input(2000));
+    MessageDigest clone = (MessageDigest) digest.clone();
+    clone.update(input(100));
+
+    assertThat(digest.digest()).isEqualTo(Blake3.hash(ByteBuffer.wrap(input(2000))));
+    assertThat(digest.digest()).isEqualTo(Blake3.hash(ByteBuffer.allocate(0)));
+    byte[] expected = new byte[2100];
+    System.arraycopy(input(2000), 0, expected, 0, 2000);
+    System.arraycopy(input(100), 0, expected, 2000, 100);
+    assertThat(clone.digest()).isEqualTo(Blake3.hash(ByteBuffer.wrap(expected)));
+  }
+
+  private static void assertHash(int length, String expected) {
+    byte[] hash = Blake3.hash(ByteBuffer.wrap(input(length)));
+    assertThat(BaseEncoding.base16().lowerCase().encode(hash)).isEqualTo(expected);
+  }
+
+  private static byte[] input(int length) {
+    byte[] input = new byte[length];
+    for (int i = 0; i < length; i++) {
+      input[i] = (byte) (i % 251);
+    }
+    return input;
+  }
+}
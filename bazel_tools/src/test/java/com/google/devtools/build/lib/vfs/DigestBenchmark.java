@@ -0,0 +1,141 @@
+// Copyright 2026 The Bazel Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.google.devtools.build.lib.vfs;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.Files;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Future;
+
+/**
+ * Measures the throughput of digesting files of 1 KiB, 1 MiB and 1 GiB.
+ *
+ * <p>Usage: {@code DigestBenchmark <dir> [runs]}. Creates 16384 files of 1 KiB, 256 files of 1 MiB
+ * and one file of 1 GiB of random bytes under {@code dir}, unless they already exist. Each set is
+ * then digested with SHA-256 and BLAKE3 in three ways: serially through a stream of the file, as
+ * {@link FileSystem#getDigest} does by default; serially through {@link DigestUtils#digestFile}
+ * with {@code --experimental_mmap_file_digests}, which maps large files and hashes them in
+ * parallel where the hash function allows; and concurrently, one mapped {@link
+ * DigestUtils#digestFile} per file in the digesting pool, as tree artifacts are. Run it twice to
+ * measure digesting from the page cache rather than from disk.
+ */
+public final class DigestBenchmark {
+
+  private static final ImmutableList<DigestHashFunction> FUNCTIONS =
+      ImmutableList.of(DigestHashFunction.SHA256, DigestHashFunction.BLAKE3);
+
+  public static void main(String[] args) throws Exception {
+    if (args.length < 1) {
+      System.err.println("Usage: DigestBenchmark <dir> [runs]");
+      System.exit(2);
+    }
+    File dir = new File(args[0]);
+    int runs = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+    List<List<File>> sets =
+        ImmutableList.of(
+            createFiles(new File(dir, "1k"), 16384, 1 << 10),
+            createFiles(new File(dir, "1m"), 256, 1 << 20),
+            createFiles(new File(dir, "1g"), 1, 1 << 30));
+
+    DigestUtils.configureMappedDigests(true);
+    for (int run = 0; run < runs; run++) {
+      for (List<File> files : sets) {
+        long bytes = files.size() * files.get(0).length();
+        for (DigestHashFunction function : FUNCTIONS) {
+          System.out.printf(
+              "run %d, %d x %s, %s: stream %s, digestFile %s, concurrent %s%n",
+              run,
+              files.size(),
+              describeSize(files.get(0).length()),
+              function,
+              throughput(bytes, timeStream(files, function)),
+              throughput(bytes, timeDigestFile(files, function)),
+              throughput(bytes, timeConcurrent(files, function)));
+        }
+      }
+    }
+  }
+
+  private static List<File> createFiles(File dir, int count, int size) throws IOException {
+    dir.mkdirs();
+    Random random = new Random(count);
+    byte[] buffer = new byte[Math.min(size, 1 << 20)];
+    List<File> files = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      File file = new File(dir, "file" + i);
+      if (file.length() != size) {
+        try (OutputStream out = new FileOutputStream(file)) {
+          for (int written = 0; written < size; written += buffer.length) {
+            random.nextBytes(buffer);
+            out.write(buffer, 0, Math.min(buffer.length, size - written));
+          }
+        }
+      }
+      files.add(file);
+    }
+    return files;
+  }
+
+  private static long timeStream(List<File> files, DigestHashFunction function)
+      throws IOException {
+    long start = System.nanoTime();
+    for (File file : files) {
+      Files.asByteSource(file).hash(function.getHashFunction());
+    }
+    return System.nanoTime() - start;
+  }
+
+  private static long timeDigestFile(List<File> files, DigestHashFunction function)
+      throws IOException {
+    long start = System.nanoTime();
+    for (File file : files) {
+      DigestUtils.digestFile(file.toPath(), function);
+    }
+    return System.nanoTime() - start;
+  }
+
+  private static long timeConcurrent(List<File> files, DigestHashFunction function)
+      throws Exception {
+    long start = System.nanoTime();
+    List<Future<byte[]>> futures = new ArrayList<>(files.size());
+    for (File file : files) {
+      futures.add(
+          DigestUtils.getDigestExecutor()
+              .submit(() -> DigestUtils.digestFile(file.toPath(), function)));
+    }
+    for (Future<byte[]> future : futures) {
+      future.get();
+    }
+    return System.nanoTime() - start;
+  }
+
+  private static String throughput(long bytes, long nanos) {
+    return String.format("%.0f MB/s", bytes / 1e6 / (nanos / 1e9));
+  }
+
+  private static String describeSize(long size) {
+    if (size >= 1 << 30) {
+      return (size >> 30) + " GiB";
+    }
+    return size >= 1 << 20 ? (size >> 20) + " MiB" : (size >> 10) + " KiB";
+  }
+
+  private DigestBenchmark() {}
+}
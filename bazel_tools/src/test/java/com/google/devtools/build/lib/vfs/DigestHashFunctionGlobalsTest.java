@@ -40,6 +40,9 @@ public class DigestHashFunctionGlobalsTest {
     assertThat(converter.convert("sha-1")).isSameInstanceAs(DigestHashFunction.SHA1);
     assertThat(converter.convert("SHA1")).isSameInstanceAs(DigestHashFunction.SHA1);
     assertThat(converter.convert("sha1")).isSameInstanceAs(DigestHashFunction.SHA1);
+
+    assertThat(converter.convert("BLAKE3")).isSameInstanceAs(DigestHashFunction.BLAKE3);
+    assertThat(converter.convert("blake3")).isSameInstanceAs(DigestHashFunction.BLAKE3);
   }
 
   @Test
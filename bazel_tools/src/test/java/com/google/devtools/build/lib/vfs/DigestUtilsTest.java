@@ -14,11 +14,16 @@
 package com.google.devtools.build.lib.vfs;
 
 import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
 
+import com.google.common.io.Files;
 import com.google.devtools.build.lib.testutil.TestThread;
 import com.google.devtools.build.lib.testutil.TestUtils;
 import com.google.devtools.build.lib.vfs.inmemoryfs.InMemoryFileSystem;
+import java.io.File;
+import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.util.Random;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -34,6 +39,7 @@ public final class DigestUtilsTest {
   @After
   public void tearDown() {
     DigestUtils.configureCache(/*maximumSize=*/ 0);
+    DigestUtils.configureMappedDigests(false);
   }
 
   private static void assertDigestCalculationConcurrency(
@@ -146,4 +152,53 @@ public final class DigestUtilsTest {
 
     assertThat(DigestUtils.manuallyComputeDigest(file, /*fileSize=*/ 8)).isEqualTo(digest);
   }
+
+  @Test
+  public void digestFileMatchesHashFunction() throws Exception {
+    File dir = TestUtils.makeTmpDir();
+    for (boolean mapped : new boolean[] {false, true}) {
+      DigestUtils.configureMappedDigests(mapped);
+      // One file always read through a buffer and one larger than a BLAKE3 parallel subtree.
+      for (int size : new int[] {100, (int) DigestUtils.MAP_THRESHOLD * 3 + 5}) {
+        byte[] content = new byte[size];
+        new Random(size).nextBytes(content);
+        File file = new File(dir, "file" + size);
+        Files.write(content, file);
+        for (DigestHashFunction function : DigestHashFunction.getPossibleHashFunctions()) {
+          assertThat(DigestUtils.digestFile(file.toPath(), function))
+              .isEqualTo(function.getHashFunction().hashBytes(content).asBytes());
+        }
+      }
+    }
+  }
+
+  @Test
+  public void digestedLargeFileCanBeOverwrittenAndDeleted() throws Exception {
+    DigestUtils.configureMappedDigests(true);
+    FileSystem fs = new JavaIoFileSystem(DigestHashFunction.SHA256);
+    Path file = fs.getPath(TestUtils.makeTmpDir().getPath()).getRelative("large");
+    byte[] content = new byte[(int) DigestUtils.MAP_THRESHOLD * 2];
+    new Random(1).nextBytes(content);
+    FileSystemUtils.writeContent(file, content);
+    assertThat(file.getDigest())
+        .isEqualTo(DigestHashFunction.SHA256.getHashFunction().hashBytes(content).asBytes());
+
+    // The file is no longer mapped, so it can be replaced, like an output of the next build.
+    content[0]++;
+    FileSystemUtils.writeContent(file, content);
+    assertThat(file.getDigest())
+        .isEqualTo(DigestHashFunction.SHA256.getHashFunction().hashBytes(content).asBytes());
+    file.delete();
+
+    assertThat(file.exists()).isFalse();
+  }
+
+  @Test
+  public void digestFileOfMissingFileThrowsFileNotFoundException() throws Exception {
+    File missing = new File(TestUtils.makeTmpDir(), "missing");
+
+    assertThrows(
+        FileNotFoundException.class,
+        () -> DigestUtils.digestFile(missing.toPath(), DigestHashFunction.SHA256));
+  }
 }
@@ -17,8 +17,11 @@ import static com.google.common.truth.Truth.assertThat;
 import static org.junit.Assert.assertThrows;
 
 import com.google.common.base.Predicate;
+import com.google.common.collect.ConcurrentHashMultiset;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Multiset;
+import com.google.common.util.concurrent.MoreExecutors;
 import com.google.common.util.concurrent.Uninterruptibles;
 import com.google.devtools.build.lib.testutil.TestUtils;
 import com.google.devtools.build.lib.vfs.inmemoryfs.InMemoryFileSystem;
@@ -29,6 +32,7 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.CancellationException;
 import java.util.concurrent.Executors;
@@ -366,6 +370,69 @@ public class GlobTest {
 
   }
 
+  @Test
+  public void testGlobAsyncByPattern() throws Exception {
+    Map<String, List<Path>> matches =
+        new UnixGlob.Builder(tmpPath)
+            .addPatterns("foo/*", "foo*/barnacle", "**/file", "foo/*", "nope/*")
+            .setExecutor(MoreExecutors.directExecutor())
+            .globAsyncByPattern()
+            .get();
+
+    assertThat(matches.keySet())
+        .containsExactly("foo/*", "foo*/barnacle", "**/file", "nope/*")
+        .inOrder();
+    assertThat(matches.get("foo/*"))
+        .containsExactlyElementsIn(resolvePaths("foo/bar", "foo/barnacle"));
+    assertThat(matches.get("foo*/barnacle"))
+        .containsExactlyElementsIn(resolvePaths("foo/barnacle", "food/barnacle", "fool/barnacle"));
+    assertThat(matches.get("**/file")).containsExactlyElementsIn(resolvePaths("foo/bar/wiz/file"));
+    assertThat(matches.get("nope/*")).isEmpty();
+  }
+
+  @Test
+  public void testPatternsWithCommonPrefixVisitEachDirectoryOnce() throws Exception {
+    FileSystemUtils.createEmptyFile(tmpPath.getRelative("foo/barnacle/wiz/notes.txt"));
+    Multiset<Path> readdirs = ConcurrentHashMultiset.create();
+    Multiset<Path> predicateCalls = ConcurrentHashMultiset.create();
+    UnixGlob.FilesystemCalls syscalls =
+        new UnixGlob.FilesystemCalls() {
+          @Override
+          public FileStatus statIfFound(Path path, Symlinks symlinks) throws IOException {
+            return UnixGlob.DEFAULT_SYSCALLS.statIfFound(path, symlinks);
+          }
+
+          @Override
+          public Collection<Dirent> readdir(Path path) throws IOException {
+            readdirs.add(path);
+            return UnixGlob.DEFAULT_SYSCALLS.readdir(path);
+          }
+
+          @Override
+          public Dirent.Type getType(Path path, Symlinks symlinks) throws IOException {
+            return UnixGlob.DEFAULT_SYSCALLS.getType(path, symlinks);
+          }
+        };
+
+    List<Path> matches =
+        new UnixGlob.Builder(tmpPath)
+            .addPatterns("**/*.txt", "**/file", "**/wiz")
+            .setExcludeDirectories(true)
+            .setDirectoryFilter(
+                dir -> {
+                  predicateCalls.add(dir);
+                  return true;
+                })
+            .setFilesystemCalls(new AtomicReference<>(syscalls))
+            .globInterruptible();
+
+    assertThat(matches)
+        .containsExactlyElementsIn(resolvePaths("foo/bar/wiz/file", "foo/barnacle/wiz/notes.txt"));
+    assertThat(readdirs).hasSize(12);
+    assertThat(readdirs.entrySet().stream().allMatch(e -> e.getCount() == 1)).isTrue();
+    assertThat(predicateCalls.entrySet().stream().allMatch(e -> e.getCount() == 1)).isTrue();
+  }
+
   private void assertGlobMatchesAnyOrder(ArrayList<String> patterns,
                                          String... paths) throws Exception {
     assertThat(resolvePaths(paths)).containsExactlyElementsIn(
@@ -0,0 +1,175 @@
+// Copyright 2026 The Bazel Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.google.devtools.build.lib.vfs;
+
+import com.google.common.collect.ImmutableList;
+import com.google.devtools.build.lib.vfs.inmemoryfs.InMemoryFileSystem;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Compares globbing the patterns of a package one by one, as the package loader did, with globbing
+ * them together through {@link UnixGlob.Builder#globAsyncByPattern}, on a synthetic package.
+ *
+ * <p>Usage: {@code UnixGlobBenchmark [files] [files_per_dir] [dirs_per_dir] [runs]}. Creates a
+ * package of {@code files} (100 thousand by default) files in an in-memory file system, spread over
+ * a tree of directories with {@code files_per_dir} files and {@code dirs_per_dir} subdirectories
+ * each, and globs it with patterns typical of large packages. A cold glob starts with an empty
+ * file system cache, like the first load of the package; an incremental glob follows a change to
+ * one directory, of which only the listing is dropped from the cache, like a reload after an edit.
+ * Both report the wall time and the number of directory listings requested from the cache.
+ */
+public final class UnixGlobBenchmark {
+
+  private static final ImmutableList<String> PATTERNS =
+      ImmutableList.of("**/*.java", "**/*.proto", "**/*.txt", "**/testdata/**", "src/**/*.java");
+
+  /** Caches listings and stats like the per-build syscall cache does, and counts listings. */
+  private static final class CachingSyscalls implements UnixGlob.FilesystemCalls {
+    private final Map<Path, Collection<Dirent>> listings = new ConcurrentHashMap<>();
+    private final Map<Path, FileStatus> stats = new ConcurrentHashMap<>();
+    private final AtomicLong readdirs = new AtomicLong();
+
+    @Override
+    public Collection<Dirent> readdir(Path path) throws IOException {
+      readdirs.incrementAndGet();
+      Collection<Dirent> listing = listings.get(path);
+      if (listing == null) {
+        listing = UnixGlob.DEFAULT_SYSCALLS.readdir(path);
+        listings.put(path, listing);
+      }
+      return listing;
+    }
+
+    @Override
+    public FileStatus statIfFound(Path path, Symlinks symlinks) throws IOException {
+      FileStatus status = stats.get(path);
+      if (status == null) {
+        status = UnixGlob.DEFAULT_SYSCALLS.statIfFound(path, symlinks);
+        if (status == null) {
+          return null;
+        }
+        stats.put(path, status);
+      }
+      return status;
+    }
+
+    @Override
+    public Dirent.Type getType(Path path, Symlinks symlinks) throws IOException {
+      return UnixGlob.statusToDirentType(statIfFound(path, symlinks));
+    }
+  }
+
+  public static void main(String[] args) throws Exception {
+    int files = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+    int filesPerDir = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+    int dirsPerDir = args.length > 2 ? Integer.parseInt(args[2]) : 8;
+    int runs = args.length > 3 ? Integer.parseInt(args[3]) : 5;
+
+    FileSystem fs = new InMemoryFileSystem(DigestHashFunction.SHA256);
+    Path pkg = fs.getPath("/workspace/pkg");
+    List<Path> dirs = createTree(pkg, files, filesPerDir, dirsPerDir);
+    System.out.printf("%d files in %d directories%n", files, dirs.size());
+
+    ExecutorService executor = Executors.newFixedThreadPool(100);
+    try {
+      for (int run = 0; run < runs; run++) {
+        for (boolean together : new boolean[] {false, true}) {
+          CachingSyscalls syscalls = new CachingSyscalls();
+          long coldNanos = glob(pkg, syscalls, executor, together);
+          long coldReaddirs = syscalls.readdirs.getAndSet(0);
+
+          Path changed = dirs.get(run * 7919 % dirs.size());
+          FileSystemUtils.createEmptyFile(changed.getChild("added" + run + ".java"));
+          syscalls.listings.remove(changed);
+          long incrementalNanos = glob(pkg, syscalls, executor, together);
+          System.out.printf(
+              "run %d, %s: cold %d ms (%d readdirs), incremental %d ms (%d readdirs)%n",
+              run,
+              together ? "together" : "one by one",
+              coldNanos / 1_000_000,
+              coldReaddirs,
+              incrementalNanos / 1_000_000,
+              syscalls.readdirs.get());
+        }
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /** Creates a tree breadth-first, so that it is as shallow as {@code dirsPerDir} allows. */
+  private static List<Path> createTree(Path root, int files, int filesPerDir, int dirsPerDir)
+      throws IOException {
+    String[] extensions = {".java", ".java", ".java", ".proto", ".txt", ".h"};
+    int dirCount = Math.max(1, (files + filesPerDir - 1) / filesPerDir);
+    List<Path> dirs = new ArrayList<>(dirCount);
+    root.createDirectoryAndParents();
+    dirs.add(root);
+    for (int i = 1; i < dirCount; i++) {
+      Path parent = dirs.get((i - 1) / dirsPerDir);
+      String name = i == 1 ? "src" : (i % 5 == 0 ? "testdata" : "dir") + (i - 1) % dirsPerDir;
+      Path dir = parent.getChild(name);
+      dir.createDirectory();
+      dirs.add(dir);
+    }
+    for (int i = 0; i < files; i++) {
+      Path dir = dirs.get(i / filesPerDir);
+      FileSystemUtils.createEmptyFile(dir.getChild("file" + i + extensions[i % extensions.length]));
+    }
+    return dirs;
+  }
+
+  private static long glob(
+      Path pkg, CachingSyscalls syscalls, ExecutorService executor, boolean together)
+      throws Exception {
+    long start = System.nanoTime();
+    AtomicReference<CachingSyscalls> syscallsRef = new AtomicReference<>(syscalls);
+    if (together) {
+      UnixGlob.forPath(pkg)
+          .addPatterns(PATTERNS)
+          .setExcludeDirectories(true)
+          .setFilesystemCalls(syscallsRef)
+          .setExecutor(executor)
+          .globAsyncByPattern()
+          .get();
+    } else {
+      List<Future<List<Path>>> futures = new ArrayList<>();
+      for (String pattern : PATTERNS) {
+        futures.add(
+            UnixGlob.forPath(pkg)
+                .addPattern(pattern)
+                .setExcludeDirectories(true)
+                .setFilesystemCalls(syscallsRef)
+                .setExecutor(executor)
+                .globAsync());
+      }
+      for (Future<List<Path>> future : futures) {
+        future.get();
+      }
+    }
+    return System.nanoTime() - start;
+  }
+
+  private UnixGlobBenchmark() {}
+}
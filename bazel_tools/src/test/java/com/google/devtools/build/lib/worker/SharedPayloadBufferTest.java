@@ -0,0 +1,136 @@
+// Copyright 2026 The Bazel Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.devtools.build.lib.worker;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import com.google.devtools.build.lib.worker.WorkerProtocol.Input;
+import com.google.devtools.build.lib.worker.WorkerProtocol.WorkRequest;
+import com.google.protobuf.ByteString;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link SharedPayloadBuffer} and its use by the proto worker protocol. */
+@RunWith(JUnit4.class)
+public final class SharedPayloadBufferTest {
+  @Rule public final TemporaryFolder tmp = new TemporaryFolder();
+
+  @Test
+  public void readerSeesWrittenPayload() throws IOException {
+    Path file = tmp.getRoot().toPath().resolve("payloads");
+    try (SharedPayloadBuffer writer = SharedPayloadBuffer.create(file, 100);
+        SharedPayloadBuffer reader = SharedPayloadBuffer.open(file)) {
+      long offset = writer.allocate(3);
+      writer.slice(offset, 3).put(new byte[] {1, 2, 3});
+
+      ByteBuffer payload = reader.slice(offset, 3);
+
+      assertThat(reader.getCapacity()).isEqualTo(100);
+      assertThat(payload.remaining()).isEqualTo(3);
+      assertThat(new byte[] {payload.get(), payload.get(), payload.get()})
+          .isEqualTo(new byte[] {1, 2, 3});
+    }
+  }
+
+  @Test
+  public void allocateReusesSpaceOnlyAfterRelease() throws IOException {
+    Path file = tmp.getRoot().toPath().resolve("payloads");
+    try (SharedPayloadBuffer writer = SharedPayloadBuffer.create(file, 100);
+        SharedPayloadBuffer reader = SharedPayloadBuffer.open(file)) {
+      assertThat(writer.allocate(30)).isEqualTo(0);
+      assertThat(writer.allocate(30)).isEqualTo(30);
+      // The next payload would not fit before the end of the file, and the start is still in use.
+      assertThat(writer.allocate(50)).isEqualTo(-1);
+
+      reader.release(0, 30);
+      assertThat(writer.allocate(50)).isEqualTo(-1);
+      reader.release(30, 30);
+
+      // Payloads start over at the beginning of the file.
+      assertThat(writer.allocate(50)).isEqualTo(100);
+      assertThat(writer.allocate(40)).isEqualTo(-1);
+      reader.release(100, 50);
+      assertThat(writer.allocate(40)).isEqualTo(150);
+    }
+  }
+
+  @Test
+  public void allocateRejectsPayloadLargerThanCapacity() throws IOException {
+    try (SharedPayloadBuffer writer =
+        SharedPayloadBuffer.create(tmp.getRoot().toPath().resolve("payloads"), 100)) {
+      assertThat(writer.allocate(101)).isEqualTo(-1);
+      assertThat(writer.allocate(100)).isEqualTo(0);
+    }
+  }
+
+  @Test
+  public void sliceRejectsPayloadOutsideOfBuffer() throws IOException {
+    try (SharedPayloadBuffer buffer =
+        SharedPayloadBuffer.create(tmp.getRoot().toPath().resolve("payloads"), 100)) {
+      assertThrows(IOException.class, () -> buffer.slice(-1, 10));
+      assertThrows(IOException.class, () -> buffer.slice(95, 10));
+      assertThrows(IOException.class, () -> buffer.slice(0, 101));
+    }
+  }
+
+  @Test
+  public void openRejectsFileWithoutPayloads() throws IOException {
+    Path file = tmp.newFile().toPath();
+    assertThrows(IOException.class, () -> SharedPayloadBuffer.open(file));
+  }
+
+  @Test
+  public void protocolPassesLargeRequestsThroughSharedFile() throws IOException {
+    Path file = tmp.getRoot().toPath().resolve("payloads");
+    WorkRequest.Builder largeRequest = WorkRequest.newBuilder().setRequestId(1);
+    for (int i = 0; i < 2000; i++) {
+      largeRequest.addInputs(
+          Input.newBuilder()
+              .setPath("some/package/Input" + i + ".java")
+              .setDigest(ByteString.copyFrom(new byte[32])));
+    }
+    WorkRequest smallRequest = WorkRequest.newBuilder().setRequestId(2).addArguments("a").build();
+    ByteArrayOutputStream pipe = new ByteArrayOutputStream();
+    ProtoWorkerProtocol protocol =
+        new ProtoWorkerProtocol(
+            pipe, new ByteArrayInputStream(new byte[0]), SharedPayloadBuffer.create(file, 1 << 20));
+
+    protocol.putRequest(largeRequest.build());
+    protocol.putRequest(smallRequest);
+    ProtoWorkerMessageProcessor processor =
+        new ProtoWorkerMessageProcessor(
+            new ByteArrayInputStream(pipe.toByteArray()), new ByteArrayOutputStream());
+
+    assertThat(largeRequest.build().getSerializedSize())
+        .isGreaterThan(ProtoWorkerProtocol.MIN_SHARED_PAYLOAD_SIZE);
+    assertThat(pipe.size()).isLessThan(200);
+    assertThat(processor.readWorkRequest()).isEqualTo(largeRequest.build());
+    assertThat(processor.readWorkRequest()).isEqualTo(smallRequest);
+    assertThat(processor.readWorkRequest()).isNull();
+    processor.close();
+    protocol.close();
+    assertThat(Files.exists(file)).isFalse();
+  }
+}
@@ -0,0 +1,155 @@
+// Copyright 2026 The Bazel Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.devtools.build.lib.worker;
+
+import com.google.devtools.build.lib.worker.WorkRequestHandler.WorkRequestCallback;
+import com.google.devtools.build.lib.worker.WorkRequestHandler.WorkRequestHandlerBuilder;
+import com.google.devtools.build.lib.worker.WorkerProtocol.Input;
+import com.google.devtools.build.lib.worker.WorkerProtocol.WorkRequest;
+import com.google.devtools.build.lib.worker.WorkerProtocol.WorkResponse;
+import com.google.protobuf.ByteString;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.Pipe;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * Measures the throughput of multiplex work requests between {@link ProtoWorkerProtocol} and a
+ * worker built on {@link WorkRequestHandler} that echoes the number of inputs of each request, with
+ * requests sent through the pipe and with large requests passed through a {@link
+ * SharedPayloadBuffer}.
+ *
+ * <p>Usage: {@code WorkerPayloadBenchmark [requests] [inputs] [runs]}. The worker runs in the same
+ * JVM, but requests and responses go through an OS pipe, like those of a worker process.
+ */
+public final class WorkerPayloadBenchmark {
+  private static final int SHARED_PAYLOAD_BUFFER_CAPACITY = 64 << 20;
+
+  public static void main(String[] args) throws Exception {
+    int requests = args.length > 0 ? Integer.parseInt(args[0]) : 5_000;
+    int inputs = args.length > 1 ? Integer.parseInt(args[1]) : 2_000;
+    int runs = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+
+    WorkRequest template = createRequest(inputs, new Random(42));
+    Path dir = Files.createTempDirectory("worker-payload-benchmark");
+    try {
+      for (int run = 0; run < runs; run++) {
+        for (boolean shared : new boolean[] {false, true}) {
+          long nanos = run(template, requests, shared ? dir.resolve("payloads") : null);
+          double seconds = nanos / 1e9;
+          System.out.printf(
+              "%s: %d requests of %d KB in %.0f ms, %.0f requests/s, %.0f MB/s%n",
+              shared ? "shared" : "pipe  ",
+              requests,
+              template.getSerializedSize() >> 10,
+              nanos / 1e6,
+              requests / seconds,
+              (double) requests * template.getSerializedSize() / seconds / 1e6);
+        }
+      }
+    } finally {
+      Files.deleteIfExists(dir.resolve("payloads"));
+      Files.delete(dir);
+    }
+  }
+
+  /** Like the request of a Java compilation, with inputs named after classes in a package. */
+  private static WorkRequest createRequest(int inputs, Random random) {
+    WorkRequest.Builder request =
+        WorkRequest.newBuilder().addArguments("@bazel-out/bin/pkg/libpkg.jar-0.params");
+    byte[] digest = new byte[32];
+    for (int i = 0; i < inputs; i++) {
+      random.nextBytes(digest);
+      request.addInputs(
+          Input.newBuilder()
+              .setPath("bazel-out/bin/third_party/pkg" + i % 50 + "/Class" + i + ".jar")
+              .setDigest(ByteString.copyFrom(digest)));
+    }
+    return request.build();
+  }
+
+  private static long run(WorkRequest template, int requests, Path sharedFile) throws Exception {
+    Pipe toWorker = Pipe.open();
+    Pipe fromWorker = Pipe.open();
+    WorkRequestHandler handler =
+        new WorkRequestHandlerBuilder(
+                new WorkRequestCallback(
+                    (request, out) -> {
+                      out.print(request.getInputsCount());
+                      return 0;
+                    }),
+                System.err,
+                new ProtoWorkerMessageProcessor(
+                    new BufferedInputStream(Channels.newInputStream(toWorker.source())),
+                    new BufferedOutputStream(Channels.newOutputStream(fromWorker.sink()))))
+            .build();
+    Thread worker =
+        new Thread(
+            () -> {
+              try {
+                handler.processRequests();
+                handler.close();
+              } catch (IOException e) {
+                e.printStackTrace();
+              }
+            },
+            "echo-worker");
+    worker.start();
+
+    BufferedOutputStream workersStdin =
+        new BufferedOutputStream(Channels.newOutputStream(toWorker.sink()));
+    BufferedInputStream workersStdout =
+        new BufferedInputStream(Channels.newInputStream(fromWorker.source()));
+    ProtoWorkerProtocol protocol =
+        sharedFile == null
+            ? new ProtoWorkerProtocol(workersStdin, workersStdout)
+            : new ProtoWorkerProtocol(
+                workersStdin,
+                workersStdout,
+                SharedPayloadBuffer.create(sharedFile, SHARED_PAYLOAD_BUFFER_CAPACITY));
+    Thread receiver =
+        new Thread(
+            () -> {
+              try {
+                for (int i = 0; i < requests; i++) {
+                  WorkResponse response = protocol.getResponse();
+                  if (!response.getOutput().equals(String.valueOf(template.getInputsCount()))) {
+                    throw new IllegalStateException("Unexpected response " + response);
+                  }
+                }
+              } catch (IOException e) {
+                throw new IllegalStateException(e);
+              }
+            },
+            "response-receiver");
+
+    long start = System.nanoTime();
+    receiver.start();
+    for (int i = 1; i <= requests; i++) {
+      protocol.putRequest(template.toBuilder().setRequestId(i).build());
+    }
+    receiver.join();
+    long nanos = System.nanoTime() - start;
+
+    workersStdin.close();
+    worker.join();
+    protocol.close();
+    return nanos;
+  }
+}
@@ -17,15 +17,19 @@ import static com.google.common.truth.Truth.assertThat;
 import static com.google.common.truth.Truth.assertWithMessage;
 import static com.google.devtools.build.lib.worker.TestUtils.createWorkerKey;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.after;
 import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.devtools.build.lib.clock.BlazeClock;
+import com.google.devtools.build.lib.testutil.ManualClock;
 import com.google.devtools.build.lib.vfs.DigestHashFunction;
 import com.google.devtools.build.lib.vfs.FileSystem;
 import com.google.devtools.build.lib.vfs.Path;
@@ -34,6 +38,7 @@ import com.google.devtools.build.lib.worker.WorkerPool.WorkerPoolConfig;
 import java.io.IOException;
 import java.lang.Thread.State;
 import java.util.Map.Entry;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.apache.commons.pool2.impl.DefaultPooledObject;
 import org.junit.Before;
 import org.junit.Rule;
@@ -50,7 +55,7 @@ public class WorkerPoolTest {
   @Rule public final MockitoRule mockito = MockitoJUnit.rule();
   @Mock WorkerFactory factoryMock;
   private FileSystem fileSystem;
-  private int workerIds = 1;
+  private final AtomicInteger workerIds = new AtomicInteger(1);
 
   private static class TestWorker extends SingleplexWorker {
     TestWorker(WorkerKey workerKey, int workerId, Path workDir, Path logFile) {
@@ -66,7 +71,7 @@ public class WorkerPoolTest {
                 new DefaultPooledObject<>(
                     new TestWorker(
                         arg.getArgument(0),
-                        workerIds++,
+                        workerIds.getAndIncrement(),
                         fileSystem.getPath("/workDir"),
                         fileSystem.getPath("/logDir"))))
         .when(factoryMock)
@@ -235,10 +240,143 @@ public class WorkerPoolTest {
     verify(factoryMock, times(1)).makeObject(workerKey2);
   }
 
+  @Test
+  public void testBorrow_prestartsIdleWorker() throws Exception {
+    WorkerPool workerPool =
+        new WorkerPool(
+            new WorkerPoolConfig(
+                factoryMock,
+                entryList("mnem", 2, "", 1),
+                entryList(),
+                Lists.newArrayList(),
+                entryList("mnem", 1, "", 0)));
+    WorkerKey workerKey = createWorkerKey(fileSystem, "mnem", false);
+    Worker worker1 = workerPool.borrowObject(workerKey);
+    verify(factoryMock, timeout(10_000).times(2)).makeObject(workerKey);
+
+    Worker worker2 = workerPool.borrowObject(workerKey);
+
+    assertThat(worker1.getWorkerId()).isEqualTo(1);
+    assertThat(worker2.getWorkerId()).isEqualTo(2);
+    verify(factoryMock, times(2)).makeObject(workerKey);
+    workerPool.close();
+  }
+
+  @Test
+  public void testBorrow_prestartsByMnemonicWithoutMaxInstances() throws Exception {
+    WorkerPool workerPool =
+        new WorkerPool(
+            new WorkerPoolConfig(
+                factoryMock,
+                entryList("", 2),
+                entryList(),
+                Lists.newArrayList(),
+                entryList("mnem", 1, "", 0)));
+    WorkerKey workerKey = createWorkerKey(fileSystem, "mnem", false);
+    WorkerKey otherKey = createWorkerKey(fileSystem, "other", false);
+    workerPool.borrowObject(workerKey);
+    workerPool.borrowObject(otherKey);
+
+    // Both mnemonics share the default pool, but only "mnem" gets an idle worker ahead of demand.
+    verify(factoryMock, timeout(10_000).times(2)).makeObject(workerKey);
+    verify(factoryMock, after(500).times(1)).makeObject(otherKey);
+    workerPool.close();
+  }
+
+  @Test
+  public void testBorrow_peakDemandIsPerKey() throws Exception {
+    WorkerPool workerPool =
+        new WorkerPool(
+            new WorkerPoolConfig(
+                factoryMock,
+                entryList("mnem", 3, "", 1),
+                entryList(),
+                Lists.newArrayList(),
+                entryList("mnem", 1, "", 0)));
+    WorkerKey workerKey1 = createWorkerKey(fileSystem, "mnem", false);
+    Worker worker1 = workerPool.borrowObject(workerKey1);
+    Worker worker1a = workerPool.borrowObject(workerKey1);
+    Worker worker1b = workerPool.borrowObject(workerKey1);
+    workerPool.returnObject(workerKey1, worker1);
+    workerPool.returnObject(workerKey1, worker1a);
+    workerPool.returnObject(workerKey1, worker1b);
+
+    WorkerKey workerKey2 = createWorkerKey(fileSystem, "mnem", false, "arg1");
+    workerPool.borrowObject(workerKey2);
+
+    // The second key gets one idle worker, not as many as the first key needed at once.
+    verify(factoryMock, timeout(10_000).times(2)).makeObject(workerKey2);
+    verify(factoryMock, after(500).times(2)).makeObject(workerKey2);
+    verify(factoryMock, times(3)).makeObject(workerKey1);
+    workerPool.close();
+  }
+
+  @Test
+  public void testInvalidate_replacesWorkersUpToRecentPeakDemand() throws Exception {
+    ManualClock clock = new ManualClock();
+    SimpleWorkerPool pool = new SimpleWorkerPool(factoryMock, 4, ImmutableMap.of("", 1), clock);
+    WorkerKey workerKey = createWorkerKey(fileSystem, "mnem", false);
+    Worker worker1 = pool.borrowObject(workerKey);
+    Worker worker2 = pool.borrowObject(workerKey);
+    Worker worker3 = pool.borrowObject(workerKey);
+    verify(factoryMock, timeout(10_000).times(4)).makeObject(workerKey);
+
+    pool.invalidateObject(workerKey, worker1);
+    pool.invalidateObject(workerKey, worker2);
+    pool.invalidateObject(workerKey, worker3);
+
+    // Three workers were in use at once, so two of the lost ones are replaced next to the idle one.
+    verify(factoryMock, timeout(10_000).times(6)).makeObject(workerKey);
+    pool.close();
+  }
+
+  @Test
+  public void testInvalidate_peakDemandDecays() throws Exception {
+    ManualClock clock = new ManualClock();
+    SimpleWorkerPool pool = new SimpleWorkerPool(factoryMock, 4, ImmutableMap.of("", 1), clock);
+    WorkerKey workerKey = createWorkerKey(fileSystem, "mnem", false);
+    Worker worker1 = pool.borrowObject(workerKey);
+    Worker worker2 = pool.borrowObject(workerKey);
+    Worker worker3 = pool.borrowObject(workerKey);
+    verify(factoryMock, timeout(10_000).times(4)).makeObject(workerKey);
+
+    clock.advanceMillis(2 * SimpleWorkerPool.DEMAND_HALF_LIFE.toMillis());
+    pool.invalidateObject(workerKey, worker1);
+    pool.invalidateObject(workerKey, worker2);
+    pool.invalidateObject(workerKey, worker3);
+
+    // The peak has fallen to below one worker, and the idle worker is still there.
+    verify(factoryMock, after(500).times(4)).makeObject(workerKey);
+    pool.close();
+  }
+
+  @Test
+  public void testBorrow_noPrestartByDefault() throws Exception {
+    WorkerPool workerPool =
+        new WorkerPool(
+            new WorkerPoolConfig(
+                factoryMock,
+                entryList("mnem", 2, "", 1),
+                entryList(),
+                Lists.newArrayList(),
+                entryList("other", 1, "", 0)));
+    WorkerKey workerKey = createWorkerKey(fileSystem, "mnem", false);
+    Worker worker1 = workerPool.borrowObject(workerKey);
+    workerPool.returnObject(workerKey, worker1);
+    Worker worker2 = workerPool.borrowObject(workerKey);
+
+    assertThat(worker2).isSameInstanceAs(worker1);
+    verify(factoryMock, times(1)).makeObject(workerKey);
+  }
+
   private static ImmutableList<Entry<String, Integer>> entryList() {
     return ImmutableList.of();
   }
 
+  private static ImmutableList<Entry<String, Integer>> entryList(String key1, int value1) {
+    return ImmutableList.of(Maps.immutableEntry(key1, value1));
+  }
+
   private static ImmutableList<Entry<String, Integer>> entryList(
       String key1, int value1, String key2, int value2) {
     return ImmutableList.of(Maps.immutableEntry(key1, value1), Maps.immutableEntry(key2, value2));
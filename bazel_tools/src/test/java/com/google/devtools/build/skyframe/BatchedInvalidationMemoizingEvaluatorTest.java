@@ -0,0 +1,38 @@
+// Copyright 2026 The Bazel Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.google.devtools.build.skyframe;
+
+import org.junit.Ignore;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Runs {@link MemoizingEvaluatorTest} with batched invalidation turned on in the driver. */
+@RunWith(JUnit4.class)
+public class BatchedInvalidationMemoizingEvaluatorTest extends MemoizingEvaluatorTest {
+
+  @Override
+  protected BuildDriver getBuildDriver(MemoizingEvaluator evaluator) {
+    SequentialBuildDriver driver = new SequentialBuildDriver(evaluator);
+    driver.setUseBatchedInvalidation(true);
+    return driver;
+  }
+
+  @Override
+  @Test
+  @Ignore(
+      "A batched invalidation skips dirtying a node that an earlier wave marked changed, so the"
+          + " race between the two that this test sets up never happens.")
+  public void dirtyAndChangedValueIsChanged() {}
+}
@@ -0,0 +1,180 @@
+// Copyright 2026 The Bazel Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.google.devtools.build.skyframe;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.devtools.build.lib.util.GroupedList;
+import com.google.devtools.build.lib.util.GroupedList.GroupedListHelper;
+import com.google.devtools.build.skyframe.GraphTester.StringValue;
+import com.google.devtools.build.skyframe.NodeEntry.DependencyState;
+import com.google.devtools.build.skyframe.QueryableGraph.Reason;
+import com.google.devtools.build.skyframe.ThinNodeEntry.DirtyType;
+import java.util.List;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link CompactInMemoryGraph}. */
+@RunWith(JUnit4.class)
+public class CompactInMemoryGraphTest extends GraphTest {
+  private CompactInMemoryGraph compactGraph;
+
+  @Override
+  protected Version getStartingVersion() {
+    return IntVersion.of(0);
+  }
+
+  @Override
+  protected Version getNextVersion(Version v) {
+    Preconditions.checkState(v instanceof IntVersion);
+    return ((IntVersion) v).next();
+  }
+
+  @Override
+  protected void makeGraph() {
+    compactGraph = new CompactInMemoryGraph();
+  }
+
+  @Override
+  protected ProcessableGraph getGraph(Version version) {
+    return compactGraph;
+  }
+
+  @Test
+  public void doneNodeEdgesArePacked() throws Exception {
+    SkyKey a = key("a");
+    SkyKey b = key("b");
+    SkyKey c = key("c");
+    SkyKey parent = key("parent");
+    createDone(a);
+    createDone(b);
+    createDone(c);
+    CompactInMemoryNodeEntry parentEntry =
+        createDone(parent, ImmutableList.of(a), ImmutableList.of(b, c));
+
+    assertThat(parentEntry.directDeps).isInstanceOf(int[].class);
+    assertThat(parentEntry.getDirectDeps()).containsExactly(a, b, c).inOrder();
+    assertThat(parentEntry.hasAtLeastOneDep()).isTrue();
+    GroupedList<SkyKey> groups =
+        GroupedList.create(parentEntry.getCompressedDirectDepsForDoneEntry());
+    assertThat(groups.listSize()).isEqualTo(2);
+    assertThat(groups.get(1)).containsExactly(b, c).inOrder();
+
+    CompactInMemoryNodeEntry aEntry = entry(a);
+    assertThat(aEntry.reverseDeps).isInstanceOf(int[].class);
+    assertThat(aEntry.getReverseDepsForDoneEntry()).containsExactly(parent);
+    assertThat(compactGraph.getInflatedNodeCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void reverseDepsAddedToDoneNodeStayPacked() throws Exception {
+    SkyKey dep = key("dep");
+    createDone(dep);
+    for (int i = 0; i < 10; i++) {
+      createDone(key("parent" + i), ImmutableList.of(dep));
+    }
+
+    CompactInMemoryNodeEntry depEntry = entry(dep);
+    assertThat(depEntry.reverseDeps).isInstanceOf(int[].class);
+    assertThat(depEntry.getReverseDepsForDoneEntry()).hasSize(10);
+    assertThat(compactGraph.getInflatedNodeCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void modifiedNodesAreUnpackedAndCompactedAgain() throws Exception {
+    SkyKey dep = key("dep");
+    SkyKey parent1 = key("parent1");
+    SkyKey parent2 = key("parent2");
+    createDone(dep);
+    createDone(parent1, ImmutableList.of(dep));
+    createDone(parent2, ImmutableList.of(dep));
+
+    CompactInMemoryNodeEntry depEntry = entry(dep);
+    depEntry.removeReverseDep(parent1);
+    assertThat(depEntry.reverseDeps).isNotInstanceOf(int[].class);
+    assertThat(compactGraph.getInflatedNodeCount()).isEqualTo(1);
+
+    compactGraph.compactInflatedNodes();
+
+    assertThat(depEntry.reverseDeps).isInstanceOf(int[].class);
+    assertThat(depEntry.getReverseDepsForDoneEntry()).containsExactly(parent2);
+    assertThat(compactGraph.getInflatedNodeCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void dirtiedNodeIsPackedWhenDoneAgain() throws Exception {
+    SkyKey dep = key("dep");
+    SkyKey parent = key("parent");
+    createDone(dep);
+    CompactInMemoryNodeEntry parentEntry = createDone(parent, ImmutableList.of(dep));
+    CompactInMemoryNodeEntry depEntry = entry(dep);
+
+    assertThat(depEntry.markDirty(DirtyType.CHANGE).getReverseDepsUnsafe())
+        .containsExactly(parent);
+    assertThat(parentEntry.markDirty(DirtyType.DIRTY)).isNotNull();
+    assertThat(depEntry.addReverseDepAndCheckIfDone(null))
+        .isEqualTo(DependencyState.NEEDS_SCHEDULING);
+    depEntry.markRebuilding();
+    depEntry.setValue(new StringValue("new"), IntVersion.of(1), null);
+
+    assertThat(depEntry.directDeps).isInstanceOf(int[].class);
+    assertThat(depEntry.reverseDeps).isInstanceOf(int[].class);
+    assertThat(depEntry.getReverseDepsForDoneEntry()).containsExactly(parent);
+  }
+
+  @Test
+  public void removedKeyIdsAreOnlyReusedAfterRelease() throws Exception {
+    SkyKey removed = key("removed");
+    int removedId = createDone(removed).getId();
+    compactGraph.remove(removed);
+
+    assertThat(createDone(key("first")).getId()).isNotEqualTo(removedId);
+    compactGraph.releaseRemovedKeys();
+    assertThat(createDone(key("second")).getId()).isEqualTo(removedId);
+    assertThat(compactGraph.keyOf(removedId)).isEqualTo(key("second"));
+    assertThat(compactGraph.getKeyCount()).isEqualTo(2);
+  }
+
+  private CompactInMemoryNodeEntry entry(SkyKey key) throws InterruptedException {
+    return (CompactInMemoryNodeEntry) compactGraph.get(null, Reason.OTHER, key);
+  }
+
+  @SafeVarargs
+  private final CompactInMemoryNodeEntry createDone(SkyKey key, List<SkyKey>... depGroups)
+      throws InterruptedException {
+    NodeEntry entry =
+        compactGraph.createIfAbsentBatch(null, Reason.OTHER, ImmutableList.of(key)).get(key);
+    assertThat(entry.addReverseDepAndCheckIfDone(null))
+        .isEqualTo(DependencyState.NEEDS_SCHEDULING);
+    entry.markRebuilding();
+    for (List<SkyKey> group : depGroups) {
+      GroupedListHelper<SkyKey> helper = new GroupedListHelper<>();
+      helper.startGroup();
+      for (SkyKey dep : group) {
+        helper.add(dep);
+        assertThat(entry(dep).addReverseDepAndCheckIfDone(key)).isEqualTo(DependencyState.DONE);
+      }
+      helper.endGroup();
+      entry.addTemporaryDirectDeps(helper);
+      for (SkyKey dep : group) {
+        entry.signalDep(IntVersion.of(0), dep);
+      }
+    }
+    entry.setValue(new StringValue(key.toString()), IntVersion.of(0), null);
+    return (CompactInMemoryNodeEntry) entry;
+  }
+}
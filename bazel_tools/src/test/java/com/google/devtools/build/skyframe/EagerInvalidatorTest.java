@@ -719,4 +719,55 @@ public class EagerInvalidatorTest {
       assertThat(receiver.getUnenqueuedDirtyKeys()).hasSize(2);
     }
   }
+
+  /** Test suite for the dirtying invalidator in batched mode. */
+  @RunWith(JUnit4.class)
+  public static class BatchedDirtyingInvalidatorTest extends DirtyingInvalidatorTest {
+    @Override
+    protected void invalidate(
+        InMemoryGraph graph, DirtyTrackingProgressReceiver progressReceiver, SkyKey... keys)
+        throws InterruptedException {
+      Iterable<SkyKey> diff = ImmutableList.copyOf(keys);
+      DirtyingNodeVisitor dirtyingNodeVisitor =
+          EagerInvalidator.createInvalidatingVisitorIfNeeded(
+              graph, diff, progressReceiver, state, /*batched=*/ true);
+      if (dirtyingNodeVisitor != null) {
+        visitor.set(dirtyingNodeVisitor);
+        dirtyingNodeVisitor.run();
+      }
+    }
+
+    @Test
+    public void nodeReachedFromManyChangedNodesIsDirtiedOnce() throws Exception {
+      graph = new InMemoryGraphImpl();
+      int numLeaves = 100;
+      SkyKey[] leaves = new SkyKey[numLeaves];
+      SkyKey top = GraphTester.skyKey("top");
+      for (int i = 0; i < numLeaves; i++) {
+        leaves[i] = GraphTester.nonHermeticKey("leaf" + i);
+        tester.set(leaves[i], new StringValue("leaf" + i));
+        tester.getOrCreate(top).addDependency(leaves[i]);
+      }
+      tester.getOrCreate(top).setComputedValue(CONCATENATE);
+      eval(/*keepGoing=*/ false, top);
+
+      Set<SkyKey> invalidated = Sets.newConcurrentHashSet();
+      DirtyTrackingProgressReceiver receiver =
+          new DirtyTrackingProgressReceiver(
+              new EvaluationProgressReceiver() {
+                @Override
+                public void invalidated(SkyKey skyKey, InvalidationState state) {
+                  assertThat(invalidated.add(skyKey)).isTrue();
+                }
+              });
+      invalidateWithoutError(receiver, leaves);
+
+      DirtyingNodeVisitor dirtyingNodeVisitor = (DirtyingNodeVisitor) visitor.get();
+      assertThat(invalidated).hasSize(numLeaves + 1);
+      assertThat(dirtyingNodeVisitor.getDirtiedNodeCountForTesting()).isEqualTo(numLeaves + 1);
+      assertThat(dirtyingNodeVisitor.getFrontierSizesForTesting().get(0)).isEqualTo(numLeaves);
+      assertThat(graph.get(null, Reason.OTHER, top).isDirty()).isTrue();
+      assertThat(state.getInvalidationsForTesting()).isEmpty();
+    }
+  }
 }
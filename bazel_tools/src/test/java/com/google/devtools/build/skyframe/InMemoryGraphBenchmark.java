@@ -0,0 +1,199 @@
+// Copyright 2026 The Bazel Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.google.devtools.build.skyframe;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.devtools.build.lib.events.NullEventHandler;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares the memory use and latency of the default and compact {@link InMemoryGraph} backends on
+ * a synthetic graph.
+ *
+ * <p>Usage: {@code InMemoryGraphBenchmark [nodes] [deps_per_node] [threads]}. Defaults to a graph
+ * of 10 million nodes, each depending on its predecessor and a few pseudo-random earlier nodes. For
+ * each backend it reports the time of a clean evaluation, the heap retained by the graph and the
+ * average duration of a full garbage collection of that heap, and the time of an incremental
+ * evaluation that invalidates a fraction of the leaves without changing their values, which dirties
+ * and re-checks most of the graph.
+ *
+ * <p>Run with a heap large enough for the default backend, e.g. {@code --jvm_flag=-Xmx40g}.
+ */
+public final class InMemoryGraphBenchmark {
+
+  private static final SkyFunctionName NODE = SkyFunctionName.createHermetic("BENCHMARK_NODE");
+
+  private static final class NodeKey implements SkyKey {
+    private final int index;
+
+    NodeKey(int index) {
+      this.index = index;
+    }
+
+    @Override
+    public SkyFunctionName functionName() {
+      return NODE;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      return o instanceof NodeKey && ((NodeKey) o).index == index;
+    }
+
+    @Override
+    public int hashCode() {
+      return index;
+    }
+
+    @Override
+    public String toString() {
+      return "Node:" + index;
+    }
+  }
+
+  private static final class NodeValue implements SkyValue {
+    private final int index;
+
+    NodeValue(int index) {
+      this.index = index;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      return o instanceof NodeValue && ((NodeValue) o).index == index;
+    }
+
+    @Override
+    public int hashCode() {
+      return index;
+    }
+  }
+
+  public static void main(String[] args) throws Exception {
+    int nodes = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+    int depsPerNode = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+    int threads = args.length > 2 ? Integer.parseInt(args[2]) : 200;
+
+    run("default", /*compactDoneNodes=*/ false, nodes, depsPerNode, threads);
+    run("compact", /*compactDoneNodes=*/ true, nodes, depsPerNode, threads);
+  }
+
+  private static void run(
+      String name, boolean compactDoneNodes, int nodes, int depsPerNode, int threads)
+      throws InterruptedException {
+    SkyFunction function =
+        (skyKey, env) -> {
+          int index = ((NodeKey) skyKey).index;
+          if (index == 0) {
+            return new NodeValue(0);
+          }
+          env.getValues(depsOf(index, depsPerNode));
+          if (env.valuesMissing()) {
+            return null;
+          }
+          return new NodeValue(index);
+        };
+    SequencedRecordingDifferencer differencer = new SequencedRecordingDifferencer();
+    InMemoryMemoizingEvaluator evaluator =
+        new InMemoryMemoizingEvaluator(
+            ImmutableMap.of(NODE, function),
+            differencer,
+            /*progressReceiver=*/ null,
+            GraphInconsistencyReceiver.THROWING,
+            InMemoryMemoizingEvaluator.DEFAULT_STORED_EVENT_FILTER,
+            new MemoizingEvaluator.EmittedEventState(),
+            /*keepEdges=*/ true,
+            compactDoneNodes);
+    EvaluationContext context =
+        EvaluationContext.newBuilder()
+            .setKeepGoing(false)
+            .setNumThreads(threads)
+            .setEventHandler(NullEventHandler.INSTANCE)
+            .build();
+    ImmutableList<SkyKey> roots = ImmutableList.of(new NodeKey(nodes - 1));
+
+    long heapBefore = usedHeapAfterGc();
+    long start = System.nanoTime();
+    evaluator.evaluate(roots, IntVersion.of(0), context);
+    long cleanNanos = System.nanoTime() - start;
+
+    long gcMillisBefore = totalGcMillis();
+    long heapAfter = usedHeapAfterGc();
+    long gcMillis = totalGcMillis() - gcMillisBefore;
+
+    // Invalidate every 1000th node. Node 0 is the only leaf, but the others recompute to the same
+    // value, so change pruning stops the invalidation from forcing a full rebuild.
+    List<SkyKey> invalidated = new ArrayList<>();
+    for (int i = 0; i < nodes; i += 1000) {
+      invalidated.add(new NodeKey(i));
+    }
+    differencer.invalidate(invalidated);
+    start = System.nanoTime();
+    evaluator.evaluate(roots, IntVersion.of(1), context);
+    long incrementalNanos = System.nanoTime() - start;
+
+    System.out.printf(
+        "%-8s clean %8.1fs | retained %8.1fMiB (%5.1f bytes/node) | full gc avg %6dms |"
+            + " incremental %8.1fs%n",
+        name,
+        cleanNanos / 1e9,
+        (heapAfter - heapBefore) / (1024.0 * 1024.0),
+        (heapAfter - heapBefore) / (double) nodes,
+        gcMillis / 3,
+        incrementalNanos / 1e9);
+    // Keep the evaluator reachable until it has been measured.
+    evaluator.getValues().size();
+  }
+
+  private static Iterable<SkyKey> depsOf(int index, int depsPerNode) {
+    List<SkyKey> deps = new ArrayList<>(depsPerNode);
+    deps.add(new NodeKey(index - 1));
+    // Deterministic pseudo-random earlier nodes, so that the graph is the same for each backend.
+    long seed = index * 0x9E3779B97F4A7C15L;
+    for (int i = 1; i < depsPerNode && index > 1; i++) {
+      seed ^= seed >>> 31;
+      seed *= 0xBF58476D1CE4E5B9L;
+      int dep = (int) Long.remainderUnsigned(seed, index - 1);
+      NodeKey key = new NodeKey(dep);
+      if (!deps.contains(key)) {
+        deps.add(key);
+      }
+    }
+    return deps;
+  }
+
+  /** Returns the used heap after three full collections. */
+  private static long usedHeapAfterGc() throws InterruptedException {
+    Runtime runtime = Runtime.getRuntime();
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+      Thread.sleep(100);
+    }
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+
+  private static long totalGcMillis() {
+    long total = 0;
+    for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+      total += Math.max(0, bean.getCollectionTime());
+    }
+    return total;
+  }
+
+  private InMemoryGraphBenchmark() {}
+}
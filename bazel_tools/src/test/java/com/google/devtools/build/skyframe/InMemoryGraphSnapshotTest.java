@@ -0,0 +1,268 @@
+// Copyright 2026 The Bazel Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.google.devtools.build.skyframe;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.primitives.Ints;
+import com.google.devtools.build.lib.events.NullEventHandler;
+import com.google.devtools.build.skyframe.GraphTester.StringValue;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import javax.annotation.Nullable;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link InMemoryGraphSnapshot}. */
+@RunWith(JUnit4.class)
+public class InMemoryGraphSnapshotTest {
+  private static final String FINGERPRINT = "fingerprint";
+
+  private final GraphTester tester = new GraphTester();
+  private final List<SkyKey> evaluated = new ArrayList<>();
+  private final Set<Object> unserializable = new HashSet<>();
+  private final List<Object> deserializedValues = new ArrayList<>();
+
+  /** Serializes objects as their index in a list, and refuses to serialize some values. */
+  private final InMemoryGraphSnapshot.Serializer serializer =
+      new InMemoryGraphSnapshot.Serializer() {
+        private final List<Object> objects = new ArrayList<>();
+
+        @Nullable
+        @Override
+        public byte[] serialize(Object keyOrValue) {
+          if (unserializable.contains(keyOrValue)) {
+            return null;
+          }
+          objects.add(keyOrValue);
+          return Ints.toByteArray(objects.size() - 1);
+        }
+
+        @Override
+        public Object deserialize(byte[] bytes) {
+          Object keyOrValue = objects.get(Ints.fromByteArray(bytes));
+          if (keyOrValue instanceof SkyValue) {
+            deserializedValues.add(keyOrValue);
+          }
+          return keyOrValue;
+        }
+      };
+
+  private final SkyKey leaf = GraphTester.nonHermeticKey("leaf");
+  private final SkyKey mid = GraphTester.skyKey("mid");
+  private final SkyKey top = GraphTester.skyKey("top");
+
+  private void setUpChain() {
+    tester.set(leaf, new StringValue("x"));
+    tester.getOrCreate(mid).addDependency(leaf).setComputedValue(recording(mid));
+    tester.getOrCreate(top).addDependency(mid).setComputedValue(recording(top));
+  }
+
+  private GraphTester.ValueComputer recording(SkyKey key) {
+    return (deps, env) -> {
+      evaluated.add(key);
+      return GraphTester.COPY.compute(deps, env);
+    };
+  }
+
+  @Test
+  public void restoredNodesAreNotEvaluatedAgain() throws Exception {
+    setUpChain();
+    InMemoryMemoizingEvaluator original = newEvaluator(new SequencedRecordingDifferencer());
+    evaluate(original, IntVersion.of(0), top);
+
+    InMemoryMemoizingEvaluator restored = newEvaluator(new SequencedRecordingDifferencer());
+    assertThat(restore(restored, write(original))).isEqualTo(3);
+    evaluated.clear();
+
+    assertThat(restored.getExistingValue(top)).isEqualTo(new StringValue("x"));
+    assertThat(evaluate(restored, IntVersion.of(0), top).get(top))
+        .isEqualTo(new StringValue("x"));
+    assertThat(evaluated).isEmpty();
+  }
+
+  @Test
+  public void changeBelowRestoredNodesReevaluatesThem() throws Exception {
+    setUpChain();
+    InMemoryMemoizingEvaluator original = newEvaluator(new SequencedRecordingDifferencer());
+    evaluate(original, IntVersion.of(0), top);
+
+    SequencedRecordingDifferencer differencer = new SequencedRecordingDifferencer();
+    InMemoryMemoizingEvaluator restored = newEvaluator(differencer);
+    restore(restored, write(original));
+    evaluated.clear();
+
+    tester.set(leaf, new StringValue("y"));
+    differencer.invalidate(ImmutableList.of(leaf));
+    // The restored evaluator starts over at the first version, like the next server does.
+    assertThat(evaluate(restored, IntVersion.of(0), top).get(top))
+        .isEqualTo(new StringValue("y"));
+    assertThat(evaluated).containsExactly(mid, top).inOrder();
+  }
+
+  @Test
+  public void valuesAreDeserializedOnFirstUse() throws Exception {
+    setUpChain();
+    InMemoryMemoizingEvaluator original = newEvaluator(new SequencedRecordingDifferencer());
+    evaluate(original, IntVersion.of(0), top);
+
+    InMemoryMemoizingEvaluator restored = newEvaluator(new SequencedRecordingDifferencer());
+    restore(restored, write(original));
+    assertThat(deserializedValues).isEmpty();
+
+    SkyValue topValue = restored.getExistingValue(top);
+    assertThat(topValue).isEqualTo(new StringValue("x"));
+    assertThat(deserializedValues).containsExactly(topValue);
+    // The deserialized value is kept.
+    assertThat(restored.getExistingValue(top)).isSameInstanceAs(topValue);
+    assertThat(deserializedValues).hasSize(1);
+  }
+
+  @Test
+  public void valuesThatWereNotReadAreWrittenBackAsRead() throws Exception {
+    setUpChain();
+    InMemoryMemoizingEvaluator original = newEvaluator(new SequencedRecordingDifferencer());
+    evaluate(original, IntVersion.of(0), top);
+
+    InMemoryMemoizingEvaluator restored = newEvaluator(new SequencedRecordingDifferencer());
+    restore(restored, write(original));
+    unserializable.add(new StringValue("x"));
+    // No value was deserialized, so none has to be serialized again.
+    assertThat(restore(newEvaluator(new SequencedRecordingDifferencer()), write(restored)))
+        .isEqualTo(3);
+
+    restored.getExistingValue(mid);
+    // The value of mid has to be serialized again, and can't be, so mid and top are left out.
+    assertThat(restore(newEvaluator(new SequencedRecordingDifferencer()), write(restored)))
+        .isEqualTo(1);
+  }
+
+  @Test
+  public void corruptValueIsRejected() throws Exception {
+    setUpChain();
+    InMemoryMemoizingEvaluator original = newEvaluator(new SequencedRecordingDifferencer());
+    evaluate(original, IntVersion.of(0), top);
+    byte[] snapshot = write(original);
+    // The header is followed by leaf's record: the length and bytes of its key and of its value.
+    int leafValue = 4 + 4 + 2 + FINGERPRINT.length() + 4 + 4 + 4 + 3;
+    snapshot[leafValue] ^= 1;
+
+    InMemoryMemoizingEvaluator restored = newEvaluator(new SequencedRecordingDifferencer());
+    IOException e = assertThrows(IOException.class, () -> restore(restored, snapshot));
+    assertThat(e).hasMessageThat().contains("Corrupt value");
+    assertThat(restored.getValues()).isEmpty();
+  }
+
+  @Test
+  public void nodesDependingOnUnwrittenNodesAreLeftOut() throws Exception {
+    setUpChain();
+    unserializable.add(new StringValue("x"));
+    SkyKey other = GraphTester.skyKey("other");
+    tester.set(other, new StringValue("other"));
+    InMemoryMemoizingEvaluator original = newEvaluator(new SequencedRecordingDifferencer());
+    evaluate(original, IntVersion.of(0), top, other);
+
+    InMemoryMemoizingEvaluator restored = newEvaluator(new SequencedRecordingDifferencer());
+    assertThat(restore(restored, write(original))).isEqualTo(1);
+    assertThat(restored.getValues().keySet()).containsExactly(other);
+  }
+
+  @Test
+  public void errorsAreLeftOut() throws Exception {
+    SkyKey error = GraphTester.skyKey("error");
+    SkyKey parent = GraphTester.skyKey("parent");
+    tester.getOrCreate(error).setHasError(true);
+    tester
+        .getOrCreate(parent)
+        .addErrorDependency(error, new StringValue("recovered"))
+        .setComputedValue(GraphTester.COPY);
+    InMemoryMemoizingEvaluator original = newEvaluator(new SequencedRecordingDifferencer());
+    evaluate(original, IntVersion.of(0), parent);
+
+    InMemoryMemoizingEvaluator restored = newEvaluator(new SequencedRecordingDifferencer());
+    assertThat(restore(restored, write(original))).isEqualTo(0);
+    assertThat(restored.getValues()).isEmpty();
+  }
+
+  @Test
+  public void snapshotWithOtherFingerprintIsRejected() throws Exception {
+    setUpChain();
+    InMemoryMemoizingEvaluator original = newEvaluator(new SequencedRecordingDifferencer());
+    evaluate(original, IntVersion.of(0), top);
+    byte[] snapshot = write(original);
+
+    InMemoryMemoizingEvaluator restored = newEvaluator(new SequencedRecordingDifferencer());
+    assertThrows(
+        IOException.class,
+        () ->
+            restored.restoreSnapshot(serializer, "other", new ByteArrayInputStream(snapshot)));
+    assertThat(restored.getValues()).isEmpty();
+  }
+
+  @Test
+  public void truncatedSnapshotRestoresConsistentPrefix() throws Exception {
+    setUpChain();
+    InMemoryMemoizingEvaluator original = newEvaluator(new SequencedRecordingDifferencer());
+    evaluate(original, IntVersion.of(0), top);
+    byte[] snapshot = write(original);
+
+    InMemoryMemoizingEvaluator restored = newEvaluator(new SequencedRecordingDifferencer());
+    assertThrows(
+        IOException.class,
+        () ->
+            restored.restoreSnapshot(
+                serializer,
+                FINGERPRINT,
+                new ByteArrayInputStream(snapshot, 0, snapshot.length - 8)));
+    // The last record is top's; its deps are cut off, so only leaf and mid are restored.
+    assertThat(restored.getValues().keySet()).containsExactly(leaf, mid);
+    evaluated.clear();
+    assertThat(evaluate(restored, IntVersion.of(0), top).get(top))
+        .isEqualTo(new StringValue("x"));
+    assertThat(evaluated).containsExactly(top);
+  }
+
+  private InMemoryMemoizingEvaluator newEvaluator(Differencer differencer) {
+    return new InMemoryMemoizingEvaluator(tester.getSkyFunctionMap(), differencer);
+  }
+
+  private static EvaluationResult<SkyValue> evaluate(
+      MemoizingEvaluator evaluator, Version version, SkyKey... roots) throws InterruptedException {
+    EvaluationContext context =
+        EvaluationContext.newBuilder()
+            .setKeepGoing(true)
+            .setNumThreads(2)
+            .setEventHandler(NullEventHandler.INSTANCE)
+            .build();
+    return evaluator.evaluate(ImmutableList.copyOf(roots), version, context);
+  }
+
+  private byte[] write(InMemoryMemoizingEvaluator evaluator) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    evaluator.writeSnapshot(key -> true, serializer, FINGERPRINT, out);
+    return out.toByteArray();
+  }
+
+  private int restore(InMemoryMemoizingEvaluator evaluator, byte[] snapshot) throws IOException {
+    return evaluator.restoreSnapshot(serializer, FINGERPRINT, new ByteArrayInputStream(snapshot));
+  }
+}
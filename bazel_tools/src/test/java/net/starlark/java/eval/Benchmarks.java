@@ -64,11 +64,14 @@ public final class Benchmarks {
 
   private static final String HELP =
       "Usage: Benchmarks [--help] [--filter regex] [--seconds float] [--iterations count]\n"
+          + "                  [--bytecode | --compare]\n"
           + "Runs Starlark benchmarks matching the filter for the specified approximate time or\n"
           + "specified number of iterations, and reports various performance measures.\n"
           + "The optional filter is a regular expression applied to the string FILE:FUNC,\n"
           + "where FILE is the base name of the file and FUNC is the name of the function,\n"
-          + "for example 'bench_int.star:bench_add32'.\n";
+          + "for example 'bench_int.star:bench_add32'.\n"
+          + "With --bytecode, functions are compiled to bytecode instead of being evaluated by\n"
+          + "the tree-walking interpreter. With --compare, each benchmark is run both ways.\n";
 
   private static boolean ok = true;
 
@@ -76,6 +79,7 @@ public final class Benchmarks {
     Pattern filter = null; // default: all
     long budgetNanos = -1;
     int iterations = -1;
+    StarlarkSemantics[] modes = {TREE_WALKER};
 
     // parse flags
     int i;
@@ -124,6 +128,12 @@ public final class Benchmarks {
           fail("--iterations out of range");
         }
 
+      } else if (args[i].equals("--bytecode")) {
+        modes = new StarlarkSemantics[] {BYTECODE};
+
+      } else if (args[i].equals("--compare")) {
+        modes = new StarlarkSemantics[] {TREE_WALKER, BYTECODE};
+
       } else {
         fail("unknown flag: %s", args[i]);
       }
@@ -208,21 +218,26 @@ public final class Benchmarks {
           "%-20s %10s %10s %10s %10s %10s\n", //
           "benchmark", "ops", "cpu/op", "wall/op", "steps/op", "alloc/op");
       for (Map.Entry<String, StarlarkFunction> e : benchmarks.entrySet()) {
-        String name = e.getKey();
-        System.out.flush(); // help user identify a slow benchmark
-        Benchmark b = new Benchmark(name, e.getValue());
-        if (!run(b, budgetNanos, iterations)) {
-          ok = false;
-          continue;
+        for (StarlarkSemantics mode : modes) {
+          String name = e.getKey();
+          if (modes.length > 1 && mode == BYTECODE) {
+            name += " (bytecode)";
+          }
+          System.out.flush(); // help user identify a slow benchmark
+          Benchmark b = new Benchmark(name, e.getValue());
+          if (!run(b, mode, budgetNanos, iterations)) {
+            ok = false;
+            continue;
+          }
+          System.out.printf(
+              "%-20s %10d %10s %10s %10d %10s\n",
+              name,
+              b.count,
+              formatDuration(((double) b.time) / b.count),
+              formatDuration(((double) b.cpu) / b.count),
+              b.steps / b.count,
+              formatBytes(b.alloc / b.count));
         }
-        System.out.printf(
-            "%-20s %10d %10s %10s %10d %10s\n",
-            name,
-            b.count,
-            formatDuration(((double) b.time) / b.count),
-            formatDuration(((double) b.cpu) / b.count),
-            b.steps / b.count,
-            formatBytes(b.alloc / b.count));
       }
       System.out.println();
     }
@@ -237,10 +252,11 @@ public final class Benchmarks {
     System.exit(1);
   }
 
-  // Runs benchmark function f for the specified time budget
+  // Runs benchmark function f, using the given semantics, for the specified time budget
   // (which we may exceed by a factor of two) or number of iterations,
   // exactly one of which must be nonnegative. Reports success.
-  private static boolean run(Benchmark b, long budgetNanos, int iterations) {
+  private static boolean run(
+      Benchmark b, StarlarkSemantics semantics, long budgetNanos, int iterations) {
     // Exactly one of the parameters must be specified.
     Preconditions.checkState((budgetNanos >= 0) != (iterations >= 0));
 
@@ -407,5 +423,11 @@ public final class Benchmarks {
 
   private static final StarlarkSemantics semantics = StarlarkSemantics.DEFAULT;
 
+  private static final StarlarkSemantics TREE_WALKER = semantics;
+  private static final StarlarkSemantics BYTECODE =
+      semantics.toBuilder()
+          .setBool(StarlarkSemantics.EXPERIMENTAL_STARLARK_BYTECODE, true)
+          .build();
+
   private Benchmarks() {}
 }
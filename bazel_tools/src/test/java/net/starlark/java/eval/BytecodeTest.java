@@ -0,0 +1,289 @@
+// Copyright 2026 The Bazel Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package net.starlark.java.eval;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import net.starlark.java.syntax.FileOptions;
+import net.starlark.java.syntax.ParserInput;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Tests that functions compiled to {@link Bytecode} behave exactly like the same functions
+ * evaluated by {@link Eval}: each test calls a function {@code f} under both evaluators and
+ * compares the results, or the errors and their call stacks, and the number of steps taken.
+ */
+@RunWith(JUnit4.class)
+public final class BytecodeTest {
+
+  // Runs the program, calls its function f, and describes the outcome.
+  private static String run(boolean bytecode, String... lines) throws Exception {
+    StarlarkSemantics semantics =
+        StarlarkSemantics.builder()
+            .setBool(StarlarkSemantics.EXPERIMENTAL_STARLARK_BYTECODE, bytecode)
+            .build();
+    Module module =
+        Module.withPredeclared(semantics, ImmutableMap.of("answer", StarlarkInt.of(42)));
+    try (Mutability mu = Mutability.create("test")) {
+      StarlarkThread thread = new StarlarkThread(mu, semantics);
+      ParserInput input = ParserInput.fromLines(lines);
+      Starlark.execFile(input, FileOptions.DEFAULT, module, thread);
+      long steps = thread.getExecutedSteps();
+      try {
+        Object result =
+            Starlark.call(thread, module.getGlobal("f"), ImmutableList.of(), ImmutableMap.of());
+        return Starlark.repr(result) + " in " + (thread.getExecutedSteps() - steps) + " steps";
+      } catch (EvalException ex) {
+        // A failed computation may count steps ahead of the failure, so they are not compared.
+        return ex.getMessageWithStack();
+      }
+    }
+  }
+
+  private static void assertSameBehavior(String... lines) throws Exception {
+    assertThat(run(/*bytecode=*/ true, lines)).isEqualTo(run(/*bytecode=*/ false, lines));
+  }
+
+  @Test
+  public void testExpressions() throws Exception {
+    assertSameBehavior(
+        "def f():",
+        "  x = 1 + 2 * 3 - -4",
+        "  y = [x, 'a' + 'b', (1, 2.5), {'k': x}, not x, x if x > 3 else None]",
+        "  z = 'abcdef'[1:-1:2] + 'xyz'[::-1] + 'xyz'[1]",
+        "  return [x, y, z, answer, len(y), 0 or 'or', 1 and 'and', 0 and 1/0, 1 or 1/0]");
+  }
+
+  @Test
+  public void testControlFlow() throws Exception {
+    assertSameBehavior(
+        "def f():",
+        "  out = []",
+        "  for i in range(10):",
+        "    if i % 2 == 0:",
+        "      continue",
+        "    elif i == 7:",
+        "      break",
+        "    for j in range(i):",
+        "      if j > 2:",
+        "        break",
+        "      out.append((i, j))",
+        "    else_ = i",
+        "  return out",
+        "",
+        "def g(xs):",
+        "  for x in xs:",
+        "    if x == 2:",
+        "      return x",
+        "",
+        "def h():",
+        "  pass");
+    assertSameBehavior(
+        "def g(xs):",
+        "  for x in xs:",
+        "    for y in xs:",
+        "      if y == 2:",
+        "        return y",
+        "",
+        "def f():",
+        "  xs = [1, 2, 3]",
+        "  r = g(xs)",
+        "  xs.append(4)  # the loops in g no longer iterate over xs",
+        "  return [r, xs]");
+  }
+
+  @Test
+  public void testAssignments() throws Exception {
+    assertSameBehavior(
+        "def f():",
+        "  a, (b, c), [d] = 1, [2, 3], (4,)",
+        "  x = [0, 1]",
+        "  x[0] = 'zero'",
+        "  x[1] += 10",
+        "  x += [2]",
+        "  y = x",
+        "  y += [3]  # list += list extends the list",
+        "  s = 'a'",
+        "  s *= 3",
+        "  d = {}",
+        "  d['k'] = 1",
+        "  d['k'] |= 2",
+        "  return [a, b, c, d, x, y, s]");
+  }
+
+  @Test
+  public void testClosures() throws Exception {
+    assertSameBehavior(
+        "def f():",
+        "  n = 1",
+        "  def add(x, y=n * 10, *args, z, w=n, **kwargs):",
+        "    return [x, y, args, z, w, kwargs, n]",
+        "  def outer():",
+        "    def inner():",
+        "      return n + 1",
+        "    return inner",
+        "  fs = [lambda x, k=k: x * k + n for k in range(3)]",
+        "  return [add(1, z=2), add(1, 2, 3, z=4, w=5, v=6), outer()(), [g(2) for g in fs]]");
+  }
+
+  @Test
+  public void testComprehensions() throws Exception {
+    assertSameBehavior(
+        "def f():",
+        "  xs = [(x, y) for x in range(4) if x % 2 for y in 'ab' if y != 'c']",
+        "  d = {k: v for k, v in [('a', 1), ('b', 2), ('a', 3)]}",
+        "  nested = [[y * 2 for y in range(x)] for x in range(3)]",
+        "  return [xs, d, nested]");
+  }
+
+  @Test
+  public void testCalls() throws Exception {
+    assertSameBehavior(
+        "def g(*args, **kwargs):",
+        "  return [args, kwargs]",
+        "",
+        "def f():",
+        "  s = ' a, b '",
+        "  return [",
+        "      g(1, 2, x=5, *[3, 4], **{'y': 6}),",
+        "      g(*(1, 2)),",
+        "      g(**{}),",
+        "      s.strip().split(','),",
+        "      [x.upper() for x in ['a', 'b']],",
+        "      sorted([3, 1, 2], reverse = True),",
+        "      getattr(s, 'strip')(),",
+        "  ]");
+  }
+
+  @Test
+  public void testDotCacheWithDifferentReceivers() throws Exception {
+    // The same dot expression sees values of different types.
+    assertSameBehavior(
+        "def f():",
+        "  out = []",
+        "  for x in ['abc', [1, 2], 'def', {'a': 1}, [3]]:",
+        "    out.append(x.index if hasattr(x, 'index') else x.get)",
+        "  return [str(m) for m in out]");
+  }
+
+  @Test
+  public void testErrorLocations() throws Exception {
+    String[] bodies = {
+      "  return 1 + 'a'",
+      "  return -'a'",
+      "  return [1][5]",
+      "  return 'abc'[::0]",
+      "  return 'abc'.nope",
+      "  x = 'abc'\n  x.nope += 1",
+      "  x = 'abc'\n  x.nope = 1",
+      "  x = (1,)\n  x[0] = 2",
+      "  x = [1]\n  x[0] += 'a'",
+      "  x = [1]\n  x += 'a'",
+      "  return {1: 2, 1: 3}",
+      "  return {[]: 1}",
+      "  return {k: 1 for k in [[]]}",
+      "  return [1 for x in 1]",
+      "  for x in None:\n    pass",
+      "  a, b = 1, 2, 3",
+      "  a, b = 'ab'",
+      "  a, b = 1",
+      "  return len(*1)",
+      "  return len(**1)",
+      "  return dict(**{1: 2})",
+      "  return len(1, 2)",
+      "  return undefined_later()\n  undefined_later = 1",
+      "  x = [1, 2]\n  for y in x:\n    x.append(y)",
+      "  return [x.append(1) for x in [[], ()]]",
+      "  def g():\n    return h()\n  def h():\n    return 1 // 0\n  return g()",
+      "  return f()",
+      "  fail('boom')",
+    };
+    for (String body : bodies) {
+      assertSameBehavior(("def f():\n" + body).split("\n"));
+    }
+  }
+
+  @Test
+  public void testStepLimit() throws Exception {
+    for (boolean bytecode : new boolean[] {false, true}) {
+      StarlarkSemantics semantics =
+          StarlarkSemantics.builder()
+              .setBool(StarlarkSemantics.EXPERIMENTAL_STARLARK_BYTECODE, bytecode)
+              .build();
+      Module module = Module.withPredeclared(semantics, ImmutableMap.of());
+      try (Mutability mu = Mutability.create("test")) {
+        StarlarkThread thread = new StarlarkThread(mu, semantics);
+        Starlark.execFile(
+            ParserInput.fromLines("def f():", "  for x in range(1000):", "    x += 1"),
+            FileOptions.DEFAULT,
+            module,
+            thread);
+        long limit = thread.getExecutedSteps() + 100;
+        thread.setMaxExecutionSteps(limit);
+        EvalException ex =
+            assertThrows(
+                EvalException.class,
+                () ->
+                    Starlark.call(
+                        thread, module.getGlobal("f"), ImmutableList.of(), ImmutableMap.of()));
+        assertThat(ex).hasMessageThat().contains("too many steps");
+        // Both evaluators stop at the limit.
+        assertThat(thread.getExecutedSteps()).isEqualTo(limit);
+      }
+    }
+  }
+  @Test
+  public void testClosuresShareCompiledCode() throws Exception {
+    StarlarkSemantics semantics =
+        StarlarkSemantics.builder()
+            .setBool(StarlarkSemantics.EXPERIMENTAL_STARLARK_BYTECODE, true)
+            .build();
+    Module module = Module.withPredeclared(semantics, ImmutableMap.of());
+    try (Mutability mu = Mutability.create("test")) {
+      StarlarkThread thread = new StarlarkThread(mu, semantics);
+      Starlark.execFile(
+          ParserInput.fromLines(
+              "def make(n):",
+              "  return lambda x: x + n",
+              // Closures created by the tree-walker, which runs top-level code.
+              "walked = [lambda x, n=n: x + n for n in range(3)]",
+              // Closures created by the compiled make.
+              "compiled = [make(n) for n in range(3)]"),
+          FileOptions.DEFAULT,
+          module,
+          thread);
+      for (String name : new String[] {"walked", "compiled"}) {
+        StarlarkList<?> fns = (StarlarkList<?>) module.getGlobal(name);
+        Object first = fns.get(0);
+        Starlark.call(thread, first, ImmutableList.of(StarlarkInt.of(1)), ImmutableMap.of());
+        Object code = ((StarlarkFunction) first).rfn.getCompiledCode();
+        assertThat(code).isNotNull();
+        // The other closures run the code compiled for the first one.
+        for (int i = 1; i < fns.size(); i++) {
+          StarlarkFunction fn = (StarlarkFunction) fns.get(i);
+          Object result =
+              Starlark.call(thread, fn, ImmutableList.of(StarlarkInt.of(1)), ImmutableMap.of());
+          assertThat(result).isEqualTo(StarlarkInt.of(1 + i));
+          assertThat(fn.rfn.getCompiledCode()).isSameInstanceAs(code);
+        }
+      }
+    }
+  }
+}
@@ -19,10 +19,12 @@ import org.junit.runners.Suite;
 /** EvalTests tests the Starlark evaluator. */
 @RunWith(Suite.class)
 @Suite.SuiteClasses({
+  BytecodeTest.class,
   EvaluationTest.class,
   EvalUtilsTest.class,
   FunctionTest.class,
   ImmutableKeyTrackingDictTest.class,
+  MethodDescriptorTest.class,
   MethodLibraryTest.class,
   MutabilityTest.class,
   PrinterTest.class,
@@ -0,0 +1,177 @@
+// Copyright 2026 The Bazel Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package net.starlark.java.eval;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import net.starlark.java.annot.Param;
+import net.starlark.java.annot.StarlarkBuiltin;
+import net.starlark.java.annot.StarlarkMethod;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Tests of calls of built-in methods, in particular of the positional fast path of {@link
+ * MethodDescriptor#callPositional} against the argument vector of {@link MethodDescriptor#call}.
+ */
+@RunWith(JUnit4.class)
+public final class MethodDescriptorTest {
+
+  private final EvaluationTestCase ev = new EvaluationTestCase();
+
+  /** A value with built-in methods whose parameters can all be passed by position. */
+  @StarlarkBuiltin(name = "mock", documented = false)
+  static final class Mock implements StarlarkValue {
+    @StarlarkMethod(
+        name = "join",
+        documented = false,
+        parameters = {
+          @Param(name = "a", named = true),
+          @Param(name = "b", named = true, defaultValue = "'B'"),
+          @Param(name = "c", named = true, defaultValue = "'C'"),
+        })
+    public String join(String a, String b, String c) {
+      return a + b + c;
+    }
+
+    @StarlarkMethod(
+        name = "fail",
+        documented = false,
+        parameters = {@Param(name = "x", named = true)})
+    public Object fail(Object x) {
+      throw new ClassCastException("thrown by fail");
+    }
+  }
+
+  private static MethodDescriptor getDescriptor(Class<?> cls, String name) {
+    return CallUtils.getAnnotatedMethods(StarlarkSemantics.DEFAULT, cls).get(name);
+  }
+
+  @Test
+  public void positionalCallsMatchCallsWithNamedArguments() throws Exception {
+    ev.update("mock", new Mock());
+
+    assertThat(ev.eval("mock.join('x')")).isEqualTo("xBC");
+    assertThat(ev.eval("mock.join('x', 'y')")).isEqualTo("xyC");
+    assertThat(ev.eval("mock.join('x', 'y', 'z')")).isEqualTo("xyz");
+    assertThat(ev.eval("mock.join(a = 'x')")).isEqualTo("xBC");
+    assertThat(ev.eval("mock.join('x', c = 'z')")).isEqualTo("xBz");
+    assertThat(ev.eval("mock.join(c = 'z', b = 'y', a = 'x')")).isEqualTo("xyz");
+  }
+
+  @Test
+  public void positionalHandlesBindTrailingDefaults() throws Exception {
+    MethodDescriptor join = getDescriptor(Mock.class, "join");
+    Mock mock = new Mock();
+
+    assertThat(join.acceptsPositional(0)).isFalse();
+    assertThat(join.acceptsPositional(1)).isTrue();
+    assertThat(join.acceptsPositional(3)).isTrue();
+    assertThat(join.acceptsPositional(4)).isFalse();
+    assertThat(join.callPositional(mock, new Object[] {"x"}, /*mu=*/ null)).isEqualTo("xBC");
+    assertThat(join.callPositional(mock, new Object[] {"x", "y"}, /*mu=*/ null))
+        .isEqualTo("xyC");
+    assertThat(join.call(mock, new Object[] {"x", "y", "C"}, /*mu=*/ null))
+        .isEqualTo(join.callPositional(mock, new Object[] {"x", "y"}, /*mu=*/ null));
+  }
+
+  @Test
+  public void positionalHandlesBindStringReceiver() throws Exception {
+    MethodDescriptor find = getDescriptor(String.class, "find");
+
+    // The receiver is the first parameter of the method, but not a positional argument.
+    assertThat(find.acceptsPositional(0)).isFalse();
+    assertThat(find.acceptsPositional(1)).isTrue();
+    assertThat(find.acceptsPositional(3)).isTrue();
+    assertThat(find.acceptsPositional(4)).isFalse();
+    assertThat(find.callPositional("hello", new Object[] {"l"}, /*mu=*/ null))
+        .isEqualTo(StarlarkInt.of(2));
+    assertThat(find.callPositional("hello", new Object[] {"l", StarlarkInt.of(3)}, /*mu=*/ null))
+        .isEqualTo(StarlarkInt.of(3));
+    assertThat(ev.eval("'hello'.find('l', 3)")).isEqualTo(StarlarkInt.of(3));
+    assertThat(ev.eval("'hello'.find('l', 1, 2)")).isEqualTo(StarlarkInt.of(-1));
+    assertThat(ev.eval("'hello'.replace('l', 'L')")).isEqualTo("heLLo");
+    assertThat(ev.eval("'hello'.replace('l', 'L', 1)")).isEqualTo("heLlo");
+  }
+
+  @Test
+  public void wrongNumberOfPositionalArguments() throws Exception {
+    ev.new Scenario()
+        .update("mock", new Mock())
+        .testIfErrorContains("join() missing 1 required positional argument: a", "mock.join()")
+        .testIfErrorContains(
+            "join() accepts no more than 3 positional arguments but got 4",
+            "mock.join('w', 'x', 'y', 'z')")
+        .testIfErrorContains(
+            "find() accepts no more than 3 positional arguments but got 4",
+            "'a'.find('a', 0, 1, 2)")
+        .testIfErrorContains(
+            "in call to join(), parameter 'a' got value of type 'int'", "mock.join(1)");
+  }
+
+  @Test
+  public void classCastExceptionOfMethodIsNotReportedAsArgumentMismatch() throws Exception {
+    ev.update("mock", new Mock());
+    MethodDescriptor fail = getDescriptor(Mock.class, "fail");
+
+    // The interpreter wraps unchecked exceptions of built-ins, but keeps them as the cause.
+    for (String call : new String[] {"mock.fail(1)", "mock.fail(x = 1)"}) {
+      Starlark.UncheckedEvalException e =
+          assertThrows(Starlark.UncheckedEvalException.class, () -> ev.eval(call));
+      assertThat(e).hasCauseThat().isInstanceOf(ClassCastException.class);
+      assertThat(e).hasCauseThat().hasMessageThat().isEqualTo("thrown by fail");
+    }
+    // A null argument can be cast to any parameter type.
+    assertThrows(
+        ClassCastException.class,
+        () -> fail.call(new Mock(), new Object[] {null}, /*mu=*/ null));
+    assertThrows(
+        ClassCastException.class,
+        () -> fail.callPositional(new Mock(), new Object[] {null}, /*mu=*/ null));
+  }
+
+  @Test
+  public void argumentMismatchIsReportedInDetail() throws Exception {
+    MethodDescriptor join = getDescriptor(Mock.class, "join");
+    Object[] args = {StarlarkInt.of(1), "y", "z"};
+
+    IllegalArgumentException vector =
+        assertThrows(
+            IllegalArgumentException.class, () -> join.call(new Mock(), args, /*mu=*/ null));
+    IllegalArgumentException positional =
+        assertThrows(
+            IllegalArgumentException.class,
+            () -> join.callPositional(new Mock(), new Object[] {StarlarkInt.of(1)}, /*mu=*/ null));
+
+    assertThat(vector).hasMessageThat().contains("args=[1 (int), \"y\" (string), \"z\" (string)]");
+    assertThat(positional)
+        .hasMessageThat()
+        .contains("args=[1 (int), \"B\" (string), \"C\" (string)]");
+    assertThat(positional).hasCauseThat().isInstanceOf(ClassCastException.class);
+  }
+
+  @Test
+  public void stringReceiverMismatchIsReportedInDetail() throws Exception {
+    MethodDescriptor find = getDescriptor(String.class, "find");
+
+    IllegalArgumentException e =
+        assertThrows(
+            IllegalArgumentException.class,
+            () -> find.callPositional(StarlarkInt.of(1), new Object[] {"l"}, /*mu=*/ null));
+
+    assertThat(e).hasMessageThat().contains("args=[1 (int), \"l\" (string), 0 (int), None");
+  }
+}
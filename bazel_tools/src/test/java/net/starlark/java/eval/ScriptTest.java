@@ -173,6 +173,13 @@ public final class ScriptTest {
 
   private static boolean ok = true;
 
+  private static final StarlarkSemantics[] SEMANTICS = {
+    StarlarkSemantics.DEFAULT,
+    StarlarkSemantics.builder()
+        .setBool(StarlarkSemantics.EXPERIMENTAL_STARLARK_BYTECODE, true)
+        .build(),
+  };
+
   public static void main(String[] args) throws Exception {
     File root = new File("third_party/bazel"); // blaze
     if (!root.exists()) {
@@ -222,59 +229,63 @@ public final class ScriptTest {
           expectations.put(pattern, line);
         }
 
-        // parse & execute
-        ParserInput input = ParserInput.fromString(buf.toString(), file.toString());
-        ImmutableMap.Builder<String, Object> predeclared = ImmutableMap.builder();
-        Starlark.addMethods(predeclared, new ScriptTest()); // e.g. assert_eq
-        predeclared.put("json", Json.INSTANCE);
-
-        StarlarkSemantics semantics = StarlarkSemantics.DEFAULT;
-        Module module = Module.withPredeclared(semantics, predeclared.build());
-        try (Mutability mu = Mutability.createAllowingShallowFreeze("test")) {
-          StarlarkThread thread = new StarlarkThread(mu, semantics);
-          thread.setThreadLocal(Reporter.class, ScriptTest::reportError);
-          Starlark.execFile(input, FileOptions.DEFAULT, module, thread);
-
-        } catch (SyntaxError.Exception ex) {
-          // parser/resolver errors
-          //
-          // Static errors cannot be suppressed by expectations:
-          // it would be dangerous because the presence of a static
-          // error prevents execution of any dynamic assertions in
-          // a chunk. Tests of static errors belong in syntax/.
-          for (SyntaxError err : ex.errors()) {
-            System.err.println(err); // includes location
+        // Run the chunk with the tree-walking evaluator and with functions compiled to bytecode.
+        for (StarlarkSemantics semantics : SEMANTICS) {
+          Map<Pattern, Integer> unmatched = new HashMap<>(expectations);
+
+          // parse & execute
+          ParserInput input = ParserInput.fromString(buf.toString(), file.toString());
+          ImmutableMap.Builder<String, Object> predeclared = ImmutableMap.builder();
+          Starlark.addMethods(predeclared, new ScriptTest()); // e.g. assert_eq
+          predeclared.put("json", Json.INSTANCE);
+
+          Module module = Module.withPredeclared(semantics, predeclared.build());
+          try (Mutability mu = Mutability.createAllowingShallowFreeze("test")) {
+            StarlarkThread thread = new StarlarkThread(mu, semantics);
+            thread.setThreadLocal(Reporter.class, ScriptTest::reportError);
+            Starlark.execFile(input, FileOptions.DEFAULT, module, thread);
+
+          } catch (SyntaxError.Exception ex) {
+            // parser/resolver errors
+            //
+            // Static errors cannot be suppressed by expectations:
+            // it would be dangerous because the presence of a static
+            // error prevents execution of any dynamic assertions in
+            // a chunk. Tests of static errors belong in syntax/.
+            for (SyntaxError err : ex.errors()) {
+              System.err.println(err); // includes location
+              ok = false;
+            }
+
+          } catch (EvalException ex) {
+            // evaluation error
+            //
+            // TODO(adonovan): the old logic checks only that each error is matched
+            // by at least one expectation. Instead, ensure that errors
+            // and expections match exactly. Furthermore, look only at errors
+            // whose stack has a frame with a file/line that matches the expectation.
+            // This requires inspecting EvalException stack.
+            // (There can be at most one dynamic error per chunk.
+            // Do we even need to allow multiple expectations?)
+            if (!expected(unmatched, ex.getMessage())) {
+              System.err.println(ex.getMessageWithStack());
+              ok = false;
+            }
+
+          } catch (Throwable ex) {
+            // unhandled exception (incl. InterruptedException)
+            System.err.printf(
+                "%s:%d: unhandled %s in this chunk: %s\n",
+                file, linenum, ex.getClass().getSimpleName(), ex.getMessage());
+            ex.printStackTrace();
             ok = false;
           }
 
-        } catch (EvalException ex) {
-          // evaluation error
-          //
-          // TODO(adonovan): the old logic checks only that each error is matched
-          // by at least one expectation. Instead, ensure that errors
-          // and expections match exactly. Furthermore, look only at errors
-          // whose stack has a frame with a file/line that matches the expectation.
-          // This requires inspecting EvalException stack.
-          // (There can be at most one dynamic error per chunk.
-          // Do we even need to allow multiple expectations?)
-          if (!expected(expectations, ex.getMessage())) {
-            System.err.println(ex.getMessageWithStack());
+          // unmatched expectations
+          for (Map.Entry<Pattern, Integer> e : unmatched.entrySet()) {
+            System.err.printf("%s:%d: unmatched expectation: %s\n", file, e.getValue(), e.getKey());
             ok = false;
           }
-
-        } catch (Throwable ex) {
-          // unhandled exception (incl. InterruptedException)
-          System.err.printf(
-              "%s:%d: unhandled %s in this chunk: %s\n",
-              file, linenum, ex.getClass().getSimpleName(), ex.getMessage());
-          ex.printStackTrace();
-          ok = false;
-        }
-
-        // unmatched expectations
-        for (Map.Entry<Pattern, Integer> e : expectations.entrySet()) {
-          System.err.printf("%s:%d: unmatched expectation: %s\n", file, e.getValue(), e.getKey());
-          ok = false;
         }
 
         // advance line number
@@ -0,0 +1,82 @@
+// Copyright 2026 The Bazel Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.devtools.build.execlog;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Reads and writes the length-delimited entries of an execution log as raw bytes, without parsing
+ * them, so that parsing can happen on other threads.
+ */
+final class DelimitedEntries {
+  // Larger entries are certainly not part of an execution log, which limits the memory that a
+  // corrupted length can make us allocate.
+  private static final int MAX_ENTRY_SIZE = 1 << 30;
+
+  private DelimitedEntries() {}
+
+  /** Returns the next entry of {@code in}, or null if {@code in} ends before the entry. */
+  static byte[] readEntry(InputStream in) throws IOException {
+    long size = readVarint(in);
+    if (size < 0) {
+      return null;
+    }
+    if (size > MAX_ENTRY_SIZE) {
+      throw new IOException("Entry of " + size + " bytes is too large");
+    }
+    byte[] entry = new byte[(int) size];
+    int read = in.readNBytes(entry, 0, entry.length);
+    if (read < entry.length) {
+      throw new EOFException("Entry of " + size + " bytes ends after " + read + " bytes");
+    }
+    return entry;
+  }
+
+  static void writeEntry(OutputStream out, byte[] entry) throws IOException {
+    writeVarint(out, entry.length);
+    out.write(entry);
+  }
+
+  /** Returns the next varint of {@code in}, or -1 if {@code in} ends before the varint. */
+  static long readVarint(InputStream in) throws IOException {
+    int b = in.read();
+    if (b < 0) {
+      return -1;
+    }
+    long value = b & 0x7f;
+    for (int shift = 7; (b & 0x80) != 0; shift += 7) {
+      if (shift > 63) {
+        throw new IOException("Malformed varint");
+      }
+      b = in.read();
+      if (b < 0) {
+        throw new EOFException("Varint ends prematurely");
+      }
+      value |= (long) (b & 0x7f) << shift;
+    }
+    return value;
+  }
+
+  static void writeVarint(OutputStream out, long value) throws IOException {
+    while ((value & ~0x7fL) != 0) {
+      out.write((int) (value & 0x7f) | 0x80);
+      value >>>= 7;
+    }
+    out.write((int) value);
+  }
+}
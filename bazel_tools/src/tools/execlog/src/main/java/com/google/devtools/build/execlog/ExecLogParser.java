@@ -18,6 +18,8 @@ import static java.nio.charset.StandardCharsets.UTF_8;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.devtools.build.lib.exec.Protos.SpawnExec;
 import com.google.devtools.common.options.OptionsParser;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.BufferedWriter;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
@@ -26,6 +28,8 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayDeque;
 import java.util.HashMap;
 import java.util.List;
@@ -93,12 +97,20 @@ final class ExecLogParser {
       }
 
       public void addSpawnExec(SpawnExec ex) {
-        String key = getFirstOutput(ex);
+        addFirstOutput(getFirstOutput(ex));
+      }
+
+      void addFirstOutput(String key) {
         if (key != null) {
           positions.put(key, index++);
         }
       }
 
+      /** Returns one more than the largest position. */
+      int size() {
+        return index;
+      }
+
       public int positionFor(SpawnExec ex) {
         String key = getFirstOutput(ex);
         if (key != null && positions.containsKey(key)) {
@@ -168,6 +180,43 @@ final class ExecLogParser {
     }
   }
 
+  private static void outputStreaming(
+      ParserOptions options,
+      String logPath,
+      String output1,
+      String secondPath,
+      String output2,
+      ReorderingParser.Golden golden)
+      throws IOException, InterruptedException {
+    int threads =
+        options.threads > 0 ? options.threads : Runtime.getRuntime().availableProcessors();
+    try (StreamingExecLogParser parser =
+        new StreamingExecLogParser(
+            options.restrictToRunner,
+            threads,
+            StreamingExecLogParser.DEFAULT_ENTRIES_PER_PARTITION)) {
+      try (InputStream input = new BufferedInputStream(new FileInputStream(logPath))) {
+        if (output1 == null) {
+          parser.convert(input, System.out, golden);
+        } else {
+          try (OutputStream output = new BufferedOutputStream(new FileOutputStream(output1))) {
+            parser.convert(input, output, golden);
+          }
+        }
+      }
+
+      if (secondPath != null) {
+        Path tempDir =
+            Paths.get(
+                options.tempDir != null ? options.tempDir : System.getProperty("java.io.tmpdir"));
+        try (InputStream input = new BufferedInputStream(new FileInputStream(secondPath));
+            OutputStream output = new BufferedOutputStream(new FileOutputStream(output2))) {
+          parser.reorder(input, output, golden, tempDir);
+        }
+      }
+    }
+  }
+
   public static void main(String[] args) throws Exception {
     OptionsParser op = OptionsParser.builder().optionsClasses(ParserOptions.class).build();
     op.parseAndExitUponError(args);
@@ -218,6 +267,11 @@ final class ExecLogParser {
       golden = new ReorderingParser.Golden();
     }
 
+    if (options.streaming) {
+      outputStreaming(options, logPath, output1, secondPath, output2, golden);
+      return;
+    }
+
     try (InputStream input = new FileInputStream(logPath)) {
       Parser parser = new FilteringLogParser(input, options.restrictToRunner);
 
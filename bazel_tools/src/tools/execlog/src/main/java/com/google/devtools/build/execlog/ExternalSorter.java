@@ -0,0 +1,249 @@
+// Copyright 2026 The Bazel Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.devtools.build.execlog;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import javax.annotation.Nullable;
+
+/**
+ * Sorts entries by their position in another log on local disk, so that only one partition of the
+ * entries needs to be in memory at a time.
+ *
+ * <p>Entries are spilled to partitions by ranges of positions, so that sorting each partition on
+ * its own and reading the partitions in order yields all entries sorted by position. Entries with
+ * the same position keep the order in which they were added. Entries without a position go to
+ * partitions of their own after all others, in the order in which they were added.
+ *
+ * <p>At most {@link #MAX_OPEN_SPILLS} partition files are open for writing at a time, each with a
+ * buffer of {@link #BUFFER_SIZE} bytes. The least recently written one is closed to make room and
+ * reopened for appending when it gets another entry, which is cheap when entries mostly come in
+ * the order of their positions, as they do for logs of similar builds.
+ */
+final class ExternalSorter implements Closeable {
+  /** Position of entries that only come after all entries with a position. */
+  static final int NO_POSITION = -1;
+
+  private static final int BUFFER_SIZE = 64 << 10;
+  // More positions go into one partition if there are many, so that reordering a partition that
+  // is not in memory yet does not take one file per position range.
+  private static final int MAX_SORTED_PARTITIONS = 1024;
+  // Well below the default limit of open files per process on common platforms.
+  private static final int MAX_OPEN_SPILLS = 64;
+
+  private final Path dir;
+  private final int positionsPerPartition;
+  private final int entriesPerPartition;
+  private final List<Path> files = new ArrayList<>();
+  // The partitions of the positions from 0 to the largest position, created lazily.
+  private final Spill[] sorted;
+  private final List<Spill> unsorted = new ArrayList<>();
+  // The spills with an open file, from the least to the most recently written one.
+  private final LinkedHashSet<Spill> open = new LinkedHashSet<>();
+
+  /**
+   * Creates a sorter that spills to {@code dir}.
+   *
+   * @param positions one more than the largest position of the entries
+   * @param entriesPerPartition the number of entries in a partition, if each position is taken
+   *     once
+   */
+  ExternalSorter(Path dir, int positions, int entriesPerPartition) {
+    Preconditions.checkArgument(entriesPerPartition > 0, entriesPerPartition);
+    this.dir = dir;
+    this.entriesPerPartition = entriesPerPartition;
+    this.positionsPerPartition =
+        Math.max(entriesPerPartition, divideRoundingUp(positions, MAX_SORTED_PARTITIONS));
+    this.sorted = new Spill[divideRoundingUp(positions, positionsPerPartition)];
+  }
+
+  private static int divideRoundingUp(int dividend, int divisor) {
+    return (int) (((long) dividend + divisor - 1) / divisor);
+  }
+
+  /** Adds an entry at {@code position}, or at the end if the position is {@link #NO_POSITION}. */
+  void add(int position, byte[] entry) throws IOException {
+    Spill spill;
+    if (position == NO_POSITION) {
+      spill = unsorted.isEmpty() ? null : unsorted.get(unsorted.size() - 1);
+      if (spill == null || spill.entries == entriesPerPartition) {
+        if (spill != null) {
+          // Nothing is added to a full partition of entries without a position.
+          open.remove(spill);
+          spill.closeOut();
+        }
+        spill = new Spill(newFile());
+        unsorted.add(spill);
+      }
+    } else {
+      int partition = position / positionsPerPartition;
+      spill = sorted[partition];
+      if (spill == null) {
+        spill = new Spill(newFile());
+        sorted[partition] = spill;
+      }
+    }
+    if (!open.remove(spill)) {
+      if (open.size() == MAX_OPEN_SPILLS) {
+        Spill leastRecent = Iterables.getFirst(open, null);
+        open.remove(leastRecent);
+        leastRecent.closeOut();
+      }
+      spill.openOut();
+    }
+    open.add(spill);
+    spill.add(position, entry);
+  }
+
+  private Path newFile() throws IOException {
+    Path file = dir.resolve("partition-" + files.size());
+    files.add(file);
+    return file;
+  }
+
+  /**
+   * Finishes adding entries and returns the partitions in the order of their entries. Partitions
+   * can be read concurrently.
+   */
+  ImmutableList<Partition> finish() throws IOException {
+    ImmutableList.Builder<Partition> partitions = ImmutableList.builder();
+    closeOpenSpills();
+    for (Spill spill : sorted) {
+      if (spill != null) {
+        partitions.add(new Partition(spill.file, spill.entries, spill.bytes, /* sort= */ true));
+      }
+    }
+    for (Spill spill : unsorted) {
+      partitions.add(new Partition(spill.file, spill.entries, spill.bytes, /* sort= */ false));
+    }
+    return partitions.build();
+  }
+
+  /** Deletes the spilled entries. */
+  @Override
+  public void close() throws IOException {
+    closeOpenSpills();
+    for (Path file : files) {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  private void closeOpenSpills() throws IOException {
+    for (Spill spill : open) {
+      spill.closeOut();
+    }
+    open.clear();
+  }
+
+  /** The entries written to one file so far. */
+  private static final class Spill {
+    final Path file;
+    // Null while the file is closed to stay within MAX_OPEN_SPILLS.
+    @Nullable private OutputStream out;
+    int entries;
+    // The total size of the entries, without their delimiters.
+    long bytes;
+
+    Spill(Path file) {
+      this.file = file;
+    }
+
+    void openOut() throws IOException {
+      out =
+          new BufferedOutputStream(
+              Files.newOutputStream(file, StandardOpenOption.CREATE, StandardOpenOption.APPEND),
+              BUFFER_SIZE);
+    }
+
+    void closeOut() throws IOException {
+      if (out != null) {
+        OutputStream toClose = out;
+        out = null;
+        toClose.close();
+      }
+    }
+
+    void add(int position, byte[] entry) throws IOException {
+      DelimitedEntries.writeVarint(out, position + 1);
+      DelimitedEntries.writeEntry(out, entry);
+      entries++;
+      bytes += entry.length;
+    }
+  }
+
+  /** Entries spilled to one file. */
+  static final class Partition {
+    private final Path file;
+    private final int entries;
+    private final long bytes;
+    private final boolean sort;
+
+    private Partition(Path file, int entries, long bytes, boolean sort) {
+      this.file = file;
+      this.entries = entries;
+      this.bytes = bytes;
+      this.sort = sort;
+    }
+
+    /** Returns the total size of the entries, which {@link #read} holds in memory at once. */
+    long bytes() {
+      return bytes;
+    }
+
+    /** Reads the entries of this partition in order. */
+    List<byte[]> read() throws IOException {
+      int[] positions = new int[entries];
+      byte[][] read = new byte[entries][];
+      try (InputStream in = new BufferedInputStream(Files.newInputStream(file), BUFFER_SIZE)) {
+        for (int i = 0; i < entries; i++) {
+          positions[i] = (int) DelimitedEntries.readVarint(in) - 1;
+          read[i] = DelimitedEntries.readEntry(in);
+          if (read[i] == null) {
+            throw new IOException(file + " ends after " + i + " of " + entries + " entries");
+          }
+        }
+      }
+      if (!sort) {
+        return Arrays.asList(read);
+      }
+      // Sorting the positions together with the index of their entry keeps entries with the same
+      // position in the order in which they were added.
+      long[] order = new long[entries];
+      for (int i = 0; i < entries; i++) {
+        order[i] = (long) positions[i] << 32 | i;
+      }
+      Arrays.sort(order);
+      List<byte[]> result = new ArrayList<>(entries);
+      for (long positionAndIndex : order) {
+        result.add(read[(int) positionAndIndex]);
+      }
+      return result;
+    }
+  }
+}
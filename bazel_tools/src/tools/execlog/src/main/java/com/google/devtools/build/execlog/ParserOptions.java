@@ -60,4 +60,39 @@ public class ParserOptions extends OptionsBase {
       effectTags = {OptionEffectTag.UNKNOWN},
       help = "If set, only output the executions that used the given runner.")
   public String restrictToRunner;
+
+  @Option(
+      name = "streaming",
+      defaultValue = "false",
+      category = "logging",
+      documentationCategory = OptionDocumentationCategory.UNCATEGORIZED,
+      effectTags = {OptionEffectTag.UNKNOWN},
+      help =
+          "If set, converts the logs with bounded memory and on --threads threads, for logs that"
+              + " do not fit in memory. The entries of the second log are reordered by sorting"
+              + " them on disk, in --temp_dir.")
+  public boolean streaming;
+
+  @Option(
+      name = "temp_dir",
+      defaultValue = "null",
+      category = "logging",
+      documentationCategory = OptionDocumentationCategory.UNCATEGORIZED,
+      effectTags = {OptionEffectTag.UNKNOWN},
+      help =
+          "Directory to sort the entries of the second log in with --streaming. It needs about as"
+              + " much free space as the second log. Defaults to the system's temporary"
+              + " directory.")
+  public String tempDir;
+
+  @Option(
+      name = "threads",
+      defaultValue = "0",
+      category = "logging",
+      documentationCategory = OptionDocumentationCategory.UNCATEGORIZED,
+      effectTags = {OptionEffectTag.UNKNOWN},
+      help =
+          "Number of threads to parse and convert the logs on with --streaming. If 0, uses one"
+              + " thread per core.")
+  public int threads;
 }
@@ -0,0 +1,278 @@
+// Copyright 2026 The Bazel Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.devtools.build.execlog;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.devtools.build.execlog.ExecLogParser.ReorderingParser.Golden;
+import com.google.devtools.build.lib.exec.Protos.SpawnExec;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+
+/**
+ * Converts execution logs to text like {@link ExecLogParser#output} and {@link
+ * ExecLogParser.ReorderingParser}, but with bounded memory and on several threads, for logs that
+ * do not fit in memory.
+ *
+ * <p>Entries are read as raw bytes in batches. Parsing, filtering by runner and conversion to text
+ * happen on a thread pool, and the text is written in the order of the log. To reorder a log to
+ * match a golden log, its entries are sorted by their position in the golden log on local disk
+ * with an {@link ExternalSorter}. Only the first outputs of the golden log stay in memory.
+ *
+ * <p>Batches and partitions in flight are bounded both in number, by the number of threads, and in
+ * the total size of their entries, by {@link #MAX_PENDING_BYTES}, so that peak memory does not
+ * grow with the number of cores. Their text takes a few times as much memory as their entries. A
+ * single partition larger than the bound is still converted, on its own.
+ */
+final class StreamingExecLogParser implements AutoCloseable {
+  static final int DEFAULT_ENTRIES_PER_PARTITION = 20_000;
+
+  private static final int BATCH_ENTRIES = 1024;
+  private static final int BATCH_BYTES = 4 << 20;
+  private static final long MAX_PENDING_BYTES = 256 << 20;
+  // Position of entries that are not in the output because of their runner.
+  private static final int FILTERED_OUT = -2;
+  private static final byte[] SEPARATOR =
+      (System.lineSeparator() + ExecLogParser.DELIMITER + System.lineSeparator()).getBytes(UTF_8);
+
+  @Nullable private final String restrictToRunner;
+  private final int entriesPerPartition;
+  private final ExecutorService executor;
+  // Batches and partitions in flight, which with MAX_PENDING_BYTES bounds the memory in use.
+  private final int maxPending;
+
+  StreamingExecLogParser(@Nullable String restrictToRunner, int threads, int entriesPerPartition) {
+    this.restrictToRunner = restrictToRunner;
+    this.entriesPerPartition = entriesPerPartition;
+    this.executor = Executors.newFixedThreadPool(threads);
+    this.maxPending = threads + 1;
+  }
+
+  /**
+   * Writes the entries of {@code in} to {@code out} as text, in order. If {@code golden} is not
+   * null, adds the written entries to it.
+   */
+  void convert(InputStream in, OutputStream out, @Nullable Golden golden)
+      throws IOException, InterruptedException {
+    InOrder<Converted> converted =
+        new InOrder<>(
+            result -> {
+              out.write(result.text);
+              if (golden != null) {
+                for (String firstOutput : result.firstOutputs) {
+                  golden.addFirstOutput(firstOutput);
+                }
+              }
+            });
+    List<byte[]> batch;
+    while (!(batch = readBatch(in)).isEmpty()) {
+      List<byte[]> entries = batch;
+      converted.submit(() -> convert(entries), size(entries));
+    }
+    converted.finish();
+    out.flush();
+  }
+
+  /**
+   * Writes the entries of {@code in} to {@code out} as text, ordered like the entries of the golden
+   * log with the same first output. Entries that are not in the golden log come last, in order.
+   *
+   * @param tempDir a directory to spill the entries to, which may not be on a tmpfs
+   */
+  void reorder(InputStream in, OutputStream out, Golden golden, Path tempDir)
+      throws IOException, InterruptedException {
+    Path spillDir = Files.createTempDirectory(tempDir, "execlog");
+    try (ExternalSorter sorter = new ExternalSorter(spillDir, golden.size(), entriesPerPartition)) {
+      InOrder<Positioned> positioned =
+          new InOrder<>(
+              result -> {
+                for (int i = 0; i < result.entries.size(); i++) {
+                  if (result.positions[i] != FILTERED_OUT) {
+                    sorter.add(result.positions[i], result.entries.get(i));
+                  }
+                }
+              });
+      List<byte[]> batch;
+      while (!(batch = readBatch(in)).isEmpty()) {
+        List<byte[]> entries = batch;
+        positioned.submit(() -> position(entries, golden), size(entries));
+      }
+      positioned.finish();
+
+      InOrder<Converted> converted = new InOrder<>(result -> out.write(result.text));
+      for (ExternalSorter.Partition partition : sorter.finish()) {
+        converted.submit(() -> convert(partition.read()), partition.bytes());
+      }
+      converted.finish();
+      out.flush();
+    } finally {
+      Files.deleteIfExists(spillDir);
+    }
+  }
+
+  @Override
+  public void close() {
+    MoreExecutors.shutdownAndAwaitTermination(executor, 1, TimeUnit.MINUTES);
+  }
+
+  private static List<byte[]> readBatch(InputStream in) throws IOException {
+    List<byte[]> batch = new ArrayList<>();
+    long bytes = 0;
+    byte[] entry;
+    while (batch.size() < BATCH_ENTRIES
+        && bytes < BATCH_BYTES
+        && (entry = DelimitedEntries.readEntry(in)) != null) {
+      batch.add(entry);
+      bytes += entry.length;
+    }
+    return batch;
+  }
+
+  private static long size(List<byte[]> entries) {
+    long bytes = 0;
+    for (byte[] entry : entries) {
+      bytes += entry.length;
+    }
+    return bytes;
+  }
+
+  @Nullable
+  private SpawnExec parse(byte[] entry) throws IOException {
+    SpawnExec ex = SpawnExec.parseFrom(entry);
+    if (restrictToRunner != null && !restrictToRunner.equals(ex.getRunner())) {
+      return null;
+    }
+    return ex;
+  }
+
+  private Converted convert(List<byte[]> entries) throws IOException {
+    ByteArrayOutputStream text = new ByteArrayOutputStream();
+    List<String> firstOutputs = new ArrayList<>(entries.size());
+    for (byte[] entry : entries) {
+      SpawnExec ex = parse(entry);
+      if (ex != null) {
+        text.write(ex.toString().getBytes(UTF_8));
+        text.write(SEPARATOR);
+        firstOutputs.add(ExecLogParser.getFirstOutput(ex));
+      }
+    }
+    return new Converted(text.toByteArray(), firstOutputs);
+  }
+
+  private Positioned position(List<byte[]> entries, Golden golden) throws IOException {
+    int[] positions = new int[entries.size()];
+    for (int i = 0; i < positions.length; i++) {
+      SpawnExec ex = parse(entries.get(i));
+      positions[i] = ex == null ? FILTERED_OUT : golden.positionFor(ex);
+    }
+    return new Positioned(entries, positions);
+  }
+
+  /** A batch of entries converted to text. */
+  private static final class Converted {
+    final byte[] text;
+    // The first output of each converted entry, which may be null.
+    final List<String> firstOutputs;
+
+    Converted(byte[] text, List<String> firstOutputs) {
+      this.text = text;
+      this.firstOutputs = firstOutputs;
+    }
+  }
+
+  /** A batch of entries with their position in the golden log. */
+  private static final class Positioned {
+    final List<byte[]> entries;
+    final int[] positions;
+
+    Positioned(List<byte[]> entries, int[] positions) {
+      this.entries = entries;
+      this.positions = positions;
+    }
+  }
+
+  private interface ResultConsumer<T> {
+    void accept(T result) throws IOException;
+  }
+
+  /**
+   * Runs tasks on the executor and hands their results to a consumer in the order in which the
+   * tasks were submitted. Submitting blocks while {@link #maxPending} tasks are pending, or while
+   * the task would take the entries of pending tasks over {@link #MAX_PENDING_BYTES}.
+   */
+  private final class InOrder<T> {
+    private final ResultConsumer<T> consumer;
+    private final ArrayDeque<Future<T>> pending = new ArrayDeque<>();
+    // The size of the entries of each pending task.
+    private final ArrayDeque<Long> pendingSizes = new ArrayDeque<>();
+    private long pendingBytes;
+
+    InOrder(ResultConsumer<T> consumer) {
+      this.consumer = consumer;
+    }
+
+    /** Submits a task that holds {@code bytes} of entries in memory. */
+    void submit(Callable<T> task, long bytes) throws IOException, InterruptedException {
+      while (!pending.isEmpty()
+          && (pending.size() == maxPending || pendingBytes + bytes > MAX_PENDING_BYTES)) {
+        consumeFirst();
+      }
+      pending.add(executor.submit(task));
+      pendingSizes.add(bytes);
+      pendingBytes += bytes;
+    }
+
+    void finish() throws IOException, InterruptedException {
+      while (!pending.isEmpty()) {
+        consumeFirst();
+      }
+    }
+
+    private void consumeFirst() throws IOException, InterruptedException {
+      T result;
+      pendingBytes -= pendingSizes.remove();
+      try {
+        result = pending.remove().get();
+      } catch (ExecutionException e) {
+        for (Future<T> future : pending) {
+          future.cancel(/* mayInterruptIfRunning= */ true);
+        }
+        pending.clear();
+        pendingSizes.clear();
+        pendingBytes = 0;
+        Throwables.throwIfInstanceOf(e.getCause(), IOException.class);
+        Throwables.throwIfUnchecked(e.getCause());
+        throw new IllegalStateException(e.getCause());
+      }
+      consumer.accept(result);
+    }
+  }
+}
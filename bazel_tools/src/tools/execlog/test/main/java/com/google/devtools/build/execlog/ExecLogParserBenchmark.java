@@ -0,0 +1,175 @@
+// Copyright 2026 The Bazel Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.devtools.build.execlog;
+
+import com.google.devtools.build.execlog.ExecLogParser.FilteringLogParser;
+import com.google.devtools.build.execlog.ExecLogParser.ReorderingParser;
+import com.google.devtools.build.lib.exec.Protos.Digest;
+import com.google.devtools.build.lib.exec.Protos.File;
+import com.google.devtools.build.lib.exec.Protos.SpawnExec;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Converts two synthetic execution logs to text, the second reordered to match the first, once
+ * with the parsers that keep the second log in memory and once with {@link StreamingExecLogParser}.
+ *
+ * <p>Usage: {@code ExecLogParserBenchmark [entries] [threads] [in memory too]}. The second log has
+ * the entries of the first in a different order, and 1% of entries of its own. Reports the time
+ * and the peak heap use of each mode; run with a large -Xmx to compare them.
+ */
+public final class ExecLogParserBenchmark {
+  public static void main(String[] args) throws Exception {
+    int entries = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+    int threads =
+        args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+    boolean inMemory = args.length > 2 && Boolean.parseBoolean(args[2]);
+
+    Path dir = Files.createTempDirectory("execlog-benchmark");
+    Path first = dir.resolve("first.log");
+    Path second = dir.resolve("second.log");
+    try {
+      writeLogs(entries, first, second);
+      System.out.printf(
+          "logs of %d entries, %d MB each%n", entries, Files.size(first) >> 20);
+      if (inMemory) {
+        run("in memory", () -> convertInMemory(first, second, dir));
+      }
+      run("streaming", () -> convertStreaming(first, second, dir, threads));
+    } finally {
+      for (String file : new String[] {"first.log", "second.log", "first.txt", "second.txt"}) {
+        Files.deleteIfExists(dir.resolve(file));
+      }
+      Files.delete(dir);
+    }
+  }
+
+  private static SpawnExec createSpawn(int i, Random random) {
+    SpawnExec.Builder spawn =
+        SpawnExec.newBuilder()
+            .addCommandArgs("bazel-out/host/bin/compiler")
+            .addCommandArgs("pkg" + i % 1000 + "/src" + i + ".cc")
+            .setMnemonic("CppCompile")
+            .setRunner("linux-sandbox")
+            .addListedOutputs("bazel-out/k8-fastbuild/bin/pkg" + i % 1000 + "/src" + i + ".o");
+    for (int j = 0; j < 3; j++) {
+      spawn.addInputs(
+          File.newBuilder()
+              .setPath("pkg" + random.nextInt(1000) + "/header" + random.nextInt(100) + ".h")
+              .setDigest(
+                  Digest.newBuilder()
+                      .setHash(Long.toHexString(random.nextLong()) + Long.toHexString(i))
+                      .setSizeBytes(random.nextInt(100_000))));
+    }
+    return spawn.build();
+  }
+
+  private static void writeLogs(int entries, Path first, Path second) throws IOException {
+    // The second log has the entries of the first in an order that is likely to differ, like a
+    // build with more jobs.
+    Random random = new Random(42);
+    try (OutputStream out1 = new BufferedOutputStream(Files.newOutputStream(first));
+        OutputStream out2 = new BufferedOutputStream(Files.newOutputStream(second))) {
+      int block = 1024;
+      for (int start = 0; start < entries; start += block) {
+        int end = Math.min(entries, start + block);
+        int[] order = new int[end - start];
+        for (int i = 0; i < order.length; i++) {
+          order[i] = start + i;
+          int j = random.nextInt(i + 1);
+          int swapped = order[j];
+          order[j] = order[i];
+          order[i] = swapped;
+        }
+        for (int i = start; i < end; i++) {
+          createSpawn(i, new Random(i)).writeDelimitedTo(out1);
+          createSpawn(order[i - start], new Random(order[i - start])).writeDelimitedTo(out2);
+          if (i % 100 == 0) {
+            createSpawn(entries + i, random).writeDelimitedTo(out2);
+          }
+        }
+      }
+    }
+  }
+
+  private interface Mode {
+    void run() throws Exception;
+  }
+
+  private static void run(String name, Mode mode) throws Exception {
+    AtomicLong peakHeap = new AtomicLong();
+    Thread sampler =
+        new Thread(
+            () -> {
+              Runtime runtime = Runtime.getRuntime();
+              while (!Thread.currentThread().isInterrupted()) {
+                peakHeap.accumulateAndGet(runtime.totalMemory() - runtime.freeMemory(), Math::max);
+                try {
+                  Thread.sleep(10);
+                } catch (InterruptedException e) {
+                  return;
+                }
+              }
+            });
+    System.gc();
+    sampler.setDaemon(true);
+    sampler.start();
+    long start = System.nanoTime();
+    mode.run();
+    long millis = (System.nanoTime() - start) / 1_000_000;
+    sampler.interrupt();
+    sampler.join();
+    System.out.printf("%s: %d ms, peak heap %d MB%n", name, millis, peakHeap.get() >> 20);
+  }
+
+  private static void convertInMemory(Path first, Path second, Path dir) throws IOException {
+    ReorderingParser.Golden golden = new ReorderingParser.Golden();
+    try (InputStream in = new BufferedInputStream(Files.newInputStream(first));
+        OutputStream out = Files.newOutputStream(dir.resolve("first.txt"))) {
+      ExecLogParser.output(new FilteringLogParser(in, null), out, golden);
+    }
+    try (InputStream in = new BufferedInputStream(Files.newInputStream(second));
+        OutputStream out = Files.newOutputStream(dir.resolve("second.txt"))) {
+      ExecLogParser.output(
+          new ReorderingParser(golden, new FilteringLogParser(in, null)), out, null);
+    }
+  }
+
+  private static void convertStreaming(Path first, Path second, Path dir, int threads)
+      throws Exception {
+    ReorderingParser.Golden golden = new ReorderingParser.Golden();
+    try (StreamingExecLogParser parser =
+        new StreamingExecLogParser(
+            null, threads, StreamingExecLogParser.DEFAULT_ENTRIES_PER_PARTITION)) {
+      try (InputStream in = new BufferedInputStream(Files.newInputStream(first));
+          OutputStream out =
+              new BufferedOutputStream(Files.newOutputStream(dir.resolve("first.txt")))) {
+        parser.convert(in, out, golden);
+      }
+      try (InputStream in = new BufferedInputStream(Files.newInputStream(second));
+          OutputStream out =
+              new BufferedOutputStream(Files.newOutputStream(dir.resolve("second.txt")))) {
+        parser.reorder(in, out, golden, dir);
+      }
+    }
+  }
+}
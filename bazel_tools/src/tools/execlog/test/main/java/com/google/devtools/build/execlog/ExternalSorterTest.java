@@ -0,0 +1,154 @@
+// Copyright 2026 The Bazel Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.devtools.build.execlog;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertThrows;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link ExternalSorter} and {@link DelimitedEntries}. */
+@RunWith(JUnit4.class)
+public final class ExternalSorterTest {
+  @Rule public final TemporaryFolder tmp = new TemporaryFolder();
+
+  private static List<String> readAll(ExternalSorter sorter) throws IOException {
+    List<String> result = new ArrayList<>();
+    for (ExternalSorter.Partition partition : sorter.finish()) {
+      for (byte[] entry : partition.read()) {
+        result.add(new String(entry, UTF_8));
+      }
+    }
+    return result;
+  }
+
+  private static void add(ExternalSorter sorter, int position, String entry) throws IOException {
+    sorter.add(position, entry.getBytes(UTF_8));
+  }
+
+  @Test
+  public void sortsByPositionAcrossPartitions() throws IOException {
+    try (ExternalSorter sorter = new ExternalSorter(tmp.getRoot().toPath(), 10, 3)) {
+      for (int position : new int[] {7, 2, 9, 0, 4, 3, 8, 1, 6, 5}) {
+        add(sorter, position, "e" + position);
+      }
+
+      assertThat(readAll(sorter))
+          .containsExactly("e0", "e1", "e2", "e3", "e4", "e5", "e6", "e7", "e8", "e9")
+          .inOrder();
+    }
+  }
+
+  @Test
+  public void keepsOrderOfEntriesWithSamePosition() throws IOException {
+    try (ExternalSorter sorter = new ExternalSorter(tmp.getRoot().toPath(), 2, 1)) {
+      add(sorter, 1, "b1");
+      add(sorter, 0, "a1");
+      add(sorter, 1, "b2");
+      add(sorter, 0, "a2");
+
+      assertThat(readAll(sorter)).containsExactly("a1", "a2", "b1", "b2").inOrder();
+    }
+  }
+
+  @Test
+  public void entriesWithoutPositionComeLastInOrder() throws IOException {
+    try (ExternalSorter sorter = new ExternalSorter(tmp.getRoot().toPath(), 2, 2)) {
+      add(sorter, ExternalSorter.NO_POSITION, "x");
+      add(sorter, 1, "b");
+      add(sorter, ExternalSorter.NO_POSITION, "y");
+      add(sorter, ExternalSorter.NO_POSITION, "z");
+      add(sorter, 0, "a");
+
+      assertThat(readAll(sorter)).containsExactly("a", "b", "x", "y", "z").inOrder();
+    }
+  }
+
+  @Test
+  public void sortsWhenMorePartitionsAreWrittenThanCanBeOpen() throws IOException {
+    // One partition per position, written to round robin, so that each partition file is closed
+    // and reopened for appending several times.
+    int positions = 500;
+    List<String> expected = new ArrayList<>();
+    try (ExternalSorter sorter = new ExternalSorter(tmp.getRoot().toPath(), positions, 1)) {
+      for (int round = 0; round < 3; round++) {
+        for (int position = positions - 1; position >= 0; position--) {
+          add(sorter, position, position + "-" + round);
+        }
+      }
+      for (int position = 0; position < positions; position++) {
+        for (int round = 0; round < 3; round++) {
+          expected.add(position + "-" + round);
+        }
+      }
+
+      assertThat(readAll(sorter)).containsExactlyElementsIn(expected).inOrder();
+    }
+  }
+
+  @Test
+  public void closeDeletesSpilledEntries() throws IOException {
+    Path dir = tmp.newFolder().toPath();
+    try (ExternalSorter sorter = new ExternalSorter(dir, 100, 10)) {
+      for (int i = 0; i < 100; i++) {
+        add(sorter, 99 - i, "entry");
+        add(sorter, ExternalSorter.NO_POSITION, "entry");
+      }
+      assertThat(readAll(sorter)).hasSize(200);
+    }
+
+    try (Stream<Path> files = Files.list(dir)) {
+      assertThat(files.count()).isEqualTo(0);
+    }
+  }
+
+  @Test
+  public void delimitedEntriesRoundTrip() throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    byte[] large = new byte[300];
+    DelimitedEntries.writeEntry(out, new byte[0]);
+    DelimitedEntries.writeEntry(out, large);
+    ByteArrayInputStream in = new ByteArrayInputStream(out.toByteArray());
+
+    assertThat(DelimitedEntries.readEntry(in)).isEmpty();
+    assertThat(DelimitedEntries.readEntry(in)).isEqualTo(large);
+    assertThat(DelimitedEntries.readEntry(in)).isNull();
+  }
+
+  @Test
+  public void truncatedEntryIsAnError() throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    DelimitedEntries.writeEntry(out, new byte[10]);
+    byte[] truncated = new byte[out.size() - 1];
+    System.arraycopy(out.toByteArray(), 0, truncated, 0, truncated.length);
+
+    assertThrows(
+        IOException.class,
+        () -> DelimitedEntries.readEntry(new ByteArrayInputStream(truncated)));
+  }
+}
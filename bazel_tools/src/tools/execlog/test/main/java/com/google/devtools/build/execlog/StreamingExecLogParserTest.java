@@ -0,0 +1,190 @@
+// Copyright 2026 The Bazel Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.devtools.build.execlog;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.devtools.build.execlog.ExecLogParser.FilteringLogParser;
+import com.google.devtools.build.execlog.ExecLogParser.ReorderingParser;
+import com.google.devtools.build.lib.exec.Protos.SpawnExec;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link StreamingExecLogParser}. */
+@RunWith(JUnit4.class)
+public final class StreamingExecLogParserTest {
+  @Rule public final TemporaryFolder tmp = new TemporaryFolder();
+
+  private final StreamingExecLogParser parser =
+      new StreamingExecLogParser(/* restrictToRunner= */ null, 4, /* entriesPerPartition= */ 2);
+
+  @After
+  public void closeParser() {
+    parser.close();
+  }
+
+  private static byte[] toBytes(List<SpawnExec> list) throws IOException {
+    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    for (SpawnExec spawnExec : list) {
+      spawnExec.writeDelimitedTo(bos);
+    }
+    return bos.toByteArray();
+  }
+
+  private static InputStream toInputStream(List<SpawnExec> list) throws IOException {
+    return new ByteArrayInputStream(toBytes(list));
+  }
+
+  private static List<SpawnExec> spawns(String runner, String... outputs) {
+    List<SpawnExec> result = new ArrayList<>();
+    for (String output : outputs) {
+      result.add(
+          SpawnExec.newBuilder()
+              .setRunner(runner)
+              .addCommandArgs(output + "com")
+              .addListedOutputs(output)
+              .build());
+    }
+    return result;
+  }
+
+  /** Returns the given entries in order. */
+  private static final class ListParser implements ExecLogParser.Parser {
+    private final List<SpawnExec> entries;
+    private int next;
+
+    ListParser(List<SpawnExec> entries) {
+      this.entries = entries;
+    }
+
+    @Override
+    public SpawnExec getNext() {
+      return next < entries.size() ? entries.get(next++) : null;
+    }
+  }
+
+  private static String output(ExecLogParser.Parser parser, ReorderingParser.Golden golden)
+      throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    ExecLogParser.output(parser, out, golden);
+    return out.toString(UTF_8);
+  }
+
+  @Test
+  public void convertMatchesInMemoryParser() throws Exception {
+    List<SpawnExec> log = spawns("local", "a", "b", "c");
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+    parser.convert(toInputStream(log), out, /* golden= */ null);
+
+    assertThat(out.toString(UTF_8))
+        .isEqualTo(output(new FilteringLogParser(toInputStream(log), null), null));
+  }
+
+  @Test
+  public void convertManyEntries() throws Exception {
+    List<String> outputs = new ArrayList<>();
+    for (int i = 0; i < 5000; i++) {
+      outputs.add("out" + i);
+    }
+    List<SpawnExec> log = spawns("local", outputs.toArray(new String[0]));
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+    parser.convert(toInputStream(log), out, /* golden= */ null);
+
+    assertThat(out.toString(UTF_8))
+        .isEqualTo(output(new FilteringLogParser(toInputStream(log), null), null));
+  }
+
+  @Test
+  public void convertRestrictsToRunner() throws Exception {
+    List<SpawnExec> log = new ArrayList<>(spawns("local", "a", "b"));
+    log.addAll(spawns("remote", "c"));
+    log.addAll(spawns("local", "d"));
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+    try (StreamingExecLogParser localParser = new StreamingExecLogParser("local", 2, 2)) {
+      localParser.convert(toInputStream(log), out, /* golden= */ null);
+    }
+
+    assertThat(out.toString(UTF_8))
+        .isEqualTo(output(new FilteringLogParser(toInputStream(log), "local"), null));
+  }
+
+  @Test
+  public void reorderMatchesInMemoryParser() throws Exception {
+    List<SpawnExec> first = spawns("local", "a", "b", "c", "d", "e");
+    List<SpawnExec> second = spawns("local", "y", "e", "c", "b", "x", "d", "z");
+    ReorderingParser.Golden golden = new ReorderingParser.Golden();
+    ReorderingParser.Golden expectedGolden = new ReorderingParser.Golden();
+    ByteArrayOutputStream firstOut = new ByteArrayOutputStream();
+    ByteArrayOutputStream secondOut = new ByteArrayOutputStream();
+
+    parser.convert(toInputStream(first), firstOut, golden);
+    parser.reorder(toInputStream(second), secondOut, golden, tmp.getRoot().toPath());
+
+    assertThat(firstOut.toString(UTF_8))
+        .isEqualTo(output(new FilteringLogParser(toInputStream(first), null), expectedGolden));
+    assertThat(secondOut.toString(UTF_8))
+        .isEqualTo(
+            output(
+                new ReorderingParser(
+                    expectedGolden, new FilteringLogParser(toInputStream(second), null)),
+                null));
+    assertThat(tmp.getRoot().list()).isEmpty();
+  }
+
+  @Test
+  public void reorderKeepsOrderOfUnmatchedEntries() throws Exception {
+    ReorderingParser.Golden golden = new ReorderingParser.Golden();
+    parser.convert(toInputStream(spawns("local", "a", "b")), new ByteArrayOutputStream(), golden);
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+    parser.reorder(
+        toInputStream(spawns("local", "z", "b", "y", "x", "a", "w")),
+        out,
+        golden,
+        tmp.getRoot().toPath());
+
+    assertThat(out.toString(UTF_8))
+        .isEqualTo(
+            output(
+                new ListParser(spawns("local", "a", "b", "z", "y", "x", "w")),
+                null));
+  }
+
+  @Test
+  public void emptyLogs() throws Exception {
+    ReorderingParser.Golden golden = new ReorderingParser.Golden();
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+    parser.convert(toInputStream(Arrays.asList()), out, golden);
+    parser.reorder(toInputStream(Arrays.asList()), out, golden, tmp.getRoot().toPath());
+
+    assertThat(out.size()).isEqualTo(0);
+  }
+}